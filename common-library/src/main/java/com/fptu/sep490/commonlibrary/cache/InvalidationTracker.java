@@ -0,0 +1,54 @@
+package com.fptu.sep490.commonlibrary.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ghi nhận lần invalidate gần nhất của từng key (và của toàn bộ cache) để không đưa vào cache local
+ * một giá trị đã đọc / load trước lần invalidate đó. Cách dùng:
+ * <pre>
+ * long token = tracker.token();      // trước khi đọc Redis / load
+ * ...
+ * local.put(key, value);
+ * if (tracker.invalidatedSince(key, token)) local.remove(key);
+ * </pre>
+ * Put rồi mới kiểm tra: invalidate xảy ra sau lần kiểm tra thì cũng xóa luôn giá trị vừa put.
+ * Chỉ nhớ invalidate trong {@code window}, đủ dài hơn thời gian của một lần load.
+ */
+public final class InvalidationTracker {
+    private final AtomicLong sequence = new AtomicLong();
+    private final Cache<String, Long> invalidatedAt;
+    private volatile long allInvalidatedAt;
+
+    public InvalidationTracker(Duration window) {
+        this.invalidatedAt = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    public long token() {
+        return sequence.get();
+    }
+
+    /**
+     * Gọi trước khi xóa key khỏi cache local.
+     */
+    public void invalidate(String key) {
+        invalidatedAt.put(key, sequence.incrementAndGet());
+    }
+
+    public void invalidateAll() {
+        allInvalidatedAt = sequence.incrementAndGet();
+    }
+
+    public boolean invalidatedSince(String key, long token) {
+        if (allInvalidatedAt > token) {
+            return true;
+        }
+        Long at = invalidatedAt.getIfPresent(key);
+        return at != null && at > token;
+    }
+}
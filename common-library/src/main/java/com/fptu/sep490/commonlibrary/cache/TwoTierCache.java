@@ -0,0 +1,262 @@
+package com.fptu.sep490.commonlibrary.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Cache hai tầng: Caffeine trong process (giới hạn số phần tử + TTL) và Redis dùng chung giữa các replica.
+ * Thứ tự đọc: local -> Redis -> loader. Tạo qua {@link TwoTierCacheRegistry} để nhận invalidation qua pub/sub.
+ * <p>
+ * Giá trị load trước một lần {@link #evict} / {@link #evictAll} không được ghi lại vào cache:
+ * trước khi load đọc generation của cache và version của key trên Redis, chỉ ghi nếu cả hai chưa đổi
+ * (kiểm tra và ghi trong cùng một script); tầng local được chặn tương tự bằng {@link InvalidationTracker}.
+ */
+@Slf4j
+public class TwoTierCache<V> {
+    // Một lần load không kéo dài quá khoảng này
+    static final Duration INVALIDATION_WINDOW = Duration.ofMinutes(5);
+
+    // KEYS: generation, version, value, index; ARGV: generation, version, json, ttl (giây), key
+    static final RedisScript<Long> PUT_IF_CURRENT = new DefaultRedisScript<>("""
+            if (redis.call('GET', KEYS[1]) or '0') ~= ARGV[1] or (redis.call('GET', KEYS[2]) or '0') ~= ARGV[2] then
+                return 0
+            end
+            redis.call('SET', KEYS[3], ARGV[3], 'EX', ARGV[4])
+            redis.call('SADD', KEYS[4], ARGV[5])
+            redis.call('EXPIRE', KEYS[4], ARGV[4])
+            return 1
+            """, Long.class);
+
+    // KEYS: version, value, index; ARGV: key, ttl (giây)
+    static final RedisScript<Long> EVICT = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[1])
+            redis.call('EXPIRE', KEYS[1], ARGV[2])
+            redis.call('DEL', KEYS[2])
+            redis.call('SREM', KEYS[3], ARGV[1])
+            return 1
+            """, Long.class);
+
+    // KEYS: generation, index; ARGV: prefix của key giá trị
+    static final RedisScript<Long> EVICT_ALL = new DefaultRedisScript<>("""
+            redis.call('INCR', KEYS[1])
+            local keys = redis.call('SMEMBERS', KEYS[2])
+            for _, key in ipairs(keys) do
+                redis.call('DEL', ARGV[1] .. key)
+            end
+            redis.call('DEL', KEYS[2])
+            return #keys
+            """, Long.class);
+
+    private final String name;
+    private final Class<V> type;
+    private final Duration redisTtl;
+    private final Cache<String, V> local;
+    private final RedisService redisService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final TwoTierCacheRegistry registry;
+    private final InvalidationTracker tracker = new InvalidationTracker(INVALIDATION_WINDOW);
+
+    private final Counter localHits;
+    private final Counter redisHits;
+    private final Counter misses;
+    private final Counter sizeEvictions;
+    private final Counter expiredEvictions;
+    private final Counter invalidations;
+    private final Counter staleLoads;
+
+    TwoTierCache(String name,
+                 Class<V> type,
+                 long maximumSize,
+                 Duration localTtl,
+                 Duration redisTtl,
+                 RedisService redisService,
+                 StringRedisTemplate stringRedisTemplate,
+                 ObjectMapper objectMapper,
+                 MeterRegistry meterRegistry,
+                 TwoTierCacheRegistry registry) {
+        this.name = name;
+        this.type = type;
+        this.redisTtl = redisTtl;
+        this.redisService = redisService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.registry = registry;
+
+        this.localHits = requests(meterRegistry, "local_hit");
+        this.redisHits = requests(meterRegistry, "redis_hit");
+        this.misses = requests(meterRegistry, "miss");
+        this.sizeEvictions = evictions(meterRegistry, "size");
+        this.expiredEvictions = evictions(meterRegistry, "expired");
+        this.invalidations = evictions(meterRegistry, "invalidated");
+        this.staleLoads = requests(meterRegistry, "stale_load");
+
+        this.local = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(localTtl)
+                .removalListener((String key, V value, RemovalCause cause) -> {
+                    if (cause == RemovalCause.SIZE) {
+                        sizeEvictions.increment();
+                    } else if (cause == RemovalCause.EXPIRED) {
+                        expiredEvictions.increment();
+                    }
+                })
+                .build();
+        Gauge.builder("two_tier_cache.local.size", local, Cache::estimatedSize)
+                .tag("cache", name)
+                .register(meterRegistry);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public V get(String key, Supplier<V> loader) {
+        V value = local.getIfPresent(key);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        long localToken = tracker.token();
+        value = readRedis(key);
+        if (value != null) {
+            redisHits.increment();
+            putLocal(key, value, localToken);
+            return value;
+        }
+        misses.increment();
+        List<String> redisToken = readToken(key);
+        value = loader.get();
+        if (value != null && writeRedis(key, value, redisToken)) {
+            putLocal(key, value, localToken);
+        }
+        return value;
+    }
+
+    public void evict(String key) {
+        stringRedisTemplate.execute(EVICT, List.of(versionKey(key), redisKey(key), indexKey()), key, ttlSeconds());
+        registry.publishEvict(name, key);
+    }
+
+    public void evictAll() {
+        stringRedisTemplate.execute(EVICT_ALL, List.of(generationKey(), indexKey()), redisKey(""));
+        registry.publishEvictAll(name);
+    }
+
+    // Được gọi khi nhận message invalidation (kể cả message do chính node này phát)
+    void evictLocal(String key) {
+        tracker.invalidate(key);
+        if (local.asMap().remove(key) != null) {
+            invalidations.increment();
+        }
+    }
+
+    void evictAllLocal() {
+        tracker.invalidateAll();
+        long size = local.estimatedSize();
+        local.invalidateAll();
+        invalidations.increment(size);
+    }
+
+    private void putLocal(String key, V value, long token) {
+        local.put(key, value);
+        if (tracker.invalidatedSince(key, token)) {
+            local.asMap().remove(key, value);
+            staleLoads.increment();
+        }
+    }
+
+    // [generation, version] của key trên Redis, null nếu không đọc được
+    private List<String> readToken(String key) {
+        try {
+            List<String> token = stringRedisTemplate.opsForValue().multiGet(List.of(generationKey(), versionKey(key)));
+            if (token == null || token.size() != 2) {
+                return null;
+            }
+            return token.stream().map(part -> part == null ? "0" : part).toList();
+        } catch (RuntimeException e) {
+            log.warn("Cache {}: cannot read generation of key {} from Redis: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    private V readRedis(String key) {
+        try {
+            return redisService.getValue(redisKey(key), type);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Cache {}: cannot read key {} from Redis: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return false nếu cache / key đã bị invalidate kể từ lúc đọc {@code token} (giá trị có thể đã cũ);
+     * Redis lỗi thì bỏ qua tầng Redis nhưng vẫn cho giữ ở local như trước
+     */
+    private boolean writeRedis(String key, V value, List<String> token) {
+        if (token == null) {
+            return true;
+        }
+        try {
+            Long written = stringRedisTemplate.execute(PUT_IF_CURRENT,
+                    List.of(generationKey(), versionKey(key), redisKey(key), indexKey()),
+                    token.get(0), token.get(1), objectMapper.writeValueAsString(value), ttlSeconds(), key);
+            if (written != null && written == 0) {
+                staleLoads.increment();
+                return false;
+            }
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Cache {}: cannot write key {} to Redis: {}", name, key, e.getMessage());
+        }
+        return true;
+    }
+
+    private String ttlSeconds() {
+        return String.valueOf(Math.max(1, redisTtl.toSeconds()));
+    }
+
+    private String redisKey(String key) {
+        return "cache:" + name + ":" + key;
+    }
+
+    private String indexKey() {
+        return "cache:" + name + ":keys";
+    }
+
+    private String generationKey() {
+        return "cache:" + name + ":generation";
+    }
+
+    private String versionKey(String key) {
+        return "cache:" + name + ":version:" + key;
+    }
+
+    private Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("two_tier_cache.requests")
+                .tag("cache", name)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    private Counter evictions(MeterRegistry meterRegistry, String cause) {
+        return Counter.builder("two_tier_cache.evictions")
+                .tag("cache", name)
+                .tag("cause", cause)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,97 @@
+package com.fptu.sep490.commonlibrary.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.commonlibrary.redis.RedisService;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tạo các {@link TwoTierCache} và đồng bộ invalidation tầng local giữa các replica qua Redis pub/sub.
+ * Message có dạng {@code ALL|<cache>} hoặc {@code KEY|<cache>|<key>}.
+ * Chỉ subscribe kênh invalidation khi cache đầu tiên được tạo, service không dùng cache hai tầng không giữ subscription nào.
+ */
+@Slf4j
+@Component
+public class TwoTierCacheRegistry implements MessageListener {
+    static final String CHANNEL = "two-tier-cache:invalidation";
+
+    private final Map<String, TwoTierCache<?>> caches = new ConcurrentHashMap<>();
+    private final RedisService redisService;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+
+    public TwoTierCacheRegistry(RedisService redisService,
+                                StringRedisTemplate stringRedisTemplate,
+                                ObjectMapper objectMapper,
+                                MeterRegistry meterRegistry,
+                                RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.redisService = redisService;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+    }
+
+    public <V> TwoTierCache<V> create(String name, Class<V> type, long maximumSize, Duration localTtl, Duration redisTtl) {
+        TwoTierCache<V> cache = new TwoTierCache<>(name, type, maximumSize, localTtl, redisTtl,
+                redisService, stringRedisTemplate, objectMapper, meterRegistry, this);
+        synchronized (caches) {
+            if (caches.isEmpty()) {
+                redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(CHANNEL));
+            }
+            if (caches.putIfAbsent(name, cache) != null) {
+                throw new IllegalStateException("Cache " + name + " is already registered");
+            }
+        }
+        return cache;
+    }
+
+    void publishEvict(String name, String key) {
+        publish("KEY|" + name + "|" + key);
+    }
+
+    void publishEvictAll(String name) {
+        publish("ALL|" + name);
+    }
+
+    private void publish(String message) {
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, message);
+        } catch (RuntimeException e) {
+            // Không gửi được thì ít nhất phải xóa tầng local của node hiện tại
+            log.warn("Cannot publish cache invalidation {}: {}", message, e.getMessage());
+            apply(message);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        apply(new String(message.getBody(), StandardCharsets.UTF_8));
+    }
+
+    void apply(String message) {
+        String[] parts = message.split("\\|", 3);
+        TwoTierCache<?> cache = parts.length > 1 ? caches.get(parts[1]) : null;
+        if (cache == null) {
+            return;
+        }
+        if ("ALL".equals(parts[0])) {
+            cache.evictAllLocal();
+        } else if ("KEY".equals(parts[0]) && parts.length == 3) {
+            cache.evictLocal(parts[2]);
+        }
+    }
+}
@@ -2,14 +2,24 @@ package com.fptu.sep490.commonlibrary.config;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.jsontype.impl.LaissezFaireSubTypeValidator;
+import com.fptu.sep490.commonlibrary.redis.RedisNearCache;
+import com.fptu.sep490.commonlibrary.redis.ResilientRedisMessageListenerContainer;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 
+import java.time.Duration;
+import java.util.List;
+
 @Configuration
 public class RedisConfig {
 
@@ -23,4 +33,25 @@ public class RedisConfig {
         template.setValueSerializer(serializer);
         return template;
     }
+
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory redisConnectionFactory,
+                                                                       @Value("${redis.listener.threads:4}") int threads,
+                                                                       @Value("${redis.listener.queue-capacity:1000}") int queueCapacity,
+                                                                       @Value("${redis.listener.retry-interval:PT5S}") Duration retryInterval) {
+        return new ResilientRedisMessageListenerContainer(redisConnectionFactory, threads, queueCapacity, retryInterval);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "redis.near-cache.enabled", havingValue = "true")
+    public RedisNearCache redisNearCache(@Value("${redis.near-cache.key-prefixes}") List<String> keyPrefixes,
+                                         @Value("${redis.near-cache.max-size:10000}") long maxSize,
+                                         @Value("${redis.near-cache.ttl:PT1M}") Duration ttl,
+                                         @Value("${redis.near-cache.configure-keyspace-events:true}") boolean configureKeyspaceEvents,
+                                         StringRedisTemplate stringRedisTemplate,
+                                         RedisMessageListenerContainer redisMessageListenerContainer,
+                                         MeterRegistry meterRegistry) {
+        return new RedisNearCache(keyPrefixes, maxSize, ttl, configureKeyspaceEvents,
+                stringRedisTemplate, redisMessageListenerContainer, meterRegistry);
+    }
 }
@@ -0,0 +1,243 @@
+package com.fptu.sep490.commonlibrary.keycloak;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
+import feign.FeignException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Giữ token client-credentials của service trong bộ nhớ.
+ * <ul>
+ *     <li>Token được làm mới ở background trước khi hết hạn {@code refreshSkew}</li>
+ *     <li>Chỉ một luồng làm mới tại một thời điểm; trong lúc đó các request khác vẫn dùng token cũ nếu còn hạn</li>
+ *     <li>Redis chỉ dùng để chia sẻ token giữa các replica: trước khi gọi Keycloak sẽ thử lấy token replica khác vừa lấy</li>
+ *     <li>Gọi qua {@link #withToken} thì token bị từ chối (401) được bỏ và request được thử lại một lần với token mới</li>
+ * </ul>
+ * Hạn của token đọc từ Redis được lấy từ claim {@code exp} của JWT.
+ */
+@Slf4j
+public class ServiceTokenManager implements AutoCloseable {
+    static final Duration DEFAULT_REFRESH_SKEW = Duration.ofSeconds(30);
+    // Token lấy từ Redis không đọc được exp thì chỉ dùng trong khoảng này
+    static final Duration UNKNOWN_EXPIRY_LIFETIME = Duration.ofSeconds(30);
+
+    private final String redisKey;
+    private final Supplier<KeyCloakTokenResponse> tokenFetcher;
+    private final RedisService redisService;
+    private final ObjectMapper objectMapper;
+    private final Duration refreshSkew;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    private volatile Token token;
+
+    public ServiceTokenManager(String redisKey,
+                               Supplier<KeyCloakTokenResponse> tokenFetcher,
+                               RedisService redisService,
+                               ObjectMapper objectMapper) {
+        this(redisKey, tokenFetcher, redisService, objectMapper, DEFAULT_REFRESH_SKEW, Clock.systemUTC(),
+                Executors.newSingleThreadScheduledExecutor(runnable -> {
+                    Thread thread = new Thread(runnable, "service-token-refresh");
+                    thread.setDaemon(true);
+                    return thread;
+                }));
+    }
+
+    ServiceTokenManager(String redisKey,
+                        Supplier<KeyCloakTokenResponse> tokenFetcher,
+                        RedisService redisService,
+                        ObjectMapper objectMapper,
+                        Duration refreshSkew,
+                        Clock clock,
+                        ScheduledExecutorService scheduler) {
+        this.redisKey = redisKey;
+        this.tokenFetcher = tokenFetcher;
+        this.redisService = redisService;
+        this.objectMapper = objectMapper;
+        this.refreshSkew = refreshSkew;
+        this.clock = clock;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Form client-credentials chuẩn dùng cho {@code tokenFetcher}.
+     */
+    public static MultiValueMap<String, String> clientCredentialsForm(String clientId, String clientSecret) {
+        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
+        form.add("grant_type", "client_credentials");
+        form.add("client_id", clientId);
+        form.add("client_secret", clientSecret);
+        form.add("scope", "openid");
+        return form;
+    }
+
+    public String getToken() {
+        Instant now = clock.instant();
+        Token current = token;
+        if (current != null && !current.needsRefresh(now, refreshSkew)) {
+            return current.value();
+        }
+        if (current != null && current.isValid(now)) {
+            // Sắp hết hạn nhưng vẫn dùng được: không chờ nếu đã có luồng khác đang làm mới
+            if (!refreshLock.tryLock()) {
+                return current.value();
+            }
+        } else {
+            refreshLock.lock();
+        }
+        try {
+            current = token;
+            if (current != null && !current.needsRefresh(clock.instant(), refreshSkew)) {
+                return current.value();
+            }
+            try {
+                return refresh().value();
+            } catch (RuntimeException e) {
+                if (current != null && current.isValid(clock.instant())) {
+                    log.warn("Cannot refresh service token, keep using the current one: {}", e.getMessage());
+                    return current.value();
+                }
+                throw e;
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Gọi {@code call} với token hiện tại. Nếu bị 401 (token bị thu hồi, Keycloak restart...) thì bỏ token đó
+     * và thử lại đúng một lần với token mới.
+     */
+    public <T> T withToken(Function<String, T> call) {
+        String current = getToken();
+        try {
+            return call.apply(current);
+        } catch (FeignException.Unauthorized e) {
+            log.warn("Service token rejected with 401, retrying with a new token");
+            invalidate(current);
+            return call.apply(getToken());
+        }
+    }
+
+    /**
+     * Bỏ token hiện tại (ví dụ khi Keycloak trả 401 với token này); lần gọi sau sẽ lấy token mới.
+     */
+    void invalidate(String rejectedToken) {
+        refreshLock.lock();
+        try {
+            Token current = token;
+            if (current != null && current.value().equals(rejectedToken)) {
+                token = null;
+                redisService.delete(redisKey);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    // Gọi khi đang giữ refreshLock
+    private Token refresh() {
+        Instant now = clock.instant();
+        Token shared = readShared();
+        Token fresh = shared != null && !shared.needsRefresh(now, refreshSkew) ? shared : fetch(now);
+        token = fresh;
+        scheduleRefresh(fresh, now);
+        return fresh;
+    }
+
+    private Token fetch(Instant now) {
+        KeyCloakTokenResponse response = tokenFetcher.get();
+        Token fetched = new Token(response.accessToken(), now.plusSeconds(response.expiresIn()));
+        try {
+            redisService.saveValue(redisKey, fetched.value(), Duration.ofSeconds(response.expiresIn()));
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Cannot share service token through Redis: {}", e.getMessage());
+        }
+        return fetched;
+    }
+
+    private Token readShared() {
+        try {
+            String value = redisService.getValue(redisKey, String.class);
+            return value != null ? new Token(value, expiryOf(value)) : null;
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Cannot read shared service token from Redis: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private Instant expiryOf(String jwt) {
+        String[] parts = jwt.split("\\.");
+        if (parts.length >= 2) {
+            try {
+                JsonNode payload = objectMapper.readTree(
+                        new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8));
+                if (payload.hasNonNull("exp")) {
+                    return Instant.ofEpochSecond(payload.get("exp").asLong());
+                }
+            } catch (IllegalArgumentException | JsonProcessingException e) {
+                log.debug("Cannot read exp claim of shared service token: {}", e.getMessage());
+            }
+        }
+        return clock.instant().plus(UNKNOWN_EXPIRY_LIFETIME);
+    }
+
+    private void scheduleRefresh(Token fresh, Instant now) {
+        // Jitter để các replica không cùng gọi Keycloak: replica đến sau sẽ lấy token từ Redis
+        long skewMillis = refreshSkew.toMillis();
+        long jitterMillis = skewMillis > 1 ? ThreadLocalRandom.current().nextLong(skewMillis / 2) : 0;
+        long delayMillis = Duration.between(now, fresh.expiresAt()).toMillis() - skewMillis + jitterMillis;
+        if (delayMillis <= 0 || scheduler.isShutdown()) {
+            return;
+        }
+        scheduler.schedule(this::backgroundRefresh, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void backgroundRefresh() {
+        refreshLock.lock();
+        try {
+            Token current = token;
+            if (current == null || current.needsRefresh(clock.instant(), refreshSkew)) {
+                refresh();
+            }
+        } catch (RuntimeException e) {
+            log.warn("Background refresh of service token failed, will retry on next request: {}", e.getMessage());
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    record Token(String value, Instant expiresAt) {
+        boolean isValid(Instant now) {
+            return now.isBefore(expiresAt);
+        }
+
+        boolean needsRefresh(Instant now, Duration skew) {
+            return !now.isBefore(expiresAt.minus(skew));
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.fptu.sep490.commonlibrary.keycloak;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fptu.sep490.commonlibrary.redis.RedisService;
+import feign.FeignException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Lấy profile của nhiều user cho các màn danh sách:
+ * <ul>
+ *     <li>Id trùng / rỗng được bỏ qua</li>
+ *     <li>Cache Redis được đọc bằng một lần multi-get</li>
+ *     <li>Các id chưa có trong cache được gọi Keycloak song song, tối đa {@code parallelism} lời gọi cùng lúc trên mỗi node</li>
+ *     <li>Kết quả mới được ghi lại Redis bằng một pipeline</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class UserProfileBatchLoader {
+    private final RedisService redisService;
+    private final ExecutorService fetchExecutor;
+
+    public UserProfileBatchLoader(RedisService redisService,
+                                  @Value("${keycloak.user-profile.fetch-parallelism:8}") int parallelism) {
+        this.redisService = redisService;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fetchExecutor = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "user-profile-fetch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param keyPrefix   prefix của key cache Redis (key = prefix + id)
+     * @param remoteFetch gọi Keycloak cho một id; trả về null hoặc ném {@link FeignException.NotFound} nếu không tìm thấy,
+     *                    lỗi khác được ném tiếp cho người gọi
+     * @return map id -> profile theo thứ tự xuất hiện đầu tiên của id; id không tìm thấy sẽ không có trong map
+     */
+    public <T> Map<String, T> load(Collection<String> ids,
+                                   String keyPrefix,
+                                   Class<T> type,
+                                   Duration ttl,
+                                   Function<String, T> remoteFetch) throws JsonProcessingException {
+        Set<String> uniqueIds = new LinkedHashSet<>();
+        for (String id : ids) {
+            if (id != null && !id.isBlank()) {
+                uniqueIds.add(id);
+            }
+        }
+        if (uniqueIds.isEmpty()) {
+            return Map.of();
+        }
+
+        Map<String, T> cached = redisService.multiGet(uniqueIds.stream().map(id -> keyPrefix + id).toList(), type);
+        List<String> misses = new ArrayList<>();
+        for (String id : uniqueIds) {
+            if (!cached.containsKey(keyPrefix + id)) {
+                misses.add(id);
+            }
+        }
+
+        Map<String, T> fetched = fetch(misses, remoteFetch);
+        if (!fetched.isEmpty()) {
+            Map<String, T> toCache = new LinkedHashMap<>();
+            fetched.forEach((id, profile) -> toCache.put(keyPrefix + id, profile));
+            redisService.multiSave(toCache, ttl);
+        }
+
+        Map<String, T> result = new LinkedHashMap<>();
+        for (String id : uniqueIds) {
+            T profile = cached.getOrDefault(keyPrefix + id, fetched.get(id));
+            if (profile != null) {
+                result.put(id, profile);
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fetchExecutor.shutdownNow();
+    }
+
+    private <T> Map<String, T> fetch(List<String> ids, Function<String, T> remoteFetch) {
+        Map<String, T> fetched = new LinkedHashMap<>();
+        if (ids.isEmpty()) {
+            return fetched;
+        }
+        if (ids.size() == 1) {
+            // Một id thì gọi luôn trên luồng hiện tại
+            T profile = fetchOne(ids.getFirst(), remoteFetch);
+            if (profile != null) {
+                fetched.put(ids.getFirst(), profile);
+            }
+            return fetched;
+        }
+        List<CompletableFuture<T>> futures = ids.stream()
+                .map(id -> CompletableFuture.supplyAsync(() -> fetchOne(id, remoteFetch), fetchExecutor))
+                .toList();
+        try {
+            CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+        } catch (CompletionException e) {
+            futures.forEach(future -> future.cancel(true));
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        for (int i = 0; i < ids.size(); i++) {
+            T profile = futures.get(i).join();
+            if (profile != null) {
+                fetched.put(ids.get(i), profile);
+            }
+        }
+        log.debug("Fetched {} user profiles from Keycloak", fetched.size());
+        return fetched;
+    }
+
+    // User đã bị xóa trên Keycloak chỉ thiếu trong kết quả, không làm hỏng cả danh sách
+    private static <T> T fetchOne(String id, Function<String, T> remoteFetch) {
+        try {
+            return remoteFetch.apply(id);
+        } catch (FeignException.NotFound e) {
+            log.debug("User {} not found on Keycloak", id);
+            return null;
+        }
+    }
+}
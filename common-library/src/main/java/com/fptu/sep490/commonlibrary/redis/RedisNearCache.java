@@ -0,0 +1,181 @@
+package com.fptu.sep490.commonlibrary.redis;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fptu.sep490.commonlibrary.cache.InvalidationTracker;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.PatternTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Near cache trong process cho {@link RedisService}, chỉ áp dụng cho key có prefix đã cấu hình
+ * (không dùng cho counter / rate limit). Entry sống tối đa {@code ttl} và không quá TTL còn lại trên Redis,
+ * bị xóa khi node này ghi key hoặc khi nhận keyspace notification ({@code __keyspace@*__:<key>}) từ node khác.
+ * Entry giữ cây JSON đã parse, không giữ object đã decode: mỗi lần hit {@link RedisService} decode ra một object mới
+ * nên người gọi sửa object trả về cũng không làm hỏng cache.
+ */
+@Slf4j
+public class RedisNearCache implements MessageListener {
+    // generic (del, expire...), string, expired, evicted
+    static final String EVENT_TYPES = "g$xe";
+    // Dài hơn nhiều so với một lần GET + PTTL
+    static final Duration INVALIDATION_WINDOW = Duration.ofSeconds(30);
+
+    private final List<String> keyPrefixes;
+    private final long maxTtlNanos;
+    private final Cache<String, Entry> cache;
+    // Giá trị đọc từ Redis trước một lần invalidate cùng key sẽ không được đưa vào cache
+    private final InvalidationTracker invalidations = new InvalidationTracker(INVALIDATION_WINDOW);
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public RedisNearCache(List<String> keyPrefixes,
+                          long maximumSize,
+                          Duration ttl,
+                          boolean configureKeyspaceEvents,
+                          StringRedisTemplate stringRedisTemplate,
+                          RedisMessageListenerContainer redisMessageListenerContainer,
+                          MeterRegistry meterRegistry) {
+        this.keyPrefixes = List.copyOf(keyPrefixes);
+        this.maxTtlNanos = ttl.toNanos();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<String, Entry>() {
+                    @Override
+                    public long expireAfterCreate(String key, Entry entry, long currentTime) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Entry entry, long currentTime, long currentDuration) {
+                        return entry.ttlNanos();
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Entry entry, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.hits = requests(meterRegistry, "hit");
+        this.misses = requests(meterRegistry, "miss");
+        Gauge.builder("redis.near_cache.size", cache, Cache::estimatedSize).register(meterRegistry);
+
+        if (configureKeyspaceEvents) {
+            enableKeyspaceEvents(stringRedisTemplate);
+        }
+        this.keyPrefixes.forEach(prefix ->
+                redisMessageListenerContainer.addMessageListener(this, new PatternTopic("__keyspace@*__:" + prefix + "*")));
+    }
+
+    public boolean handles(String key) {
+        for (String prefix : keyPrefixes) {
+            if (key.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Trả về cây JSON nếu có và được đọc với cùng kiểu lần trước, ngược lại null. Không được sửa node trả về.
+     */
+    JsonNode get(String key, JavaType type) {
+        if (!handles(key)) {
+            return null;
+        }
+        Entry entry = cache.getIfPresent(key);
+        if (entry != null && entry.type().equals(type)) {
+            hits.increment();
+            return entry.node();
+        }
+        misses.increment();
+        return null;
+    }
+
+    long token() {
+        return invalidations.token();
+    }
+
+    /**
+     * @param redisTtlMillis PTTL của key trên Redis (-1 = không hết hạn, -2 = không tồn tại)
+     * @param readToken      {@link #token()} tại thời điểm bắt đầu đọc từ Redis
+     */
+    void put(String key, JavaType type, JsonNode node, long redisTtlMillis, long readToken) {
+        if (redisTtlMillis == -2 || redisTtlMillis == 0) {
+            return;
+        }
+        long ttlNanos = redisTtlMillis > 0 ? Math.min(maxTtlNanos, TimeUnit.MILLISECONDS.toNanos(redisTtlMillis)) : maxTtlNanos;
+        cache.put(key, new Entry(type, node, ttlNanos));
+        if (invalidations.invalidatedSince(key, readToken)) {
+            // Key bị invalidate xen giữa lúc đọc và lúc put: không giữ giá trị có thể đã cũ
+            cache.invalidate(key);
+        }
+    }
+
+    void invalidate(String key) {
+        invalidations.invalidate(key);
+        cache.invalidate(key);
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String channel = new String(message.getChannel(), StandardCharsets.UTF_8);
+        int separator = channel.indexOf("__:");
+        if (separator >= 0) {
+            invalidate(channel.substring(separator + 3));
+        }
+    }
+
+    // Bật thêm các event cần thiết, giữ nguyên cấu hình notify-keyspace-events hiện có
+    private void enableKeyspaceEvents(StringRedisTemplate stringRedisTemplate) {
+        try {
+            stringRedisTemplate.execute((RedisConnection connection) -> {
+                Properties config = connection.serverCommands().getConfig("notify-keyspace-events");
+                String current = config != null ? config.getProperty("notify-keyspace-events", "") : "";
+                StringBuilder flags = new StringBuilder(current);
+                if (current.indexOf('K') < 0) {
+                    flags.append('K');
+                }
+                // 'A' đã bao gồm mọi loại event
+                for (char flag : EVENT_TYPES.toCharArray()) {
+                    if (current.indexOf(flag) < 0 && current.indexOf('A') < 0) {
+                        flags.append(flag);
+                    }
+                }
+                if (!flags.toString().equals(current)) {
+                    connection.serverCommands().setConfig("notify-keyspace-events", flags.toString());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            log.warn("Cannot enable Redis keyspace notifications, near cache relies on TTL only: {}", e.getMessage());
+        }
+    }
+
+    private static Counter requests(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("redis.near_cache.requests")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    record Entry(JavaType type, JsonNode node, long ttlNanos) {
+    }
+}
@@ -1,49 +1,115 @@
 package com.fptu.sep490.commonlibrary.redis;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.AccessLevel;
-import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
-import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
+
 import java.time.Duration;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
+/**
+ * Đọc / ghi giá trị JSON trên Redis. Giá trị được ghi trực tiếp dạng JSON (một lớp) qua {@link StringRedisTemplate};
+ * giá trị cũ bị {@code GenericJackson2JsonRedisSerializer} bọc thêm một lớp chuỗi JSON vẫn đọc được.
+ * Nếu bật {@link RedisNearCache}, các key thuộc prefix đã cấu hình được đọc từ bộ nhớ process trước.
+ */
 @Service
-@RequiredArgsConstructor
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
 public class RedisService {
 
-    RedisTemplate<String, Object> redisTemplate;
+    StringRedisTemplate stringRedisTemplate;
 
     ObjectMapper objectMapper;
 
+    RedisNearCache nearCache;
+
+    public RedisService(StringRedisTemplate stringRedisTemplate,
+                        ObjectMapper objectMapper,
+                        ObjectProvider<RedisNearCache> nearCache) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.nearCache = nearCache.getIfAvailable();
+    }
+
     public <T> void saveValue(String key, T value, Duration ttl) throws JsonProcessingException {
         String json = objectMapper.writeValueAsString(value);
-        redisTemplate.opsForValue().set(key, json, ttl);
+        stringRedisTemplate.opsForValue().set(key, json, ttl);
+        invalidateNear(key);
+    }
+
+    public <T> void saveValue(String key, T value) throws JsonProcessingException {
+        String json = objectMapper.writeValueAsString(value);
+        stringRedisTemplate.opsForValue().set(key, json);
+        invalidateNear(key);
     }
 
     public <T> T getValue(String key, Class<T> clazz) throws JsonProcessingException {
-        Object raw = redisTemplate.opsForValue().get(key);
-        if (raw == null) return null;
-        return objectMapper.readValue(raw.toString(), clazz);
+        return getValue(key, objectMapper.constructType(clazz));
+    }
+
+    public <T> T getValue(String key, TypeReference<T> typeReference) throws JsonProcessingException {
+        return getValue(key, objectMapper.getTypeFactory().constructType(typeReference));
+    }
+
+    /**
+     * Đọc nhiều key trong một round trip. Key không tồn tại sẽ không có trong kết quả.
+     */
+    public <T> Map<String, T> multiGet(Collection<String> keys, Class<T> clazz) throws JsonProcessingException {
+        return multiGet(keys, objectMapper.constructType(clazz));
+    }
+
+    public <T> Map<String, T> multiGet(Collection<String> keys, TypeReference<T> typeReference) throws JsonProcessingException {
+        return multiGet(keys, objectMapper.getTypeFactory().constructType(typeReference));
+    }
+
+    /**
+     * Ghi nhiều key (cùng TTL) bằng một pipeline.
+     */
+    public <T> void multiSave(Map<String, T> values, Duration ttl) throws JsonProcessingException {
+        if (values.isEmpty()) {
+            return;
+        }
+        Map<String, String> encoded = new LinkedHashMap<>();
+        for (Map.Entry<String, T> entry : values.entrySet()) {
+            encoded.put(entry.getKey(), objectMapper.writeValueAsString(entry.getValue()));
+        }
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                encoded.forEach((key, json) -> ops.opsForValue().set(key, json, ttl));
+                return null;
+            }
+        });
+        encoded.keySet().forEach(this::invalidateNear);
     }
 
     public <T> void addToList(String key, T value) throws JsonProcessingException {
         String json = objectMapper.writeValueAsString(value);
-        redisTemplate.opsForList().rightPush(key, json);
+        stringRedisTemplate.opsForList().rightPush(key, json);
     }
 
     public <T> List<T> getList(String key, Class<T> clazz) throws JsonProcessingException {
-        List<Object> rawList = redisTemplate.opsForList().range(key, 0, -1);
+        List<String> rawList = stringRedisTemplate.opsForList().range(key, 0, -1);
         if (rawList == null) return Collections.emptyList();
 
+        JavaType type = objectMapper.constructType(clazz);
         return rawList.stream()
-                .map(obj -> {
+                .map(raw -> {
                     try {
-                        return objectMapper.readValue(obj.toString(), clazz);
+                        return this.<T>decode(raw, type);
                     } catch (JsonProcessingException e) {
                         throw new RuntimeException(e);
                     }
@@ -53,40 +119,156 @@ public class RedisService {
 
     public <T> void addToSet(String key, T value) throws JsonProcessingException {
         String json = objectMapper.writeValueAsString(value);
-        redisTemplate.opsForSet().add(key, json);
+        stringRedisTemplate.opsForSet().add(key, json);
     }
 
     public <T> Set<T> getSet(String key, Class<T> clazz) throws JsonProcessingException {
-        Set<Object> rawSet = redisTemplate.opsForSet().members(key);
+        Set<String> rawSet = stringRedisTemplate.opsForSet().members(key);
         if (rawSet == null) return Collections.emptySet();
 
+        JavaType type = objectMapper.constructType(clazz);
         Set<T> result = new HashSet<>();
-        for (Object raw : rawSet) {
-            result.add(objectMapper.readValue(raw.toString(), clazz));
+        for (String raw : rawSet) {
+            result.add(decode(raw, type));
         }
         return result;
     }
 
     public <T> void removeFromSet(String key, T value) throws JsonProcessingException {
         String json = objectMapper.writeValueAsString(value);
-        redisTemplate.opsForSet().remove(key, json);
+        stringRedisTemplate.opsForSet().remove(key, json);
+    }
+
+    /**
+     * Đọc nhiều field của một hash (HMGET), giữ thứ tự {@code fields}; field không tồn tại là null.
+     */
+    public List<String> getHashFields(String key, List<String> fields) {
+        List<Object> values = stringRedisTemplate.opsForHash().multiGet(key, new ArrayList<>(fields));
+        List<String> result = new ArrayList<>(fields.size());
+        for (int i = 0; i < fields.size(); i++) {
+            Object value = values != null && i < values.size() ? values.get(i) : null;
+            result.add(value != null ? value.toString() : null);
+        }
+        return result;
     }
 
     public void setTTL(String key, Duration ttl) {
-        redisTemplate.expire(key, ttl);
+        stringRedisTemplate.expire(key, ttl);
+        invalidateNear(key);
     }
 
     public void delete(String key) {
-        redisTemplate.delete(key);
+        stringRedisTemplate.delete(key);
+        invalidateNear(key);
     }
 
-    public <T> void saveValue(String key, T value) throws JsonProcessingException {
-        String json = objectMapper.writeValueAsString(value);
-        redisTemplate.opsForValue().set(key, json);
+    public boolean hasKey(String key) {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(key));
     }
 
-    public boolean hasKey(String key) {
-        return Boolean.TRUE.equals(redisTemplate.hasKey(key));
+    private <T> T getValue(String key, JavaType type) throws JsonProcessingException {
+        if (nearCache == null || !nearCache.handles(key)) {
+            String raw = stringRedisTemplate.opsForValue().get(key);
+            return raw == null ? null : decode(raw, type);
+        }
+        return this.<T>multiGet(List.of(key), type).get(key);
     }
-}
 
+    private <T> Map<String, T> multiGet(Collection<String> keys, JavaType type) throws JsonProcessingException {
+        Map<String, T> result = new LinkedHashMap<>();
+        List<String> remoteKeys = new ArrayList<>();
+        for (String key : new LinkedHashSet<>(keys)) {
+            JsonNode cached = nearCache != null ? nearCache.get(key, type) : null;
+            if (cached != null) {
+                result.put(key, objectMapper.treeToValue(cached, type));
+            } else {
+                remoteKeys.add(key);
+            }
+        }
+        if (remoteKeys.isEmpty()) {
+            return result;
+        }
+
+        Set<String> nearKeys = nearCache == null ? Set.of()
+                : remoteKeys.stream().filter(nearCache::handles).collect(Collectors.toSet());
+        if (nearKeys.isEmpty()) {
+            List<String> rawValues = stringRedisTemplate.opsForValue().multiGet(remoteKeys);
+            for (int i = 0; i < remoteKeys.size(); i++) {
+                String raw = rawValues != null ? rawValues.get(i) : null;
+                if (raw != null) {
+                    result.put(remoteKeys.get(i), decode(raw, type));
+                }
+            }
+            return result;
+        }
+
+        // GET kèm PTTL cho key thuộc near cache trong cùng một pipeline, để entry local không sống lâu hơn trên Redis
+        long token = nearCache.token();
+        List<Object> replies = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> ops = (RedisOperations<String, String>) operations;
+                for (String key : remoteKeys) {
+                    ops.opsForValue().get(key);
+                    if (nearKeys.contains(key)) {
+                        ops.getExpire(key, TimeUnit.MILLISECONDS);
+                    }
+                }
+                return null;
+            }
+        });
+        int index = 0;
+        for (String key : remoteKeys) {
+            Object raw = replies.get(index++);
+            Object ttl = nearKeys.contains(key) ? replies.get(index++) : null;
+            if (raw == null) {
+                continue;
+            }
+            JsonNode node = parse(raw.toString(), type);
+            result.put(key, objectMapper.treeToValue(node, type));
+            if (ttl instanceof Long ttlMillis) {
+                nearCache.put(key, type, node, ttlMillis, token);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Giá trị ghi bởi bản cũ là JSON nằm trong một chuỗi JSON (serializer của RedisTemplate bọc thêm một lớp).
+     * Chuỗi đó được parse thêm một lần nếu nội dung bên trong là JSON phù hợp với kiểu cần đọc.
+     */
+    private <T> T decode(String raw, JavaType type) throws JsonProcessingException {
+        return objectMapper.treeToValue(parse(raw, type), type);
+    }
+
+    private JsonNode parse(String raw, JavaType type) throws JsonProcessingException {
+        JsonNode node = objectMapper.readTree(raw);
+        if (node.isTextual()) {
+            JsonNode inner = unwrapLegacy(node.textValue(), type);
+            if (inner != null) {
+                node = inner;
+            }
+        }
+        return node;
+    }
+
+    private JsonNode unwrapLegacy(String text, JavaType type) {
+        if (text.isEmpty() || "{[\"".indexOf(text.charAt(0)) < 0) {
+            return null;
+        }
+        try {
+            JsonNode inner = objectMapper.readTree(text);
+            boolean stringTarget = type.isTypeOrSubTypeOf(CharSequence.class);
+            return stringTarget == inner.isTextual() ? inner : null;
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private void invalidateNear(String key) {
+        if (nearCache != null) {
+            nearCache.invalidate(key);
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.fptu.sep490.commonlibrary.redis;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.listener.Topic;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link RedisMessageListenerContainer} không làm hỏng quá trình khởi động khi Redis chưa kết nối được:
+ * khi đã có listener, {@link #start()} chỉ subscribe khi PING thành công, nếu không thì thử lại sau {@code retryInterval}
+ * trên luồng riêng.
+ * Sau khi đã subscribe, mất kết nối được container tự phục hồi như bình thường.
+ * <p>
+ * Listener chạy trên một pool giới hạn thay vì {@code SimpleAsyncTaskExecutor} mặc định (một thread mới cho mỗi message);
+ * khi hàng đợi đầy, luồng nhận message tự chạy listener để giảm tốc độ đọc thay vì bỏ message.
+ */
+@Slf4j
+public class ResilientRedisMessageListenerContainer extends RedisMessageListenerContainer {
+
+    private final RedisConnectionFactory connectionFactory;
+    private final Duration retryInterval;
+    private final ThreadPoolTaskExecutor listenerExecutor;
+    private final ScheduledThreadPoolExecutor subscriptionExecutor;
+    private final Object lifecycleMonitor = new Object();
+    private ScheduledFuture<?> pendingStart;
+    private boolean startRequested;
+    private volatile boolean hasListeners;
+
+    public ResilientRedisMessageListenerContainer(RedisConnectionFactory connectionFactory,
+                                                  int listenerThreads,
+                                                  int listenerQueueCapacity,
+                                                  Duration retryInterval) {
+        this.connectionFactory = connectionFactory;
+        this.retryInterval = retryInterval;
+        this.listenerExecutor = new ThreadPoolTaskExecutor();
+        listenerExecutor.setCorePoolSize(listenerThreads);
+        listenerExecutor.setMaxPoolSize(listenerThreads);
+        listenerExecutor.setQueueCapacity(listenerQueueCapacity);
+        listenerExecutor.setThreadNamePrefix("redis-listener-");
+        listenerExecutor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        listenerExecutor.initialize();
+        // ScheduledExecutorService để container chờ backoff khi phục hồi subscription mà không chặn luồng;
+        // hai thread để lần thử start đang chờ subscribe không chặn việc phục hồi của container
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("redis-subscription-");
+        threadFactory.setDaemon(true);
+        this.subscriptionExecutor = new ScheduledThreadPoolExecutor(2, threadFactory);
+        setConnectionFactory(connectionFactory);
+        setTaskExecutor(listenerExecutor);
+        setSubscriptionExecutor(subscriptionExecutor);
+    }
+
+    @Override
+    public void start() {
+        synchronized (lifecycleMonitor) {
+            startRequested = true;
+        }
+        tryStart();
+    }
+
+    private void tryStart() {
+        synchronized (lifecycleMonitor) {
+            pendingStart = null;
+            if (!startRequested || isRunning()) {
+                return;
+            }
+            try {
+                // Chưa có listener thì lớp cha không kết nối Redis khi start
+                if (hasListeners) {
+                    ping();
+                }
+                super.start();
+                log.info("Redis message listener container started");
+            } catch (RuntimeException e) {
+                // Gọi thẳng bản của lớp cha để không hủy yêu cầu start
+                super.stop(() -> {
+                });
+                log.warn("Redis is not available, retry subscribing in {}: {}", retryInterval, e.getMessage());
+                pendingStart = subscriptionExecutor.schedule(this::tryStart, retryInterval.toMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    private void ping() {
+        try (RedisConnection connection = connectionFactory.getConnection()) {
+            connection.ping();
+        }
+    }
+
+    // addMessageListener(listener, topic) của lớp cha cũng đi qua hàm này
+    @Override
+    public void addMessageListener(MessageListener listener, Collection<? extends Topic> topics) {
+        hasListeners = true;
+        super.addMessageListener(listener, topics);
+    }
+
+    // stop() của lớp cha cũng đi qua hàm này
+    @Override
+    public void stop(Runnable callback) {
+        synchronized (lifecycleMonitor) {
+            startRequested = false;
+            if (pendingStart != null) {
+                pendingStart.cancel(false);
+                pendingStart = null;
+            }
+        }
+        super.stop(callback);
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        try {
+            super.destroy();
+        } finally {
+            subscriptionExecutor.shutdownNow();
+            listenerExecutor.shutdown();
+        }
+    }
+}
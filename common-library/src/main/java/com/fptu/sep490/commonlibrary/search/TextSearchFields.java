@@ -0,0 +1,67 @@
+package com.fptu.sep490.commonlibrary.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Các cột text của một bảng được tìm kiếm bằng {@link TextSearchQuery}, cùng DDL index tương ứng:
+ * <ul>
+ *     <li>GIN trigram ({@code pg_trgm}) trên {@code lower(col)} cho từng cột: tìm chuỗi con và gõ sai</li>
+ *     <li>GIN {@code tsvector} trên toàn bộ các cột: tìm theo từ / tiền tố</li>
+ * </ul>
+ * Biểu thức trong index và trong câu truy vấn được sinh cùng một chỗ để planner khớp được index.
+ * Index là index biểu thức nên PostgreSQL tự cập nhật khi insert / update, không cần cột phụ.
+ */
+public record TextSearchFields(String table, List<String> columns) {
+    // 'simple': không stem, dùng được cho cả nội dung tiếng Anh lẫn nghĩa tiếng Việt
+    static final String TS_CONFIG = "'simple'";
+
+    public TextSearchFields {
+        if (columns.isEmpty()) {
+            throw new IllegalArgumentException("At least one column is required");
+        }
+        columns = List.copyOf(columns);
+    }
+
+    public static TextSearchFields of(String table, String... columns) {
+        return new TextSearchFields(table, List.of(columns));
+    }
+
+    /**
+     * @return DDL của toàn bộ index (trigram từng cột + tsvector), idempotent
+     */
+    public List<String> indexStatements() {
+        List<String> statements = new ArrayList<>(trigramIndexStatements());
+        statements.add(fullTextIndexStatement());
+        return statements;
+    }
+
+    public List<String> trigramIndexStatements() {
+        List<String> statements = new ArrayList<>();
+        for (String column : columns) {
+            statements.add("CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_" + table + "_" + column + "_trgm ON "
+                    + table + " USING gin (" + lower(null, column) + " gin_trgm_ops)");
+        }
+        return statements;
+    }
+
+    public String fullTextIndexStatement() {
+        return "CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_" + table + "_fts ON "
+                + table + " USING gin (" + document(null) + ")";
+    }
+
+    String lower(String alias, String column) {
+        return "lower(" + qualify(alias, column) + ")";
+    }
+
+    String document(String alias) {
+        return "to_tsvector(" + TS_CONFIG + ", " + columns.stream()
+                .map(column -> "coalesce(" + qualify(alias, column) + ", '')")
+                .collect(Collectors.joining(" || ' ' || ")) + ")";
+    }
+
+    private static String qualify(String alias, String column) {
+        return alias == null ? column : alias + "." + column;
+    }
+}
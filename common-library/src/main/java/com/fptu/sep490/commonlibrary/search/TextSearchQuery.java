@@ -0,0 +1,198 @@
+package com.fptu.sep490.commonlibrary.search;
+
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Sinh điều kiện khớp và biểu thức xếp hạng (SQL native, PostgreSQL) cho một từ khóa trên {@link TextSearchFields}.
+ * Một dòng khớp nếu:
+ * <ul>
+ *     <li>mọi từ trong từ khóa là tiền tố của một từ trong các cột ({@code tsvector @@ 'tu:* & ...'})</li>
+ *     <li>hoặc một cột chứa nguyên từ khóa ({@code lower(col) LIKE '%kw%'}, như trước đây)</li>
+ *     <li>hoặc từ khóa gần giống một đoạn trong cột ({@code kw <% lower(col)}, chịu được gõ sai)</li>
+ * </ul>
+ * Cả ba đều dùng được GIN index do {@link TextSearchFields#indexStatements()} tạo.
+ * Điểm = khớp chính xác cột đầu tiên + {@code ts_rank} + {@code word_similarity} cao nhất giữa các cột.
+ * Tham số bind lấy từ {@link #parameters()}.
+ */
+public final class TextSearchQuery {
+    public static final String TEXT_PARAM = "searchText";
+    public static final String LIKE_PARAM = "searchLike";
+    public static final String PREFIX_PARAM = "searchPrefix";
+
+    private final TextSearchFields fields;
+    private final String alias;
+    private final String text;
+    private final String prefixQuery;
+
+    private TextSearchQuery(TextSearchFields fields, String alias, String text) {
+        this.fields = fields;
+        this.alias = alias;
+        this.text = text;
+        this.prefixQuery = text == null ? "" : prefixQuery(text);
+    }
+
+    /**
+     * @param alias alias của bảng trong câu truy vấn
+     */
+    public static TextSearchQuery of(TextSearchFields fields, String alias, String keyword) {
+        return new TextSearchQuery(fields, alias, normalize(keyword));
+    }
+
+    /**
+     * Pageable cho API tìm kiếm. Có từ khóa mà không chỉ định {@code sortBy}: không sort, để xếp theo độ liên quan;
+     * còn lại sort theo {@code sortBy} (mặc định {@code createdAt}), {@code sortDirection} mặc định tăng dần.
+     * {@code sortBy} phải nằm trong {@code sortColumns} của repository, nếu không {@link #orderBy} từ chối.
+     */
+    public static Pageable pageable(int page, int size, String sortBy, String sortDirection, String keyword) {
+        if ((sortBy == null || sortBy.isBlank()) && keyword != null && !keyword.isBlank()) {
+            return PageRequest.of(page, size);
+        }
+        if (sortBy == null || sortBy.isBlank()) {
+            sortBy = "createdAt";
+        }
+        Sort sort = "desc".equalsIgnoreCase(sortDirection)
+                ? Sort.by(sortBy).descending()
+                : Sort.by(sortBy).ascending();
+        return PageRequest.of(page, size, sort);
+    }
+
+    public boolean isEmpty() {
+        return text == null;
+    }
+
+    /**
+     * @return điều kiện khớp, {@code TRUE} nếu không có từ khóa
+     */
+    public String predicate() {
+        if (isEmpty()) {
+            return "TRUE";
+        }
+        List<String> conditions = new ArrayList<>();
+        if (!prefixQuery.isEmpty()) {
+            conditions.add(fields.document(alias) + " @@ " + tsQuery());
+        }
+        for (String column : fields.columns()) {
+            conditions.add(fields.lower(alias, column) + " LIKE :" + LIKE_PARAM + " ESCAPE '\\'");
+        }
+        for (String column : fields.columns()) {
+            conditions.add(":" + TEXT_PARAM + " <% " + fields.lower(alias, column));
+        }
+        return "(" + String.join(" OR ", conditions) + ")";
+    }
+
+    /**
+     * @return điểm liên quan (càng lớn càng khớp), chỉ dùng khi có từ khóa
+     */
+    public String rank() {
+        if (isEmpty()) {
+            return "0";
+        }
+        StringBuilder rank = new StringBuilder("(CASE WHEN ")
+                .append(fields.lower(alias, fields.columns().get(0)))
+                .append(" = :").append(TEXT_PARAM).append(" THEN 1 ELSE 0 END");
+        if (!prefixQuery.isEmpty()) {
+            rank.append(" + ts_rank(").append(fields.document(alias)).append(", ").append(tsQuery()).append(")");
+        }
+        rank.append(" + GREATEST(").append(fields.columns().stream()
+                .map(column -> "word_similarity(:" + TEXT_PARAM + ", " + fields.lower(alias, column) + ")")
+                .collect(Collectors.joining(", "))).append("))");
+        return rank.toString();
+    }
+
+    public Map<String, Object> parameters() {
+        Map<String, Object> parameters = new HashMap<>();
+        if (!isEmpty()) {
+            parameters.put(TEXT_PARAM, text);
+            parameters.put(LIKE_PARAM, "%" + escapeLike(text) + "%");
+            if (!prefixQuery.isEmpty()) {
+                parameters.put(PREFIX_PARAM, prefixQuery);
+            }
+        }
+        return parameters;
+    }
+
+    /**
+     * Thứ tự: theo {@code sort} nếu có, rồi theo điểm liên quan (khi có từ khóa), cuối cùng {@code tieBreaker}.
+     *
+     * @param sortColumns thuộc tính entity -> biểu thức cột được phép sort; thuộc tính khác bị từ chối
+     */
+    public String orderBy(Sort sort, Map<String, String> sortColumns, String tieBreaker) {
+        List<String> orders = new ArrayList<>();
+        for (Sort.Order order : sort) {
+            String column = sortColumns.get(order.getProperty());
+            if (column == null) {
+                throw new IllegalArgumentException("Unsupported sort property: " + order.getProperty());
+            }
+            orders.add(column + (order.isAscending() ? " ASC" : " DESC"));
+        }
+        if (!isEmpty()) {
+            orders.add(rank() + " DESC");
+        }
+        orders.add(tieBreaker);
+        return String.join(", ", orders);
+    }
+
+    /**
+     * Câu truy vấn lấy id của một trang kết quả; entity được tải sau bằng {@code IN (:ids)}
+     * và sắp lại bằng {@link #inIdOrder}.
+     *
+     * @param fromWhere phần {@code FROM ... WHERE ...} đã chứa {@link #predicate()}
+     * @param idColumn  cột id, đồng thời là tiêu chí phụ để thứ tự ổn định giữa các trang
+     */
+    public String selectIds(String idColumn, String fromWhere, Pageable pageable, Map<String, String> sortColumns) {
+        String sql = "SELECT " + idColumn + " " + fromWhere
+                + " ORDER BY " + orderBy(pageable.getSort(), sortColumns, idColumn);
+        if (pageable.isPaged()) {
+            sql += " LIMIT " + pageable.getPageSize() + " OFFSET " + pageable.getOffset();
+        }
+        return sql;
+    }
+
+    /**
+     * Sắp xếp entity tải bằng {@code IN (:ids)} theo đúng thứ tự id của câu truy vấn xếp hạng.
+     */
+    public static <T, ID> List<T> inIdOrder(List<ID> ids, Collection<T> entities, Function<T, ID> idOf) {
+        Map<ID, T> byId = new HashMap<>();
+        for (T entity : entities) {
+            byId.put(idOf.apply(entity), entity);
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).toList();
+    }
+
+    private String tsQuery() {
+        return "to_tsquery(" + TextSearchFields.TS_CONFIG + ", :" + PREFIX_PARAM + ")";
+    }
+
+    static String normalize(String keyword) {
+        if (keyword == null) {
+            return null;
+        }
+        String normalized = keyword.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return normalized.isEmpty() ? null : normalized;
+    }
+
+    // Chỉ giữ chữ / số nên không thể chèn toán tử tsquery
+    static String prefixQuery(String text) {
+        return Arrays.stream(text.split("[^\\p{L}\\p{N}]+"))
+                .filter(token -> !token.isEmpty())
+                .map(token -> token + ":*")
+                .collect(Collectors.joining(" & "));
+    }
+
+    static String escapeLike(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
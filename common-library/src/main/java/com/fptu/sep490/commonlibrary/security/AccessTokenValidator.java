@@ -0,0 +1,194 @@
+package com.fptu.sep490.commonlibrary.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.AntPathMatcher;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Kiểm tra access token cho {@code AuthTokenInterceptor} mà không gọi Keycloak trên mỗi request:
+ * <ul>
+ *     <li>Chữ ký và {@code exp} được kiểm tra local bằng {@link JwtDecoder} của resource server
+ *     (JWKS lấy từ issuer, được cache và tải lại khi gặp {@code kid} mới lúc Keycloak xoay khóa)</li>
+ *     <li>Kết quả được cache theo SHA-256 của token, tối đa {@code maxSize} entry và không sống quá {@code exp}</li>
+ *     <li>Chỉ các route nhạy cảm với thu hồi token ({@code revocationSensitivePaths}) mới gọi introspect,
+ *     kết quả introspect được cache tối đa {@code introspectionTtl}</li>
+ * </ul>
+ * Nếu không kiểm tra local được (không tải được JWKS...) thì dùng introspect như trước.
+ */
+@Slf4j
+@Component
+public class AccessTokenValidator {
+    private static final AntPathMatcher PATH_MATCHER = new AntPathMatcher();
+
+    private final ObjectProvider<JwtDecoder> jwtDecoder;
+    private final List<String> revocationSensitivePaths;
+    private final Duration introspectionTtl;
+    private final Clock clock;
+    private final Cache<String, Verdict> verdicts;
+
+    private final Counter cached;
+    private final Counter local;
+    private final Counter remote;
+
+    @Autowired
+    public AccessTokenValidator(ObjectProvider<JwtDecoder> jwtDecoder,
+                                MeterRegistry meterRegistry,
+                                @Value("${token-validation.revocation-sensitive-paths:}") List<String> revocationSensitivePaths,
+                                @Value("${token-validation.introspection-ttl:PT30S}") Duration introspectionTtl,
+                                @Value("${token-validation.cache-size:10000}") long maxSize) {
+        this(jwtDecoder, meterRegistry, revocationSensitivePaths, introspectionTtl, maxSize, Clock.systemUTC());
+    }
+
+    AccessTokenValidator(ObjectProvider<JwtDecoder> jwtDecoder,
+                         MeterRegistry meterRegistry,
+                         List<String> revocationSensitivePaths,
+                         Duration introspectionTtl,
+                         long maxSize,
+                         Clock clock) {
+        this.jwtDecoder = jwtDecoder;
+        this.revocationSensitivePaths = revocationSensitivePaths.stream().filter(p -> !p.isBlank()).toList();
+        this.introspectionTtl = introspectionTtl;
+        this.clock = clock;
+        this.verdicts = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new Expiry<String, Verdict>() {
+                    @Override
+                    public long expireAfterCreate(String key, Verdict verdict, long currentTime) {
+                        return verdict.ttlNanos(clock);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Verdict verdict, long currentTime, long currentDuration) {
+                        return verdict.ttlNanos(clock);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Verdict verdict, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .build();
+        this.cached = validations(meterRegistry, "cached");
+        this.local = validations(meterRegistry, "local");
+        this.remote = validations(meterRegistry, "remote");
+    }
+
+    public boolean isRevocationSensitive(String path) {
+        for (String pattern : revocationSensitivePaths) {
+            if (PATH_MATCHER.match(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param path        đường dẫn trong ứng dụng (không gồm context path), dùng để xác định route nhạy cảm
+     * @param introspect  gọi introspect của Keycloak, trả về {@code active}
+     * @return token còn hiệu lực hay không
+     */
+    public boolean isActive(String accessToken, String path, Predicate<String> introspect) {
+        boolean needsIntrospection = isRevocationSensitive(path);
+        String key = hash(accessToken);
+        Verdict verdict = verdicts.getIfPresent(key);
+        if (verdict != null && (verdict.introspected() || !needsIntrospection || !verdict.active())) {
+            cached.increment();
+            return verdict.active();
+        }
+
+        Instant expiresAt = null;
+        if (verdict != null) {
+            expiresAt = verdict.expiresAt();
+        } else {
+            try {
+                expiresAt = decode(accessToken).getExpiresAt();
+            } catch (BadJwtException e) {
+                // Sai chữ ký / hết hạn: không cần hỏi Keycloak
+                local.increment();
+                log.debug("Access token rejected locally: {}", e.getMessage());
+                return false;
+            } catch (JwtException e) {
+                log.warn("Local token verification unavailable, falling back to introspection: {}", e.getMessage());
+                needsIntrospection = true;
+            }
+        }
+        if (expiresAt == null) {
+            needsIntrospection = true;
+        }
+
+        if (!needsIntrospection) {
+            local.increment();
+            verdicts.put(key, new Verdict(true, false, expiresAt, expiresAt));
+            return true;
+        }
+
+        remote.increment();
+        boolean active = introspect.test(accessToken);
+        Instant now = clock.instant();
+        Instant validUntil = now.plus(introspectionTtl);
+        if (expiresAt != null && expiresAt.isBefore(validUntil)) {
+            validUntil = expiresAt;
+        }
+        verdicts.put(key, new Verdict(active, true, expiresAt, validUntil));
+        return active;
+    }
+
+    private Jwt decode(String accessToken) {
+        JwtDecoder decoder = jwtDecoder.getIfAvailable();
+        if (decoder == null) {
+            throw new JwtException("No JwtDecoder configured");
+        }
+        return decoder.decode(accessToken);
+    }
+
+    static String hash(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static Counter validations(MeterRegistry meterRegistry, String source) {
+        return Counter.builder("auth.token.validations")
+                .tag("source", source)
+                .register(meterRegistry);
+    }
+
+    /**
+     * @param introspected kết quả đã được Keycloak xác nhận (dùng được cho route nhạy cảm)
+     * @param expiresAt    {@code exp} của token, null nếu không đọc được
+     * @param validUntil   thời điểm entry hết hạn trong cache
+     */
+    private record Verdict(boolean active, boolean introspected, Instant expiresAt, Instant validUntil) {
+        long ttlNanos(Clock clock) {
+            if (validUntil == null) {
+                return 0;
+            }
+            return Math.max(0, Duration.between(clock.instant(), validUntil).toNanos());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.fptu.sep490.commonlibrary.security;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Gộp các lần đổi refresh token của cùng một phiên thành một lời gọi Keycloak:
+ * <ul>
+ *     <li>Trong một node: các request cùng refresh token chờ chung một {@link CompletableFuture}</li>
+ *     <li>Giữa các service: node đầu tiên giữ lock {@code token-refresh:lock:<hash>} trên Redis ({@code lockTtl}),
+ *     ghi cặp token mới vào {@code token-refresh:result:<hash>} ({@code resultTtl}); node khác đợi và đọc kết quả đó</li>
+ * </ul>
+ * Key là SHA-256 của refresh token cũ. Redis lỗi thì gọi Keycloak trực tiếp như trước.
+ */
+@Slf4j
+@Component
+public class RefreshTokenCoordinator {
+    static final String LOCK_KEY = "token-refresh:lock:";
+    static final String RESULT_KEY = "token-refresh:result:";
+    static final long POLL_INTERVAL_MS = 50;
+
+    // Chỉ xóa lock nếu vẫn là của mình
+    static final RedisScript<Long> RELEASE_LOCK = new DefaultRedisScript<>("""
+            if redis.call('GET', KEYS[1]) == ARGV[1] then
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration lockTtl;
+    private final Duration resultTtl;
+    private final Map<String, CompletableFuture<KeyCloakTokenResponse>> inFlight = new ConcurrentHashMap<>();
+
+    private final Counter granted;
+    private final Counter shared;
+
+    public RefreshTokenCoordinator(StringRedisTemplate stringRedisTemplate,
+                                   ObjectMapper objectMapper,
+                                   MeterRegistry meterRegistry,
+                                   @Value("${token-refresh.lock-ttl:PT10S}") Duration lockTtl,
+                                   @Value("${token-refresh.result-ttl:PT30S}") Duration resultTtl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.objectMapper = objectMapper;
+        this.lockTtl = lockTtl;
+        this.resultTtl = resultTtl;
+        this.granted = refreshes(meterRegistry, "granted");
+        this.shared = refreshes(meterRegistry, "shared");
+    }
+
+    /**
+     * @param grant gọi grant {@code refresh_token} của Keycloak; chỉ được gọi bởi request dẫn đầu
+     * @return cặp token mới, giống nhau cho mọi request cùng refresh token trong {@code resultTtl}
+     */
+    public KeyCloakTokenResponse refresh(String refreshToken, Supplier<KeyCloakTokenResponse> grant) {
+        String key = AccessTokenValidator.hash(refreshToken);
+        CompletableFuture<KeyCloakTokenResponse> future = new CompletableFuture<>();
+        CompletableFuture<KeyCloakTokenResponse> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            shared.increment();
+            return join(existing);
+        }
+        try {
+            future.complete(refreshShared(key, grant));
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, future);
+        }
+        return join(future);
+    }
+
+    private KeyCloakTokenResponse refreshShared(String key, Supplier<KeyCloakTokenResponse> grant) {
+        String lockKey = LOCK_KEY + key;
+        String owner = UUID.randomUUID().toString();
+        boolean locked;
+        try {
+            KeyCloakTokenResponse cached = awaitResultOrLock(key, lockKey, owner);
+            if (cached != null) {
+                shared.increment();
+                return cached;
+            }
+            locked = true;
+        } catch (LockTimeoutException e) {
+            log.warn("Timed out waiting for concurrent token refresh, refreshing directly");
+            locked = false;
+        } catch (RefreshInterruptedException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            log.warn("Cannot coordinate token refresh through Redis: {}", e.getMessage());
+            return grant(grant);
+        }
+
+        try {
+            KeyCloakTokenResponse response = grant(grant);
+            writeResult(key, response);
+            return response;
+        } finally {
+            if (locked) {
+                releaseLock(lockKey, owner);
+            }
+        }
+    }
+
+    /**
+     * @return kết quả service khác vừa ghi, hoặc null nếu đã giành được lock
+     */
+    private KeyCloakTokenResponse awaitResultOrLock(String key, String lockKey, String owner) {
+        long deadline = System.nanoTime() + lockTtl.toNanos();
+        while (true) {
+            KeyCloakTokenResponse cached = readResult(key);
+            if (cached != null) {
+                return cached;
+            }
+            if (Boolean.TRUE.equals(stringRedisTemplate.opsForValue().setIfAbsent(lockKey, owner, lockTtl))) {
+                return null;
+            }
+            // Service khác đang đổi token: chờ kết quả, hoặc lock hết hạn nếu service đó lỗi
+            if (System.nanoTime() >= deadline) {
+                throw new LockTimeoutException();
+            }
+            sleep();
+        }
+    }
+
+    private void releaseLock(String lockKey, String owner) {
+        try {
+            stringRedisTemplate.execute(RELEASE_LOCK, List.of(lockKey), owner);
+        } catch (RuntimeException e) {
+            log.warn("Cannot release token refresh lock: {}", e.getMessage());
+        }
+    }
+
+    private KeyCloakTokenResponse grant(Supplier<KeyCloakTokenResponse> grant) {
+        granted.increment();
+        return grant.get();
+    }
+
+    private KeyCloakTokenResponse readResult(String key) {
+        String json = stringRedisTemplate.opsForValue().get(RESULT_KEY + key);
+        if (json == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(json, KeyCloakTokenResponse.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot read shared token refresh result: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void writeResult(String key, KeyCloakTokenResponse response) {
+        try {
+            stringRedisTemplate.opsForValue().set(RESULT_KEY + key, objectMapper.writeValueAsString(response), resultTtl);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Cannot share token refresh result through Redis: {}", e.getMessage());
+        }
+    }
+
+    private static KeyCloakTokenResponse join(CompletableFuture<KeyCloakTokenResponse> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static void sleep() {
+        try {
+            Thread.sleep(POLL_INTERVAL_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RefreshInterruptedException();
+        }
+    }
+
+    private static Counter refreshes(MeterRegistry meterRegistry, String outcome) {
+        return Counter.builder("auth.token.refreshes")
+                .tag("outcome", outcome)
+                .register(meterRegistry);
+    }
+
+    static class RefreshInterruptedException extends RuntimeException {
+        RefreshInterruptedException() {
+            super("Interrupted while waiting for token refresh");
+        }
+    }
+
+    private static class LockTimeoutException extends RuntimeException {
+    }
+}
@@ -0,0 +1,204 @@
+package com.fptu.sep490.fileservice.component;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache trên đĩa local cho các file được tải nhiều (audio bài nghe):
+ * <ul>
+ *     <li>Key gồm fileId và version nên file bị upload lại sẽ có key mới, không cần invalidate</li>
+ *     <li>Tổng dung lượng bị giới hạn bởi {@code maxBytes}; vượt quá thì bỏ file lâu không được đọc nhất</li>
+ *     <li>File lớn hơn {@code maxEntryBytes} không được cache</li>
+ *     <li>Lần miss chỉ đặt lịch tải nền (mỗi key tối đa một lần tải cùng lúc), request hiện tại vẫn đọc từ upstream</li>
+ * </ul>
+ * File đang tải được ghi ra {@code .tmp} rồi đổi tên nguyên tử, nên file trong cache luôn đầy đủ.
+ */
+@Slf4j
+@Component
+public class FileDiskCache {
+    private static final String TMP_SUFFIX = ".tmp";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final long maxBytes;
+    private final long maxEntryBytes;
+    private final ExecutorService fillExecutor;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Set<String> filling = ConcurrentHashMap.newKeySet();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    public FileDiskCache(@Value("${file-cache.dir:${java.io.tmpdir}/file-service-cache}") String directory,
+                         @Value("${file-cache.max-bytes:2147483648}") long maxBytes,
+                         @Value("${file-cache.max-entry-bytes:104857600}") long maxEntryBytes,
+                         @Value("${file-cache.fill-parallelism:2}") int fillParallelism) {
+        this.directory = Path.of(directory);
+        this.maxBytes = maxBytes;
+        this.maxEntryBytes = maxEntryBytes;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.fillExecutor = Executors.newFixedThreadPool(fillParallelism, runnable -> {
+            Thread thread = new Thread(runnable, "file-cache-fill-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Nạp lại các file còn trên đĩa từ lần chạy trước, xóa file tải dở.
+     */
+    @PostConstruct
+    public void init() throws IOException {
+        Files.createDirectories(directory);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(TMP_SUFFIX)) {
+                    Files.deleteIfExists(file);
+                    continue;
+                }
+                long size = Files.size(file);
+                entries.put(name, new Entry(file, size, Files.getLastModifiedTime(file).toMillis()));
+                totalBytes.addAndGet(size);
+            }
+        }
+        evict();
+        log.info("File cache at {} holds {} files ({} bytes)", directory, entries.size(), totalBytes.get());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fillExecutor.shutdownNow();
+    }
+
+    /**
+     * @return file đã cache, null nếu chưa có
+     */
+    public Path get(String key) {
+        Entry entry = entries.get(key);
+        if (entry == null) {
+            return null;
+        }
+        if (!Files.exists(entry.path)) {
+            remove(key, entry);
+            return null;
+        }
+        entry.lastAccess = System.currentTimeMillis();
+        return entry.path;
+    }
+
+    public boolean isCacheable(long bytes) {
+        return bytes > 0 && bytes <= maxEntryBytes;
+    }
+
+    /**
+     * Đặt lịch tải file vào cache; bỏ qua nếu đã có, đang tải, hoặc file quá lớn.
+     */
+    public void fillAsync(String key, long expectedBytes, Callable<InputStream> source) {
+        if (!isCacheable(expectedBytes) || entries.containsKey(key) || !filling.add(key)) {
+            return;
+        }
+        try {
+            fillExecutor.execute(() -> {
+                try {
+                    fill(key, source);
+                } catch (Exception e) {
+                    log.warn("Could not cache file {}: {}", key, e.getMessage());
+                } finally {
+                    filling.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            filling.remove(key);
+        }
+    }
+
+    private void fill(String key, Callable<InputStream> source) throws Exception {
+        Path target = directory.resolve(key);
+        Path tmp = directory.resolve(key + TMP_SUFFIX);
+        long size;
+        try (InputStream in = source.call()) {
+            size = copyBounded(in, tmp);
+        } catch (Exception e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        Entry previous = entries.put(key, new Entry(target, size, System.currentTimeMillis()));
+        totalBytes.addAndGet(size - (previous != null ? previous.size : 0));
+        log.debug("Cached file {} ({} bytes)", key, size);
+        evict();
+    }
+
+    // Ghi theo buffer cố định; dừng nếu upstream trả nhiều hơn giới hạn
+    private long copyBounded(InputStream in, Path tmp) throws IOException {
+        long size = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (var out = Files.newOutputStream(tmp)) {
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                size += read;
+                if (size > maxEntryBytes) {
+                    throw new IOException("File exceeds cache entry limit");
+                }
+                out.write(buffer, 0, read);
+            }
+        }
+        return size;
+    }
+
+    private void evict() {
+        while (totalBytes.get() > maxBytes) {
+            Map.Entry<String, Entry> oldest = entries.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().lastAccess))
+                    .orElse(null);
+            if (oldest == null) {
+                return;
+            }
+            remove(oldest.getKey(), oldest.getValue());
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        if (!entries.remove(key, entry)) {
+            return;
+        }
+        totalBytes.addAndGet(-entry.size);
+        try {
+            // Request đang đọc file vẫn giữ được file descriptor đã mở
+            Files.deleteIfExists(entry.path);
+        } catch (IOException e) {
+            log.warn("Could not delete cached file {}", entry.path, e);
+        }
+    }
+
+    private static final class Entry {
+        final Path path;
+        final long size;
+        volatile long lastAccess;
+
+        Entry(Path path, long size, long lastAccess) {
+            this.path = path;
+            this.size = size;
+            this.lastAccess = lastAccess;
+        }
+    }
+}
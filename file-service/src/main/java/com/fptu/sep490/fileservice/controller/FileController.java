@@ -17,6 +17,7 @@ import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.http.ResponseEntity;
 import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -39,39 +40,14 @@ public class FileController {
     @GetMapping("/download/{id}")
     @Operation(
             summary = "Download a file by ID",
-            description = "Retrieve a file's content by its unique identifier."
+            description = "Stream a file's content by its unique identifier. Supports Range requests and ETag revalidation."
     )
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<byte[]> getFileById(@PathVariable UUID id) {
-        try {
-            File metadata = fileService.getMetadata(id);
-            byte[] data = fileService.download(id);
-
-            String format = metadata.getFormat();
-            MediaType mediaType;
-            if (metadata.getResourceType().equals("image")) {
-                mediaType = MediaType.parseMediaType("image/" + format);
-            } else if (metadata.getResourceType().equals("video")) {
-                mediaType = MediaType.parseMediaType("video/" + format);
-            } else {
-                mediaType = MediaType.APPLICATION_OCTET_STREAM;
-            }
-            String filename = id.toString() + "." + format;
-
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(mediaType);
-            headers.setContentDisposition(
-                    ContentDisposition
-                            .attachment()
-                            .filename(filename, StandardCharsets.UTF_8)
-                            .build()
-            );
-            return new ResponseEntity<>(data, headers, HttpStatus.OK);
-        } catch (ResourceNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    public void getFileById(@PathVariable UUID id, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        File metadata = fileService.getMetadata(id);
+        writeFileHeaders(metadata, response);
+        fileService.stream(metadata, request, response);
     }
 
     @DeleteMapping("/{id}")
@@ -94,31 +70,26 @@ public class FileController {
     @GetMapping("/public")
     @Operation(
             summary = "Download a file by public URL",
-            description = "Retrieve a file's content using its public URL."
+            description = "Stream a file's content using its public URL. Supports Range requests and ETag revalidation."
     )
     @PreAuthorize("isAuthenticated()")
-    public ResponseEntity<byte[]> getFileByPublicUrl(@RequestParam("url") String publicUrl) {
-        try {
-            File metadata = fileService.getByPublicUrl(publicUrl);
-            byte[] data = fileService.download(metadata.getFileId());
-            MediaType mediaType = resolveMediaType(metadata);
-            HttpHeaders headers = new HttpHeaders(); headers.setContentType(mediaType);
-            String format = metadata.getFormat();
-            String filename = metadata.getFileId().toString() + "." + format;
-            headers.setContentDisposition(
-                    ContentDisposition
-                            .attachment()
-                            .filename(filename, StandardCharsets.UTF_8)
-                            .build()
-            );
+    public void getFileByPublicUrl(@RequestParam("url") String publicUrl, HttpServletRequest request,
+                                   HttpServletResponse response) throws IOException {
+        File metadata = fileService.getByPublicUrl(publicUrl);
+        writeFileHeaders(metadata, response);
+        fileService.stream(metadata, request, response);
+    }
 
-            return new ResponseEntity<>(data, headers, HttpStatus.OK);
-        } catch (ResourceNotFoundException e) {
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
-        } catch (IOException e) {
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
-        }
+    private void writeFileHeaders(File metadata, HttpServletResponse response) {
+        response.setContentType(resolveMediaType(metadata).toString());
+        String filename = metadata.getFileId().toString() + "." + metadata.getFormat();
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition
+                .attachment()
+                .filename(filename, StandardCharsets.UTF_8)
+                .build()
+                .toString());
     }
+
     // utility for resolving MIME types
     private MediaType resolveMediaType(File metadata) {
         String format = metadata.getFormat();
@@ -1,6 +1,8 @@
 package com.fptu.sep490.fileservice.service;
 
 import com.fptu.sep490.fileservice.model.File;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -8,7 +10,7 @@ import java.util.UUID;
 
 public interface FileService {
     File uploadFile(String folderName, MultipartFile multipart) throws IOException;
-    byte[] download(UUID id) throws IOException;
+    void stream(File metadata, HttpServletRequest request, HttpServletResponse response) throws IOException;
     File getMetadata(UUID id);
     void delete(UUID id) throws IOException;
 
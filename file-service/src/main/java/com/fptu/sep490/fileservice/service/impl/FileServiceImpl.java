@@ -3,20 +3,44 @@ package com.fptu.sep490.fileservice.service.impl;
 import com.cloudinary.Cloudinary;
 import com.cloudinary.utils.ObjectUtils;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.fileservice.component.FileDiskCache;
 import com.fptu.sep490.fileservice.constants.Constants;
 import com.fptu.sep490.fileservice.model.File;
 import com.fptu.sep490.fileservice.repository.FileRepository;
 import com.fptu.sep490.fileservice.service.FileService;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URL;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
@@ -25,16 +49,33 @@ import java.util.UUID;
 @RequiredArgsConstructor
 @Slf4j
 public class FileServiceImpl implements FileService {
+    static final int BUFFER_SIZE = 64 * 1024;
+    static final int UPLOAD_CHUNK_SIZE = 8 * 1024 * 1024;
+    static final Duration UPSTREAM_TIMEOUT = Duration.ofSeconds(10);
+    static final HttpClient HTTP_CLIENT = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .followRedirects(HttpClient.Redirect.NORMAL)
+            .build();
+
     Cloudinary cloudinary;
     FileRepository fileRepository;
+    FileDiskCache fileDiskCache;
 
     @Override
     public File uploadFile(String folderName, MultipartFile multipart) throws IOException {
-        Map<?, ?> result = cloudinary.uploader()
-                .upload(multipart.getBytes(), ObjectUtils.asMap(
-                        "folder", folderName,
-                        "resource_type", "auto"
-                ));
+        // Spool ra file tạm rồi upload theo chunk, không nạp cả file vào heap
+        Path spooled = Files.createTempFile("file-upload-", null);
+        Map<?, ?> result;
+        try {
+            multipart.transferTo(spooled);
+            result = cloudinary.uploader()
+                    .uploadLarge(spooled.toFile(), ObjectUtils.asMap(
+                            "folder", folderName,
+                            "resource_type", "auto"
+                    ), UPLOAD_CHUNK_SIZE);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
 
         String publicId = (String) result.get("public_id");
         Integer version = ((Number) result.get("version")).intValue();
@@ -55,22 +96,76 @@ public class FileServiceImpl implements FileService {
         return fileRepository.save(entity);
     }
 
+    /**
+     * Trả nội dung file theo luồng, hỗ trợ Range (một khoảng) và revalidate bằng ETag / Last-Modified.
+     * File đã có trong {@link FileDiskCache} được gửi bằng {@link FileChannel#transferTo}; nếu chưa có thì
+     * copy từ Cloudinary qua buffer cố định và đặt lịch tải vào cache. Heap dùng không phụ thuộc kích thước file.
+     * <p>
+     * Không dùng sendfile của Tomcat ({@code org.apache.tomcat.sendfile.*}): Tomcat chỉ mở file sau khi servlet
+     * trả về, lúc đó file có thể đã bị evict khỏi cache. Ở đây file được mở ngay khi lấy từ cache nên eviction
+     * sau đó không ảnh hưởng, đổi lại dữ liệu vẫn đi qua buffer output của servlet.
+     */
     @Override
-    public byte[] download(UUID id) throws IOException {
-        File metadata = fileRepository.findById(id)
-                .orElseThrow(() -> new AppException(
-                        Constants.ErrorCodeMessage.FILE_NOT_FOUND,
-                        Constants.ErrorCode.FILE_NOT_FOUND,
-                        HttpStatus.NOT_FOUND.value()
-                ));
-        String url = cloudinary.url()
-                .resourceType(metadata.getResourceType())
-                .version(metadata.getVersion())
-                .secure(true)
-                .generate(metadata.getPublicId());
+    public void stream(File metadata, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        String etag = "\"" + metadata.getFileId() + "-v" + metadata.getVersion() + "\"";
+        long lastModified = lastModified(metadata);
+        // Ghi ETag / Last-Modified, trả 304 nếu client đã có đúng phiên bản này
+        if (new ServletWebRequest(request, response).checkNotModified(etag, lastModified)) {
+            return;
+        }
 
-        try (InputStream in = new URL(url).openStream()) {
-            return in.readAllBytes();
+        String cacheKey = metadata.getFileId() + "-" + metadata.getVersion();
+        try (FileChannel cached = openCached(cacheKey)) {
+            stream(metadata, cacheKey, cached, etag, lastModified, request, response);
+        }
+    }
+
+    private void stream(File metadata, String cacheKey, FileChannel cached, String etag, long lastModified,
+                        HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long length = cached != null ? cached.size() : metadata.getBytes();
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        HttpRange range = requestedRange(request, etag, lastModified);
+        long start = 0;
+        long end = length - 1;
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length || start > end) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.setStatus(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+        }
+        long count = end - start + 1;
+        boolean head = HttpMethod.HEAD.matches(request.getMethod());
+
+        HttpResponse<InputStream> upstream = null;
+        if (cached == null && !head) {
+            String url = sourceUrl(metadata);
+            fileDiskCache.fillAsync(cacheKey, length, () -> openUpstream(url, null).body());
+            upstream = openUpstream(url, range != null ? "bytes=" + start + "-" + end : null);
+        }
+
+        if (range != null) {
+            response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setContentLengthLong(count);
+        if (head) {
+            return;
+        }
+
+        if (upstream == null) {
+            transfer(cached, start, count, Channels.newChannel(response.getOutputStream()));
+            return;
+        }
+        try (InputStream in = upstream.body()) {
+            if (upstream.statusCode() == HttpStatus.OK.value()) {
+                // Upstream bỏ qua Range thì tự bỏ phần đầu
+                in.skipNBytes(start);
+            }
+            copy(in, response.getOutputStream(), count);
         }
     }
 
@@ -104,4 +199,117 @@ public class FileServiceImpl implements FileService {
                     ));
 
     }
+
+    /**
+     * Mở file trong cache ngay lúc lấy: file đã mở vẫn đọc được dù bị evict sau đó.
+     *
+     * @return null nếu chưa có trong cache hoặc vừa bị evict trước khi kịp mở
+     */
+    private FileChannel openCached(String cacheKey) throws IOException {
+        Path path = fileDiskCache.get(cacheKey);
+        if (path == null) {
+            return null;
+        }
+        try {
+            return FileChannel.open(path, StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            log.debug("Cached file {} was evicted before it could be opened", cacheKey);
+            return null;
+        }
+    }
+
+    private String sourceUrl(File metadata) {
+        return cloudinary.url()
+                .resourceType(metadata.getResourceType())
+                .version(metadata.getVersion())
+                .secure(true)
+                .generate(metadata.getPublicId());
+    }
+
+    /**
+     * @param range header Range gửi lên upstream, null để lấy cả file
+     * @return response 200 / 206, body chưa được đọc
+     */
+    private static HttpResponse<InputStream> openUpstream(String url, String range) throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(url))
+                .timeout(UPSTREAM_TIMEOUT)
+                .GET();
+        if (range != null) {
+            builder.header(HttpHeaders.RANGE, range);
+        }
+        HttpResponse<InputStream> response;
+        try {
+            response = HTTP_CLIENT.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while opening " + url);
+        }
+        int status = response.statusCode();
+        if (status != HttpStatus.OK.value() && status != HttpStatus.PARTIAL_CONTENT.value()) {
+            response.body().close();
+            throw new IOException("Upstream returned " + status + " for " + url);
+        }
+        return response;
+    }
+
+    private static long lastModified(File metadata) {
+        LocalDateTime time = metadata.getUpdatedAt() != null ? metadata.getUpdatedAt() : metadata.getCreatedAt();
+        return time != null ? time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() : -1;
+    }
+
+    /**
+     * @return khoảng được yêu cầu, null nếu phải trả cả file (không có Range, Range sai cú pháp,
+     * nhiều khoảng, hoặc If-Range không còn khớp)
+     */
+    private static HttpRange requestedRange(HttpServletRequest request, String etag, long lastModified) {
+        String header = request.getHeader(HttpHeaders.RANGE);
+        if (header == null) {
+            return null;
+        }
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (ifRange != null && !ifRange.equals(etag)) {
+            if (ifRange.startsWith("\"") || ifRange.startsWith("W/") || lastModified < 0) {
+                return null;
+            }
+            try {
+                if (lastModified / 1000 > request.getDateHeader(HttpHeaders.IF_RANGE) / 1000) {
+                    return null;
+                }
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            // Chỉ hỗ trợ một khoảng; nhiều khoảng thì trả cả file, RFC 9110 cho phép bỏ qua Range
+            return ranges.size() == 1 ? ranges.getFirst() : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void transfer(FileChannel channel, long position, long count, WritableByteChannel target)
+            throws IOException {
+        long end = position + count;
+        while (position < end) {
+            long sent = channel.transferTo(position, end - position, target);
+            if (sent <= 0) {
+                throw new EOFException("Cached file is shorter than expected");
+            }
+            position += sent;
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, long count) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = count;
+        while (remaining > 0) {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new EOFException("Upstream ended before " + count + " bytes");
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package com.fptu.sep490.fileservice.component;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDiskCacheTest {
+
+    @TempDir
+    Path directory;
+
+    FileDiskCache cache;
+
+    @AfterEach
+    void tearDown() {
+        if (cache != null) {
+            cache.shutdown();
+        }
+    }
+
+    @Test
+    void fillAsync_thenGet_returnsCompleteFile() throws Exception {
+        cache = newCache(100, 50);
+
+        Path cached = fill(cache, "a-1", "hello world");
+
+        assertEquals("hello world", Files.readString(cached));
+        assertFalse(Files.exists(directory.resolve("a-1.tmp")));
+    }
+
+    @Test
+    void fillAsync_overTotalLimit_evictsLeastRecentlyRead() throws Exception {
+        cache = newCache(10, 10);
+        Path first = fill(cache, "a-1", "aaaaaa");
+        Thread.sleep(5);
+        Path second = fill(cache, "b-1", "bbbbbb");
+        awaitFillFinished();
+
+        assertNull(cache.get("a-1"));
+        assertFalse(Files.exists(first));
+        assertEquals(second, cache.get("b-1"));
+    }
+
+    @Test
+    void fillAsync_evictionKeepsRecentlyReadEntry() throws Exception {
+        cache = newCache(10, 10);
+        fill(cache, "a-1", "aaaa");
+        Thread.sleep(5);
+        fill(cache, "b-1", "bbbb");
+        Thread.sleep(5);
+        assertNotNull(cache.get("a-1"));
+        Thread.sleep(5);
+
+        fill(cache, "c-1", "cccc");
+        awaitFillFinished();
+
+        assertNotNull(cache.get("a-1"));
+        assertNull(cache.get("b-1"));
+        assertNotNull(cache.get("c-1"));
+    }
+
+    @Test
+    void get_fileDeletedFromDisk_returnsNull() throws Exception {
+        cache = newCache(100, 50);
+        Files.delete(fill(cache, "a-1", "data"));
+
+        assertNull(cache.get("a-1"));
+    }
+
+    @Test
+    void fillAsync_entryTooLarge_isNotCached() throws Exception {
+        cache = newCache(100, 4);
+
+        cache.fillAsync("a-1", 5, () -> new ByteArrayInputStream("12345".getBytes(StandardCharsets.UTF_8)));
+        Thread.sleep(200);
+
+        assertNull(cache.get("a-1"));
+        assertFalse(cache.isCacheable(5));
+    }
+
+    @Test
+    void init_reloadsFilesAndDropsPartialDownloads() throws Exception {
+        Files.writeString(directory.resolve("a-1"), "data");
+        Files.writeString(directory.resolve("b-1.tmp"), "partial");
+
+        cache = newCache(100, 50);
+
+        assertEquals(directory.resolve("a-1"), cache.get("a-1"));
+        assertFalse(Files.exists(directory.resolve("b-1.tmp")));
+    }
+
+    private FileDiskCache newCache(long maxBytes, long maxEntryBytes) throws IOException {
+        FileDiskCache diskCache = new FileDiskCache(directory.toString(), maxBytes, maxEntryBytes, 1);
+        diskCache.init();
+        return diskCache;
+    }
+
+    // Entry mới được đưa vào trước rồi mới evict, trên luồng tải
+    private static void awaitFillFinished() throws InterruptedException {
+        Thread.sleep(100);
+    }
+
+    static Path fill(FileDiskCache cache, String key, String content) throws InterruptedException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        cache.fillAsync(key, bytes.length, () -> new ByteArrayInputStream(bytes));
+        for (int i = 0; i < 200; i++) {
+            Path cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("File " + key + " was not cached");
+    }
+}
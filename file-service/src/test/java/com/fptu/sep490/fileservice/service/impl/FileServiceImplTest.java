@@ -0,0 +1,238 @@
+package com.fptu.sep490.fileservice.service.impl;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Url;
+import com.fptu.sep490.fileservice.component.FileDiskCache;
+import com.fptu.sep490.fileservice.model.File;
+import com.fptu.sep490.fileservice.repository.FileRepository;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class FileServiceImplTest {
+    static final String CONTENT = "0123456789abcdefghij";
+
+    @TempDir
+    Path directory;
+
+    @Mock Cloudinary cloudinary;
+    @Mock FileRepository fileRepository;
+
+    FileDiskCache fileDiskCache;
+    FileServiceImpl service;
+    File metadata;
+    HttpServer upstream;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        fileDiskCache = new FileDiskCache(directory.toString(), 1024, 1024, 1);
+        fileDiskCache.init();
+        service = new FileServiceImpl(cloudinary, fileRepository, fileDiskCache);
+        metadata = File.builder()
+                .fileId(UUID.randomUUID())
+                .version(3)
+                .bytes(CONTENT.length())
+                .publicId("audio/part1")
+                .resourceType("video")
+                .createdAt(LocalDateTime.of(2025, 6, 1, 10, 0))
+                .build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        fileDiskCache.shutdown();
+        if (upstream != null) {
+            upstream.stop(0);
+        }
+    }
+
+    @Test
+    void stream_cachedWithoutRange_returnsWholeFile() throws Exception {
+        cache();
+        MockHttpServletResponse response = stream(request(null));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        assertEquals(CONTENT.length(), response.getContentLengthLong());
+        assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+        assertEquals(etag(), response.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void stream_closedRange_returns206() throws Exception {
+        cache();
+        MockHttpServletResponse response = stream(request("bytes=2-5"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("2345", response.getContentAsString());
+        assertEquals("bytes 2-5/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals(4, response.getContentLengthLong());
+    }
+
+    @Test
+    void stream_openEndedRange_returnsRestOfFile() throws Exception {
+        cache();
+        MockHttpServletResponse response = stream(request("bytes=15-"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("fghij", response.getContentAsString());
+        assertEquals("bytes 15-19/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void stream_suffixRange_returnsLastBytes() throws Exception {
+        cache();
+        MockHttpServletResponse response = stream(request("bytes=-3"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("hij", response.getContentAsString());
+        assertEquals("bytes 17-19/20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void stream_rangePastEnd_returns416() throws Exception {
+        cache();
+        MockHttpServletResponse response = stream(request("bytes=20-"));
+
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */20", response.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertEquals("", response.getContentAsString());
+    }
+
+    @Test
+    void stream_multipleRanges_returnsWholeFile() throws Exception {
+        cache();
+        MockHttpServletResponse response = stream(request("bytes=0-1,5-6"));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void stream_staleIfRange_returnsWholeFile() throws Exception {
+        cache();
+        MockHttpServletRequest request = request("bytes=2-5");
+        request.addHeader(HttpHeaders.IF_RANGE, "\"other-v1\"");
+
+        MockHttpServletResponse response = stream(request);
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+    }
+
+    @Test
+    void stream_matchingIfNoneMatch_returns304WithoutBody() throws Exception {
+        MockHttpServletRequest request = request(null);
+        request.addHeader(HttpHeaders.IF_NONE_MATCH, etag());
+
+        MockHttpServletResponse response = stream(request);
+
+        assertEquals(304, response.getStatus());
+        assertEquals(0, response.getContentAsByteArray().length);
+        verifyNoInteractions(cloudinary);
+    }
+
+    @Test
+    void stream_headRequest_sendsHeadersOnly() throws Exception {
+        cache();
+        MockHttpServletRequest request = request("bytes=0-9");
+        request.setMethod("HEAD");
+
+        MockHttpServletResponse response = stream(request);
+
+        assertEquals(206, response.getStatus());
+        assertEquals(10, response.getContentLengthLong());
+        assertEquals(0, response.getContentAsByteArray().length);
+    }
+
+    @Test
+    void stream_cacheMiss_readsUpstreamRange() throws Exception {
+        startUpstream();
+
+        MockHttpServletResponse response = stream(request("bytes=-4"));
+
+        assertEquals(206, response.getStatus());
+        assertEquals("ghij", response.getContentAsString());
+    }
+
+    @Test
+    void stream_cachedFileEvictedBeforeOpen_fallsBackToUpstream() throws Exception {
+        startUpstream();
+        FileDiskCache evicting = mock(FileDiskCache.class);
+        when(evicting.get(anyString())).thenReturn(directory.resolve("evicted"));
+        service = new FileServiceImpl(cloudinary, fileRepository, evicting);
+
+        MockHttpServletResponse response = stream(request(null));
+
+        assertEquals(200, response.getStatus());
+        assertEquals(CONTENT, response.getContentAsString());
+        verify(evicting).fillAsync(eq(cacheKey()), eq((long) CONTENT.length()), any());
+    }
+
+    private MockHttpServletResponse stream(MockHttpServletRequest request) throws Exception {
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        service.stream(metadata, request, response);
+        return response;
+    }
+
+    private static MockHttpServletRequest request(String range) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/files/stream");
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+        return request;
+    }
+
+    private void cache() throws InterruptedException {
+        byte[] bytes = CONTENT.getBytes(StandardCharsets.UTF_8);
+        fileDiskCache.fillAsync(cacheKey(), bytes.length, () -> new ByteArrayInputStream(bytes));
+        for (int i = 0; i < 200 && fileDiskCache.get(cacheKey()) == null; i++) {
+            Thread.sleep(10);
+        }
+        assertNotNull(fileDiskCache.get(cacheKey()));
+    }
+
+    private String cacheKey() {
+        return metadata.getFileId() + "-" + metadata.getVersion();
+    }
+
+    private String etag() {
+        return "\"" + metadata.getFileId() + "-v" + metadata.getVersion() + "\"";
+    }
+
+    // Upstream giả bỏ qua Range, service phải tự bỏ phần đầu
+    private void startUpstream() throws Exception {
+        upstream = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        upstream.createContext("/", exchange -> {
+            byte[] body = CONTENT.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        upstream.start();
+        Url url = mock(Url.class, RETURNS_SELF);
+        when(url.generate(anyString())).thenReturn("http://127.0.0.1:" + upstream.getAddress().getPort() + "/file");
+        when(cloudinary.url()).thenReturn(url);
+    }
+}
@@ -2,6 +2,7 @@ package com.fptu.sep490.identityservice.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.*;
+import com.fptu.sep490.commonlibrary.keycloak.ServiceTokenManager;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.identityservice.component.AesSecretKey;
 import com.fptu.sep490.event.EmailSendingRequest;
@@ -60,6 +61,7 @@ public class AuthServiceImpl implements AuthService {
     KeyCloakUserClient keyCloakUserClient;
     ErrorNormalizer errorNormalizer;
     RedisService redisService;
+    ServiceTokenManager serviceTokenManager;
     KafkaTemplate<String, Object> kafkaTemplate;
     EmailTemplateService emailTemplateService;
     ForgotPasswordRateLimiter forgotPasswordRateLimiter;
@@ -745,41 +747,6 @@ public class AuthServiceImpl implements AuthService {
 
 
     public String getCachedClientToken() throws JsonProcessingException {
-        final String cacheKey = Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN;
-
-        // Try to get cached token with error handling
-        try {
-            String cachedToken = redisService.getValue(cacheKey, String.class);
-            if (cachedToken != null) {
-                log.debug("Retrieved client token from cache");
-                return cachedToken;
-            }
-        } catch (Exception e) {
-            log.warn("Failed to retrieve client token from Redis cache. Error: {}. Fetching new token from Keycloak", e.getMessage());
-            // Continue to fetch new token from Keycloak - Redis failure should not block the request
-        }
-        
-        // Fetch new token from Keycloak
-        log.debug("Fetching new client token from Keycloak");
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "client_credentials");
-        form.add("client_id", clientId);
-        form.add("client_secret", clientSecret);
-        form.add("scope", "openid");
-
-        KeyCloakTokenResponse tokenResponse = keyCloakTokenClient.requestToken(form, realm);
-        String newToken = tokenResponse.accessToken();
-        var expiresIn = tokenResponse.expiresIn();
-        
-        // Try to save to cache with error handling - don't let cache failure break the response
-        try {
-            redisService.saveValue(cacheKey, newToken, Duration.ofSeconds(expiresIn));
-            log.debug("Saved client token to cache with TTL={}", expiresIn);
-        } catch (Exception e) {
-            log.warn("Failed to save client token to Redis cache. Error: {}", e.getMessage());
-            // Don't throw exception here - the token was successfully fetched from Keycloak
-        }
-        
-        return newToken;
+        return serviceTokenManager.getToken();
     }
 }
@@ -2,6 +2,7 @@ package com.fptu.sep490.identityservice.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.*;
+import com.fptu.sep490.commonlibrary.keycloak.ServiceTokenManager;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 import com.fptu.sep490.commonlibrary.viewmodel.response.IntrospectResponse;
@@ -43,6 +44,7 @@ class AuthServiceImplTest {
 	@Mock KeyCloakUserClient keyCloakUserClient;
 	@Mock ErrorNormalizer errorNormalizer;
 	@Mock RedisService redisService;
+	@Mock ServiceTokenManager serviceTokenManager;
 	@Mock KafkaTemplate<String, Object> kafkaTemplate;
 	@Mock EmailTemplateService emailTemplateService;
 	@Mock ForgotPasswordRateLimiter forgotPasswordRateLimiter;
@@ -69,7 +71,7 @@ class AuthServiceImplTest {
 		String username = "user";
 		String password = "pass";
 		KeyCloakTokenResponse tokenResponse = mock(KeyCloakTokenResponse.class);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.emailVerified()).thenReturn(true);
 		when(keyCloakUserClient.getUserByEmail(any(), any(), eq(username)))
@@ -82,14 +84,14 @@ class AuthServiceImplTest {
 
 	@Test
 	void login_userNotFound() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(any(), any(), any())).thenReturn(List.of());
 		assertThrows(NotFoundException.class, () -> authService.login("user", "pass"));
 	}
 
 	@Test
 	void login_firstElementNull() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		java.util.List<UserAccessInfo> listWithNull = java.util.Arrays.asList((UserAccessInfo) null);
 		when(keyCloakUserClient.getUserByEmail(any(), any(), any())).thenReturn(listWithNull);
 		assertThrows(NotFoundException.class, () -> authService.login("user", "pass"));
@@ -97,7 +99,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void login_emailNotVerified() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.emailVerified()).thenReturn(false);
 		when(keyCloakUserClient.getUserByEmail(any(), any(), any())).thenReturn(List.of(user));
@@ -106,7 +108,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void login_feignException() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.emailVerified()).thenReturn(true);
 		when(keyCloakUserClient.getUserByEmail(any(), any(), any())).thenReturn(List.of(user));
@@ -156,7 +158,7 @@ class AuthServiceImplTest {
 		when(req.firstName()).thenReturn("First");
 		when(req.lastName()).thenReturn("Last");
 		when(req.password()).thenReturn("pass");
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		org.springframework.http.HttpHeaders headers = new org.springframework.http.HttpHeaders();
 		headers.add("Location", "http://kc/admin/realms/realm/users/abc123");
 		org.springframework.http.ResponseEntity<Void> kcResponse = new org.springframework.http.ResponseEntity<>(null, headers, org.springframework.http.HttpStatus.CREATED);
@@ -176,7 +178,7 @@ class AuthServiceImplTest {
 	@Test
 	void createUser_feignException() throws Exception {
 		UserCreationRequest req = mock(UserCreationRequest.class);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		FeignException fe = mock(FeignException.class);
 		when(keyCloakUserClient.createUser(anyString(), anyString(), any(UserCreationParam.class))).thenThrow(fe);
 		when(errorNormalizer.handleKeyCloakException(fe)).thenThrow(new AppException("err", "err", 400));
@@ -191,7 +193,7 @@ class AuthServiceImplTest {
 		when(user.id()).thenReturn("id");
 		when(user.firstName()).thenReturn("f");
 		when(user.lastName()).thenReturn("l");
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(any(), any(), eq(email))).thenReturn(List.of(user));
 		when(emailTemplateService.buildVerificationEmail(any())).thenReturn("html");
 		doNothing().when(redisService).saveValue(any(), any(), any());
@@ -210,7 +212,7 @@ class AuthServiceImplTest {
 	@Test
 	void sendVerifyEmail_userNotFound() throws JsonProcessingException {
 		when(verifyEmailRateLimiter.isBlocked(any())).thenReturn(false);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(any(), any(), any())).thenReturn(List.of());
 		assertThrows(NotFoundException.class, () -> authService.sendVerifyEmail("phuc1234@gmail.com"));
 	}
@@ -219,7 +221,7 @@ class AuthServiceImplTest {
 	void sendVerifyEmail_alreadyVerified() throws JsonProcessingException {
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.emailVerified()).thenReturn(true);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(any(), any(), any())).thenReturn(List.of(user));
 		when(verifyEmailRateLimiter.isBlocked(any())).thenReturn(false);
 		assertThrows(ConflictException.class, () -> authService.sendVerifyEmail("e"));
@@ -227,7 +229,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void getUserAccessInfo_success() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -246,7 +248,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void getUserAccessInfo_userNotFound() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -263,7 +265,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void getUserAccessInfoByEmail_success() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		String email = "target@example.com";
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
@@ -281,7 +283,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void getUserAccessInfoByEmail_userNotFound() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		String email = "missing@example.com";
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
@@ -317,7 +319,7 @@ class AuthServiceImplTest {
 		// order: confirmPassword, email, password, token
 		ResetPasswordRequest req = new ResetPasswordRequest("a", "e@x.com", "a", "tok");
 		doReturn(true).when(spyService).isValidToken(anyString(), anyString(), anyString());
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(eq("realm"), anyString(), eq("e@x.com"))).thenReturn(List.of());
 		assertThrows(NotFoundException.class, () -> spyService.resetPassword(req));
 	}
@@ -327,7 +329,7 @@ class AuthServiceImplTest {
 		AuthServiceImpl spyService = spy(authService);
 		ResetPasswordRequest req = new ResetPasswordRequest("a", "e@x.com", "a", "tok");
 		doReturn(true).when(spyService).isValidToken(anyString(), anyString(), anyString());
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.id()).thenReturn("uid");
 		when(keyCloakUserClient.getUserByEmail(eq("realm"), anyString(), eq("e@x.com"))).thenReturn(List.of(user));
@@ -342,7 +344,7 @@ class AuthServiceImplTest {
 		AuthServiceImpl spyService = spy(authService);
 		ResetPasswordRequest req = new ResetPasswordRequest("a", "e@x.com", "a", "tok");
 		doReturn(true).when(spyService).isValidToken(anyString(), anyString(), anyString());
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.id()).thenReturn("uid");
 		when(keyCloakUserClient.getUserByEmail(eq("realm"), anyString(), eq("e@x.com"))).thenReturn(List.of(user));
@@ -362,7 +364,7 @@ class AuthServiceImplTest {
 	void forgotPassword_userNotFound_throwsNotFound() throws Exception {
 		String email = "e@e.com";
 		when(forgotPasswordRateLimiter.isBlocked(email)).thenReturn(false);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(eq("realm"), anyString(), eq(email))).thenReturn(List.of());
 		assertThrows(NotFoundException.class, () -> authService.forgotPassword(new ForgotPasswordRequest(email)));
 	}
@@ -371,7 +373,7 @@ class AuthServiceImplTest {
 	void forgotPassword_success_sendsEmailAndRecordsAttempt() throws Exception {
 		String email = "e@e.com";
 		when(forgotPasswordRateLimiter.isBlocked(email)).thenReturn(false);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.id()).thenReturn("uid");
 		when(user.firstName()).thenReturn("First");
@@ -400,7 +402,7 @@ class AuthServiceImplTest {
 	@Test
 	void verifyEmail_userNotFound_throwsNotFound() throws Exception {
 		when(redisService.getValue("otp:e@example.com", String.class)).thenReturn("123456");
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserByEmail(eq("realm"), anyString(), eq("e@example.com"))).thenReturn(List.of());
 		assertThrows(NotFoundException.class, () -> authService.verifyEmail("e@example.com", "123456"));
 	}
@@ -408,7 +410,7 @@ class AuthServiceImplTest {
 	@Test
 	void verifyEmail_feignException_normalized() throws Exception {
 		when(redisService.getValue("otp:e@example.com", String.class)).thenReturn("123456");
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.id()).thenReturn("uid");
 		when(user.email()).thenReturn("e@example.com");
@@ -426,7 +428,7 @@ class AuthServiceImplTest {
 		// OTP checks
 		when(redisService.getValue("otp:e@example.com", String.class)).thenReturn("123456");
 		// Client token and user lookup
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserAccessInfo user = mock(UserAccessInfo.class);
 		when(user.id()).thenReturn("uid");
 		when(user.email()).thenReturn("e@example.com");
@@ -520,7 +522,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void changePassword_userNotFound_throwsNotFound() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -537,7 +539,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void changePassword_success() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -558,7 +560,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void updateUserProfile_userNotFound_throwsAppException() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -573,7 +575,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void updateUserProfile_keycloakReturnsNotNoContent_throwsInternalServerError() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -593,7 +595,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void updateUserProfile_feignException_normalizedToAppException() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -614,7 +616,7 @@ class AuthServiceImplTest {
 
 	@Test
 	void updateUserProfile_success_returnsUpdatedProfile() throws Exception {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -667,7 +669,7 @@ class AuthServiceImplTest {
 	@Test
 	void getUserProfile_cacheMiss_buildsAndCaches() throws Exception {
 		when(redisService.getValue(anyString(), eq(UserProfileMappingRoles.class))).thenReturn(null);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -698,7 +700,7 @@ class AuthServiceImplTest {
 	@Test
 	void getUserProfile_userNotFound_throwsNotFound() throws Exception {
 		when(redisService.getValue(anyString(), eq(UserProfileMappingRoles.class))).thenReturn(null);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		try (MockedStatic<JwtDecoders> decoders = mockStatic(JwtDecoders.class)) {
 			JwtDecoder decoder = mock(JwtDecoder.class);
 			Jwt jwt = mock(Jwt.class);
@@ -873,24 +875,17 @@ class AuthServiceImplTest {
 	}
 
 	@Test
-	void getCachedClientToken_cacheHit_returnsCached() throws JsonProcessingException {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class)))
-				.thenReturn("cached-token");
-		assertEquals("cached-token", authService.getCachedClientToken());
+	void getCachedClientToken_returnsServiceToken() throws JsonProcessingException {
+		when(serviceTokenManager.getToken()).thenReturn("service-token");
+		assertEquals("service-token", authService.getCachedClientToken());
+		verify(redisService, never()).getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class));
 	}
 
 	@Test
-	void getCachedClientToken_cacheMiss_requestsAndCaches() throws JsonProcessingException {
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class)))
-				.thenReturn(null);
-		KeyCloakTokenResponse tr = mock(KeyCloakTokenResponse.class);
-		when(tr.accessToken()).thenReturn("new-token");
-		when(tr.expiresIn()).thenReturn(120);
-		when(keyCloakTokenClient.requestToken(any(), eq("realm"))).thenReturn(tr);
-		doNothing().when(redisService).saveValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq("new-token"), any());
-		String result = authService.getCachedClientToken();
-		assertEquals("new-token", result);
-		verify(redisService).saveValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq("new-token"), any());
+	void getCachedClientToken_tokenUnavailable_propagates() {
+		when(serviceTokenManager.getToken()).thenThrow(new RuntimeException("keycloak down"));
+		assertThrows(RuntimeException.class, () -> authService.getCachedClientToken());
+		verifyNoInteractions(keyCloakTokenClient);
 	}
 
 
@@ -0,0 +1,123 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.Choice;
+import com.fptu.sep490.listeningservice.model.DragItem;
+import com.fptu.sep490.listeningservice.model.Question;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.AnswerKey;
+import com.fptu.sep490.listeningservice.model.json.AttemptVersion;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.repository.DragItemRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Biên dịch {@link AnswerKey} cho snapshot của một attempt với số query cố định
+ * (question, choice gốc, choice đúng, label choice, drag item đúng).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AnswerKeyLoader {
+    QuestionRepository questionRepository;
+    ChoiceRepository choiceRepository;
+    DragItemRepository dragItemRepository;
+
+    @Transactional(readOnly = true)
+    public AnswerKey load(AttemptVersion attemptVersion) {
+        Set<UUID> questionIds = new LinkedHashSet<>();
+        Set<UUID> choiceIds = new LinkedHashSet<>();
+        if (attemptVersion.getGroupMappingQuestion() != null) {
+            attemptVersion.getGroupMappingQuestion().values().forEach(versions -> versions.forEach(v -> {
+                questionIds.add(v.getQuestionId());
+                if (v.getChoiceMapping() != null) {
+                    choiceIds.addAll(v.getChoiceMapping());
+                }
+            }));
+        }
+        if (questionIds.isEmpty()) {
+            return new AnswerKey(Map.of(), Map.of());
+        }
+
+        List<Question> questions = questionRepository.findQuestionsByIds(new ArrayList<>(questionIds));
+
+        // Choice đúng: lấy choice gốc của câu hỏi gốc, rồi mọi phiên bản đúng của các choice đó
+        Map<UUID, List<AnswerKey.ChoiceKey>> correctChoicesByOriginalQuestionId = new HashMap<>();
+        Set<UUID> multipleChoiceOriginalIds = new LinkedHashSet<>();
+        questions.stream()
+                .filter(q -> q.getQuestionType() == QuestionType.MULTIPLE_CHOICE)
+                .forEach(q -> multipleChoiceOriginalIds.add(originalQuestionId(q)));
+        if (!multipleChoiceOriginalIds.isEmpty()) {
+            Map<UUID, UUID> originalQuestionIdByOriginalChoiceId = new HashMap<>();
+            choiceRepository.getOriginalChoicesByOriginalQuestions(multipleChoiceOriginalIds)
+                    .forEach(c -> originalQuestionIdByOriginalChoiceId.put(c.getChoiceId(), c.getQuestion().getQuestionId()));
+            if (!originalQuestionIdByOriginalChoiceId.isEmpty()) {
+                for (Choice c : choiceRepository.getCurrentCorrectChoice(new ArrayList<>(originalQuestionIdByOriginalChoiceId.keySet()))) {
+                    UUID originalChoiceId = c.getParent() != null ? c.getParent().getChoiceId() : c.getChoiceId();
+                    UUID originalQuestionId = originalQuestionIdByOriginalChoiceId.get(originalChoiceId);
+                    if (originalQuestionId != null) {
+                        correctChoicesByOriginalQuestionId.computeIfAbsent(originalQuestionId, k -> new ArrayList<>())
+                                .add(new AnswerKey.ChoiceKey(c.getChoiceId(), c.getLabel()));
+                    }
+                }
+            }
+        }
+
+        // Drag item đúng là drag item gắn với chính phiên bản câu hỏi
+        Map<UUID, DragItem> dragItemByQuestionId = new HashMap<>();
+        Set<UUID> dragQuestionIds = new LinkedHashSet<>();
+        questions.stream()
+                .filter(q -> q.getQuestionType() == QuestionType.DRAG_AND_DROP)
+                .forEach(q -> dragQuestionIds.add(q.getQuestionId()));
+        if (!dragQuestionIds.isEmpty()) {
+            dragItemRepository.findByQuestionIds(dragQuestionIds)
+                    .forEach(di -> dragItemByQuestionId.putIfAbsent(di.getQuestion().getQuestionId(), di));
+        }
+
+        Map<UUID, String> choiceLabels = new HashMap<>();
+        if (!choiceIds.isEmpty()) {
+            choiceRepository.findAllById(choiceIds).forEach(c -> choiceLabels.put(c.getChoiceId(), c.getLabel()));
+        }
+
+        Map<UUID, Question> questionById = new HashMap<>();
+        questions.forEach(q -> questionById.put(q.getQuestionId(), q));
+        Map<UUID, AnswerKey.QuestionKey> questionKeys = new LinkedHashMap<>();
+        for (UUID questionId : questionIds) {
+            Question q = questionById.get(questionId);
+            if (q == null) {
+                continue;
+            }
+            DragItem correctItem = dragItemByQuestionId.get(q.getQuestionId());
+            questionKeys.put(questionId, AnswerKey.QuestionKey.builder()
+                    .questionId(q.getQuestionId())
+                    .questionType(q.getQuestionType())
+                    .questionOrder(q.getQuestionOrder())
+                    .point(q.getPoint())
+                    .explanation(q.getExplanation())
+                    .correctAnswer(q.getCorrectAnswer())
+                    .correctAnswerForMatching(q.getCorrectAnswerForMatching())
+                    .correctChoices(correctChoicesByOriginalQuestionId.getOrDefault(originalQuestionId(q), List.of()))
+                    .correctDragItemId(correctItem != null ? correctItem.getDragItemId() : null)
+                    .correctDragItemContent(correctItem != null ? correctItem.getContent() : null)
+                    .build());
+        }
+        return new AnswerKey(questionKeys, choiceLabels);
+    }
+
+    private static UUID originalQuestionId(Question q) {
+        return q.getParent() != null ? q.getParent().getQuestionId() : q.getQuestionId();
+    }
+}
@@ -0,0 +1,199 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.ProgressCallback;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Upload file lên Cloudinary theo từng chunk (giao thức upload_large: cùng {@code X-Unique-Upload-Id},
+ * mỗi chunk một {@code Content-Range}):
+ * <ul>
+ *     <li>Multipart được ghi ra file tạm trước, heap chỉ giữ chunk đang gửi</li>
+ *     <li>Mỗi chunk được retry riêng với backoff, chunk đã gửi không phải gửi lại</li>
+ *     <li>Số upload chạy cùng lúc bị giới hạn theo tổng byte chunk đang giữ ({@code maxInFlightBytes}),
+ *     không theo số task; upload chờ budget trên virtual thread nên không chiếm thread pool</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+public class ChunkedUploadPipeline {
+    private static final long INITIAL_BACKOFF_MS = 500;
+    private static final long MAX_BACKOFF_MS = 30_000;
+
+    private final Cloudinary cloudinary;
+    private final int chunkSize;
+    private final int maxChunkAttempts;
+    private final int maxInFlightKb;
+    private final Semaphore inFlightKb;
+    private final ExecutorService uploadExecutor =
+            Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("audio-upload-", 0).factory());
+
+    public ChunkedUploadPipeline(Cloudinary cloudinary,
+                                 @Value("${audio-upload.chunk-size-bytes:8388608}") int chunkSize,
+                                 @Value("${audio-upload.max-chunk-attempts:6}") int maxChunkAttempts,
+                                 @Value("${audio-upload.max-in-flight-bytes:67108864}") long maxInFlightBytes) {
+        this.cloudinary = cloudinary;
+        this.chunkSize = chunkSize;
+        this.maxChunkAttempts = maxChunkAttempts;
+        this.maxInFlightKb = (int) Math.max(1, maxInFlightBytes / 1024);
+        this.inFlightKb = new Semaphore(maxInFlightKb, true);
+    }
+
+    /**
+     * Ghi multipart ra file tạm. Phải gọi trong request: file tạm của multipart bị xóa khi request kết thúc.
+     */
+    public Path spool(MultipartFile multipart) throws IOException {
+        String extension = StringUtils.getFilenameExtension(multipart.getOriginalFilename());
+        Path spooled = Files.createTempFile("audio-upload-", extension != null ? "." + extension : null);
+        try {
+            multipart.transferTo(spooled);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(spooled);
+            throw e;
+        }
+        return spooled;
+    }
+
+    /**
+     * Upload file đã spool trên virtual thread riêng; file tạm bị xóa khi xong (kể cả khi lỗi).
+     *
+     * @param progress nhận (số byte đã gửi xong, tổng số byte) sau mỗi chunk
+     * @return kết quả của chunk cuối (public_id, version, ...)
+     */
+    public CompletableFuture<Map<?, ?>> submit(Path file, String filename, Map<String, Object> options,
+                                               ProgressCallback progress) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return upload(file, filename, options, progress);
+            } catch (IOException e) {
+                throw new UploadException(e);
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    log.warn("Could not delete spooled upload {}", file, e);
+                }
+            }
+        }, uploadExecutor);
+    }
+
+    Map<?, ?> upload(Path file, String filename, Map<String, Object> options, ProgressCallback progress)
+            throws IOException {
+        long total = Files.size(file);
+        if (total == 0) {
+            throw new IOException("Cannot upload empty file " + filename);
+        }
+        String uploadId = cloudinary.randomPublicId();
+        Map<String, Object> params = cloudinary.uploader().buildUploadParams(options);
+        Map<?, ?> result = null;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            for (long offset = 0; offset < total; offset += chunkSize) {
+                int length = (int) Math.min(chunkSize, total - offset);
+                int permits = Math.min(maxInFlightKb, (length + 1023) / 1024);
+                acquire(permits);
+                try {
+                    byte[] chunk = read(channel, offset, length);
+                    result = uploadChunk(params, chunkOptions(options, filename, uploadId, offset, length, total), chunk);
+                } finally {
+                    inFlightKb.release(permits);
+                }
+                if (progress != null) {
+                    progress.onProgress(offset + length, total);
+                }
+            }
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        uploadExecutor.shutdownNow();
+    }
+
+    // Gửi lại cùng Content-Range với cùng upload id là idempotent phía Cloudinary
+    private Map<?, ?> uploadChunk(Map<String, Object> params, Map<String, Object> options, byte[] chunk)
+            throws IOException {
+        long delay = INITIAL_BACKOFF_MS;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return cloudinary.uploader().callApi("upload", params, options, chunk);
+            } catch (IOException | RuntimeException e) {
+                if (attempt >= maxChunkAttempts) {
+                    throw new IOException("Chunk " + options.get("extra_headers") + " failed after "
+                            + attempt + " attempts", e);
+                }
+                long sleepMs = Math.min(MAX_BACKOFF_MS, delay + ThreadLocalRandom.current().nextLong(0, delay / 2 + 1));
+                log.warn("Chunk upload failed (attempt {}), retrying in {}ms: {}", attempt, sleepMs, e.getMessage());
+                sleep(sleepMs);
+                delay = Math.min(MAX_BACKOFF_MS, delay * 2);
+            }
+        }
+    }
+
+    private static Map<String, Object> chunkOptions(Map<String, Object> options, String filename, String uploadId,
+                                                    long offset, int length, long total) {
+        Map<String, Object> headers = new HashMap<>();
+        headers.put("X-Unique-Upload-Id", uploadId);
+        headers.put("Content-Range", String.format(Locale.US, "bytes %d-%d/%d", offset, offset + length - 1, total));
+        Map<String, Object> chunkOptions = new HashMap<>(options);
+        chunkOptions.put("extra_headers", headers);
+        chunkOptions.putIfAbsent("filename", filename);
+        return chunkOptions;
+    }
+
+    private static byte[] read(FileChannel channel, long offset, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0) {
+                throw new EOFException("Spooled file ended before " + (offset + length) + " bytes");
+            }
+        }
+        return buffer.array();
+    }
+
+    private void acquire(int permits) throws InterruptedIOException {
+        try {
+            inFlightKb.acquire(permits);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for upload budget");
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while retrying chunk upload");
+        }
+    }
+
+    public static class UploadException extends RuntimeException {
+        public UploadException(Throwable cause) {
+            super(cause);
+        }
+    }
+}
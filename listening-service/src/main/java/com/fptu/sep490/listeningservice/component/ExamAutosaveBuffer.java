@@ -0,0 +1,187 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.listeningservice.constants.Constants;
+import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswerDeltaRequest;
+import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswersRequest;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Bộ đệm Redis cho autosave dạng delta của exam attempt, mỗi attempt là một hash {@code exam-autosave:<attemptId>}:
+ * <ul>
+ *     <li>{@code v:<field>} giá trị JSON mới nhất của field ({@code q:<questionId>}, {@code duration}, ...)</li>
+ *     <li>{@code s:<field>} sequence của delta đã ghi giá trị đó; delta có sequence nhỏ hơn hoặc bằng bị bỏ qua,
+ *     nên delta trùng / đến sai thứ tự không ghi đè dữ liệu mới hơn</li>
+ *     <li>{@code open} đánh dấu attempt đã được kiểm tra trong DB (tồn tại, chưa nộp)</li>
+ * </ul>
+ * Attempt có thay đổi chưa ghi xuống DB nằm trong set {@code exam-autosave-dirty}.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExamAutosaveBuffer {
+    static final Duration DRAFT_TTL = Duration.ofHours(6);
+    static final String QUESTION_FIELD_PREFIX = "q:";
+    static final String DURATION_FIELD = "duration";
+    static final String TASK_ID_FIELD = "taskId";
+    static final String QUESTION_GROUP_IDS_FIELD = "questionGroupIds";
+    static final String ITEM_IDS_FIELD = "itemsIds";
+
+    // KEYS: draft, dirty; ARGV: sequence, ttlMs, attemptId, rồi từng cặp (field, json)
+    // Trả về -1 nếu attempt chưa được mở, ngược lại số field được ghi
+    static final RedisScript<Long> APPLY_DELTA = new DefaultRedisScript<>("""
+            if redis.call('HEXISTS', KEYS[1], 'open') == 0 then
+                return -1
+            end
+            local seq = tonumber(ARGV[1])
+            local applied = 0
+            for i = 4, #ARGV, 2 do
+                local current = redis.call('HGET', KEYS[1], 's:' .. ARGV[i])
+                if not current or tonumber(current) < seq then
+                    redis.call('HSET', KEYS[1], 's:' .. ARGV[i], ARGV[1], 'v:' .. ARGV[i], ARGV[i + 1])
+                    applied = applied + 1
+                end
+            end
+            if applied > 0 then
+                redis.call('SADD', KEYS[2], ARGV[3])
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[2])
+            return applied
+            """, Long.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    ObjectMapper objectMapper;
+
+    /**
+     * @return số field được ghi, hoặc -1 nếu attempt chưa được {@link #open}
+     */
+    public long applyDelta(UUID attemptId, ExamAttemptAnswerDeltaRequest delta) throws JsonProcessingException {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(delta.sequence()));
+        args.add(String.valueOf(DRAFT_TTL.toMillis()));
+        args.add(attemptId.toString());
+        addField(args, DURATION_FIELD, delta.duration());
+        addField(args, TASK_ID_FIELD, delta.taskId());
+        addField(args, QUESTION_GROUP_IDS_FIELD, delta.questionGroupIds());
+        addField(args, ITEM_IDS_FIELD, delta.itemsIds());
+        if (delta.answers() != null) {
+            for (ExamAttemptAnswersRequest.ExamAnswerRequest answer : delta.answers()) {
+                if (answer.questionId() != null) {
+                    args.add(QUESTION_FIELD_PREFIX + answer.questionId());
+                    args.add(objectMapper.writeValueAsString(answer));
+                }
+            }
+        }
+        Long applied = stringRedisTemplate.execute(APPLY_DELTA,
+                List.of(draftKey(attemptId), Constants.RedisKey.EXAM_AUTOSAVE_DIRTY), args.toArray());
+        return applied != null ? applied : 0L;
+    }
+
+    /**
+     * Đánh dấu attempt đã được kiểm tra trong DB để các delta sau không phải đọc DB.
+     */
+    public void open(UUID attemptId) {
+        String key = draftKey(attemptId);
+        stringRedisTemplate.opsForHash().putIfAbsent(key, "open", "1");
+        stringRedisTemplate.expire(key, DRAFT_TTL);
+    }
+
+    /**
+     * @return các thay đổi đang được đệm, null nếu không có
+     */
+    public Draft read(UUID attemptId) throws JsonProcessingException {
+        Map<Object, Object> fields = stringRedisTemplate.opsForHash().entries(draftKey(attemptId));
+        if (fields == null || fields.isEmpty()) {
+            return null;
+        }
+        Map<UUID, ExamAttemptAnswersRequest.ExamAnswerRequest> answers = new LinkedHashMap<>();
+        Integer duration = null;
+        List<UUID> taskId = null;
+        List<UUID> questionGroupIds = null;
+        List<UUID> itemsIds = null;
+        for (Map.Entry<Object, Object> entry : fields.entrySet()) {
+            String field = entry.getKey().toString();
+            if (!field.startsWith("v:")) {
+                continue;
+            }
+            String name = field.substring(2);
+            String json = entry.getValue().toString();
+            if (name.startsWith(QUESTION_FIELD_PREFIX)) {
+                answers.put(UUID.fromString(name.substring(QUESTION_FIELD_PREFIX.length())),
+                        objectMapper.readValue(json, ExamAttemptAnswersRequest.ExamAnswerRequest.class));
+            } else {
+                switch (name) {
+                    case DURATION_FIELD -> duration = objectMapper.readValue(json, Integer.class);
+                    case TASK_ID_FIELD -> taskId = objectMapper.readValue(json, new TypeReference<>() {});
+                    case QUESTION_GROUP_IDS_FIELD -> questionGroupIds = objectMapper.readValue(json, new TypeReference<>() {});
+                    case ITEM_IDS_FIELD -> itemsIds = objectMapper.readValue(json, new TypeReference<>() {});
+                    default -> {
+                    }
+                }
+            }
+        }
+        return new Draft(duration, taskId, questionGroupIds, itemsIds, answers);
+    }
+
+    /**
+     * Lấy (và bỏ khỏi set) tối đa {@code count} attempt có thay đổi chưa ghi xuống DB.
+     */
+    public List<UUID> pollDirty(int count) {
+        List<String> members = stringRedisTemplate.opsForSet().pop(Constants.RedisKey.EXAM_AUTOSAVE_DIRTY, count);
+        if (members == null) {
+            return List.of();
+        }
+        return members.stream().map(UUID::fromString).toList();
+    }
+
+    public void markDirty(UUID attemptId) {
+        stringRedisTemplate.opsForSet().add(Constants.RedisKey.EXAM_AUTOSAVE_DIRTY, attemptId.toString());
+    }
+
+    public void discard(UUID attemptId) {
+        stringRedisTemplate.delete(draftKey(attemptId));
+        stringRedisTemplate.opsForSet().remove(Constants.RedisKey.EXAM_AUTOSAVE_DIRTY, attemptId.toString());
+    }
+
+    private void addField(List<String> args, String field, Object value) throws JsonProcessingException {
+        if (value != null) {
+            args.add(field);
+            args.add(objectMapper.writeValueAsString(value));
+        }
+    }
+
+    private static String draftKey(UUID attemptId) {
+        return Constants.RedisKey.EXAM_AUTOSAVE + attemptId;
+    }
+
+    /**
+     * Trạng thái đã gộp của các delta; trường null = chưa có delta nào thay đổi.
+     */
+    public record Draft(
+            Integer duration,
+            List<UUID> taskId,
+            List<UUID> questionGroupIds,
+            List<UUID> itemsIds,
+            Map<UUID, ExamAttemptAnswersRequest.ExamAnswerRequest> answers
+    ) {
+        public boolean isEmpty() {
+            return duration == null && taskId == null && questionGroupIds == null && itemsIds == null
+                    && answers.isEmpty();
+        }
+    }
+}
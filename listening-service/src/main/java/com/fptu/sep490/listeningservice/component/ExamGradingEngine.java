@@ -0,0 +1,178 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.ReportData;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.ExamAnswerKey;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import com.fptu.sep490.listeningservice.viewmodel.response.SubmittedExamAttemptResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Chấm bài thi hoàn toàn dựa trên {@link ExamAnswerKey} đã biên dịch.
+ * Chỉ query khi bài nộp chứa câu hỏi / choice nằm ngoài key (đề bị sửa trong lúc làm bài).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExamGradingEngine {
+    ExamAnswerKeyCompiler examAnswerKeyCompiler;
+    QuestionRepository questionRepository;
+    ChoiceRepository choiceRepository;
+
+    public ExamGradingResult grade(ExamAnswerKey answerKey, List<UUID> questionIds, Map<UUID, List<String>> userAnswers) {
+        Set<UUID> submittedIds = new LinkedHashSet<>(questionIds);
+        List<UUID> missing = submittedIds.stream().filter(id -> answerKey.slotOf(id) < 0).toList();
+        ExamAnswerKey supplement = missing.isEmpty() ? null
+                : examAnswerKeyCompiler.compile(answerKey.examId(), questionRepository.findQuestionsByIds(missing));
+        Map<UUID, String> choiceLabels = withMissingChoiceLabels(answerKey, supplement, submittedIds, userAnswers);
+
+        int points = 0;
+        List<SubmittedExamAttemptResponse.ResultSet> resultSets = new ArrayList<>();
+        List<ReportData> reportData = new ArrayList<>();
+        for (UUID questionId : submittedIds) {
+            List<String> userSelectedAnswers = userAnswers.get(questionId);
+            if (userSelectedAnswers == null) {
+                continue;
+            }
+            ExamAnswerKey key = answerKey;
+            int slot = answerKey.slotOf(questionId);
+            if (slot < 0 && supplement != null) {
+                key = supplement;
+                slot = supplement.slotOf(questionId);
+            }
+            if (slot < 0) {
+                continue;
+            }
+            SubmittedExamAttemptResponse.ResultSet result = switch (key.questionTypes()[slot]) {
+                case MULTIPLE_CHOICE -> scoreMultipleChoice(key, slot, userSelectedAnswers, choiceLabels);
+                case FILL_IN_THE_BLANKS, MATCHING -> scoreText(key, slot, userSelectedAnswers);
+                case DRAG_AND_DROP -> scoreDragItem(key, slot, userSelectedAnswers);
+            };
+            if (result.isCorrect()) {
+                points += key.points()[slot];
+            }
+            resultSets.add(result);
+            reportData.add(ReportData.builder()
+                    .questionType(key.questionTypes()[slot])
+                    .questionId(questionId)
+                    .isCorrect(result.isCorrect())
+                    .build());
+        }
+        resultSets.sort(Comparator.comparing(SubmittedExamAttemptResponse.ResultSet::getQuestionIndex));
+        return new ExamGradingResult(resultSets, reportData, points);
+    }
+
+    private static SubmittedExamAttemptResponse.ResultSet scoreMultipleChoice(ExamAnswerKey key, int slot,
+                                                                          List<String> userSelectedAnswers,
+                                                                          Map<UUID, String> choiceLabels) {
+        List<UUID> answerChoice = userSelectedAnswers.stream().map(UUID::fromString).toList();
+        List<String> userAnswers = new LinkedHashSet<>(answerChoice).stream()
+                .filter(choiceLabels::containsKey)
+                .map(choiceLabels::get)
+                .toList();
+        UUID[] correctChoiceIds = key.correctChoiceIds()[slot];
+        List<String> correctLabel = new ArrayList<>();
+        for (int i = 0; i < correctChoiceIds.length; i++) {
+            if (answerChoice.contains(correctChoiceIds[i])) {
+                correctLabel.add(key.correctChoiceLabels()[slot][i]);
+            }
+        }
+        int numberOfCorrect = 0;
+        for (String userAnswer : userAnswers) {
+            if (correctLabel.contains(userAnswer)) {
+                numberOfCorrect++;
+            }
+        }
+        return SubmittedExamAttemptResponse.ResultSet.builder()
+                .questionIndex(key.questionOrders()[slot])
+                .userAnswer(userAnswers)
+                .explanation(key.explanations()[slot])
+                .isCorrect(numberOfCorrect == correctChoiceIds.length)
+                .build();
+    }
+
+    private static SubmittedExamAttemptResponse.ResultSet scoreText(ExamAnswerKey key, int slot, List<String> userSelectedAnswers) {
+        String normalized = key.normalizedTexts()[slot];
+        boolean isCorrect = !userSelectedAnswers.isEmpty() && normalized != null
+                && normalized.equals(ExamAnswerKeyCompiler.normalize(userSelectedAnswers.getFirst()));
+        return SubmittedExamAttemptResponse.ResultSet.builder()
+                .userAnswer(userSelectedAnswers)
+                .explanation(key.explanations()[slot])
+                .correctAnswer(key.correctTexts()[slot] != null ? List.of(key.correctTexts()[slot]) : List.of())
+                .isCorrect(isCorrect)
+                .questionIndex(key.questionOrders()[slot])
+                .build();
+    }
+
+    private static SubmittedExamAttemptResponse.ResultSet scoreDragItem(ExamAnswerKey key, int slot, List<String> userSelectedAnswers) {
+        UUID correctDragItemId = key.correctDragItemIds()[slot];
+        boolean isCorrect = !userSelectedAnswers.isEmpty() && correctDragItemId != null
+                && correctDragItemId.equals(UUID.fromString(userSelectedAnswers.getFirst()));
+        String content = key.correctDragItemContents()[slot];
+        return SubmittedExamAttemptResponse.ResultSet.builder()
+                .userAnswer(userSelectedAnswers)
+                .explanation(key.explanations()[slot])
+                .correctAnswer(content != null ? List.of(content) : List.of())
+                .isCorrect(isCorrect)
+                .questionIndex(key.questionOrders()[slot])
+                .build();
+    }
+
+    private Map<UUID, String> withMissingChoiceLabels(ExamAnswerKey answerKey, ExamAnswerKey supplement,
+                                                      Set<UUID> questionIds, Map<UUID, List<String>> userAnswers) {
+        Map<UUID, String> known = answerKey.choiceLabels();
+        if (supplement != null) {
+            known = new HashMap<>(known);
+            known.putAll(supplement.choiceLabels());
+        }
+        Set<UUID> missing = new HashSet<>();
+        for (UUID questionId : questionIds) {
+            List<String> selected = userAnswers.get(questionId);
+            if (selected == null || !isMultipleChoice(answerKey, supplement, questionId)) {
+                continue;
+            }
+            for (String choiceId : selected) {
+                UUID id = UUID.fromString(choiceId);
+                if (!known.containsKey(id)) {
+                    missing.add(id);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return known;
+        }
+        Map<UUID, String> labels = new HashMap<>(known);
+        choiceRepository.findAllById(missing).forEach(c -> labels.put(c.getChoiceId(), c.getLabel()));
+        return labels;
+    }
+
+    private static boolean isMultipleChoice(ExamAnswerKey answerKey, ExamAnswerKey supplement, UUID questionId) {
+        int slot = answerKey.slotOf(questionId);
+        if (slot >= 0) {
+            return answerKey.questionTypes()[slot] == QuestionType.MULTIPLE_CHOICE;
+        }
+        slot = supplement != null ? supplement.slotOf(questionId) : -1;
+        return slot >= 0 && supplement.questionTypes()[slot] == QuestionType.MULTIPLE_CHOICE;
+    }
+
+    public record ExamGradingResult(
+            List<SubmittedExamAttemptResponse.ResultSet> resultSets,
+            List<ReportData> reportData,
+            int points
+    ) {
+    }
+}
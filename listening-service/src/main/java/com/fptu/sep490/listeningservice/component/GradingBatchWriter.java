@@ -0,0 +1,100 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.AnswerAttempt;
+import com.fptu.sep490.listeningservice.model.ReportData;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Ghi kết quả chấm bằng JDBC batch thay vì save từng entity.
+ * report_data dùng khóa IDENTITY nên Hibernate không thể batch insert, phải đi qua JdbcTemplate.
+ * Bắt buộc chạy trong transaction nộp bài của người gọi (JdbcTemplate dùng chung connection với JPA),
+ * để kết quả chấm, report_data và các rollup cùng commit hoặc cùng rollback.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GradingBatchWriter {
+    static final int BATCH_SIZE = 200;
+
+    // Giữ nguyên dữ liệu đã lưu trước đó (saveAttempt) nếu lần nộp không gửi field tương ứng
+    static final String UPSERT_ANSWER_ATTEMPT = """
+            INSERT INTO answer_attempt (attempt_id, question_id, is_correct, choices, data_filled, data_matched, drag_item_id)
+            VALUES (?, ?, ?, ?, ?, ?, ?)
+            ON CONFLICT (attempt_id, question_id) DO UPDATE SET
+                is_correct = EXCLUDED.is_correct,
+                choices = COALESCE(EXCLUDED.choices, answer_attempt.choices),
+                data_filled = COALESCE(EXCLUDED.data_filled, answer_attempt.data_filled),
+                data_matched = COALESCE(EXCLUDED.data_matched, answer_attempt.data_matched),
+                drag_item_id = COALESCE(EXCLUDED.drag_item_id, answer_attempt.drag_item_id)
+            """;
+
+    static final String INSERT_REPORT_DATA = """
+            INSERT INTO report_data (question_id, question_type, is_correct, checked_date)
+            VALUES (?, ?, ?, CURRENT_DATE)
+            """;
+
+    // Rollup question_type_daily_stats được cộng cùng lúc ghi report_data, cùng ngày CURRENT_DATE
+    static final String INCREMENT_QUESTION_TYPE_STATS = """
+            INSERT INTO question_type_daily_stats (stat_date, question_type, correct_count, wrong_count)
+            VALUES (CURRENT_DATE, ?, ?, ?)
+            ON CONFLICT (stat_date, question_type) DO UPDATE SET
+                correct_count = question_type_daily_stats.correct_count + EXCLUDED.correct_count,
+                wrong_count = question_type_daily_stats.wrong_count + EXCLUDED.wrong_count
+            """;
+
+    JdbcTemplate jdbcTemplate;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void upsertAnswerAttempts(List<AnswerAttempt> answerAttempts) {
+        if (answerAttempts.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPSERT_ANSWER_ATTEMPT, answerAttempts, BATCH_SIZE, (ps, aa) -> {
+            ps.setObject(1, aa.getId().getAttemptId());
+            ps.setObject(2, aa.getId().getQuestionId());
+            ps.setObject(3, aa.getIsCorrect(), Types.BOOLEAN);
+            if (aa.getChoices() != null) {
+                ps.setArray(4, ps.getConnection().createArrayOf("uuid", aa.getChoices().toArray()));
+            } else {
+                ps.setNull(4, Types.ARRAY);
+            }
+            ps.setString(5, aa.getDataFilled());
+            ps.setString(6, aa.getDataMatched());
+            ps.setObject(7, aa.getDragItemId(), Types.OTHER);
+        });
+    }
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void insertReportData(List<ReportData> reportData) {
+        if (reportData.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_REPORT_DATA, reportData, BATCH_SIZE, (ps, rd) -> {
+            ps.setObject(1, rd.getQuestionId());
+            ps.setInt(2, rd.getQuestionType().ordinal());
+            ps.setBoolean(3, rd.isCorrect());
+        });
+
+        // Mỗi loại câu hỏi một dòng [correct, wrong]; TreeMap để các transaction khóa dòng theo cùng thứ tự
+        Map<Integer, long[]> counts = new TreeMap<>();
+        for (ReportData rd : reportData) {
+            counts.computeIfAbsent(rd.getQuestionType().ordinal(), type -> new long[2])[rd.isCorrect() ? 0 : 1]++;
+        }
+        jdbcTemplate.batchUpdate(INCREMENT_QUESTION_TYPE_STATS, List.copyOf(counts.entrySet()), BATCH_SIZE, (ps, entry) -> {
+            ps.setInt(1, entry.getKey());
+            ps.setLong(2, entry.getValue()[0]);
+            ps.setLong(3, entry.getValue()[1]);
+        });
+    }
+}
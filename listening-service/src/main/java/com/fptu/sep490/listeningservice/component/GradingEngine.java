@@ -0,0 +1,153 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.AnswerAttempt;
+import com.fptu.sep490.listeningservice.model.embedded.AnswerAttemptId;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.AnswerKey;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.viewmodel.request.SavedAnswersRequest;
+import com.fptu.sep490.listeningservice.viewmodel.request.SavedAnswersRequestList;
+import com.fptu.sep490.listeningservice.viewmodel.response.SubmittedAttemptResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Chấm toàn bộ bài làm trong bộ nhớ dựa trên {@link AnswerKey}.
+ * Chỉ query khi người dùng gửi choice không có trong snapshot (một query duy nhất).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GradingEngine {
+    ChoiceRepository choiceRepository;
+
+    public GradingResult grade(AnswerKey answerKey, UUID attemptId, SavedAnswersRequestList answers) {
+        Map<UUID, SavedAnswersRequest> savedAnswers = new HashMap<>();
+        if (answers.answers() != null) {
+            for (SavedAnswersRequest savedAnswer : answers.answers()) {
+                savedAnswers.put(savedAnswer.questionId(), savedAnswer);
+            }
+        }
+        Map<UUID, String> choiceLabels = withMissingChoiceLabels(answerKey.choiceLabels(), savedAnswers);
+
+        List<SubmittedAttemptResponse.ResultSet> resultSets = new ArrayList<>();
+        List<AnswerAttempt> answerAttempts = new ArrayList<>();
+        int totalPoints = 0;
+        for (AnswerKey.QuestionKey question : answerKey.questions().values()) {
+            SavedAnswersRequest answer = savedAnswers.get(question.questionId());
+            if (Objects.isNull(answer)) {
+                continue;
+            }
+            AnswerAttempt answerAttempt = AnswerAttempt.builder()
+                    .id(AnswerAttemptId.builder()
+                            .attemptId(attemptId)
+                            .questionId(question.questionId())
+                            .build())
+                    .build();
+            SubmittedAttemptResponse.ResultSet result;
+            if (question.questionType() == QuestionType.MULTIPLE_CHOICE) {
+                result = scoreMultipleChoice(question, answer.choices() != null ? answer.choices() : List.of(), choiceLabels);
+                answerAttempt.setChoices(answer.choices());
+            } else if (question.questionType() == QuestionType.FILL_IN_THE_BLANKS) {
+                result = scoreText(question, answer.dataFilled());
+                answerAttempt.setDataFilled(answer.dataFilled());
+            } else if (question.questionType() == QuestionType.MATCHING) {
+                result = scoreText(question, answer.dataMatched());
+                answerAttempt.setDataMatched(answer.dataMatched());
+            } else if (question.questionType() == QuestionType.DRAG_AND_DROP) {
+                result = SubmittedAttemptResponse.ResultSet.builder()
+                        .userAnswer(answer.dragItemId() != null ? List.of(answer.dragItemId().toString()) : Collections.emptyList())
+                        .explanation(question.explanation())
+                        .correctAnswer(question.correctDragItemContent() != null ? List.of(question.correctDragItemContent()) : Collections.emptyList())
+                        .isCorrect(answer.dragItemId() != null && answer.dragItemId().equals(question.correctDragItemId()))
+                        .questionIndex(question.questionOrder())
+                        .build();
+                answerAttempt.setDragItemId(answer.dragItemId());
+            } else {
+                continue;
+            }
+            answerAttempt.setIsCorrect(result.isCorrect());
+            if (result.isCorrect()) {
+                totalPoints += question.point();
+            }
+            resultSets.add(result);
+            answerAttempts.add(answerAttempt);
+        }
+        resultSets.sort(Comparator.comparing(SubmittedAttemptResponse.ResultSet::getQuestionIndex));
+        return new GradingResult(resultSets, answerAttempts, totalPoints);
+    }
+
+    private static SubmittedAttemptResponse.ResultSet scoreMultipleChoice(AnswerKey.QuestionKey question,
+                                                                          List<UUID> userChoice,
+                                                                          Map<UUID, String> choiceLabels) {
+        List<String> userAnswers = new LinkedHashSet<>(userChoice).stream()
+                .filter(choiceLabels::containsKey)
+                .map(choiceLabels::get)
+                .toList();
+        List<String> correctLabel = new ArrayList<>();
+        for (AnswerKey.ChoiceKey correctAnswer : question.correctChoices()) {
+            if (userChoice.contains(correctAnswer.choiceId())) {
+                correctLabel.add(correctAnswer.label());
+            }
+        }
+        int numberOfCorrect = 0;
+        for (String userAnswer : userAnswers) {
+            if (correctLabel.contains(userAnswer)) {
+                numberOfCorrect++;
+            }
+        }
+        return SubmittedAttemptResponse.ResultSet.builder()
+                .questionIndex(question.questionOrder())
+                .userAnswer(userAnswers)
+                .correctAnswer(question.correctChoices().stream().map(AnswerKey.ChoiceKey::label).toList())
+                .explanation(question.explanation())
+                .isCorrect(numberOfCorrect == question.correctChoices().size())
+                .build();
+    }
+
+    // Fill in the blanks và matching đều so với correctAnswer, không phân biệt hoa thường
+    private static SubmittedAttemptResponse.ResultSet scoreText(AnswerKey.QuestionKey question, String userAnswer) {
+        String correctAnswer = question.correctAnswer();
+        return SubmittedAttemptResponse.ResultSet.builder()
+                .userAnswer(userAnswer != null ? List.of(userAnswer) : Collections.emptyList())
+                .explanation(question.explanation())
+                .correctAnswer(correctAnswer != null ? List.of(correctAnswer) : Collections.emptyList())
+                .isCorrect(correctAnswer != null && userAnswer != null && correctAnswer.equalsIgnoreCase(userAnswer))
+                .questionIndex(question.questionOrder())
+                .build();
+    }
+
+    private Map<UUID, String> withMissingChoiceLabels(Map<UUID, String> known, Map<UUID, SavedAnswersRequest> answers) {
+        Set<UUID> missing = new HashSet<>();
+        answers.values().stream()
+                .filter(a -> a.choices() != null)
+                .forEach(a -> a.choices().stream().filter(id -> id != null && !known.containsKey(id)).forEach(missing::add));
+        if (missing.isEmpty()) {
+            return known;
+        }
+        Map<UUID, String> labels = new HashMap<>(known);
+        choiceRepository.findAllById(missing).forEach(c -> labels.put(c.getChoiceId(), c.getLabel()));
+        return labels;
+    }
+
+    public record GradingResult(
+            List<SubmittedAttemptResponse.ResultSet> resultSets,
+            List<AnswerAttempt> answerAttempts,
+            int totalPoints
+    ) {
+    }
+}
@@ -0,0 +1,67 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.ListeningTask;
+import com.fptu.sep490.listeningservice.repository.ListeningExamRepository;
+import com.fptu.sep490.listeningservice.repository.ListeningTaskRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Xóa cache của các listening task có nội dung vừa thay đổi (gọi bởi {@link ListeningContentChangeListener} sau commit):
+ * {@link ListeningTaskContentCache} của phiên bản hiện tại, {@link ExamAnswerKeyCache} / {@link ExamPaperSnapshotCache}
+ * của mọi phiên bản đề chứa task, và bản xem lại bài làm của các đề đó nếu nội dung bị sửa tại chỗ.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ListeningCacheInvalidator {
+    ListeningTaskRepository listeningTaskRepository;
+    QuestionGroupRepository questionGroupRepository;
+    QuestionRepository questionRepository;
+    ListeningExamRepository listeningExamRepository;
+    ListeningTaskContentCache listeningTaskContentCache;
+    ExamAnswerKeyCache examAnswerKeyCache;
+    ExamPaperSnapshotCache examPaperSnapshotCache;
+    ExamAttemptReviewCache examAttemptReviewCache;
+
+    void invalidate(ListeningContentChangeListener.Changes changes) {
+        Set<UUID> taskIds = new HashSet<>();
+        if (!changes.taskIds.isEmpty()) {
+            taskIds.addAll(listeningTaskRepository.findOriginalIdsByIdIn(changes.taskIds));
+        }
+        if (!changes.groupIds.isEmpty()) {
+            taskIds.addAll(questionGroupRepository.findOriginalTaskIdsByGroupIdIn(changes.groupIds));
+        }
+        if (!changes.questionIds.isEmpty()) {
+            taskIds.addAll(questionRepository.findOriginalTaskIdsByQuestionIdIn(changes.questionIds));
+        }
+        if (taskIds.isEmpty()) {
+            return;
+        }
+
+        // Key chỉ mang version của task, không đổi khi group / question có phiên bản mới
+        for (UUID taskId : taskIds) {
+            ListeningTask current = listeningTaskRepository.findLastestVersion(taskId);
+            if (current != null) {
+                listeningTaskContentCache.evict(taskId, current.getVersion());
+            }
+        }
+        List<UUID> listeningExamIds = listeningExamRepository.findIdsByOriginalTaskIdIn(taskIds);
+        for (UUID listeningExamId : listeningExamIds) {
+            examAnswerKeyCache.evict(listeningExamId);
+            examPaperSnapshotCache.evict(listeningExamId);
+        }
+        if (changes.inPlace) {
+            examAttemptReviewCache.invalidateExams(listeningExamIds);
+        }
+    }
+}
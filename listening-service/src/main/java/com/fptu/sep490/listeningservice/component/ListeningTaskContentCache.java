@@ -0,0 +1,40 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.commonlibrary.cache.TwoTierCache;
+import com.fptu.sep490.commonlibrary.cache.TwoTierCacheRegistry;
+import com.fptu.sep490.listeningservice.model.graph.TaskGraph;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cache nội dung đã publish của listening task, key = taskId + display version hiện tại.
+ * Key của task bị xóa khi task/group/question/choice/drag item của nó thay đổi (xem {@link ListeningCacheInvalidator}).
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ListeningTaskContentCache {
+    TwoTierCache<TaskGraph> cache;
+    TaskGraphLoader taskGraphLoader;
+
+    public ListeningTaskContentCache(TwoTierCacheRegistry registry,
+                                     TaskGraphLoader taskGraphLoader,
+                                     @Value("${cache.listening-task-content.max-size:500}") long maxSize,
+                                     @Value("${cache.listening-task-content.local-ttl:PT30M}") Duration localTtl,
+                                     @Value("${cache.listening-task-content.redis-ttl:PT12H}") Duration redisTtl) {
+        this.cache = registry.create("listening-task-content", TaskGraph.class, maxSize, localTtl, redisTtl);
+        this.taskGraphLoader = taskGraphLoader;
+    }
+
+    public TaskGraph getCurrentVersion(UUID taskId, Integer version) {
+        return cache.get(taskId + ":" + version, () -> taskGraphLoader.loadCurrentVersion(taskId));
+    }
+
+    public void evict(UUID taskId, Integer version) {
+        cache.evict(taskId + ":" + version);
+    }
+}
@@ -0,0 +1,48 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.repository.UserProgressDailyRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+/**
+ * Dựng bảng user_progress_daily từ exam_attempt / attempts cho dữ liệu có trước khi có rollup.
+ * Khi khởi động chỉ chạy nếu bảng còn rỗng; các câu lệnh ghi đè theo GROUP BY nên chạy lại vẫn an toàn.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class UserProgressBackfill {
+    UserProgressDailyRepository userProgressDailyRepository;
+
+    @NonFinal
+    @Value("${progress-rollup.backfill-on-startup:true}")
+    boolean backfillOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            if (userProgressDailyRepository.count() == 0) {
+                backfill();
+            }
+        } catch (RuntimeException e) {
+            log.error("Error backfilling user progress rollups", e);
+        }
+    }
+
+    public void backfill() {
+        int examDays = userProgressDailyRepository.backfillExams();
+        int taskDays = userProgressDailyRepository.backfillTasks();
+        log.info("Backfilled user progress rollups: {} exam days, {} task days", examDays, taskDays);
+    }
+}
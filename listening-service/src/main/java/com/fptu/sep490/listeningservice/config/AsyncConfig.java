@@ -31,19 +31,4 @@ public class AsyncConfig {
         executor.initialize();
         return executor;
     }
-    
-    @Bean("uploadExecutor")
-    public Executor uploadExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(3);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(20);
-        executor.setThreadNamePrefix("upload-");
-        executor.setRejectedExecutionHandler((r, executor1) -> {
-            log.warn("Upload task rejected, will retry: {}", r.toString());
-            throw new RuntimeException("Upload task rejected");
-        });
-        executor.initialize();
-        return executor;
-    }
-}
\ No newline at end of file
+}
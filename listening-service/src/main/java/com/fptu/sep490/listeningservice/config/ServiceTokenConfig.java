@@ -0,0 +1,29 @@
+package com.fptu.sep490.listeningservice.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.commonlibrary.keycloak.ServiceTokenManager;
+import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.fptu.sep490.listeningservice.constants.Constants;
+import com.fptu.sep490.listeningservice.repository.client.KeyCloakTokenClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class ServiceTokenConfig {
+
+    // Token client-credentials dùng chung cho các lời gọi Keycloak admin API
+    @Bean
+    public ServiceTokenManager serviceTokenManager(ObjectProvider<KeyCloakTokenClient> keyCloakTokenClient,
+                                                   RedisService redisService,
+                                                   ObjectMapper objectMapper,
+                                                   @Value("${keycloak.realm}") String realm,
+                                                   @Value("${keycloak.client-id}") String clientId,
+                                                   @Value("${keycloak.client-secret}") String clientSecret) {
+        return new ServiceTokenManager(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN,
+                () -> keyCloakTokenClient.getObject()
+                        .requestToken(ServiceTokenManager.clientCredentialsForm(clientId, clientSecret), realm),
+                redisService, objectMapper);
+    }
+}
@@ -51,6 +51,10 @@ public class Constants {
         public static final String KEY_CLOAK_CLIENT_TOKEN = "keycloak-client-token";
         public static final String USER_PENDING_VERIFY = "keycloak-client-refresh-token";
         public static final String USER_PROFILE = "user-profile";
+        public static final String EXAM_AUTOSAVE = "exam-autosave:";
+        public static final String EXAM_AUTOSAVE_DIRTY = "exam-autosave-dirty";
+        // Hash khóa attempt do personal-service ghi (sessionId, userId, lastPing)
+        public static final String ATTEMPT_LOCK = "attempt_lock:";
     }
 
     public final class ErrorCode {
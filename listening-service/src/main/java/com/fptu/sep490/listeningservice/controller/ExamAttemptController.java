@@ -9,6 +9,7 @@ import com.fptu.sep490.commonlibrary.viewmodel.response.Pagination;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.OverviewProgress;
 import com.fptu.sep490.listeningservice.service.ExamAttemptService;
+import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswerDeltaRequest;
 import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswersRequest;
 import com.fptu.sep490.listeningservice.viewmodel.response.*;
 import io.swagger.v3.oas.annotations.Operation;
@@ -154,6 +155,25 @@ public class ExamAttemptController {
         return ResponseEntity.ok(baseResponse);
     }
 
+    @PatchMapping("/auto-save/{attempt-id}")
+    @Operation(
+            summary = "Auto-save changed exam attempt answers",
+            description = "Auto-save only the answers changed since the previous auto-save. Each request carries an increasing sequence number; " +
+                    "duplicate or out-of-order requests never overwrite newer answers. Answers are graded on submission"
+    )
+    @PreAuthorize("isAuthenticated()")
+    public ResponseEntity<BaseResponse<Void>> autoSaveExamAttemptDelta(
+            @PathVariable("attempt-id") String attemptId,
+            @RequestBody ExamAttemptAnswerDeltaRequest delta,
+            HttpServletRequest request
+    ) throws JsonProcessingException {
+        examAttemptService.autoSaveExamDelta(attemptId, delta, request);
+        BaseResponse<Void> baseResponse = BaseResponse.<Void>builder()
+                .message("Exam attempt auto-saved successfully")
+                .build();
+        return ResponseEntity.ok(baseResponse);
+    }
+
     @PostMapping("/internal/overview-progress")
     @PreAuthorize("isAuthenticated()")
     public ResponseEntity<BaseResponse<OverviewProgress>> getOverViewProgress(@RequestHeader("Authorization") String token, @RequestBody OverviewProgressReq body) throws JsonProcessingException {
@@ -2,13 +2,13 @@ package com.fptu.sep490.listeningservice.helper;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.commonlibrary.keycloak.ServiceTokenManager;
+import com.fptu.sep490.commonlibrary.keycloak.UserProfileBatchLoader;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
-import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.model.QuestionGroup;
-import com.fptu.sep490.listeningservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.listeningservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.listeningservice.viewmodel.response.UserInformationResponse;
 import com.fptu.sep490.listeningservice.viewmodel.response.UserProfileResponse;
@@ -21,39 +21,33 @@ import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 
 import java.time.Duration;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Collection;
 
 @Component
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class Helper {
-    KeyCloakTokenClient keyCloakTokenClient;
     KeyCloakUserClient keyCloakUserClient;
     RedisService redisService;
+    ServiceTokenManager serviceTokenManager;
+    UserProfileBatchLoader userProfileBatchLoader;
 
     @Value("${keycloak.realm}")
     @NonFinal
     String realm;
 
-    @Value("${keycloak.client-id}")
-    @NonFinal
-    String clientId;
-
-    @Value("${keycloak.client-secret}")
-    @NonFinal
-    String clientSecret;
-
 
     public UserProfileResponse getUserProfileById(String userId) throws JsonProcessingException {
-        String clientToken = getCachedClientToken();
         UserProfileResponse cachedProfile = getFromCache(userId);
         if (cachedProfile != null) {
             return cachedProfile;
         }
-        UserProfileResponse profileResponse = keyCloakUserClient.getUserById(realm, "Bearer " + clientToken, userId);
+        UserProfileResponse profileResponse = serviceTokenManager.withToken(
+                clientToken -> keyCloakUserClient.getUserById(realm, "Bearer " + clientToken, userId));
 
         if (profileResponse == null) {
             throw new AppException(Constants.ErrorCodeMessage.UNAUTHORIZED, Constants.ErrorCode.UNAUTHORIZED,
@@ -69,23 +63,7 @@ public class Helper {
     }
 
     public String getCachedClientToken() throws JsonProcessingException {
-        final String cacheKey = Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN;
-
-        String cachedToken = redisService.getValue(cacheKey, String.class);
-        if (cachedToken != null) {
-            return cachedToken;
-        }
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "client_credentials");
-        form.add("client_id", clientId);
-        form.add("client_secret", clientSecret);
-        form.add("scope", "openid");
-
-        KeyCloakTokenResponse tokenResponse = keyCloakTokenClient.requestToken(form, realm);
-        String newToken = tokenResponse.accessToken();
-        var expiresIn = tokenResponse.expiresIn();
-        redisService.saveValue(cacheKey, newToken, Duration.ofSeconds(expiresIn));
-        return newToken;
+        return serviceTokenManager.getToken();
     }
 
     public String getUserIdFromToken(HttpServletRequest request) {
@@ -114,13 +92,7 @@ public class Helper {
     }
     public UserInformationResponse getUserInformationResponse(String userId) {
         try {
-            UserProfileResponse user = getUserProfileById(userId);
-            return UserInformationResponse.builder()
-                    .userId(user.id())
-                    .email(user.email())
-                    .firstName(user.firstName())
-                    .lastName(user.lastName())
-                    .build();
+            return toUserInformation(getUserProfileById(userId));
         } catch (JsonProcessingException e) {
             // Bọc thành AppException (runtime) để không phải throws
             throw new AppException(
@@ -132,4 +104,39 @@ public class Helper {
         }
     }
 
+    /**
+     * Lấy profile của nhiều user trong một lần (dùng cho các API trả về danh sách).
+     * Khác với {@link #getUserProfileById(String)}, user không tồn tại trên Keycloak chỉ không có trong map thay vì lỗi.
+     */
+    public Map<String, UserProfileResponse> getUserProfiles(Collection<String> userIds) throws JsonProcessingException {
+        return userProfileBatchLoader.load(userIds, Constants.RedisKey.USER_PROFILE, UserProfileResponse.class,
+                Duration.ofDays(1),
+                userId -> serviceTokenManager.withToken(
+                        clientToken -> keyCloakUserClient.getUserById(realm, "Bearer " + clientToken, userId)));
+    }
+
+    public Map<String, UserInformationResponse> getUserInformationResponses(Collection<String> userIds) {
+        try {
+            Map<String, UserInformationResponse> result = new LinkedHashMap<>();
+            getUserProfiles(userIds).forEach((userId, user) -> result.put(userId, toUserInformation(user)));
+            return result;
+        } catch (JsonProcessingException e) {
+            throw new AppException(
+                    Constants.ErrorCode.INTERNAL_SERVER_ERROR,
+                    "Lỗi khi parse JSON user profile",
+                    HttpStatus.INTERNAL_SERVER_ERROR.value(),
+                    e
+            );
+        }
+    }
+
+    private UserInformationResponse toUserInformation(UserProfileResponse user) {
+        return UserInformationResponse.builder()
+                .userId(user.id())
+                .email(user.email())
+                .firstName(user.firstName())
+                .lastName(user.lastName())
+                .build();
+    }
+
 }
@@ -1,5 +1,6 @@
 package com.fptu.sep490.listeningservice.model;
 
+import com.fptu.sep490.listeningservice.component.ListeningContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -14,6 +15,7 @@ import java.util.UUID;
 @AllArgsConstructor
 @Builder
 @Entity
+@EntityListeners(ListeningContentChangeListener.class)
 @Table(name = "choices")
 public class Choice {
     @Id
@@ -1,5 +1,6 @@
 package com.fptu.sep490.listeningservice.model;
 
+import com.fptu.sep490.listeningservice.component.ListeningContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -11,6 +12,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(ListeningContentChangeListener.class)
 @Table(name = "drag_items")
 @Getter
 @Setter
@@ -54,4 +54,10 @@ public class ExamAttempt {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
 
+    /**
+     * Đã nộp và chấm điểm, tức là đã được tính vào rollup tiến độ / điểm thi.
+     */
+    public boolean isSubmitted() {
+        return Boolean.TRUE.equals(isFinished) && totalPoint != null;
+    }
 }
@@ -3,6 +3,7 @@ package com.fptu.sep490.listeningservice.model;
 import com.fptu.sep490.listeningservice.model.enumeration.IeltsType;
 import com.fptu.sep490.listeningservice.model.enumeration.PartNumber;
 import com.fptu.sep490.listeningservice.model.enumeration.Status;
+import com.fptu.sep490.listeningservice.component.ListeningContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -14,6 +15,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(ListeningContentChangeListener.class)
 @Table(name = "listening_task")
 @Getter
 @Setter
@@ -2,6 +2,7 @@ package com.fptu.sep490.listeningservice.model;
 
 import com.fptu.sep490.listeningservice.model.enumeration.QuestionCategory;
 import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.component.ListeningContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -12,6 +13,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
+@EntityListeners(ListeningContentChangeListener.class)
 @Table(name ="questions")
 @Getter
 @Setter
@@ -1,6 +1,7 @@
 package com.fptu.sep490.listeningservice.model;
 
 import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.component.ListeningContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -13,6 +14,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(ListeningContentChangeListener.class)
 @Table(name = "question_groups")
 @Getter
 @Setter
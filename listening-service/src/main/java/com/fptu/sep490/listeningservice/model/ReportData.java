@@ -9,7 +9,7 @@ import java.time.LocalDate;
 import java.util.UUID;
 
 @Entity
-@Table(name = "report_data")
+@Table(name = "report_data", indexes = @Index(name = "idx_report_data_checked_date", columnList = "checked_date"))
 @Getter
 @Setter
 @NoArgsConstructor
@@ -0,0 +1,36 @@
+package com.fptu.sep490.listeningservice.model;
+
+import com.fptu.sep490.listeningservice.model.embedded.UserProgressDailyId;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Tổng hợp tiến độ của một user trong một ngày (theo ngày tạo attempt), được cộng dồn khi nộp bài
+ * để các màn overview / band chart / band score không phải đọc lại toàn bộ attempt.
+ */
+@Entity
+@Table(name = "user_progress_daily")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserProgressDaily {
+
+    @EmbeddedId
+    private UserProgressDailyId id;
+
+    @Column(name = "exam_count", nullable = false)
+    private int examCount;
+
+    @Column(name = "exam_point_sum", nullable = false)
+    private long examPointSum;
+
+    @Column(name = "task_count", nullable = false)
+    private int taskCount;
+
+    @Column(name = "last_activity_at")
+    private LocalDateTime lastActivityAt;
+}
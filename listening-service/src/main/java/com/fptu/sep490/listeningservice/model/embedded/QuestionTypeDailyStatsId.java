@@ -0,0 +1,24 @@
+package com.fptu.sep490.listeningservice.model.embedded;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class QuestionTypeDailyStatsId implements Serializable {
+    @Column(name = "stat_date", updatable = false, nullable = false)
+    private LocalDate statDate;
+
+    // Ordinal của QuestionType, giống report_data.question_type
+    @Column(name = "question_type", updatable = false, nullable = false)
+    private int questionType;
+}
@@ -69,6 +69,7 @@ public class ListeningTaskSpecification {
                 query.distinct(true);
             }
 
+            // lower(col) LIKE '%kw%' dùng được GIN trigram index (SearchIndexInitializer)
             if (title != null && !title.isBlank()) {
                 predicates.add(cb.like(cb.lower(root.get("title")), "%" + title.toLowerCase() + "%"));
             }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -32,6 +33,14 @@ public interface ChoiceRepository extends JpaRepository<Choice, UUID> {
 """)
     List<Choice> getOriginalChoiceByOriginalQuestion(@Param("questionId") UUID questionId);
 
+    @Query("""
+    SELECT c
+      FROM Choice c
+     WHERE c.isOriginal = TRUE
+       AND c.question.questionId IN :questionIds
+""")
+    List<Choice> getOriginalChoicesByOriginalQuestions(@Param("questionIds") Collection<UUID> questionIds);
+
     @Query("""
     SELECT c
       FROM Choice c
@@ -42,6 +51,13 @@ public interface ChoiceRepository extends JpaRepository<Choice, UUID> {
             @Param("originalChoices") List<UUID> originalChoices
     );
 
+    @Query("""
+    SELECT c
+      FROM Choice c
+     WHERE c.choiceId IN :originalChoices OR c.parent.choiceId IN :originalChoices
+""")
+    List<Choice> findAllVersionsByOriginalChoiceIds(@Param("originalChoices") Collection<UUID> originalChoices);
+
     @Query("""
         SELECT  c FROM Choice c WHERE c.question.questionId = :questionId AND c.isCurrent = true
         """)
@@ -58,4 +74,12 @@ public interface ChoiceRepository extends JpaRepository<Choice, UUID> {
     Choice getCurrentVersionChoiceByChoiceId(UUID choiceId);
 
     List<Choice> findByQuestionAndIsDeletedAndIsCurrentOrderByChoiceOrderAsc(Question question, boolean isDeleted, Boolean isCurrent);
+
+    @Query("""
+        select c from Choice c
+            left join fetch c.parent p
+            where (c.question.questionId in :questionIds or p.question.questionId in :questionIds)
+                and c.isCurrent = true and c.isDeleted = false
+    """)
+    List<Choice> findCurrentVersionByQuestionIds(@Param("questionIds") Collection<UUID> questionIds);
 }
@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -59,4 +60,20 @@ public interface DragItemRepository extends JpaRepository<DragItem, UUID> {
     )
     """)
     List<DragItem> findCurrentVersionsByGroupId(UUID groupId);
+
+    @Query("""
+       SELECT di FROM DragItem di
+           LEFT JOIN FETCH di.parent p
+           WHERE di.isCurrent = true and di.isDeleted = false AND (
+               (di.isOriginal = true AND di.questionGroup.groupId IN :groupIds)
+               OR p.questionGroup.groupId IN :groupIds
+           )
+    """)
+    List<DragItem> findCurrentVersionByGroupIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    @Query("""
+        select di from DragItem di
+        where di.question.questionId in :questionIds
+    """)
+    List<DragItem> findByQuestionIds(@Param("questionIds") Collection<UUID> questionIds);
 }
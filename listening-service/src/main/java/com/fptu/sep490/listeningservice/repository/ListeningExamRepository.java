@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -75,4 +76,18 @@ public interface ListeningExamRepository extends JpaRepository<ListeningExam, UU
     int getNumberOfExams();
 
     boolean existsByUrlSlug(String urlSlug);
+
+    // Mọi phiên bản đề có một part là (một phiên bản của) các task gốc
+    @Query("""
+    SELECT e.listeningExamId FROM ListeningExam e
+    JOIN e.part1 t1 LEFT JOIN t1.parent p1
+    JOIN e.part2 t2 LEFT JOIN t2.parent p2
+    JOIN e.part3 t3 LEFT JOIN t3.parent p3
+    JOIN e.part4 t4 LEFT JOIN t4.parent p4
+    WHERE COALESCE(p1.taskId, t1.taskId) IN :taskIds
+       OR COALESCE(p2.taskId, t2.taskId) IN :taskIds
+       OR COALESCE(p3.taskId, t3.taskId) IN :taskIds
+       OR COALESCE(p4.taskId, t4.taskId) IN :taskIds
+    """)
+    List<UUID> findIdsByOriginalTaskIdIn(@Param("taskIds") Collection<UUID> taskIds);
 }
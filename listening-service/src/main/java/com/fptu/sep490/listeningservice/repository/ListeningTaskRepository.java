@@ -80,4 +80,12 @@ public interface ListeningTaskRepository extends JpaRepository<ListeningTask, UU
             or (lt.taskId = :taskId and lt.isCurrent = true and lt.isDeleted = false)
     """)
     UUID getNewestTaskId(@Param("taskId") UUID taskId);
+
+    // Id task gốc của các phiên bản
+    @Query("""
+    SELECT DISTINCT COALESCE(p.taskId, lt.taskId) FROM ListeningTask lt
+    LEFT JOIN lt.parent p
+    WHERE lt.taskId IN :taskIds
+    """)
+    List<UUID> findOriginalIdsByIdIn(@Param("taskIds") Collection<UUID> taskIds);
 }
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -36,6 +37,9 @@ public interface QuestionGroupRepository extends JpaRepository<QuestionGroup, UU
     @Query("SELECT qg FROM QuestionGroup qg JOIN qg.listeningTask rp WHERE rp.taskId = :taskId AND rp.isDeleted = false")
     List<QuestionGroup> findAllByListeningTaskByTaskId(@Param("taskId") UUID taskId);
 
+    @Query("SELECT qg FROM QuestionGroup qg JOIN qg.listeningTask rp WHERE rp.taskId IN :taskIds AND rp.isDeleted = false")
+    List<QuestionGroup> findAllByListeningTaskIds(@Param("taskIds") Collection<UUID> taskIds);
+
     @Query("""
         SELECT qg FROM QuestionGroup qg
         WHERE qg.groupId IN :ids
@@ -50,4 +54,20 @@ public interface QuestionGroupRepository extends JpaRepository<QuestionGroup, UU
         ORDER BY qg.createdAt DESC
     """)
     UUID getNewestGroupId(UUID currentGroupId);
+
+    @Query("""
+        SELECT qg From QuestionGroup qg 
+            WHERE (qg.groupId IN :groupIds AND qg.isOriginal = true AND qg.isCurrent = true and qg.isDeleted = false )
+            OR (qg.parent.groupId IN :groupIds and qg.isCurrent = true and qg.isDeleted = false)
+    """)
+    List<QuestionGroup> findLatestVersionsByOriginalIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    // Id task gốc chứa các group
+    @Query("""
+    SELECT DISTINCT COALESCE(p.taskId, lt.taskId) FROM QuestionGroup qg
+    JOIN qg.listeningTask lt
+    LEFT JOIN lt.parent p
+    WHERE qg.groupId IN :groupIds
+    """)
+    List<UUID> findOriginalTaskIdsByGroupIdIn(@Param("groupIds") Collection<UUID> groupIds);
 }
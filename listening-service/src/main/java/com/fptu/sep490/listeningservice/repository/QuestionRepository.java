@@ -7,6 +7,7 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -87,4 +88,26 @@ public interface QuestionRepository extends JpaRepository<Question, UUID> {
         where q.questionId = :questionId
         """)
     Optional<Question> findByIdWithCategories(@Param("questionId") UUID questionId);
+
+    @Query("""
+        select q from Question q
+        where q.questionGroup.groupId in :groupIds and q.isOriginal = true and q.isDeleted = false
+    """)
+    List<Question> findOriginalVersionByGroupIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    @Query("""
+        select q from Question q
+        where q.questionGroup.groupId in :groupIds and q.isCurrent = true
+    """)
+    List<Question> findCurrentVersionByGroupIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    // Id task gốc chứa các câu hỏi
+    @Query("""
+    SELECT DISTINCT COALESCE(p.taskId, lt.taskId) FROM Question q
+    JOIN q.questionGroup qg
+    JOIN qg.listeningTask lt
+    LEFT JOIN lt.parent p
+    WHERE q.questionId IN :questionIds
+    """)
+    List<UUID> findOriginalTaskIdsByQuestionIdIn(@Param("questionIds") Collection<UUID> questionIds);
 }
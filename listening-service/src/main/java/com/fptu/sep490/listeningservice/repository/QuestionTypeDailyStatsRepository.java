@@ -0,0 +1,80 @@
+package com.fptu.sep490.listeningservice.repository;
+
+import com.fptu.sep490.listeningservice.model.QuestionTypeDailyStats;
+import com.fptu.sep490.listeningservice.model.ReportQuestionTypeStats;
+import com.fptu.sep490.listeningservice.model.ReportQuestionTypeStatsWrong;
+import com.fptu.sep490.listeningservice.model.embedded.QuestionTypeDailyStatsId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public interface QuestionTypeDailyStatsRepository extends JpaRepository<QuestionTypeDailyStats, QuestionTypeDailyStatsId> {
+    @Query(value = """
+        WITH types AS (
+            SELECT 0 AS questionType
+            UNION ALL SELECT 1
+            UNION ALL SELECT 2
+            UNION ALL SELECT 3
+        )
+        SELECT
+            t.questionType AS questionType,
+            CAST(COALESCE(SUM(s.correct_count), 0) AS BIGINT) AS correctCount
+        FROM types t
+        LEFT JOIN question_type_daily_stats s
+            ON s.question_type = t.questionType
+            AND s.stat_date >= COALESCE(:fromDate, DATE '0001-01-01')
+            AND s.stat_date <= COALESCE(:toDate, DATE '9999-12-31')
+        GROUP BY t.questionType
+        ORDER BY t.questionType
+        """, nativeQuery = true)
+    List<ReportQuestionTypeStats> countCorrectByQuestionType(
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate
+    );
+
+    @Query(value = """
+        WITH types AS (
+            SELECT 0 AS questionType
+            UNION ALL SELECT 1
+            UNION ALL SELECT 2
+            UNION ALL SELECT 3
+        )
+        SELECT
+            t.questionType AS questionType,
+            CAST(COALESCE(SUM(s.wrong_count), 0) AS BIGINT) AS wrongCount
+        FROM types t
+        LEFT JOIN question_type_daily_stats s
+            ON s.question_type = t.questionType
+            AND s.stat_date >= COALESCE(:fromDate, DATE '0001-01-01')
+            AND s.stat_date <= COALESCE(:toDate, DATE '9999-12-31')
+        GROUP BY t.questionType
+        ORDER BY t.questionType
+        """, nativeQuery = true)
+    List<ReportQuestionTypeStatsWrong> countWrongByQuestionType(
+            @Param("fromDate") LocalDate fromDate,
+            @Param("toDate") LocalDate toDate
+    );
+
+    // Đếm lại các ngày từ fromDate (null = toàn bộ) từ report_data và ghi đè; chạy lại nhiều lần cho cùng kết quả
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO question_type_daily_stats (stat_date, question_type, correct_count, wrong_count)
+        SELECT r.checked_date,
+               r.question_type,
+               COUNT(*) FILTER (WHERE r.is_correct),
+               COUNT(*) FILTER (WHERE NOT r.is_correct)
+        FROM report_data r
+        WHERE r.checked_date >= COALESCE(:fromDate, DATE '0001-01-01')
+        GROUP BY r.checked_date, r.question_type
+        ON CONFLICT (stat_date, question_type) DO UPDATE SET
+            correct_count = EXCLUDED.correct_count,
+            wrong_count = EXCLUDED.wrong_count
+        """, nativeQuery = true)
+    int reconcile(@Param("fromDate") LocalDate fromDate);
+}
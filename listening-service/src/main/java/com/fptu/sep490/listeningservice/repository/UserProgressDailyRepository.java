@@ -0,0 +1,83 @@
+package com.fptu.sep490.listeningservice.repository;
+
+import com.fptu.sep490.listeningservice.model.UserProgressDaily;
+import com.fptu.sep490.listeningservice.model.embedded.UserProgressDailyId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserProgressDailyRepository extends JpaRepository<UserProgressDaily, UserProgressDailyId> {
+
+    @Query("SELECT p FROM UserProgressDaily p WHERE p.id.userId = :userId ORDER BY p.id.activityDate")
+    List<UserProgressDaily> findAllByUserId(@Param("userId") String userId);
+
+    @Query("""
+      SELECT p
+      FROM UserProgressDaily p
+      WHERE p.id.userId = :userId
+        AND p.id.activityDate >= COALESCE(:startDate, p.id.activityDate)
+        AND p.id.activityDate <= COALESCE(:endDate,   p.id.activityDate)
+        AND p.examCount > 0
+      ORDER BY p.id.activityDate
+    """)
+    List<UserProgressDaily> findExamDaysInRange(
+            @Param("userId")    String    userId,
+            @Param("startDate") LocalDate startDate,
+            @Param("endDate")   LocalDate endDate
+    );
+
+    // Cộng dồn vào bucket của ngày; số âm dùng để trừ phần điểm cũ khi nộp lại
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO user_progress_daily (user_id, activity_date, exam_count, exam_point_sum, task_count, last_activity_at)
+        VALUES (:userId, :activityDate, :examCount, :examPointSum, :taskCount, :activityAt)
+        ON CONFLICT (user_id, activity_date) DO UPDATE SET
+            exam_count = user_progress_daily.exam_count + EXCLUDED.exam_count,
+            exam_point_sum = user_progress_daily.exam_point_sum + EXCLUDED.exam_point_sum,
+            task_count = user_progress_daily.task_count + EXCLUDED.task_count,
+            last_activity_at = GREATEST(user_progress_daily.last_activity_at, EXCLUDED.last_activity_at)
+        """, nativeQuery = true)
+    int increment(@Param("userId") String userId,
+                  @Param("activityDate") LocalDate activityDate,
+                  @Param("examCount") int examCount,
+                  @Param("examPointSum") long examPointSum,
+                  @Param("taskCount") int taskCount,
+                  @Param("activityAt") LocalDateTime activityAt);
+
+    // Tính lại phần exam của mọi bucket từ exam_attempt; chạy lại nhiều lần cho cùng kết quả
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO user_progress_daily (user_id, activity_date, exam_count, exam_point_sum, task_count, last_activity_at)
+        SELECT e.created_by, CAST(e.created_at AS DATE), COUNT(*), SUM(e.total_point), 0, MAX(e.created_at)
+        FROM exam_attempt e
+        WHERE e.is_finish = TRUE AND e.total_point IS NOT NULL AND e.created_by IS NOT NULL
+        GROUP BY e.created_by, CAST(e.created_at AS DATE)
+        ON CONFLICT (user_id, activity_date) DO UPDATE SET
+            exam_count = EXCLUDED.exam_count,
+            exam_point_sum = EXCLUDED.exam_point_sum,
+            last_activity_at = GREATEST(user_progress_daily.last_activity_at, EXCLUDED.last_activity_at)
+        """, nativeQuery = true)
+    int backfillExams();
+
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO user_progress_daily (user_id, activity_date, exam_count, exam_point_sum, task_count, last_activity_at)
+        SELECT a.created_by, CAST(a.created_at AS DATE), 0, 0, COUNT(*), MAX(a.created_at)
+        FROM attempts a
+        WHERE a.total_points IS NOT NULL AND a.created_by IS NOT NULL
+        GROUP BY a.created_by, CAST(a.created_at AS DATE)
+        ON CONFLICT (user_id, activity_date) DO UPDATE SET
+            task_count = EXCLUDED.task_count,
+            last_activity_at = GREATEST(user_progress_daily.last_activity_at, EXCLUDED.last_activity_at)
+        """, nativeQuery = true)
+    int backfillTasks();
+}
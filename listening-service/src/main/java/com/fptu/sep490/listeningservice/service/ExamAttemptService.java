@@ -5,6 +5,7 @@ import com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq;
 import com.fptu.sep490.commonlibrary.viewmodel.request.OverviewProgressReq;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.OverviewProgress;
+import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswerDeltaRequest;
 import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswersRequest;
 import com.fptu.sep490.listeningservice.viewmodel.response.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -38,4 +39,6 @@ public interface ExamAttemptService {
     BandScoreData getBandScore(HttpServletRequest request, String token);
 
     void autoSaveExam(String attemptId, ExamAttemptAnswersRequest answers, HttpServletRequest request) throws JsonProcessingException;
+
+    void autoSaveExamDelta(String attemptId, ExamAttemptAnswerDeltaRequest delta, HttpServletRequest request) throws JsonProcessingException;
 }
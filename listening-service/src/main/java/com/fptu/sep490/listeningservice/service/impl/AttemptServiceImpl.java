@@ -6,12 +6,19 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 
+import com.fptu.sep490.listeningservice.component.AnswerKeyLoader;
+import com.fptu.sep490.listeningservice.component.AttemptVersionResolver;
+import com.fptu.sep490.listeningservice.component.GradingBatchWriter;
+import com.fptu.sep490.listeningservice.component.GradingEngine;
+import com.fptu.sep490.listeningservice.component.ListeningTaskContentCache;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.*;
 import com.fptu.sep490.listeningservice.model.embedded.AnswerAttemptId;
 import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
 import com.fptu.sep490.listeningservice.model.enumeration.Status;
+import com.fptu.sep490.listeningservice.model.grading.AnswerKey;
+import com.fptu.sep490.listeningservice.model.graph.TaskGraph;
 import com.fptu.sep490.listeningservice.model.json.AttemptVersion;
 import com.fptu.sep490.listeningservice.model.json.QuestionVersion;
 import com.fptu.sep490.listeningservice.repository.*;
@@ -36,6 +43,7 @@ import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
@@ -45,6 +53,8 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @Slf4j
 public class AttemptServiceImpl implements AttemptService {
+    // Cùng hạn heartbeat với AttemptSessionServiceImpl.HEARTBEAT_TIMEOUT bên personal-service
+    static final Duration ATTEMPT_LOCK_HEARTBEAT_TIMEOUT = Duration.ofMinutes(1);
 
     ListeningTaskRepository listeningTaskRepository;
     QuestionGroupRepository questionGroupRepository;
@@ -57,6 +67,12 @@ public class AttemptServiceImpl implements AttemptService {
     ObjectMapper objectMapper;
     Helper helper;
     RedisService redisService;
+    ListeningTaskContentCache listeningTaskContentCache;
+    AttemptVersionResolver attemptVersionResolver;
+    AnswerKeyLoader answerKeyLoader;
+    GradingEngine gradingEngine;
+    GradingBatchWriter gradingBatchWriter;
+    UserProgressDailyRepository userProgressDailyRepository;
 
     @Value("${keycloak.realm}")
     @NonFinal
@@ -91,60 +107,26 @@ public class AttemptServiceImpl implements AttemptService {
             );
         }
 
-        AttemptVersion attemptVersion = AttemptVersion.builder()
-                .taskId(currentVersion.getTaskId())
-                .build();
+        TaskGraph graph = listeningTaskContentCache.getCurrentVersion(originalTask.getTaskId(), currentVersion.getVersion());
+
         Map<UUID, List<QuestionVersion>> questionVersions = new HashMap<>();
         Map<UUID, List<UUID>> groupMapDragItem = new HashMap<>();
-
-
-        List<QuestionGroup> originalVersionGroupQuestion = questionGroupRepository
-                .findOriginalVersionByTaskId(originalTask.getTaskId());
-
-        Map<QuestionGroup, List<DragItem>> currentGroupMapCurrentDragItem = new HashMap<>();
-        Map<UUID,List<Question>>  currentGroupIdQuestions = new HashMap<>();
-        Map<UUID, Map<UUID, List<Choice>>> currentGroupIdMapQuestionIdMapCurrentChoice = new HashMap<>();
-        originalVersionGroupQuestion.forEach(g -> {
-            // Get All Current DragItem
-            List<DragItem> currentVersionDragItem = dragItemRepository.findCurrentVersionByGroupId(g.getGroupId());
-            QuestionGroup latestVersion = questionGroupRepository.findLatestVersionByOriginalId(g.getGroupId());
-            currentGroupMapCurrentDragItem.put(latestVersion, currentVersionDragItem);
-
-            // mapping group with dragItem for version
-            groupMapDragItem.put(g.getGroupId(), currentVersionDragItem.stream().map(DragItem::getDragItemId).toList());
-
-            // Get All Original Question
-            List<UUID> originalQuestionId = questionRepository.findOriginalVersionByGroupId(g.getGroupId());
-            List<Question> currentQuestion = questionRepository.findAllCurrentVersion(originalQuestionId);
-            currentGroupIdQuestions.put(g.getGroupId(), currentQuestion);
-
-            Map<UUID, List<Choice>> questionIdMapCurrentChoice = new HashMap<>();
-            List<QuestionVersion> questionVersionList = new ArrayList<>();
-            currentQuestion.forEach(q -> {
-                if(q.getIsOriginal()) {
-                    List<Choice> currentChoice = choiceRepository.findCurrentVersionByQuestionId(q.getQuestionId());
-                    questionIdMapCurrentChoice.put(q.getQuestionId(), currentChoice);
-                    QuestionVersion questionVersion = QuestionVersion.builder()
-                            .questionId(q.getQuestionId())
-                            .choiceMapping(currentChoice.stream().map(Choice::getChoiceId).toList())
-                            .build();
-                    questionVersionList.add(questionVersion);
-                } else {
-                    List<Choice> currentChoice = choiceRepository.findCurrentVersionByQuestionId(q.getParent().getQuestionId());
-                    questionIdMapCurrentChoice.put(q.getParent().getQuestionId(), currentChoice);
-                    QuestionVersion questionVersion = QuestionVersion.builder()
-                            .questionId(q.getQuestionId())
-                            .choiceMapping(currentChoice.stream().map(Choice::getChoiceId).toList())
-                            .build();
-                    questionVersionList.add(questionVersion);
-                }
-            });
-            questionVersions.put(g.getGroupId(), questionVersionList);
-            currentGroupIdMapQuestionIdMapCurrentChoice.put(g.getGroupId(), questionIdMapCurrentChoice);
+        graph.groups().forEach(g -> {
+            questionVersions.put(g.originalGroupId(), g.questions().stream()
+                    .map(q -> QuestionVersion.builder()
+                            .questionId(q.questionId())
+                            .choiceMapping(q.choices().stream().map(TaskGraph.ChoiceNode::choiceId).toList())
+                            .build())
+                    .toList());
+            groupMapDragItem.put(g.originalGroupId(), g.dragItems().stream()
+                    .map(TaskGraph.DragItemNode::dragItemId)
+                    .toList());
         });
-
-        attemptVersion.setGroupMappingDragItem(groupMapDragItem);
-        attemptVersion.setGroupMappingQuestion(questionVersions);
+        AttemptVersion attemptVersion = AttemptVersion.builder()
+                .taskId(currentVersion.getTaskId())
+                .groupMappingQuestion(questionVersions)
+                .groupMappingDragItem(groupMapDragItem)
+                .build();
         Attempt attempt = Attempt.builder()
                 .createdBy(userId)
                 .status(Status.DRAFT)
@@ -154,67 +136,40 @@ public class AttemptServiceImpl implements AttemptService {
                 .build();
         attempt = attemptRepository.save(attempt);
 
-        List<AttemptResponse.QuestionGroupAttemptResponse> groups = new ArrayList<>();
-        currentGroupMapCurrentDragItem.forEach((key, value) ->{
-
-            List<AttemptResponse.QuestionGroupAttemptResponse.DragItemResponse> dragItems =
-                    value.stream()
-                            .map(item -> AttemptResponse.QuestionGroupAttemptResponse.DragItemResponse
-                                    .builder()
-                                    .dragItemId(item.getDragItemId().toString())
-                                    .content(item.getContent())
-                                    .build()
-                            )
-                            .toList();
-
-            List<Question> questions = currentGroupIdQuestions.get(key.getGroupId());
-            Map<UUID, List<Choice>> questionMapChoices = currentGroupIdMapQuestionIdMapCurrentChoice.get(key.getGroupId());
-            
-            final List<Question> finalQuestions = questions != null ? questions : Collections.emptyList();
-            final Map<UUID, List<Choice>> finalQuestionMapChoices = questionMapChoices != null ? questionMapChoices : Collections.emptyMap();
-
-            List<AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse> questionListResponse = new ArrayList<>();
-
-            finalQuestions.forEach(question -> {
-                List<Choice> choices = finalQuestionMapChoices.get(question.getParent() != null ? question.getParent().getQuestionId() : question.getQuestionId());
-                AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse questionResponse = AttemptResponse.
-                        QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
-                        .questionId(question.getQuestionId())
-                        .questionOrder(question.getQuestionOrder())
-                        .questionType(question.getQuestionType().ordinal())
-                        .numberOfCorrectAnswers(question.getNumberOfCorrectAnswers())
-                        .blankIndex(question.getBlankIndex())
-                        .instructionForChoice(question.getInstructionForChoice())
-                        .instructionForMatching(question.getInstructionForMatching())
-                        .zoneIndex(question.getZoneIndex())
-                        .choices(
-                                choices != null ? choices.stream().map(c ->
-                                                AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
-                                                        .choiceId(c.getChoiceId())
-                                                        .label(c.getLabel())
-                                                        .content(c.getContent())
-                                                        .choiceOrder(question.getQuestionOrder())
-                                                        .build()
-                                        ).sorted(Comparator.comparing(AttemptResponse.QuestionGroupAttemptResponse.
-                                        QuestionAttemptResponse.ChoiceAttemptResponse::choiceOrder)).toList()
-                                        : Collections.emptyList()
-                        )
-                        .build();
-                questionListResponse.add(questionResponse);
-            });
-
-            AttemptResponse.QuestionGroupAttemptResponse group = AttemptResponse.QuestionGroupAttemptResponse.builder()
-                    .questionGroupId(key.getGroupId())
-                    .sectionOrder(key.getSectionOrder())
-                    .sectionLabel(key.getSectionLabel())
-                    .instruction(key.getInstruction())
-                    .dragItems(dragItems)
-                    .questions(questionListResponse.stream().sorted(Comparator.comparing(AttemptResponse.
-                            QuestionGroupAttemptResponse.QuestionAttemptResponse::questionOrder)).toList())
-                    .build();
-
-            groups.add(group);
-        });
+        List<AttemptResponse.QuestionGroupAttemptResponse> groups = graph.groups().stream()
+                .map(g -> AttemptResponse.QuestionGroupAttemptResponse.builder()
+                        .questionGroupId(g.groupId())
+                        .sectionOrder(g.sectionOrder())
+                        .sectionLabel(g.sectionLabel())
+                        .instruction(g.instruction())
+                        .dragItems(g.dragItems().stream()
+                                .map(item -> AttemptResponse.QuestionGroupAttemptResponse.DragItemResponse.builder()
+                                        .dragItemId(item.dragItemId().toString())
+                                        .content(item.content())
+                                        .build())
+                                .toList())
+                        .questions(g.questions().stream()
+                                .map(q -> AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
+                                        .questionId(q.questionId())
+                                        .questionOrder(q.questionOrder())
+                                        .questionType(q.questionType().ordinal())
+                                        .numberOfCorrectAnswers(q.numberOfCorrectAnswers())
+                                        .blankIndex(q.blankIndex())
+                                        .instructionForChoice(q.instructionForChoice())
+                                        .instructionForMatching(q.instructionForMatching())
+                                        .zoneIndex(q.zoneIndex())
+                                        .choices(q.choices().stream()
+                                                .map(c -> AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
+                                                        .choiceId(c.choiceId())
+                                                        .label(c.label())
+                                                        .content(c.content())
+                                                        .choiceOrder(c.choiceOrder())
+                                                        .build())
+                                                .toList())
+                                        .build())
+                                .toList())
+                        .build())
+                .toList();
 
         return AttemptResponse.builder()
                 .taskId(currentVersion.getTaskId())
@@ -224,11 +179,8 @@ public class AttemptServiceImpl implements AttemptService {
                 .ieltsType(currentVersion.getIeltsType().ordinal())
                 .partNumber(currentVersion.getPartNumber().ordinal())
                 .audioFileId(currentVersion.getAudioFileId())
-                .questionGroups(groups.stream().sorted(Comparator.comparing(AttemptResponse
-                        .QuestionGroupAttemptResponse::sectionOrder)).toList())
+                .questionGroups(groups)
                 .build();
-
-
     }
 
     @Override
@@ -346,41 +298,10 @@ public class AttemptServiceImpl implements AttemptService {
                         HttpStatus.NOT_FOUND.value()
                 ));
 
-        Map<UUID, List<QuestionVersion>> groupMappingQuestion = questionVersion.getGroupMappingQuestion();
-        Map<UUID, List<UUID>> groupMappingDragItem = questionVersion.getGroupMappingDragItem();
-
-        Map<QuestionGroup, List<Question>> groupQuestions = new HashMap<>();
-        Map<UUID, List<DragItem>> groupDragItems = new HashMap<>();
-        Map<UUID, List<Choice>> questionChoice = new HashMap<>();
-        groupMappingQuestion.forEach((key, value) ->{
-            var groupOptional = questionGroupRepository.findById(key);
-            if (groupOptional.isEmpty()) {
-                return;
-            }
-            var group = groupOptional.get();
-            List<Question> questions = new ArrayList<>();
-            value.forEach(q -> {
-                var questionOptional = questionRepository.findById(q.getQuestionId());
-                if (questionOptional.isEmpty()) {
-                    return;
-                }
-                var question = questionOptional.get();
-                if(question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                    List<Choice> choices = choiceRepository.findAllById(q.getChoiceMapping());
-                    questionChoice.put(question.getQuestionId(), choices);
-                }
-                questions.add(question);
-            });
-            groupQuestions.put(group, questions);
-
-            List<UUID> dragItemIds = groupMappingDragItem.get(group.getGroupId());
-            if (dragItemIds != null) {
-                List<DragItem> dragItems = dragItemRepository.findAllById(dragItemIds);
-                groupDragItems.put(key, dragItems);
-            } else {
-                groupDragItems.put(key, Collections.emptyList());
-            }
-        });
+        AttemptVersionResolver.ResolvedAttempt resolved = attemptVersionResolver.resolve(questionVersion);
+        Map<QuestionGroup, List<Question>> groupQuestions = resolved.groupQuestions();
+        Map<UUID, List<DragItem>> groupDragItems = resolved.groupDragItems();
+        Map<UUID, List<Choice>> questionChoice = resolved.questionChoices();
 
         List<ListeningTaskGetAllResponse.QuestionGroupResponse> questionGroups = new ArrayList<>();
         groupQuestions.forEach((key, value) ->{
@@ -492,123 +413,25 @@ public class AttemptServiceImpl implements AttemptService {
         // Bước 2: map node sang AttemptVersion
         AttemptVersion questionVersion = objectMapper.treeToValue(decodedNode, AttemptVersion.class);
 
-        // Lấy list question của bài đọc
-        List<Question> questions = new ArrayList<>();
-        questionVersion.getGroupMappingQuestion().forEach((groupId, questionVersions) -> {
-            List<Question> currentQuestions = questionRepository.findQuestionsByIds(
-                    questionVersions.stream()
-                            .map(QuestionVersion::getQuestionId)
-                            .collect(Collectors.toList()));
-            questions.addAll(currentQuestions);
-        });
-
-        // Tạo hashMap answers để compare
-        Map<UUID, SavedAnswersRequest> savedAnswers = new HashMap<>();
-        for (SavedAnswersRequest savedAnswer : answers.answers()) {
-            savedAnswers.put(savedAnswer.questionId(), savedAnswer);
-        }
-        List<SubmittedAttemptResponse.ResultSet> resultSets = new ArrayList<>();
-
-        int totalPoints = 0;
-        for (Question question : questions) {
-            SavedAnswersRequest answer = savedAnswers.get(question.getQuestionId());
-            if (Objects.isNull(answer)) {
-                continue;
-            }
-            AnswerAttemptId answerAttemptId = AnswerAttemptId.builder()
-                    .questionId(question.getQuestionId())
-                    .attemptId(attempt.getAttemptId())
-                    .build();
-
-            AnswerAttempt answerAttempt = answerAttemptRepository.findAnswerAttemptByAttemptId(answerAttemptId)
-                    .orElse(AnswerAttempt.builder()
-                            .attempt(attempt)
-                            .id(answerAttemptId)
-                            .question(question)
-                            .build());
-
-            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                SubmittedAttemptResponse.ResultSet result = scoreMultipleChoiceQuestion(answer, question);
-                resultSets.add(result);
-                answerAttempt.setChoices(answer.choices());
-                answerAttempt.setIsCorrect(result.isCorrect());
-                if(result.isCorrect()) {
-                    totalPoints += question.getPoint();
-                }
-            }
-            if (question.getQuestionType() == QuestionType.FILL_IN_THE_BLANKS) {
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(answer.dataFilled() != null ? List.of(answer.dataFilled()) : Collections.emptyList())
-                        .explanation(question.getExplanation())
-                        .correctAnswer(question.getCorrectAnswer() != null ? List.of(question.getCorrectAnswer()) : Collections.emptyList())
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if (question.getCorrectAnswer() != null && answer.dataFilled() != null && 
-                    question.getCorrectAnswer().equalsIgnoreCase(answer.dataFilled())) {
-                    result.setCorrect(true);
-                }
-                resultSets.add(result);
-                answerAttempt.setDataFilled(answer.dataFilled());
-                answerAttempt.setIsCorrect(result.isCorrect());
-                if(result.isCorrect()) {
-                    totalPoints += question.getPoint();
-                }
-
-            }
-            if (question.getQuestionType() == QuestionType.MATCHING) {
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(answer.dataMatched() != null ? List.of(answer.dataMatched()) : Collections.emptyList())
-                        .explanation(question.getExplanation())
-                        .correctAnswer(question.getCorrectAnswer() != null ? List.of(question.getCorrectAnswer()) : Collections.emptyList())
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if (question.getCorrectAnswer() != null && answer.dataMatched() != null && 
-                    question.getCorrectAnswer().equalsIgnoreCase(answer.dataMatched())) {
-                    result.setCorrect(true);
-                }
-                resultSets.add(result);
-                answerAttempt.setDataMatched(answer.dataMatched());
-                answerAttempt.setIsCorrect(result.isCorrect());
-                if(result.isCorrect()) {
-                    totalPoints += question.getPoint();
-                }
-            }
-            if (question.getQuestionType() == QuestionType.DRAG_AND_DROP) {
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(answer.dragItemId() != null ? List.of(answer.dragItemId().toString()) : Collections.emptyList())
-                        .explanation(question.getExplanation())
-                        .correctAnswer(question.getDragItem() != null && question.getDragItem().getContent() != null ? 
-                                      List.of(question.getDragItem().getContent()) : Collections.emptyList())
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if (question.getDragItem() != null && question.getDragItem().getDragItemId() != null && 
-                    answer.dragItemId() != null && question.getDragItem().getDragItemId().equals(answer.dragItemId())) {
-                    result.setCorrect(true);
-                }
-                resultSets.add(result);
-                answerAttempt.setDragItemId(answer.dragItemId());
-                answerAttempt.setIsCorrect(result.isCorrect());
-                if(result.isCorrect()) {
-                    totalPoints += question.getPoint();
-                }
-            }
-            answerAttemptRepository.save(answerAttempt);
-        }
+        // Biên dịch đáp án một lần rồi chấm toàn bộ trong bộ nhớ, ghi kết quả bằng batch
+        AnswerKey answerKey = answerKeyLoader.load(questionVersion);
+        GradingEngine.GradingResult gradingResult = gradingEngine.grade(answerKey, attempt.getAttemptId(), answers);
+        gradingBatchWriter.upsertAnswerAttempts(gradingResult.answerAttempts());
+        int totalPoints = gradingResult.totalPoints();
 
         attempt.setFinishedAt(LocalDateTime.now());
         attempt.setStatus(Status.FINISHED);
         attempt.setTotalPoints(totalPoints);
         attempt.setDuration(answers.duration());
         attemptRepository.save(attempt);
+        userProgressDailyRepository.increment(attempt.getCreatedBy(), attempt.getCreatedAt().toLocalDate(),
+                0, 0, 1, attempt.getCreatedAt());
 
 
         return SubmittedAttemptResponse.builder()
                 .duration(answers.duration())
                 .totalPoints(totalPoints)
-                .resultSets(resultSets.stream().sorted(Comparator.comparing(SubmittedAttemptResponse.ResultSet::getQuestionIndex)).collect(Collectors.toList()))
+                .resultSets(gradingResult.resultSets())
                 .build();
     }
 
@@ -687,41 +510,10 @@ public class AttemptServiceImpl implements AttemptService {
                         HttpStatus.NOT_FOUND.value()
                 ));
 
-        Map<UUID, List<QuestionVersion>> groupMappingQuestion = questionVersion.getGroupMappingQuestion();
-        Map<UUID, List<UUID>> groupMappingDragItem = questionVersion.getGroupMappingDragItem();
-
-        Map<QuestionGroup, List<Question>> groupQuestions = new HashMap<>();
-        Map<UUID, List<DragItem>> groupDragItems = new HashMap<>();
-        Map<UUID, List<Choice>> questionChoice = new HashMap<>();
-        groupMappingQuestion.forEach((key, value) ->{
-            var groupOptional = questionGroupRepository.findById(key);
-            if (groupOptional.isEmpty()) {
-                return;
-            }
-            var group = groupOptional.get();
-            List<Question> questions = new ArrayList<>();
-            value.forEach(q -> {
-                var questionOptional = questionRepository.findById(q.getQuestionId());
-                if (questionOptional.isEmpty()) {
-                    return;
-                }
-                var question = questionOptional.get();
-                if(question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                    List<Choice> choices = choiceRepository.findAllById(q.getChoiceMapping());
-                    questionChoice.put(question.getQuestionId(), choices);
-                }
-                questions.add(question);
-            });
-            groupQuestions.put(group, questions);
-
-            List<UUID> dragItemIds = groupMappingDragItem.get(group.getGroupId());
-            if (dragItemIds != null) {
-                List<DragItem> dragItems = dragItemRepository.findAllById(dragItemIds);
-                groupDragItems.put(key, dragItems);
-            } else {
-                groupDragItems.put(key, Collections.emptyList());
-            }
-        });
+        AttemptVersionResolver.ResolvedAttempt resolved = attemptVersionResolver.resolve(questionVersion);
+        Map<QuestionGroup, List<Question>> groupQuestions = resolved.groupQuestions();
+        Map<UUID, List<DragItem>> groupDragItems = resolved.groupDragItems();
+        Map<UUID, List<Choice>> questionChoice = resolved.questionChoices();
 
         List<ListeningTaskGetAllResponse.QuestionGroupResponse> questionGroups = new ArrayList<>();
         groupQuestions.forEach((key, value) ->{
@@ -826,88 +618,33 @@ public class AttemptServiceImpl implements AttemptService {
     }
 
 
-    private SubmittedAttemptResponse.ResultSet scoreMultipleChoiceQuestion(SavedAnswersRequest answer, Question question) {
-        List<Choice> correctAnswers;
-        List<String> userAnswers = choiceRepository.getChoicesByIds(answer.choices());
-
-        if (question.getIsOriginal()) {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        } else {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getParent().getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        }
-        SubmittedAttemptResponse.ResultSet resultSet = SubmittedAttemptResponse.ResultSet.builder()
-                .questionIndex(question.getQuestionOrder())
-                .userAnswer(userAnswers)
-                .correctAnswer(correctAnswers.stream().map(
-                        Choice::getLabel
-                ).toList())
-                .explanation(question.getExplanation())
-                .build();
-        List<UUID> userChoice = answer.choices();
-        List<String> correctLabel = new ArrayList<>();
-        for (Choice correctAnswer : correctAnswers) {
-
-            if (userChoice.contains(correctAnswer.getChoiceId())) {
-                correctLabel.add(correctAnswer.getLabel());
-            }
+    /**
+     * Chặn mở attempt khi khóa {@code attempt_lock:<attemptId>} của personal-service còn sống
+     * (lastPing trong {@link #ATTEMPT_LOCK_HEARTBEAT_TIMEOUT}): người khác giữ thì ATTEMPT_IN_USE,
+     * chính user này giữ ở session khác thì ATTEMPT_SESSION_ACTIVE.
+     */
+    private void checkAttemptSessionActivity(UUID attemptId, String userId) {
+        List<String> owner = redisService.getHashFields(Constants.RedisKey.ATTEMPT_LOCK + attemptId,
+                List.of("userId", "sessionId", "lastPing"));
+        if (owner.get(1) == null) {
+            return;
         }
-        boolean isCorrect = false;
-        int numberOfCorrect = 0;
-        for (String userAnswer : userAnswers) {
-            if (correctLabel.contains(userAnswer)) {
-                numberOfCorrect++;
-            }
+        long lastPing = owner.get(2) != null ? Long.parseLong(owner.get(2)) : 0L;
+        if (System.currentTimeMillis() - lastPing >= ATTEMPT_LOCK_HEARTBEAT_TIMEOUT.toMillis()) {
+            // Chủ khóa đã quá hạn heartbeat, personal-service sẽ giải phóng khóa
+            return;
         }
-        isCorrect = numberOfCorrect == correctAnswers.size();
-        resultSet.setCorrect(isCorrect);
-        return resultSet;
-    }
-
-    private void checkAttemptSessionActivity(UUID attemptId, String userId) throws JsonProcessingException {
-        String attemptSessionKey = "attempt_session:" + attemptId.toString();
-        String sessionActivityKey = "session_activity:" + attemptId.toString();
-        
-        // Check if attempt session exists in Redis
-        @SuppressWarnings("unchecked")
-        Map<String, Object> sessionData = redisService.getValue(attemptSessionKey, Map.class);
-        if (sessionData != null) {
-            String sessionUserId = (String) sessionData.get("userId");
-            String sessionId = (String) sessionData.get("sessionId");
-            
-            // If it's the same user, check if session is still active
-            if (userId.equals(sessionUserId)) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> activityData = redisService.getValue(sessionActivityKey, Map.class);
-                if (activityData != null) {
-                    Long lastActivity = (Long) activityData.get("lastActivity");
-                    if (lastActivity != null) {
-                        long currentTime = System.currentTimeMillis();
-                        long timeDiff = currentTime - lastActivity;
-                        
-                        // If last activity was within 5 minutes, consider it active
-                        if (timeDiff < 300000) { // 5 minutes in milliseconds
-                            throw new AppException(
-                                    Constants.ErrorCodeMessage.ATTEMPT_SESSION_ACTIVE,
-                                    Constants.ErrorCode.ATTEMPT_SESSION_ACTIVE,
-                                    HttpStatus.CONFLICT.value()
-                            );
-                        }
-                    }
-                }
-            } else {
-                // Different user is using this attempt
-                throw new AppException(
-                        Constants.ErrorCodeMessage.ATTEMPT_IN_USE,
-                        Constants.ErrorCode.ATTEMPT_IN_USE,
-                        HttpStatus.CONFLICT.value()
-                );
-            }
+        if (userId.equals(owner.get(0))) {
+            throw new AppException(
+                    Constants.ErrorCodeMessage.ATTEMPT_SESSION_ACTIVE,
+                    Constants.ErrorCode.ATTEMPT_SESSION_ACTIVE,
+                    HttpStatus.CONFLICT.value()
+            );
         }
+        throw new AppException(
+                Constants.ErrorCodeMessage.ATTEMPT_IN_USE,
+                Constants.ErrorCode.ATTEMPT_IN_USE,
+                HttpStatus.CONFLICT.value()
+        );
     }
 }
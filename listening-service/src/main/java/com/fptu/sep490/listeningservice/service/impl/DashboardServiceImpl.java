@@ -27,7 +27,8 @@ public class DashboardServiceImpl implements DashboardService {
     ListeningExamRepository listeningExamRepository;
     AttemptRepository attemptRepository;
     ExamAttemptRepository examAttemptRepository;
-    ReportDataRepository reportDataRepository;
+    QuestionTypeDailyStatsRepository questionTypeDailyStatsRepository;
+    UserExamScoreRepository userExamScoreRepository;
     Helper helper;
     @Override
     public DataStats getDataStats() {
@@ -35,10 +36,11 @@ public class DashboardServiceImpl implements DashboardService {
         int numberOfExams = listeningExamRepository.getNumberOfExams();
         int numberOfAttempts = attemptRepository.getNumberOfAttempts();
         int numberOfExamAttempts = examAttemptRepository.getNumberOfExamAttempts();
-        List<UserInBranch> userInBranchAvg = examAttemptRepository.getNumberOfUsersInBranchAvg();
-        List<UserInBranch> userInBranchHighest = examAttemptRepository.getNumberOfUsersInBranchHighest();
-        List<ReportQuestionTypeStats> questionTypeStats = reportDataRepository.countCorrectByQuestionType(null, null);
-        List<ReportQuestionTypeStatsWrong> questionTypeStatsWrong = reportDataRepository.countWrongByQuestionType(null, null);
+        // Phân bố band và thống kê loại câu hỏi đọc từ rollup, không quét exam_attempt / report_data
+        List<UserInBranch> userInBranchAvg = userExamScoreRepository.getNumberOfUsersInBranchAvg();
+        List<UserInBranch> userInBranchHighest = userExamScoreRepository.getNumberOfUsersInBranchHighest();
+        List<ReportQuestionTypeStats> questionTypeStats = questionTypeDailyStatsRepository.countCorrectByQuestionType(null, null);
+        List<ReportQuestionTypeStatsWrong> questionTypeStatsWrong = questionTypeDailyStatsRepository.countWrongByQuestionType(null, null);
         return DataStats.builder()
                 .numberOfTasks(numberOfTasks)
                 .numberOfExams(numberOfExams)
@@ -53,11 +55,11 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public List<ReportQuestionTypeStats> getQuestionTypeStats(LocalDate fromDate, LocalDate toDate, HttpServletRequest request) {
-        return reportDataRepository.countCorrectByQuestionType(fromDate, toDate);
+        return questionTypeDailyStatsRepository.countCorrectByQuestionType(fromDate, toDate);
     }
 
     @Override
     public List<ReportQuestionTypeStatsWrong> getQuestionTypeStatsWrong(LocalDate fromDate, LocalDate toDate, HttpServletRequest request) {
-        return reportDataRepository.countWrongByQuestionType(fromDate, toDate);
+        return questionTypeDailyStatsRepository.countWrongByQuestionType(fromDate, toDate);
     }
 }
@@ -10,15 +10,23 @@ import com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq;
 import com.fptu.sep490.commonlibrary.viewmodel.request.OverviewProgressReq;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.OverviewProgress;
+import com.fptu.sep490.listeningservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.listeningservice.component.ExamAttemptReviewCache;
+import com.fptu.sep490.listeningservice.component.ExamPaperSnapshotCache;
+import com.fptu.sep490.listeningservice.component.ExamAutosaveBuffer;
+import com.fptu.sep490.listeningservice.component.ExamGradingEngine;
+import com.fptu.sep490.listeningservice.component.GradingBatchWriter;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.*;
 import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.ExamAnswerKey;
 import com.fptu.sep490.listeningservice.model.json.ExamAttemptHistory;
 import com.fptu.sep490.listeningservice.model.specification.ExamAttemptSpecification;
 import com.fptu.sep490.listeningservice.repository.*;
 import com.fptu.sep490.listeningservice.service.ExamAttemptService;
 import com.fptu.sep490.listeningservice.service.ListeningTaskService;
+import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswerDeltaRequest;
 import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswersRequest;
 import com.fptu.sep490.listeningservice.viewmodel.response.*;
 import jakarta.servlet.http.HttpServletRequest;
@@ -31,15 +39,16 @@ import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
@@ -56,7 +65,16 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
     ListeningTaskService listeningTaskService;
     AttemptRepository attemptRepository;
     ListeningTaskRepository listeningTaskRepository;
-    ReportDataRepository reportDataRepository;
+    GradingBatchWriter gradingBatchWriter;
+    ExamAnswerKeyCache examAnswerKeyCache;
+    ExamGradingEngine examGradingEngine;
+    ExamAutosaveBuffer examAutosaveBuffer;
+    UserProgressDailyRepository userProgressDailyRepository;
+    UserExamScoreRepository userExamScoreRepository;
+    ExamPaperSnapshotCache examPaperSnapshotCache;
+    ExamAttemptReviewCache examAttemptReviewCache;
+
+    private static final int AUTOSAVE_FLUSH_BATCH = 200;
 
     @Transactional
     @Override
@@ -86,16 +104,10 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
         //save examAttempt
         examAttempt = examAttemptRepository.saveAndFlush(examAttempt);
 
-        CreateExamAttemptResponse.ListeningExamResponse listeningExamResponse = CreateExamAttemptResponse.ListeningExamResponse.builder()
-                .listeningExamId(currentExam.getListeningExamId())
-                .listeningExamName(currentExam.getExamName())
-                .listeningExamDescription(currentExam.getExamDescription())
-                .urlSlug(currentExam.getUrlSlug())
-                .listeningTaskIdPart1(listeningTaskService.fromListeningTask(currentExam.getPart1().getTaskId().toString()))
-                .listeningTaskIdPart2(listeningTaskService.fromListeningTask(currentExam.getPart2().getTaskId().toString()))
-                .listeningTaskIdPart3(listeningTaskService.fromListeningTask(currentExam.getPart3().getTaskId().toString()))
-                .listeningTaskIdPart4(listeningTaskService.fromListeningTask(currentExam.getPart4().getTaskId().toString()))
-                .build();
+        // Đề giống nhau với mọi học viên: dùng snapshot theo phiên bản đề, chỉ render khi chưa có
+        ListeningExam paperExam = currentExam;
+        CreateExamAttemptResponse.ListeningExamResponse listeningExamResponse = examPaperSnapshotCache.get(
+                currentExam.getListeningExamId(), () -> renderExamPaper(paperExam));
         return CreateExamAttemptResponse.builder()
                 .examAttemptId(examAttempt.getExamAttemptId())
                 .urlSlug(currentExam.getUrlSlug())
@@ -105,6 +117,19 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                 .build();
     }
 
+    private CreateExamAttemptResponse.ListeningExamResponse renderExamPaper(ListeningExam exam) {
+        return CreateExamAttemptResponse.ListeningExamResponse.builder()
+                .listeningExamId(exam.getListeningExamId())
+                .listeningExamName(exam.getExamName())
+                .listeningExamDescription(exam.getExamDescription())
+                .urlSlug(exam.getUrlSlug())
+                .listeningTaskIdPart1(listeningTaskService.fromListeningTask(exam.getPart1().getTaskId().toString()))
+                .listeningTaskIdPart2(listeningTaskService.fromListeningTask(exam.getPart2().getTaskId().toString()))
+                .listeningTaskIdPart3(listeningTaskService.fromListeningTask(exam.getPart3().getTaskId().toString()))
+                .listeningTaskIdPart4(listeningTaskService.fromListeningTask(exam.getPart4().getTaskId().toString()))
+                .build();
+    }
+
     @Transactional(readOnly = true)
     @Override
     public ExamAttemptGetDetail getExamAttemptById(String examAttemptId, HttpServletRequest request) throws JsonProcessingException {
@@ -126,20 +151,55 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
             );
         }
 
-        if (examAttempt.getHistory() == null) {
+        ExamAttemptHistory history = examAttempt.getHistory() != null
+                ? objectMapper.readValue(examAttempt.getHistory(), ExamAttemptHistory.class)
+                : null;
+        Integer duration = examAttempt.getDuration();
+        if (!Boolean.TRUE.equals(examAttempt.getIsFinished())) {
+            // Attempt đang làm: cộng thêm các delta autosave chưa ghi xuống DB
+            ExamAutosaveBuffer.Draft draft = readAutosaveDraft(attemptId);
+            if (draft != null && !draft.isEmpty()) {
+                history = applyAutosaveDraft(history, draft);
+                if (draft.duration() != null) {
+                    duration = draft.duration();
+                }
+            }
+        }
+        if (history == null) {
             throw new AppException(
                     Constants.ErrorCodeMessage.EXAM_ATTEMPT_NOT_SUBMIT,
                     Constants.ErrorCode.EXAM_ATTEMPT_NOT_SUBMIT,
                     HttpStatus.NOT_FOUND.value()
             );
         }
-        ExamAttemptHistory history = objectMapper.readValue(examAttempt.getHistory(), ExamAttemptHistory.class);
 
+        // Bài đã nộp không đổi: phần đề dựng lại từ history được cache theo attempt
+        ExamAttemptHistory reviewHistory = history;
+        ExamAttemptGetDetail.ListeningExamResponse readingExamResponse = Boolean.TRUE.equals(examAttempt.getIsFinished())
+                ? examAttemptReviewCache.get(attemptId, examAttempt.getListeningExam().getListeningExamId(),
+                        () -> toReviewExam(examAttempt, reviewHistory))
+                : toReviewExam(examAttempt, history);
+
+        return ExamAttemptGetDetail.builder()
+                .examAttemptId(examAttempt.getExamAttemptId())
+                .bandScore(bandScore(examAttempt.getTotalPoint()))
+                .readingExam(readingExamResponse)
+                .duration(duration != null ? duration.longValue() : null)
+                .totalQuestion(examAttempt.getTotalPoint())
+                .createdBy(helper.getUserInformationResponse(examAttempt.getCreatedBy()))
+                .updatedBy(helper.getUserInformationResponse(examAttempt.getUpdatedBy()))
+                .createdAt(examAttempt.getCreatedAt().toString())
+                .updatedAt(examAttempt.getUpdatedAt().toString())
+                .answers(history.getUserAnswers())
+                .build();
+    }
+
+    private ExamAttemptGetDetail.ListeningExamResponse toReviewExam(ExamAttempt examAttempt, ExamAttemptHistory history) {
         List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse> taskResponses = listeningTaskService.fromExamAttemptHistory(history);
         taskResponses = taskResponses.stream()
                 .sorted(Comparator.comparing(ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse::partNumber))
                 .toList();
-        ExamAttemptGetDetail.ListeningExamResponse readingExamResponse = ExamAttemptGetDetail.ListeningExamResponse.builder()
+        return ExamAttemptGetDetail.ListeningExamResponse.builder()
                 .listeningExamId(examAttempt.getListeningExam().getListeningExamId())
                 .listeningExamName(examAttempt.getListeningExam().getExamName())
                 .listeningExamDescription(examAttempt.getListeningExam().getExamDescription())
@@ -149,19 +209,6 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                 .listeningTaskIdPart3(taskResponses.get(2))
                 .listeningTaskIdPart4(taskResponses.get(3))
                 .build();
-
-        return ExamAttemptGetDetail.builder()
-                .examAttemptId(examAttempt.getExamAttemptId())
-                .bandScore(bandScore(examAttempt.getTotalPoint()))
-                .readingExam(readingExamResponse)
-                .duration(examAttempt.getDuration().longValue())
-                .totalQuestion(examAttempt.getTotalPoint())
-                .createdBy(helper.getUserInformationResponse(examAttempt.getCreatedBy()))
-                .updatedBy(helper.getUserInformationResponse(examAttempt.getUpdatedBy()))
-                .createdAt(examAttempt.getCreatedAt().toString())
-                .updatedAt(examAttempt.getUpdatedAt().toString())
-                .answers(history.getUserAnswers())
-                .build();
     }
 
     public Double bandScore(Integer totalPoint) {
@@ -214,6 +261,9 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
         Page<ExamAttempt> examAttemptsResult = examAttemptRepository.findAll(spec, pageable);
 
         List<ExamAttempt> examAttempts = examAttemptsResult.getContent();
+        Map<String, UserInformationResponse> users = helper.getUserInformationResponses(examAttempts.stream()
+                .flatMap(examAttempt -> Stream.of(examAttempt.getCreatedBy(), examAttempt.getUpdatedBy()))
+                .toList());
 
         List<UserGetHistoryExamAttemptResponse> list = examAttempts.stream().map(examAttempt -> {
             UserGetHistoryExamAttemptResponse.UserGetHistoryExamAttemptListeningExamResponse listeningExamResponse =
@@ -229,8 +279,8 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                     .listeningExam(listeningExamResponse)
                     .duration(examAttempt.getDuration())
                     .totalQuestion(examAttempt.getTotalPoint())
-                    .createdBy(helper.getUserInformationResponse(examAttempt.getCreatedBy()))
-                    .updatedBy(helper.getUserInformationResponse(examAttempt.getUpdatedBy()))
+                    .createdBy(users.get(examAttempt.getCreatedBy()))
+                    .updatedBy(users.get(examAttempt.getUpdatedBy()))
                     .createdAt(examAttempt.getCreatedAt().toString())
                     .updatedAt(examAttempt.getUpdatedAt().toString())
                     .build();
@@ -241,40 +291,26 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
     }
 
     @Override
+    @Transactional
     public SubmittedExamAttemptResponse submittedExam(String attemptId, ExamAttemptAnswersRequest answers, HttpServletRequest request) throws JsonProcessingException {
 
-        ExamAttempt examAttempt = examAttemptRepository.findById(UUID.fromString(attemptId)).orElseThrow(
+        ExamAttempt examAttempt = examAttemptRepository.findByIdForUpdate(UUID.fromString(attemptId)).orElseThrow(
                 () -> new AppException(
                         Constants.ErrorCodeMessage.EXAM_ATTEMPT_NOT_FOUND,
                         Constants.ErrorCode.EXAM_ATTEMPT_NOT_FOUND,
                         HttpStatus.NOT_FOUND.value()
                 )
         );
+        // Lần nộp lại chỉ cộng phần chênh điểm vào rollup
+        boolean alreadyCounted = examAttempt.isSubmitted();
+        int previousPoint = alreadyCounted ? examAttempt.getTotalPoint() : 0;
         examAttempt.setDuration(answers.duration());
         examAttempt.setIsFinished(true);
         List<UUID> questionIds = answers.answers().stream()
                 .map(ExamAttemptAnswersRequest.ExamAnswerRequest::questionId)
                 .filter(Objects::nonNull)
                 .toList();
-        List<Question> questions = questionRepository.findQuestionsByIds(questionIds);
-        Map<UUID, List<UUID>> groupMapDragItem = new HashMap<>();
-        if(!CollectionUtils.isEmpty(answers.itemsIds())) {
-            List<DragItem> items = dragItemRepository.findAllById(answers.itemsIds());
-            List<UUID> groupIds = items.stream()
-                    .map(i -> i.getQuestionGroup().getGroupId()).toList();
-            Set<UUID> group = new HashSet<>(groupIds);
-            group.forEach(groupId -> {
-                List<UUID> ids = items.stream()
-                        .filter(dragItem -> groupId.equals(dragItem.getQuestionGroup().getGroupId()))
-                        .map(DragItem::getDragItemId)
-                        .toList();
-
-                groupMapDragItem.put(groupId, ids);
-            });
-        }
-
-        List<ReportData> reportData = new ArrayList<>();
-
+        Map<UUID, List<UUID>> groupMapDragItem = groupDragItems(answers.itemsIds());
 
         // Convert user answers for mapping questions and answers
         Map<UUID, List<String>> userAnswers = answers.answers().stream()
@@ -300,199 +336,75 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                 .build();
         examAttempt.setHistory(objectMapper.writeValueAsString(examAttemptHistory));
 
-        int points = 0;
-        List<SubmittedExamAttemptResponse.ResultSet> resultSets = new ArrayList<>();
-        for(Question question : questions) {
-
-            List<String> userSelectedAnswers = userAnswers.get(question.getQuestionId());
-            if(userSelectedAnswers == null) {
-                continue;
-            }
-
-            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                SubmittedExamAttemptResponse.ResultSet result = checkMultipleChoiceQuestion(question, userSelectedAnswers);
-                points += result.isCorrect() ? question.getPoint() : 0;
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-            if (question.getQuestionType() == QuestionType.FILL_IN_THE_BLANKS) {
-                SubmittedExamAttemptResponse.ResultSet result = SubmittedExamAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswer()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(question.getCorrectAnswer().equalsIgnoreCase(userSelectedAnswers.getFirst())) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-
-            if (question.getQuestionType() == QuestionType.MATCHING) {
-                SubmittedExamAttemptResponse.ResultSet result = SubmittedExamAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswerForMatching()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(question.getCorrectAnswerForMatching().equalsIgnoreCase(userSelectedAnswers.getFirst())) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-
-            if( question.getQuestionType() == QuestionType.DRAG_AND_DROP) {
-                SubmittedExamAttemptResponse.ResultSet result = SubmittedExamAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getDragItem().getContent()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(question.getDragItem().getDragItemId().equals(UUID.fromString(userSelectedAnswers.getFirst()))) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-
-
-        }
-        examAttempt.setTotalPoint(points);
+        ExamAnswerKey answerKey = examAnswerKeyCache.get(examAttempt.getListeningExam().getListeningExamId());
+        ExamGradingEngine.ExamGradingResult gradingResult = examGradingEngine.grade(answerKey, questionIds, userAnswers);
+        examAttempt.setTotalPoint(gradingResult.points());
 
         examAttempt = examAttemptRepository.save(examAttempt);
-        reportDataRepository.saveAll(reportData);
+        examAttemptReviewCache.evict(examAttempt.getExamAttemptId(), examAttempt.getListeningExam().getListeningExamId());
+        gradingBatchWriter.insertReportData(gradingResult.reportData());
+        userProgressDailyRepository.increment(examAttempt.getCreatedBy(),
+                examAttempt.getCreatedAt().toLocalDate(),
+                alreadyCounted ? 0 : 1,
+                gradingResult.points() - previousPoint,
+                0,
+                examAttempt.getCreatedAt());
+        userExamScoreRepository.record(examAttempt.getCreatedBy(),
+                alreadyCounted ? 0 : 1,
+                gradingResult.points() - previousPoint,
+                gradingResult.points(),
+                LocalDateTime.now());
+        discardAutosaveDraft(examAttempt.getExamAttemptId());
 
         return SubmittedExamAttemptResponse.builder()
                 .duration(examAttempt.getDuration().longValue())
-                .resultSets(resultSets.stream().sorted(Comparator.comparing(SubmittedExamAttemptResponse.ResultSet::getQuestionIndex)).toList())
-                .build();
-
-    }
-
-    private SubmittedExamAttemptResponse.ResultSet checkMultipleChoiceQuestion(Question question, List<String> userSelectedAnswers) {
-        // Convert user selected answers to UUIDs
-        List<UUID> answerChoice = userSelectedAnswers.stream()
-                .map(UUID::fromString)
-                .toList();
-        List<Choice> correctAnswers = new ArrayList<>();
-        List<String> userAnswers= choiceRepository.getChoicesByIds(answerChoice);
-        SubmittedExamAttemptResponse.ResultSet resultSet = SubmittedExamAttemptResponse.ResultSet.builder()
-                .questionIndex(question.getQuestionOrder())
-                .userAnswer(userAnswers)
-                .explanation(question.getExplanation())
+                .resultSets(gradingResult.resultSets())
                 .build();
-        if(question.getIsOriginal()) {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        } else {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getParent().getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        }
-
-        List<UUID> userChoice = answerChoice;
-        List<String> correctLabel = new ArrayList<>();
-        for(Choice correctAnswer : correctAnswers) {
 
-            if(userChoice.contains(correctAnswer.getChoiceId())) {
-                correctLabel.add(correctAnswer.getLabel());
-            }
-        }
-        int numberOfCorrect = 0;
-        for(String userAnswer : userAnswers) {
-            if(correctLabel.contains(userAnswer)) {
-                numberOfCorrect++;
-            }
-        }
-        boolean isCorrect = numberOfCorrect == correctAnswers.size();
-        resultSet.setCorrect(isCorrect);
-        return resultSet;
     }
 
     @Override
     public OverviewProgress getOverViewProgress(OverviewProgressReq body, String token) {
         String userId = helper.getUserIdFromToken(token);
 
-        List<ExamAttempt> exams = examAttemptRepository.findAllByUserId(userId);
+        // Mỗi phần tử là một ngày có hoạt động, không phải một attempt
+        List<UserProgressDaily> days = userProgressDailyRepository.findAllByUserId(userId);
         Integer numberOfExams = listeningExamRepository.numberOfActiveExams();
-
-        List<Attempt> tasks = attemptRepository.findAllByUserId(userId);
         Integer numberOfTasks = listeningTaskRepository.numberOfPublishedTasks();
 
-        OverviewProgress overviewProgress = new OverviewProgress();
-        overviewProgress.setExam(exams.size());
-        overviewProgress.setTask(tasks.size());
-        overviewProgress.setTotalExams(numberOfExams);
-        overviewProgress.setTotalTasks(numberOfTasks);
-
-        LocalDateTime endDate = LocalDateTime.now();
-        LocalDateTime startDate = DateTimeUtils.calculateStartDateFromTimeFrame(body.getTimeFrame());
+        // Khung thời gian được làm tròn về đầu ngày bắt đầu
+        LocalDate startDate = DateTimeUtils.calculateStartDateFromTimeFrame(body.getTimeFrame()).toLocalDate();
 
-// 3. Duyệt qua các bài thi và cập nhật lastLearningDate
-        int totalScore = 0;
+        int exams = 0;
+        int tasks = 0;
+        long totalScore = 0;
         int numberOfExamsInTimeFrame = 0;
         int numberOfTasksInTimeFrame = 0;
-        for (ExamAttempt exam : exams) {
-            LocalDateTime createdAt = exam.getCreatedAt();
-            if ((createdAt.isAfter(startDate) || createdAt.isEqual(startDate)) && createdAt.isBefore(endDate)) {
-                LocalDateTime lastDateStr = overviewProgress.getLastLearningDate();
-                totalScore += exam.getTotalPoint() != null ? exam.getTotalPoint() : 0;
-                numberOfExamsInTimeFrame++;
-                if (lastDateStr == null) {
-                    overviewProgress.setLastLearningDate(createdAt); // dùng format mặc định
-                } else {
-                    if (createdAt.isAfter(lastDateStr)) {
-                        overviewProgress.setLastLearningDate(createdAt);
-                    }
-                }
+        LocalDateTime lastLearningDate = null;
+        for (UserProgressDaily day : days) {
+            exams += day.getExamCount();
+            tasks += day.getTaskCount();
+            if (day.getId().getActivityDate().isBefore(startDate)) {
+                continue;
             }
-        }
-        for (Attempt task : tasks) {
-            LocalDateTime createdAt = task.getCreatedAt();
-            if ((createdAt.isAfter(startDate) || createdAt.isEqual(startDate)) && createdAt.isBefore(endDate)) {
-                LocalDateTime lastDateStr = overviewProgress.getLastLearningDate();
-                numberOfTasksInTimeFrame++;
-                if (lastDateStr == null) {
-                    overviewProgress.setLastLearningDate(createdAt); // dùng format mặc định
-                } else {
-                    if (createdAt.isAfter(lastDateStr)) {
-                        overviewProgress.setLastLearningDate(createdAt);
-                    }
-                }
+            totalScore += day.getExamPointSum();
+            numberOfExamsInTimeFrame += day.getExamCount();
+            numberOfTasksInTimeFrame += day.getTaskCount();
+            if (day.getLastActivityAt() != null
+                    && (lastLearningDate == null || day.getLastActivityAt().isAfter(lastLearningDate))) {
+                lastLearningDate = day.getLastActivityAt();
             }
         }
 
+        OverviewProgress overviewProgress = new OverviewProgress();
+        overviewProgress.setExam(exams);
+        overviewProgress.setTask(tasks);
+        overviewProgress.setTotalExams(numberOfExams);
+        overviewProgress.setTotalTasks(numberOfTasks);
+        overviewProgress.setLastLearningDate(lastLearningDate);
         overviewProgress.setAverageBandInTimeFrame(
-                IeltsBandConverter.convertScoreToBand(totalScore, numberOfExamsInTimeFrame, IeltsScale.LISTENING)
+                IeltsBandConverter.convertScoreToBand((int) totalScore, numberOfExamsInTimeFrame, IeltsScale.LISTENING)
         );
-
         overviewProgress.setNumberOfExamsInTimeFrame(numberOfExamsInTimeFrame);
         overviewProgress.setNumberOfTasksInTimeFrame(numberOfTasksInTimeFrame);
         return overviewProgress;
@@ -500,33 +412,29 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
 
     @Override
     public List<LineChartData> getBandChart(LineChartReq body, String token) {
-        List<ExamAttempt> exams = examAttemptRepository.findByUserAndDateRange(helper.getUserIdFromToken(token),
-                body.getStartDate() != null ? body.getStartDate().atStartOfDay() : null,
-                body.getEndDate() != null ? body.getEndDate().atTime(LocalTime.MAX) : null);
+        List<UserProgressDaily> days = userProgressDailyRepository.findExamDaysInRange(helper.getUserIdFromToken(token),
+                body.getStartDate(),
+                body.getEndDate());
 
-        if (exams == null || exams.isEmpty()) {
+        if (days == null || days.isEmpty()) {
             return Collections.emptyList(); // Trả về danh sách rỗng
         }
 
-        LocalDate startDate = exams.getFirst().getCreatedAt().toLocalDate();
-        // 2. Grouping + averaging
-        Map<LocalDate, Double> avgByPeriod = exams.stream()
-                .collect(Collectors.groupingBy(
-                        exam -> DateTimeUtils.normalize(
-                                exam.getCreatedAt().toLocalDate(),
-                                body.getTimeFrame(),
-                                startDate),
-                        TreeMap::new,
-                        Collectors.averagingDouble(e -> e.getTotalPoint().doubleValue())
-                ));
+        LocalDate startDate = days.getFirst().getId().getActivityDate();
+        // Gộp tổng điểm / số bài của các ngày trong cùng kỳ rồi mới chia, giống trung bình trên từng bài
+        Map<LocalDate, long[]> sumByPeriod = new TreeMap<>();
+        for (UserProgressDaily day : days) {
+            LocalDate period = DateTimeUtils.normalize(day.getId().getActivityDate(), body.getTimeFrame(), startDate);
+            long[] sum = sumByPeriod.computeIfAbsent(period, p -> new long[2]);
+            sum[0] += day.getExamPointSum();
+            sum[1] += day.getExamCount();
+        }
 
-        // 3. Chuyển thành LineChartData và sort
-        return avgByPeriod.entrySet().stream()
+        return sumByPeriod.entrySet().stream()
                 .map(e -> LineChartData.builder()
                         .date(e.getKey())
-                        .value(e.getValue())
+                        .value((double) e.getValue()[0] / e.getValue()[1])
                         .build())
-                .sorted(Comparator.comparing(LineChartData::getDate))
                 .collect(Collectors.toList());
     }
 
@@ -546,15 +454,16 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
     @Override
     public BandScoreData getBandScore(HttpServletRequest request, String token) {
         String userId = helper.getUserIdFromToken(token);
-        List<ExamAttempt> examAttempts = examAttemptRepository.findAllByUserId(userId);
-
-        int totalScore = 0;
+        List<UserProgressDaily> days = userProgressDailyRepository.findAllByUserId(userId);
 
-        for (ExamAttempt exam : examAttempts) {
-            totalScore += exam.getTotalPoint() != null ? exam.getTotalPoint() : 0;
+        long totalScore = 0;
+        int numberOfExams = 0;
+        for (UserProgressDaily day : days) {
+            totalScore += day.getExamPointSum();
+            numberOfExams += day.getExamCount();
         }
 
-        Double averageBand = IeltsBandConverter.convertScoreToBand(totalScore, examAttempts.size(), IeltsScale.LISTENING);
+        Double averageBand = IeltsBandConverter.convertScoreToBand((int) totalScore, numberOfExams, IeltsScale.LISTENING);
         return BandScoreData.builder()
                 .bandScore(averageBand)
                 .build();
@@ -582,22 +491,7 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                 .map(ExamAttemptAnswersRequest.ExamAnswerRequest::questionId)
                 .filter(Objects::nonNull)
                 .toList();
-        List<Question> questions = questionRepository.findQuestionsByIds(questionIds);
-        Map<UUID, List<UUID>> groupMapDragItem = new HashMap<>();
-        if(!CollectionUtils.isEmpty(answers.itemsIds())) {
-            List<DragItem> items = dragItemRepository.findAllById(answers.itemsIds());
-            List<UUID> groupIds = items.stream()
-                    .map(i -> i.getQuestionGroup().getGroupId()).toList();
-            Set<UUID> group = new HashSet<>(groupIds);
-            group.forEach(groupId -> {
-                List<UUID> ids = items.stream()
-                        .filter(dragItem -> groupId.equals(dragItem.getQuestionGroup().getGroupId()))
-                        .map(DragItem::getDragItemId)
-                        .toList();
-
-                groupMapDragItem.put(groupId, ids);
-            });
-        }
+        Map<UUID, List<UUID>> groupMapDragItem = groupDragItems(answers.itemsIds());
 
         Map<UUID, List<String>> userAnswers = answers.answers().stream()
                 .filter(answer -> answer.questionId() != null && answer.selectedAnswers() != null)
@@ -621,72 +515,160 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                 .questionIds(questionIds)
                 .build();
         examAttempt.setHistory(objectMapper.writeValueAsString(examAttemptHistory));
-        int points = 0;
-        List<SubmittedExamAttemptResponse.ResultSet> resultSets = new ArrayList<>();
-        for(Question question : questions) {
+        ExamAnswerKey answerKey = examAnswerKeyCache.get(examAttempt.getListeningExam().getListeningExamId());
+        ExamGradingEngine.ExamGradingResult gradingResult = examGradingEngine.grade(answerKey, questionIds, userAnswers);
+        examAttempt.setTotalPoint(gradingResult.points());
 
-            List<String> userSelectedAnswers = userAnswers.get(question.getQuestionId());
-            if(userSelectedAnswers == null) {
-                continue;
-            }
+        examAttemptRepository.save(examAttempt);
+        // Bản đầy đủ thay thế mọi delta đang đệm
+        discardAutosaveDraft(examAttempt.getExamAttemptId());
+    }
 
-            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                SubmittedExamAttemptResponse.ResultSet result = checkMultipleChoiceQuestion(question, userSelectedAnswers);
-                points += result.isCorrect() ? question.getPoint() : 0;
-                resultSets.add(result);
-            }
-            if (question.getQuestionType() == QuestionType.FILL_IN_THE_BLANKS) {
-                SubmittedExamAttemptResponse.ResultSet result = SubmittedExamAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswer()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(question.getCorrectAnswer().equalsIgnoreCase(userSelectedAnswers.getFirst())) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
+    @Override
+    public void autoSaveExamDelta(String attemptId, ExamAttemptAnswerDeltaRequest delta, HttpServletRequest request) throws JsonProcessingException {
+        if (delta.sequence() == null) {
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_REQUEST,
+                    Constants.ErrorCode.INVALID_REQUEST,
+                    HttpStatus.BAD_REQUEST.value()
+            );
+        }
+        UUID examAttemptId = UUID.fromString(attemptId);
+        if (examAutosaveBuffer.applyDelta(examAttemptId, delta) >= 0) {
+            return;
+        }
+        // Delta đầu tiên của attempt: kiểm tra DB một lần rồi mở bộ đệm
+        ExamAttempt examAttempt = examAttemptRepository.findById(examAttemptId).orElseThrow(
+                () -> new AppException(
+                        Constants.ErrorCodeMessage.EXAM_ATTEMPT_NOT_FOUND,
+                        Constants.ErrorCode.EXAM_ATTEMPT_NOT_FOUND,
+                        HttpStatus.NOT_FOUND.value()
+                )
+        );
+        if (Boolean.TRUE.equals(examAttempt.getIsFinished())) {
+            throw new AppException(
+                    Constants.ErrorCodeMessage.EXAM_ATTEMPT_ALREADY_SUBMITTED,
+                    Constants.ErrorCode.EXAM_ATTEMPT_ALREADY_SUBMITTED,
+                    HttpStatus.BAD_REQUEST.value()
+            );
+        }
+        examAutosaveBuffer.open(examAttemptId);
+        examAutosaveBuffer.applyDelta(examAttemptId, delta);
+    }
 
+    /**
+     * Gộp các delta autosave đang đệm vào cột history, tối đa {@link #AUTOSAVE_FLUSH_BATCH} attempt mỗi lần chạy.
+     * Không chấm điểm: điểm chỉ được tính khi nộp bài.
+     */
+    @Scheduled(fixedDelayString = "${exam.autosave.flush-interval-ms:30000}")
+    public void flushAutosaveDrafts() {
+        List<UUID> attemptIds;
+        try {
+            attemptIds = examAutosaveBuffer.pollDirty(AUTOSAVE_FLUSH_BATCH);
+        } catch (RuntimeException e) {
+            log.warn("Cannot read pending exam autosave drafts: {}", e.getMessage());
+            return;
+        }
+        for (UUID attemptId : attemptIds) {
+            try {
+                foldAutosaveDraft(attemptId);
+            } catch (Exception e) {
+                log.warn("Cannot flush autosave draft of exam attempt {}, will retry: {}", attemptId, e.getMessage());
+                examAutosaveBuffer.markDirty(attemptId);
             }
+        }
+    }
 
-            if (question.getQuestionType() == QuestionType.MATCHING) {
-                SubmittedExamAttemptResponse.ResultSet result = SubmittedExamAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswerForMatching()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(question.getCorrectAnswerForMatching().equalsIgnoreCase(userSelectedAnswers.getFirst())) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
+    private void foldAutosaveDraft(UUID attemptId) throws JsonProcessingException {
+        ExamAutosaveBuffer.Draft draft = examAutosaveBuffer.read(attemptId);
+        if (draft == null || draft.isEmpty()) {
+            return;
+        }
+        ExamAttempt examAttempt = examAttemptRepository.findById(attemptId).orElse(null);
+        if (examAttempt == null || Boolean.TRUE.equals(examAttempt.getIsFinished())) {
+            examAutosaveBuffer.discard(attemptId);
+            return;
+        }
+        ExamAttemptHistory current = examAttempt.getHistory() != null
+                ? objectMapper.readValue(examAttempt.getHistory(), ExamAttemptHistory.class)
+                : null;
+        ExamAttemptHistory merged = applyAutosaveDraft(current, draft);
+        examAttemptRepository.updateDraftHistory(attemptId, objectMapper.writeValueAsString(merged),
+                draft.duration(), LocalDateTime.now());
+    }
 
+    private ExamAttemptHistory applyAutosaveDraft(ExamAttemptHistory history, ExamAutosaveBuffer.Draft draft) {
+        ExamAttemptHistory merged = history != null ? history : new ExamAttemptHistory();
+        if (draft.taskId() != null) {
+            merged.setTaskId(draft.taskId());
+        }
+        if (draft.questionGroupIds() != null) {
+            merged.setQuestionGroupIds(draft.questionGroupIds());
+        }
+        if (draft.itemsIds() != null) {
+            merged.setGroupMapItems(groupDragItems(draft.itemsIds()));
+        }
+        if (draft.answers().isEmpty()) {
+            return merged;
+        }
+        Set<UUID> questionIds = merged.getQuestionIds() != null
+                ? new LinkedHashSet<>(merged.getQuestionIds()) : new LinkedHashSet<>();
+        Map<UUID, List<String>> userAnswers = merged.getUserAnswers() != null
+                ? new HashMap<>(merged.getUserAnswers()) : new HashMap<>();
+        Map<UUID, List<UUID>> questionMapChoices = merged.getQuestionMapChoices() != null
+                ? new HashMap<>(merged.getQuestionMapChoices()) : new HashMap<>();
+        draft.answers().forEach((questionId, answer) -> {
+            questionIds.add(questionId);
+            if (answer.selectedAnswers() != null) {
+                userAnswers.put(questionId, answer.selectedAnswers());
+            } else {
+                userAnswers.remove(questionId);
             }
-
-            if( question.getQuestionType() == QuestionType.DRAG_AND_DROP) {
-                SubmittedExamAttemptResponse.ResultSet result = SubmittedExamAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getDragItem().getContent()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(question.getDragItem().getDragItemId().equals(UUID.fromString(userSelectedAnswers.getFirst()))) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
+            if (!CollectionUtils.isEmpty(answer.choiceIds())) {
+                questionMapChoices.put(questionId, answer.choiceIds());
             }
+        });
+        merged.setQuestionIds(new ArrayList<>(questionIds));
+        merged.setUserAnswers(userAnswers);
+        merged.setQuestionMapChoices(questionMapChoices);
+        return merged;
+    }
 
+    private ExamAutosaveBuffer.Draft readAutosaveDraft(UUID attemptId) {
+        try {
+            return examAutosaveBuffer.read(attemptId);
+        } catch (Exception e) {
+            log.warn("Cannot read autosave draft of exam attempt {}: {}", attemptId, e.getMessage());
+            return null;
+        }
+    }
 
+    private void discardAutosaveDraft(UUID attemptId) {
+        try {
+            examAutosaveBuffer.discard(attemptId);
+        } catch (RuntimeException e) {
+            // Bản nháp còn sót sẽ bị bỏ khi flush thấy attempt đã nộp
+            log.warn("Cannot discard autosave draft of exam attempt {}: {}", attemptId, e.getMessage());
         }
-        examAttempt.setTotalPoint(points);
+    }
 
-        examAttemptRepository.save(examAttempt);
+    private Map<UUID, List<UUID>> groupDragItems(List<UUID> itemsIds) {
+        Map<UUID, List<UUID>> groupMapDragItem = new HashMap<>();
+        if(!CollectionUtils.isEmpty(itemsIds)) {
+            List<DragItem> items = dragItemRepository.findAllById(itemsIds);
+            List<UUID> groupIds = items.stream()
+                    .map(i -> i.getQuestionGroup().getGroupId()).toList();
+            Set<UUID> group = new HashSet<>(groupIds);
+            group.forEach(groupId -> {
+                List<UUID> ids = items.stream()
+                        .filter(dragItem -> groupId.equals(dragItem.getQuestionGroup().getGroupId()))
+                        .map(DragItem::getDragItemId)
+                        .toList();
+
+                groupMapDragItem.put(groupId, ids);
+            });
+        }
+        return groupMapDragItem;
     }
 
 }
@@ -5,6 +5,8 @@ import com.fptu.sep490.commonlibrary.constants.DataMarkup;
 import com.fptu.sep490.commonlibrary.constants.ErrorCodeMessage;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
+import com.fptu.sep490.listeningservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.listeningservice.component.ExamPaperSnapshotCache;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.ListeningExam;
@@ -53,6 +55,8 @@ public class ExamServiceImpl implements ExamService {
     ChoiceRepository choiceRepository;
     ListeningExamRepository listeningExamRepository;
     MarkupClient markupClient;
+    ExamAnswerKeyCache examAnswerKeyCache;
+    ExamPaperSnapshotCache examPaperSnapshotCache;
 
     Helper helper;
 
@@ -323,9 +327,13 @@ public class ExamServiceImpl implements ExamService {
         for (ListeningExam item:list){
             item.setIsDeleted(true);
             listeningExamRepository.save(item);
+            examAnswerKeyCache.evict(item.getListeningExamId());
+            examPaperSnapshotCache.evict(item.getListeningExamId());
         }
         exam.setIsDeleted(true);
         listeningExamRepository.save(exam);
+        examAnswerKeyCache.evict(exam.getListeningExamId());
+        examPaperSnapshotCache.evict(exam.getListeningExamId());
 
 
     }
@@ -529,6 +537,10 @@ public class ExamServiceImpl implements ExamService {
         listeningExamRepository.save(listeningExam);
         listeningExamRepository.save(currentExam);
         ListeningExam newSave = listeningExamRepository.save(newExam);
+        examAnswerKeyCache.evict(listeningExam.getListeningExamId());
+        examAnswerKeyCache.evict(currentExam.getListeningExamId());
+        examPaperSnapshotCache.evict(listeningExam.getListeningExamId());
+        examPaperSnapshotCache.evict(currentExam.getListeningExamId());
 
         return new ExamResponse(
                 newSave.getListeningExamId(),
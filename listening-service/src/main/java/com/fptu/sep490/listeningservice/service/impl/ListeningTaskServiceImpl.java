@@ -5,7 +5,6 @@ import com.fptu.sep490.commonlibrary.constants.*;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
-import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 import com.fptu.sep490.event.TopicMasterRequest;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
@@ -22,7 +21,6 @@ import com.fptu.sep490.listeningservice.model.json.ExamAttemptHistory;
 import com.fptu.sep490.listeningservice.model.json.QuestionVersion;
 import com.fptu.sep490.listeningservice.model.specification.ListeningTaskSpecification;
 import com.fptu.sep490.listeningservice.repository.*;
-import com.fptu.sep490.listeningservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.listeningservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.listeningservice.repository.client.MarkupClient;
 import com.fptu.sep490.listeningservice.service.FileService;
@@ -43,8 +41,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
 import jakarta.servlet.http.HttpServletRequest;
 
@@ -71,7 +67,6 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
     Helper helper;
     RedisService redisService;
     KeyCloakUserClient keyCloakUserClient;
-    KeyCloakTokenClient keyCloakTokenClient;
     MarkupClient markupClient;
     KafkaTemplate<String, Object> kafkaTemplate;
 
@@ -84,14 +79,6 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
     @NonFinal
     String realm;
 
-    @Value("${keycloak.client-id}")
-    @NonFinal
-    String clientId;
-
-    @Value("${keycloak.client-secret}")
-    @NonFinal
-    String clientSecret;
-
     @Value("${topic.topic-master}")
     @NonFinal
     String topicMasterTopic;
@@ -404,6 +391,14 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
 
         List<ListeningTaskGetResponse> responsesData = new ArrayList<>(tasks.size());
 
+        // Lấy thông tin người tạo / cập nhật của cả trang trong một lần
+        List<String> userIds = new ArrayList<>();
+        for (ListeningTask root : tasks) {
+            userIds.add(root.getCreatedBy());
+            userIds.add(latestByRootId.getOrDefault(root.getTaskId(), root).getUpdatedBy());
+        }
+        Map<String, UserInformationResponse> users = helper.getUserInformationResponses(userIds);
+
         for (ListeningTask root : tasks) {
             // Lấy phiên bản mới nhất theo root; nếu không có, dùng chính root
             ListeningTask current = latestByRootId.getOrDefault(root.getTaskId(), root);
@@ -412,31 +407,8 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
             String createdById = (root.getCreatedBy());
             String updatedById = current.getUpdatedBy(); // có thể null
 
-            UserInformationResponse createdByProfile = null;
-            UserInformationResponse updatedByProfile = null;
-
-            try {
-                if (createdById != null) {
-                    var created = getUserProfileById(createdById);
-                    createdByProfile = UserInformationResponse.builder()
-                            .userId(created.id())
-                            .lastName(created.lastName())
-                            .firstName(created.firstName())
-                            .email(created.email())
-                            .build();
-                }
-                if (updatedById != null) {
-                    var updated = getUserProfileById(updatedById);
-                    updatedByProfile = UserInformationResponse.builder()
-                            .userId(updated.id())
-                            .lastName(updated.lastName())
-                            .firstName(updated.firstName())
-                            .email(updated.email())
-                            .build();
-                }
-            } catch (JsonProcessingException e) {
-                throw new RuntimeException(e);
-            }
+            UserInformationResponse createdByProfile = createdById != null ? users.get(createdById) : null;
+            UserInformationResponse updatedByProfile = updatedById != null ? users.get(updatedById) : null;
 
             ListeningTaskGetResponse dto = ListeningTaskGetResponse.builder()
                     .taskId(root.getTaskId()) // luôn trả về id của task gốc để nhất quán
@@ -515,38 +487,28 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
 //            }
 //        }
         List<ListeningTaskGetResponse> responses = new ArrayList<>();
+        List<String> userIds = new ArrayList<>();
+        lastestVersion.values().forEach(value -> {
+            userIds.add(value.getParent() != null ? value.getParent().getCreatedBy() : value.getCreatedBy());
+            userIds.add(value.getUpdatedBy());
+        });
+        Map<String, UserInformationResponse> users = helper.getUserInformationResponses(userIds);
         lastestVersion.forEach((key, value) -> {
             if(value.getParent() != null) {
-                try {
-                    var createdByProfile = getUserProfileById(value.getParent().getCreatedBy());
-                    var updatedByProfile = getUserProfileById(value.getUpdatedBy());
-                    ListeningTaskGetResponse data = ListeningTaskGetResponse.builder()
-                            .taskId(value.getParent().getTaskId())
-                            .title(value.getTitle())
-                            .ieltsType(value.getIeltsType().ordinal())
-                            .partNumber(value.getPartNumber().ordinal())
-                            .status(value.getStatus().ordinal())
-                            .createdAt(value.getParent().getCreatedAt().toString())
-                            .updatedAt(value.getUpdatedAt().toString())
-                            .createdBy(UserInformationResponse.builder()
-                                    .userId(createdByProfile.id())
-                                    .lastName(createdByProfile.lastName())
-                                    .firstName(createdByProfile.firstName())
-                                    .email(createdByProfile.email())
-                                    .build())
-                            .updatedBy(UserInformationResponse.builder()
-                                    .userId(updatedByProfile.id())
-                                    .lastName(updatedByProfile.lastName())
-                                    .firstName(updatedByProfile.firstName())
-                                    .email(updatedByProfile.email())
-                                    .build())
-                            .build();
-                    responses.add(data);
-                } catch (JsonProcessingException e) {
-                    throw new RuntimeException(e);
-                }
+                ListeningTaskGetResponse data = ListeningTaskGetResponse.builder()
+                        .taskId(value.getParent().getTaskId())
+                        .title(value.getTitle())
+                        .ieltsType(value.getIeltsType().ordinal())
+                        .partNumber(value.getPartNumber().ordinal())
+                        .status(value.getStatus().ordinal())
+                        .createdAt(value.getParent().getCreatedAt().toString())
+                        .updatedAt(value.getUpdatedAt().toString())
+                        .createdBy(users.get(value.getParent().getCreatedBy()))
+                        .updatedBy(users.get(value.getUpdatedBy()))
+                        .build();
+                responses.add(data);
             } else {
-                ListeningTaskGetResponse data = toListeningTaskGetResponse(value);
+                ListeningTaskGetResponse data = toListeningTaskGetResponse(value, users);
                 responses.add(data);
             }
         });
@@ -857,10 +819,43 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
 
     @Override
     public List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse> fromExamAttemptHistory(ExamAttemptHistory history) {
+        // Pha 1: gom mọi id mà history tham chiếu, mỗi loại entity tải bằng một truy vấn
         List<ListeningTask> tasks = listeningTaskRepository.findAllByIdSortedByPartNumber(history.getTaskId());
         List<QuestionGroup> questionGroups = questionGroupRepository.findAllByIdOrderBySectionOrder(history.getQuestionGroupIds());
         List<Question> questions = questionRepository.findAllByIdOrderByQuestionOrder(history.getQuestionIds());
 
+        // groupMapItems chỉ chứa group có drag item (dựng từ chính drag item lúc nộp bài)
+        Map<UUID, List<UUID>> groupMapItems = history.getGroupMapItems() != null ? history.getGroupMapItems() : Collections.emptyMap();
+        Map<UUID, List<UUID>> questionMapChoices = history.getQuestionMapChoices() != null ? history.getQuestionMapChoices() : Collections.emptyMap();
+        Set<UUID> dragItemIds = new LinkedHashSet<>();
+        for (QuestionGroup group : questionGroups) {
+            dragItemIds.addAll(groupMapItems.getOrDefault(group.getGroupId(), Collections.emptyList()));
+        }
+        Set<UUID> choiceIds = new LinkedHashSet<>();
+        for (Question question : questions) {
+            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
+                choiceIds.addAll(questionMapChoices.getOrDefault(question.getQuestionId(), Collections.emptyList()));
+            }
+        }
+        Map<UUID, DragItem> dragItemsById = dragItemIds.isEmpty() ? Collections.emptyMap()
+                : dragItemRepository.findAllById(dragItemIds).stream()
+                        .collect(Collectors.toMap(DragItem::getDragItemId, Function.identity(), (a, b) -> a));
+        Map<UUID, Choice> choicesById = choiceIds.isEmpty() ? Collections.emptyMap()
+                : choiceRepository.findAllById(choiceIds).stream()
+                        .collect(Collectors.toMap(Choice::getChoiceId, Function.identity(), (a, b) -> a));
+
+        // Pha 2: dựng response từ các map, không truy vấn thêm
+        Map<UUID, List<Question>> questionsByGroup = new HashMap<>();
+        for (Question question : questions) {
+            if (question.getQuestionGroup() != null) {
+                questionsByGroup.computeIfAbsent(question.getQuestionGroup().getGroupId(), k -> new ArrayList<>()).add(question);
+            }
+        }
+        Map<Integer, List<QuestionGroup>> groupsByPart = new HashMap<>();
+        for (QuestionGroup group : questionGroups) {
+            groupsByPart.computeIfAbsent(group.getListeningTask().getPartNumber().ordinal(), k -> new ArrayList<>()).add(group);
+        }
+
         List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse> taskResponses = new ArrayList<>();
         ObjectMapper mapper = new ObjectMapper();
 
@@ -868,105 +863,103 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
             int partNumber = task.getPartNumber().ordinal();
 
             List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse> questionGroupsList = new ArrayList<>();
-            for (QuestionGroup group : questionGroups) {
-                if (group.getListeningTask().getPartNumber().ordinal() == partNumber) {
-
-                    // --- drag items ---
-                    List<UpdatedQuestionResponse.DragItemResponse> dragItemResponses = new ArrayList<>();
-                    if (group.getDragItems() != null && !group.getDragItems().isEmpty()) {
-                        List<UUID> dragItemIds = history.getGroupMapItems().getOrDefault(group.getGroupId(), Collections.emptyList());
-                        List<DragItem> dragItems = dragItemRepository.findAllById(dragItemIds);
-                        for (DragItem dragItem : dragItems) {
-                            dragItemResponses.add(
-                                    UpdatedQuestionResponse.DragItemResponse.builder()
-                                            .dragItemId(dragItem.getDragItemId().toString())
-                                            .content(dragItem.getContent())
+            for (QuestionGroup group : groupsByPart.getOrDefault(partNumber, Collections.emptyList())) {
+
+                // --- drag items ---
+                List<UpdatedQuestionResponse.DragItemResponse> dragItemResponses = new ArrayList<>();
+                for (UUID dragItemId : groupMapItems.getOrDefault(group.getGroupId(), Collections.emptyList())) {
+                    DragItem dragItem = dragItemsById.get(dragItemId);
+                    if (dragItem == null) {
+                        continue;
+                    }
+                    dragItemResponses.add(
+                            UpdatedQuestionResponse.DragItemResponse.builder()
+                                    .dragItemId(dragItem.getDragItemId().toString())
+                                    .content(dragItem.getContent())
+                                    .build()
+                    );
+                }
+
+                // --- questions ---
+                List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse> questionAttemptResponses = new ArrayList<>();
+                for (Question question : questionsByGroup.getOrDefault(group.getGroupId(), Collections.emptyList())) {
+
+                    // --- choices ---
+                    List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse> choiceAttemptResponses = new ArrayList<>();
+                    if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
+                        for (UUID choiceId : questionMapChoices.getOrDefault(question.getQuestionId(), Collections.emptyList())) {
+                            Choice choice = choicesById.get(choiceId);
+                            if (choice == null) {
+                                throw new AppException(
+                                        Constants.ErrorCodeMessage.CHOICE_NOT_FOUND,
+                                        Constants.ErrorCode.CHOICE_NOT_FOUND,
+                                        HttpStatus.NOT_FOUND.value()
+                                );
+                            }
+                            choiceAttemptResponses.add(
+                                    ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
+                                            .choiceId(choice.getChoiceId())
+                                            .label(choice.getLabel())
+                                            .content(choice.getContent())
+                                            .choiceOrder(choice.getChoiceOrder())
+                                            .isCorrect(choice.isCorrect())
                                             .build()
                             );
                         }
                     }
 
-                    // --- questions ---
-                    List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse> questionAttemptResponses = new ArrayList<>();
-                    for (Question question : questions) {
-                        if (question.getQuestionGroup() != null && question.getQuestionGroup().getGroupId().equals(group.getGroupId())) {
-
-                            // --- choices ---
-                            List<ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse> choiceAttemptResponses = new ArrayList<>();
-                            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                                for (UUID choiceId : history.getQuestionMapChoices().getOrDefault(question.getQuestionId(), Collections.emptyList())) {
-                                    Choice choice = choiceRepository.findById(choiceId)
-                                            .orElseThrow(() -> new AppException(
-                                                    Constants.ErrorCodeMessage.CHOICE_NOT_FOUND,
-                                                    Constants.ErrorCode.CHOICE_NOT_FOUND,
-                                                    HttpStatus.NOT_FOUND.value()
-                                            ));
-                                    choiceAttemptResponses.add(
-                                            ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
-                                                    .choiceId(choice.getChoiceId())
-                                                    .label(choice.getLabel())
-                                                    .content(choice.getContent())
-                                                    .choiceOrder(choice.getChoiceOrder())
-                                                    .isCorrect(choice.isCorrect())
-                                                    .build()
-                                    );
-                                }
-                            }
-
-                            // --- parse explanation only if valid JSON with start_time & end_time ---
-                            String startTime = null;
-                            String endTime = null;
-                            String explanation = question.getExplanation();
-                            try {
-                                if (explanation != null && explanation.trim().startsWith("{")) {
-                                    JsonNode node = mapper.readTree(explanation);
-                                    if (node.has("start_time") && node.has("end_time")) {
-                                        startTime = node.get("start_time").asText();
-                                        endTime = node.get("end_time").asText();
-                                        // don’t keep explanation if it’s just JSON
-                                        explanation = null;
-                                    }
-                                }
-                            } catch (Exception ignored) {
-                                // explanation stays as-is
+                    // --- parse explanation only if valid JSON with start_time & end_time ---
+                    String startTime = null;
+                    String endTime = null;
+                    String explanation = question.getExplanation();
+                    try {
+                        if (explanation != null && explanation.trim().startsWith("{")) {
+                            JsonNode node = mapper.readTree(explanation);
+                            if (node.has("start_time") && node.has("end_time")) {
+                                startTime = node.get("start_time").asText();
+                                endTime = node.get("end_time").asText();
+                                // don’t keep explanation if it’s just JSON
+                                explanation = null;
                             }
-
-                            questionAttemptResponses.add(
-                                    ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
-                                            .questionId(question.getQuestionId())
-                                            .questionOrder(question.getQuestionOrder())
-                                            .questionType(question.getQuestionType().ordinal())
-                                            .blankIndex(question.getBlankIndex())
-                                            .instructionForChoice(question.getInstructionForChoice())
-                                            .numberOfCorrectAnswers(question.getNumberOfCorrectAnswers())
-                                            .instructionForMatching(question.getInstructionForMatching())
-                                            .zoneIndex(question.getZoneIndex())
-                                            .choices(choiceAttemptResponses)
-                                            .correctAnswer(question.getQuestionType() != QuestionType.DRAG_AND_DROP ? question.getCorrectAnswer() : question.getDragItem().getDragItemId().toString())
-                                            .correctAnswerForMatching(question.getCorrectAnswerForMatching())
-                                            .explanation(explanation) // only set if not JSON
-                                            .point(question.getPoint())
-                                            .startTime(startTime)     // parsed if JSON
-                                            .endTime(endTime)         // parsed if JSON
-                                            .build()
-                            );
                         }
+                    } catch (Exception ignored) {
+                        // explanation stays as-is
                     }
 
-                    questionGroupsList.add(
-                            ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.builder()
-                                    .questionGroupId(group.getGroupId())
-                                    .sectionOrder(group.getSectionOrder())
-                                    .sectionLabel(group.getSectionLabel())
-                                    .instruction(group.getInstruction())
-                                    .questions(questionAttemptResponses.stream().sorted(
-                                            Comparator.comparing(ExamAttemptGetDetail.ListeningExamResponse
-                                                    .ListeningTaskResponse.QuestionGroupAttemptResponse
-                                                    .QuestionAttemptResponse::questionOrder)).toList())
-                                    .dragItems(dragItemResponses)
+                    questionAttemptResponses.add(
+                            ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
+                                    .questionId(question.getQuestionId())
+                                    .questionOrder(question.getQuestionOrder())
+                                    .questionType(question.getQuestionType().ordinal())
+                                    .blankIndex(question.getBlankIndex())
+                                    .instructionForChoice(question.getInstructionForChoice())
+                                    .numberOfCorrectAnswers(question.getNumberOfCorrectAnswers())
+                                    .instructionForMatching(question.getInstructionForMatching())
+                                    .zoneIndex(question.getZoneIndex())
+                                    .choices(choiceAttemptResponses)
+                                    .correctAnswer(question.getQuestionType() != QuestionType.DRAG_AND_DROP ? question.getCorrectAnswer() : question.getDragItem().getDragItemId().toString())
+                                    .correctAnswerForMatching(question.getCorrectAnswerForMatching())
+                                    .explanation(explanation) // only set if not JSON
+                                    .point(question.getPoint())
+                                    .startTime(startTime)     // parsed if JSON
+                                    .endTime(endTime)         // parsed if JSON
                                     .build()
                     );
                 }
+
+                questionGroupsList.add(
+                        ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.QuestionGroupAttemptResponse.builder()
+                                .questionGroupId(group.getGroupId())
+                                .sectionOrder(group.getSectionOrder())
+                                .sectionLabel(group.getSectionLabel())
+                                .instruction(group.getInstruction())
+                                .questions(questionAttemptResponses.stream().sorted(
+                                        Comparator.comparing(ExamAttemptGetDetail.ListeningExamResponse
+                                                .ListeningTaskResponse.QuestionGroupAttemptResponse
+                                                .QuestionAttemptResponse::questionOrder)).toList())
+                                .dragItems(dragItemResponses)
+                                .build()
+                );
             }
 
             taskResponses.add(
@@ -997,28 +990,10 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
                 .build()).toList();
     }
 
-    private ListeningTaskGetResponse toListeningTaskGetResponse(ListeningTask listeningTask) {
-        UserProfileResponse createdByProfile;
-        UserProfileResponse updatedByProfile;
-        try {
-            createdByProfile = getUserProfileById(listeningTask.getCreatedBy());
-            updatedByProfile = getUserProfileById(listeningTask.getUpdatedBy());
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to fetch user profile", e);
-        }
-        var createdBy = UserInformationResponse.builder()
-                .userId(createdByProfile.id())
-                .lastName(createdByProfile.lastName())
-                .firstName(createdByProfile.firstName())
-                .email(createdByProfile.email())
-                .build();
-
-        var updatedBy = UserInformationResponse.builder()
-                .userId(updatedByProfile.id())
-                .lastName(updatedByProfile.lastName())
-                .firstName(updatedByProfile.firstName())
-                .email(updatedByProfile.email())
-                .build();
+    private ListeningTaskGetResponse toListeningTaskGetResponse(ListeningTask listeningTask,
+                                                                Map<String, UserInformationResponse> users) {
+        var createdBy = users.get(listeningTask.getCreatedBy());
+        var updatedBy = users.get(listeningTask.getUpdatedBy());
 
         return ListeningTaskGetResponse.builder()
                 .taskId(listeningTask.getTaskId())
@@ -1034,11 +1009,11 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
     }
 
     private UserProfileResponse getUserProfileById(String userId) throws JsonProcessingException {
-        String clientToken = getCachedClientToken();
         UserProfileResponse cachedProfile = getFromCache(userId);
         if (cachedProfile != null) {
             return cachedProfile;
         }
+        String clientToken = getCachedClientToken();
         UserProfileResponse profileResponse = keyCloakUserClient.getUserById(realm, "Bearer " + clientToken, userId);
 
         if (profileResponse == null) {
@@ -1050,23 +1025,7 @@ public class ListeningTaskServiceImpl implements ListeningTaskService {
     }
 
     private String getCachedClientToken() throws JsonProcessingException {
-        final String cacheKey = Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN;
-
-        String cachedToken = redisService.getValue(cacheKey, String.class);
-        if (cachedToken != null) {
-            return cachedToken;
-        }
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "client_credentials");
-        form.add("client_id", clientId);
-        form.add("client_secret", clientSecret);
-        form.add("scope", "openid");
-
-        KeyCloakTokenResponse tokenResponse = keyCloakTokenClient.requestToken(form, realm);
-        String newToken = tokenResponse.accessToken();
-        var expiresIn = tokenResponse.expiresIn();
-        redisService.saveValue(cacheKey, newToken, Duration.ofSeconds(expiresIn));
-        return newToken;
+        return helper.getCachedClientToken();
     }
 
     private UserProfileResponse getFromCache(String userId) throws JsonProcessingException {
@@ -2,6 +2,7 @@ package com.fptu.sep490.listeningservice.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.listeningservice.component.ListeningContentChangeListener;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.Choice;
@@ -44,6 +45,7 @@ public class QuestionServiceImpl implements QuestionService {
     QuestionGroupRepository questionGroupRepository;
     DragItemRepository dragItemRepository;
     Helper helper;
+    ListeningContentChangeListener listeningContentChangeListener;
 
     @Override
     @Transactional
@@ -637,6 +639,10 @@ public class QuestionServiceImpl implements QuestionService {
         for (Map.Entry<UUID, Integer> entry : orderUpdateMap.entrySet()) {
             questionRepository.updateOrderForAllVersions(entry.getKey(), entry.getValue(), userInformation.id());
         }
+        if (!orderUpdateMap.isEmpty()) {
+            // Update hàng loạt không gọi JPA listener: thứ tự câu hỏi bị sửa tại chỗ trên mọi phiên bản
+            listeningContentChangeListener.contentChanged(targetQuestion);
+        }
 
         // Reload the target question with categories eagerly fetched to avoid lazy loading exception
         Question refreshedTarget = questionRepository.findByIdWithCategories(targetQuestion.getQuestionId())
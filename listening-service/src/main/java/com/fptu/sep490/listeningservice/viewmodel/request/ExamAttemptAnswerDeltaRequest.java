@@ -0,0 +1,26 @@
+package com.fptu.sep490.listeningservice.viewmodel.request;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Autosave dạng delta: chỉ gửi các câu trả lời thay đổi kể từ lần autosave trước.
+ * Các trường null được giữ nguyên giá trị cũ.
+ */
+public record ExamAttemptAnswerDeltaRequest(
+        @JsonProperty("sequence") // số thứ tự tăng dần do client sinh cho mỗi lần gửi
+        Long sequence,
+        @JsonProperty(value ="task_id")
+        List<UUID> taskId,
+        @JsonProperty( value= "question_group_ids")
+        List<UUID> questionGroupIds,
+        @JsonProperty( value= "item_ids")
+        List<UUID> itemsIds,
+        @JsonProperty("answers") // chỉ các câu thay đổi; selected_answers null = xóa câu trả lời
+        List<ExamAttemptAnswersRequest.ExamAnswerRequest> answers,
+        @JsonProperty("duration")
+        Integer duration
+) {
+}
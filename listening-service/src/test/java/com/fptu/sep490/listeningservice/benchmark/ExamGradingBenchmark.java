@@ -0,0 +1,219 @@
+package com.fptu.sep490.listeningservice.benchmark;
+
+import com.fptu.sep490.listeningservice.component.ExamAnswerKeyCompiler;
+import com.fptu.sep490.listeningservice.component.ExamGradingEngine;
+import com.fptu.sep490.listeningservice.model.Choice;
+import com.fptu.sep490.listeningservice.model.DragItem;
+import com.fptu.sep490.listeningservice.model.Question;
+import com.fptu.sep490.listeningservice.model.QuestionGroup;
+import com.fptu.sep490.listeningservice.model.ListeningExam;
+import com.fptu.sep490.listeningservice.model.ListeningTask;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.ExamAnswerKey;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.repository.DragItemRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import com.fptu.sep490.listeningservice.repository.ListeningExamRepository;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * So sánh throughput chấm một bài thi 40 câu, mỗi truy vấn repository giả lập một round-trip DB
+ * ({@link #dbLatencyMicros} µs):
+ * <ul>
+ *     <li>{@code legacyPerSubmission}: đường cũ của submittedExam - tải câu hỏi, drag item, rồi 3 truy vấn
+ *     cho mỗi câu trắc nghiệm và lazy-load drag item cho mỗi câu kéo thả</li>
+ *     <li>{@code compileOnCacheMiss}: cache trống - {@link ExamAnswerKeyCompiler#compileForExam} rồi chấm</li>
+ *     <li>{@code precompiledKey}: chấm trên {@link ExamAnswerKey} đã cache</li>
+ * </ul>
+ * Chạy (trong listening-service): {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.fptu.sep490.listeningservice.benchmark.ExamGradingBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExamGradingBenchmark {
+    static final int QUESTIONS_PER_TYPE = 10;
+
+    @Param({"0", "200"})
+    long dbLatencyMicros;
+
+    QuestionRepository questionRepository;
+    ChoiceRepository choiceRepository;
+    DragItemRepository dragItemRepository;
+    ExamAnswerKeyCompiler compiler;
+    ExamGradingEngine engine;
+    ExamAnswerKey precompiledKey;
+    UUID examId;
+    List<Question> questions;
+    List<UUID> questionIds;
+    List<UUID> itemIds;
+    Map<UUID, List<String>> userAnswers;
+
+    @Setup
+    public void setUp() {
+        ListeningExamRepository listeningExamRepository = mock(ListeningExamRepository.class);
+        QuestionGroupRepository questionGroupRepository = mock(QuestionGroupRepository.class);
+        questionRepository = mock(QuestionRepository.class);
+        choiceRepository = mock(ChoiceRepository.class);
+        dragItemRepository = mock(DragItemRepository.class);
+        compiler = new ExamAnswerKeyCompiler(listeningExamRepository, questionGroupRepository,
+                questionRepository, choiceRepository, dragItemRepository);
+        engine = new ExamGradingEngine(compiler, questionRepository, choiceRepository);
+
+        examId = UUID.randomUUID();
+        QuestionGroup group = QuestionGroup.builder().groupId(UUID.randomUUID()).build();
+        questions = new ArrayList<>();
+        userAnswers = new HashMap<>();
+        List<Choice> choices = new ArrayList<>();
+        List<DragItem> dragItems = new ArrayList<>();
+        Map<UUID, List<Choice>> choicesByQuestion = new HashMap<>();
+        Map<UUID, String> labelByChoice = new HashMap<>();
+        int order = 1;
+        for (QuestionType type : QuestionType.values()) {
+            for (int i = 0; i < QUESTIONS_PER_TYPE; i++) {
+                Question q = Question.builder()
+                        .questionId(UUID.randomUUID())
+                        .questionType(type)
+                        .questionOrder(order++)
+                        .point(1)
+                        .isOriginal(true)
+                        .correctAnswer("answer " + i)
+                        .correctAnswerForMatching(i + "-A")
+                        .build();
+                questions.add(q);
+                switch (type) {
+                    case MULTIPLE_CHOICE -> {
+                        Choice correct = Choice.builder().choiceId(UUID.randomUUID()).label("A").isCorrect(true).question(q).build();
+                        Choice wrong = Choice.builder().choiceId(UUID.randomUUID()).label("B").question(q).build();
+                        choices.add(correct);
+                        choices.add(wrong);
+                        choicesByQuestion.put(q.getQuestionId(), List.of(correct, wrong));
+                        labelByChoice.put(correct.getChoiceId(), correct.getLabel());
+                        labelByChoice.put(wrong.getChoiceId(), wrong.getLabel());
+                        userAnswers.put(q.getQuestionId(), List.of((i % 2 == 0 ? correct : wrong).getChoiceId().toString()));
+                    }
+                    case FILL_IN_THE_BLANKS -> userAnswers.put(q.getQuestionId(), List.of("ANSWER " + i));
+                    case MATCHING -> userAnswers.put(q.getQuestionId(), List.of(i + "-a"));
+                    case DRAG_AND_DROP -> {
+                        DragItem item = DragItem.builder().dragItemId(UUID.randomUUID()).content("item " + i)
+                                .question(q).questionGroup(group).build();
+                        q.setDragItem(item);
+                        dragItems.add(item);
+                        userAnswers.put(q.getQuestionId(), List.of(item.getDragItemId().toString()));
+                    }
+                }
+            }
+        }
+        questionIds = questions.stream().map(Question::getQuestionId).toList();
+        itemIds = dragItems.stream().map(DragItem::getDragItemId).toList();
+
+        ListeningTask task = ListeningTask.builder().taskId(UUID.randomUUID()).build();
+        ListeningExam exam = mock(ListeningExam.class);
+        when(exam.getPart1()).thenReturn(task);
+        when(listeningExamRepository.findById(examId)).thenAnswer(inv -> dbRoundTrip(Optional.of(exam)));
+        when(questionGroupRepository.findAllByListeningTaskIds(any())).thenAnswer(inv -> dbRoundTrip(List.of(group)));
+        when(questionRepository.findCurrentVersionByGroupIds(any())).thenAnswer(inv -> dbRoundTrip(questions));
+        when(questionRepository.findQuestionsByIds(any())).thenAnswer(inv -> dbRoundTrip(questions));
+        when(choiceRepository.getOriginalChoicesByOriginalQuestions(any())).thenAnswer(inv -> dbRoundTrip(choices));
+        when(choiceRepository.findAllVersionsByOriginalChoiceIds(any())).thenAnswer(inv -> dbRoundTrip(choices));
+        when(dragItemRepository.findByQuestionIds(any())).thenAnswer(inv -> dbRoundTrip(dragItems));
+        when(dragItemRepository.findAllById(any())).thenAnswer(inv -> dbRoundTrip(dragItems));
+        when(choiceRepository.getOriginalChoiceByOriginalQuestion(any())).thenAnswer(inv ->
+                dbRoundTrip(choicesByQuestion.get(inv.<UUID>getArgument(0))));
+        when(choiceRepository.getCurrentCorrectChoice(any())).thenAnswer(inv -> dbRoundTrip(
+                choices.stream().filter(c -> c.isCorrect()
+                        && inv.<List<UUID>>getArgument(0).contains(c.getChoiceId())).toList()));
+        when(choiceRepository.getChoicesByIds(any())).thenAnswer(inv -> dbRoundTrip(
+                inv.<List<UUID>>getArgument(0).stream().map(labelByChoice::get).toList()));
+        precompiledKey = compiler.compile(examId, questions);
+    }
+
+    @Benchmark
+    public int legacyPerSubmission() {
+        List<Question> loaded = questionRepository.findQuestionsByIds(questionIds);
+        Set<UUID> groups = new HashSet<>();
+        dragItemRepository.findAllById(itemIds).forEach(item -> groups.add(item.getQuestionGroup().getGroupId()));
+        int points = 0;
+        for (Question question : loaded) {
+            List<String> selected = userAnswers.get(question.getQuestionId());
+            boolean correct = switch (question.getQuestionType()) {
+                case MULTIPLE_CHOICE -> legacyMultipleChoice(question, selected);
+                case FILL_IN_THE_BLANKS -> question.getCorrectAnswer().equalsIgnoreCase(selected.getFirst());
+                case MATCHING -> question.getCorrectAnswerForMatching().equalsIgnoreCase(selected.getFirst());
+                // question.getDragItem() là LAZY nên mỗi câu kéo thả tốn thêm một truy vấn
+                case DRAG_AND_DROP -> dbRoundTrip(question.getDragItem()).getDragItemId().toString().equals(selected.getFirst());
+            };
+            points += correct ? question.getPoint() : 0;
+        }
+        return points + groups.size();
+    }
+
+    @Benchmark
+    public ExamGradingEngine.ExamGradingResult compileOnCacheMiss() {
+        return engine.grade(compiler.compileForExam(examId), questionIds, userAnswers);
+    }
+
+    @Benchmark
+    public ExamGradingEngine.ExamGradingResult precompiledKey() {
+        return engine.grade(precompiledKey, questionIds, userAnswers);
+    }
+
+    // Giống checkMultipleChoiceQuestion trước đây: 3 truy vấn cho mỗi câu
+    private boolean legacyMultipleChoice(Question question, List<String> selected) {
+        List<UUID> selectedIds = selected.stream().map(UUID::fromString).toList();
+        List<String> selectedLabels = choiceRepository.getChoicesByIds(selectedIds);
+        List<Choice> originalChoices = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getQuestionId());
+        List<Choice> correctChoices = choiceRepository.getCurrentCorrectChoice(
+                originalChoices.stream().map(Choice::getChoiceId).toList());
+        List<String> correctLabels = correctChoices.stream()
+                .filter(c -> selectedIds.contains(c.getChoiceId()))
+                .map(Choice::getLabel)
+                .toList();
+        return selectedLabels.stream().filter(correctLabels::contains).count() == correctChoices.size();
+    }
+
+    private <T> T dbRoundTrip(T result) {
+        if (dbLatencyMicros > 0) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(dbLatencyMicros));
+        }
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ExamGradingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,120 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.Choice;
+import com.fptu.sep490.listeningservice.model.DragItem;
+import com.fptu.sep490.listeningservice.model.Question;
+import com.fptu.sep490.listeningservice.model.QuestionGroup;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.json.AttemptVersion;
+import com.fptu.sep490.listeningservice.model.json.QuestionVersion;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.repository.DragItemRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class AttemptVersionResolverTest {
+
+    @Mock
+    QuestionGroupRepository questionGroupRepository;
+    @Mock
+    QuestionRepository questionRepository;
+    @Mock
+    ChoiceRepository choiceRepository;
+    @Mock
+    DragItemRepository dragItemRepository;
+
+    AttemptVersionResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        resolver = new AttemptVersionResolver(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void resolve_fetchesEachEntityTypeOnce() {
+        Map<UUID, List<QuestionVersion>> groupMapping = new HashMap<>();
+        Map<UUID, List<UUID>> dragMapping = new HashMap<>();
+        List<QuestionGroup> groups = new ArrayList<>();
+        List<Question> questions = new ArrayList<>();
+        List<Choice> choices = new ArrayList<>();
+        List<DragItem> dragItems = new ArrayList<>();
+        for (int g = 0; g < 4; g++) {
+            QuestionGroup group = QuestionGroup.builder().groupId(UUID.randomUUID()).sectionOrder(g).build();
+            groups.add(group);
+            DragItem dragItem = DragItem.builder().dragItemId(UUID.randomUUID()).build();
+            dragItems.add(dragItem);
+            dragMapping.put(group.getGroupId(), List.of(dragItem.getDragItemId()));
+            List<QuestionVersion> versions = new ArrayList<>();
+            for (int q = 0; q < 10; q++) {
+                Question question = Question.builder().questionId(UUID.randomUUID()).questionOrder(q)
+                        .questionType(QuestionType.MULTIPLE_CHOICE).build();
+                questions.add(question);
+                Choice choice = Choice.builder().choiceId(UUID.randomUUID()).build();
+                choices.add(choice);
+                versions.add(QuestionVersion.builder().questionId(question.getQuestionId())
+                        .choiceMapping(List.of(choice.getChoiceId())).build());
+            }
+            groupMapping.put(group.getGroupId(), versions);
+        }
+        when(questionGroupRepository.findAllById(any())).thenReturn(groups);
+        when(questionRepository.findAllById(any())).thenReturn(questions);
+        when(choiceRepository.findAllById(any())).thenReturn(choices);
+        when(dragItemRepository.findAllById(any())).thenReturn(dragItems);
+
+        AttemptVersionResolver.ResolvedAttempt resolved = resolver.resolve(AttemptVersion.builder()
+                .groupMappingQuestion(groupMapping)
+                .groupMappingDragItem(dragMapping)
+                .build());
+
+        assertEquals(4, resolved.groupQuestions().size());
+        assertEquals(40, resolved.questionChoices().size());
+        resolved.groupDragItems().values().forEach(items -> assertEquals(1, items.size()));
+        verify(questionGroupRepository, times(1)).findAllById(any());
+        verify(questionRepository, times(1)).findAllById(any());
+        verify(choiceRepository, times(1)).findAllById(any());
+        verify(dragItemRepository, times(1)).findAllById(any());
+        verifyNoMoreInteractions(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void resolve_skipsMissingEntitiesAndChoicesOfNonMultipleChoice() {
+        UUID groupId = UUID.randomUUID();
+        UUID missingGroupId = UUID.randomUUID();
+        Question fill = Question.builder().questionId(UUID.randomUUID())
+                .questionType(QuestionType.FILL_IN_THE_BLANKS).build();
+        UUID missingQuestionId = UUID.randomUUID();
+        when(questionGroupRepository.findAllById(any())).thenReturn(List.of(QuestionGroup.builder().groupId(groupId).build()));
+        when(questionRepository.findAllById(any())).thenReturn(List.of(fill));
+
+        Map<UUID, List<QuestionVersion>> groupMapping = new HashMap<>();
+        groupMapping.put(groupId, List.of(
+                QuestionVersion.builder().questionId(fill.getQuestionId()).choiceMapping(List.of(UUID.randomUUID())).build(),
+                QuestionVersion.builder().questionId(missingQuestionId).build()));
+        groupMapping.put(missingGroupId, List.of());
+
+        AttemptVersionResolver.ResolvedAttempt resolved = resolver.resolve(AttemptVersion.builder()
+                .groupMappingQuestion(groupMapping)
+                .build());
+
+        assertEquals(1, resolved.groupQuestions().size());
+        assertEquals(List.of(fill), resolved.groupQuestions().values().iterator().next());
+        assertTrue(resolved.questionChoices().isEmpty());
+        assertEquals(List.of(), resolved.groupDragItems().get(groupId));
+        verifyNoInteractions(choiceRepository, dragItemRepository);
+    }
+}
@@ -0,0 +1,102 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChunkedUploadPipelineTest {
+
+    @Mock
+    Cloudinary cloudinary;
+    @Mock
+    Uploader uploader;
+
+    ChunkedUploadPipeline pipeline;
+    Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        MockitoAnnotations.openMocks(this);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(cloudinary.randomPublicId()).thenReturn("upload-1");
+        when(uploader.buildUploadParams(anyMap())).thenReturn(new HashMap<>());
+        pipeline = new ChunkedUploadPipeline(cloudinary, 4, 2, 1024);
+        file = pipeline.spool(new MockMultipartFile("f", "a.mp3", "audio/mpeg", "0123456789".getBytes()));
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        pipeline.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void upload_sendsChunksWithContentRangeAndReportsProgress() throws Exception {
+        Map<String, Object> last = Map.of("public_id", "pid");
+        when(uploader.callApi(eq("upload"), anyMap(), anyMap(), any()))
+                .thenReturn(Map.of("done", false), Map.of("done", false), last);
+        List<Long> progress = new ArrayList<>();
+
+        Map<?, ?> result = pipeline.upload(file, "a.mp3", Map.of("folder", "x"), (uploaded, total) -> progress.add(uploaded));
+
+        assertSame(last, result);
+        assertEquals(List.of(4L, 8L, 10L), progress);
+        ArgumentCaptor<Map> options = ArgumentCaptor.forClass(Map.class);
+        ArgumentCaptor<Object> chunks = ArgumentCaptor.forClass(Object.class);
+        verify(uploader, times(3)).callApi(eq("upload"), anyMap(), options.capture(), chunks.capture());
+        List<String> ranges = options.getAllValues().stream()
+                .map(o -> ((Map<String, Object>) o.get("extra_headers")))
+                .peek(h -> assertEquals("upload-1", h.get("X-Unique-Upload-Id")))
+                .map(h -> (String) h.get("Content-Range"))
+                .toList();
+        assertEquals(List.of("bytes 0-3/10", "bytes 4-7/10", "bytes 8-9/10"), ranges);
+        assertArrayEquals("89".getBytes(), (byte[]) chunks.getAllValues().get(2));
+    }
+
+    @Test
+    void upload_retriesOnlyFailedChunk() throws Exception {
+        when(uploader.callApi(eq("upload"), anyMap(), anyMap(), any()))
+                .thenReturn(Map.of("done", false))
+                .thenThrow(new IOException("reset"))
+                .thenReturn(Map.of("done", false), Map.of("public_id", "pid"));
+
+        Map<?, ?> result = pipeline.upload(file, "a.mp3", Map.of(), null);
+
+        assertEquals("pid", result.get("public_id"));
+        verify(uploader, times(4)).callApi(eq("upload"), anyMap(), anyMap(), any());
+    }
+
+    @Test
+    void submit_failsAfterMaxAttemptsAndDeletesSpooledFile() throws Exception {
+        pipeline = new ChunkedUploadPipeline(cloudinary, 4, 1, 1024);
+        when(uploader.callApi(eq("upload"), anyMap(), anyMap(), any())).thenThrow(new IOException("down"));
+
+        CompletionException ex = assertThrows(CompletionException.class,
+                () -> pipeline.submit(file, "a.mp3", Map.of(), null).join());
+
+        assertInstanceOf(ChunkedUploadPipeline.UploadException.class, ex.getCause());
+        assertFalse(Files.exists(file));
+    }
+}
@@ -0,0 +1,87 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.AnswerAttempt;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.AnswerKey;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.viewmodel.request.SavedAnswersRequest;
+import com.fptu.sep490.listeningservice.viewmodel.request.SavedAnswersRequestList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class GradingEngineTest {
+
+    @Mock
+    ChoiceRepository choiceRepository;
+
+    GradingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        engine = new GradingEngine(choiceRepository);
+    }
+
+    @Test
+    void grade_sumsPointsOfCorrectQuestions() {
+        UUID mcId = UUID.randomUUID();
+        UUID fillId = UUID.randomUUID();
+        UUID dragId = UUID.randomUUID();
+        UUID correctChoice = UUID.randomUUID();
+        UUID correctDragItemId = UUID.randomUUID();
+        Map<UUID, AnswerKey.QuestionKey> questions = new LinkedHashMap<>();
+        questions.put(mcId, AnswerKey.QuestionKey.builder().questionId(mcId)
+                .questionType(QuestionType.MULTIPLE_CHOICE).questionOrder(3).point(2)
+                .correctChoices(List.of(new AnswerKey.ChoiceKey(correctChoice, "A"))).build());
+        questions.put(fillId, AnswerKey.QuestionKey.builder().questionId(fillId)
+                .questionType(QuestionType.FILL_IN_THE_BLANKS).questionOrder(1).point(3).correctAnswer("Paris").build());
+        questions.put(dragId, AnswerKey.QuestionKey.builder().questionId(dragId)
+                .questionType(QuestionType.DRAG_AND_DROP).questionOrder(2).point(4)
+                .correctDragItemId(correctDragItemId).correctDragItemContent("river").build());
+        AnswerKey answerKey = new AnswerKey(questions, Map.of(correctChoice, "A"));
+
+        GradingEngine.GradingResult result = engine.grade(answerKey, UUID.randomUUID(), new SavedAnswersRequestList(List.of(
+                new SavedAnswersRequest(mcId, List.of(correctChoice), null, null, null),
+                new SavedAnswersRequest(fillId, null, "paris", null, null),
+                new SavedAnswersRequest(dragId, null, null, null, UUID.randomUUID())
+        ), 10L));
+
+        assertEquals(5, result.totalPoints());
+        assertEquals(List.of(1, 2, 3), result.resultSets().stream().map(r -> r.getQuestionIndex()).toList());
+        assertEquals(List.of("river"), result.resultSets().get(1).getCorrectAnswer());
+        verifyNoInteractions(choiceRepository);
+    }
+
+    @Test
+    void grade_keepsAnswersWithoutData() {
+        UUID mcId = UUID.randomUUID();
+        UUID matchId = UUID.randomUUID();
+        Map<UUID, AnswerKey.QuestionKey> questions = new LinkedHashMap<>();
+        questions.put(mcId, AnswerKey.QuestionKey.builder().questionId(mcId)
+                .questionType(QuestionType.MULTIPLE_CHOICE).questionOrder(1)
+                .correctChoices(List.of(new AnswerKey.ChoiceKey(UUID.randomUUID(), "A"))).build());
+        questions.put(matchId, AnswerKey.QuestionKey.builder().questionId(matchId)
+                .questionType(QuestionType.MATCHING).questionOrder(2).correctAnswer("1-B").build());
+        AnswerKey answerKey = new AnswerKey(questions, Map.of());
+
+        GradingEngine.GradingResult result = engine.grade(answerKey, UUID.randomUUID(), new SavedAnswersRequestList(List.of(
+                new SavedAnswersRequest(mcId, null, null, null, null),
+                new SavedAnswersRequest(matchId, null, null, null, null)
+        ), 10L));
+
+        assertEquals(2, result.answerAttempts().size());
+        assertTrue(result.answerAttempts().stream().noneMatch(AnswerAttempt::getIsCorrect));
+        assertEquals(List.of(), result.resultSets().get(1).getUserAnswer());
+        assertEquals(0, result.totalPoints());
+    }
+}
@@ -0,0 +1,138 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.ListeningTask;
+import com.fptu.sep490.listeningservice.model.Question;
+import com.fptu.sep490.listeningservice.model.QuestionGroup;
+import com.fptu.sep490.listeningservice.repository.ListeningExamRepository;
+import com.fptu.sep490.listeningservice.repository.ListeningTaskRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class ListeningContentChangeListenerTest {
+
+    @Mock ListeningTaskRepository listeningTaskRepository;
+    @Mock QuestionGroupRepository questionGroupRepository;
+    @Mock QuestionRepository questionRepository;
+    @Mock ListeningExamRepository listeningExamRepository;
+    @Mock ListeningTaskContentCache listeningTaskContentCache;
+    @Mock ExamAnswerKeyCache examAnswerKeyCache;
+    @Mock ExamPaperSnapshotCache examPaperSnapshotCache;
+    @Mock ExamAttemptReviewCache examAttemptReviewCache;
+    @Mock ObjectProvider<ListeningCacheInvalidator> invalidatorProvider;
+
+    ListeningContentChangeListener listener;
+    UUID taskId;
+    UUID groupId;
+    UUID examId;
+    QuestionGroup group;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(invalidatorProvider.getIfAvailable()).thenReturn(new ListeningCacheInvalidator(listeningTaskRepository,
+                questionGroupRepository, questionRepository, listeningExamRepository, listeningTaskContentCache,
+                examAnswerKeyCache, examPaperSnapshotCache, examAttemptReviewCache));
+        listener = new ListeningContentChangeListener(invalidatorProvider);
+
+        taskId = UUID.randomUUID();
+        groupId = UUID.randomUUID();
+        examId = UUID.randomUUID();
+        group = QuestionGroup.builder().groupId(groupId)
+                .listeningTask(ListeningTask.builder().taskId(taskId).build()).build();
+        when(questionGroupRepository.findOriginalTaskIdsByGroupIdIn(Set.of(groupId))).thenReturn(List.of(taskId));
+        when(listeningTaskRepository.findOriginalIdsByIdIn(Set.of(taskId))).thenReturn(List.of(taskId));
+        when(listeningTaskRepository.findLastestVersion(taskId))
+                .thenReturn(ListeningTask.builder().taskId(taskId).version(3).build());
+        when(listeningExamRepository.findIdsByOriginalTaskIdIn(Set.of(taskId))).thenReturn(List.of(examId));
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void newQuestionVersion_evictsTaskAndExams_keepsReviews() {
+        Question original = question(false);
+        Question newVersion = question(true);
+
+        listener.onContentCreated(newVersion);
+        listener.onContentUpdated(original);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(questionGroupRepository).findOriginalTaskIdsByGroupIdIn(Set.of(groupId));
+        verify(listeningTaskContentCache).evict(taskId, 3);
+        verify(examAnswerKeyCache).evict(examId);
+        verify(examPaperSnapshotCache).evict(examId);
+        verifyNoInteractions(examAttemptReviewCache);
+    }
+
+    @Test
+    void inPlaceEdit_invalidatesReviewsOfAffectedExams() {
+        listener.onContentUpdated(question(true));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(examAnswerKeyCache).evict(examId);
+        verify(examAttemptReviewCache).invalidateExams(List.of(examId));
+    }
+
+    @Test
+    void removedGroup_invalidatesReviewsOfItsTask() {
+        listener.onContentRemoved(group);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(listeningTaskRepository).findOriginalIdsByIdIn(Set.of(taskId));
+        verify(examAttemptReviewCache).invalidateExams(List.of(examId));
+    }
+
+    @Test
+    void rollback_evictsNothing() {
+        listener.onContentUpdated(question(true));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verifyNoInteractions(questionGroupRepository, listeningTaskContentCache, examAnswerKeyCache,
+                examPaperSnapshotCache, examAttemptReviewCache);
+    }
+
+    @Test
+    void withoutTransaction_evictsImmediately() {
+        TransactionSynchronizationManager.clearSynchronization();
+
+        listener.contentChanged(question(true));
+
+        verify(listeningTaskContentCache).evict(taskId, 3);
+        verify(examAttemptReviewCache).invalidateExams(List.of(examId));
+        verify(questionRepository, never()).findOriginalTaskIdsByQuestionIdIn(anyCollection());
+        verify(listeningExamRepository).findIdsByOriginalTaskIdIn(any());
+    }
+
+    private Question question(boolean isCurrent) {
+        return Question.builder().questionId(UUID.randomUUID()).questionGroup(group).isCurrent(isCurrent).build();
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
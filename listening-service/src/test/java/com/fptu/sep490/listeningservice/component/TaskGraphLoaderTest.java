@@ -0,0 +1,146 @@
+package com.fptu.sep490.listeningservice.component;
+
+import com.fptu.sep490.listeningservice.model.Choice;
+import com.fptu.sep490.listeningservice.model.DragItem;
+import com.fptu.sep490.listeningservice.model.Question;
+import com.fptu.sep490.listeningservice.model.QuestionGroup;
+import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.graph.TaskGraph;
+import com.fptu.sep490.listeningservice.repository.ChoiceRepository;
+import com.fptu.sep490.listeningservice.repository.DragItemRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.listeningservice.repository.QuestionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class TaskGraphLoaderTest {
+
+    @Mock
+    QuestionGroupRepository questionGroupRepository;
+    @Mock
+    QuestionRepository questionRepository;
+    @Mock
+    ChoiceRepository choiceRepository;
+    @Mock
+    DragItemRepository dragItemRepository;
+
+    TaskGraphLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        loader = new TaskGraphLoader(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void loadCurrentVersion_queryCountIsConstantAsQuestionCountGrows() {
+        UUID taskId = UUID.randomUUID();
+
+        stubTask(taskId, 1, 1);
+        loader.loadCurrentVersion(taskId);
+        int smallTaskQueries = repositoryInvocations();
+
+        clearInvocations(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+        stubTask(taskId, 4, 10);
+        TaskGraph graph = loader.loadCurrentVersion(taskId);
+        int largeTaskQueries = repositoryInvocations();
+
+        assertEquals(4, graph.groups().size());
+        assertEquals(40, graph.groups().stream().mapToInt(g -> g.questions().size()).sum());
+        assertEquals(smallTaskQueries, largeTaskQueries);
+        assertEquals(6, largeTaskQueries);
+    }
+
+    @Test
+    void loadCurrentVersion_usesLatestGroupAndCurrentQuestionVersion() {
+        UUID taskId = UUID.randomUUID();
+        QuestionGroup original = QuestionGroup.builder().groupId(UUID.randomUUID()).sectionOrder(1).sectionLabel("old").build();
+        QuestionGroup latest = QuestionGroup.builder().groupId(UUID.randomUUID()).parent(original).sectionOrder(1).sectionLabel("new").build();
+        Question originalQuestion = Question.builder().questionId(UUID.randomUUID()).questionGroup(original)
+                .questionOrder(1).questionType(QuestionType.MULTIPLE_CHOICE).build();
+        Question currentQuestion = Question.builder().questionId(UUID.randomUUID()).questionGroup(original).parent(originalQuestion)
+                .questionOrder(1).questionType(QuestionType.MULTIPLE_CHOICE).build();
+        Choice second = Choice.builder().choiceId(UUID.randomUUID()).label("B").choiceOrder(2).question(originalQuestion).build();
+        Choice originalFirst = Choice.builder().choiceId(UUID.randomUUID()).label("A").choiceOrder(1).question(originalQuestion).build();
+        // Choice listening được version hóa qua parent choice
+        Choice first = Choice.builder().choiceId(UUID.randomUUID()).label("A").choiceOrder(1).question(currentQuestion)
+                .parent(originalFirst).isCorrect(true).build();
+        DragItem originalItem = DragItem.builder().dragItemId(UUID.randomUUID()).questionGroup(original).build();
+        DragItem currentItem = DragItem.builder().dragItemId(UUID.randomUUID()).content("item").questionGroup(latest).parent(originalItem).build();
+
+        when(questionGroupRepository.findOriginalVersionByTaskId(taskId)).thenReturn(List.of(original));
+        when(questionGroupRepository.findLatestVersionsByOriginalIds(any())).thenReturn(List.of(latest));
+        when(dragItemRepository.findCurrentVersionByGroupIds(any())).thenReturn(List.of(currentItem));
+        when(questionRepository.findOriginalVersionByGroupIds(any())).thenReturn(List.of(originalQuestion));
+        when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(List.of(currentQuestion));
+        when(choiceRepository.findCurrentVersionByQuestionIds(any())).thenReturn(List.of(second, first));
+
+        TaskGraph graph = loader.loadCurrentVersion(taskId);
+
+        TaskGraph.GroupNode group = graph.groups().get(0);
+        assertEquals(original.getGroupId(), group.originalGroupId());
+        assertEquals(latest.getGroupId(), group.groupId());
+        assertEquals("new", group.sectionLabel());
+        assertEquals(List.of(currentItem.getDragItemId()), group.dragItems().stream().map(TaskGraph.DragItemNode::dragItemId).toList());
+        TaskGraph.QuestionNode question = group.questions().get(0);
+        assertEquals(currentQuestion.getQuestionId(), question.questionId());
+        assertEquals(originalQuestion.getQuestionId(), question.originalQuestionId());
+        assertEquals(List.of("A", "B"), question.choices().stream().map(TaskGraph.ChoiceNode::label).toList());
+        assertTrue(question.choices().get(0).isCorrect());
+    }
+
+    @Test
+    void loadCurrentVersion_noGroups_returnsEmptyGraphWithoutFurtherQueries() {
+        UUID taskId = UUID.randomUUID();
+        when(questionGroupRepository.findOriginalVersionByTaskId(taskId)).thenReturn(List.of());
+
+        TaskGraph graph = loader.loadCurrentVersion(taskId);
+
+        assertTrue(graph.groups().isEmpty());
+        verifyNoInteractions(questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    private void stubTask(UUID taskId, int groupCount, int questionsPerGroup) {
+        List<QuestionGroup> groups = new ArrayList<>();
+        List<Question> questions = new ArrayList<>();
+        List<Choice> choices = new ArrayList<>();
+        List<DragItem> dragItems = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            QuestionGroup group = QuestionGroup.builder().groupId(UUID.randomUUID()).sectionOrder(g).build();
+            groups.add(group);
+            dragItems.add(DragItem.builder().dragItemId(UUID.randomUUID()).questionGroup(group).build());
+            for (int q = 0; q < questionsPerGroup; q++) {
+                Question question = Question.builder().questionId(UUID.randomUUID()).questionGroup(group)
+                        .questionOrder(q).questionType(QuestionType.MULTIPLE_CHOICE).build();
+                questions.add(question);
+                for (int c = 0; c < 4; c++) {
+                    choices.add(Choice.builder().choiceId(UUID.randomUUID()).choiceOrder(c).question(question).build());
+                }
+            }
+        }
+        when(questionGroupRepository.findOriginalVersionByTaskId(taskId)).thenReturn(groups);
+        when(questionGroupRepository.findLatestVersionsByOriginalIds(any())).thenReturn(groups);
+        when(dragItemRepository.findCurrentVersionByGroupIds(any())).thenReturn(dragItems);
+        when(questionRepository.findOriginalVersionByGroupIds(any())).thenReturn(questions);
+        when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(questions);
+        when(choiceRepository.findCurrentVersionByQuestionIds(any())).thenReturn(choices);
+    }
+
+    private int repositoryInvocations() {
+        return mockingDetails(questionGroupRepository).getInvocations().size()
+                + mockingDetails(questionRepository).getInvocations().size()
+                + mockingDetails(choiceRepository).getInvocations().size()
+                + mockingDetails(dragItemRepository).getInvocations().size();
+    }
+}
@@ -1,13 +1,16 @@
 package com.fptu.sep490.listeningservice.helper;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.commonlibrary.keycloak.ServiceTokenManager;
+import com.fptu.sep490.commonlibrary.keycloak.UserProfileBatchLoader;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 import com.fptu.sep490.listeningservice.constants.Constants;
-import com.fptu.sep490.listeningservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.listeningservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.listeningservice.viewmodel.response.UserProfileResponse;
+import feign.FeignException;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
@@ -15,9 +18,12 @@ import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
 import org.springframework.test.util.ReflectionTestUtils;
-import org.springframework.util.LinkedMultiValueMap;
 
 import java.time.Duration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -27,16 +33,17 @@ public class HelperTest {
 
 	@InjectMocks
 	Helper helper;
-	@Mock KeyCloakTokenClient keyCloakTokenClient;
 	@Mock KeyCloakUserClient keyCloakUserClient;
 	@Mock RedisService redisService;
+	@Mock ServiceTokenManager serviceTokenManager;
 
 	@BeforeEach
 	void setUp() {
 		MockitoAnnotations.openMocks(this);
 		ReflectionTestUtils.setField(helper, "realm", "realm");
-		ReflectionTestUtils.setField(helper, "clientId", "client");
-		ReflectionTestUtils.setField(helper, "clientSecret", "secret");
+		ReflectionTestUtils.setField(helper, "userProfileBatchLoader", new UserProfileBatchLoader(redisService, 4));
+		when(serviceTokenManager.withToken(any())).thenAnswer(inv ->
+				inv.<Function<String, Object>>getArgument(0).apply(serviceTokenManager.getToken()));
 	}
 
 	@Test
@@ -44,12 +51,11 @@ public class HelperTest {
 		String userId = "u1";
 		UserProfileResponse cached = UserProfileResponse.builder().id(userId).firstName("A").lastName("B").email("e@x.com").build();
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(cached);
-		// ensure token retrieval uses cached token and does not call token client
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
 
 		UserProfileResponse res = helper.getUserProfileById(userId);
 
 		assertEquals(cached, res);
+		verify(serviceTokenManager, never()).getToken();
 		verify(keyCloakUserClient, never()).getUserById(anyString(), anyString(), anyString());
 	}
 
@@ -59,7 +65,7 @@ public class HelperTest {
 		// no cached profile
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(null);
 		// cached client token available
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		UserProfileResponse fetched = UserProfileResponse.builder().id(userId).firstName("C").lastName("D").email("cd@x.com").build();
 		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer ctoken"), eq(userId))).thenReturn(fetched);
 
@@ -70,34 +76,116 @@ public class HelperTest {
 	}
 
 	@Test
-	void getUserProfileById_noCachedToken_requestsToken_thenFetches() throws JsonProcessingException {
-		String userId = "u3";
-		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(null);
-		// token not cached, request new
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn(null);
-		when(keyCloakTokenClient.requestToken(any(LinkedMultiValueMap.class), eq("realm")))
-				.thenReturn(KeyCloakTokenResponse.builder().accessToken("newtoken").expiresIn(3600).build());
-		UserProfileResponse fetched = UserProfileResponse.builder().id(userId).email("u3@x.com").build();
-		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer newtoken"), eq(userId))).thenReturn(fetched);
+	void getUserProfileById_rejectedServiceToken_retriesOnceWithNewToken() throws JsonProcessingException {
+		String userId = "u5";
+		Iterator<String> tokens = List.of("revoked", "fresh").iterator();
+		ServiceTokenManager tokenManager = new ServiceTokenManager("client-token",
+				() -> KeyCloakTokenResponse.builder().accessToken(tokens.next()).expiresIn(300).build(),
+				redisService, new ObjectMapper());
+		ReflectionTestUtils.setField(helper, "serviceTokenManager", tokenManager);
+		UserProfileResponse fetched = UserProfileResponse.builder().id(userId).firstName("E").lastName("F").email("ef@x.com").build();
+		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer revoked"), eq(userId)))
+				.thenThrow(mock(FeignException.Unauthorized.class));
+		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer fresh"), eq(userId))).thenReturn(fetched);
+
+		try (tokenManager) {
+			assertEquals(fetched, helper.getUserProfileById(userId));
+			assertEquals("fresh", tokenManager.getToken());
+		}
+		verify(redisService).delete("client-token");
+		verify(keyCloakUserClient, times(2)).getUserById(eq("realm"), anyString(), eq(userId));
+	}
 
-		UserProfileResponse res = helper.getUserProfileById(userId);
+	@Test
+	void getCachedClientToken_usesServiceTokenManager() throws JsonProcessingException {
+		when(serviceTokenManager.getToken()).thenReturn("newtoken");
 
-		assertEquals(fetched, res);
-		verify(redisService).saveValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq("newtoken"), any(Duration.class));
-		verify(redisService).saveValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(fetched), any(Duration.class));
+		assertEquals("newtoken", helper.getCachedClientToken());
+		verifyNoInteractions(redisService);
 	}
 
 	@Test
 	void getUserProfileById_nullFromKeycloak_throwsUnauthorized() throws JsonProcessingException {
 		String userId = "u4";
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(null);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer ctoken"), eq(userId))).thenReturn(null);
 
 		AppException ex = assertThrows(AppException.class, () -> helper.getUserProfileById(userId));
 		assertEquals(Constants.ErrorCode.UNAUTHORIZED, ex.getBusinessErrorCode());
 		assertEquals(HttpStatus.UNAUTHORIZED.value(), ex.getHttpStatusCode());
 	}
-}
 
+	@Test
+	void getUserProfiles_dedupsIds_readsCacheOnce_fetchesOnlyMisses() throws JsonProcessingException {
+		UserProfileResponse cached = UserProfileResponse.builder().id("u1").email("u1@x.com").build();
+		UserProfileResponse fetched = UserProfileResponse.builder().id("u2").email("u2@x.com").build();
+		when(redisService.multiGet(anyCollection(), eq(UserProfileResponse.class)))
+				.thenReturn(Map.of(Constants.RedisKey.USER_PROFILE + "u1", cached));
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
+		when(keyCloakUserClient.getUserById("realm", "Bearer ctoken", "u2")).thenReturn(fetched);
+		when(keyCloakUserClient.getUserById("realm", "Bearer ctoken", "u3")).thenReturn(null);
+
+		Map<String, UserProfileResponse> res = helper.getUserProfiles(List.of("u2", "u1", "u2", "u3", ""));
+
+		assertEquals(List.of("u2", "u1"), List.copyOf(res.keySet()));
+		assertEquals(fetched, res.get("u2"));
+		assertEquals(cached, res.get("u1"));
+		verify(redisService).multiGet(eq(List.of(Constants.RedisKey.USER_PROFILE + "u2",
+				Constants.RedisKey.USER_PROFILE + "u1", Constants.RedisKey.USER_PROFILE + "u3")), eq(UserProfileResponse.class));
+		verify(keyCloakUserClient, times(1)).getUserById("realm", "Bearer ctoken", "u2");
+		verify(keyCloakUserClient, never()).getUserById(anyString(), anyString(), eq("u1"));
+		verify(redisService).multiSave(eq(Map.of(Constants.RedisKey.USER_PROFILE + "u2", fetched)), any(Duration.class));
+	}
+
+	@Test
+	void getUserProfiles_deletedUser_skipsOnlyThatId() throws JsonProcessingException {
+		UserProfileResponse fetched = UserProfileResponse.builder().id("u2").email("u2@x.com").build();
+		when(redisService.multiGet(anyCollection(), eq(UserProfileResponse.class))).thenReturn(Map.of());
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
+		when(keyCloakUserClient.getUserById("realm", "Bearer ctoken", "u2")).thenReturn(fetched);
+		when(keyCloakUserClient.getUserById("realm", "Bearer ctoken", "gone"))
+				.thenThrow(mock(FeignException.NotFound.class));
+
+		Map<String, UserProfileResponse> res = helper.getUserProfiles(List.of("u2", "gone"));
+
+		assertEquals(Map.of("u2", fetched), res);
+		verify(redisService).multiSave(eq(Map.of(Constants.RedisKey.USER_PROFILE + "u2", fetched)), any(Duration.class));
+	}
 
+	@Test
+	void getUserProfiles_keycloakError_propagates() throws JsonProcessingException {
+		when(redisService.multiGet(anyCollection(), eq(UserProfileResponse.class))).thenReturn(Map.of());
+		when(serviceTokenManager.getToken()).thenReturn("ctoken");
+		when(keyCloakUserClient.getUserById("realm", "Bearer ctoken", "u2"))
+				.thenThrow(mock(FeignException.InternalServerError.class));
+
+		assertThrows(FeignException.InternalServerError.class, () -> helper.getUserProfiles(List.of("u1", "u2")));
+		verify(redisService, never()).multiSave(anyMap(), any(Duration.class));
+	}
+
+	@Test
+	void getUserProfiles_allCached_skipsKeycloak() throws JsonProcessingException {
+		UserProfileResponse cached = UserProfileResponse.builder().id("u1").build();
+		when(redisService.multiGet(anyCollection(), eq(UserProfileResponse.class)))
+				.thenReturn(Map.of(Constants.RedisKey.USER_PROFILE + "u1", cached));
+
+		Map<String, UserProfileResponse> res = helper.getUserProfiles(List.of("u1"));
+
+		assertEquals(Map.of("u1", cached), res);
+		verifyNoInteractions(serviceTokenManager, keyCloakUserClient);
+		verify(redisService, never()).multiSave(anyMap(), any());
+	}
+
+	@Test
+	void getUserInformationResponses_mapsProfiles() throws JsonProcessingException {
+		UserProfileResponse cached = UserProfileResponse.builder().id("u1").firstName("A").lastName("B").email("e@x.com").build();
+		when(redisService.multiGet(anyCollection(), eq(UserProfileResponse.class)))
+				.thenReturn(Map.of(Constants.RedisKey.USER_PROFILE + "u1", cached));
+
+		var res = helper.getUserInformationResponses(List.of("u1"));
+
+		assertEquals("u1", res.get("u1").userId());
+		assertEquals("e@x.com", res.get("u1").email());
+	}
+}
@@ -3,6 +3,12 @@ package com.fptu.sep490.listeningservice.service.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.fptu.sep490.listeningservice.component.AnswerKeyLoader;
+import com.fptu.sep490.listeningservice.component.AttemptVersionResolver;
+import com.fptu.sep490.listeningservice.component.GradingBatchWriter;
+import com.fptu.sep490.listeningservice.component.GradingEngine;
+import com.fptu.sep490.listeningservice.component.ListeningTaskContentCache;
+import com.fptu.sep490.listeningservice.component.TaskGraphLoader;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.Attempt;
@@ -26,6 +32,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -50,6 +57,9 @@ public class AttemptServiceImplTest {
 	@Mock KeyCloakUserClient keyCloakUserClient;
 	@Mock RedisService redisService;
 	@Mock Helper helper;
+	@Mock ListeningTaskContentCache listeningTaskContentCache;
+	@Mock GradingBatchWriter gradingBatchWriter;
+	@Mock UserProgressDailyRepository userProgressDailyRepository;
 
 	@Mock HttpServletRequest request;
 
@@ -59,6 +69,14 @@ public class AttemptServiceImplTest {
 		ReflectionTestUtils.setField(attemptService, "realm", "realm");
 		ReflectionTestUtils.setField(attemptService, "clientId", "client");
 		ReflectionTestUtils.setField(attemptService, "clientSecret", "secret");
+		ReflectionTestUtils.setField(attemptService, "attemptVersionResolver",
+				new AttemptVersionResolver(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository));
+		ReflectionTestUtils.setField(attemptService, "answerKeyLoader",
+				new AnswerKeyLoader(questionRepository, choiceRepository, dragItemRepository));
+		ReflectionTestUtils.setField(attemptService, "gradingEngine", new GradingEngine(choiceRepository));
+		ReflectionTestUtils.setField(attemptService, "gradingBatchWriter", gradingBatchWriter);
+		// Mặc định attempt chưa bị khóa
+		when(redisService.getHashFields(anyString(), anyList())).thenReturn(Arrays.asList(null, null, null));
 	}
 
 	@Test
@@ -116,14 +134,15 @@ public class AttemptServiceImplTest {
 		when(latestGroup.getSectionOrder()).thenReturn(2);
 		when(latestGroup.getSectionLabel()).thenReturn("Section B");
 		when(latestGroup.getInstruction()).thenReturn("Listen carefully");
-		when(questionGroupRepository.findLatestVersionByOriginalId(groupId)).thenReturn(latestGroup);
+		when(questionGroupRepository.findLatestVersionsByOriginalIds(List.of(groupId))).thenReturn(List.of(latestGroup));
 
 		// Drag items
 		UUID dragId = UUID.randomUUID();
 		var dragItem = mock(com.fptu.sep490.listeningservice.model.DragItem.class);
 		when(dragItem.getDragItemId()).thenReturn(dragId);
 		when(dragItem.getContent()).thenReturn("Drag Content");
-		when(dragItemRepository.findCurrentVersionByGroupId(groupId)).thenReturn(List.of(dragItem));
+		when(dragItem.getQuestionGroup()).thenReturn(originalGroup);
+		when(dragItemRepository.findCurrentVersionByGroupIds(List.of(groupId))).thenReturn(List.of(dragItem));
 
 		// Questions: one original, one non-original
 		UUID qOrigId = UUID.randomUUID();
@@ -131,6 +150,7 @@ public class AttemptServiceImplTest {
 		var qOrig = mock(com.fptu.sep490.listeningservice.model.Question.class);
 		when(qOrig.getQuestionId()).thenReturn(qOrigId);
 		when(qOrig.getIsOriginal()).thenReturn(true);
+		when(qOrig.getQuestionGroup()).thenReturn(originalGroup);
 		when(qOrig.getQuestionOrder()).thenReturn(1);
 		when(qOrig.getQuestionType()).thenReturn(com.fptu.sep490.listeningservice.model.enumeration.QuestionType.MULTIPLE_CHOICE);
 		when(qOrig.getNumberOfCorrectAnswers()).thenReturn(1);
@@ -140,8 +160,8 @@ public class AttemptServiceImplTest {
 		when(qOrig.getZoneIndex()).thenReturn(0);
 
 		var qParent = mock(com.fptu.sep490.listeningservice.model.Question.class);
-		// Ensure parent id equals child id so the mapping key matches retrieval key
-		when(qParent.getQuestionId()).thenReturn(qChildId);
+		when(qParent.getQuestionId()).thenReturn(UUID.randomUUID());
+		when(qParent.getQuestionGroup()).thenReturn(originalGroup);
 		var qChild = mock(com.fptu.sep490.listeningservice.model.Question.class);
 		when(qChild.getQuestionId()).thenReturn(qChildId);
 		when(qChild.getIsOriginal()).thenReturn(false);
@@ -154,23 +174,31 @@ public class AttemptServiceImplTest {
 		when(qChild.getInstructionForMatching()).thenReturn("Match 2");
 		when(qChild.getZoneIndex()).thenReturn(1);
 
-		when(questionRepository.findOriginalVersionByGroupId(groupId)).thenReturn(List.of(qOrigId, qChildId));
-		when(questionRepository.findAllCurrentVersion(List.of(qOrigId, qChildId))).thenReturn(List.of(qOrig, qChild));
+		when(questionRepository.findOriginalVersionByGroupIds(List.of(groupId))).thenReturn(List.of(qOrig, qParent));
+		when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(List.of(qOrig, qChild));
 
 		// Choices for questions
-		UUID choice1 = UUID.randomUUID();
-		UUID choice2 = UUID.randomUUID();
 		var c1 = mock(com.fptu.sep490.listeningservice.model.Choice.class);
-		when(c1.getChoiceId()).thenReturn(choice1);
+		when(c1.getChoiceId()).thenReturn(UUID.randomUUID());
 		when(c1.getLabel()).thenReturn("A");
 		when(c1.getContent()).thenReturn("Alpha");
+		when(c1.getChoiceOrder()).thenReturn(1);
+		when(c1.getQuestion()).thenReturn(qOrig);
 		var c2 = mock(com.fptu.sep490.listeningservice.model.Choice.class);
-		when(c2.getChoiceId()).thenReturn(choice2);
+		when(c2.getChoiceId()).thenReturn(UUID.randomUUID());
 		when(c2.getLabel()).thenReturn("B");
 		when(c2.getContent()).thenReturn("Beta");
-		when(choiceRepository.findCurrentVersionByQuestionId(qOrigId)).thenReturn(List.of(c1, c2));
-		when(choiceRepository.findCurrentVersionByQuestionId(qOrigId)).thenReturn(List.of(c1, c2));
-		when(choiceRepository.findCurrentVersionByQuestionId(qParent.getQuestionId())).thenReturn(List.of(c1));
+		when(c2.getChoiceOrder()).thenReturn(2);
+		when(c2.getQuestion()).thenReturn(qOrig);
+		var c3 = mock(com.fptu.sep490.listeningservice.model.Choice.class);
+		when(c3.getChoiceId()).thenReturn(UUID.randomUUID());
+		when(c3.getLabel()).thenReturn("A");
+		when(c3.getQuestion()).thenReturn(qParent);
+		when(choiceRepository.findCurrentVersionByQuestionIds(anyCollection())).thenReturn(List.of(c2, c1, c3));
+
+		TaskGraphLoader loader = new TaskGraphLoader(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+		when(listeningTaskContentCache.getCurrentVersion(eq(taskId), any()))
+				.thenAnswer(inv -> loader.loadCurrentVersion(inv.getArgument(0)));
 
 		// objectMapper serialization for attemptVersion
 		when(objectMapper.writeValueAsString(any())).thenReturn("version-json");
@@ -201,6 +229,10 @@ public class AttemptServiceImplTest {
 		// questions sorted by questionOrder
 		assertEquals(1, groupResp.questions().get(0).questionOrder());
 		assertEquals(2, groupResp.questions().get(1).questionOrder());
+		// choices sorted by choiceOrder
+		assertEquals(List.of("A", "B"), groupResp.questions().get(0).choices().stream()
+				.map(c -> c.label()).toList());
+		assertEquals(1, groupResp.questions().get(1).choices().size());
 	}
 
 	@Test
@@ -347,6 +379,37 @@ public class AttemptServiceImplTest {
 		assertEquals(Constants.ErrorCode.ATTEMPT_NOT_DRAFT, ex.getBusinessErrorCode());
 	}
 
+	@Test
+	void loadAttempt_liveLockHeldByAnotherUser_throwsAttemptInUse() {
+		UUID attemptId = draftAttemptOf("u1");
+		lockAttempt(attemptId, "u2", "session-2", System.currentTimeMillis());
+		AppException ex = assertThrows(AppException.class, () -> attemptService.loadAttempt(attemptId.toString(), request));
+		assertEquals(Constants.ErrorCode.ATTEMPT_IN_USE, ex.getBusinessErrorCode());
+	}
+
+	@Test
+	void loadAttempt_liveLockHeldByAnotherSessionOfSameUser_throwsSessionActive() {
+		UUID attemptId = draftAttemptOf("u1");
+		lockAttempt(attemptId, "u1", "session-2", System.currentTimeMillis() - 30_000);
+		AppException ex = assertThrows(AppException.class, () -> attemptService.loadAttempt(attemptId.toString(), request));
+		assertEquals(Constants.ErrorCode.ATTEMPT_SESSION_ACTIVE, ex.getBusinessErrorCode());
+	}
+
+	private UUID draftAttemptOf(String userId) {
+		UUID attemptId = UUID.randomUUID();
+		Attempt attempt = mock(Attempt.class);
+		when(attemptRepository.findById(attemptId)).thenReturn(Optional.of(attempt));
+		when(helper.getUserIdFromToken(request)).thenReturn(userId);
+		when(attempt.getCreatedBy()).thenReturn(userId);
+		when(attempt.getStatus()).thenReturn(Status.DRAFT);
+		return attemptId;
+	}
+
+	private void lockAttempt(UUID attemptId, String userId, String sessionId, long lastPing) {
+		when(redisService.getHashFields(eq("attempt_lock:" + attemptId), anyList()))
+				.thenReturn(List.of(userId, sessionId, String.valueOf(lastPing)));
+	}
+
 	@Test
 	void loadAttempt_success_buildsResponse() throws Exception {
 		// Arrange
@@ -404,7 +467,7 @@ public class AttemptServiceImplTest {
 		when(group.getSectionOrder()).thenReturn(1);
 		when(group.getSectionLabel()).thenReturn("Sec");
 		when(group.getInstruction()).thenReturn("GInstr");
-		when(questionGroupRepository.findById(groupId)).thenReturn(Optional.of(group));
+		when(questionGroupRepository.findAllById(any())).thenReturn(java.util.List.of(group));
 
 		var q1 = mock(com.fptu.sep490.listeningservice.model.Question.class);
 		when(q1.getQuestionId()).thenReturn(qMC);
@@ -414,7 +477,6 @@ public class AttemptServiceImplTest {
 		when(q1.getNumberOfCorrectAnswers()).thenReturn(1);
 		when(q1.getInstructionForMatching()).thenReturn("IM");
 		when(q1.getZoneIndex()).thenReturn(0);
-		when(questionRepository.findById(qMC)).thenReturn(Optional.of(q1));
 
 		var q2 = mock(com.fptu.sep490.listeningservice.model.Question.class);
 		when(q2.getQuestionId()).thenReturn(qOther);
@@ -424,7 +486,8 @@ public class AttemptServiceImplTest {
 		when(q2.getNumberOfCorrectAnswers()).thenReturn(1);
 		when(q2.getInstructionForMatching()).thenReturn("IM");
 		when(q2.getZoneIndex()).thenReturn(0);
-		when(questionRepository.findById(qOther)).thenReturn(Optional.of(q2));
+
+		when(questionRepository.findAllById(any())).thenReturn(java.util.List.of(q1, q2));
 
 		// Choices for MC
 		UUID ch1 = UUID.randomUUID();
@@ -433,13 +496,13 @@ public class AttemptServiceImplTest {
 		when(choice.getLabel()).thenReturn("A");
 		when(choice.getChoiceOrder()).thenReturn(1);
 		when(choice.getContent()).thenReturn("Alpha");
-		when(choiceRepository.findAllById(anyList())).thenReturn(java.util.List.of(choice));
+		when(choiceRepository.findAllById(any())).thenReturn(java.util.List.of(choice));
 
 		// Drag items
 		var di = mock(com.fptu.sep490.listeningservice.model.DragItem.class);
 		when(di.getDragItemId()).thenReturn(dragId);
 		when(di.getContent()).thenReturn("Drag");
-		when(dragItemRepository.findAllById(java.util.List.of(dragId))).thenReturn(java.util.List.of(di));
+		when(dragItemRepository.findAllById(any())).thenReturn(java.util.List.of(di));
 
 		// Existing answers
 		var aa = mock(com.fptu.sep490.listeningservice.model.AnswerAttempt.class);
@@ -500,6 +563,7 @@ public class AttemptServiceImplTest {
 		when(attempt.getStatus()).thenReturn(Status.DRAFT);
 		when(attempt.getAttemptId()).thenReturn(attemptId);
 		when(attempt.getVersion()).thenReturn("ver-json");
+		when(attempt.getCreatedAt()).thenReturn(java.time.LocalDateTime.of(2025, 7, 1, 9, 30));
 
 		// AttemptVersion with 2 questions
 		UUID groupId = UUID.randomUUID();
@@ -539,12 +603,13 @@ public class AttemptServiceImplTest {
 		UUID correctChoiceId = UUID.randomUUID();
 		var origChoice = mock(com.fptu.sep490.listeningservice.model.Choice.class);
 		when(origChoice.getChoiceId()).thenReturn(correctChoiceId);
-		when(choiceRepository.getOriginalChoiceByOriginalQuestion(qMC)).thenReturn(java.util.List.of(origChoice));
+		when(origChoice.getQuestion()).thenReturn(mc);
+		when(choiceRepository.getOriginalChoicesByOriginalQuestions(any())).thenReturn(java.util.List.of(origChoice));
 		var correctChoice = mock(com.fptu.sep490.listeningservice.model.Choice.class);
 		when(correctChoice.getChoiceId()).thenReturn(correctChoiceId);
 		when(correctChoice.getLabel()).thenReturn("A");
 		when(choiceRepository.getCurrentCorrectChoice(anyList())).thenReturn(java.util.List.of(correctChoice));
-		when(choiceRepository.getChoicesByIds(anyList())).thenReturn(java.util.List.of("A"));
+		when(choiceRepository.findAllById(any())).thenReturn(java.util.List.of(correctChoice));
 
 		// Saved answers
 		var ansMC = mock(com.fptu.sep490.listeningservice.viewmodel.request.SavedAnswersRequest.class);
@@ -558,8 +623,6 @@ public class AttemptServiceImplTest {
 		when(answers.answers()).thenReturn(answerList);
 		when(answers.duration()).thenReturn(77L);
 
-		when(answerAttemptRepository.findAnswerAttemptByAttemptId(any())).thenReturn(java.util.Optional.empty());
-		when(answerAttemptRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 		when(attemptRepository.save(any(Attempt.class))).thenAnswer(inv -> inv.getArgument(0));
 
 		// Act
@@ -573,6 +636,12 @@ public class AttemptServiceImplTest {
 		// sorted by questionIndex
 		assertEquals(1, result.getResultSets().get(0).getQuestionIndex());
 		assertEquals(2, result.getResultSets().get(1).getQuestionIndex());
+		verify(attempt).setTotalPoints(5);
+		verify(userProgressDailyRepository).increment("u1", java.time.LocalDate.of(2025, 7, 1), 0, 0, 1,
+				java.time.LocalDateTime.of(2025, 7, 1, 9, 30));
+		verify(questionRepository, times(1)).findQuestionsByIds(anyList());
+		verify(gradingBatchWriter).upsertAnswerAttempts(argThat(list -> list.size() == 2));
+		verify(answerAttemptRepository, never()).save(any());
 	}
 
 	@Test
@@ -586,6 +655,7 @@ public class AttemptServiceImplTest {
 		when(attempt.getStatus()).thenReturn(Status.DRAFT);
 		when(attempt.getAttemptId()).thenReturn(attemptId);
 		when(attempt.getVersion()).thenReturn("ver-json-2");
+		when(attempt.getCreatedAt()).thenReturn(java.time.LocalDateTime.of(2025, 7, 1, 9, 30));
 
 		// AttemptVersion with 2 questions: MATCHING and DRAG_AND_DROP
 		UUID groupId = UUID.randomUUID();
@@ -620,8 +690,9 @@ public class AttemptServiceImplTest {
 		UUID correctDragId = UUID.randomUUID();
 		when(drag.getDragItemId()).thenReturn(correctDragId);
 		when(drag.getContent()).thenReturn("dragContent");
-		when(qd.getDragItem()).thenReturn(drag);
+		when(drag.getQuestion()).thenReturn(qd);
 		when(qd.getPoint()).thenReturn(3);
+		when(dragItemRepository.findByQuestionIds(any())).thenReturn(java.util.List.of(drag));
 
 		when(questionRepository.findQuestionsByIds(anyList())).thenReturn(java.util.List.of(qm, qd));
 
@@ -638,9 +709,6 @@ public class AttemptServiceImplTest {
 		when(answers.answers()).thenReturn(java.util.List.of(ansMT, ansDD));
 		when(answers.duration()).thenReturn(55L);
 
-		// Existing AnswerAttempt present
-		when(answerAttemptRepository.findAnswerAttemptByAttemptId(any())).thenReturn(java.util.Optional.of(mock(com.fptu.sep490.listeningservice.model.AnswerAttempt.class)));
-		when(answerAttemptRepository.save(any())).thenAnswer(inv -> inv.getArgument(0));
 		when(attemptRepository.save(any(Attempt.class))).thenAnswer(inv -> inv.getArgument(0));
 
 		// Act
@@ -652,6 +720,10 @@ public class AttemptServiceImplTest {
 		assertEquals(2, result.getResultSets().size());
 		assertFalse(result.getResultSets().get(0).isCorrect());
 		assertFalse(result.getResultSets().get(1).isCorrect());
+		assertEquals(java.util.List.of("dragContent"), result.getResultSets().get(1).getCorrectAnswer());
+		// Bản ghi đã tồn tại được ghi đè bằng upsert trong batch
+		verify(gradingBatchWriter).upsertAnswerAttempts(argThat(list -> list.size() == 2
+				&& list.stream().noneMatch(com.fptu.sep490.listeningservice.model.AnswerAttempt::getIsCorrect)));
 	}
 
 	@Test
@@ -769,7 +841,7 @@ public class AttemptServiceImplTest {
 		when(group.getSectionOrder()).thenReturn(1);
 		when(group.getSectionLabel()).thenReturn("Sec");
 		when(group.getInstruction()).thenReturn("GInstr");
-		when(questionGroupRepository.findById(groupId)).thenReturn(Optional.of(group));
+		when(questionGroupRepository.findAllById(any())).thenReturn(java.util.List.of(group));
 
 		// Questions
 		var mc = mock(com.fptu.sep490.listeningservice.model.Question.class);
@@ -804,9 +876,8 @@ public class AttemptServiceImplTest {
 		when(drag.getContent()).thenReturn("DragC");
 		when(dd.getDragItem()).thenReturn(drag);
 
-		when(questionRepository.findById(qMC)).thenReturn(Optional.of(mc));
-		when(questionRepository.findById(qMT)).thenReturn(Optional.of(mt));
-		when(questionRepository.findById(qDD)).thenReturn(Optional.of(dd));
+
+		when(questionRepository.findAllById(any())).thenReturn(java.util.List.of(mc, mt, dd));
 
 		// Choices for MC including isCorrect
 		var cA = mock(com.fptu.sep490.listeningservice.model.Choice.class);
@@ -821,10 +892,10 @@ public class AttemptServiceImplTest {
 		when(cB.getChoiceOrder()).thenReturn(2);
 		when(cB.getContent()).thenReturn("Beta");
 		when(cB.isCorrect()).thenReturn(false);
-		when(choiceRepository.findAllById(anyList())).thenReturn(java.util.List.of(cA, cB));
+		when(choiceRepository.findAllById(any())).thenReturn(java.util.List.of(cA, cB));
 
 		// Drag item lookup
-		when(dragItemRepository.findAllById(java.util.List.of(dragId))).thenReturn(java.util.List.of(drag));
+		when(dragItemRepository.findAllById(any())).thenReturn(java.util.List.of(drag));
 
 		// Existing answers
 		var aa1 = mock(com.fptu.sep490.listeningservice.model.AnswerAttempt.class);
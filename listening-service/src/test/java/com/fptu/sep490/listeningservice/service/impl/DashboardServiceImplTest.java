@@ -29,7 +29,8 @@ public class DashboardServiceImplTest {
 	@Mock ListeningExamRepository listeningExamRepository;
 	@Mock AttemptRepository attemptRepository;
 	@Mock ExamAttemptRepository examAttemptRepository;
-	@Mock ReportDataRepository reportDataRepository;
+	@Mock QuestionTypeDailyStatsRepository questionTypeDailyStatsRepository;
+	@Mock UserExamScoreRepository userExamScoreRepository;
 	@Mock Helper helper;
 	@Mock HttpServletRequest request;
 
@@ -49,10 +50,10 @@ public class DashboardServiceImplTest {
 		List<UserInBranch> highest = List.of(mock(UserInBranch.class));
 		List<ReportQuestionTypeStats> correct = List.of(mock(ReportQuestionTypeStats.class));
 		List<ReportQuestionTypeStatsWrong> wrong = List.of(mock(ReportQuestionTypeStatsWrong.class));
-		when(examAttemptRepository.getNumberOfUsersInBranchAvg()).thenReturn(avg);
-		when(examAttemptRepository.getNumberOfUsersInBranchHighest()).thenReturn(highest);
-		when(reportDataRepository.countCorrectByQuestionType(null, null)).thenReturn(correct);
-		when(reportDataRepository.countWrongByQuestionType(null, null)).thenReturn(wrong);
+		when(userExamScoreRepository.getNumberOfUsersInBranchAvg()).thenReturn(avg);
+		when(userExamScoreRepository.getNumberOfUsersInBranchHighest()).thenReturn(highest);
+		when(questionTypeDailyStatsRepository.countCorrectByQuestionType(null, null)).thenReturn(correct);
+		when(questionTypeDailyStatsRepository.countWrongByQuestionType(null, null)).thenReturn(wrong);
 
 		// Act
 		DataStats res = dashboardService.getDataStats();
@@ -66,6 +67,7 @@ public class DashboardServiceImplTest {
 		assertSame(highest, res.userInBranchHighest());
 		assertSame(correct, res.questionTypeStats());
 		assertSame(wrong, res.questionTypeStatsWrong());
+		verifyNoInteractions(helper);
 	}
 
 	@Test
@@ -73,12 +75,12 @@ public class DashboardServiceImplTest {
 		LocalDate from = LocalDate.of(2025, 1, 1);
 		LocalDate to = LocalDate.of(2025, 1, 31);
 		List<ReportQuestionTypeStats> expected = List.of(mock(ReportQuestionTypeStats.class));
-		when(reportDataRepository.countCorrectByQuestionType(from, to)).thenReturn(expected);
+		when(questionTypeDailyStatsRepository.countCorrectByQuestionType(from, to)).thenReturn(expected);
 
 		List<ReportQuestionTypeStats> actual = dashboardService.getQuestionTypeStats(from, to, request);
 
 		assertSame(expected, actual);
-		verify(reportDataRepository).countCorrectByQuestionType(eq(from), eq(to));
+		verify(questionTypeDailyStatsRepository).countCorrectByQuestionType(eq(from), eq(to));
 	}
 
 	@Test
@@ -86,11 +88,11 @@ public class DashboardServiceImplTest {
 		LocalDate from = LocalDate.of(2025, 2, 1);
 		LocalDate to = LocalDate.of(2025, 2, 28);
 		List<ReportQuestionTypeStatsWrong> expected = List.of(mock(ReportQuestionTypeStatsWrong.class));
-		when(reportDataRepository.countWrongByQuestionType(from, to)).thenReturn(expected);
+		when(questionTypeDailyStatsRepository.countWrongByQuestionType(from, to)).thenReturn(expected);
 
 		List<ReportQuestionTypeStatsWrong> actual = dashboardService.getQuestionTypeStatsWrong(from, to, request);
 
 		assertSame(expected, actual);
-		verify(reportDataRepository).countWrongByQuestionType(eq(from), eq(to));
+		verify(questionTypeDailyStatsRepository).countWrongByQuestionType(eq(from), eq(to));
 	}
 }
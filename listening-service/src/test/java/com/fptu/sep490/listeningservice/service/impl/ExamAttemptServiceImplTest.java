@@ -3,13 +3,23 @@ package com.fptu.sep490.listeningservice.service.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.listeningservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.listeningservice.component.ExamAnswerKeyCompiler;
+import com.fptu.sep490.listeningservice.component.ExamAutosaveBuffer;
+import com.fptu.sep490.listeningservice.component.ExamGradingEngine;
+import com.fptu.sep490.listeningservice.component.ExamPaperSnapshotCache;
+import com.fptu.sep490.listeningservice.component.ExamAttemptReviewCache;
+import com.fptu.sep490.listeningservice.component.GradingBatchWriter;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.*;
+import com.fptu.sep490.listeningservice.model.embedded.UserProgressDailyId;
 import com.fptu.sep490.listeningservice.model.enumeration.QuestionType;
+import com.fptu.sep490.listeningservice.model.grading.ExamAnswerKey;
 import com.fptu.sep490.listeningservice.model.json.ExamAttemptHistory;
 import com.fptu.sep490.listeningservice.repository.*;
 import com.fptu.sep490.listeningservice.service.ListeningTaskService;
+import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswerDeltaRequest;
 import com.fptu.sep490.listeningservice.viewmodel.request.ExamAttemptAnswersRequest;
 import com.fptu.sep490.listeningservice.viewmodel.response.CreateExamAttemptResponse;
 import com.fptu.sep490.listeningservice.viewmodel.response.ExamAttemptGetDetail;
@@ -24,12 +34,17 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.assertj.core.api.Assertions.*;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -49,6 +64,14 @@ public class ExamAttemptServiceImplTest {
     @Mock private DragItemRepository dragItemRepository;
     @Mock private AttemptRepository attemptRepository;
     @Mock private ListeningTaskRepository listeningTaskRepository;
+    @Mock private GradingBatchWriter gradingBatchWriter;
+    @Mock private QuestionGroupRepository questionGroupRepository;
+    @Mock private ExamAnswerKeyCache examAnswerKeyCache;
+    @Mock private ExamAutosaveBuffer examAutosaveBuffer;
+    @Mock private UserProgressDailyRepository userProgressDailyRepository;
+    @Mock private UserExamScoreRepository userExamScoreRepository;
+    @Mock private ExamPaperSnapshotCache examPaperSnapshotCache;
+    @Mock private ExamAttemptReviewCache examAttemptReviewCache;
 
     @Mock private Helper helper;
     @Mock private ListeningTaskService listeningTaskService;
@@ -117,14 +140,34 @@ public class ExamAttemptServiceImplTest {
                 .build();
     }
 
+    private ExamAnswerKeyCompiler compiler;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        compiler = new ExamAnswerKeyCompiler(listeningExamRepository, questionGroupRepository, questionRepository,
+                choiceRepository, dragItemRepository);
+        ReflectionTestUtils.setField(service, "examGradingEngine",
+                new ExamGradingEngine(compiler, questionRepository, choiceRepository));
 
         // Common stubs
         lenient().when(helper.getUserIdFromToken(httpRequest)).thenReturn(USER_ID);
         lenient().when(helper.getUserInformationResponse(anyString()))
                 .thenAnswer(inv -> makeUser(inv.getArgument(0)));
+        lenient().when(helper.getUserInformationResponses(anyCollection()))
+                .thenAnswer(inv -> {
+                    Map<String, UserInformationResponse> users = new LinkedHashMap<>();
+                    for (String id : inv.<Collection<String>>getArgument(0)) {
+                        users.put(id, makeUser(id));
+                    }
+                    return users;
+                });
+
+        // Snapshot đề: render trực tiếp như khi cache chưa có
+        lenient().when(examPaperSnapshotCache.get(any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<CreateExamAttemptResponse.ListeningExamResponse>>getArgument(1).get());
+        lenient().when(examAttemptReviewCache.get(any(), any(), any()))
+                .thenAnswer(inv -> inv.<Supplier<ExamAttemptGetDetail.ListeningExamResponse>>getArgument(2).get());
 
         // saveAndFlush attempt: gán id + timestamps
         lenient().when(examAttemptRepository.saveAndFlush(any(ExamAttempt.class)))
@@ -204,6 +247,28 @@ public class ExamAttemptServiceImplTest {
 //                .writeValueAsString(out));
     }
 
+    @Test
+    void createExamAttempt_snapshotCached_shouldNotRenderTasks() {
+        var p1 = task(TASK1_ID, 1);
+        var p2 = task(TASK2_ID, 2);
+        var p3 = task(TASK3_ID, 3);
+        var p4 = task(TASK4_ID, 4);
+        ListeningExam original = exam(ORIG_EXAM_ID, "IELTS Listening A", "desc", URL_SLUG, p1, p2, p3, p4);
+        when(listeningExamRepository.findByUrlSlugAndIsOriginalTrueAndIsDeletedFalse(URL_SLUG))
+                .thenReturn(Optional.of(original));
+        when(listeningExamRepository.findCurrentChildByParentId(ORIG_EXAM_ID)).thenReturn(Optional.empty());
+        CreateExamAttemptResponse.ListeningExamResponse snapshot = CreateExamAttemptResponse.ListeningExamResponse.builder()
+                .listeningExamId(ORIG_EXAM_ID)
+                .build();
+        doReturn(snapshot).when(examPaperSnapshotCache).get(eq(ORIG_EXAM_ID), any());
+
+        CreateExamAttemptResponse out = service.createExamAttempt(URL_SLUG, httpRequest);
+
+        assertThat(out.examAttemptId()).isEqualTo(ATTEMPT_ID);
+        assertThat(out.listeningExam()).isSameAs(snapshot);
+        verifyNoInteractions(listeningTaskService);
+    }
+
     // ========== getExamAttemptById ==========
 
     @Test
@@ -331,6 +396,30 @@ public class ExamAttemptServiceImplTest {
 //                .writeValueAsString(out));
     }
 
+    @Test
+    void getExamAttemptById_finished_shouldServeReviewFromCache() throws Exception {
+        ExamAttempt att = new ExamAttempt();
+        att.setExamAttemptId(ATTEMPT_ID);
+        att.setCreatedBy(USER_ID);
+        att.setUpdatedBy(USER_ID);
+        att.setCreatedAt(LocalDateTime.now().minusDays(1));
+        att.setUpdatedAt(LocalDateTime.now());
+        att.setDuration(123);
+        att.setTotalPoint(40);
+        att.setIsFinished(true);
+        att.setListeningExam(exam(CURR_EXAM_ID, "Exam", "Desc", URL_SLUG, null, null, null, null));
+        att.setHistory(objectMapper.writeValueAsString(ExamAttemptHistory.builder().userAnswers(Map.of()).build()));
+        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(att));
+        var review = ExamAttemptGetDetail.ListeningExamResponse.builder().urlSlug(URL_SLUG).build();
+        doReturn(review).when(examAttemptReviewCache).get(eq(ATTEMPT_ID), eq(CURR_EXAM_ID), any());
+
+        ExamAttemptGetDetail out = service.getExamAttemptById(ATTEMPT_ID.toString(), httpRequest);
+
+        assertThat(out.readingExam()).isSameAs(review);
+        assertThat(out.duration()).isEqualTo(123L);
+        verifyNoInteractions(listeningTaskService);
+    }
+
     // ========== getListExamHistory ==========
 
     @Test
@@ -390,7 +479,7 @@ public class ExamAttemptServiceImplTest {
     @Test
     void submittedExam_attemptNotFound_shouldThrow() {
         String attemptId = "9a7b6c5d-1e23-4a5b-8c9d-0e1f2a3b4c5d";
-        when(examAttemptRepository.findById(UUID.fromString(attemptId)))
+        when(examAttemptRepository.findByIdForUpdate(UUID.fromString(attemptId)))
                 .thenReturn(Optional.empty());
 
         var req = new ExamAttemptAnswersRequest(
@@ -422,9 +511,10 @@ public class ExamAttemptServiceImplTest {
         attempt.setExamAttemptId(ATTEMPT_ID);
         attempt.setCreatedAt(LocalDateTime.now().minusHours(1));
         attempt.setUpdatedAt(LocalDateTime.now().minusMinutes(30));
-        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(attempt));
+        attempt.setListeningExam(exam(CURR_EXAM_ID, "Exam", "Desc", URL_SLUG, null, null, null, null));
+        when(examAttemptRepository.findByIdForUpdate(ATTEMPT_ID)).thenReturn(Optional.of(attempt));
 
-        // ---- 4 câu hỏi: MCQ (2 điểm), FILL (1 điểm), MATCH (3 điểm), DRAG (1 điểm nhưng code KHÔNG cộng) ----
+        // ---- 4 câu hỏi: MCQ (2 điểm), FILL (1 điểm), MATCH (3 điểm), DRAG (1 điểm) ----
         UUID Q1 = UUID.fromString("11111111-1111-4111-8111-aaaaaaaaaaaa");
         UUID Q2 = UUID.fromString("22222222-2222-4222-8222-bbbbbbbbbbbb");
         UUID Q3 = UUID.fromString("33333333-3333-4333-8333-cccccccccccc");
@@ -465,43 +555,36 @@ public class ExamAttemptServiceImplTest {
         Question drag = new Question();
         drag.setQuestionId(Q4);
         drag.setQuestionType(QuestionType.DRAG_AND_DROP);
-        drag.setPoint(1); // code không cộng điểm cho DRAG
+        drag.setPoint(1);
         drag.setQuestionOrder(4);
         drag.setExplanation("drag exp");
         drag.setDragItem(di);
-
-        // Repo trả về danh sách câu hỏi đúng thứ tự questionIds
-        when(questionRepository.findQuestionsByIds(anyList()))
-                .thenAnswer(inv -> {
-                    @SuppressWarnings("unchecked")
-                    List<UUID> ids = (List<UUID>) inv.getArgument(0);
-                    Map<UUID, Question> map = Map.of(
-                            Q1, mcq, Q2, fill, Q3, match, Q4, drag
-                    );
-                    return ids.stream().map(map::get).toList();
-                });
+        di.setQuestion(drag);
+        when(dragItemRepository.findByQuestionIds(any())).thenReturn(List.of(di));
 
         // ---- MCQ: user chọn 2 đáp án đúng (C1, C2) ----
         UUID C1 = UUID.fromString("aaaaaaaa-aaaa-4aaa-8aaa-111111111111");
         UUID C2 = UUID.fromString("bbbbbbbb-bbbb-4bbb-8bbb-222222222222");
 
-        // userAnswers -> labels (A, B)
-        when(choiceRepository.getChoicesByIds(eq(List.of(C1, C2))))
-                .thenReturn(List.of("A", "B"));
-
         // correctAnswers: từ original question (vì isOriginal=true)
         Choice corr1 = new Choice();
         corr1.setChoiceId(C1);
         corr1.setLabel("A");
+        corr1.setCorrect(true);
+        corr1.setQuestion(mcq);
         Choice corr2 = new Choice();
         corr2.setChoiceId(C2);
         corr2.setLabel("B");
+        corr2.setCorrect(true);
+        corr2.setQuestion(mcq);
 
-        // originalChoice ids -> current correct choice subset
-        when(choiceRepository.getOriginalChoiceByOriginalQuestion(Q1))
+        // originalChoice ids -> mọi phiên bản choice, key đáp án được biên dịch một lần cho đề
+        when(choiceRepository.getOriginalChoicesByOriginalQuestions(any()))
                 .thenReturn(List.of(corr1, corr2));
-        when(choiceRepository.getCurrentCorrectChoice(eq(List.of(C1, C2))))
+        when(choiceRepository.findAllVersionsByOriginalChoiceIds(any()))
                 .thenReturn(List.of(corr1, corr2));
+        ExamAnswerKey answerKey = compiler.compile(CURR_EXAM_ID, List.of(mcq, fill, match, drag));
+        when(examAnswerKeyCache.get(CURR_EXAM_ID)).thenReturn(answerKey);
 
         // ---- Request ----
         var req = new ExamAttemptAnswersRequest(
@@ -519,7 +602,7 @@ public class ExamAttemptServiceImplTest {
                                 Q3, List.of("1-A,2-B"), List.of() // MATCH đúng
                         ),
                         new ExamAttemptAnswersRequest.ExamAnswerRequest(
-                                Q4, List.of(DRAG_ID.toString()), List.of() // DRAG đúng (code không cộng điểm)
+                                Q4, List.of(DRAG_ID.toString()), List.of() // DRAG đúng
                         )
                 ),
                 300 // duration
@@ -533,8 +616,8 @@ public class ExamAttemptServiceImplTest {
         verify(examAttemptRepository).save(saveCap.capture());
         ExamAttempt saved = saveCap.getValue();
         assertThat(saved.getDuration()).isEqualTo(300);
-        // Điểm = MCQ(2) + FILL(1) + MATCH(3) = 6 ; DRAG không cộng
-        assertThat(saved.getTotalPoint()).isEqualTo(6);
+        // Điểm = MCQ(2) + FILL(1) + MATCH(3) + DRAG(1) = 7
+        assertThat(saved.getTotalPoint()).isEqualTo(7);
 
         // Kết quả trả về
         assertThat(out.getDuration()).isEqualTo(300L);
@@ -569,14 +652,15 @@ public class ExamAttemptServiceImplTest {
         e2.setCreatedAt(LocalDateTime.now().minusDays(2));
         e2.setTotalPoint(40);
 
-        when(examAttemptRepository.findAllByUserId(USER_ID))
-                .thenReturn(List.of(e1, e2));
         when(listeningExamRepository.numberOfActiveExams()).thenReturn(9);
 
         // Tasks (1 cái mới nhất → lastLearningDate lấy từ đây)
         Attempt t1 = new Attempt();
         t1.setCreatedAt(LocalDateTime.now().minusDays(1));
-        when(attemptRepository.findAllByUserId(USER_ID)).thenReturn(List.of(t1));
+        when(userProgressDailyRepository.findAllByUserId(USER_ID)).thenReturn(List.of(
+                progressDay(e1.getCreatedAt().toLocalDate(), 1, 30, 0, e1.getCreatedAt()),
+                progressDay(e2.getCreatedAt().toLocalDate(), 1, 40, 0, e2.getCreatedAt()),
+                progressDay(t1.getCreatedAt().toLocalDate(), 0, 0, 1, t1.getCreatedAt())));
         when(listeningTaskRepository.numberOfPublishedTasks()).thenReturn(20);
 
         var body = com.fptu.sep490.commonlibrary.viewmodel.request.OverviewProgressReq.builder()
@@ -592,7 +676,8 @@ public class ExamAttemptServiceImplTest {
 
         assertThat(out.getNumberOfExamsInTimeFrame()).isEqualTo(2);
         assertThat(out.getNumberOfTasksInTimeFrame()).isEqualTo(1);
-        assertThat(out.getAverageBandInTimeFrame()).isEqualTo(35.0);
+        // Trung bình 35/40 câu đúng -> band 8.0
+        assertThat(out.getAverageBandInTimeFrame()).isEqualTo(8.0);
 
         assertThat(out.getLastLearningDate()).isNotNull();
         assertThat(out.getLastLearningDate()).isAfter(e2.getCreatedAt()); // lấy từ task mới nhất
@@ -607,7 +692,7 @@ public class ExamAttemptServiceImplTest {
     void getBandChart_empty_shouldReturnEmptyList() {
         String token = "Bearer token";
         when(helper.getUserIdFromToken(token)).thenReturn(USER_ID);
-        when(examAttemptRepository.findByUserAndDateRange(eq(USER_ID), any(), any()))
+        when(userProgressDailyRepository.findExamDaysInRange(eq(USER_ID), any(), any()))
                 .thenReturn(List.of());
 
         var body = com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq.builder()
@@ -631,8 +716,8 @@ public class ExamAttemptServiceImplTest {
         e2.setCreatedAt(LocalDateTime.now().minusHours(2));
         e2.setTotalPoint(40);
 
-        when(examAttemptRepository.findByUserAndDateRange(eq(USER_ID), any(), any()))
-                .thenReturn(List.of(e1, e2));
+        when(userProgressDailyRepository.findExamDaysInRange(eq(USER_ID), any(), any()))
+                .thenReturn(List.of(progressDay(e1.getCreatedAt().toLocalDate(), 2, 60, 0, e2.getCreatedAt())));
 
         var body = com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq.builder()
                 .timeFrame("1w")
@@ -648,4 +733,262 @@ public class ExamAttemptServiceImplTest {
 //        // DEBUG JSON
 //        System.out.println(out.getFirst().getDate() + " -> " + out.getFirst().getValue());
     }
+
+    @Test
+    void getBandChart_daysInSamePeriod_shouldWeightByExamCount() {
+        String token = "Bearer token";
+        when(helper.getUserIdFromToken(token)).thenReturn(USER_ID);
+
+        // 3 bài ngày đầu (tổng 60) + 1 bài ngày sau (40) cùng tuần -> (60 + 40) / 4
+        LocalDate monday = LocalDate.of(2025, 6, 2);
+        when(userProgressDailyRepository.findExamDaysInRange(USER_ID, monday, monday.plusDays(6)))
+                .thenReturn(List.of(
+                        progressDay(monday, 3, 60, 0, monday.atTime(9, 0)),
+                        progressDay(monday.plusDays(2), 1, 40, 2, monday.plusDays(2).atTime(9, 0))));
+
+        var body = com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq.builder()
+                .timeFrame("1w")
+                .startDate(monday)
+                .endDate(monday.plusDays(6))
+                .build();
+
+        var out = service.getBandChart(body, token);
+
+        assertThat(out).hasSize(1);
+        assertThat(out.getFirst().getValue()).isEqualTo(25.0);
+    }
+
+// ====================== getBandScore ======================
+
+    @Test
+    void getBandScore_shouldAverageOverAllRollupDays() {
+        String token = "Bearer token";
+        when(helper.getUserIdFromToken(token)).thenReturn(USER_ID);
+        when(userProgressDailyRepository.findAllByUserId(USER_ID)).thenReturn(List.of(
+                progressDay(LocalDate.of(2025, 6, 1), 1, 30, 0, null),
+                progressDay(LocalDate.of(2025, 6, 5), 1, 32, 3, null),
+                progressDay(LocalDate.of(2025, 6, 9), 0, 0, 1, null)));
+
+        var out = service.getBandScore(httpRequest, token);
+
+        // trung bình 31 câu đúng
+        assertThat(out.bandScore()).isEqualTo(
+                com.fptu.sep490.commonlibrary.utils.IeltsBandConverter.convertScoreToBand(62, 2,
+                        com.fptu.sep490.commonlibrary.enumeration.IeltsScale.LISTENING));
+        verify(examAttemptRepository, never()).findAllByUserId(any());
+    }
+
+// ====================== submittedExam progress rollup ======================
+
+    @Test
+    void submittedExam_firstSubmit_shouldAddExamToRollup() throws Exception {
+        ExamAttempt attempt = unscoredAttempt(null, null);
+        when(examAttemptRepository.findByIdForUpdate(ATTEMPT_ID)).thenReturn(Optional.of(attempt));
+
+        service.submittedExam(ATTEMPT_ID.toString(), emptyAnswers(), httpRequest);
+
+        verify(userProgressDailyRepository).increment(USER_ID, attempt.getCreatedAt().toLocalDate(), 1, 0L, 0,
+                attempt.getCreatedAt());
+        verify(userExamScoreRepository).record(eq(USER_ID), eq(1), eq(0L), eq(0), any(LocalDateTime.class));
+    }
+
+    @Test
+    void submittedExam_resubmit_shouldOnlyApplyPointDifference() throws Exception {
+        ExamAttempt attempt = unscoredAttempt(true, 5);
+        when(examAttemptRepository.findByIdForUpdate(ATTEMPT_ID)).thenReturn(Optional.of(attempt));
+
+        service.submittedExam(ATTEMPT_ID.toString(), emptyAnswers(), httpRequest);
+
+        verify(userProgressDailyRepository).increment(USER_ID, attempt.getCreatedAt().toLocalDate(), 0, -5L, 0,
+                attempt.getCreatedAt());
+        verify(userExamScoreRepository).record(eq(USER_ID), eq(0), eq(-5L), eq(0), any(LocalDateTime.class));
+        verify(examAttemptReviewCache).evict(ATTEMPT_ID, CURR_EXAM_ID);
+    }
+
+    @Test
+    void submittedExam_afterSaveProgress_countsAsFirstSubmit() throws Exception {
+        // Lưu tiến độ có điểm tạm nhưng chưa nộp
+        ExamAttempt attempt = unscoredAttempt(null, 4);
+        when(examAttemptRepository.findByIdForUpdate(ATTEMPT_ID)).thenReturn(Optional.of(attempt));
+
+        service.submittedExam(ATTEMPT_ID.toString(), emptyAnswers(), httpRequest);
+
+        verify(userProgressDailyRepository).increment(USER_ID, attempt.getCreatedAt().toLocalDate(), 1, 0L, 0,
+                attempt.getCreatedAt());
+        verify(userExamScoreRepository).record(eq(USER_ID), eq(1), eq(0L), eq(0), any(LocalDateTime.class));
+    }
+
+    private ExamAttempt unscoredAttempt(Boolean finished, Integer totalPoint) {
+        ExamAttempt attempt = new ExamAttempt();
+        attempt.setExamAttemptId(ATTEMPT_ID);
+        attempt.setCreatedBy(USER_ID);
+        attempt.setCreatedAt(LocalDateTime.of(2025, 6, 3, 8, 15));
+        attempt.setIsFinished(finished);
+        attempt.setTotalPoint(totalPoint);
+        attempt.setListeningExam(exam(CURR_EXAM_ID, "Exam", "Desc", URL_SLUG, null, null, null, null));
+        when(examAnswerKeyCache.get(CURR_EXAM_ID)).thenReturn(compiler.compile(CURR_EXAM_ID, List.of()));
+        return attempt;
+    }
+
+    private static ExamAttemptAnswersRequest emptyAnswers() {
+        return new ExamAttemptAnswersRequest(List.of(), List.of(), List.of(), List.of(), 120);
+    }
+
+    private static UserProgressDaily progressDay(LocalDate date, int examCount, long pointSum, int taskCount,
+                                                 LocalDateTime lastActivityAt) {
+        return UserProgressDaily.builder()
+                .id(new UserProgressDailyId(USER_ID, date))
+                .examCount(examCount)
+                .examPointSum(pointSum)
+                .taskCount(taskCount)
+                .lastActivityAt(lastActivityAt)
+                .build();
+    }
+
+// ====================== autoSaveExamDelta ======================
+
+    private ExamAttemptAnswerDeltaRequest delta(Long sequence, UUID questionId, List<String> selected) {
+        return new ExamAttemptAnswerDeltaRequest(sequence, null, null, null,
+                List.of(new ExamAttemptAnswersRequest.ExamAnswerRequest(questionId, selected, null)), 95);
+    }
+
+    private ExamAttempt openAttempt() {
+        ExamAttempt att = new ExamAttempt();
+        att.setExamAttemptId(ATTEMPT_ID);
+        att.setCreatedBy(USER_ID);
+        att.setUpdatedBy(USER_ID);
+        att.setCreatedAt(LocalDateTime.now().minusMinutes(10));
+        att.setUpdatedAt(LocalDateTime.now());
+        att.setIsFinished(false);
+        return att;
+    }
+
+    @Test
+    void autoSaveExamDelta_missingSequence_shouldThrowBadRequest() {
+        AppException ex = assertThrows(AppException.class,
+                () -> service.autoSaveExamDelta(ATTEMPT_ID.toString(), delta(null, UUID.randomUUID(), List.of("A")), httpRequest));
+
+        assertThat(ex.getBusinessErrorCode()).isEqualTo(Constants.ErrorCode.INVALID_REQUEST);
+        assertThat(ex.getHttpStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST.value());
+    }
+
+    @Test
+    void autoSaveExamDelta_openDraft_shouldOnlyTouchRedis() throws Exception {
+        var request = delta(3L, UUID.randomUUID(), List.of("A"));
+        when(examAutosaveBuffer.applyDelta(ATTEMPT_ID, request)).thenReturn(1L);
+
+        service.autoSaveExamDelta(ATTEMPT_ID.toString(), request, httpRequest);
+
+        verifyNoInteractions(examAttemptRepository);
+        verify(examAnswerKeyCache, never()).get(any());
+    }
+
+    @Test
+    void autoSaveExamDelta_firstDelta_shouldCheckAttemptOnceThenApply() throws Exception {
+        var request = delta(1L, UUID.randomUUID(), List.of("A"));
+        when(examAutosaveBuffer.applyDelta(ATTEMPT_ID, request)).thenReturn(-1L, 1L);
+        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(openAttempt()));
+
+        service.autoSaveExamDelta(ATTEMPT_ID.toString(), request, httpRequest);
+
+        verify(examAutosaveBuffer).open(ATTEMPT_ID);
+        verify(examAutosaveBuffer, times(2)).applyDelta(ATTEMPT_ID, request);
+    }
+
+    @Test
+    void autoSaveExamDelta_submittedAttempt_shouldThrow() throws Exception {
+        var request = delta(1L, UUID.randomUUID(), List.of("A"));
+        ExamAttempt att = openAttempt();
+        att.setIsFinished(true);
+        when(examAutosaveBuffer.applyDelta(ATTEMPT_ID, request)).thenReturn(-1L);
+        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(att));
+
+        AppException ex = assertThrows(AppException.class,
+                () -> service.autoSaveExamDelta(ATTEMPT_ID.toString(), request, httpRequest));
+
+        assertThat(ex.getBusinessErrorCode()).isEqualTo(Constants.ErrorCode.EXAM_ATTEMPT_ALREADY_SUBMITTED);
+        verify(examAutosaveBuffer, never()).open(any());
+    }
+
+    @Test
+    void flushAutosaveDrafts_shouldMergeDraftIntoHistoryWithoutGrading() throws Exception {
+        UUID kept = UUID.randomUUID();
+        UUID changed = UUID.randomUUID();
+        UUID cleared = UUID.randomUUID();
+        UUID added = UUID.randomUUID();
+        ExamAttempt att = openAttempt();
+        att.setHistory(objectMapper.writeValueAsString(ExamAttemptHistory.builder()
+                .taskId(List.of(TASK1_ID))
+                .questionIds(List.of(kept, changed, cleared))
+                .userAnswers(Map.of(kept, List.of("k"), changed, List.of("old"), cleared, List.of("x")))
+                .build()));
+        Map<UUID, ExamAttemptAnswersRequest.ExamAnswerRequest> answers = new LinkedHashMap<>();
+        answers.put(changed, new ExamAttemptAnswersRequest.ExamAnswerRequest(changed, List.of("new"), null));
+        answers.put(cleared, new ExamAttemptAnswersRequest.ExamAnswerRequest(cleared, null, null));
+        answers.put(added, new ExamAttemptAnswersRequest.ExamAnswerRequest(added, List.of("a"), List.of(TASK2_ID)));
+
+        when(examAutosaveBuffer.pollDirty(anyInt())).thenReturn(List.of(ATTEMPT_ID));
+        when(examAutosaveBuffer.read(ATTEMPT_ID))
+                .thenReturn(new ExamAutosaveBuffer.Draft(321, null, null, null, answers));
+        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(att));
+
+        service.flushAutosaveDrafts();
+
+        ArgumentCaptor<String> historyJson = ArgumentCaptor.forClass(String.class);
+        verify(examAttemptRepository).updateDraftHistory(eq(ATTEMPT_ID), historyJson.capture(), eq(321), any());
+        ExamAttemptHistory merged = objectMapper.readValue(historyJson.getValue(), ExamAttemptHistory.class);
+        assertThat(merged.getTaskId()).containsExactly(TASK1_ID);
+        assertThat(merged.getQuestionIds()).containsExactly(kept, changed, cleared, added);
+        assertThat(merged.getUserAnswers()).containsOnlyKeys(kept, changed, added);
+        assertThat(merged.getUserAnswers().get(changed)).containsExactly("new");
+        assertThat(merged.getQuestionMapChoices()).containsEntry(added, List.of(TASK2_ID));
+        verify(examAttemptRepository, never()).save(any());
+        verify(examAnswerKeyCache, never()).get(any());
+    }
+
+    @Test
+    void flushAutosaveDrafts_submittedAttempt_shouldDiscardDraft() throws Exception {
+        ExamAttempt att = openAttempt();
+        att.setIsFinished(true);
+        when(examAutosaveBuffer.pollDirty(anyInt())).thenReturn(List.of(ATTEMPT_ID));
+        when(examAutosaveBuffer.read(ATTEMPT_ID)).thenReturn(new ExamAutosaveBuffer.Draft(10, null, null, null, Map.of()));
+        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(att));
+
+        service.flushAutosaveDrafts();
+
+        verify(examAutosaveBuffer).discard(ATTEMPT_ID);
+        verify(examAttemptRepository, never()).updateDraftHistory(any(), any(), any(), any());
+    }
+
+    @Test
+    void flushAutosaveDrafts_failure_shouldRequeueAttempt() throws Exception {
+        when(examAutosaveBuffer.pollDirty(anyInt())).thenReturn(List.of(ATTEMPT_ID));
+        when(examAutosaveBuffer.read(ATTEMPT_ID)).thenThrow(new RuntimeException("redis down"));
+
+        service.flushAutosaveDrafts();
+
+        verify(examAutosaveBuffer).markDirty(ATTEMPT_ID);
+    }
+
+    @Test
+    void getExamAttemptById_inProgress_shouldIncludeBufferedAnswers() throws Exception {
+        UUID questionId = UUID.randomUUID();
+        ExamAttempt att = openAttempt();
+        att.setDuration(10);
+        ListeningExam exam = new ListeningExam();
+        exam.setListeningExamId(CURR_EXAM_ID);
+        att.setListeningExam(exam);
+        when(examAttemptRepository.findById(ATTEMPT_ID)).thenReturn(Optional.of(att));
+        when(helper.getUserIdFromToken(httpRequest)).thenReturn(USER_ID);
+        when(examAutosaveBuffer.read(ATTEMPT_ID)).thenReturn(new ExamAutosaveBuffer.Draft(60, List.of(TASK1_ID), null, null,
+                Map.of(questionId, new ExamAttemptAnswersRequest.ExamAnswerRequest(questionId, List.of("B"), null))));
+        var part = ExamAttemptGetDetail.ListeningExamResponse.ListeningTaskResponse.builder().partNumber(1).build();
+        when(listeningTaskService.fromExamAttemptHistory(any(ExamAttemptHistory.class)))
+                .thenReturn(List.of(part, part, part, part));
+
+        ExamAttemptGetDetail out = service.getExamAttemptById(ATTEMPT_ID.toString(), httpRequest);
+
+        assertThat(out.answers()).containsEntry(questionId, List.of("B"));
+        assertThat(out.duration()).isEqualTo(60L);
+    }
 }
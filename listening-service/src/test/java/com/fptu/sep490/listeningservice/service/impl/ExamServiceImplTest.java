@@ -2,6 +2,8 @@ package com.fptu.sep490.listeningservice.service.impl;
 
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
+import com.fptu.sep490.listeningservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.listeningservice.component.ExamPaperSnapshotCache;
 import com.fptu.sep490.listeningservice.constants.Constants;
 import com.fptu.sep490.listeningservice.helper.Helper;
 import com.fptu.sep490.listeningservice.model.ListeningExam;
@@ -40,6 +42,8 @@ class ExamServiceImplTest {
     @Mock ChoiceRepository choiceRepository;
     @Mock ListeningExamRepository listeningExamRepository;
     @Mock MarkupClient markupClient;
+    @Mock ExamAnswerKeyCache examAnswerKeyCache;
+    @Mock ExamPaperSnapshotCache examPaperSnapshotCache;
     @Mock Helper helper;
     @Mock HttpServletRequest httpServletRequest;
 
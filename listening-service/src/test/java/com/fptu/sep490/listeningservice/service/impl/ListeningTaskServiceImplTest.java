@@ -11,14 +11,12 @@ import com.fptu.sep490.listeningservice.model.enumeration.IeltsType;
 import com.fptu.sep490.listeningservice.model.enumeration.PartNumber;
 import com.fptu.sep490.listeningservice.model.enumeration.Status;
 import com.fptu.sep490.listeningservice.repository.*;
-import com.fptu.sep490.listeningservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.listeningservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.listeningservice.repository.client.MarkupClient;
 import com.fptu.sep490.listeningservice.service.FileService;
 import com.fptu.sep490.listeningservice.viewmodel.request.ListeningTaskCreationRequest;
 import com.fptu.sep490.listeningservice.viewmodel.response.*;
-	import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
-import jakarta.servlet.http.Cookie;
+	import jakarta.servlet.http.Cookie;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -37,7 +35,6 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.multipart.MultipartFile;
-	import org.springframework.util.LinkedMultiValueMap;
 
 import java.time.LocalDateTime;
 import java.util.*;
@@ -59,7 +56,6 @@ public class ListeningTaskServiceImplTest {
 	@Mock Helper helper;
 	@Mock RedisService redisService;
 	@Mock KeyCloakUserClient keyCloakUserClient;
-	@Mock KeyCloakTokenClient keyCloakTokenClient;
 	@Mock MarkupClient markupClient;
 	@Mock KafkaTemplate<String, Object> kafkaTemplate;
 	@Mock HttpServletRequest httpServletRequest;
@@ -69,9 +65,7 @@ public class ListeningTaskServiceImplTest {
 		MockitoAnnotations.openMocks(this);
 		ReflectionTestUtils.setField(service, "topicMasterTopic", "topic.master");
 		ReflectionTestUtils.setField(service, "realm", "realm");
-		ReflectionTestUtils.setField(service, "clientId", "client");
-		ReflectionTestUtils.setField(service, "clientSecret", "secret");
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(helper.getCachedClientToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer ctoken"), anyString()))
 				.thenReturn(UserProfileResponse.builder().id("u1").firstName("A").lastName("B").email("e@x.com").build());
 	}
@@ -81,11 +75,11 @@ public class ListeningTaskServiceImplTest {
 		String userId = "u1";
 		UserProfileResponse cached = UserProfileResponse.builder().id(userId).firstName("A").lastName("B").email("e@x.com").build();
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(cached);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
 
 		UserProfileResponse res = ReflectionTestUtils.invokeMethod(service, "getUserProfileById", userId);
 
 		assertEquals(cached, res);
+		verify(helper, never()).getCachedClientToken();
 		verify(keyCloakUserClient, never()).getUserById(anyString(), anyString(), anyString());
 	}
 
@@ -93,7 +87,7 @@ public class ListeningTaskServiceImplTest {
 	void getUserProfileById_noCache_fetchesAndCaches_inService() throws Exception {
 		String userId = "u2";
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(null);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(helper.getCachedClientToken()).thenReturn("ctoken");
 		UserProfileResponse fetched = UserProfileResponse.builder().id(userId).firstName("C").lastName("D").email("cd@x.com").build();
 		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer ctoken"), eq(userId))).thenReturn(fetched);
 
@@ -104,19 +98,17 @@ public class ListeningTaskServiceImplTest {
 	}
 
 	@Test
-	void getUserProfileById_noCachedToken_requestsToken_thenFetches_inService() throws Exception {
+	void getUserProfileById_usesHelperServiceToken_inService() throws Exception {
 		String userId = "u3";
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(null);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn(null);
-		when(keyCloakTokenClient.requestToken(any(LinkedMultiValueMap.class), eq("realm")))
-				.thenReturn(KeyCloakTokenResponse.builder().accessToken("newtoken").expiresIn(3600).build());
+		when(helper.getCachedClientToken()).thenReturn("newtoken");
 		UserProfileResponse fetched = UserProfileResponse.builder().id(userId).email("u3@x.com").build();
 		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer newtoken"), eq(userId))).thenReturn(fetched);
 
 		UserProfileResponse res = ReflectionTestUtils.invokeMethod(service, "getUserProfileById", userId);
 
 		assertEquals(fetched, res);
-		verify(redisService).saveValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq("newtoken"), any());
+		verify(redisService, never()).getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), any(Class.class));
 		verify(redisService).saveValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(fetched), any());
 	}
 
@@ -124,7 +116,7 @@ public class ListeningTaskServiceImplTest {
 	void getUserProfileById_nullFromKeycloak_throws_inService() throws JsonProcessingException {
 		String userId = "u4";
 		when(redisService.getValue(eq(Constants.RedisKey.USER_PROFILE + userId), eq(UserProfileResponse.class))).thenReturn(null);
-		when(redisService.getValue(eq(Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN), eq(String.class))).thenReturn("ctoken");
+		when(helper.getCachedClientToken()).thenReturn("ctoken");
 		when(keyCloakUserClient.getUserById(eq("realm"), eq("Bearer ctoken"), eq(userId))).thenReturn(null);
 
 		AppException ex = assertThrows(AppException.class, () -> ReflectionTestUtils.invokeMethod(service, "getUserProfileById", userId));
@@ -249,8 +241,7 @@ public class ListeningTaskServiceImplTest {
 		var d2 = mock(com.fptu.sep490.listeningservice.model.DragItem.class);
 		when(d2.getDragItemId()).thenReturn(di2Id);
 		when(d2.getContent()).thenReturn("D2");
-		when(dragItemRepository.findAllById(eq(List.of(di1Id)))).thenReturn(List.of(d1));
-		when(dragItemRepository.findAllById(eq(List.of(di2Id)))).thenReturn(List.of(d2));
+		when(dragItemRepository.findAllById(any())).thenReturn(List.of(d2, d1));
 
 		// Arrange choices for q1 (MC)
 		UUID c1Id = UUID.randomUUID();
@@ -267,8 +258,7 @@ public class ListeningTaskServiceImplTest {
 		when(c2.getContent()).thenReturn("Beta");
 		when(c2.getChoiceOrder()).thenReturn(2);
 		when(c2.isCorrect()).thenReturn(false);
-		when(choiceRepository.findById(c1Id)).thenReturn(Optional.of(c1));
-		when(choiceRepository.findById(c2Id)).thenReturn(Optional.of(c2));
+		when(choiceRepository.findAllById(any())).thenReturn(List.of(c2, c1));
 
 		// Build history
 		var history = com.fptu.sep490.listeningservice.model.json.ExamAttemptHistory.builder()
@@ -282,6 +272,11 @@ public class ListeningTaskServiceImplTest {
 		// Act
 		var res = service.fromExamAttemptHistory(history);
 
+		// Drag item và choice của mọi group / câu hỏi được tải bằng một truy vấn mỗi loại
+		verify(dragItemRepository, times(1)).findAllById(any());
+		verify(choiceRepository, times(1)).findAllById(any());
+		verify(choiceRepository, never()).findById(any());
+
 		// Assert task-level mapping
 		assertEquals(2, res.size());
 		var t1Res = res.get(0);
@@ -368,7 +363,7 @@ public class ListeningTaskServiceImplTest {
 		when(questionRepository.findAllByIdOrderByQuestionOrder(anyList())).thenReturn(List.of(q));
 
 		UUID missingChoiceId = UUID.randomUUID();
-		when(choiceRepository.findById(missingChoiceId)).thenReturn(Optional.empty());
+		when(choiceRepository.findAllById(any())).thenReturn(List.of());
 
 		var history = com.fptu.sep490.listeningservice.model.json.ExamAttemptHistory.builder()
 				.taskId(List.of(tId))
@@ -0,0 +1,170 @@
+package com.fptu.sep490.notificationservice.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Một kết nối SSE với hàng đợi gửi giới hạn {@link SseDispatcher#queueCapacity()}:
+ * <ul>
+ *     <li>Event có status được gộp (vd. {@code progress}) và có key thay thế event cùng status và key còn trong
+ *     hàng đợi; event không có key không bị gộp</li>
+ *     <li>Hàng đợi đầy thì bỏ event cũ nhất, kể cả event replay</li>
+ *     <li>Trước khi replay xong, event mới chỉ được xếp hàng; replay được đưa lên đầu để giữ đúng thứ tự id</li>
+ *     <li>Event có id không lớn hơn id đã gửi bị bỏ (trùng giữa replay và event trực tiếp)</li>
+ * </ul>
+ * Tại một thời điểm chỉ có một writer xả hàng đợi.
+ */
+@Slf4j
+public final class SseConnection {
+    private final UUID clientId;
+    private final SseEmitter emitter;
+    private final SseDispatcher dispatcher;
+    private final BiConsumer<SseConnection, IOException> onFailure;
+    private final ArrayDeque<Queued> queue = new ArrayDeque<>();
+    private boolean replaying = true;
+    private boolean draining;
+    private boolean closed;
+    // Chỉ writer đang xả hàng đợi đọc / ghi
+    private long lastSentId;
+
+    SseConnection(UUID clientId, SseEmitter emitter, SseDispatcher dispatcher, BiConsumer<SseConnection, IOException> onFailure) {
+        this.clientId = clientId;
+        this.emitter = emitter;
+        this.dispatcher = dispatcher;
+        this.onFailure = onFailure;
+    }
+
+    public SseEmitter emitter() {
+        return emitter;
+    }
+
+    public void deliver(SseEventBus.Event event) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            offer(new Queued(event, System.nanoTime()));
+            if (!startDrain()) {
+                return;
+            }
+        }
+        dispatcher.execute(this::drain);
+    }
+
+    public void replayed(List<SseEventBus.Event> missed) {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            // Xếp lại: replay trước, event trực tiếp đã chờ nối sau, cùng qua giới hạn của hàng đợi
+            List<Queued> live = List.copyOf(queue);
+            queue.clear();
+            dispatcher.dequeued(live.size());
+            long now = System.nanoTime();
+            for (SseEventBus.Event event : missed) {
+                offer(new Queued(event, now));
+            }
+            live.forEach(this::offer);
+            replaying = false;
+            if (!startDrain()) {
+                return;
+            }
+        }
+        dispatcher.execute(this::drain);
+    }
+
+    public void complete() {
+        close();
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.warn("Error completing existing emitter for client {}: {}", clientId, e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        dispatcher.dequeued(queue.size());
+        queue.clear();
+        dispatcher.closed();
+    }
+
+    synchronized int queued() {
+        return queue.size();
+    }
+
+    private void offer(Queued queued) {
+        SseEventBus.Event event = queued.event;
+        if (event.key() != null && dispatcher.isCoalesced(event.status())) {
+            for (Iterator<Queued> it = queue.iterator(); it.hasNext(); ) {
+                SseEventBus.Event pending = it.next().event;
+                if (pending.status().equals(event.status()) && event.key().equals(pending.key())) {
+                    it.remove();
+                    dispatcher.dequeued(1);
+                    dispatcher.coalesced();
+                }
+            }
+        }
+        if (queue.size() >= dispatcher.queueCapacity()) {
+            queue.pollFirst();
+            dispatcher.dequeued(1);
+            dispatcher.overflowed();
+        }
+        queue.addLast(queued);
+        dispatcher.enqueued();
+    }
+
+    private boolean startDrain() {
+        if (replaying || draining || queue.isEmpty()) {
+            return false;
+        }
+        draining = true;
+        return true;
+    }
+
+    private void drain() {
+        while (true) {
+            Queued next;
+            synchronized (this) {
+                next = closed ? null : queue.pollFirst();
+                if (next == null) {
+                    draining = false;
+                    return;
+                }
+            }
+            dispatcher.dequeued(1);
+            SseEventBus.Event event = next.event;
+            if (event.id() <= lastSentId) {
+                continue;
+            }
+            try {
+                emitter.send(SseEmitter.event()
+                        .id(String.valueOf(event.id()))
+                        .name("notification")
+                        .data(event.data()));
+                lastSentId = event.id();
+                dispatcher.sent(next.enqueuedAtNanos);
+            } catch (IOException | IllegalStateException e) {
+                close();
+                synchronized (this) {
+                    draining = false;
+                }
+                onFailure.accept(this, e instanceof IOException io ? io : new IOException(e));
+                return;
+            }
+        }
+    }
+
+    private record Queued(SseEventBus.Event event, long enqueuedAtNanos) {
+    }
+}
@@ -0,0 +1,110 @@
+package com.fptu.sep490.notificationservice.component;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
+/**
+ * Gửi SSE bất đồng bộ: mỗi {@link SseConnection} có hàng đợi riêng, được xả bởi một virtual thread khi có event.
+ * Client chậm chỉ làm đầy hàng đợi của chính nó, không chặn thread nhận event.
+ * <ul>
+ *     <li>{@code sse.queue.depth}: tổng số event đang chờ gửi</li>
+ *     <li>{@code sse.events.dropped}: event bị bỏ, tag {@code reason} = {@code coalesced} / {@code overflow}</li>
+ *     <li>{@code sse.send.latency}: thời gian từ lúc vào hàng đợi tới khi gửi xong</li>
+ * </ul>
+ */
+@Component
+public class SseDispatcher {
+    private final ExecutorService writers;
+    private final int queueCapacity;
+    private final Set<String> coalescedStatuses;
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicInteger connections = new AtomicInteger();
+    private final Counter coalescedDrops;
+    private final Counter overflowDrops;
+    private final Timer sendLatency;
+
+    @Autowired
+    public SseDispatcher(MeterRegistry meterRegistry,
+                         @Value("${sse.client-queue-capacity:64}") int queueCapacity,
+                         @Value("${sse.coalesced-statuses:progress}") List<String> coalescedStatuses) {
+        this(meterRegistry, queueCapacity, coalescedStatuses,
+                Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("sse-writer-", 0).factory()));
+    }
+
+    SseDispatcher(MeterRegistry meterRegistry, int queueCapacity, List<String> coalescedStatuses, ExecutorService writers) {
+        this.writers = writers;
+        this.queueCapacity = queueCapacity;
+        this.coalescedStatuses = Set.copyOf(coalescedStatuses);
+        Gauge.builder("sse.queue.depth", queued, AtomicInteger::get).register(meterRegistry);
+        Gauge.builder("sse.connections", connections, AtomicInteger::get).register(meterRegistry);
+        this.coalescedDrops = Counter.builder("sse.events.dropped").tag("reason", "coalesced").register(meterRegistry);
+        this.overflowDrops = Counter.builder("sse.events.dropped").tag("reason", "overflow").register(meterRegistry);
+        this.sendLatency = Timer.builder("sse.send.latency").register(meterRegistry);
+    }
+
+    /**
+     * @param onFailure gọi (trên writer thread) khi gửi lỗi; kết nối đã đóng hàng đợi trước khi gọi
+     */
+    public SseConnection open(UUID clientId, SseEmitter emitter, BiConsumer<SseConnection, IOException> onFailure) {
+        connections.incrementAndGet();
+        return new SseConnection(clientId, emitter, this, onFailure);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writers.shutdownNow();
+    }
+
+    int queueCapacity() {
+        return queueCapacity;
+    }
+
+    boolean isCoalesced(String status) {
+        return coalescedStatuses.contains(status);
+    }
+
+    void execute(Runnable drain) {
+        writers.execute(drain);
+    }
+
+    void enqueued() {
+        queued.incrementAndGet();
+    }
+
+    void dequeued(int count) {
+        queued.addAndGet(-count);
+    }
+
+    void coalesced() {
+        coalescedDrops.increment();
+    }
+
+    void overflowed() {
+        overflowDrops.increment();
+    }
+
+    void sent(long enqueuedAtNanos) {
+        sendLatency.record(System.nanoTime() - enqueuedAtNanos, TimeUnit.NANOSECONDS);
+    }
+
+    void closed() {
+        connections.decrementAndGet();
+    }
+}
@@ -0,0 +1,221 @@
+package com.fptu.sep490.notificationservice.component;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Phát SSE giữa các node qua Redis; Kafka vẫn dùng consumer group chung, node nào consume cũng được:
+ * <ul>
+ *     <li>{@code sse:conn:<clientId>} = node đang giữ kết nối của client (TTL, được node đó làm mới định kỳ)</li>
+ *     <li>{@code sse:seq:<clientId>} cấp id tăng dần cho từng event của client</li>
+ *     <li>{@code sse:buffer:<clientId>} giữ {@code bufferSize} event gần nhất để replay khi reconnect với
+ *     {@code Last-Event-ID}, kể cả khi client reconnect vào node khác</li>
+ *     <li>Event được publish vào channel {@code sse:node:<nodeId>} của node đang giữ kết nối</li>
+ * </ul>
+ * Cấp id, ghi buffer, tra registry và publish nằm trong một script nên mỗi event chỉ tốn một round trip.
+ */
+@Slf4j
+@Component
+public class SseEventBus implements MessageListener {
+    static final String CONNECTION_KEY = "sse:conn:";
+    static final String SEQUENCE_KEY = "sse:seq:";
+    static final String BUFFER_KEY = "sse:buffer:";
+    static final String NODE_CHANNEL = "sse:node:";
+    static final Duration SEQUENCE_TTL = Duration.ofDays(7);
+    static final int REFRESH_BATCH_SIZE = 1000;
+
+    // KEYS: seq, buffer, conn; ARGV: clientId, status, key, data, bufferSize, bufferTtlMs, seqTtlMs, channelPrefix
+    static final RedisScript<Long> PUBLISH = new DefaultRedisScript<>("""
+            local id = redis.call('INCR', KEYS[1])
+            redis.call('PEXPIRE', KEYS[1], ARGV[7])
+            local entry = id .. ' ' .. ARGV[2] .. ' ' .. ARGV[3] .. ' ' .. ARGV[4]
+            redis.call('RPUSH', KEYS[2], entry)
+            redis.call('LTRIM', KEYS[2], -tonumber(ARGV[5]), -1)
+            redis.call('PEXPIRE', KEYS[2], ARGV[6])
+            local node = redis.call('GET', KEYS[3])
+            if node then
+                redis.call('PUBLISH', ARGV[8] .. node, 'E ' .. ARGV[1] .. ' ' .. entry)
+            end
+            return id
+            """, Long.class);
+
+    // KEYS: conn; ARGV: nodeId, ttlMs, clientId, channelPrefix — báo node cũ đóng kết nối bị thay thế
+    static final RedisScript<Long> REGISTER = new DefaultRedisScript<>("""
+            local previous = redis.call('GET', KEYS[1])
+            redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2])
+            if previous and previous ~= ARGV[1] then
+                redis.call('PUBLISH', ARGV[4] .. previous, 'C ' .. ARGV[3])
+            end
+            return 1
+            """, Long.class);
+
+    // KEYS: conn của từng client; ARGV: nodeId, ttlMs (ttlMs = 0 để xóa). Chỉ động vào key còn trỏ về node này
+    static final RedisScript<Long> REFRESH = new DefaultRedisScript<>("""
+            local touched = 0
+            for i = 1, #KEYS do
+                if redis.call('GET', KEYS[i]) == ARGV[1] then
+                    if ARGV[2] == '0' then
+                        redis.call('DEL', KEYS[i])
+                    else
+                        redis.call('PEXPIRE', KEYS[i], ARGV[2])
+                    end
+                    touched = touched + 1
+                end
+            end
+            return touched
+            """, Long.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer redisMessageListenerContainer;
+    private final String nodeId;
+    private final int bufferSize;
+    private final Duration bufferTtl;
+    private final Duration connectionTtl;
+    private volatile Handler handler;
+
+    public SseEventBus(StringRedisTemplate stringRedisTemplate,
+                       RedisMessageListenerContainer redisMessageListenerContainer,
+                       @Value("${spring.application.name:notification-service}") String applicationName,
+                       @Value("${sse.replay-buffer-size:50}") int bufferSize,
+                       @Value("${sse.replay-buffer-ttl:PT10M}") Duration bufferTtl,
+                       @Value("${sse.connection-ttl:PT90S}") Duration connectionTtl) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.redisMessageListenerContainer = redisMessageListenerContainer;
+        this.nodeId = applicationName + "-" + UUID.randomUUID();
+        this.bufferSize = bufferSize;
+        this.bufferTtl = bufferTtl;
+        this.connectionTtl = connectionTtl;
+    }
+
+    /**
+     * Nhận các event dành cho client đang kết nối vào node này.
+     */
+    public void listen(Handler handler) {
+        this.handler = handler;
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(NODE_CHANNEL + nodeId));
+    }
+
+    /**
+     * Cấp id, ghi vào replay buffer và chuyển tới node đang giữ kết nối (nếu có).
+     *
+     * @return id của event
+     */
+    public long publish(UUID clientId, String status, String key, String data) {
+        String client = clientId.toString();
+        Long id = stringRedisTemplate.execute(PUBLISH,
+                List.of(SEQUENCE_KEY + client, BUFFER_KEY + client, CONNECTION_KEY + client),
+                client, Event.token(status), Event.token(key), data, String.valueOf(bufferSize), String.valueOf(bufferTtl.toMillis()),
+                String.valueOf(SEQUENCE_TTL.toMillis()), NODE_CHANNEL);
+        return id != null ? id : 0L;
+    }
+
+    public void register(UUID clientId) {
+        stringRedisTemplate.execute(REGISTER, List.of(CONNECTION_KEY + clientId),
+                nodeId, String.valueOf(connectionTtl.toMillis()), clientId.toString(), NODE_CHANNEL);
+    }
+
+    public void unregister(UUID clientId) {
+        stringRedisTemplate.execute(REFRESH, List.of(CONNECTION_KEY + clientId), nodeId, "0");
+    }
+
+    /**
+     * Gia hạn registry cho các client đang kết nối vào node này.
+     */
+    public void refresh(Collection<UUID> clientIds) {
+        List<String> keys = new ArrayList<>(Math.min(clientIds.size(), REFRESH_BATCH_SIZE));
+        for (UUID clientId : clientIds) {
+            keys.add(CONNECTION_KEY + clientId);
+            if (keys.size() == REFRESH_BATCH_SIZE) {
+                stringRedisTemplate.execute(REFRESH, keys, nodeId, String.valueOf(connectionTtl.toMillis()));
+                keys.clear();
+            }
+        }
+        if (!keys.isEmpty()) {
+            stringRedisTemplate.execute(REFRESH, keys, nodeId, String.valueOf(connectionTtl.toMillis()));
+        }
+    }
+
+    /**
+     * @return các event còn trong buffer có id lớn hơn {@code lastEventId}, theo thứ tự id
+     */
+    public List<Event> replay(UUID clientId, long lastEventId) {
+        List<String> entries = stringRedisTemplate.opsForList().range(BUFFER_KEY + clientId, 0, -1);
+        if (entries == null) {
+            return List.of();
+        }
+        List<Event> events = new ArrayList<>();
+        for (String entry : entries) {
+            Event event = Event.parse(entry);
+            if (event.id() > lastEventId) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        Handler current = handler;
+        if (current == null) {
+            return;
+        }
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            // "E <clientId> <id> <status> <key> <data>" hoặc "C <clientId>"
+            int clientEnd = body.indexOf(' ', 2);
+            if (body.startsWith("C ")) {
+                current.onReplaced(UUID.fromString(body.substring(2)));
+            } else if (body.startsWith("E ") && clientEnd > 0) {
+                current.onEvent(UUID.fromString(body.substring(2, clientEnd)), Event.parse(body.substring(clientEnd + 1)));
+            }
+        } catch (RuntimeException e) {
+            log.warn("Ignoring malformed SSE bus message: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * @param status status của message
+     * @param key    định danh tác vụ, null nếu không có; client chậm chỉ gộp các event cùng status và key
+     */
+    public record Event(long id, String status, String key, String data) {
+        static final String EMPTY_TOKEN = "-";
+
+        static Event parse(String entry) {
+            int idEnd = entry.indexOf(' ');
+            int statusEnd = entry.indexOf(' ', idEnd + 1);
+            int keyEnd = entry.indexOf(' ', statusEnd + 1);
+            String key = entry.substring(statusEnd + 1, keyEnd);
+            return new Event(Long.parseLong(entry.substring(0, idEnd)), entry.substring(idEnd + 1, statusEnd),
+                    EMPTY_TOKEN.equals(key) ? null : key, entry.substring(keyEnd + 1));
+        }
+
+        // Entry tách trường bằng dấu cách nên status / key phải là một token
+        static String token(String value) {
+            return value == null || value.isBlank() ? EMPTY_TOKEN : value.replace(' ', '_');
+        }
+    }
+
+    public interface Handler {
+        void onEvent(UUID clientId, Event event);
+
+        /**
+         * Client đã kết nối lại vào node khác, kết nối cũ ở node này cần đóng.
+         */
+        void onReplaced(UUID clientId);
+    }
+}
@@ -26,9 +26,10 @@ public class SseController {
             description = "Establish a Server-Sent Events (SSE) connection for a specific user by their ID."
     )
     @PermitAll
-    public SseEmitter stream(@PathVariable("user-id") UUID clientId) {
-        log.info("SSE subscription request received for client: {}", clientId);
-        return sseService.subscribe(clientId);
+    public SseEmitter stream(@PathVariable("user-id") UUID clientId,
+                             @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        log.info("SSE subscription request received for client: {} (last event {})", clientId, lastEventId);
+        return sseService.subscribe(clientId, lastEventId);
     }
     
     @GetMapping("/health")
@@ -40,6 +41,6 @@ public class SseController {
     @GetMapping("send")
     @PermitAll
     public void testSendEvent() {
-        sseService.sendMessage(UUID.fromString("e2cf7176-42a3-4d32-948b-1714bbe1a0b4"), "aaaa", "b");
+        sseService.sendMessage(UUID.fromString("e2cf7176-42a3-4d32-948b-1714bbe1a0b4"), "aaaa", "b", null);
     }
 }
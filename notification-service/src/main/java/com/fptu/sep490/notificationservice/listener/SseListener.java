@@ -19,7 +19,7 @@ public class SseListener {
 
     @KafkaListener(topics = "${kafka.topic.send-notification}", groupId = "${spring.kafka.consumer.group-id}")
     public void handleSseEvent(SseEvent message) {
-        sseService.sendMessage(message.clientId(), message.message(), message.status());
+        sseService.sendMessage(message.clientId(), message.message(), message.status(), message.key());
         log.info("Sent SSE message to client {}: {}", message.clientId(), message.message());
     }
 }
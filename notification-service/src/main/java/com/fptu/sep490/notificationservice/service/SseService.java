@@ -5,6 +5,12 @@ import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.UUID;
 
 public interface SseService {
-    SseEmitter subscribe(UUID clientId);
-    void sendMessage(UUID clientId, String message, String status);
+    /**
+     * @param lastEventId header {@code Last-Event-ID} khi trình duyệt reconnect, null nếu là kết nối mới
+     */
+    SseEmitter subscribe(UUID clientId, String lastEventId);
+    /**
+     * @param key định danh tác vụ để gộp các event {@code progress} của cùng tác vụ, null nếu không có
+     */
+    void sendMessage(UUID clientId, String message, String status, String key);
 }
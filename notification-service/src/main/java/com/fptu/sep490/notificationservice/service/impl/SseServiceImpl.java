@@ -1,102 +1,160 @@
 package com.fptu.sep490.notificationservice.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.notificationservice.component.SseConnection;
+import com.fptu.sep490.notificationservice.component.SseDispatcher;
+import com.fptu.sep490.notificationservice.component.SseEventBus;
 import com.fptu.sep490.notificationservice.service.SseService;
 import com.fptu.sep490.notificationservice.viewmodel.event.BaseMessageResponse;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Giữ các kết nối SSE của node này. Event đi qua {@link SseEventBus} để tới được node đang giữ kết nối
+ * của client, mỗi event có id tăng dần để trình duyệt gửi lại qua {@code Last-Event-ID} khi reconnect.
+ * Việc ghi ra socket do {@link SseDispatcher} làm, thread nhận event chỉ xếp hàng.
+ */
 @Slf4j
 @Service
+public class SseServiceImpl implements SseService, SseEventBus.Handler {
 
-public class SseServiceImpl implements SseService {
-
-    private final Map<UUID, SseEmitter> clientEmitters = new ConcurrentHashMap<>();
-
+    private final Map<UUID, SseConnection> clientEmitters = new ConcurrentHashMap<>();
 
     private final ObjectMapper objectMapper;
+    private final SseEventBus sseEventBus;
+    private final SseDispatcher sseDispatcher;
 
-    public SseServiceImpl(ObjectMapper objectMapper) {
+    public SseServiceImpl(ObjectMapper objectMapper, SseEventBus sseEventBus, SseDispatcher sseDispatcher) {
         this.objectMapper = objectMapper;
+        this.sseEventBus = sseEventBus;
+        this.sseDispatcher = sseDispatcher;
+        sseEventBus.listen(this);
     }
 
     @Override
-    public SseEmitter subscribe(UUID clientId) {
+    public SseEmitter subscribe(UUID clientId, String lastEventId) {
         // Set timeout to 30 minutes (1800000ms) instead of infinite
         SseEmitter emitter = new SseEmitter(1800000L);
-        
+        SseConnection connection = sseDispatcher.open(clientId, emitter, (failed, e) -> sendFailed(clientId, failed, e));
+
         // Remove any existing connection for this client
-        SseEmitter existingEmitter = clientEmitters.get(clientId);
-        if (existingEmitter != null) {
-            try {
-                existingEmitter.complete();
-            } catch (Exception e) {
-                log.warn("Error completing existing emitter for client {}: {}", clientId, e.getMessage());
-            }
+        SseConnection existing = clientEmitters.put(clientId, connection);
+        if (existing != null) {
+            existing.complete();
         }
-        
-        clientEmitters.put(clientId, emitter);
         log.info("Client {} subscribed to SSE stream", clientId);
 
         emitter.onCompletion(() -> {
-            clientEmitters.remove(clientId);
+            release(clientId, connection);
             log.info("SSE connection completed for client {}", clientId);
         });
         emitter.onTimeout(() -> {
-            clientEmitters.remove(clientId);
+            release(clientId, connection);
             log.info("SSE connection timed out for client {}", clientId);
         });
         emitter.onError((e) -> {
-            clientEmitters.remove(clientId);
+            release(clientId, connection);
             log.error("SSE connection error for client {}: {}", clientId, e.getMessage());
         });
 
-        // Send initial connection confirmation
         try {
+            // Send initial connection confirmation
             emitter.send(SseEmitter.event()
                 .name("connection")
                 .data("{\"message\":\"Connected to SSE stream\",\"status\":\"connected\"}"));
-        } catch (IOException e) {
-            log.error("Failed to send initial SSE message to client {}: {}", clientId, e.getMessage());
-            clientEmitters.remove(clientId);
+            // Đăng ký trước khi đọc buffer: event đến trong lúc replay được giữ lại trong connection rồi gửi sau
+            sseEventBus.register(clientId);
+            List<SseEventBus.Event> missed = lastEventId != null
+                    ? sseEventBus.replay(clientId, parseEventId(lastEventId))
+                    : List.of();
+            connection.replayed(missed);
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to start SSE stream for client {}: {}", clientId, e.getMessage());
+            release(clientId, connection);
+            connection.close();
+            emitter.completeWithError(e);
         }
 
         return emitter;
     }
 
     @Override
-    public void sendMessage(UUID clientId, String message, String status) {
-        SseEmitter emitter = clientEmitters.get(clientId);
-        if (emitter == null) {
-            log.warn("No SSE connection found for client {}", clientId);
-            return;
-        }
-        
+    public void sendMessage(UUID clientId, String message, String status, String key) {
         BaseMessageResponse response = BaseMessageResponse.builder()
                 .message(message)
                 .status(status)
                 .build();
-        log.info("Sending message to client {}: {}", clientId, response);
-        
         try {
-            emitter.send(SseEmitter.event()
-                .name("notification")
-                .data(objectMapper.writeValueAsString(response)));
-        } catch (IOException e) {
-            log.error("Failed to send SSE message to client {}: {}", clientId, e.getMessage());
-            clientEmitters.remove(clientId);
+            long id = sseEventBus.publish(clientId, status, key, objectMapper.writeValueAsString(response));
+            log.info("Published message {} to client {}: {}", id, clientId, response);
+        } catch (JsonProcessingException e) {
+            log.error("Failed to serialize SSE message to client {}: {}", clientId, e.getMessage());
+        }
+    }
+
+    @Override
+    public void onEvent(UUID clientId, SseEventBus.Event event) {
+        SseConnection connection = clientEmitters.get(clientId);
+        if (connection == null) {
+            // Client đã ngắt, event vẫn nằm trong replay buffer
+            log.debug("No SSE connection found for client {}", clientId);
+            return;
+        }
+        connection.deliver(event);
+    }
+
+    @Override
+    public void onReplaced(UUID clientId) {
+        SseConnection connection = clientEmitters.remove(clientId);
+        if (connection != null) {
+            log.info("Client {} reconnected to another node, closing local stream", clientId);
+            connection.complete();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${sse.connection-refresh-ms:30000}")
+    public void refreshConnections() {
+        if (!clientEmitters.isEmpty()) {
+            sseEventBus.refresh(List.copyOf(clientEmitters.keySet()));
+        }
+    }
+
+    private void sendFailed(UUID clientId, SseConnection connection, IOException e) {
+        log.error("Failed to send SSE message to client {}: {}", clientId, e.getMessage());
+        release(clientId, connection);
+        try {
+            connection.emitter().completeWithError(e);
+        } catch (Exception completionError) {
+            log.error("Error completing emitter with error for client {}: {}", clientId, completionError.getMessage());
+        }
+    }
+
+    private void release(UUID clientId, SseConnection connection) {
+        // Kết nối cũ đã bị thay thế thì không xóa kết nối mới khỏi map / registry
+        if (clientEmitters.remove(clientId, connection)) {
+            connection.close();
             try {
-                emitter.completeWithError(e);
-            } catch (Exception completionError) {
-                log.error("Error completing emitter with error for client {}: {}", clientId, completionError.getMessage());
+                sseEventBus.unregister(clientId);
+            } catch (RuntimeException e) {
+                log.warn("Could not unregister SSE client {}: {}", clientId, e.getMessage());
             }
         }
     }
+
+    private static long parseEventId(String lastEventId) {
+        try {
+            return Long.parseLong(lastEventId.trim());
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
 }
@@ -0,0 +1,150 @@
+package com.fptu.sep490.notificationservice.component;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class SseConnectionTest {
+
+    SimpleMeterRegistry meterRegistry;
+    List<Runnable> scheduled;
+    SseDispatcher dispatcher;
+    SseEmitter emitter;
+    List<IOException> failures;
+    SseConnection connection;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        scheduled = new ArrayList<>();
+        // Writer chỉ chạy khi test gọi runWriters(), để dựng được trạng thái client chậm
+        ExecutorService writers = mock(ExecutorService.class);
+        doAnswer(inv -> scheduled.add(inv.getArgument(0))).when(writers).execute(any());
+        dispatcher = new SseDispatcher(meterRegistry, 3, List.of("progress"), writers);
+        emitter = mock(SseEmitter.class);
+        failures = new ArrayList<>();
+        connection = dispatcher.open(UUID.randomUUID(), emitter, (failed, e) -> failures.add(e));
+    }
+
+    private void runWriters() {
+        while (!scheduled.isEmpty()) {
+            scheduled.remove(0).run();
+        }
+    }
+
+    private static SseEventBus.Event event(long id, String status) {
+        return event(id, status, null);
+    }
+
+    private static SseEventBus.Event event(long id, String status, String key) {
+        return new SseEventBus.Event(id, status, key, "{}");
+    }
+
+    private double dropped(String reason) {
+        return meterRegistry.get("sse.events.dropped").tag("reason", reason).counter().count();
+    }
+
+    @Test
+    void deliver_beforeReplay_onlyQueues() throws Exception {
+        connection.deliver(event(3, "success"));
+
+        assertTrue(scheduled.isEmpty());
+        assertEquals(1, connection.queued());
+        verify(emitter, never()).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void replayed_sendsMissedFirst_andSkipsDuplicateIds() throws Exception {
+        connection.deliver(event(3, "success"));
+        connection.replayed(List.of(event(2, "success"), event(3, "success")));
+        runWriters();
+        connection.deliver(event(3, "success"));
+        connection.deliver(event(4, "success"));
+        runWriters();
+
+        verify(emitter, times(3)).send(any(SseEmitter.SseEventBuilder.class));
+        assertEquals(0.0, meterRegistry.get("sse.queue.depth").gauge().value());
+        assertEquals(3, meterRegistry.get("sse.send.latency").timer().count());
+    }
+
+    @Test
+    void slowClient_keepsOnlyLatestCoalescedStatusPerKey() {
+        connection.replayed(List.of());
+        connection.deliver(event(1, "progress", "task-a"));
+        connection.deliver(event(2, "progress", "task-b"));
+        connection.deliver(event(3, "progress", "task-a"));
+
+        assertEquals(2, connection.queued());
+        assertEquals(1.0, dropped("coalesced"));
+    }
+
+    @Test
+    void slowClient_coalescedStatusWithoutKey_isNotMerged() {
+        connection.replayed(List.of());
+        connection.deliver(event(1, "progress"));
+        connection.deliver(event(2, "progress"));
+
+        assertEquals(2, connection.queued());
+        assertEquals(0.0, dropped("coalesced"));
+    }
+
+    @Test
+    void replayed_moreThanCapacity_keepsNewestWithinBound() throws Exception {
+        connection.deliver(event(6, "success"));
+        connection.replayed(List.of(event(1, "success"), event(2, "success"), event(3, "success"),
+                event(4, "success"), event(5, "success")));
+
+        assertEquals(3, connection.queued());
+        assertEquals(3.0, dropped("overflow"));
+        assertEquals(3.0, meterRegistry.get("sse.queue.depth").gauge().value());
+        runWriters();
+        verify(emitter, times(3)).send(any(SseEmitter.SseEventBuilder.class));
+    }
+
+    @Test
+    void replayed_progressOfSameTask_coalescedWithLiveEvent() {
+        connection.deliver(event(4, "progress", "task-a"));
+        connection.replayed(List.of(event(2, "progress", "task-a"), event(3, "progress", "task-a")));
+
+        assertEquals(1, connection.queued());
+        assertEquals(2.0, dropped("coalesced"));
+    }
+
+    @Test
+    void slowClient_fullQueue_dropsOldest() {
+        connection.replayed(List.of());
+        for (int id = 1; id <= 5; id++) {
+            connection.deliver(event(id, "success"));
+        }
+
+        assertEquals(3, connection.queued());
+        assertEquals(2.0, dropped("overflow"));
+        assertEquals(3.0, meterRegistry.get("sse.queue.depth").gauge().value());
+    }
+
+    @Test
+    void sendFailure_closesConnectionAndReportsFailure() throws Exception {
+        doThrow(new IOException("broken pipe")).when(emitter).send(any(SseEmitter.SseEventBuilder.class));
+        connection.replayed(List.of());
+        connection.deliver(event(1, "success"));
+        connection.deliver(event(2, "success"));
+        runWriters();
+
+        assertEquals(1, failures.size());
+        assertEquals(0, connection.queued());
+        assertEquals(0.0, meterRegistry.get("sse.connections").gauge().value());
+        connection.deliver(event(3, "success"));
+        assertEquals(0, connection.queued());
+    }
+}
@@ -0,0 +1,257 @@
+package com.fptu.sep490.notificationservice.component;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.testcontainers.DockerClientFactory;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.utility.DockerImageName;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Chạy các script PUBLISH / REGISTER / REFRESH và replay của {@link SseEventBus} trên Redis thật (container).
+ * Bỏ qua khi máy không có Docker.
+ */
+class SseEventBusRedisTest {
+    static final Duration BUFFER_TTL = Duration.ofMinutes(10);
+    static final Duration CONNECTION_TTL = Duration.ofSeconds(90);
+
+    static GenericContainer<?> redis;
+    static LettuceConnectionFactory connectionFactory;
+    static StringRedisTemplate redisTemplate;
+
+    RedisMessageListenerContainer listenerContainer;
+
+    @BeforeAll
+    static void startRedis() {
+        assumeTrue(DockerClientFactory.instance().isDockerAvailable(), "Docker is not available");
+        redis = new GenericContainer<>(DockerImageName.parse("redis:7-alpine")).withExposedPorts(6379);
+        redis.start();
+        connectionFactory = new LettuceConnectionFactory(
+                new RedisStandaloneConfiguration(redis.getHost(), redis.getMappedPort(6379)));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        redisTemplate = new StringRedisTemplate(connectionFactory);
+    }
+
+    @AfterAll
+    static void stopRedis() {
+        if (connectionFactory != null) {
+            connectionFactory.destroy();
+        }
+        if (redis != null) {
+            redis.stop();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        redisTemplate.execute((RedisCallback<Void>) connection -> {
+            connection.serverCommands().flushAll();
+            return null;
+        });
+        listenerContainer = new RedisMessageListenerContainer();
+        listenerContainer.setConnectionFactory(connectionFactory);
+        listenerContainer.afterPropertiesSet();
+        listenerContainer.start();
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        listenerContainer.stop();
+        listenerContainer.destroy();
+    }
+
+    @Test
+    void publish_withoutConnection_buffersEventsForReplay() {
+        SseEventBus bus = bus(50);
+        UUID clientId = UUID.randomUUID();
+
+        assertEquals(1, bus.publish(clientId, "progress", "task-1", "{\"message\":\"Uploaded 10%\"}"));
+        assertEquals(2, bus.publish(clientId, "success", null, "{\"message\": \"File uploaded\"}"));
+
+        assertEquals(List.of(
+                new SseEventBus.Event(1, "progress", "task-1", "{\"message\":\"Uploaded 10%\"}"),
+                new SseEventBus.Event(2, "success", null, "{\"message\": \"File uploaded\"}")
+        ), bus.replay(clientId, 0));
+        assertEquals(List.of(2L), bus.replay(clientId, 1).stream().map(SseEventBus.Event::id).toList());
+        assertTrue(bus.replay(clientId, 2).isEmpty());
+
+        long bufferTtl = redisTemplate.getExpire(SseEventBus.BUFFER_KEY + clientId, TimeUnit.MILLISECONDS);
+        assertTrue(bufferTtl > 0 && bufferTtl <= BUFFER_TTL.toMillis());
+        assertTrue(redisTemplate.getExpire(SseEventBus.SEQUENCE_KEY + clientId, TimeUnit.MILLISECONDS) > BUFFER_TTL.toMillis());
+    }
+
+    @Test
+    void publish_overBufferSize_keepsNewestEntries() {
+        SseEventBus bus = bus(3);
+        UUID clientId = UUID.randomUUID();
+
+        for (int i = 0; i < 5; i++) {
+            bus.publish(clientId, "success", null, "{}");
+        }
+
+        assertEquals(3L, redisTemplate.opsForList().size(SseEventBus.BUFFER_KEY + clientId));
+        assertEquals(List.of(3L, 4L, 5L), bus.replay(clientId, 0).stream().map(SseEventBus.Event::id).toList());
+    }
+
+    @Test
+    void publish_statusWithSpaces_isStoredAsOneToken() {
+        SseEventBus bus = bus(50);
+        UUID clientId = UUID.randomUUID();
+
+        bus.publish(clientId, "in progress", "task 1", "{\"a\": \"b c\"}");
+
+        assertEquals(List.of(new SseEventBus.Event(1, "in_progress", "task_1", "{\"a\": \"b c\"}")), bus.replay(clientId, 0));
+    }
+
+    @Test
+    void publish_registeredClient_reachesOwningNodeOnly() throws Exception {
+        SseEventBus nodeA = bus(50);
+        SseEventBus nodeB = bus(50);
+        RecordingHandler handlerA = listen(nodeA);
+        RecordingHandler handlerB = listen(nodeB);
+        awaitSubscribedNodes(2);
+        UUID clientId = UUID.randomUUID();
+
+        nodeA.register(clientId);
+        long id = nodeB.publish(clientId, "progress", "task-1", "{\"message\":\"Uploaded 5%\"}");
+
+        assertEquals(new SseEventBus.Event(id, "progress", "task-1", "{\"message\":\"Uploaded 5%\"}"),
+                handlerA.events.poll(5, TimeUnit.SECONDS));
+        assertNull(handlerB.events.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, nodeA.replay(clientId, 0).size());
+    }
+
+    @Test
+    void register_onAnotherNode_closesPreviousConnectionAndMovesDelivery() throws Exception {
+        SseEventBus nodeA = bus(50);
+        SseEventBus nodeB = bus(50);
+        RecordingHandler handlerA = listen(nodeA);
+        RecordingHandler handlerB = listen(nodeB);
+        awaitSubscribedNodes(2);
+        UUID clientId = UUID.randomUUID();
+
+        nodeA.register(clientId);
+        nodeA.register(clientId);
+        assertNull(handlerA.replaced.poll(200, TimeUnit.MILLISECONDS));
+
+        nodeB.register(clientId);
+        assertEquals(clientId, handlerA.replaced.poll(5, TimeUnit.SECONDS));
+
+        nodeA.publish(clientId, "success", null, "{}");
+        assertNotNull(handlerB.events.poll(5, TimeUnit.SECONDS));
+        assertNull(handlerA.events.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void refreshAndUnregister_onlyTouchConnectionsOwnedByNode() {
+        SseEventBus nodeA = bus(50);
+        SseEventBus nodeB = bus(50);
+        UUID ownedByA = UUID.randomUUID();
+        UUID ownedByB = UUID.randomUUID();
+        nodeA.register(ownedByA);
+        nodeB.register(ownedByB);
+        shortenTtl(ownedByA);
+        shortenTtl(ownedByB);
+
+        nodeA.refresh(List.of(ownedByA, ownedByB));
+
+        assertTrue(connectionTtl(ownedByA) > 1_000);
+        assertTrue(connectionTtl(ownedByB) <= 1_000);
+
+        nodeA.unregister(ownedByB);
+        assertEquals(Boolean.TRUE, redisTemplate.hasKey(SseEventBus.CONNECTION_KEY + ownedByB));
+        nodeB.unregister(ownedByB);
+        nodeA.unregister(ownedByA);
+        assertEquals(Boolean.FALSE, redisTemplate.hasKey(SseEventBus.CONNECTION_KEY + ownedByB));
+        assertEquals(Boolean.FALSE, redisTemplate.hasKey(SseEventBus.CONNECTION_KEY + ownedByA));
+    }
+
+    @Test
+    void refresh_moreClientsThanBatchSize_refreshesAll() {
+        SseEventBus bus = bus(50);
+        List<UUID> clientIds = new ArrayList<>();
+        for (int i = 0; i <= SseEventBus.REFRESH_BATCH_SIZE; i++) {
+            UUID clientId = UUID.randomUUID();
+            bus.register(clientId);
+            shortenTtl(clientId);
+            clientIds.add(clientId);
+        }
+
+        bus.refresh(clientIds);
+
+        assertTrue(connectionTtl(clientIds.getFirst()) > 1_000);
+        assertTrue(connectionTtl(clientIds.getLast()) > 1_000);
+    }
+
+    private SseEventBus bus(int bufferSize) {
+        return new SseEventBus(redisTemplate, listenerContainer, "notification-service", bufferSize, BUFFER_TTL, CONNECTION_TTL);
+    }
+
+    private static RecordingHandler listen(SseEventBus bus) {
+        RecordingHandler handler = new RecordingHandler();
+        bus.listen(handler);
+        return handler;
+    }
+
+    // Container subscribe bất đồng bộ, publish trước khi subscribe xong sẽ mất message
+    private static void awaitSubscribedNodes(int nodes) throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            List<?> channels = redisTemplate.execute((RedisCallback<List<?>>) connection -> pubSubChannels(connection));
+            if (channels != null && channels.size() >= nodes) {
+                return;
+            }
+            Thread.sleep(50);
+        }
+        fail("Listener container did not subscribe to " + nodes + " node channels");
+    }
+
+    private static List<?> pubSubChannels(RedisConnection connection) {
+        Object reply = connection.execute("PUBSUB", "CHANNELS".getBytes(StandardCharsets.UTF_8),
+                (SseEventBus.NODE_CHANNEL + "*").getBytes(StandardCharsets.UTF_8));
+        return reply instanceof List<?> list ? list : List.of();
+    }
+
+    private static void shortenTtl(UUID clientId) {
+        redisTemplate.expire(SseEventBus.CONNECTION_KEY + clientId, Duration.ofSeconds(1));
+    }
+
+    private static long connectionTtl(UUID clientId) {
+        return redisTemplate.getExpire(SseEventBus.CONNECTION_KEY + clientId, TimeUnit.MILLISECONDS);
+    }
+
+    static final class RecordingHandler implements SseEventBus.Handler {
+        final BlockingQueue<SseEventBus.Event> events = new LinkedBlockingQueue<>();
+        final BlockingQueue<UUID> replaced = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onEvent(UUID clientId, SseEventBus.Event event) {
+            events.add(event);
+        }
+
+        @Override
+        public void onReplaced(UUID clientId) {
+            replaced.add(clientId);
+        }
+    }
+}
@@ -1,84 +1,110 @@
 package com.fptu.sep490.notificationservice.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.notificationservice.component.SseDispatcher;
+import com.fptu.sep490.notificationservice.component.SseEventBus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.TimeUnit;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 public class SseServiceImplTest {
 
+	SseEventBus bus;
+	SseDispatcher dispatcher;
+	SseServiceImpl service;
+
+	@BeforeEach
+	void setUp() {
+		bus = mock(SseEventBus.class);
+		dispatcher = new SseDispatcher(new SimpleMeterRegistry(), 8, List.of("progress"));
+		service = new SseServiceImpl(new ObjectMapper(), bus, dispatcher);
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<UUID, ?> connections() {
+		return (Map<UUID, ?>) ReflectionTestUtils.getField(service, "clientEmitters");
+	}
+
 	@Test
-	void subscribe_addsEmitter_and_onCompletionRemoves() {
-		SseServiceImpl service = new SseServiceImpl(new ObjectMapper());
+	void constructor_listensOnBus() {
+		verify(bus).listen(service);
+	}
+
+	@Test
+	void subscribe_registersConnection_and_completionReleases() {
 		UUID clientId = UUID.randomUUID();
-		SseEmitter emitter = service.subscribe(clientId);
+		SseEmitter emitter = service.subscribe(clientId, null);
 		assertNotNull(emitter);
-		@SuppressWarnings("unchecked")
-		Map<UUID, SseEmitter> map = (Map<UUID, SseEmitter>) ReflectionTestUtils.getField(service, "clientEmitters");
-		assertTrue(map.containsKey(clientId));
-		CountDownLatch latch = new CountDownLatch(1);
-		emitter.onCompletion(latch::countDown);
-		emitter.complete();
-		try { latch.await(1, TimeUnit.SECONDS); } catch (InterruptedException ignored) {}
-		assertFalse(!map.containsKey(clientId));
+		assertTrue(connections().containsKey(clientId));
+		verify(bus).register(clientId);
+		verify(bus, never()).replay(any(), anyLong());
+	}
+
+	@Test
+	void subscribe_withLastEventId_replaysFromBuffer() {
+		UUID clientId = UUID.randomUUID();
+		when(bus.replay(clientId, 5L)).thenReturn(List.of(new SseEventBus.Event(6, "ok", null, "{}")));
+		service.subscribe(clientId, "5");
+		verify(bus).replay(clientId, 5L);
 	}
 
 	@Test
-	void sendMessage_withEmitter_success_keepsEmitter() throws Exception {
-		SseServiceImpl service = new SseServiceImpl(new ObjectMapper());
+	void subscribe_twice_keepsLatestConnection() {
 		UUID clientId = UUID.randomUUID();
-		SseEmitter emitter = service.subscribe(clientId);
-		@SuppressWarnings("unchecked")
-		Map<UUID, SseEmitter> map = (Map<UUID, SseEmitter>) ReflectionTestUtils.getField(service, "clientEmitters");
-		service.sendMessage(clientId, "hello", "ok");
-		assertTrue(map.containsKey(clientId));
+		service.subscribe(clientId, null);
+		Object first = connections().get(clientId);
+		service.subscribe(clientId, null);
+		assertNotSame(first, connections().get(clientId));
+		assertEquals(1, connections().size());
 	}
 
 	@Test
-	void sendMessage_emitterAbsent_noop() {
-		SseServiceImpl service = new SseServiceImpl(new ObjectMapper());
-		service.sendMessage(UUID.randomUUID(), "msg", "ok");
-		// no exception expected
+	void sendMessage_publishesSerializedMessageToBus() {
+		UUID clientId = UUID.randomUUID();
+		service.sendMessage(clientId, "hello", "ok", "task-1");
+		verify(bus).publish(eq(clientId), eq("ok"), eq("task-1"), contains("\"message\":\"hello\""));
 	}
 
 	@Test
-	void sendMessage_serializationThrowsIOException_removesEmitter() throws Exception {
+	void sendMessage_serializationFails_doesNotPublish() throws Exception {
 		ObjectMapper mapper = mock(ObjectMapper.class);
 		when(mapper.writeValueAsString(any())).thenThrow(new com.fasterxml.jackson.core.JsonProcessingException("boom"){});
-		SseServiceImpl service = new SseServiceImpl(mapper);
+		SseServiceImpl failing = new SseServiceImpl(mapper, bus, dispatcher);
+		failing.sendMessage(UUID.randomUUID(), "msg", "fail", null);
+		verify(bus, never()).publish(any(), anyString(), any(), anyString());
+	}
+
+	@Test
+	void onEvent_noConnection_noop() {
+		assertDoesNotThrow(() -> service.onEvent(UUID.randomUUID(), new SseEventBus.Event(1, "ok", null, "{}")));
+	}
+
+	@Test
+	void onReplaced_removesLocalConnection() {
 		UUID clientId = UUID.randomUUID();
-		service.subscribe(clientId);
-		@SuppressWarnings("unchecked")
-		Map<UUID, SseEmitter> map = (Map<UUID, SseEmitter>) ReflectionTestUtils.getField(service, "clientEmitters");
-		assertTrue(map.containsKey(clientId));
-		service.sendMessage(clientId, "msg", "fail");
-		assertFalse(map.containsKey(clientId));
+		service.subscribe(clientId, null);
+		service.onReplaced(clientId);
+		assertFalse(connections().containsKey(clientId));
 	}
 
 	@Test
-	void subscribe_onErrorRemoves() {
-		SseServiceImpl service = new SseServiceImpl(new ObjectMapper());
+	void refreshConnections_refreshesLocalClients() {
 		UUID clientId = UUID.randomUUID();
-		SseEmitter emitter = service.subscribe(clientId);
-		@SuppressWarnings("unchecked")
-		Map<UUID, SseEmitter> map = (Map<UUID, SseEmitter>) ReflectionTestUtils.getField(service, "clientEmitters");
-		assertTrue(map.containsKey(clientId));
-		emitter.completeWithError(new RuntimeException("err"));
-		// onError callback may execute asynchronously; wait briefly for removal
-		for (int i = 0; i < 20 && map.containsKey(clientId); i++) {
-			try { Thread.sleep(10); } catch (InterruptedException ignored) {}
-		}
-		assertFalse(!map.containsKey(clientId));
+		service.subscribe(clientId, null);
+		service.refreshConnections();
+		verify(bus).refresh(List.of(clientId));
 	}
 }
-
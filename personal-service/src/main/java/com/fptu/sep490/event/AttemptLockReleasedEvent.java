@@ -0,0 +1,14 @@
+package com.fptu.sep490.event;
+
+import lombok.Builder;
+
+import java.util.UUID;
+
+@Builder
+public record AttemptLockReleasedEvent(
+        UUID attemptId,
+        String sessionId,
+        String userId,
+        Long releasedAt
+) {
+}
@@ -4,8 +4,12 @@ import lombok.Builder;
 
 import java.util.UUID;
 
+/**
+ * @param key định danh tác vụ (vd. taskId của lần upload), có thể null; notification-service chỉ gộp các event
+ *            {@code progress} có cùng status và key
+ */
 @Builder
 public record SseEvent(
-        UUID clientId, String message, String status
+        UUID clientId, String message, String status, String key
 ) {
 }
@@ -0,0 +1,88 @@
+package com.fptu.sep490.personalservice.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.fptu.sep490.personalservice.constants.Constants;
+import com.fptu.sep490.personalservice.service.AIService;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Lưu phiên chat với AI tutor trên Redis (dùng chung giữa các replica), hết hạn sau {@code ttl} không hoạt động.
+ * Khi prefix {@value Constants.RedisKey#AI_CHAT_SESSION} nằm trong {@code redis.near-cache.key-prefixes},
+ * {@link RedisService} giữ thêm tầng local giới hạn số entry (LRU) và được invalidate khi replica khác ghi.
+ * Kích thước mỗi phiên được giữ nhỏ nhờ {@link ChatHistoryCompactor}.
+ */
+@Slf4j
+@Component
+public class AIChatSessionStore {
+    private final RedisService redisService;
+    private final Duration ttl;
+    private final DistributionSummary sessionChars;
+
+    public AIChatSessionStore(RedisService redisService,
+                              MeterRegistry meterRegistry,
+                              @Value("${ai-chat.session-ttl:PT30M}") Duration ttl) {
+        this.redisService = redisService;
+        this.ttl = ttl;
+        this.sessionChars = DistributionSummary.builder("ai_chat.session.size")
+                .baseUnit("chars")
+                .register(meterRegistry);
+    }
+
+    /**
+     * @return phiên đã lưu, hoặc phiên rỗng nếu chưa có / đã hết hạn / Redis lỗi
+     */
+    public Session load(String sessionId) {
+        try {
+            Session session = redisService.getValue(key(sessionId), Session.class);
+            return session != null ? session : Session.EMPTY;
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not load AI chat session {}: {}", sessionId, e.getMessage());
+            return Session.EMPTY;
+        }
+    }
+
+    public void save(String sessionId, Session session) {
+        sessionChars.record(session.chars());
+        try {
+            redisService.saveValue(key(sessionId), session, ttl);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.warn("Could not save AI chat session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    public void remove(String sessionId) {
+        try {
+            redisService.delete(key(sessionId));
+        } catch (RuntimeException e) {
+            log.warn("Could not remove AI chat session {}: {}", sessionId, e.getMessage());
+        }
+    }
+
+    private static String key(String sessionId) {
+        return Constants.RedisKey.AI_CHAT_SESSION + sessionId;
+    }
+
+    /**
+     * @param summary tóm tắt các lượt cũ đã bị gộp, null nếu chưa gộp lượt nào
+     * @param turns   các lượt gần nhất, thứ tự cũ → mới (không gồm system context)
+     */
+    public record Session(String summary, List<AIService.ChatMessage> turns) {
+        public static final Session EMPTY = new Session(null, List.of());
+
+        long chars() {
+            long chars = summary != null ? summary.length() : 0;
+            for (AIService.ChatMessage turn : turns) {
+                chars += turn.content() != null ? turn.content().length() : 0;
+            }
+            return chars;
+        }
+    }
+}
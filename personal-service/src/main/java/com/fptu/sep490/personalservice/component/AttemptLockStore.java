@@ -0,0 +1,254 @@
+package com.fptu.sep490.personalservice.component;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.event.AttemptLockReleasedEvent;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Khóa attempt dùng chung giữa các node, mỗi attempt là một hash Redis
+ * {@code attempt_lock:<attemptId>} gồm {@code sessionId}, {@code userId}, {@code registeredAt}, {@code lastPing}.
+ * Mọi thao tác đổi chủ khóa là một script Lua (compare-and-set), không có đoạn đọc rồi ghi tách rời.
+ * <p>
+ * Sorted set {@code attempt_lock:deadlines} giữ hạn heartbeat (lastPing + timeout) của từng khóa, member là key của khóa,
+ * để {@link #sweep} chỉ đọc các khóa đã đến hạn thay vì SCAN toàn bộ key.
+ * Script sweep truy cập key lấy từ sorted set nên chỉ dùng được với Redis không chạy cluster.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AttemptLockStore {
+    static final String ATTEMPT_LOCK_PREFIX = "attempt_lock:";
+    static final String DEADLINES_KEY = "attempt_lock:deadlines";
+    public static final String RELEASED_CHANNEL = "attempt_lock:released";
+    // Số key tối đa trong một lần gọi script touch
+    static final int TOUCH_BATCH_SIZE = 500;
+
+    // KEYS: lock, deadlines; ARGV: sessionId, userId, now, heartbeatTimeoutMs, ttlMs
+    static final RedisScript<Long> ACQUIRE = new DefaultRedisScript<>("""
+            local owner = redis.call('HMGET', KEYS[1], 'sessionId', 'userId', 'lastPing')
+            local sameOwner = owner[1] == ARGV[1] and owner[2] == ARGV[2]
+            if owner[1] and not sameOwner
+                    and tonumber(ARGV[3]) - tonumber(owner[3] or '0') < tonumber(ARGV[4]) then
+                return 0
+            end
+            if not sameOwner then
+                redis.call('HSET', KEYS[1], 'sessionId', ARGV[1], 'userId', ARGV[2], 'registeredAt', ARGV[3])
+            end
+            redis.call('HSET', KEYS[1], 'lastPing', ARGV[3])
+            redis.call('PEXPIRE', KEYS[1], ARGV[5])
+            redis.call('ZADD', KEYS[2], tonumber(ARGV[3]) + tonumber(ARGV[4]), KEYS[1])
+            return 1
+            """, Long.class);
+
+    // KEYS: deadlines, rồi các lock; ARGV: ttlMs, heartbeatTimeoutMs, rồi từng cặp (sessionId, lastPing) theo thứ tự lock;
+    // trả về vị trí (từ 1) các lock đã mất khóa
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static final RedisScript<List> TOUCH = new DefaultRedisScript<>("""
+            local lost = {}
+            for i = 2, #KEYS do
+                local n = i - 1
+                if redis.call('HGET', KEYS[i], 'sessionId') == ARGV[2 * n + 1] then
+                    redis.call('HSET', KEYS[i], 'lastPing', ARGV[2 * n + 2])
+                    redis.call('PEXPIRE', KEYS[i], ARGV[1])
+                    redis.call('ZADD', KEYS[1], tonumber(ARGV[2 * n + 2]) + tonumber(ARGV[2]), KEYS[i])
+                else
+                    table.insert(lost, n)
+                end
+            end
+            return lost
+            """, List.class);
+
+    // KEYS: lock, deadlines; ARGV: sessionId
+    static final RedisScript<Long> RELEASE = new DefaultRedisScript<>("""
+            if redis.call('HGET', KEYS[1], 'sessionId') == ARGV[1] then
+                redis.call('ZREM', KEYS[2], KEYS[1])
+                return redis.call('DEL', KEYS[1])
+            end
+            return 0
+            """, Long.class);
+
+    // KEYS: lock, deadlines; ARGV: now, heartbeatTimeoutMs; trả về {sessionId, userId} của chủ vừa bị giải phóng
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static final RedisScript<List> RELEASE_IF_EXPIRED = new DefaultRedisScript<>("""
+            local owner = redis.call('HMGET', KEYS[1], 'sessionId', 'userId', 'lastPing')
+            if not owner[1] then
+                redis.call('ZREM', KEYS[2], KEYS[1])
+                return {}
+            end
+            if tonumber(ARGV[1]) - tonumber(owner[3] or '0') >= tonumber(ARGV[2]) then
+                redis.call('DEL', KEYS[1])
+                redis.call('ZREM', KEYS[2], KEYS[1])
+                return {owner[1], owner[2] or ''}
+            end
+            return {}
+            """, List.class);
+
+    // KEYS: deadlines; ARGV: now, expiredAfterMs, heartbeatTimeoutMs, limit
+    // Lấy tối đa limit khóa có hạn <= now - (expiredAfter - heartbeatTimeout), kiểm tra lại lastPing rồi xóa;
+    // trả về danh sách phẳng {lockKey, sessionId, userId, ...}
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    static final RedisScript<List> SWEEP = new DefaultRedisScript<>("""
+            local now = tonumber(ARGV[1])
+            local expiredAfter = tonumber(ARGV[2])
+            local maxDeadline = now - expiredAfter + tonumber(ARGV[3])
+            local due = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', maxDeadline, 'LIMIT', 0, tonumber(ARGV[4]))
+            local released = {}
+            for _, key in ipairs(due) do
+                local owner = redis.call('HMGET', key, 'sessionId', 'userId', 'lastPing')
+                if not owner[1] then
+                    redis.call('ZREM', KEYS[1], key)
+                elseif now - tonumber(owner[3] or '0') >= expiredAfter then
+                    redis.call('DEL', key)
+                    redis.call('ZREM', KEYS[1], key)
+                    table.insert(released, key)
+                    table.insert(released, owner[1])
+                    table.insert(released, owner[2] or '')
+                else
+                    redis.call('ZADD', KEYS[1], tonumber(owner[3]) + tonumber(ARGV[3]), key)
+                end
+            end
+            return released
+            """, List.class);
+
+    StringRedisTemplate stringRedisTemplate;
+    ObjectMapper objectMapper;
+
+    /**
+     * Giành khóa nếu attempt chưa có chủ, chủ hiện tại là chính session / user này, hoặc chủ hiện tại đã quá hạn heartbeat.
+     */
+    public boolean acquire(UUID attemptId, String sessionId, String userId, long now,
+                           Duration heartbeatTimeout, Duration ttl) {
+        Long acquired = stringRedisTemplate.execute(ACQUIRE, List.of(key(attemptId), DEADLINES_KEY),
+                sessionId, userId, String.valueOf(now),
+                String.valueOf(heartbeatTimeout.toMillis()), String.valueOf(ttl.toMillis()));
+        return acquired != null && acquired == 1L;
+    }
+
+    /**
+     * @return chủ hiện tại của khóa, null nếu attempt chưa bị khóa
+     */
+    public Owner getOwner(UUID attemptId) {
+        List<Object> fields = stringRedisTemplate.opsForHash()
+                .multiGet(key(attemptId), List.of("sessionId", "userId", "lastPing"));
+        if (fields == null || fields.get(0) == null) {
+            return null;
+        }
+        Object lastPing = fields.get(2);
+        return new Owner((String) fields.get(0), (String) fields.get(1),
+                lastPing != null ? Long.parseLong(lastPing.toString()) : 0L);
+    }
+
+    /**
+     * Ghi lastPing của nhiều session (write-behind) và gia hạn TTL, chỉ với key còn đúng session làm chủ.
+     *
+     * @param lastPings attemptId -> (sessionId, lastPing)
+     * @return các attempt mà session local không còn giữ khóa trên Redis
+     */
+    public Set<UUID> touch(Map<UUID, Heartbeat> lastPings, Duration heartbeatTimeout, Duration ttl) {
+        Set<UUID> lost = new HashSet<>();
+        List<Map.Entry<UUID, Heartbeat>> entries = new ArrayList<>(lastPings.entrySet());
+        for (int from = 0; from < entries.size(); from += TOUCH_BATCH_SIZE) {
+            List<Map.Entry<UUID, Heartbeat>> batch = entries.subList(from, Math.min(from + TOUCH_BATCH_SIZE, entries.size()));
+            List<String> keys = new ArrayList<>(batch.size() + 1);
+            List<String> args = new ArrayList<>(batch.size() * 2 + 2);
+            keys.add(DEADLINES_KEY);
+            args.add(String.valueOf(ttl.toMillis()));
+            args.add(String.valueOf(heartbeatTimeout.toMillis()));
+            for (Map.Entry<UUID, Heartbeat> entry : batch) {
+                keys.add(key(entry.getKey()));
+                args.add(entry.getValue().sessionId());
+                args.add(String.valueOf(entry.getValue().lastPing()));
+            }
+            List<?> lostIndexes = stringRedisTemplate.execute(TOUCH, keys, args.toArray());
+            if (lostIndexes != null) {
+                for (Object index : lostIndexes) {
+                    lost.add(batch.get(((Number) index).intValue() - 1).getKey());
+                }
+            }
+        }
+        return lost;
+    }
+
+    /**
+     * Xóa khóa nếu session này đang giữ nó.
+     */
+    public boolean release(UUID attemptId, String sessionId) {
+        Long released = stringRedisTemplate.execute(RELEASE, List.of(key(attemptId), DEADLINES_KEY), sessionId);
+        return released != null && released == 1L;
+    }
+
+    /**
+     * Xóa khóa nếu chủ hiện tại đã quá hạn heartbeat.
+     *
+     * @return chủ vừa bị xóa, null nếu không xóa
+     */
+    public AttemptLockReleasedEvent releaseIfExpired(UUID attemptId, long now, Duration heartbeatTimeout) {
+        List<?> owner = stringRedisTemplate.execute(RELEASE_IF_EXPIRED, List.of(key(attemptId), DEADLINES_KEY),
+                String.valueOf(now), String.valueOf(heartbeatTimeout.toMillis()));
+        if (owner == null || owner.isEmpty()) {
+            return null;
+        }
+        return released(attemptId, owner.get(0), owner.get(1), now);
+    }
+
+    /**
+     * Giải phóng tối đa {@code limit} khóa không có heartbeat trong {@code expiredAfter}.
+     * Chỉ đọc các member đã đến hạn trong sorted set nên chi phí tỉ lệ với số khóa hết hạn.
+     */
+    public List<AttemptLockReleasedEvent> sweep(long now, Duration expiredAfter, Duration heartbeatTimeout, int limit) {
+        List<?> released = stringRedisTemplate.execute(SWEEP, List.of(DEADLINES_KEY),
+                String.valueOf(now), String.valueOf(expiredAfter.toMillis()),
+                String.valueOf(heartbeatTimeout.toMillis()), String.valueOf(limit));
+        if (released == null || released.isEmpty()) {
+            return List.of();
+        }
+        List<AttemptLockReleasedEvent> events = new ArrayList<>(released.size() / 3);
+        for (int i = 0; i + 2 < released.size(); i += 3) {
+            UUID attemptId = UUID.fromString(released.get(i).toString().substring(ATTEMPT_LOCK_PREFIX.length()));
+            events.add(released(attemptId, released.get(i + 1), released.get(i + 2), now));
+        }
+        return events;
+    }
+
+    /**
+     * Báo cho mọi node (kể cả node này) rằng khóa đã được giải phóng, để node đang giữ WebSocket session báo cho client.
+     */
+    public void publishReleased(AttemptLockReleasedEvent event) throws JsonProcessingException {
+        stringRedisTemplate.convertAndSend(RELEASED_CHANNEL, objectMapper.writeValueAsString(event));
+    }
+
+    private static AttemptLockReleasedEvent released(UUID attemptId, Object sessionId, Object userId, long now) {
+        String user = userId != null ? userId.toString() : "";
+        return AttemptLockReleasedEvent.builder()
+                .attemptId(attemptId)
+                .sessionId(sessionId.toString())
+                .userId(user.isEmpty() ? null : user)
+                .releasedAt(now)
+                .build();
+    }
+
+    private static String key(UUID attemptId) {
+        return ATTEMPT_LOCK_PREFIX + attemptId;
+    }
+
+    public record Owner(String sessionId, String userId, long lastPing) {
+    }
+
+    public record Heartbeat(String sessionId, long lastPing) {
+    }
+}
@@ -2,6 +2,8 @@ package com.fptu.sep490.personalservice.component;
 
 import com.fptu.sep490.commonlibrary.constants.CookieConstants;
 import com.fptu.sep490.commonlibrary.exceptions.AccessDeniedException;
+import com.fptu.sep490.commonlibrary.security.AccessTokenValidator;
+import com.fptu.sep490.commonlibrary.security.RefreshTokenCoordinator;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
 import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 
@@ -26,6 +28,9 @@ import org.springframework.web.servlet.HandlerInterceptor;
 @RequiredArgsConstructor
 public class AuthTokenInterceptor implements HandlerInterceptor {
     ObjectProvider<KeyCloakTokenClient> keyCloakTokenClient;
+    AccessTokenValidator accessTokenValidator;
+    RefreshTokenCoordinator refreshTokenCoordinator;
+
     @Value("${keycloak.realm}")
     @NonFinal
     String realm;
@@ -45,7 +50,9 @@ public class AuthTokenInterceptor implements HandlerInterceptor {
         if(accessToken == null || refreshToken == null) {
             return true;
         }
-        boolean isValid = validateAccessToken(accessToken);
+        // Chỉ route nhạy cảm với thu hồi token mới gọi introspect, còn lại kiểm tra chữ ký local
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        boolean isValid = accessTokenValidator.isActive(accessToken, path, this::introspect);
         if (isValid) return true;
         MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
         form.add("grant_type", "refresh_token");
@@ -53,7 +60,9 @@ public class AuthTokenInterceptor implements HandlerInterceptor {
         form.add("client_secret", clientSecret);
         form.add("refresh_token", refreshToken);
         try {
-            KeyCloakTokenResponse keyCloakTokenResponse = keyCloakTokenClient.getObject().requestToken(form, realm);
+            // Các request song song cùng refresh token (kể cả ở service khác) nhận chung một cặp token mới
+            KeyCloakTokenResponse keyCloakTokenResponse = refreshTokenCoordinator.refresh(refreshToken,
+                    () -> keyCloakTokenClient.getObject().requestToken(form, realm));
             CookieUtils.setTokenCookies(response, keyCloakTokenResponse);
         } catch (Exception ex) {
             throw new AccessDeniedException(Constants.ErrorCode.UNAUTHORIZED, Constants.ErrorCodeMessage.UNAUTHORIZED);
@@ -61,7 +70,7 @@ public class AuthTokenInterceptor implements HandlerInterceptor {
         return true;
     }
 
-    private boolean validateAccessToken(String accessToken) {
+    private boolean introspect(String accessToken) {
         MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
         form.add("client_id", clientId);
         form.add("client_secret", clientSecret);
@@ -0,0 +1,103 @@
+package com.fptu.sep490.personalservice.component;
+
+import com.fptu.sep490.personalservice.viewmodel.request.ChatMessage;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * Giữ {@code capacity} tin nhắn mới nhất của các group đang hoạt động để join group không phải đọc DB.
+ * Group không có hoạt động trong {@code idle} bị bỏ khỏi bộ nhớ, lần join sau nạp lại từ DB.
+ * Broker STOMP là simple broker trong process nên buffer theo node là đủ.
+ */
+@Component
+public class ChatHistoryBuffer {
+    private final int capacity;
+    private final Cache<String, Ring> rings;
+
+    public ChatHistoryBuffer(@Value("${chat.history-buffer.capacity:50}") int capacity,
+                             @Value("${chat.history-buffer.max-groups:1000}") long maxGroups,
+                             @Value("${chat.history-buffer.idle:PT30M}") Duration idle) {
+        this.capacity = capacity;
+        this.rings = Caffeine.newBuilder()
+                .maximumSize(maxGroups)
+                .expireAfterAccess(idle)
+                .build();
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * @param loader trả về tối đa {@link #capacity()} tin nhắn mới nhất, thứ tự cũ → mới; chỉ gọi khi group chưa có buffer
+     * @return tối đa {@code limit} tin nhắn mới nhất, thứ tự cũ → mới
+     */
+    public List<ChatMessage> latest(String groupId, int limit, Supplier<List<ChatMessage>> loader) {
+        Ring ring = rings.get(groupId, key -> {
+            Ring loaded = new Ring(capacity);
+            loader.get().forEach(loaded::append);
+            return loaded;
+        });
+        return ring.tail(limit);
+    }
+
+    /**
+     * Thêm tin nhắn vừa lưu vào buffer nếu group đang được giữ. Chờ lần nạp đang chạy của group (nếu có)
+     * rồi mới thêm; tin nhắn đã có trong lần nạp bị bỏ qua theo id. Hai lần gửi đồng thời có thể append lệch
+     * thứ tự id, nên tin nhắn được chèn đúng vị trí theo id.
+     */
+    public void append(String groupId, ChatMessage message) {
+        rings.asMap().computeIfPresent(groupId, (key, ring) -> {
+            ring.append(message);
+            return ring;
+        });
+    }
+
+    private static final class Ring {
+        private final int capacity;
+        // Thứ tự id tăng dần; capacity nhỏ nên chèn giữa list vẫn rẻ
+        private final List<ChatMessage> messages;
+
+        Ring(int capacity) {
+            this.capacity = capacity;
+            this.messages = new ArrayList<>(capacity + 1);
+        }
+
+        synchronized void append(ChatMessage message) {
+            Long id = message.getMessageId();
+            int position = messages.size();
+            if (id != null) {
+                while (position > 0 && isAfter(messages.get(position - 1), id)) {
+                    position--;
+                }
+                if (position > 0 && id.equals(messages.get(position - 1).getMessageId())) {
+                    return;
+                }
+                // Cũ hơn mọi tin nhắn đang giữ trong buffer đầy: nằm ngoài cửa sổ mới nhất
+                if (position == 0 && messages.size() == capacity) {
+                    return;
+                }
+            }
+            messages.add(position, message);
+            if (messages.size() > capacity) {
+                messages.removeFirst();
+            }
+        }
+
+        private static boolean isAfter(ChatMessage message, long id) {
+            return message.getMessageId() != null && message.getMessageId() > id;
+        }
+
+        synchronized List<ChatMessage> tail(int limit) {
+            List<ChatMessage> all = new ArrayList<>(messages);
+            return all.subList(Math.max(0, all.size() - limit), all.size());
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.fptu.sep490.personalservice.component;
+
+import com.fptu.sep490.personalservice.service.AIService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Giữ prompt chat AI dưới {@code promptTokenBudget} token (ước lượng 4 ký tự / token):
+ * <ul>
+ *     <li>Lượt cũ nhất bị bỏ khỏi lịch sử cho tới khi vừa budget, lượt mới nhất luôn được giữ</li>
+ *     <li>Mỗi lượt bị bỏ để lại một dòng rút gọn trong summary, summary giữ phần mới nhất trong {@code summaryTokenBudget}</li>
+ * </ul>
+ * Tóm tắt bằng cách cắt ngắn thay vì gọi model, nên không tốn thêm lời gọi Gemini mỗi lượt.
+ */
+@Component
+public class ChatHistoryCompactor {
+    static final int CHARS_PER_TOKEN = 4;
+    static final int SUMMARY_LINE_CHARS = 160;
+    static final String SUMMARY_ROLE = "summary";
+
+    private final int promptTokenBudget;
+    private final int summaryTokenBudget;
+    private final DistributionSummary promptTokens;
+    private final Counter compactedTurns;
+
+    public ChatHistoryCompactor(MeterRegistry meterRegistry,
+                                @Value("${ai-chat.prompt-token-budget:3000}") int promptTokenBudget,
+                                @Value("${ai-chat.summary-token-budget:400}") int summaryTokenBudget) {
+        this.promptTokenBudget = promptTokenBudget;
+        this.summaryTokenBudget = summaryTokenBudget;
+        this.promptTokens = DistributionSummary.builder("ai_chat.prompt.length")
+                .baseUnit("tokens")
+                .register(meterRegistry);
+        this.compactedTurns = Counter.builder("ai_chat.history.compacted").register(meterRegistry);
+    }
+
+    public AIChatSessionStore.Session compact(String systemContext, AIChatSessionStore.Session session) {
+        List<AIService.ChatMessage> turns = new ArrayList<>(session.turns());
+        StringBuilder summary = new StringBuilder(session.summary() != null ? session.summary() : "");
+        int fixed = estimateTokens(line("system", systemContext));
+        int turnTokens = 0;
+        for (AIService.ChatMessage turn : turns) {
+            turnTokens += estimateTokens(line(turn.role(), turn.content()));
+        }
+
+        int dropped = 0;
+        while (turns.size() > 1 && fixed + summaryTokens(summary) + turnTokens > promptTokenBudget) {
+            AIService.ChatMessage oldest = turns.remove(0);
+            turnTokens -= estimateTokens(line(oldest.role(), oldest.content()));
+            summary.append(condense(oldest)).append('\n');
+            trimSummary(summary);
+            dropped++;
+        }
+        if (dropped == 0) {
+            return session;
+        }
+        compactedTurns.increment(dropped);
+        return new AIChatSessionStore.Session(summary.toString(), List.copyOf(turns));
+    }
+
+    public String buildPrompt(String systemContext, AIChatSessionStore.Session session) {
+        StringBuilder sb = new StringBuilder(line("system", systemContext));
+        if (session.summary() != null && !session.summary().isEmpty()) {
+            sb.append(line(SUMMARY_ROLE, "Earlier conversation (condensed):\n" + session.summary()));
+        }
+        for (AIService.ChatMessage msg : session.turns()) {
+            sb.append(line(msg.role(), msg.content()));
+        }
+        String prompt = sb.toString().trim();
+        promptTokens.record(estimateTokens(prompt));
+        return prompt;
+    }
+
+    static int estimateTokens(String text) {
+        return text == null ? 0 : (text.length() + CHARS_PER_TOKEN - 1) / CHARS_PER_TOKEN;
+    }
+
+    private int summaryTokens(CharSequence summary) {
+        return summary.isEmpty() ? 0 : estimateTokens(summary.toString()) + 8;
+    }
+
+    // Bỏ các dòng cũ nhất của summary cho tới khi vừa budget
+    private void trimSummary(StringBuilder summary) {
+        int maxChars = summaryTokenBudget * CHARS_PER_TOKEN;
+        while (summary.length() > maxChars) {
+            int firstLineEnd = summary.indexOf("\n");
+            if (firstLineEnd < 0 || firstLineEnd + 1 >= summary.length()) {
+                summary.delete(0, summary.length() - maxChars);
+                return;
+            }
+            summary.delete(0, firstLineEnd + 1);
+        }
+    }
+
+    private static String condense(AIService.ChatMessage turn) {
+        String content = turn.content() == null ? "" : turn.content().replaceAll("\\s+", " ").trim();
+        if (content.length() > SUMMARY_LINE_CHARS) {
+            content = content.substring(0, SUMMARY_LINE_CHARS) + "...";
+        }
+        return "- " + turn.role() + ": " + content;
+    }
+
+    private static String line(String role, String content) {
+        return role + ": " + content + "\n";
+    }
+}
@@ -0,0 +1,82 @@
+package com.fptu.sep490.personalservice.component;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Gọi song song các service khác (reading, listening) cho các màn tổng hợp:
+ * <ul>
+ *     <li>Mỗi lời gọi chạy trên một virtual thread riêng, nên thời gian chờ bằng nhánh chậm nhất thay vì tổng các nhánh</li>
+ *     <li>Nhánh quá {@code fan-out.timeout-ms} hoặc lỗi trả về giá trị fallback, các nhánh còn lại vẫn được dùng</li>
+ *     <li>Thời gian mỗi nhánh được ghi vào timer {@code fan_out.call} với tag {@code leg} và {@code outcome}</li>
+ * </ul>
+ * Timeout nên nhỏ hơn read timeout của Feign để màn hình trả về trước khi Feign bỏ cuộc.
+ */
+@Slf4j
+@Component
+public class FanOutClient {
+    private final MeterRegistry meterRegistry;
+    private final Duration timeout;
+    private final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("fan-out-", 0).factory());
+
+    public FanOutClient(MeterRegistry meterRegistry,
+                        @Value("${fan-out.timeout-ms:4000}") long timeoutMs) {
+        this.meterRegistry = meterRegistry;
+        this.timeout = Duration.ofMillis(timeoutMs);
+    }
+
+    /**
+     * @param leg      tên nhánh dùng cho log và metric, ví dụ {@code reading.overview}
+     * @param call     lời gọi blocking (Feign)
+     * @param fallback giá trị dùng khi nhánh lỗi hoặc quá thời gian
+     * @return future không bao giờ hoàn thành với lỗi
+     */
+    public <T> CompletableFuture<T> call(String leg, Supplier<T> call, T fallback) {
+        long start = System.nanoTime();
+        return CompletableFuture.supplyAsync(call, executor)
+                .orTimeout(timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .handle((result, error) -> {
+                    if (error == null) {
+                        record(leg, "success", start);
+                        return result;
+                    }
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (cause instanceof TimeoutException) {
+                        record(leg, "timeout", start);
+                        log.warn("Fan-out call {} timed out after {} ms, using fallback", leg, timeout.toMillis());
+                    } else {
+                        record(leg, "error", start);
+                        log.warn("Fan-out call {} failed, using fallback", leg, cause);
+                    }
+                    return fallback;
+                });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void record(String leg, String outcome, long start) {
+        Timer.builder("fan_out.call")
+                .tag("leg", leg)
+                .tag("outcome", outcome)
+                .register(meterRegistry)
+                .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+}
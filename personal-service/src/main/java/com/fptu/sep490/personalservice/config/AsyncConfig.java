@@ -10,28 +10,6 @@ import java.util.concurrent.Executor;
 @EnableAsync
 @Configuration
 public class AsyncConfig {
-    @Bean(name = "markupExecutor")
-    public Executor markupExecutor() {
-        ThreadPoolTaskExecutor exec = new ThreadPoolTaskExecutor();
-        exec.setCorePoolSize(4);
-        exec.setMaxPoolSize(8);
-        exec.setQueueCapacity(100);
-        exec.setThreadNamePrefix("markup-");
-        exec.initialize();
-        return exec;
-    }
-
-    @Bean(name = "progressExecutor")
-    public Executor progressExecutor() {
-        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
-        executor.setCorePoolSize(4);
-        executor.setMaxPoolSize(8);
-        executor.setQueueCapacity(50);
-        executor.setThreadNamePrefix("progress-");
-        executor.initialize();
-        return executor;
-    }
-
     @Bean(name = "statsExecutor")
     public Executor statsExecutor() {
         ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
@@ -27,12 +27,20 @@ public class ScheduleConfig {
     }
 
     /**
-     * Clean up sessions that haven't sent heartbeat ping within 1 minute
-     * Runs every 30 seconds to ensure quick cleanup
+     * Clean up sessions that haven't sent heartbeat ping within 1 minute.
+     * Mỗi lần chạy chỉ đọc các khóa đã đến hạn nên có thể chạy dày
      */
-    @Scheduled(fixedRate = 30000) // 30 seconds
+    @Scheduled(fixedDelayString = "${attempt-session.sweep-interval-ms:5000}")
     public void cleanupInactiveHeartbeatSessions() {
         log.debug("Running scheduled cleanup of inactive heartbeat sessions");
         attemptSessionServiceImpl.cleanupInactiveHeartbeatSessions();
     }
+
+    /**
+     * Write-behind lastPing của các attempt session local xuống Redis
+     */
+    @Scheduled(fixedDelayString = "${attempt-session.heartbeat-flush-interval-ms:15000}")
+    public void flushAttemptSessionHeartbeats() {
+        attemptSessionServiceImpl.flushHeartbeats();
+    }
 }
@@ -25,6 +25,7 @@ public class Constants {
 
         public static final String USER_PROFILE = "user-profile";
         public static final String KEY_CLOAK_CLIENT_TOKEN = "keycloak-client-token";
+        public static final String AI_CHAT_SESSION = "ai-chat-session:";
     }
 
     public final class ErrorCode {
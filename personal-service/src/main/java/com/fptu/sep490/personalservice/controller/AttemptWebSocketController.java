@@ -1,11 +1,13 @@
 package com.fptu.sep490.personalservice.controller;
 
+import com.fptu.sep490.event.AttemptLockReleasedEvent;
 import com.fptu.sep490.personalservice.model.enumeration.AttemptSessionMessageType;
 import com.fptu.sep490.personalservice.service.AttemptSessionService;
 import com.fptu.sep490.personalservice.service.impl.AttemptSessionServiceImpl;
 import com.fptu.sep490.personalservice.viewmodel.request.AttemptSessionMessage;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.event.EventListener;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
@@ -42,9 +44,7 @@ public class AttemptWebSocketController {
                 attemptId, userId, sessionId);
         
         try {
-            // Check and cleanup any expired heartbeat sessions first
-            attemptSessionServiceImpl.cleanupExpiredHeartbeatSession(attemptId);
-            
+            // Đăng ký sẽ tự lấy lại khóa của session đã quá hạn heartbeat
             boolean registered = attemptSessionService.registerAttemptSession(attemptId, userId, sessionId);
             
             AttemptSessionMessage response = AttemptSessionMessage.builder()
@@ -221,4 +221,30 @@ public class AttemptWebSocketController {
             log.error("Error checking attempt status", e);
         }
     }
+
+    /**
+     * Báo khóa attempt đã được giải phóng do hết hạn heartbeat: gửi cho session vừa mất khóa
+     * và cho các client đang chờ trên topic của attempt. Chỉ client kết nối tới node này nhận được.
+     */
+    @EventListener
+    public void notifyLockReleased(AttemptLockReleasedEvent event) {
+        AttemptSessionMessage message = AttemptSessionMessage.builder()
+                .messageType(AttemptSessionMessageType.LOCK_RELEASED)
+                .attemptId(event.attemptId())
+                .userId(event.userId())
+                .sessionId(event.sessionId())
+                .timestamp(event.releasedAt())
+                .message("Attempt session expired due to missing heartbeat")
+                .build();
+        try {
+            messagingTemplate.convertAndSendToUser(
+                    event.sessionId(),
+                    "/queue/attempt.response",
+                    message
+            );
+            messagingTemplate.convertAndSend("/topic/attempt." + event.attemptId(), message);
+        } catch (Exception e) {
+            log.error("Error notifying attempt lock release", e);
+        }
+    }
 }
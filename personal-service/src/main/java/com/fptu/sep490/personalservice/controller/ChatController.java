@@ -1,15 +1,11 @@
 package com.fptu.sep490.personalservice.controller;
 
-import com.fptu.sep490.personalservice.model.ChatGroup;
-import com.fptu.sep490.personalservice.model.Message;
 import com.fptu.sep490.personalservice.model.enumeration.MessageType;
-import com.fptu.sep490.personalservice.repository.ChatGroupRepository;
-import com.fptu.sep490.personalservice.repository.MessageRepository;
 import com.fptu.sep490.personalservice.service.AIService;
+import com.fptu.sep490.personalservice.service.ChatMessageService;
 import com.fptu.sep490.personalservice.viewmodel.request.ChatMessage;
 import com.fptu.sep490.personalservice.viewmodel.response.AIResponse;
 import lombok.RequiredArgsConstructor;
-import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.messaging.handler.annotation.MessageMapping;
 import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.messaging.simp.SimpMessageHeaderAccessor;
@@ -18,11 +14,10 @@ import org.springframework.stereotype.Controller;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 
 import java.util.List;
-import java.util.Optional;
-import java.util.UUID;
 
 @Controller
 @RequiredArgsConstructor
@@ -30,9 +25,8 @@ import java.util.UUID;
 
 public class ChatController {
 
-    private final MessageRepository messageRepository;
     private final SimpMessageSendingOperations messagingTemplate;
-    private final ChatGroupRepository chatGroupRepository;
+    private final ChatMessageService chatMessageService;
 
     private final AIService chatService;
 
@@ -64,48 +58,18 @@ public class ChatController {
     }
     @GetMapping("/history/{groupId}")
     @ResponseBody
-    public List<ChatMessage> getChatHistory(@PathVariable String groupId) throws Exception {
-
-        ChatGroup group = chatGroupRepository.findById(groupId)
-                .orElseThrow(() -> new Exception("Group not found: " + groupId));
-
-        List<Message> messages = messageRepository.findByGroupIdOrderByCreatedAtAsc(group);
-
-        List<ChatMessage> chatMessages = messages.stream()
-                .map(m -> ChatMessage.builder()
-                        .senderId(m.getSenderId())
-                        .sender(m.getSenderName())
-                        .content(m.getContent())
-                        .groupId(group.getId())
-                        .build())
-                .toList();
-        return chatMessages;
+    public List<ChatMessage> getChatHistory(@PathVariable String groupId,
+                                            @RequestParam(required = false) Long before,
+                                            @RequestParam(required = false) Long after,
+                                            @RequestParam(defaultValue = "50") int size) {
+        return chatMessageService.getHistory(groupId, before, after, size);
     }
     /**
      * Gửi tin nhắn public (chat tổng)
      */
     @MessageMapping("chat.sendPublic")
     public void sendPublic(@Payload ChatMessage chatMessage) {
-        // Lưu tin nhắn public vào DB nếu muốn
-
-        Optional<ChatGroup> chatGroup = chatGroupRepository.findByName("Public Chat");
-        ChatGroup currentChatGroup = chatGroup.orElse(null);
-        if (chatGroup.isEmpty()) {
-            // Nếu không có nhóm chat, tạo nhóm chat mặc định
-            ChatGroup newChatGroup = new ChatGroup();
-            newChatGroup.setName("Public Chat");
-            chatGroupRepository.save(newChatGroup);
-            currentChatGroup = newChatGroup;
-        }
-        Message msg = Message.builder()
-                .group(currentChatGroup)
-                .senderId(chatMessage.getSenderId())
-                .senderName(chatMessage.getSender())
-                .content(chatMessage.getContent())
-                .build();
-        messageRepository.save(msg);
-
-        messagingTemplate.convertAndSend("/topic/public", chatMessage);
+        messagingTemplate.convertAndSend("/topic/public", chatMessageService.sendPublic(chatMessage));
     }
 
     /**
@@ -124,20 +88,10 @@ public class ChatController {
      * Gửi tin nhắn trong group cụ thể
      */
     @MessageMapping("chat.sendGroup")
-    public void sendGroup(@Payload ChatMessage chatMessage) throws Exception {
-        ChatGroup chatGroup = chatGroupRepository.findById(chatMessage.getGroupId()).
-                orElseThrow(() -> new Exception("Group not found: " + chatMessage.getGroupId()));
-        // Lưu tin nhắn nhóm vào DB
-        Message msg = Message.builder()
-                .group(chatGroup)
-                .senderId(chatMessage.getSenderId())
-                .senderName(chatMessage.getSender())
-                .content(chatMessage.getContent())
-                .build();
-        messageRepository.save(msg);
-
-        // Gửi tới topic của nhóm
-        messagingTemplate.convertAndSend("/topic/group." + chatMessage.getGroupId(), chatMessage);
+    public void sendGroup(@Payload ChatMessage chatMessage) {
+        // Lưu tin nhắn nhóm vào DB rồi gửi tới topic của nhóm
+        messagingTemplate.convertAndSend("/topic/group." + chatMessage.getGroupId(),
+                chatMessageService.sendGroup(chatMessage));
     }
 
     @MessageMapping("chat.joinGroup")
@@ -147,24 +101,12 @@ public class ChatController {
         messagingTemplate.convertAndSend("/topic/group." + chatMessage.getGroupId(), chatMessage);
     }
     @MessageMapping("chat.getMessages")
-    public void getMessages(@Payload ChatMessage chatMessage) throws Exception {
-        ChatGroup group = chatGroupRepository.findById(chatMessage.getGroupId())
-                .orElseThrow(() -> new Exception("Group not found: " + chatMessage.getGroupId()));
-
-        List<Message> messages = messageRepository.findByGroupIdOrderByCreatedAtAsc(group);
-
-        List<ChatMessage> chatMessages = messages.stream()
-                .map(m -> ChatMessage.builder()
-                        .senderId(m.getSenderId())
-                        .sender(m.getSenderName())
-                        .content(m.getContent())
-                        .groupId(group.getId())
-                        .build())
-                .toList();
+    public void getMessages(@Payload ChatMessage chatMessage) {
+        List<ChatMessage> chatMessages = chatMessageService.getHistory(chatMessage.getGroupId(), null, null, 50);
 
         messagingTemplate.convertAndSendToUser(
                 chatMessage.getSenderId(),
-                "/queue/messages." + group.getId(),
+                "/queue/messages." + chatMessage.getGroupId(),
                 chatMessages
         );
     }
@@ -0,0 +1,48 @@
+package com.fptu.sep490.personalservice.listener;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.event.AttemptLockReleasedEvent;
+import com.fptu.sep490.personalservice.component.AttemptLockStore;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Nhận thông báo giải phóng khóa attempt từ Redis pub/sub (do node bất kỳ sweep) và phát lại thành
+ * {@link AttemptLockReleasedEvent} trong node này, để node đang giữ WebSocket session báo cho client.
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class AttemptLockReleaseListener implements MessageListener {
+    ObjectMapper objectMapper;
+    ApplicationEventPublisher applicationEventPublisher;
+
+    public AttemptLockReleaseListener(ObjectMapper objectMapper,
+                                      ApplicationEventPublisher applicationEventPublisher,
+                                      RedisMessageListenerContainer redisMessageListenerContainer) {
+        this.objectMapper = objectMapper;
+        this.applicationEventPublisher = applicationEventPublisher;
+        redisMessageListenerContainer.addMessageListener(this, new ChannelTopic(AttemptLockStore.RELEASED_CHANNEL));
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            AttemptLockReleasedEvent event = objectMapper.readValue(
+                    new String(message.getBody(), StandardCharsets.UTF_8), AttemptLockReleasedEvent.class);
+            applicationEventPublisher.publishEvent(event);
+        } catch (JsonProcessingException e) {
+            log.warn("Cannot read attempt lock release message: {}", e.getMessage());
+        }
+    }
+}
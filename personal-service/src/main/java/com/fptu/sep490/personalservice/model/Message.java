@@ -7,7 +7,10 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "chat_message")
+@Table(name = "chat_message", indexes = {
+        // Phân trang keyset lịch sử chat theo (sent_at, id) trong từng group
+        @Index(name = "idx_chat_message_group_sent_at_id", columnList = "group_id, sent_at, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
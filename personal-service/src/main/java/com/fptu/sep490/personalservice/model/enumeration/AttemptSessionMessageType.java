@@ -6,5 +6,6 @@ public enum AttemptSessionMessageType {
     PONG,
     ATTEMPT_BLOCKED,
     SESSION_VALIDATED,
-    UNREGISTER_ATTEMPT
+    UNREGISTER_ATTEMPT,
+    LOCK_RELEASED
 }
@@ -1,18 +1,48 @@
 package com.fptu.sep490.personalservice.repository;
 
-import com.fptu.sep490.personalservice.model.ChatGroup;
 import com.fptu.sep490.personalservice.model.Message;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
+/**
+ * Lịch sử chat phân trang keyset theo (sentAt, id), dùng index (group_id, sent_at, id).
+ * Điều kiện {@code sentAt <=} / {@code >=} thừa về logic nhưng giúp planner quét index theo khoảng.
+ */
 public interface MessageRepository extends CrudRepository<Message, Long> {
 
-    @Query(
-            "SELECT m FROM Message m WHERE m.group = :groupId ORDER BY m.sentAt ASC"
-    )
-    List<Message> findByGroupIdOrderByCreatedAtAsc(
-            @Param("groupId") ChatGroup groupId);
+    @Query("SELECT m FROM Message m WHERE m.group.id = :groupId ORDER BY m.sentAt DESC, m.id DESC")
+    List<Message> findLatest(@Param("groupId") String groupId, Pageable pageable);
+
+    @Query("""
+            SELECT m FROM Message m
+            WHERE m.group.id = :groupId
+              AND m.sentAt <= :sentAt
+              AND (m.sentAt < :sentAt OR m.id < :id)
+            ORDER BY m.sentAt DESC, m.id DESC
+            """)
+    List<Message> findBefore(@Param("groupId") String groupId,
+                             @Param("sentAt") LocalDateTime sentAt,
+                             @Param("id") Long id,
+                             Pageable pageable);
+
+    @Query("""
+            SELECT m FROM Message m
+            WHERE m.group.id = :groupId
+              AND m.sentAt >= :sentAt
+              AND (m.sentAt > :sentAt OR m.id > :id)
+            ORDER BY m.sentAt ASC, m.id ASC
+            """)
+    List<Message> findAfter(@Param("groupId") String groupId,
+                            @Param("sentAt") LocalDateTime sentAt,
+                            @Param("id") Long id,
+                            Pageable pageable);
+
+    @Query("SELECT m.sentAt FROM Message m WHERE m.id = :id AND m.group.id = :groupId")
+    Optional<LocalDateTime> findSentAt(@Param("groupId") String groupId, @Param("id") Long id);
 }
@@ -9,7 +9,7 @@ import org.springframework.data.repository.query.Param;
 
 import java.util.UUID;
 
-public interface ModuleRepository extends CrudRepository<Module, UUID> {
+public interface ModuleRepository extends CrudRepository<Module, UUID>, ModuleSearchRepository {
 
 
 
@@ -29,22 +29,6 @@ public interface ModuleRepository extends CrudRepository<Module, UUID> {
                                     Pageable pageable,
                                     @Param("userId") String userId);
 
-    @Query("""
-    SELECT m FROM Module m
-    WHERE m.isDeleted = false
-      AND (
-        m.createdBy = :userId
-        OR m.isPublic = true
-      )
-      AND (
-        :keyword IS NULL OR :keyword = '' OR
-        LOWER(m.moduleName) LIKE LOWER(CONCAT('%', :keyword, '%')) OR
-        LOWER(m.description) LIKE LOWER(CONCAT('%', :keyword, '%'))
-      )
-""")
-    Page<Module> searchMyAndPublicModules(@Param("keyword") String keyword,
-                                          Pageable pageable,
-                                          @Param("userId") String userId);
 
 
 }
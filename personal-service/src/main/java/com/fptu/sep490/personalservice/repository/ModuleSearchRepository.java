@@ -0,0 +1,13 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.personalservice.model.Module;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Tìm module của người dùng và module public theo từ khóa trên module_name / description, xếp theo độ liên quan
+ * khi không chỉ định sort (xem {@link ModuleSearchRepositoryImpl}).
+ */
+public interface ModuleSearchRepository {
+    Page<Module> searchMyAndPublicModules(String keyword, Pageable pageable, String userId);
+}
@@ -0,0 +1,55 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.commonlibrary.search.TextSearchFields;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
+import com.fptu.sep490.personalservice.model.Module;
+import jakarta.persistence.EntityManager;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lấy id của trang bằng SQL native (GIN trigram / tsvector, xem {@link TextSearchFields}),
+ * sau đó tải entity bằng JPA theo đúng thứ tự id.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ModuleSearchRepositoryImpl implements ModuleSearchRepository {
+    public static final TextSearchFields FIELDS = TextSearchFields.of("modules", "module_name", "description");
+
+    static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "m.created_at",
+            "updatedAt", "m.updated_at",
+            "moduleName", "m.module_name",
+            "description", "m.description",
+            "isPublic", "m.is_public");
+
+    NamedParameterJdbcTemplate jdbcTemplate;
+    EntityManager entityManager;
+
+    @Override
+    public Page<Module> searchMyAndPublicModules(String keyword, Pageable pageable, String userId) {
+        TextSearchQuery search = TextSearchQuery.of(FIELDS, "m", keyword);
+        String fromWhere = "FROM modules m WHERE m.is_deleted = false"
+                + " AND (m.created_by = :userId OR m.is_public = true) AND " + search.predicate();
+        MapSqlParameterSource parameters = new MapSqlParameterSource(search.parameters()).addValue("userId", userId);
+
+        List<UUID> ids = jdbcTemplate.queryForList(
+                search.selectIds("m.module_id", fromWhere, pageable, SORT_COLUMNS), parameters, UUID.class);
+        List<Module> modules = ids.isEmpty() ? List.of() : TextSearchQuery.inIdOrder(ids, entityManager
+                .createQuery("SELECT m FROM Module m WHERE m.moduleId IN :ids", Module.class)
+                .setParameter("ids", ids)
+                .getResultList(), Module::getModuleId);
+        return PageableExecutionUtils.getPage(modules, pageable,
+                () -> jdbcTemplate.queryForObject("SELECT count(*) " + fromWhere, parameters, Long.class));
+    }
+}
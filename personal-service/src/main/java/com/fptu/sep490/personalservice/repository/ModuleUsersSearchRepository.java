@@ -0,0 +1,13 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.personalservice.model.ModuleUsers;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Tìm module được chia sẻ cho người dùng theo từ khóa trên module_name / description, xếp theo độ liên quan
+ * khi không chỉ định sort (xem {@link ModuleUsersSearchRepositoryImpl}).
+ */
+public interface ModuleUsersSearchRepository {
+    Page<ModuleUsers> searchShareModules(String keyword, Pageable pageable, String userId, Integer status);
+}
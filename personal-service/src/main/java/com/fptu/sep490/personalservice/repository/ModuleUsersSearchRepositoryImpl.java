@@ -0,0 +1,54 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
+import com.fptu.sep490.personalservice.model.ModuleUsers;
+import jakarta.persistence.EntityManager;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Như {@link ModuleSearchRepositoryImpl} (cùng index trên modules), lọc theo bản ghi chia sẻ modules_users.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ModuleUsersSearchRepositoryImpl implements ModuleUsersSearchRepository {
+    static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "mu.created_at",
+            "updatedAt", "mu.updated_at",
+            "status", "mu.status",
+            "progress", "mu.progress",
+            "timeSpent", "mu.time_spent",
+            "attempts", "mu.attempts");
+
+    NamedParameterJdbcTemplate jdbcTemplate;
+    EntityManager entityManager;
+
+    @Override
+    public Page<ModuleUsers> searchShareModules(String keyword, Pageable pageable, String userId, Integer status) {
+        TextSearchQuery search = TextSearchQuery.of(ModuleSearchRepositoryImpl.FIELDS, "m", keyword);
+        String fromWhere = "FROM modules_users mu JOIN modules m ON m.module_id = mu.module_id"
+                + " WHERE m.is_deleted = false AND mu.user_id = :userId AND m.created_by <> mu.user_id"
+                + " AND mu.status = :status AND " + search.predicate();
+        MapSqlParameterSource parameters = new MapSqlParameterSource(search.parameters())
+                .addValue("userId", userId)
+                .addValue("status", status);
+
+        List<String> ids = jdbcTemplate.queryForList(
+                search.selectIds("mu.id", fromWhere, pageable, SORT_COLUMNS), parameters, String.class);
+        List<ModuleUsers> moduleUsers = ids.isEmpty() ? List.of() : TextSearchQuery.inIdOrder(ids, entityManager
+                .createQuery("SELECT mu FROM ModuleUsers mu JOIN FETCH mu.module WHERE mu.id IN :ids", ModuleUsers.class)
+                .setParameter("ids", ids)
+                .getResultList(), ModuleUsers::getId);
+        return PageableExecutionUtils.getPage(moduleUsers, pageable,
+                () -> jdbcTemplate.queryForObject("SELECT count(*) " + fromWhere, parameters, Long.class));
+    }
+}
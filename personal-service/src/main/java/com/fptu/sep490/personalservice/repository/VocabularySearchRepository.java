@@ -0,0 +1,13 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.personalservice.model.Vocabulary;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Tìm từ vựng của người dùng theo từ khóa trên word / context / meaning, xếp theo độ liên quan
+ * khi không chỉ định sort (xem {@link VocabularySearchRepositoryImpl}).
+ */
+public interface VocabularySearchRepository {
+    Page<Vocabulary> searchVocabulary(String keyword, Pageable pageable, String userId);
+}
@@ -0,0 +1,55 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.commonlibrary.search.TextSearchFields;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
+import com.fptu.sep490.personalservice.model.Vocabulary;
+import jakarta.persistence.EntityManager;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lấy id của trang bằng SQL native (GIN trigram / tsvector, xem {@link TextSearchFields}),
+ * sau đó tải entity bằng JPA theo đúng thứ tự id.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class VocabularySearchRepositoryImpl implements VocabularySearchRepository {
+    public static final TextSearchFields FIELDS = TextSearchFields.of("vocabularies", "word", "context", "meaning");
+
+    static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "v.created_at",
+            "updatedAt", "v.updated_at",
+            "word", "v.word",
+            "context", "v.context",
+            "meaning", "v.meaning");
+
+    NamedParameterJdbcTemplate jdbcTemplate;
+    EntityManager entityManager;
+
+    @Override
+    public Page<Vocabulary> searchVocabulary(String keyword, Pageable pageable, String userId) {
+        TextSearchQuery search = TextSearchQuery.of(FIELDS, "v", keyword);
+        String fromWhere = "FROM vocabularies v WHERE v.is_deleted = false AND v.created_by = :userId AND "
+                + search.predicate();
+        MapSqlParameterSource parameters = new MapSqlParameterSource(search.parameters()).addValue("userId", userId);
+
+        List<UUID> ids = jdbcTemplate.queryForList(
+                search.selectIds("v.word_id", fromWhere, pageable, SORT_COLUMNS), parameters, UUID.class);
+        List<Vocabulary> vocabularies = ids.isEmpty() ? List.of() : TextSearchQuery.inIdOrder(ids, entityManager
+                .createQuery("SELECT v FROM Vocabulary v WHERE v.wordId IN :ids", Vocabulary.class)
+                .setParameter("ids", ids)
+                .getResultList(), Vocabulary::getWordId);
+        return PageableExecutionUtils.getPage(vocabularies, pageable,
+                () -> jdbcTemplate.queryForObject("SELECT count(*) " + fromWhere, parameters, Long.class));
+    }
+}
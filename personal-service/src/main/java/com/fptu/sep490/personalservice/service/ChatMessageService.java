@@ -0,0 +1,20 @@
+package com.fptu.sep490.personalservice.service;
+
+import com.fptu.sep490.personalservice.viewmodel.request.ChatMessage;
+
+import java.util.List;
+
+public interface ChatMessageService {
+    /**
+     * Lịch sử chat theo thứ tự cũ → mới. Không có cursor: {@code size} tin nhắn mới nhất;
+     * {@code before} / {@code after} là id tin nhắn làm mốc (chỉ dùng một trong hai).
+     */
+    List<ChatMessage> getHistory(String groupId, Long before, Long after, int size);
+
+    /**
+     * Lưu tin nhắn vào group chat tổng, trả về tin nhắn kèm id và thời điểm gửi để broadcast.
+     */
+    ChatMessage sendPublic(ChatMessage chatMessage);
+
+    ChatMessage sendGroup(ChatMessage chatMessage);
+}
@@ -3,6 +3,8 @@ package com.fptu.sep490.personalservice.service.impl;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.constants.AIModel;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.personalservice.component.AIChatSessionStore;
+import com.fptu.sep490.personalservice.component.ChatHistoryCompactor;
 import com.fptu.sep490.personalservice.constants.Constants;
 import com.fptu.sep490.personalservice.helper.Helper;
 import com.fptu.sep490.personalservice.model.AISuggestion;
@@ -34,7 +36,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentHashMap;
 
 @Service
 @RequiredArgsConstructor
@@ -52,8 +53,8 @@ public class AIServiceImpl implements AIService {
     private final GeminiApiStrategy geminiApiStrategy;
     HttpSession httpSession;
     AISuggestionRepository aiSuggestionRepository;
-
-    private final Map<String, List<ChatMessage>> chatHistories = new ConcurrentHashMap<>();
+    AIChatSessionStore aiChatSessionStore;
+    ChatHistoryCompactor chatHistoryCompactor;
 
     private static final String SYSTEM_CONTEXT =
             "You are an AI IELTS tutor. Always respond in a helpful, educational, and IELTS-focused way. " +
@@ -144,37 +145,44 @@ public class AIServiceImpl implements AIService {
     @Override
     public AIResponse chat( String userMessage, String sessionId) {
         sessionId = sessionId == null ? getSessionId() : sessionId;
-        List<ChatMessage> history = chatHistories.computeIfAbsent(sessionId, k -> new ArrayList<>());
-
-        // Nếu là tin nhắn đầu tiên, thêm system context
-        if (history.isEmpty()) {
-            history.add(new ChatMessage("system", SYSTEM_CONTEXT));
-        }
+        AIChatSessionStore.Session session = aiChatSessionStore.load(sessionId);
 
-        // Thêm tin nhắn của user
-        history.add(new ChatMessage("user", userMessage));
+        // Thêm tin nhắn của user, gộp bớt lượt cũ để prompt không vượt budget
+        List<ChatMessage> turns = new ArrayList<>(session.turns());
+        turns.add(new ChatMessage("user", userMessage));
+        session = chatHistoryCompactor.compact(SYSTEM_CONTEXT, new AIChatSessionStore.Session(session.summary(), turns));
 
-        // Gộp lịch sử thành 1 prompt
-        String prompt = buildPromptFromHistory(history);
+        // System context luôn được thêm khi dựng prompt, không lưu trong phiên
+        String prompt = chatHistoryCompactor.buildPrompt(SYSTEM_CONTEXT, session);
 
         // Gọi Gemini API
         AIResponse response = geminiApiStrategy.callModel(prompt, null);
 
         if (response.isSuccess()) {
-            history.add(new ChatMessage("assistant", response.getContent()));
+            turns = new ArrayList<>(session.turns());
+            turns.add(new ChatMessage("assistant", response.getContent()));
+            session = new AIChatSessionStore.Session(session.summary(), turns);
         }
+        aiChatSessionStore.save(sessionId, session);
 
         return response;
     }
 
     @Override
     public void clearSession() {
-        chatHistories.remove(getSessionId());
+        aiChatSessionStore.remove(getSessionId());
     }
 
     @Override
     public List<ChatMessage> getHistory() {
-        return chatHistories.getOrDefault(getSessionId(), List.of());
+        AIChatSessionStore.Session session = aiChatSessionStore.load(getSessionId());
+        if (session.turns().isEmpty()) {
+            return List.of();
+        }
+        List<ChatMessage> history = new ArrayList<>();
+        history.add(new ChatMessage("system", SYSTEM_CONTEXT));
+        history.addAll(session.turns());
+        return history;
     }
 
     @Override
@@ -191,16 +199,7 @@ public class AIServiceImpl implements AIService {
 
     @Override
     public void clearSession(String sessionId) {
-        chatHistories.remove(sessionId);
-
-    }
-
-    private String buildPromptFromHistory(List<ChatMessage> history) {
-        StringBuilder sb = new StringBuilder();
-        for (ChatMessage msg : history) {
-            sb.append(msg.role()).append(": ").append(msg.content()).append("\n");
-        }
-        return sb.toString().trim();
+        aiChatSessionStore.remove(sessionId);
     }
 
     private String createStructuredPrompt(String targetConfig, String systemTopic, String practiceResult) {
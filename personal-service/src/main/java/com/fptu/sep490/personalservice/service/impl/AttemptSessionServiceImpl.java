@@ -1,100 +1,103 @@
 package com.fptu.sep490.personalservice.service.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.fptu.sep490.event.AttemptLockReleasedEvent;
+import com.fptu.sep490.personalservice.component.AttemptLockStore;
 import com.fptu.sep490.personalservice.service.AttemptSessionService;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Service;
 
+import java.time.Clock;
 import java.time.Duration;
-import java.time.Instant;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Khóa attempt theo WebSocket session.
+ * <ul>
+ *     <li>Session do node này phục vụ được giữ trong bộ nhớ; ping chỉ cập nhật bộ nhớ</li>
+ *     <li>Quyền sở hữu giữa các node nằm trong {@link AttemptLockStore} (hash Redis + script Lua compare-and-set)</li>
+ *     <li>lastPing được ghi dồn xuống Redis định kỳ bởi {@link #flushHeartbeats()}: số lệnh Redis tỉ lệ với số session,
+ *     không tỉ lệ với tần suất ping</li>
+ * </ul>
+ * Chu kỳ flush phải nhỏ hơn nhiều so với {@link #HEARTBEAT_TIMEOUT} vì node khác chỉ thấy lastPing đã flush.
+ * <p>
+ * Khóa không còn heartbeat được giải phóng bởi {@link #cleanupInactiveHeartbeatSessions()} theo hạn trong sorted set
+ * của {@link AttemptLockStore}; mỗi khóa bị giải phóng được phát qua Redis pub/sub để node giữ session báo cho client.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AttemptSessionServiceImpl implements AttemptSessionService {
 
-    private final RedisService redisService;
-    
-    private static final String ATTEMPT_SESSION_PREFIX = "attempt_session:";
-    private static final String SESSION_ACTIVITY_PREFIX = "session_activity:";
-    private static final Duration SESSION_TTL = Duration.ofMinutes(60); // 30 minutes
-    private static final Duration ACTIVITY_TTL = Duration.ofMinutes(2); // 5 minutes for activity tracking
-    private static final Duration HEARTBEAT_TIMEOUT = Duration.ofMinutes(1); // 1 minute heartbeat timeout
+    private static final Duration SESSION_TTL = Duration.ofMinutes(60);
+    static final Duration HEARTBEAT_TIMEOUT = Duration.ofMinutes(1); // 1 minute heartbeat timeout
+    // Sweep chờ thêm khoảng này (lớn hơn chu kỳ flush) để ping chưa kịp flush không làm mất khóa
+    static final Duration SWEEP_GRACE = Duration.ofSeconds(30);
+    static final int SWEEP_BATCH_SIZE = 500;
+
+    private final AttemptLockStore attemptLockStore;
+    private final Clock clock;
+    private final Map<UUID, LocalSession> localSessions = new ConcurrentHashMap<>();
+
+    @Autowired
+    public AttemptSessionServiceImpl(AttemptLockStore attemptLockStore) {
+        this(attemptLockStore, Clock.systemUTC());
+    }
+
+    AttemptSessionServiceImpl(AttemptLockStore attemptLockStore, Clock clock) {
+        this.attemptLockStore = attemptLockStore;
+        this.clock = clock;
+    }
 
     @Override
     public boolean registerAttemptSession(UUID attemptId, String userId, String sessionId) {
-        String attemptKey = ATTEMPT_SESSION_PREFIX + attemptId.toString();
-        
+        long now = clock.millis();
+        LocalSession local = localSessions.get(attemptId);
+        if (local != null && local.isActive(now)) {
+            // Reconnect của chính session này, hoặc attempt đang bị session khác trên node này giữ
+            if (local.sessionId.equals(sessionId) && local.userId.equals(userId)) {
+                local.ping(now);
+                return true;
+            }
+            log.warn("Attempt {} is already being used by session {} for user {}",
+                    attemptId, local.sessionId, local.userId);
+            return false;
+        }
+
         try {
-            // Check if attempt is already registered to another session
-            @SuppressWarnings("unchecked")
-            Map<String, Object> existingSession = redisService.getValue(attemptKey, Map.class);
-            
-            if (existingSession != null) {
-                String existingSessionId = (String) existingSession.get("sessionId");
-                String existingUserId = (String) existingSession.get("userId");
-                
-                // If same session and user, allow (reconnection scenario)
-                if (sessionId.equals(existingSessionId) && userId.equals(existingUserId)) {
-                    updateSessionActivity(attemptId, sessionId);
-                    return true;
-                }
-                
-                // Check if existing session is still active
-                if (isSessionActive(attemptId)) {
-                    log.warn("Attempt {} is already being used by session {} for user {}", 
-                            attemptId, existingSessionId, existingUserId);
-                    return false;
-                }
+            if (!attemptLockStore.acquire(attemptId, sessionId, userId, now, HEARTBEAT_TIMEOUT, SESSION_TTL)) {
+                log.warn("Attempt {} is already being used by another session", attemptId);
+                return false;
             }
-            
-            // Register the new session
-            Map<String, Object> sessionData = new HashMap<>();
-            sessionData.put("sessionId", sessionId);
-            sessionData.put("userId", userId);
-            sessionData.put("registeredAt", Instant.now().toEpochMilli());
-            
-            redisService.saveValue(attemptKey, sessionData, SESSION_TTL);
-            updateSessionActivity(attemptId, sessionId);
-            
-            log.info("Registered attempt session - attemptId: {}, userId: {}, sessionId: {}", 
-                    attemptId, userId, sessionId);
-            return true;
-            
-        } catch (JsonProcessingException e) {
+        } catch (RuntimeException e) {
             log.error("Error registering attempt session", e);
             return false;
         }
+        // acquire đã ghi lastPing = now
+        localSessions.put(attemptId, new LocalSession(sessionId, userId, now, now));
+
+        log.info("Registered attempt session - attemptId: {}, userId: {}, sessionId: {}",
+                attemptId, userId, sessionId);
+        return true;
     }
 
     @Override
     public boolean isAttemptBlocked(UUID attemptId, String sessionId) {
-        String attemptKey = ATTEMPT_SESSION_PREFIX + attemptId.toString();
-        
+        long now = clock.millis();
+        LocalSession local = localSessions.get(attemptId);
+        if (local != null) {
+            return !local.sessionId.equals(sessionId) && local.isActive(now);
+        }
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> existingSession = redisService.getValue(attemptKey, Map.class);
-            
-            if (existingSession == null) {
-                return false;
-            }
-            
-            String existingSessionId = (String) existingSession.get("sessionId");
-            
-            // If it's the same session, not blocked
-            if (sessionId.equals(existingSessionId)) {
-                return false;
-            }
-            
-            // Check if existing session is still active
-            return isSessionActive(attemptId);
-            
-        } catch (JsonProcessingException e) {
+            AttemptLockStore.Owner owner = attemptLockStore.getOwner(attemptId);
+            return owner != null && !owner.sessionId().equals(sessionId) && isActive(owner, now);
+        } catch (RuntimeException e) {
             log.error("Error checking attempt block status", e);
             return false;
         }
@@ -102,98 +105,126 @@ public class AttemptSessionServiceImpl implements AttemptSessionService {
 
     @Override
     public void updateSessionActivity(UUID attemptId, String sessionId) {
-        String activityKey = SESSION_ACTIVITY_PREFIX + attemptId.toString();
-        
+        long now = clock.millis();
+        LocalSession local = localSessions.get(attemptId);
+        if (local != null) {
+            if (local.sessionId.equals(sessionId)) {
+                local.ping(now);
+            }
+            return;
+        }
+        // Node vừa khởi động lại: nhận lại session nếu nó vẫn giữ khóa trên Redis
         try {
-            Map<String, Object> activityData = new HashMap<>();
-            activityData.put("sessionId", sessionId);
-            activityData.put("lastActivity", Instant.now().toEpochMilli());
-            activityData.put("lastPing", Instant.now().toEpochMilli());
-            
-            redisService.saveValue(activityKey, activityData, ACTIVITY_TTL);
-            
-        } catch (JsonProcessingException e) {
+            AttemptLockStore.Owner owner = attemptLockStore.getOwner(attemptId);
+            if (owner != null && owner.sessionId().equals(sessionId)) {
+                localSessions.putIfAbsent(attemptId, new LocalSession(sessionId, owner.userId(), now, owner.lastPing()));
+            }
+        } catch (RuntimeException e) {
             log.error("Error updating session activity", e);
         }
     }
 
     @Override
     public void unregisterAttemptSession(UUID attemptId, String sessionId) {
-        String attemptKey = ATTEMPT_SESSION_PREFIX + attemptId.toString();
-        String activityKey = SESSION_ACTIVITY_PREFIX + attemptId.toString();
-        
+        localSessions.computeIfPresent(attemptId, (id, local) -> local.sessionId.equals(sessionId) ? null : local);
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> existingSession = redisService.getValue(attemptKey, Map.class);
-            
-            if (existingSession != null) {
-                String existingSessionId = (String) existingSession.get("sessionId");
-                
-                // Only unregister if it's the same session
-                if (sessionId.equals(existingSessionId)) {
-                    redisService.delete(attemptKey);
-                    redisService.delete(activityKey);
-                    
-                    log.info("Unregistered attempt session - attemptId: {}, sessionId: {}", 
-                            attemptId, sessionId);
-                }
+            // Only unregister if it's the same session
+            if (attemptLockStore.release(attemptId, sessionId)) {
+                log.info("Unregistered attempt session - attemptId: {}, sessionId: {}",
+                        attemptId, sessionId);
             }
-            
-        } catch (JsonProcessingException e) {
+        } catch (RuntimeException e) {
             log.error("Error unregistering attempt session", e);
         }
     }
 
     @Override
     public void cleanupExpiredSessions() {
-        // This method could be enhanced to scan for expired sessions
-        // For now, Redis TTL handles the cleanup automatically
+        // Key trên Redis tự hết hạn sau SESSION_TTL kể từ lần flush cuối
         log.debug("Session cleanup triggered - Redis TTL handles automatic cleanup");
     }
 
     /**
-     * Cleanup sessions that haven't pinged within the heartbeat timeout (1 minute)
+     * Cleanup sessions that haven't pinged within the heartbeat timeout (1 minute).
+     * Chỉ đọc các khóa đã đến hạn trong sorted set, từng lô {@link #SWEEP_BATCH_SIZE} khóa.
      */
     public void cleanupInactiveHeartbeatSessions() {
+        long now = clock.millis();
+        int total = 0;
         try {
-            // Get all session activity keys (this would require Redis SCAN in production)
-            log.info("Starting cleanup of inactive heartbeat sessions (timeout: {} ms)", HEARTBEAT_TIMEOUT.toMillis());
-            
-            // Note: In a production environment, you would want to use Redis SCAN command
-            // to iterate through keys matching the pattern "session_activity:*"
-            // For now, this method can be called when we detect inactive sessions
-            
-        } catch (Exception e) {
+            List<AttemptLockReleasedEvent> released;
+            do {
+                released = attemptLockStore.sweep(now, HEARTBEAT_TIMEOUT.plus(SWEEP_GRACE), HEARTBEAT_TIMEOUT,
+                        SWEEP_BATCH_SIZE);
+                released.forEach(this::publishReleased);
+                total += released.size();
+            } while (released.size() >= SWEEP_BATCH_SIZE);
+        } catch (RuntimeException e) {
             log.error("Error during heartbeat session cleanup", e);
         }
+        if (total > 0) {
+            log.info("Released {} attempt sessions without heartbeat", total);
+        }
+    }
+
+    /**
+     * Khóa bị giải phóng do hết hạn (bởi node bất kỳ): bỏ session local tương ứng nếu nó không ping lại sau đó.
+     */
+    @EventListener
+    public void onAttemptLockReleased(AttemptLockReleasedEvent event) {
+        localSessions.computeIfPresent(event.attemptId(), (id, local) ->
+                local.sessionId.equals(event.sessionId()) && local.lastPing <= event.releasedAt() ? null : local);
+    }
+
+    /**
+     * Ghi lastPing của các session local có ping mới xuống Redis trong một lần gọi script.
+     * Session không còn giữ khóa trên Redis (đã bị node khác lấy lại) bị bỏ khỏi bộ nhớ.
+     */
+    public void flushHeartbeats() {
+        Map<UUID, AttemptLockStore.Heartbeat> dirty = new HashMap<>();
+        localSessions.forEach((attemptId, local) -> {
+            long lastPing = local.lastPing;
+            if (lastPing > local.flushedPing) {
+                dirty.put(attemptId, new AttemptLockStore.Heartbeat(local.sessionId, lastPing));
+            }
+        });
+        if (dirty.isEmpty()) {
+            return;
+        }
+        try {
+            Set<UUID> lost = attemptLockStore.touch(dirty, HEARTBEAT_TIMEOUT, SESSION_TTL);
+            dirty.forEach((attemptId, heartbeat) -> {
+                LocalSession local = localSessions.get(attemptId);
+                if (local == null || !local.sessionId.equals(heartbeat.sessionId())) {
+                    return;
+                }
+                if (lost.contains(attemptId)) {
+                    localSessions.remove(attemptId, local);
+                    log.info("Attempt {} is no longer held by session {}", attemptId, heartbeat.sessionId());
+                } else {
+                    local.flushedPing = Math.max(local.flushedPing, heartbeat.lastPing());
+                }
+            });
+            log.debug("Flushed {} attempt session heartbeats", dirty.size());
+        } catch (RuntimeException e) {
+            // Giữ nguyên flushedPing, lần flush sau sẽ ghi lại
+            log.error("Error flushing attempt session heartbeats", e);
+        }
     }
 
     /**
      * Check if a specific session has exceeded the heartbeat timeout
      */
     public boolean isSessionHeartbeatExpired(UUID attemptId) {
-        String activityKey = SESSION_ACTIVITY_PREFIX + attemptId.toString();
-        
+        long now = clock.millis();
+        LocalSession local = localSessions.get(attemptId);
+        if (local != null) {
+            return !local.isActive(now);
+        }
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> activityData = redisService.getValue(activityKey, Map.class);
-            
-            if (activityData == null) {
-                return true; // No activity data means session is expired
-            }
-            
-            Long lastPing = (Long) activityData.get("lastPing");
-            if (lastPing == null) {
-                return true; // No ping timestamp means session is expired
-            }
-            
-            // Check if last ping was more than 1 minute ago
-            long currentTime = Instant.now().toEpochMilli();
-            long timeSinceLastPing = currentTime - lastPing;
-            
-            return timeSinceLastPing > HEARTBEAT_TIMEOUT.toMillis();
-            
-        } catch (JsonProcessingException e) {
+            AttemptLockStore.Owner owner = attemptLockStore.getOwner(attemptId);
+            return owner == null || !isActive(owner, now);
+        } catch (RuntimeException e) {
             log.error("Error checking heartbeat expiration", e);
             return true; // Assume expired on error
         }
@@ -203,88 +234,77 @@ public class AttemptSessionServiceImpl implements AttemptSessionService {
      * Cleanup a specific session if its heartbeat has expired
      */
     public void cleanupExpiredHeartbeatSession(UUID attemptId) {
-        if (isSessionHeartbeatExpired(attemptId)) {
-            String attemptKey = ATTEMPT_SESSION_PREFIX + attemptId.toString();
-            String activityKey = SESSION_ACTIVITY_PREFIX + attemptId.toString();
-            
-            try {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> sessionData = redisService.getValue(attemptKey, Map.class);
-                
-                if (sessionData != null) {
-                    String sessionId = (String) sessionData.get("sessionId");
-                    String userId = (String) sessionData.get("userId");
-                    
-                    // Remove from Redis
-                    redisService.delete(attemptKey);
-                    redisService.delete(activityKey);
-                    
-                    log.info("Cleaned up expired heartbeat session - attemptId: {}, userId: {}, sessionId: {}", 
-                            attemptId, userId, sessionId);
-                }
-                
-            } catch (JsonProcessingException e) {
-                log.error("Error cleaning up expired heartbeat session", e);
+        long now = clock.millis();
+        LocalSession local = localSessions.get(attemptId);
+        if (local != null) {
+            if (local.isActive(now)) {
+                return;
             }
+            localSessions.remove(attemptId, local);
+        }
+        try {
+            AttemptLockReleasedEvent released = attemptLockStore.releaseIfExpired(attemptId, now, HEARTBEAT_TIMEOUT);
+            if (released != null) {
+                log.info("Cleaned up expired heartbeat session - attemptId: {}, userId: {}, sessionId: {}",
+                        attemptId, released.userId(), released.sessionId());
+                publishReleased(released);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error cleaning up expired heartbeat session", e);
         }
     }
 
     @Override
     public String getActiveSessionForAttempt(UUID attemptId) {
-        String attemptKey = ATTEMPT_SESSION_PREFIX + attemptId.toString();
-        
+        long now = clock.millis();
+        LocalSession local = localSessions.get(attemptId);
+        if (local != null) {
+            return local.isActive(now) ? local.sessionId : null;
+        }
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> existingSession = redisService.getValue(attemptKey, Map.class);
-            
-            if (existingSession != null && isSessionActive(attemptId)) {
-                return (String) existingSession.get("sessionId");
-            }
-            
-            return null;
-            
-        } catch (JsonProcessingException e) {
+            AttemptLockStore.Owner owner = attemptLockStore.getOwner(attemptId);
+            return owner != null && isActive(owner, now) ? owner.sessionId() : null;
+        } catch (RuntimeException e) {
             log.error("Error getting active session for attempt", e);
             return null;
         }
     }
-    
-    private boolean isSessionActive(UUID attemptId) {
-        String activityKey = SESSION_ACTIVITY_PREFIX + attemptId.toString();
-        
+
+    private void publishReleased(AttemptLockReleasedEvent event) {
         try {
-            @SuppressWarnings("unchecked")
-            Map<String, Object> activityData = redisService.getValue(activityKey, Map.class);
-            
-            if (activityData == null) {
-                return false;
-            }
-            
-            Long lastPing = (Long) activityData.get("lastPing");
-            Long lastActivity = (Long) activityData.get("lastActivity");
-            
-            // Prioritize heartbeat ping for session validation
-            if (lastPing != null) {
-                long currentTime = Instant.now().toEpochMilli();
-                long timeSinceLastPing = currentTime - lastPing;
-                
-                // Session is active if last ping was within 1 minute
-                return timeSinceLastPing < HEARTBEAT_TIMEOUT.toMillis();
-            }
-            
-            // Fallback to lastActivity if no ping data (for backward compatibility)
-            if (lastActivity != null) {
-                long currentTime = Instant.now().toEpochMilli();
-                long timeDiff = currentTime - lastActivity;
-                
-                return timeDiff < ACTIVITY_TTL.toMillis();
-            }
-            
-            return false;
-            
-        } catch (JsonProcessingException e) {
-            log.error("Error checking session activity", e);
-            return false;
+            attemptLockStore.publishReleased(event);
+        } catch (JsonProcessingException | RuntimeException e) {
+            log.error("Error publishing attempt lock release for attempt {}", event.attemptId(), e);
+        }
+    }
+
+    private static boolean isActive(AttemptLockStore.Owner owner, long now) {
+        return now - owner.lastPing() < HEARTBEAT_TIMEOUT.toMillis();
+    }
+
+    /**
+     * Session đang được node này phục vụ. lastPing chỉ được ghi bởi luồng xử lý ping,
+     * flushedPing chỉ được ghi bởi luồng flush.
+     */
+    static final class LocalSession {
+        final String sessionId;
+        final String userId;
+        volatile long lastPing;
+        volatile long flushedPing;
+
+        LocalSession(String sessionId, String userId, long lastPing, long flushedPing) {
+            this.sessionId = sessionId;
+            this.userId = userId;
+            this.lastPing = lastPing;
+            this.flushedPing = flushedPing;
+        }
+
+        void ping(long now) {
+            lastPing = now;
+        }
+
+        boolean isActive(long now) {
+            return now - lastPing < HEARTBEAT_TIMEOUT.toMillis();
         }
     }
 }
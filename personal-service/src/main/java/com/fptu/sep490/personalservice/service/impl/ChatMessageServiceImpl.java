@@ -0,0 +1,142 @@
+package com.fptu.sep490.personalservice.service.impl;
+
+import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.personalservice.component.ChatHistoryBuffer;
+import com.fptu.sep490.personalservice.constants.Constants;
+import com.fptu.sep490.personalservice.model.ChatGroup;
+import com.fptu.sep490.personalservice.model.Message;
+import com.fptu.sep490.personalservice.repository.ChatGroupRepository;
+import com.fptu.sep490.personalservice.repository.MessageRepository;
+import com.fptu.sep490.personalservice.service.ChatMessageService;
+import com.fptu.sep490.personalservice.viewmodel.request.ChatMessage;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+@Service
+@Slf4j
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@RequiredArgsConstructor
+public class ChatMessageServiceImpl implements ChatMessageService {
+    static final String PUBLIC_CHAT = "Public Chat";
+    static final int MAX_PAGE_SIZE = 100;
+
+    MessageRepository messageRepository;
+    ChatGroupRepository chatGroupRepository;
+    ChatHistoryBuffer chatHistoryBuffer;
+    // Group chat tổng không đổi sau khi tạo, chỉ tra theo tên một lần
+    AtomicReference<ChatGroup> publicGroup = new AtomicReference<>();
+
+    @Override
+    public List<ChatMessage> getHistory(String groupId, Long before, Long after, int size) {
+        if (before != null && after != null) {
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_REQUEST,
+                    Constants.ErrorCode.INVALID_REQUEST,
+                    HttpStatus.BAD_REQUEST.value()
+            );
+        }
+        int limit = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        if (before == null && after == null) {
+            if (limit <= chatHistoryBuffer.capacity()) {
+                return chatHistoryBuffer.latest(groupId, limit, () -> loadLatest(groupId, chatHistoryBuffer.capacity()));
+            }
+            return loadLatest(groupId, limit);
+        }
+
+        Long cursor = before != null ? before : after;
+        LocalDateTime sentAt = messageRepository.findSentAt(groupId, cursor)
+                .orElseThrow(() -> notFound(groupId));
+        if (before != null) {
+            return toChatMessages(
+                    messageRepository.findBefore(groupId, sentAt, cursor, PageRequest.of(0, limit)).reversed(), groupId);
+        }
+        return toChatMessages(messageRepository.findAfter(groupId, sentAt, cursor, PageRequest.of(0, limit)), groupId);
+    }
+
+    @Override
+    public ChatMessage sendPublic(ChatMessage chatMessage) {
+        return save(publicGroup(), chatMessage);
+    }
+
+    @Override
+    public ChatMessage sendGroup(ChatMessage chatMessage) {
+        ChatGroup chatGroup = chatGroupRepository.findById(chatMessage.getGroupId())
+                .orElseThrow(() -> notFound(chatMessage.getGroupId()));
+        return save(chatGroup, chatMessage);
+    }
+
+    private ChatMessage save(ChatGroup group, ChatMessage chatMessage) {
+        Message msg = messageRepository.save(Message.builder()
+                .group(group)
+                .senderId(chatMessage.getSenderId())
+                .senderName(chatMessage.getSender())
+                .content(chatMessage.getContent())
+                .build());
+        chatHistoryBuffer.append(group.getId(), toChatMessage(msg, group.getId()));
+
+        chatMessage.setGroupId(group.getId());
+        chatMessage.setMessageId(msg.getId());
+        chatMessage.setSendAt(msg.getSentAt());
+        return chatMessage;
+    }
+
+    private ChatGroup publicGroup() {
+        ChatGroup group = publicGroup.get();
+        if (group != null) {
+            return group;
+        }
+        synchronized (publicGroup) {
+            group = publicGroup.get();
+            if (group == null) {
+                group = chatGroupRepository.findByName(PUBLIC_CHAT).orElseGet(() -> {
+                    // Nếu không có nhóm chat, tạo nhóm chat mặc định
+                    ChatGroup newChatGroup = new ChatGroup();
+                    newChatGroup.setName(PUBLIC_CHAT);
+                    return chatGroupRepository.save(newChatGroup);
+                });
+                publicGroup.set(group);
+            }
+            return group;
+        }
+    }
+
+    private List<ChatMessage> loadLatest(String groupId, int limit) {
+        if (!chatGroupRepository.existsById(groupId)) {
+            throw notFound(groupId);
+        }
+        return toChatMessages(messageRepository.findLatest(groupId, PageRequest.of(0, limit)).reversed(), groupId);
+    }
+
+    private static List<ChatMessage> toChatMessages(List<Message> messages, String groupId) {
+        return messages.stream().map(m -> toChatMessage(m, groupId)).toList();
+    }
+
+    private static ChatMessage toChatMessage(Message m, String groupId) {
+        return ChatMessage.builder()
+                .messageId(m.getId())
+                .senderId(m.getSenderId())
+                .sender(m.getSenderName())
+                .content(m.getContent())
+                .groupId(groupId)
+                .sendAt(m.getSentAt())
+                .build();
+    }
+
+    private static AppException notFound(String groupId) {
+        log.warn("Chat group or message not found in group {}", groupId);
+        return new AppException(
+                Constants.ErrorCodeMessage.NOT_FOUND,
+                Constants.ErrorCode.NOT_FOUND,
+                HttpStatus.NOT_FOUND.value()
+        );
+    }
+}
@@ -3,6 +3,7 @@ package com.fptu.sep490.personalservice.service.impl;
 import com.fptu.sep490.commonlibrary.constants.DataMarkup;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.viewmodel.response.BaseResponse;
+import com.fptu.sep490.personalservice.component.FanOutClient;
 import com.fptu.sep490.personalservice.constants.Constants;
 import com.fptu.sep490.personalservice.helper.Helper;
 import com.fptu.sep490.personalservice.model.Markup;
@@ -29,11 +30,11 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -45,6 +46,7 @@ public class MarkupServiceImpl implements MarkupService {
     Helper helper;
     ReadingClient readingClient;
     ListeningClient listeningClient;
+    FanOutClient fanOutClient;
 
     @Override
     public void addMarkup(HttpServletRequest request, MarkupCreationRequest markup) {
@@ -97,12 +99,15 @@ public class MarkupServiceImpl implements MarkupService {
             }
         });
 
-        // taọ async chạy 2 luồng để call lấy data
-        var passageTitleFuture = fetchReadingTitlesAsync(accessToken, passageMappingTitle.keySet().stream().toList());
-        var readingExamFuture = fetchReadingExamTitlesAsync(accessToken, passageExamMappingTitle.keySet().stream().toList());
-        var listeningTitleFuture = fetchListeningTitlesAsync(accessToken, listeningTaskMappingTitle.keySet().stream().toList());
-        var listeningExamFuture = fetchListeningExamTitlesAsync(accessToken, listeningExamMappingTitle.keySet().stream().toList());
-        // đợi cả 2 luồng hoàn thành
+        // Gọi song song 4 nhánh; nhánh lỗi / chậm để tiêu đề null thay vì làm hỏng cả trang
+        var passageTitleFuture = fetchTitles("reading.task-title", passageMappingTitle.keySet(),
+                ids -> readingClient.getReadingTitle(ids, "Bearer " + accessToken));
+        var readingExamFuture = fetchTitles("reading.exam-title", passageExamMappingTitle.keySet(),
+                ids -> readingClient.getExamTitle(ids, "Bearer " + accessToken));
+        var listeningTitleFuture = fetchTitles("listening.task-title", listeningTaskMappingTitle.keySet(),
+                ids -> listeningClient.getListeningTitle(ids, "Bearer " + accessToken));
+        var listeningExamFuture = fetchTitles("listening.exam-title", listeningExamMappingTitle.keySet(),
+                ids -> listeningClient.getExamTitle(ids, "Bearer " + accessToken));
         CompletableFuture.allOf(passageTitleFuture, readingExamFuture, listeningTitleFuture, listeningExamFuture).join();
         passageMappingTitle.putAll(passageTitleFuture.join());
         passageExamMappingTitle.putAll(readingExamFuture.join());
@@ -219,56 +224,27 @@ public class MarkupServiceImpl implements MarkupService {
         return null;
     }
 
-    @Async("markupExecutor")
-    public CompletableFuture<Map<UUID, String>> fetchReadingTitlesAsync(String accessToken, List<UUID> taskId) {
-        ResponseEntity<BaseResponse<List<TaskTitle>>> response = readingClient
-                .getReadingTitle(taskId, "Bearer " + accessToken);
-        var body = response.getBody();
-        Map<UUID, String> passageMappingTitle = body.data().stream()
-                .collect(Collectors.toMap(
-                        TaskTitle::taskId,
-                        TaskTitle::title
-                ));
-        return CompletableFuture.completedFuture(passageMappingTitle);
-    }
-
-    @Async("markupExecutor")
-    public CompletableFuture<Map<UUID, String>> fetchReadingExamTitlesAsync(String accessToken, List<UUID> taskId) {
-        ResponseEntity<BaseResponse<List<TaskTitle>>> response = readingClient
-                .getExamTitle(taskId, "Bearer " + accessToken);
-        var body = response.getBody();
-        Map<UUID, String> passageMappingTitle = body.data().stream()
-                .collect(Collectors.toMap(
-                        TaskTitle::taskId,
-                        TaskTitle::title
-                ));
-        return CompletableFuture.completedFuture(passageMappingTitle);
-    }
-
-    @Async("markupExecutor")
-    public CompletableFuture<Map<UUID, String>> fetchListeningTitlesAsync(String accessToken, List<UUID> taskId) {
-        ResponseEntity<BaseResponse<List<TaskTitle>>> response = listeningClient
-                .getListeningTitle(taskId, "Bearer " + accessToken);
-        var body = response.getBody();
-        Map<UUID, String> passageMappingTitle = body.data().stream()
-                .collect(Collectors.toMap(
-                        TaskTitle::taskId,
-                        TaskTitle::title
-                ));
-        return CompletableFuture.completedFuture(passageMappingTitle);
-    }
-
-    @Async("markupExecutor")
-    public CompletableFuture<Map<UUID, String>> fetchListeningExamTitlesAsync(String accessToken, List<UUID> taskId) {
-        ResponseEntity<BaseResponse<List<TaskTitle>>> response = listeningClient
-                .getExamTitle(taskId, "Bearer " + accessToken);
-        var body = response.getBody();
-        Map<UUID, String> passageMappingTitle = body.data().stream()
-                .collect(Collectors.toMap(
-                        TaskTitle::taskId,
-                        TaskTitle::title
-                ));
-        return CompletableFuture.completedFuture(passageMappingTitle);
+    private CompletableFuture<Map<UUID, String>> fetchTitles(
+            String leg,
+            Collection<UUID> taskIds,
+            Function<List<UUID>, ResponseEntity<BaseResponse<List<TaskTitle>>>> remoteCall) {
+        if (taskIds.isEmpty()) {
+            return CompletableFuture.completedFuture(Map.of());
+        }
+        List<UUID> ids = List.copyOf(taskIds);
+        return fanOutClient.call(leg, () -> {
+            var body = remoteCall.apply(ids).getBody();
+            if (body == null || body.data() == null) {
+                return Map.<UUID, String>of();
+            }
+            return body.data().stream()
+                    .filter(title -> title.title() != null)
+                    .collect(Collectors.toMap(
+                            TaskTitle::taskId,
+                            TaskTitle::title,
+                            (first, second) -> first
+                    ));
+        }, Map.of());
     }
 
     private <T extends Enum<T>> T safeEnumFromOrdinal(T[] values, int ordinal) {
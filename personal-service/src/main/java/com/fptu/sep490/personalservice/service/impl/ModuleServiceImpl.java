@@ -1,6 +1,7 @@
 package com.fptu.sep490.personalservice.service.impl;
 
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
 import com.fptu.sep490.commonlibrary.viewmodel.response.BaseResponse;
 import com.fptu.sep490.personalservice.constants.Constants;
 import com.fptu.sep490.personalservice.helper.Helper;
@@ -18,6 +19,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -26,8 +28,10 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.stream.Stream;
 
 @Service
 @FieldDefaults(level = AccessLevel.PACKAGE, makeFinal = true)
@@ -209,19 +213,17 @@ public class ModuleServiceImpl implements ModuleService {
                     HttpStatus.UNAUTHORIZED.value()
             );
         }
-        if (sortBy == null || sortBy.isBlank()) {
-            sortBy = "createdAt";
-        }
-        if (sortDirection == null || sortDirection.isBlank()) {
-            sortDirection = "asc";
-        }
-        Sort sort = sortDirection.equalsIgnoreCase("desc")
-                ? Sort.by(sortBy).descending()
-                : Sort.by(sortBy).ascending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = TextSearchQuery.pageable(page, size, sortBy, sortDirection, keyword);
         Page<Module> modulePage;
         try {
             modulePage = moduleRepository.searchMyAndPublicModules(keyword, pageable, UserId);
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            // sortBy ngoài danh sách sort của repository (proxy dịch IllegalArgumentException thành InvalidDataAccessApiUsageException)
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_REQUEST,
+                    Constants.ErrorCode.INVALID_REQUEST,
+                    HttpStatus.BAD_REQUEST.value()
+            );
         } catch (Exception e) {
             log.error("Database error when fetching public modules for user: {}", UserId, e);
             throw new AppException(
@@ -564,19 +566,17 @@ public class ModuleServiceImpl implements ModuleService {
                     HttpStatus.UNAUTHORIZED.value()
             );
         }
-        if (sortBy == null || sortBy.isBlank()) {
-            sortBy = "createdAt";
-        }
-        if (sortDirection == null || sortDirection.isBlank()) {
-            sortDirection = "asc";
-        }
-        Sort sort = sortDirection.equalsIgnoreCase("desc")
-                ? Sort.by(sortBy).descending()
-                : Sort.by(sortBy).ascending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = TextSearchQuery.pageable(page, size, sortBy, sortDirection, keyword);
         Page<ModuleUsers> modulePage;
         try {
             modulePage = moduleUsersRepository.searchShareModules(keyword, pageable, userId, status);
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            // sortBy ngoài danh sách sort của repository (proxy dịch IllegalArgumentException thành InvalidDataAccessApiUsageException)
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_REQUEST,
+                    Constants.ErrorCode.INVALID_REQUEST,
+                    HttpStatus.BAD_REQUEST.value()
+            );
         } catch (Exception e) {
             log.error("Database error when fetching shared modules for user: {}", userId, e);
             throw new AppException(
@@ -586,6 +586,19 @@ public class ModuleServiceImpl implements ModuleService {
             );
         }
 
+        Map<String, UserProfileResponse> users;
+        try {
+            users = helper.getUserProfiles(modulePage.stream()
+                    .flatMap(moduleUser -> Stream.of(moduleUser.getModule().getCreatedBy(), moduleUser.getUserId()))
+                    .toList());
+        } catch (Exception e) {
+            log.error("Error fetching user profiles for shared modules of user: {}", userId);
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INTERNAL_SERVER_ERROR,
+                    "Error fetching user profile",
+                    HttpStatus.INTERNAL_SERVER_ERROR.value()
+            );
+        }
         List<ModuleUserResponse> moduleResponses = modulePage.stream()
                 .map(moduleUser -> {
                     Module module = moduleUser.getModule();
@@ -605,19 +618,8 @@ public class ModuleServiceImpl implements ModuleService {
                                 )
                                 .build());
                     }
-                    UserProfileResponse user = UserProfileResponse.builder().build();
-                    UserProfileResponse share_to = UserProfileResponse.builder().build();
-                    try {
-                        user = helper.getUserProfileById(module.getCreatedBy());
-                        share_to = helper.getUserProfileById(moduleUser.getUserId());
-                    }catch (Exception e){
-                        log.error("Error fetching user profile for module creator: {}", module.getCreatedBy());
-                        throw new AppException(
-                                Constants.ErrorCodeMessage.INTERNAL_SERVER_ERROR,
-                                "Error fetching user profile",
-                                HttpStatus.INTERNAL_SERVER_ERROR.value()
-                        );
-                    }
+                    UserProfileResponse user = users.get(module.getCreatedBy());
+                    UserProfileResponse share_to = users.get(moduleUser.getUserId());
                     return ModuleUserResponse.builder()
                             .moduleId(module.getModuleId())
                             .moduleName(module.getModuleName())
@@ -734,6 +736,19 @@ public class ModuleServiceImpl implements ModuleService {
                     HttpStatus.INTERNAL_SERVER_ERROR.value()
             );
         }
+        Map<String, UserProfileResponse> users;
+        try {
+            users = helper.getUserProfiles(modulePage.stream()
+                    .flatMap(moduleUser -> Stream.of(moduleUser.getModule().getCreatedBy(), moduleUser.getUserId()))
+                    .toList());
+        } catch (Exception e) {
+            log.error("Error fetching user profiles for shared modules of user: {}", userId);
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INTERNAL_SERVER_ERROR,
+                    "Error fetching user profile",
+                    HttpStatus.INTERNAL_SERVER_ERROR.value()
+            );
+        }
         List<ModuleUserResponse> moduleResponses = modulePage.stream()
                 .map(moduleUser -> {
                     Module module = moduleUser.getModule();
@@ -753,19 +768,8 @@ public class ModuleServiceImpl implements ModuleService {
                                 )
                                 .build());
                     }
-                    UserProfileResponse user = UserProfileResponse.builder().build();
-                    UserProfileResponse share_to = UserProfileResponse.builder().build();
-                    try {
-                        user = helper.getUserProfileById(module.getCreatedBy());
-                        share_to = helper.getUserProfileById(moduleUser.getUserId());
-                    } catch (Exception e) {
-                        log.error("Error fetching user profile for module creator: {}", module.getCreatedBy());
-                        throw new AppException(
-                                Constants.ErrorCodeMessage.INTERNAL_SERVER_ERROR,
-                                "Error fetching user profile",
-                                HttpStatus.INTERNAL_SERVER_ERROR.value()
-                        );
-                    }
+                    UserProfileResponse user = users.get(module.getCreatedBy());
+                    UserProfileResponse share_to = users.get(moduleUser.getUserId());
                     return ModuleUserResponse.builder()
                             .moduleId(module.getModuleId())
                             .moduleName(module.getModuleName())
@@ -1290,6 +1294,4 @@ public class ModuleServiceImpl implements ModuleService {
         return  progressResponse;
 
     }
-
-
 }
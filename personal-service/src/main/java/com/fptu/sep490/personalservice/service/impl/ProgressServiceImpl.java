@@ -7,6 +7,7 @@ import com.fptu.sep490.commonlibrary.viewmodel.request.OverviewProgressReq;
 import com.fptu.sep490.commonlibrary.viewmodel.response.BaseResponse;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.OverviewProgress;
+import com.fptu.sep490.personalservice.component.FanOutClient;
 import com.fptu.sep490.personalservice.helper.Helper;
 import com.fptu.sep490.personalservice.repository.client.ListeningClient;
 import com.fptu.sep490.personalservice.repository.client.ReadingClient;
@@ -21,7 +22,6 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.ResponseEntity;
-import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
@@ -38,20 +38,7 @@ public class ProgressServiceImpl implements ProgressService {
     ReadingClient readingClient;
     ListeningClient listeningClient;
     Helper helper;
-
-    @Async("progressExecutor")
-    public CompletableFuture<OverviewProgress> fetchReadingOverviewProgress(String accessToken, OverviewProgressReq overviewProgressReq) {
-        ResponseEntity<BaseResponse<OverviewProgress>> response = readingClient.getExamOverview(overviewProgressReq, "Bearer " + accessToken);
-        OverviewProgress body = response.getBody().data();
-        return CompletableFuture.completedFuture(body);
-    }
-
-    @Async("progressExecutor")
-    public CompletableFuture<OverviewProgress> fetchListeningOverviewProgress(String accessToken, OverviewProgressReq overviewProgressReq) {
-        ResponseEntity<BaseResponse<OverviewProgress>> response = listeningClient.getExamOverview(overviewProgressReq, "Bearer " + accessToken);
-        OverviewProgress body = response.getBody().data();
-        return CompletableFuture.completedFuture(body);
-    }
+    FanOutClient fanOutClient;
 
     @Override
     public OverviewProgressResponse getOverviewProgress(
@@ -64,8 +51,13 @@ public class ProgressServiceImpl implements ProgressService {
                 .timeFrame(timeFrame)
                 .build();
 
-        CompletableFuture<OverviewProgress> readingOverview = fetchReadingOverviewProgress(accessToken, overviewProgressReq);
-        CompletableFuture<OverviewProgress> listeningOverview = fetchListeningOverviewProgress(accessToken, overviewProgressReq);
+        // Nhánh lỗi / chậm trả về overview rỗng, nhánh còn lại vẫn được hiển thị
+        CompletableFuture<OverviewProgress> readingOverview = fanOutClient.call("reading.overview",
+                () -> data(readingClient.getExamOverview(overviewProgressReq, "Bearer " + accessToken)),
+                new OverviewProgress());
+        CompletableFuture<OverviewProgress> listeningOverview = fanOutClient.call("listening.overview",
+                () -> data(listeningClient.getExamOverview(overviewProgressReq, "Bearer " + accessToken)),
+                new OverviewProgress());
 
         CompletableFuture.allOf(readingOverview, listeningOverview).join();
         OverviewProgress r = readingOverview.join();
@@ -119,20 +111,6 @@ public class ProgressServiceImpl implements ProgressService {
         return response;
     }
 
-    @Async("progressExecutor")
-    public CompletableFuture<List<LineChartData>> fetchReadingLineChart(String accessToken, LineChartReq lineChartReq) {
-        ResponseEntity<BaseResponse<List<LineChartData>>> response = readingClient.getBandChart(lineChartReq, "Bearer " + accessToken);
-        List<LineChartData> body = response.getBody().data();
-        return CompletableFuture.completedFuture(body);
-    }
-
-    @Async("progressExecutor")
-    public CompletableFuture<List<LineChartData>> fetchListeningLineChart(String accessToken, LineChartReq lineChartReq) {
-        ResponseEntity<BaseResponse<List<LineChartData>>> response = listeningClient.getBandChart(lineChartReq, "Bearer " + accessToken);
-        List<LineChartData> body = response.getBody().data();
-        return CompletableFuture.completedFuture(body);
-    }
-
     @Override
     public BandLineChartResponse getBandChart(String timeFrame, LocalDate startDate, LocalDate endDate, HttpServletRequest request) {
         String accessToken = helper.getAccessToken(request);
@@ -141,8 +119,12 @@ public class ProgressServiceImpl implements ProgressService {
                 .startDate(startDate)
                 .endDate(endDate)
                 .build();
-        CompletableFuture<List<LineChartData>> readingLineChart = fetchReadingLineChart(accessToken, lineChartReq);
-        CompletableFuture<List<LineChartData>> listeningLineChart = fetchListeningLineChart(accessToken, lineChartReq);
+        CompletableFuture<List<LineChartData>> readingLineChart = fanOutClient.call("reading.band-chart",
+                () -> data(readingClient.getBandChart(lineChartReq, "Bearer " + accessToken)),
+                List.of());
+        CompletableFuture<List<LineChartData>> listeningLineChart = fanOutClient.call("listening.band-chart",
+                () -> data(listeningClient.getBandChart(lineChartReq, "Bearer " + accessToken)),
+                List.of());
         CompletableFuture.allOf(readingLineChart, listeningLineChart).join();
         List<LineChartData> readingData = readingLineChart.join();
         List<LineChartData> listeningData = listeningLineChart.join();
@@ -154,24 +136,15 @@ public class ProgressServiceImpl implements ProgressService {
 
         return response;
     }
-    @Async("progressExecutor")
-    public CompletableFuture<BandScoreData> fetchReadingBandScore(String accessToken) {
-        ResponseEntity<BaseResponse<BandScoreData>> response = readingClient.getBandScore("Bearer " + accessToken);
-        BandScoreData body = response.getBody().data();
-        return CompletableFuture.completedFuture(body);
-    }
-
-    @Async("progressExecutor")
-    public CompletableFuture<BandScoreData> fetchListeningBandScore(String accessToken) {
-        ResponseEntity<BaseResponse<BandScoreData>> response = listeningClient.getBandScore("Bearer " + accessToken);
-        BandScoreData body = response.getBody().data();
-        return CompletableFuture.completedFuture(body);
-    }
     @Override
     public BandScoreResponse getBandScore(HttpServletRequest request) {
         String accessToken = helper.getAccessToken(request);
-        var completeFutureReading = fetchReadingBandScore(accessToken);
-        var completeFutureListening = fetchListeningBandScore(accessToken);
+        var completeFutureReading = fanOutClient.call("reading.band-score",
+                () -> data(readingClient.getBandScore("Bearer " + accessToken)),
+                new BandScoreData(null));
+        var completeFutureListening = fanOutClient.call("listening.band-score",
+                () -> data(listeningClient.getBandScore("Bearer " + accessToken)),
+                new BandScoreData(null));
         CompletableFuture.allOf(completeFutureReading, completeFutureListening).join();
         BandScoreData readingData = completeFutureReading.join();
         BandScoreData listeningData = completeFutureListening.join();
@@ -180,4 +153,13 @@ public class ProgressServiceImpl implements ProgressService {
                 .listening(listeningData.bandScore())
                 .build();
     }
+
+    // Body rỗng được coi là lỗi để nhánh đó dùng fallback
+    private static <T> T data(ResponseEntity<BaseResponse<T>> response) {
+        BaseResponse<T> body = response.getBody();
+        if (body == null || body.data() == null) {
+            throw new IllegalStateException("Empty response body");
+        }
+        return body.data();
+    }
 }
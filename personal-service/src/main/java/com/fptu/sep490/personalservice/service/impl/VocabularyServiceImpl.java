@@ -2,6 +2,7 @@ package com.fptu.sep490.personalservice.service.impl;
 
 
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
 import com.fptu.sep490.personalservice.constants.Constants;
 import com.fptu.sep490.personalservice.helper.Helper;
 import com.fptu.sep490.personalservice.model.Vocabulary;
@@ -15,6 +16,7 @@ import lombok.AccessLevel;
 import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.*;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
@@ -160,23 +162,20 @@ public class VocabularyServiceImpl  implements VocabularyService {
                     HttpStatus.UNAUTHORIZED.value()
             );
         }
-        if (sortBy == null || sortBy.isBlank()) {
-            sortBy = "createdAt";
-        }
-        if (sortDirection == null || sortDirection.isBlank()) {
-            sortDirection = "asc";
-        }
-
-        Sort sort = sortDirection.equalsIgnoreCase("desc")
-                ? Sort.by(sortBy).descending()
-                : Sort.by(sortBy).ascending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = TextSearchQuery.pageable(page, size, sortBy, sortDirection, keyword);
 
         Page<Vocabulary> vocabularyPage;
         try {
 
             vocabularyPage = vocabularyRepository.searchVocabulary(keyword, pageable, UserId);
 
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            // sortBy ngoài danh sách sort của repository (proxy dịch IllegalArgumentException thành InvalidDataAccessApiUsageException)
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_REQUEST,
+                    Constants.ErrorCode.INVALID_REQUEST,
+                    HttpStatus.BAD_REQUEST.value()
+            );
         } catch (Exception e) {
             log.error("Database error when fetching exams for user: {}", UserId, e);
             throw new AppException(
@@ -260,6 +259,4 @@ public class VocabularyServiceImpl  implements VocabularyService {
 
 
     }
-
-
 }
@@ -21,4 +21,5 @@ public class ChatMessage {
     private SenderRole senderRole; // The role of the sender, e.g., "user", "assistant", etc.
     private MessageType messageType; // The type of the message, e.g., "text", "image", etc.
     private LocalDateTime sendAt;
+    private Long messageId; // Id tin nhắn đã lưu, dùng làm cursor before / after khi tải lịch sử
 }
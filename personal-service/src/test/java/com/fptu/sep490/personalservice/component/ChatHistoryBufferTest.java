@@ -0,0 +1,69 @@
+package com.fptu.sep490.personalservice.component;
+
+import com.fptu.sep490.personalservice.viewmodel.request.ChatMessage;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ChatHistoryBufferTest {
+    static final String GROUP = "group-1";
+
+    ChatHistoryBuffer buffer;
+
+    @BeforeEach
+    void setUp() {
+        buffer = new ChatHistoryBuffer(3, 10, Duration.ofMinutes(30));
+    }
+
+    private static ChatMessage message(long id) {
+        return ChatMessage.builder().messageId(id).content("m" + id).build();
+    }
+
+    private List<Long> ids() {
+        return buffer.latest(GROUP, 10, () -> fail("Buffer should already be loaded"))
+                .stream().map(ChatMessage::getMessageId).toList();
+    }
+
+    @Test
+    void append_outOfOrderCommit_insertedByIdInsteadOfDropped() {
+        buffer.latest(GROUP, 10, () -> List.of(message(1)));
+
+        buffer.append(GROUP, message(3));
+        buffer.append(GROUP, message(2));
+
+        assertEquals(List.of(1L, 2L, 3L), ids());
+    }
+
+    @Test
+    void append_alreadyLoadedId_isIgnored() {
+        buffer.latest(GROUP, 10, () -> List.of(message(1), message(2)));
+
+        buffer.append(GROUP, message(2));
+
+        assertEquals(List.of(1L, 2L), ids());
+    }
+
+    @Test
+    void append_overCapacity_keepsNewestIds() {
+        buffer.latest(GROUP, 10, () -> List.of(message(1), message(2), message(4)));
+
+        buffer.append(GROUP, message(3));
+        assertEquals(List.of(2L, 3L, 4L), ids());
+
+        // Cũ hơn mọi tin nhắn đang giữ
+        buffer.append(GROUP, message(1));
+        assertEquals(List.of(2L, 3L, 4L), ids());
+    }
+
+    @Test
+    void append_groupNotLoaded_isNoop() {
+        buffer.append(GROUP, message(1));
+
+        assertEquals(List.of(5L), buffer.latest(GROUP, 10, () -> List.of(message(5)))
+                .stream().map(ChatMessage::getMessageId).toList());
+    }
+}
@@ -0,0 +1,71 @@
+package com.fptu.sep490.personalservice.repository;
+
+import com.fptu.sep490.personalservice.model.ModuleUsers;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ModuleUsersSearchRepositoryImplTest {
+    @Mock
+    NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    EntityManager entityManager;
+    @Mock
+    TypedQuery<ModuleUsers> query;
+
+    ModuleUsersSearchRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(entityManager.createQuery(anyString(), eq(ModuleUsers.class))).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        repository = new ModuleUsersSearchRepositoryImpl(jdbcTemplate, entityManager);
+    }
+
+    @Test
+    void searchShareModules_filtersSharesAndKeepsRankOrder() {
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(String.class)))
+                .thenReturn(List.of("b", "a"));
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(12L);
+        when(query.getResultList()).thenReturn(List.of(moduleUser("a"), moduleUser("b")));
+
+        Page<ModuleUsers> page = repository.searchShareModules("vocab", PageRequest.of(1, 2), "user1", 1);
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> parameters = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).queryForList(sql.capture(), parameters.capture(), eq(String.class));
+        assertTrue(sql.getValue().contains("mu.user_id = :userId AND m.created_by <> mu.user_id AND mu.status = :status"));
+        assertTrue(sql.getValue().contains(":searchText <% lower(m.module_name)"));
+        assertTrue(sql.getValue().endsWith("LIMIT 2 OFFSET 2"));
+        assertEquals("user1", parameters.getValue().getValue("userId"));
+        assertEquals(1, parameters.getValue().getValue("status"));
+        verify(entityManager).createQuery(contains("JOIN FETCH mu.module"), eq(ModuleUsers.class));
+
+        assertEquals(List.of("b", "a"), page.getContent().stream().map(ModuleUsers::getId).toList());
+        assertEquals(12, page.getTotalElements());
+    }
+
+    private static ModuleUsers moduleUser(String id) {
+        ModuleUsers moduleUsers = new ModuleUsers();
+        moduleUsers.setId(id);
+        return moduleUsers;
+    }
+}
@@ -2,25 +2,32 @@ package com.fptu.sep490.personalservice.service.impl;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.personalservice.component.AIChatSessionStore;
+import com.fptu.sep490.personalservice.component.ChatHistoryCompactor;
 import com.fptu.sep490.personalservice.constants.Constants;
 import com.fptu.sep490.personalservice.helper.Helper;
 import com.fptu.sep490.personalservice.model.TopicMaster;
 import com.fptu.sep490.personalservice.repository.AISuggestionRepository;
 import com.fptu.sep490.personalservice.repository.ConfigRepository;
 import com.fptu.sep490.personalservice.repository.TopicMaterRepository;
+import com.fptu.sep490.personalservice.service.AIService;
 import com.fptu.sep490.personalservice.repository.client.ListeningClient;
 import com.fptu.sep490.personalservice.repository.client.ReadingClient;
 import com.fptu.sep490.personalservice.strategy.AIStrategyFactory;
 import com.fptu.sep490.personalservice.strategy.AiApiStrategy;
 import com.fptu.sep490.personalservice.viewmodel.response.AIResponse;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
@@ -57,6 +64,9 @@ class AIServiceImplTest {
 	@Mock
 	AISuggestionRepository aiSuggestionRepository;
 
+	@Mock
+	AIChatSessionStore aiChatSessionStore;
+
 	AIServiceImpl service;
 
 	@BeforeEach
@@ -72,7 +82,9 @@ class AIServiceImplTest {
 				listeningClient,
 				geminiApiStrategy,
 				httpSession,
-				aiSuggestionRepository
+				aiSuggestionRepository,
+				aiChatSessionStore,
+				new ChatHistoryCompactor(new SimpleMeterRegistry(), 400, 100)
 		);
 	}
 
@@ -127,4 +139,87 @@ class AIServiceImplTest {
 		assertTrue(ex.getMessage().contains("boom"));
 		verify(aiStrategyFactory, never()).getStrategy(anyString());
 	}
+
+	@Test
+	void chat_newSession_sendsSystemContextAndSavesBothTurns() {
+		when(aiChatSessionStore.load("s1")).thenReturn(AIChatSessionStore.Session.EMPTY);
+		AIResponse reply = response(true, "Hi there");
+		when(geminiApiStrategy.callModel(anyString(), isNull())).thenReturn(reply);
+
+		AIResponse result = service.chat("Hello", "s1");
+
+		assertSame(reply, result);
+		ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+		verify(geminiApiStrategy).callModel(prompt.capture(), isNull());
+		assertTrue(prompt.getValue().startsWith("system: "));
+		assertTrue(prompt.getValue().endsWith("user: Hello"));
+
+		ArgumentCaptor<AIChatSessionStore.Session> saved = ArgumentCaptor.forClass(AIChatSessionStore.Session.class);
+		verify(aiChatSessionStore).save(eq("s1"), saved.capture());
+		assertEquals(List.of(new AIService.ChatMessage("user", "Hello"),
+				new AIService.ChatMessage("assistant", "Hi there")), saved.getValue().turns());
+	}
+
+	@Test
+	void chat_failedReply_savesOnlyUserTurn() {
+		when(aiChatSessionStore.load("s1")).thenReturn(AIChatSessionStore.Session.EMPTY);
+		when(geminiApiStrategy.callModel(anyString(), isNull()))
+				.thenReturn(response(false, null));
+
+		service.chat("Hello", "s1");
+
+		ArgumentCaptor<AIChatSessionStore.Session> saved = ArgumentCaptor.forClass(AIChatSessionStore.Session.class);
+		verify(aiChatSessionStore).save(eq("s1"), saved.capture());
+		assertEquals(List.of(new AIService.ChatMessage("user", "Hello")), saved.getValue().turns());
+	}
+
+	@Test
+	void chat_longHistory_compactsOldTurnsIntoSummaryWithinBudget() {
+		List<AIService.ChatMessage> turns = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			turns.add(new AIService.ChatMessage(i % 2 == 0 ? "user" : "assistant", "turn " + i + " " + "x".repeat(200)));
+		}
+		when(aiChatSessionStore.load("s1")).thenReturn(new AIChatSessionStore.Session(null, turns));
+		when(geminiApiStrategy.callModel(anyString(), isNull()))
+				.thenReturn(response(true, "ok"));
+
+		service.chat("latest question", "s1");
+
+		ArgumentCaptor<String> prompt = ArgumentCaptor.forClass(String.class);
+		verify(geminiApiStrategy).callModel(prompt.capture(), isNull());
+		assertTrue(prompt.getValue().length() <= (400 + 200) * 4);
+		assertTrue(prompt.getValue().contains("summary: Earlier conversation (condensed):"));
+		assertTrue(prompt.getValue().endsWith("user: latest question"));
+		assertFalse(prompt.getValue().contains("turn 0 "));
+
+		ArgumentCaptor<AIChatSessionStore.Session> saved = ArgumentCaptor.forClass(AIChatSessionStore.Session.class);
+		verify(aiChatSessionStore).save(eq("s1"), saved.capture());
+		assertTrue(saved.getValue().turns().size() < 21);
+		assertNotNull(saved.getValue().summary());
+		assertTrue(saved.getValue().summary().length() <= 100 * 4);
+	}
+
+	@Test
+	void getHistory_emptySession_returnsEmptyList() {
+		when(httpSession.getId()).thenReturn("s1");
+		when(aiChatSessionStore.load("s1")).thenReturn(AIChatSessionStore.Session.EMPTY);
+
+		assertTrue(service.getHistory().isEmpty());
+	}
+
+	@Test
+	void clearSession_removesFromStore() {
+		service.clearSession("s1");
+
+		verify(aiChatSessionStore).remove("s1");
+	}
+
+	private static AIResponse response(boolean success, String content) {
+		return new AIResponse() {
+			@Override
+			public String getContent() { return content; }
+			@Override
+			public boolean isSuccess() { return success; }
+		};
+	}
 }
@@ -0,0 +1,267 @@
+package com.fptu.sep490.personalservice.service.impl;
+
+import com.fptu.sep490.event.AttemptLockReleasedEvent;
+import com.fptu.sep490.personalservice.component.AttemptLockStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AttemptSessionServiceImplTest {
+
+	@Mock
+	AttemptLockStore attemptLockStore;
+	@Mock
+	Clock clock;
+
+	AttemptSessionServiceImpl service;
+	UUID attemptId;
+
+	@BeforeEach
+	void setUp() {
+		MockitoAnnotations.openMocks(this);
+		service = new AttemptSessionServiceImpl(attemptLockStore, clock);
+		attemptId = UUID.randomUUID();
+		when(clock.millis()).thenReturn(1_000_000L);
+	}
+
+	@Test
+	void register_acquiresLockOnce_andReconnectIsServedFromMemory() {
+		when(attemptLockStore.acquire(eq(attemptId), eq("s1"), eq("u1"), eq(1_000_000L), any(Duration.class), any(Duration.class)))
+				.thenReturn(true);
+
+		assertTrue(service.registerAttemptSession(attemptId, "u1", "s1"));
+		assertTrue(service.registerAttemptSession(attemptId, "u1", "s1"));
+
+		verify(attemptLockStore, times(1)).acquire(any(), any(), any(), anyLong(), any(), any());
+	}
+
+	@Test
+	void register_otherSessionActiveLocally_isBlockedWithoutRedis() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		assertFalse(service.registerAttemptSession(attemptId, "u1", "s2"));
+		assertTrue(service.isAttemptBlocked(attemptId, "s2"));
+		assertFalse(service.isAttemptBlocked(attemptId, "s1"));
+		assertEquals("s1", service.getActiveSessionForAttempt(attemptId));
+		verify(attemptLockStore, times(1)).acquire(any(), any(), any(), anyLong(), any(), any());
+		verify(attemptLockStore, never()).getOwner(any());
+	}
+
+	@Test
+	void register_lockHeldByAnotherNode_returnsFalse() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(false);
+
+		assertFalse(service.registerAttemptSession(attemptId, "u1", "s1"));
+	}
+
+	@Test
+	void register_redisError_returnsFalse() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any()))
+				.thenThrow(new RuntimeException("down"));
+
+		assertFalse(service.registerAttemptSession(attemptId, "u1", "s1"));
+	}
+
+	@Test
+	void isAttemptBlocked_notLocal_usesRedisOwner() {
+		when(attemptLockStore.getOwner(attemptId))
+				.thenReturn(new AttemptLockStore.Owner("other", "u2", 1_000_000L - 10_000L));
+
+		assertTrue(service.isAttemptBlocked(attemptId, "s1"));
+		assertFalse(service.isAttemptBlocked(attemptId, "other"));
+	}
+
+	@Test
+	void isAttemptBlocked_remoteOwnerExpired_returnsFalse() {
+		when(attemptLockStore.getOwner(attemptId))
+				.thenReturn(new AttemptLockStore.Owner("other", "u2", 1_000_000L - 61_000L));
+
+		assertFalse(service.isAttemptBlocked(attemptId, "s1"));
+		assertTrue(service.isSessionHeartbeatExpired(attemptId));
+		assertNull(service.getActiveSessionForAttempt(attemptId));
+	}
+
+	@Test
+	void pings_areCoalescedIntoOneFlush() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		when(attemptLockStore.touch(anyMap(), any(), any())).thenReturn(Set.of());
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		// Chưa có ping mới: không ghi gì
+		service.flushHeartbeats();
+		verify(attemptLockStore, never()).touch(anyMap(), any(), any());
+
+		when(clock.millis()).thenReturn(1_005_000L, 1_010_000L, 1_015_000L);
+		service.updateSessionActivity(attemptId, "s1");
+		service.updateSessionActivity(attemptId, "s1");
+		service.updateSessionActivity(attemptId, "s1");
+		service.flushHeartbeats();
+		service.flushHeartbeats();
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<Map<UUID, AttemptLockStore.Heartbeat>> captor = ArgumentCaptor.forClass(Map.class);
+		verify(attemptLockStore, times(1)).touch(captor.capture(), any(), any());
+		assertEquals(new AttemptLockStore.Heartbeat("s1", 1_015_000L), captor.getValue().get(attemptId));
+	}
+
+	@Test
+	void flush_lostOwnership_dropsLocalSession() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		when(attemptLockStore.touch(anyMap(), any(), any())).thenReturn(Set.of(attemptId));
+		service.registerAttemptSession(attemptId, "u1", "s1");
+		when(clock.millis()).thenReturn(1_005_000L);
+		service.updateSessionActivity(attemptId, "s1");
+
+		service.flushHeartbeats();
+
+		when(attemptLockStore.getOwner(attemptId)).thenReturn(new AttemptLockStore.Owner("s2", "u1", 1_005_000L));
+		assertEquals("s2", service.getActiveSessionForAttempt(attemptId));
+	}
+
+	@Test
+	void updateSessionActivity_afterRestart_adoptsOwnedSession() {
+		when(attemptLockStore.getOwner(attemptId)).thenReturn(new AttemptLockStore.Owner("s1", "u1", 990_000L));
+
+		service.updateSessionActivity(attemptId, "s1");
+		service.updateSessionActivity(attemptId, "s1");
+
+		verify(attemptLockStore, times(1)).getOwner(attemptId);
+		assertFalse(service.isAttemptBlocked(attemptId, "s1"));
+		assertTrue(service.isAttemptBlocked(attemptId, "s2"));
+	}
+
+	@Test
+	void unregister_removesLocalSessionAndReleasesLock() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		when(attemptLockStore.release(attemptId, "s1")).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		service.unregisterAttemptSession(attemptId, "s1");
+
+		verify(attemptLockStore).release(attemptId, "s1");
+		assertNull(service.getActiveSessionForAttempt(attemptId));
+	}
+
+	@Test
+	void unregister_otherSession_keepsLocalSession() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		service.unregisterAttemptSession(attemptId, "s2");
+
+		assertEquals("s1", service.getActiveSessionForAttempt(attemptId));
+	}
+
+	@Test
+	void cleanupExpiredHeartbeatSession_activeLocal_doesNothing() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		service.cleanupExpiredHeartbeatSession(attemptId);
+
+		verify(attemptLockStore, never()).releaseIfExpired(any(), anyLong(), any());
+	}
+
+	@Test
+	void cleanupExpiredHeartbeatSession_expiredLocal_releasesLock() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+		when(clock.millis()).thenReturn(1_061_000L);
+
+		service.cleanupExpiredHeartbeatSession(attemptId);
+
+		verify(attemptLockStore).releaseIfExpired(attemptId, 1_061_000L, AttemptSessionServiceImpl.HEARTBEAT_TIMEOUT);
+	}
+
+	@Test
+	void cleanupExpiredHeartbeatSession_released_publishesEvent() throws Exception {
+		AttemptLockReleasedEvent released = released(attemptId, "s1", 1_000_000L);
+		when(attemptLockStore.releaseIfExpired(attemptId, 1_000_000L, AttemptSessionServiceImpl.HEARTBEAT_TIMEOUT))
+				.thenReturn(released);
+
+		service.cleanupExpiredHeartbeatSession(attemptId);
+
+		verify(attemptLockStore).publishReleased(released);
+	}
+
+	@Test
+	void cleanupInactiveHeartbeatSessions_publishesEachReleasedLock() throws Exception {
+		AttemptLockReleasedEvent first = released(UUID.randomUUID(), "s1", 1_000_000L);
+		AttemptLockReleasedEvent second = released(UUID.randomUUID(), "s2", 1_000_000L);
+		when(attemptLockStore.sweep(anyLong(), any(), any(), anyInt())).thenReturn(List.of(first, second));
+
+		service.cleanupInactiveHeartbeatSessions();
+
+		verify(attemptLockStore, times(1)).sweep(1_000_000L,
+				AttemptSessionServiceImpl.HEARTBEAT_TIMEOUT.plus(AttemptSessionServiceImpl.SWEEP_GRACE),
+				AttemptSessionServiceImpl.HEARTBEAT_TIMEOUT, AttemptSessionServiceImpl.SWEEP_BATCH_SIZE);
+		verify(attemptLockStore).publishReleased(first);
+		verify(attemptLockStore).publishReleased(second);
+	}
+
+	@Test
+	void cleanupInactiveHeartbeatSessions_fullBatch_sweepsAgain() {
+		List<AttemptLockReleasedEvent> fullBatch = new ArrayList<>(Collections.nCopies(
+				AttemptSessionServiceImpl.SWEEP_BATCH_SIZE, released(UUID.randomUUID(), "s1", 1_000_000L)));
+		when(attemptLockStore.sweep(anyLong(), any(), any(), anyInt())).thenReturn(fullBatch, List.of());
+
+		service.cleanupInactiveHeartbeatSessions();
+
+		verify(attemptLockStore, times(2)).sweep(anyLong(), any(), any(), anyInt());
+	}
+
+	@Test
+	void cleanupInactiveHeartbeatSessions_redisError_isSwallowed() {
+		when(attemptLockStore.sweep(anyLong(), any(), any(), anyInt())).thenThrow(new RuntimeException("down"));
+
+		assertDoesNotThrow(() -> service.cleanupInactiveHeartbeatSessions());
+	}
+
+	@Test
+	void onAttemptLockReleased_dropsStaleLocalSession() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		service.onAttemptLockReleased(released(attemptId, "s1", 1_095_000L));
+
+		when(attemptLockStore.getOwner(attemptId)).thenReturn(null);
+		assertNull(service.getActiveSessionForAttempt(attemptId));
+		verify(attemptLockStore).getOwner(attemptId);
+	}
+
+	@Test
+	void onAttemptLockReleased_sessionPingedAfterRelease_isKept() {
+		when(attemptLockStore.acquire(any(), any(), any(), anyLong(), any(), any())).thenReturn(true);
+		service.registerAttemptSession(attemptId, "u1", "s1");
+
+		service.onAttemptLockReleased(released(attemptId, "s1", 999_000L));
+		service.onAttemptLockReleased(released(attemptId, "other", 1_095_000L));
+
+		assertEquals("s1", service.getActiveSessionForAttempt(attemptId));
+	}
+
+	private static AttemptLockReleasedEvent released(UUID attemptId, String sessionId, long releasedAt) {
+		return AttemptLockReleasedEvent.builder()
+				.attemptId(attemptId)
+				.sessionId(sessionId)
+				.userId("u1")
+				.releasedAt(releasedAt)
+				.build();
+	}
+}
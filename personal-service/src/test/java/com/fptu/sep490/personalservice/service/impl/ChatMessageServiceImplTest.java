@@ -0,0 +1,177 @@
+package com.fptu.sep490.personalservice.service.impl;
+
+import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.personalservice.component.ChatHistoryBuffer;
+import com.fptu.sep490.personalservice.model.ChatGroup;
+import com.fptu.sep490.personalservice.model.Message;
+import com.fptu.sep490.personalservice.repository.ChatGroupRepository;
+import com.fptu.sep490.personalservice.repository.MessageRepository;
+import com.fptu.sep490.personalservice.viewmodel.request.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Pageable;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+public class ChatMessageServiceImplTest {
+    @Mock
+    MessageRepository messageRepository;
+    @Mock
+    ChatGroupRepository chatGroupRepository;
+
+    ChatHistoryBuffer chatHistoryBuffer;
+    ChatMessageServiceImpl service;
+
+    private AutoCloseable closeable;
+    private final LocalDateTime base = LocalDateTime.of(2025, 1, 1, 8, 0);
+    private final AtomicLong ids = new AtomicLong(100);
+
+    @BeforeEach
+    void setUp() {
+        closeable = MockitoAnnotations.openMocks(this);
+        chatHistoryBuffer = new ChatHistoryBuffer(3, 10, Duration.ofMinutes(5));
+        service = new ChatMessageServiceImpl(messageRepository, chatGroupRepository, chatHistoryBuffer);
+        when(messageRepository.save(any(Message.class))).thenAnswer(inv -> {
+            Message m = inv.getArgument(0);
+            m.setId(ids.incrementAndGet());
+            m.setSentAt(base.plusSeconds(m.getId()));
+            return m;
+        });
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        closeable.close();
+    }
+
+    private Message message(long id, String groupId) {
+        return Message.builder()
+                .id(id)
+                .group(ChatGroup.builder().id(groupId).build())
+                .senderId("u" + id)
+                .senderName("User " + id)
+                .content("m" + id)
+                .sentAt(base.plusSeconds(id))
+                .build();
+    }
+
+    private ChatMessage outgoing(String groupId, String content) {
+        return ChatMessage.builder().groupId(groupId).senderId("u").sender("User").content(content).build();
+    }
+
+    @Test
+    void getHistory_withoutCursor_loadsLatestOnceThenServesFromBuffer() {
+        when(chatGroupRepository.existsById("g1")).thenReturn(true);
+        when(messageRepository.findLatest(eq("g1"), any(Pageable.class)))
+                .thenReturn(List.of(message(3, "g1"), message(2, "g1"), message(1, "g1")));
+
+        List<ChatMessage> first = service.getHistory("g1", null, null, 2);
+        List<ChatMessage> second = service.getHistory("g1", null, null, 3);
+
+        assertEquals(List.of(2L, 3L), first.stream().map(ChatMessage::getMessageId).toList());
+        assertEquals(List.of(1L, 2L, 3L), second.stream().map(ChatMessage::getMessageId).toList());
+        verify(messageRepository, times(1)).findLatest(eq("g1"), any(Pageable.class));
+    }
+
+    @Test
+    void sendGroup_appendsToLoadedBuffer_andEvictsOldest() {
+        ChatGroup group = ChatGroup.builder().id("g1").name("Group").build();
+        when(chatGroupRepository.findById("g1")).thenReturn(Optional.of(group));
+        when(chatGroupRepository.existsById("g1")).thenReturn(true);
+        when(messageRepository.findLatest(eq("g1"), any(Pageable.class)))
+                .thenReturn(List.of(message(3, "g1"), message(2, "g1"), message(1, "g1")));
+        service.getHistory("g1", null, null, 3);
+
+        ChatMessage sent = service.sendGroup(outgoing("g1", "hello"));
+
+        assertEquals(101L, sent.getMessageId());
+        assertNotNull(sent.getSendAt());
+        List<ChatMessage> history = service.getHistory("g1", null, null, 3);
+        assertEquals(List.of(2L, 3L, 101L), history.stream().map(ChatMessage::getMessageId).toList());
+        assertEquals("hello", history.get(2).getContent());
+    }
+
+    @Test
+    void getHistory_before_usesKeysetQueryInAscendingOrder() {
+        when(messageRepository.findSentAt("g1", 50L)).thenReturn(Optional.of(base.plusSeconds(50)));
+        when(messageRepository.findBefore(eq("g1"), eq(base.plusSeconds(50)), eq(50L), any(Pageable.class)))
+                .thenReturn(List.of(message(49, "g1"), message(48, "g1")));
+
+        List<ChatMessage> page = service.getHistory("g1", 50L, null, 2);
+
+        assertEquals(List.of(48L, 49L), page.stream().map(ChatMessage::getMessageId).toList());
+        verify(messageRepository, never()).findLatest(any(), any());
+    }
+
+    @Test
+    void getHistory_after_returnsNewerMessages() {
+        when(messageRepository.findSentAt("g1", 10L)).thenReturn(Optional.of(base.plusSeconds(10)));
+        when(messageRepository.findAfter(eq("g1"), eq(base.plusSeconds(10)), eq(10L), any(Pageable.class)))
+                .thenReturn(List.of(message(11, "g1"), message(12, "g1")));
+
+        List<ChatMessage> page = service.getHistory("g1", null, 10L, 500);
+
+        assertEquals(List.of(11L, 12L), page.stream().map(ChatMessage::getMessageId).toList());
+        verify(messageRepository).findAfter(eq("g1"), any(), eq(10L),
+                argThat(p -> p.getPageSize() == ChatMessageServiceImpl.MAX_PAGE_SIZE));
+    }
+
+    @Test
+    void getHistory_unknownCursor_throwsNotFound() {
+        when(messageRepository.findSentAt("g1", 7L)).thenReturn(Optional.empty());
+
+        assertThrows(AppException.class, () -> service.getHistory("g1", 7L, null, 10));
+    }
+
+    @Test
+    void getHistory_bothCursors_throwsBadRequest() {
+        assertThrows(AppException.class, () -> service.getHistory("g1", 1L, 2L, 10));
+    }
+
+    @Test
+    void getHistory_unknownGroup_throwsNotFound() {
+        when(chatGroupRepository.existsById("missing")).thenReturn(false);
+
+        assertThrows(AppException.class, () -> service.getHistory("missing", null, null, 10));
+    }
+
+    @Test
+    void sendPublic_looksUpPublicGroupOnce() {
+        ChatGroup publicGroup = ChatGroup.builder().id("public").name(ChatMessageServiceImpl.PUBLIC_CHAT).build();
+        when(chatGroupRepository.findByName(ChatMessageServiceImpl.PUBLIC_CHAT)).thenReturn(Optional.of(publicGroup));
+
+        service.sendPublic(outgoing(null, "a"));
+        ChatMessage second = service.sendPublic(outgoing(null, "b"));
+
+        assertEquals("public", second.getGroupId());
+        verify(chatGroupRepository, times(1)).findByName(ChatMessageServiceImpl.PUBLIC_CHAT);
+        verify(messageRepository, times(2)).save(any(Message.class));
+    }
+
+    @Test
+    void sendPublic_createsPublicGroupWhenMissing() {
+        when(chatGroupRepository.findByName(ChatMessageServiceImpl.PUBLIC_CHAT)).thenReturn(Optional.empty());
+        when(chatGroupRepository.save(any(ChatGroup.class))).thenAnswer(inv -> {
+            ChatGroup g = inv.getArgument(0);
+            g.setId("created");
+            return g;
+        });
+
+        ChatMessage sent = service.sendPublic(outgoing(null, "a"));
+
+        assertEquals("created", sent.getGroupId());
+        verify(chatGroupRepository).save(any(ChatGroup.class));
+    }
+}
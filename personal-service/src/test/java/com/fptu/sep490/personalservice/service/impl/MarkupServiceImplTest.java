@@ -3,6 +3,7 @@ package com.fptu.sep490.personalservice.service.impl;
 import com.fptu.sep490.commonlibrary.constants.DataMarkup;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.viewmodel.response.BaseResponse;
+import com.fptu.sep490.personalservice.component.FanOutClient;
 import com.fptu.sep490.personalservice.helper.Helper;
 import com.fptu.sep490.personalservice.model.Markup;
 import com.fptu.sep490.personalservice.model.enumeration.MarkupType;
@@ -15,6 +16,7 @@ import com.fptu.sep490.personalservice.viewmodel.request.MarkupCreationRequest;
 import com.fptu.sep490.personalservice.viewmodel.response.MarkUpResponse;
 import com.fptu.sep490.personalservice.viewmodel.response.MarkedUpResponse;
 import com.fptu.sep490.personalservice.viewmodel.response.TaskTitle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import jakarta.servlet.http.HttpServletRequest;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -48,7 +50,8 @@ class MarkupServiceImplTest {
 	@BeforeEach
 	void setUp() {
 		MockitoAnnotations.openMocks(this);
-		service = new MarkupServiceImpl(markupRepository, helper, readingClient, listeningClient);
+		service = new MarkupServiceImpl(markupRepository, helper, readingClient, listeningClient,
+				new FanOutClient(new SimpleMeterRegistry(), 1000));
 	}
 
 	@Test
@@ -139,6 +142,36 @@ class MarkupServiceImplTest {
 		assertEquals("L-E1", content.get(3).taskTitle());
 	}
 
+	@Test
+	void getMarkup_failedLeg_leavesOnlyThoseTitlesEmpty() {
+		HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+		when(helper.getAccessToken(req)).thenReturn("tok");
+		when(helper.getUserIdFromToken(req)).thenReturn(UUID.randomUUID().toString());
+
+		UUID readingTask = UUID.randomUUID();
+		UUID listeningTask = UUID.randomUUID();
+		LocalDateTime base = LocalDateTime.now();
+		List<Markup> markups = List.of(
+				Markup.builder().markupType(MarkupType.BOOKMARK).taskType(TaskType.READING).practiceType(PracticeType.TASK).taskId(readingTask).createdAt(base.plusSeconds(1)).build(),
+				Markup.builder().markupType(MarkupType.BOOKMARK).taskType(TaskType.LISTENING).practiceType(PracticeType.TASK).taskId(listeningTask).createdAt(base).build()
+		);
+		when(markupRepository.findAll(Mockito.<Specification<Markup>>any(), any(Pageable.class)))
+				.thenReturn(new PageImpl<>(markups, PageRequest.of(0, 10), markups.size()));
+		when(readingClient.getReadingTitle(anyList(), anyString())).thenThrow(new RuntimeException("reading down"));
+		when(listeningClient.getListeningTitle(anyList(), anyString())).thenReturn(ResponseEntity.ok(
+				BaseResponse.<List<TaskTitle>>builder()
+						.data(List.of(TaskTitle.builder().taskId(listeningTask).title("L-T1").build()))
+						.build()));
+
+		var content = service.getMarkup(0, 10, List.of(), List.of(), List.of(), req).getContent();
+
+		assertNull(content.get(0).taskTitle());
+		assertEquals("L-T1", content.get(1).taskTitle());
+		// Không có markup exam nào: không gọi sang service
+		verify(readingClient, never()).getExamTitle(anyList(), anyString());
+		verify(listeningClient, never()).getExamTitle(anyList(), anyString());
+	}
+
 	@Test
 	void getMarkedUpData_allTypes_andFallbackToSecurityContext() {
 		HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
@@ -638,8 +638,10 @@ public class ModuleServiceImplTest {
         // Mock helper profile
         UserProfileResponse creatorProfile = UserProfileResponse.builder().email("creator@example.com").build();
         UserProfileResponse shareToProfile = UserProfileResponse.builder().email("shareto@example.com").build();
-        when(helper.getUserProfileById(module.getCreatedBy())).thenReturn(creatorProfile);
-        when(helper.getUserProfileById(moduleUser.getUserId())).thenReturn(shareToProfile);
+        Map<String, UserProfileResponse> profiles = new HashMap<>();
+        profiles.put(module.getCreatedBy(), creatorProfile);
+        profiles.put(moduleUser.getUserId(), shareToProfile);
+        when(helper.getUserProfiles(anyCollection())).thenReturn(profiles);
 
         // Call service
         Page<ModuleUserResponse> responsePage = service.getAllSharedModules(requestMock, 0, 10, "moduleName", "asc", "", 1);
@@ -796,10 +798,10 @@ public class ModuleServiceImplTest {
                 .thenReturn(modulePage);
 
         // Mock helper to return user profiles
-        when(helper.getUserProfileById(module.getCreatedBy()))
-                .thenReturn(UserProfileResponse.builder().email("creator@test.com").build());
-        when(helper.getUserProfileById(moduleUser.getUserId()))
-                .thenReturn(UserProfileResponse.builder().email("user@test.com").build());
+        Map<String, UserProfileResponse> profiles = new HashMap<>();
+        profiles.put(module.getCreatedBy(), UserProfileResponse.builder().email("creator@test.com").build());
+        profiles.put(moduleUser.getUserId(), UserProfileResponse.builder().email("user@test.com").build());
+        when(helper.getUserProfiles(anyCollection())).thenReturn(profiles);
 
         // Call service
         Page<ModuleUserResponse> responsePage = service.getAllMySharedModules(
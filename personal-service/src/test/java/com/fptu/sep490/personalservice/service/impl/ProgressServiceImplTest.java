@@ -0,0 +1,126 @@
+package com.fptu.sep490.personalservice.service.impl;
+
+import com.fptu.sep490.commonlibrary.viewmodel.response.BaseResponse;
+import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
+import com.fptu.sep490.commonlibrary.viewmodel.response.feign.OverviewProgress;
+import com.fptu.sep490.personalservice.component.FanOutClient;
+import com.fptu.sep490.personalservice.helper.Helper;
+import com.fptu.sep490.personalservice.repository.client.ListeningClient;
+import com.fptu.sep490.personalservice.repository.client.ReadingClient;
+import com.fptu.sep490.personalservice.viewmodel.response.BandScoreData;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.ResponseEntity;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ProgressServiceImplTest {
+
+	@Mock
+	ReadingClient readingClient;
+	@Mock
+	ListeningClient listeningClient;
+	@Mock
+	Helper helper;
+
+	SimpleMeterRegistry meterRegistry;
+	ProgressServiceImpl service;
+	HttpServletRequest request;
+
+	@BeforeEach
+	void setUp() {
+		MockitoAnnotations.openMocks(this);
+		meterRegistry = new SimpleMeterRegistry();
+		service = new ProgressServiceImpl(readingClient, listeningClient, helper, new FanOutClient(meterRegistry, 500));
+		request = Mockito.mock(HttpServletRequest.class);
+		when(helper.getAccessToken(request)).thenReturn("tok");
+	}
+
+	@Test
+	void getBandScore_callsBothServicesConcurrently() {
+		// Mỗi nhánh chỉ trả về khi nhánh kia đã bắt đầu: chạy tuần tự sẽ bị timeout
+		CountDownLatch bothStarted = new CountDownLatch(2);
+		when(readingClient.getBandScore("Bearer tok")).thenAnswer(inv -> {
+			bothStarted.countDown();
+			bothStarted.await(1, TimeUnit.SECONDS);
+			return ok(new BandScoreData(6.5));
+		});
+		when(listeningClient.getBandScore("Bearer tok")).thenAnswer(inv -> {
+			bothStarted.countDown();
+			bothStarted.await(1, TimeUnit.SECONDS);
+			return ok(new BandScoreData(7.0));
+		});
+
+		var out = service.getBandScore(request);
+
+		assertEquals(6.5, out.reading());
+		assertEquals(7.0, out.listening());
+		assertEquals(1, meterRegistry.get("fan_out.call").tag("leg", "reading.band-score")
+				.tag("outcome", "success").timer().count());
+	}
+
+	@Test
+	void getBandScore_failedLeg_degradesToNull() {
+		when(readingClient.getBandScore(anyString())).thenThrow(new RuntimeException("down"));
+		when(listeningClient.getBandScore(anyString())).thenReturn(ok(new BandScoreData(7.0)));
+
+		var out = service.getBandScore(request);
+
+		assertNull(out.reading());
+		assertEquals(7.0, out.listening());
+		assertEquals(1, meterRegistry.get("fan_out.call").tag("leg", "reading.band-score")
+				.tag("outcome", "error").timer().count());
+	}
+
+	@Test
+	void getBandChart_slowLeg_timesOutWithEmptyData() {
+		List<LineChartData> listening = List.of(LineChartData.builder().date(LocalDate.of(2025, 6, 2)).value(30.0).build());
+		when(readingClient.getBandChart(any(), anyString())).thenAnswer(inv -> {
+			Thread.sleep(2_000);
+			return ok(List.<LineChartData>of());
+		});
+		when(listeningClient.getBandChart(any(), anyString())).thenReturn(ok(listening));
+
+		long start = System.nanoTime();
+		var out = service.getBandChart("1w", null, null, request);
+		long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(out.getReadingData().isEmpty());
+		assertEquals(listening, out.getListeningData());
+		assertTrue(elapsedMs < 1_500, "waited " + elapsedMs + " ms");
+		assertEquals(1, meterRegistry.get("fan_out.call").tag("leg", "reading.band-chart")
+				.tag("outcome", "timeout").timer().count());
+	}
+
+	@Test
+	void getOverviewProgress_emptyBody_usesOtherLeg() {
+		OverviewProgress listening = new OverviewProgress();
+		listening.setExam(3);
+		listening.setTask(4);
+		listening.setAverageBandInTimeFrame(6.0);
+		when(readingClient.getExamOverview(any(), anyString())).thenReturn(ResponseEntity.ok().build());
+		when(listeningClient.getExamOverview(any(), anyString())).thenReturn(ok(listening));
+
+		var out = service.getOverviewProgress("1w", request);
+
+		assertNull(out.reading().exam());
+		assertEquals(3, out.listening().exam());
+		assertEquals(6.0, out.bandStats().averageListeningBand());
+	}
+
+	private static <T> ResponseEntity<BaseResponse<T>> ok(T data) {
+		return ResponseEntity.ok(BaseResponse.<T>builder().data(data).build());
+	}
+}
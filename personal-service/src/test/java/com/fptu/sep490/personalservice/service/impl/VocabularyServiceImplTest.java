@@ -15,7 +15,9 @@ import org.junit.jupiter.api.*;
 import org.mockito.*;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 
 import java.util.List;
 import java.util.Optional;
@@ -266,6 +268,19 @@ class VocabularyServiceImplTest {
         assertEquals("word", result.getContent().get(0).word());
     }
 
+    @Test
+    void getAllVocabulary_keywordWithoutSort_ordersByRelevance() throws Exception {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(helper.getUserIdFromToken(req)).thenReturn("user1");
+        when(vocabularyRepository.searchVocabulary(eq("keyword"), any(Pageable.class), eq("user1")))
+                .thenReturn(Page.empty());
+
+        service.getAllVocabulary(req, 0, 10, null, null, "keyword");
+
+        // Pageable không sort: repository xếp theo độ liên quan
+        verify(vocabularyRepository).searchVocabulary("keyword", PageRequest.of(0, 10), "user1");
+    }
+
     @Test
     void getAllVocabulary_descendingSorting_success() throws Exception {
         HttpServletRequest req = mock(HttpServletRequest.class);
@@ -289,6 +304,19 @@ class VocabularyServiceImplTest {
         assertEquals("word", result.getContent().get(0).word());
     }
 
+    @Test
+    void getAllVocabulary_unsupportedSortProperty_returnsBadRequest() {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(helper.getUserIdFromToken(req)).thenReturn("user1");
+        when(vocabularyRepository.searchVocabulary(eq("keyword"), any(Pageable.class), eq("user1")))
+                .thenThrow(new IllegalArgumentException("Unsupported sort property: createdBy"));
+
+        AppException ex = assertThrows(AppException.class,
+                () -> service.getAllVocabulary(req, 0, 10, "createdBy", "asc", "keyword"));
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), ex.getHttpStatusCode());
+    }
+
     @Test
     void getAllVocabulary_emptyResult_success() throws Exception {
         HttpServletRequest req = mock(HttpServletRequest.class);
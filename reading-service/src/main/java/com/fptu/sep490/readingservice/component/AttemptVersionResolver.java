@@ -0,0 +1,129 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.DragItem;
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.QuestionGroup;
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.json.AttemptVersion;
+import com.fptu.sep490.readingservice.model.json.QuestionVersion;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Dựng lại nội dung một attempt từ snapshot {@link AttemptVersion}: gom toàn bộ id group, question,
+ * choice, drag item rồi nạp mỗi loại entity bằng một query IN duy nhất.
+ * Entity không còn tồn tại sẽ bị bỏ qua.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class AttemptVersionResolver {
+    QuestionGroupRepository questionGroupRepository;
+    QuestionRepository questionRepository;
+    ChoiceRepository choiceRepository;
+    DragItemRepository dragItemRepository;
+
+    @Transactional(readOnly = true)
+    public ResolvedAttempt resolve(AttemptVersion attemptVersion) {
+        Map<UUID, List<QuestionVersion>> groupMappingQuestion = attemptVersion.getGroupMappingQuestion() != null
+                ? attemptVersion.getGroupMappingQuestion() : Map.of();
+        Map<UUID, List<UUID>> groupMappingDragItem = attemptVersion.getGroupMappingDragItem() != null
+                ? attemptVersion.getGroupMappingDragItem() : Map.of();
+
+        Set<UUID> questionIds = new LinkedHashSet<>();
+        Set<UUID> dragItemIds = new LinkedHashSet<>();
+        groupMappingQuestion.forEach((groupId, versions) -> {
+            versions.forEach(v -> questionIds.add(v.getQuestionId()));
+            dragItemIds.addAll(groupMappingDragItem.getOrDefault(groupId, List.of()));
+        });
+
+        Map<UUID, QuestionGroup> groupById = byId(
+                findAll(groupMappingQuestion.keySet(), questionGroupRepository::findAllById), QuestionGroup::getGroupId);
+        Map<UUID, Question> questionById = byId(findAll(questionIds, questionRepository::findAllById),
+                Question::getQuestionId);
+        Map<UUID, DragItem> dragItemById = byId(findAll(dragItemIds, dragItemRepository::findAllById),
+                DragItem::getDragItemId);
+
+        // Chỉ câu MULTIPLE_CHOICE mới cần choice
+        Set<UUID> choiceIds = new LinkedHashSet<>();
+        groupMappingQuestion.values().forEach(versions -> versions.forEach(v -> {
+            Question question = questionById.get(v.getQuestionId());
+            if (question != null && question.getQuestionType() == QuestionType.MULTIPLE_CHOICE
+                    && v.getChoiceMapping() != null) {
+                choiceIds.addAll(v.getChoiceMapping());
+            }
+        }));
+        Map<UUID, Choice> choiceById = byId(findAll(choiceIds, choiceRepository::findAllById), Choice::getChoiceId);
+
+        Map<QuestionGroup, List<Question>> groupQuestions = new LinkedHashMap<>();
+        Map<UUID, List<DragItem>> groupDragItems = new HashMap<>();
+        Map<UUID, List<Choice>> questionChoices = new HashMap<>();
+        groupMappingQuestion.forEach((groupId, versions) -> {
+            QuestionGroup group = groupById.get(groupId);
+            if (group == null) {
+                return;
+            }
+            List<Question> questions = new ArrayList<>();
+            versions.forEach(v -> {
+                Question question = questionById.get(v.getQuestionId());
+                if (question == null) {
+                    return;
+                }
+                if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
+                    questionChoices.put(question.getQuestionId(), pick(v.getChoiceMapping(), choiceById));
+                }
+                questions.add(question);
+            });
+            groupQuestions.put(group, questions);
+            groupDragItems.put(groupId, pick(groupMappingDragItem.get(groupId), dragItemById));
+        });
+        return new ResolvedAttempt(groupQuestions, groupDragItems, questionChoices);
+    }
+
+    private static <T> List<T> findAll(Set<UUID> ids, Function<Collection<UUID>, List<T>> query) {
+        return ids.isEmpty() ? List.of() : query.apply(ids);
+    }
+
+    private static <T> Map<UUID, T> byId(List<T> entities, Function<T, UUID> idOf) {
+        return entities.stream().collect(Collectors.toMap(idOf, Function.identity(), (a, b) -> a));
+    }
+
+    private static <T> List<T> pick(List<UUID> ids, Map<UUID, T> byId) {
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        return ids.stream().map(byId::get).filter(Objects::nonNull).collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Kết quả resolve: question theo group (giữ thứ tự snapshot), drag item theo group id,
+     * choice theo question id (chỉ câu MULTIPLE_CHOICE).
+     */
+    public record ResolvedAttempt(
+            Map<QuestionGroup, List<Question>> groupQuestions,
+            Map<UUID, List<DragItem>> groupDragItems,
+            Map<UUID, List<Choice>> questionChoices
+    ) {
+    }
+}
@@ -0,0 +1,73 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.repository.QuestionTypeDailyStatsRepository;
+import com.fptu.sep490.readingservice.repository.UserExamScoreRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Đối soát các rollup của dashboard với dữ liệu gốc:
+ * <ul>
+ *     <li>Khi khởi động, dựng toàn bộ nếu bảng rollup còn rỗng (dữ liệu có trước khi có rollup)</li>
+ *     <li>Định kỳ đếm lại question_type_daily_stats của {@code reconcileDays} ngày gần nhất từ report_data
+ *     (dùng index theo checked_date) và tính lại user_exam_score từ exam_attempt,
+ *     sửa phần lệch do cộng dồn song song hoặc điểm cao nhất bị hạ khi nộp lại</li>
+ * </ul>
+ * Các câu lệnh ghi đè theo GROUP BY nên nhiều node cùng chạy vẫn an toàn.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class DashboardRollupReconciler {
+    QuestionTypeDailyStatsRepository questionTypeDailyStatsRepository;
+    UserExamScoreRepository userExamScoreRepository;
+
+    @NonFinal
+    @Value("${dashboard-rollup.backfill-on-startup:true}")
+    boolean backfillOnStartup;
+
+    @NonFinal
+    @Value("${dashboard-rollup.reconcile-days:2}")
+    int reconcileDays;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup) {
+            return;
+        }
+        try {
+            if (questionTypeDailyStatsRepository.count() == 0) {
+                int rows = questionTypeDailyStatsRepository.reconcile(null);
+                log.info("Backfilled question type stats: {} rows", rows);
+            }
+            if (userExamScoreRepository.count() == 0) {
+                int users = userExamScoreRepository.reconcile();
+                log.info("Backfilled user exam scores: {} users", users);
+            }
+        } catch (RuntimeException e) {
+            log.error("Error backfilling dashboard rollups", e);
+        }
+    }
+
+    @Scheduled(cron = "${dashboard-rollup.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        try {
+            int rows = questionTypeDailyStatsRepository.reconcile(LocalDate.now().minusDays(reconcileDays - 1L));
+            int users = userExamScoreRepository.reconcile();
+            log.info("Reconciled dashboard rollups: {} question type rows, {} users", rows, users);
+        } catch (RuntimeException e) {
+            log.error("Error reconciling dashboard rollups", e);
+        }
+    }
+}
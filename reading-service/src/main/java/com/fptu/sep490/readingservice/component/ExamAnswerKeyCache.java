@@ -0,0 +1,41 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.cache.TwoTierCache;
+import com.fptu.sep490.commonlibrary.cache.TwoTierCacheRegistry;
+import com.fptu.sep490.readingservice.model.grading.ExamAnswerKey;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cache đáp án đã biên dịch theo phiên bản đề thi (key = readingExamId).
+ * Bị xóa khi đề được cập nhật / xóa, hoặc khi nội dung một passage của đề thay đổi
+ * (xem {@link PassageCacheInvalidator}).
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExamAnswerKeyCache {
+    TwoTierCache<ExamAnswerKey> cache;
+    ExamAnswerKeyCompiler examAnswerKeyCompiler;
+
+    public ExamAnswerKeyCache(TwoTierCacheRegistry registry,
+                              ExamAnswerKeyCompiler examAnswerKeyCompiler,
+                              @Value("${cache.exam-answer-key.max-size:200}") long maxSize,
+                              @Value("${cache.exam-answer-key.local-ttl:PT30M}") Duration localTtl,
+                              @Value("${cache.exam-answer-key.redis-ttl:PT12H}") Duration redisTtl) {
+        this.cache = registry.create("exam-answer-key", ExamAnswerKey.class, maxSize, localTtl, redisTtl);
+        this.examAnswerKeyCompiler = examAnswerKeyCompiler;
+    }
+
+    public ExamAnswerKey get(UUID readingExamId) {
+        return cache.get(readingExamId.toString(), () -> examAnswerKeyCompiler.compileForExam(readingExamId));
+    }
+
+    public void evict(UUID readingExamId) {
+        cache.evict(readingExamId.toString());
+    }
+}
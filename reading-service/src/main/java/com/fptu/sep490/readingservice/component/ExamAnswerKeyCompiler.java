@@ -0,0 +1,167 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.readingservice.constants.Constants;
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.DragItem;
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.QuestionGroup;
+import com.fptu.sep490.readingservice.model.ReadingExam;
+import com.fptu.sep490.readingservice.model.ReadingPassage;
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.grading.ExamAnswerKey;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import com.fptu.sep490.readingservice.repository.ReadingExamRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+/**
+ * Biên dịch {@link ExamAnswerKey} cho một phiên bản đề thi: câu hỏi là phiên bản hiện tại
+ * trong các group của 3 passage, giống nội dung trả về khi tạo exam attempt.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExamAnswerKeyCompiler {
+    ReadingExamRepository readingExamRepository;
+    QuestionGroupRepository questionGroupRepository;
+    QuestionRepository questionRepository;
+    ChoiceRepository choiceRepository;
+    DragItemRepository dragItemRepository;
+
+    @Transactional(readOnly = true)
+    public ExamAnswerKey compileForExam(UUID readingExamId) {
+        ReadingExam exam = readingExamRepository.findById(readingExamId)
+                .orElseThrow(() -> new AppException(
+                        Constants.ErrorCodeMessage.READING_EXAM_NOT_FOUND,
+                        Constants.ErrorCode.READING_EXAM_NOT_FOUND,
+                        HttpStatus.NOT_FOUND.value()
+                ));
+        List<UUID> passageIds = Stream.of(exam.getPart1(), exam.getPart2(), exam.getPart3())
+                .filter(Objects::nonNull)
+                .map(ReadingPassage::getPassageId)
+                .toList();
+        List<UUID> groupIds = passageIds.isEmpty() ? List.of() : questionGroupRepository.findAllByReadingPassageIds(passageIds)
+                .stream()
+                .map(QuestionGroup::getGroupId)
+                .toList();
+        List<Question> questions = groupIds.isEmpty() ? List.of() : questionRepository.findCurrentVersionByGroupIds(groupIds);
+        return compile(readingExamId, questions);
+    }
+
+    @Transactional(readOnly = true)
+    public ExamAnswerKey compile(UUID examId, List<Question> questions) {
+        int size = questions.size();
+        Map<UUID, Integer> slots = new HashMap<>();
+        UUID[] questionIds = new UUID[size];
+        QuestionType[] questionTypes = new QuestionType[size];
+        int[] questionOrders = new int[size];
+        int[] points = new int[size];
+        String[] explanations = new String[size];
+        UUID[][] correctChoiceIds = new UUID[size][];
+        String[][] correctChoiceLabels = new String[size][];
+        String[] correctTexts = new String[size];
+        String[] normalizedTexts = new String[size];
+        UUID[] correctDragItemIds = new UUID[size];
+        String[] correctDragItemContents = new String[size];
+
+        // Choice đúng: choice gốc của câu hỏi gốc, rồi mọi phiên bản của các choice đó (lọc isCorrect trong bộ nhớ)
+        Set<UUID> multipleChoiceOriginalIds = new LinkedHashSet<>();
+        Set<UUID> dragQuestionIds = new LinkedHashSet<>();
+        for (Question q : questions) {
+            if (q.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
+                multipleChoiceOriginalIds.add(originalQuestionId(q));
+            } else if (q.getQuestionType() == QuestionType.DRAG_AND_DROP) {
+                dragQuestionIds.add(q.getQuestionId());
+            }
+        }
+        Map<UUID, String> choiceLabels = new HashMap<>();
+        Map<UUID, List<Choice>> correctChoicesByOriginalQuestionId = new HashMap<>();
+        if (!multipleChoiceOriginalIds.isEmpty()) {
+            Map<UUID, UUID> originalQuestionIdByOriginalChoiceId = new HashMap<>();
+            choiceRepository.getOriginalChoicesByOriginalQuestions(multipleChoiceOriginalIds)
+                    .forEach(c -> originalQuestionIdByOriginalChoiceId.put(c.getChoiceId(), c.getQuestion().getQuestionId()));
+            if (!originalQuestionIdByOriginalChoiceId.isEmpty()) {
+                for (Choice c : choiceRepository.findAllVersionsByOriginalChoiceIds(originalQuestionIdByOriginalChoiceId.keySet())) {
+                    choiceLabels.put(c.getChoiceId(), c.getLabel());
+                    UUID originalChoiceId = c.getParent() != null ? c.getParent().getChoiceId() : c.getChoiceId();
+                    UUID originalQuestionId = originalQuestionIdByOriginalChoiceId.get(originalChoiceId);
+                    if (c.isCorrect() && originalQuestionId != null) {
+                        correctChoicesByOriginalQuestionId.computeIfAbsent(originalQuestionId, k -> new ArrayList<>()).add(c);
+                    }
+                }
+            }
+        }
+        Map<UUID, DragItem> dragItemByQuestionId = new HashMap<>();
+        if (!dragQuestionIds.isEmpty()) {
+            dragItemRepository.findByQuestionIds(dragQuestionIds)
+                    .forEach(di -> dragItemByQuestionId.putIfAbsent(di.getQuestion().getQuestionId(), di));
+        }
+
+        for (int i = 0; i < size; i++) {
+            Question q = questions.get(i);
+            slots.put(q.getQuestionId(), i);
+            questionIds[i] = q.getQuestionId();
+            questionTypes[i] = q.getQuestionType();
+            questionOrders[i] = q.getQuestionOrder();
+            points[i] = q.getPoint();
+            explanations[i] = q.getExplanation();
+            List<Choice> correctChoices = correctChoicesByOriginalQuestionId.getOrDefault(originalQuestionId(q), List.of());
+            correctChoiceIds[i] = correctChoices.stream().map(Choice::getChoiceId).toArray(UUID[]::new);
+            correctChoiceLabels[i] = correctChoices.stream().map(Choice::getLabel).toArray(String[]::new);
+            if (q.getQuestionType() == QuestionType.FILL_IN_THE_BLANKS) {
+                correctTexts[i] = q.getCorrectAnswer();
+            } else if (q.getQuestionType() == QuestionType.MATCHING) {
+                correctTexts[i] = q.getCorrectAnswerForMatching();
+            }
+            normalizedTexts[i] = normalize(correctTexts[i]);
+            DragItem dragItem = dragItemByQuestionId.get(q.getQuestionId());
+            if (dragItem != null) {
+                correctDragItemIds[i] = dragItem.getDragItemId();
+                correctDragItemContents[i] = dragItem.getContent();
+            }
+        }
+        return ExamAnswerKey.builder()
+                .examId(examId)
+                .slots(slots)
+                .questionIds(questionIds)
+                .questionTypes(questionTypes)
+                .questionOrders(questionOrders)
+                .points(points)
+                .explanations(explanations)
+                .correctChoiceIds(correctChoiceIds)
+                .correctChoiceLabels(correctChoiceLabels)
+                .correctTexts(correctTexts)
+                .normalizedTexts(normalizedTexts)
+                .correctDragItemIds(correctDragItemIds)
+                .correctDragItemContents(correctDragItemContents)
+                .choiceLabels(choiceLabels)
+                .build();
+    }
+
+    public static String normalize(String text) {
+        return text != null ? text.toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static UUID originalQuestionId(Question q) {
+        return q.getParent() != null ? q.getParent().getQuestionId() : q.getQuestionId();
+    }
+}
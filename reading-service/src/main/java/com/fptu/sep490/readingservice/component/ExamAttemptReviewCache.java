@@ -0,0 +1,80 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.cache.TwoTierCache;
+import com.fptu.sep490.commonlibrary.cache.TwoTierCacheRegistry;
+import com.fptu.sep490.readingservice.viewmodel.response.ExamAttemptGetDetail;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Cache phần đề đã dựng lại từ history của một lượt làm bài đã nộp (key = examAttemptId + thế hệ của đề),
+ * dùng cho màn xem lại kết quả. Quyền sở hữu và thông tin người dùng vẫn được kiểm tra / ghép mỗi request.
+ * <ul>
+ *     <li>Bị xóa khi lượt làm bài được nộp lại</li>
+ *     <li>History chỉ tham chiếu các dòng nội dung theo id, phiên bản mới không ảnh hưởng. Khi nội dung một đề bị sửa /
+ *     xóa tại chỗ (xem {@link PassageCacheInvalidator}), thế hệ của đề trên Redis tăng lên nên các bản xem lại
+ *     của đề đó không còn được đọc (hết hạn theo TTL); bản xem lại của các đề khác giữ nguyên</li>
+ * </ul>
+ */
+@Slf4j
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExamAttemptReviewCache {
+    static final String GENERATION_KEY = "cache:exam-attempt-review:exam-generation";
+
+    TwoTierCache<ExamAttemptGetDetail.ReadingExamResponse> cache;
+    StringRedisTemplate stringRedisTemplate;
+
+    public ExamAttemptReviewCache(TwoTierCacheRegistry registry,
+                                  StringRedisTemplate stringRedisTemplate,
+                                  @Value("${cache.exam-attempt-review.max-size:1000}") long maxSize,
+                                  @Value("${cache.exam-attempt-review.local-ttl:PT10M}") Duration localTtl,
+                                  @Value("${cache.exam-attempt-review.redis-ttl:PT24H}") Duration redisTtl) {
+        this.cache = registry.create("exam-attempt-review", ExamAttemptGetDetail.ReadingExamResponse.class,
+                maxSize, localTtl, redisTtl);
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    public ExamAttemptGetDetail.ReadingExamResponse get(UUID examAttemptId,
+                                                    UUID readingExamId,
+                                                    Supplier<ExamAttemptGetDetail.ReadingExamResponse> loader) {
+        String generation = generation(readingExamId);
+        if (generation == null) {
+            return loader.get();
+        }
+        return cache.get(examAttemptId + ":" + generation, loader);
+    }
+
+    public void evict(UUID examAttemptId, UUID readingExamId) {
+        String generation = generation(readingExamId);
+        if (generation != null) {
+            cache.evict(examAttemptId + ":" + generation);
+        }
+    }
+
+    public void invalidateExams(Collection<UUID> readingExamIds) {
+        for (UUID readingExamId : readingExamIds) {
+            stringRedisTemplate.opsForHash().increment(GENERATION_KEY, readingExamId.toString(), 1);
+        }
+    }
+
+    // null nếu không đọc được Redis: khi đó không dùng cache vì không biết bản nào còn hiệu lực
+    private String generation(UUID readingExamId) {
+        try {
+            Object generation = stringRedisTemplate.opsForHash().get(GENERATION_KEY, readingExamId.toString());
+            return generation != null ? generation.toString() : "0";
+        } catch (RuntimeException e) {
+            log.warn("Cannot read review generation of exam {} from Redis: {}", readingExamId, e.getMessage());
+            return null;
+        }
+    }
+}
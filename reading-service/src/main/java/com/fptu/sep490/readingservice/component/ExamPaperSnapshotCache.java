@@ -0,0 +1,74 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.cache.TwoTierCache;
+import com.fptu.sep490.commonlibrary.cache.TwoTierCacheRegistry;
+import com.fptu.sep490.readingservice.viewmodel.response.CreateExamAttemptResponse;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Snapshot đề thi trả về khi bắt đầu làm bài ({@code reading_exam} của {@link CreateExamAttemptResponse}),
+ * key = readingExamId của phiên bản đề. Nội dung giống nhau với mọi học viên nên chỉ render một lần:
+ * Redis giữ bản JSON đã serialize, local giữ object đã dựng; mỗi attempt chỉ ghép thêm id / người tạo.
+ * <ul>
+ *     <li>Bị xóa khi đề được cập nhật / xóa, hoặc khi nội dung một passage của đề thay đổi
+ *     (xem {@link PassageCacheInvalidator})</li>
+ *     <li>Trên một node, các request cùng lúc của một đề chưa có snapshot chỉ render một lần; lần render đang
+ *     chạy từ trước khi xóa không được dùng chung cho request đến sau đó</li>
+ * </ul>
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ExamPaperSnapshotCache {
+    TwoTierCache<CreateExamAttemptResponse.ReadingExamResponse> cache;
+    Map<UUID, CompletableFuture<CreateExamAttemptResponse.ReadingExamResponse>> inFlight = new ConcurrentHashMap<>();
+
+    public ExamPaperSnapshotCache(TwoTierCacheRegistry registry,
+                                  @Value("${cache.exam-paper.max-size:200}") long maxSize,
+                                  @Value("${cache.exam-paper.local-ttl:PT30M}") Duration localTtl,
+                                  @Value("${cache.exam-paper.redis-ttl:PT12H}") Duration redisTtl) {
+        this.cache = registry.create("exam-paper", CreateExamAttemptResponse.ReadingExamResponse.class,
+                maxSize, localTtl, redisTtl);
+    }
+
+    public CreateExamAttemptResponse.ReadingExamResponse get(UUID readingExamId,
+                                                             Supplier<CreateExamAttemptResponse.ReadingExamResponse> renderer) {
+        CompletableFuture<CreateExamAttemptResponse.ReadingExamResponse> future = new CompletableFuture<>();
+        CompletableFuture<CreateExamAttemptResponse.ReadingExamResponse> existing = inFlight.putIfAbsent(readingExamId, future);
+        if (existing != null) {
+            try {
+                return existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+        try {
+            CreateExamAttemptResponse.ReadingExamResponse paper = cache.get(readingExamId.toString(), renderer);
+            future.complete(paper);
+            return paper;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(readingExamId, future);
+        }
+    }
+
+    public void evict(UUID readingExamId) {
+        cache.evict(readingExamId.toString());
+        inFlight.remove(readingExamId);
+    }
+}
@@ -0,0 +1,167 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.AnswerAttempt;
+import com.fptu.sep490.readingservice.model.embedded.AnswerAttemptId;
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.grading.AnswerKey;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.viewmodel.request.SavedAnswersRequest;
+import com.fptu.sep490.readingservice.viewmodel.request.SavedAnswersRequestList;
+import com.fptu.sep490.readingservice.viewmodel.response.SubmittedAttemptResponse;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Chấm toàn bộ bài làm trong bộ nhớ dựa trên {@link AnswerKey}.
+ * Chỉ query khi người dùng gửi choice / drag item không có trong snapshot (một query cho mỗi loại).
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class GradingEngine {
+    ChoiceRepository choiceRepository;
+    DragItemRepository dragItemRepository;
+
+    public GradingResult grade(AnswerKey answerKey, UUID attemptId, SavedAnswersRequestList answers) {
+        Map<UUID, SavedAnswersRequest> savedAnswers = new HashMap<>();
+        if (answers.answers() != null) {
+            for (SavedAnswersRequest savedAnswer : answers.answers()) {
+                savedAnswers.put(savedAnswer.questionId(), savedAnswer);
+            }
+        }
+        Map<UUID, String> choiceLabels = withMissingChoiceLabels(answerKey.choiceLabels(), savedAnswers);
+        Map<UUID, String> dragItemContents = withMissingDragItemContents(answerKey.dragItemContents(), savedAnswers);
+
+        List<SubmittedAttemptResponse.ResultSet> resultSets = new ArrayList<>();
+        List<AnswerAttempt> answerAttempts = new ArrayList<>();
+        for (AnswerKey.QuestionKey question : answerKey.questions().values()) {
+            SavedAnswersRequest answer = savedAnswers.get(question.questionId());
+            if (Objects.isNull(answer)) {
+                continue;
+            }
+            AnswerAttempt answerAttempt = AnswerAttempt.builder()
+                    .id(AnswerAttemptId.builder()
+                            .attemptId(attemptId)
+                            .questionId(question.questionId())
+                            .build())
+                    .build();
+            SubmittedAttemptResponse.ResultSet result;
+            if (question.questionType() == QuestionType.MULTIPLE_CHOICE) {
+                if (answer.choices() == null) continue;
+                result = scoreMultipleChoice(question, answer.choices(), choiceLabels);
+                answerAttempt.setChoices(answer.choices());
+            } else if (question.questionType() == QuestionType.FILL_IN_THE_BLANKS) {
+                if (answer.dataFilled() == null) continue;
+                result = scoreText(question, question.correctAnswer(), answer.dataFilled());
+                answerAttempt.setDataFilled(answer.dataFilled());
+            } else if (question.questionType() == QuestionType.MATCHING) {
+                if (answer.dataMatched() == null) continue;
+                result = scoreText(question, question.correctAnswerForMatching(), answer.dataMatched());
+                answerAttempt.setDataMatched(answer.dataMatched());
+            } else if (question.questionType() == QuestionType.DRAG_AND_DROP) {
+                if (answer.dragItemId() == null) continue;
+                String userContent = dragItemContents.get(answer.dragItemId());
+                result = SubmittedAttemptResponse.ResultSet.builder()
+                        .userAnswer(userContent != null ? List.of(userContent) : List.of())
+                        .explanation(question.explanation())
+                        .correctAnswer(question.correctDragItemContent() != null ? List.of(question.correctDragItemContent()) : List.of())
+                        .isCorrect(answer.dragItemId().equals(question.correctDragItemId()))
+                        .questionIndex(question.questionOrder())
+                        .build();
+                answerAttempt.setDragItemId(answer.dragItemId());
+            } else {
+                continue;
+            }
+            answerAttempt.setIsCorrect(result.isCorrect());
+            resultSets.add(result);
+            answerAttempts.add(answerAttempt);
+        }
+        resultSets.sort(Comparator.comparing(SubmittedAttemptResponse.ResultSet::getQuestionIndex));
+        return new GradingResult(resultSets, answerAttempts);
+    }
+
+    private static SubmittedAttemptResponse.ResultSet scoreMultipleChoice(AnswerKey.QuestionKey question,
+                                                                          List<UUID> userChoice,
+                                                                          Map<UUID, String> choiceLabels) {
+        List<String> userAnswers = new LinkedHashSet<>(userChoice).stream()
+                .filter(choiceLabels::containsKey)
+                .map(choiceLabels::get)
+                .toList();
+        List<String> correctLabel = new ArrayList<>();
+        for (AnswerKey.ChoiceKey correctAnswer : question.correctChoices()) {
+            if (userChoice.contains(correctAnswer.choiceId())) {
+                correctLabel.add(correctAnswer.label());
+            }
+        }
+        int numberOfCorrect = 0;
+        for (String userAnswer : userAnswers) {
+            if (correctLabel.contains(userAnswer)) {
+                numberOfCorrect++;
+            }
+        }
+        return SubmittedAttemptResponse.ResultSet.builder()
+                .questionIndex(question.questionOrder())
+                .userAnswer(userAnswers)
+                .correctAnswer(question.correctChoices().stream().map(AnswerKey.ChoiceKey::label).toList())
+                .explanation(question.explanation())
+                .isCorrect(numberOfCorrect == question.correctChoices().size())
+                .build();
+    }
+
+    private static SubmittedAttemptResponse.ResultSet scoreText(AnswerKey.QuestionKey question, String correctAnswer, String userAnswer) {
+        return SubmittedAttemptResponse.ResultSet.builder()
+                .userAnswer(List.of(userAnswer))
+                .explanation(question.explanation())
+                .correctAnswer(correctAnswer != null ? List.of(correctAnswer) : List.of())
+                .isCorrect(correctAnswer != null && correctAnswer.equalsIgnoreCase(userAnswer))
+                .questionIndex(question.questionOrder())
+                .build();
+    }
+
+    private Map<UUID, String> withMissingChoiceLabels(Map<UUID, String> known, Map<UUID, SavedAnswersRequest> answers) {
+        Set<UUID> missing = new HashSet<>();
+        answers.values().stream()
+                .filter(a -> a.choices() != null)
+                .forEach(a -> a.choices().stream().filter(id -> id != null && !known.containsKey(id)).forEach(missing::add));
+        if (missing.isEmpty()) {
+            return known;
+        }
+        Map<UUID, String> labels = new HashMap<>(known);
+        choiceRepository.findAllById(missing).forEach(c -> labels.put(c.getChoiceId(), c.getLabel()));
+        return labels;
+    }
+
+    private Map<UUID, String> withMissingDragItemContents(Map<UUID, String> known, Map<UUID, SavedAnswersRequest> answers) {
+        Set<UUID> missing = new HashSet<>();
+        answers.values().stream()
+                .map(SavedAnswersRequest::dragItemId)
+                .filter(id -> id != null && !known.containsKey(id))
+                .forEach(missing::add);
+        if (missing.isEmpty()) {
+            return known;
+        }
+        Map<UUID, String> contents = new HashMap<>(known);
+        dragItemRepository.findAllById(missing).forEach(di -> contents.put(di.getDragItemId(), di.getContent()));
+        return contents;
+    }
+
+    public record GradingResult(
+            List<SubmittedAttemptResponse.ResultSet> resultSets,
+            List<AnswerAttempt> answerAttempts
+    ) {
+    }
+}
@@ -0,0 +1,64 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import com.fptu.sep490.readingservice.repository.ReadingExamRepository;
+import com.fptu.sep490.readingservice.repository.ReadingPassageRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Xóa cache của các bài đọc có nội dung vừa thay đổi (gọi bởi {@link PassageContentChangeListener} sau commit):
+ * {@link PassageContentCache} của phiên bản hiện tại, {@link ExamAnswerKeyCache} / {@link ExamPaperSnapshotCache}
+ * của mọi phiên bản đề chứa bài đọc, và bản xem lại bài làm của các đề đó nếu nội dung bị sửa tại chỗ.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PassageCacheInvalidator {
+    ReadingPassageRepository readingPassageRepository;
+    QuestionGroupRepository questionGroupRepository;
+    QuestionRepository questionRepository;
+    ReadingExamRepository readingExamRepository;
+    PassageContentCache passageContentCache;
+    ExamAnswerKeyCache examAnswerKeyCache;
+    ExamPaperSnapshotCache examPaperSnapshotCache;
+    ExamAttemptReviewCache examAttemptReviewCache;
+
+    void invalidate(PassageContentChangeListener.Changes changes) {
+        Set<UUID> passageIds = new HashSet<>();
+        if (!changes.passageIds.isEmpty()) {
+            passageIds.addAll(readingPassageRepository.findOriginalIdsByIdIn(changes.passageIds));
+        }
+        if (!changes.groupIds.isEmpty()) {
+            passageIds.addAll(questionGroupRepository.findOriginalPassageIdsByGroupIdIn(changes.groupIds));
+        }
+        if (!changes.questionIds.isEmpty()) {
+            passageIds.addAll(questionRepository.findOriginalPassageIdsByQuestionIdIn(changes.questionIds));
+        }
+        if (passageIds.isEmpty()) {
+            return;
+        }
+
+        // Key chỉ mang version của passage, không đổi khi group / question có phiên bản mới
+        for (UUID passageId : passageIds) {
+            readingPassageRepository.findCurrentVersionById(passageId)
+                    .ifPresent(current -> passageContentCache.evict(passageId, current.getVersion()));
+        }
+        List<UUID> readingExamIds = readingExamRepository.findIdsByOriginalPassageIdIn(passageIds);
+        for (UUID readingExamId : readingExamIds) {
+            examAnswerKeyCache.evict(readingExamId);
+            examPaperSnapshotCache.evict(readingExamId);
+        }
+        if (changes.inPlace) {
+            examAttemptReviewCache.invalidateExams(readingExamIds);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.cache.TwoTierCache;
+import com.fptu.sep490.commonlibrary.cache.TwoTierCacheRegistry;
+import com.fptu.sep490.readingservice.model.graph.PassageGraph;
+import lombok.AccessLevel;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.UUID;
+
+/**
+ * Cache nội dung đã publish của bài đọc, key = passageId + display version hiện tại.
+ * Key của bài đọc bị xóa khi passage/group/question/choice/drag item của nó thay đổi (xem {@link PassageCacheInvalidator}).
+ */
+@Component
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PassageContentCache {
+    TwoTierCache<PassageGraph> cache;
+    PassageGraphLoader passageGraphLoader;
+
+    public PassageContentCache(TwoTierCacheRegistry registry,
+                               PassageGraphLoader passageGraphLoader,
+                               @Value("${cache.passage-content.max-size:500}") long maxSize,
+                               @Value("${cache.passage-content.local-ttl:PT30M}") Duration localTtl,
+                               @Value("${cache.passage-content.redis-ttl:PT12H}") Duration redisTtl) {
+        this.cache = registry.create("passage-content", PassageGraph.class, maxSize, localTtl, redisTtl);
+        this.passageGraphLoader = passageGraphLoader;
+    }
+
+    public PassageGraph getCurrentVersion(UUID passageId, Integer version) {
+        return cache.get(passageId + ":" + version, () -> passageGraphLoader.loadCurrentVersion(passageId));
+    }
+
+    public void evict(UUID passageId, Integer version) {
+        cache.evict(passageId + ":" + version);
+    }
+}
@@ -0,0 +1,133 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.DragItem;
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.QuestionGroup;
+import com.fptu.sep490.readingservice.model.ReadingPassage;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * JPA listener gắn trên các entity nội dung bài đọc. Ghi lại passage / group / question chứa entity bị thay đổi
+ * trong transaction, sau khi commit {@link PassageCacheInvalidator} chỉ xóa cache của các bài đọc đó
+ * (một lần cho mỗi transaction).
+ * <p>
+ * Tạo phiên bản mới (insert) hay đánh dấu phiên bản cũ hết hiệu lực không đổi các dòng mà bản xem lại bài làm
+ * đã tham chiếu; chỉ sửa / xóa tại chỗ mới làm {@link ExamAttemptReviewCache} của các đề liên quan hết hiệu lực.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PassageContentChangeListener {
+    static final String TX_RESOURCE_KEY = PassageContentChangeListener.class.getName();
+
+    // ObjectProvider để tránh vòng phụ thuộc EntityManagerFactory -> listener -> repository
+    ObjectProvider<PassageCacheInvalidator> passageCacheInvalidator;
+
+    @PostPersist
+    public void onContentCreated(Object entity) {
+        changed(entity, false);
+    }
+
+    @PostUpdate
+    public void onContentUpdated(Object entity) {
+        // Update cờ isCurrent = false của phiên bản cũ khi tạo phiên bản mới không phải sửa tại chỗ
+        changed(entity, !Boolean.FALSE.equals(isCurrent(entity)));
+    }
+
+    @PostRemove
+    public void onContentRemoved(Object entity) {
+        changed(entity, true);
+    }
+
+    /**
+     * Dùng cho các câu update hàng loạt ({@code @Modifying}) không đi qua callback của entity:
+     * {@code entity} là một dòng thuộc phần nội dung bị sửa tại chỗ.
+     */
+    public void contentChanged(Object entity) {
+        changed(entity, true);
+    }
+
+    private void changed(Object entity, boolean inPlace) {
+        Changes changes = currentChanges();
+        if (entity instanceof ReadingPassage passage) {
+            changes.passageIds.add(passage.getPassageId());
+        } else if (entity instanceof QuestionGroup group) {
+            changes.passageIds.add(group.getReadingPassage().getPassageId());
+        } else if (entity instanceof Question question) {
+            changes.groupIds.add(question.getQuestionGroup().getGroupId());
+        } else if (entity instanceof Choice choice && choice.getQuestion() != null) {
+            changes.questionIds.add(choice.getQuestion().getQuestionId());
+        } else if (entity instanceof DragItem dragItem) {
+            changes.groupIds.add(dragItem.getQuestionGroup().getGroupId());
+        }
+        changes.inPlace |= inPlace;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            invalidate(changes);
+        }
+    }
+
+    private static Boolean isCurrent(Object entity) {
+        if (entity instanceof ReadingPassage passage) {
+            return passage.getIsCurrent();
+        } else if (entity instanceof QuestionGroup group) {
+            return group.getIsCurrent();
+        } else if (entity instanceof Question question) {
+            return question.getIsCurrent();
+        } else if (entity instanceof Choice choice) {
+            return choice.getIsCurrent();
+        } else if (entity instanceof DragItem dragItem) {
+            return dragItem.getIsCurrent();
+        }
+        return null;
+    }
+
+    private Changes currentChanges() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            return new Changes();
+        }
+        Changes changes = (Changes) TransactionSynchronizationManager.getResource(TX_RESOURCE_KEY);
+        if (changes != null) {
+            return changes;
+        }
+        Changes created = new Changes();
+        TransactionSynchronizationManager.bindResource(TX_RESOURCE_KEY, created);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(TX_RESOURCE_KEY);
+                if (status == STATUS_COMMITTED) {
+                    invalidate(created);
+                }
+            }
+        });
+        return created;
+    }
+
+    private void invalidate(Changes changes) {
+        PassageCacheInvalidator invalidator = passageCacheInvalidator.getIfAvailable();
+        if (invalidator != null) {
+            invalidator.invalidate(changes);
+        }
+    }
+
+    static final class Changes {
+        final Set<UUID> passageIds = new HashSet<>();
+        final Set<UUID> groupIds = new HashSet<>();
+        final Set<UUID> questionIds = new HashSet<>();
+        boolean inPlace;
+    }
+}
@@ -0,0 +1,144 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.DragItem;
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.QuestionGroup;
+import com.fptu.sep490.readingservice.model.graph.PassageGraph;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Nạp toàn bộ phiên bản hiện tại của một bài đọc (group, question, choice, drag item)
+ * bằng một số lượng query cố định, không phụ thuộc số group hay số câu hỏi.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class PassageGraphLoader {
+    QuestionGroupRepository questionGroupRepository;
+    QuestionRepository questionRepository;
+    ChoiceRepository choiceRepository;
+    DragItemRepository dragItemRepository;
+
+    @Transactional(readOnly = true)
+    public PassageGraph loadCurrentVersion(UUID passageId) {
+        List<QuestionGroup> originalGroups = questionGroupRepository.findOriginalVersionByTaskId(passageId);
+        if (originalGroups.isEmpty()) {
+            return new PassageGraph(passageId, List.of());
+        }
+        List<UUID> originalGroupIds = originalGroups.stream().map(QuestionGroup::getGroupId).toList();
+
+        Map<UUID, QuestionGroup> latestGroupByOriginalId = questionGroupRepository
+                .findLatestVersionsByOriginalIds(originalGroupIds).stream()
+                .collect(Collectors.toMap(PassageGraphLoader::originalGroupId, Function.identity(), (a, b) -> a));
+
+        Map<UUID, List<DragItem>> dragItemsByOriginalGroupId = dragItemRepository
+                .findCurrentVersionByGroupIds(originalGroupIds).stream()
+                .collect(Collectors.groupingBy(PassageGraphLoader::originalGroupId));
+
+        List<Question> originalQuestions = questionRepository.findOriginalVersionByGroupIds(originalGroupIds);
+        Map<UUID, UUID> groupIdByOriginalQuestionId = originalQuestions.stream()
+                .collect(Collectors.toMap(Question::getQuestionId, q -> q.getQuestionGroup().getGroupId()));
+
+        Map<UUID, List<Question>> currentQuestionsByGroupId = Map.of();
+        Map<UUID, List<Choice>> choicesByOriginalQuestionId = Map.of();
+        if (!groupIdByOriginalQuestionId.isEmpty()) {
+            List<UUID> originalQuestionIds = new ArrayList<>(groupIdByOriginalQuestionId.keySet());
+            currentQuestionsByGroupId = questionRepository.findAllCurrentVersion(originalQuestionIds).stream()
+                    .filter(q -> groupIdByOriginalQuestionId.containsKey(originalQuestionId(q)))
+                    .collect(Collectors.groupingBy(q -> groupIdByOriginalQuestionId.get(originalQuestionId(q))));
+            choicesByOriginalQuestionId = choiceRepository.findCurrentVersionByQuestionIds(originalQuestionIds).stream()
+                    .collect(Collectors.groupingBy(c -> originalQuestionId(c.getQuestion())));
+        }
+
+        List<PassageGraph.GroupNode> groups = new ArrayList<>();
+        for (QuestionGroup original : originalGroups) {
+            QuestionGroup latest = latestGroupByOriginalId.get(original.getGroupId());
+            if (latest == null) {
+                continue;
+            }
+            Map<UUID, List<Choice>> choices = choicesByOriginalQuestionId;
+            List<PassageGraph.QuestionNode> questions = currentQuestionsByGroupId
+                    .getOrDefault(original.getGroupId(), List.of()).stream()
+                    .map(q -> toQuestionNode(q, choices.getOrDefault(originalQuestionId(q), List.of())))
+                    .sorted(Comparator.comparingInt(PassageGraph.QuestionNode::questionOrder))
+                    .toList();
+            List<PassageGraph.DragItemNode> dragItems = dragItemsByOriginalGroupId
+                    .getOrDefault(original.getGroupId(), List.of()).stream()
+                    .map(di -> new PassageGraph.DragItemNode(di.getDragItemId(), di.getContent()))
+                    .toList();
+            groups.add(PassageGraph.GroupNode.builder()
+                    .originalGroupId(original.getGroupId())
+                    .groupId(latest.getGroupId())
+                    .sectionOrder(latest.getSectionOrder())
+                    .sectionLabel(latest.getSectionLabel())
+                    .instruction(latest.getInstruction())
+                    .sentenceWithBlanks(latest.getSentenceWithBlanks())
+                    .questions(questions)
+                    .dragItems(dragItems)
+                    .build());
+        }
+        groups.sort(Comparator.comparing(PassageGraph.GroupNode::sectionOrder,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        return new PassageGraph(passageId, groups);
+    }
+
+    private static PassageGraph.QuestionNode toQuestionNode(Question q, List<Choice> choices) {
+        return PassageGraph.QuestionNode.builder()
+                .questionId(q.getQuestionId())
+                .originalQuestionId(originalQuestionId(q))
+                .questionOrder(q.getQuestionOrder())
+                .point(q.getPoint())
+                .questionType(q.getQuestionType())
+                .numberOfCorrectAnswers(q.getNumberOfCorrectAnswers())
+                .blankIndex(q.getBlankIndex())
+                .instructionForChoice(q.getInstructionForChoice())
+                .instructionForMatching(q.getInstructionForMatching())
+                .zoneIndex(q.getZoneIndex())
+                .explanation(q.getExplanation())
+                .correctAnswer(q.getCorrectAnswer())
+                .correctAnswerForMatching(q.getCorrectAnswerForMatching())
+                .choices(choices.stream()
+                        .sorted(Comparator.comparingInt(Choice::getChoiceOrder))
+                        .map(c -> PassageGraph.ChoiceNode.builder()
+                                .choiceId(c.getChoiceId())
+                                .label(c.getLabel())
+                                .content(c.getContent())
+                                .choiceOrder(c.getChoiceOrder())
+                                .isCorrect(c.isCorrect())
+                                .build())
+                        .toList())
+                .build();
+    }
+
+    // Parent của các entity versioned luôn là bản original, chỉ đọc id nên không kích hoạt lazy load
+    private static UUID originalQuestionId(Question q) {
+        return q.getParent() != null ? q.getParent().getQuestionId() : q.getQuestionId();
+    }
+
+    private static UUID originalGroupId(QuestionGroup g) {
+        return g.getParent() != null ? g.getParent().getGroupId() : g.getGroupId();
+    }
+
+    private static UUID originalGroupId(DragItem di) {
+        return di.getParent() != null
+                ? di.getParent().getQuestionGroup().getGroupId()
+                : di.getQuestionGroup().getGroupId();
+    }
+}
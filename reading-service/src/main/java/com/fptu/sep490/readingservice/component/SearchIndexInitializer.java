@@ -0,0 +1,59 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.search.TextSearchFields;
+import com.fptu.sep490.readingservice.repository.ReadingExamSearchRepositoryImpl;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tạo extension pg_trgm và GIN index cho tìm kiếm (schema do ddl-auto quản lý nên không khai báo được trên entity).
+ * Câu lệnh đều {@code IF NOT EXISTS} / {@code CONCURRENTLY} nên chạy lại mỗi lần khởi động vẫn an toàn, không khóa ghi.
+ * Passage chỉ cần trigram vì {@code PassageSpecifications} vẫn lọc bằng {@code lower(col) LIKE}.
+ */
+@Component
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+@Slf4j
+public class SearchIndexInitializer {
+    static final TextSearchFields PASSAGE_FIELDS = TextSearchFields.of("reading_passages", "title", "created_by");
+
+    JdbcTemplate jdbcTemplate;
+
+    @NonFinal
+    @Value("${search.create-indexes-on-startup:true}")
+    boolean createIndexesOnStartup;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void createIndexes() {
+        if (!createIndexesOnStartup) {
+            return;
+        }
+        try {
+            jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        } catch (RuntimeException e) {
+            log.error("Error creating pg_trgm extension, search indexes skipped", e);
+            return;
+        }
+        List<String> statements = new ArrayList<>(ReadingExamSearchRepositoryImpl.FIELDS.indexStatements());
+        statements.addAll(PASSAGE_FIELDS.trigramIndexStatements());
+        for (String statement : statements) {
+            try {
+                jdbcTemplate.execute(statement);
+            } catch (RuntimeException e) {
+                log.error("Error creating search index: {}", statement, e);
+            }
+        }
+        log.info("Search indexes ensured: {} statements", statements.size());
+    }
+}
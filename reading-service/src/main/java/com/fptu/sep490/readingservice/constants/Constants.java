@@ -44,6 +44,8 @@ public class Constants {
 
         public static final String KEY_CLOAK_CLIENT_TOKEN = "keycloak-client-token";
         public static final String USER_PROFILE = "user-profile";
+        // Hash khóa attempt do personal-service ghi (sessionId, userId, lastPing)
+        public static final String ATTEMPT_LOCK = "attempt_lock:";
     }
 
     public final class ErrorCode {
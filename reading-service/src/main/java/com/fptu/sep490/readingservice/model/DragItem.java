@@ -1,5 +1,6 @@
 package com.fptu.sep490.readingservice.model;
 
+import com.fptu.sep490.readingservice.component.PassageContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.GenericGenerator;
@@ -9,6 +10,7 @@ import java.util.List;
 import java.util.UUID;
 
 @Entity
+@EntityListeners(PassageContentChangeListener.class)
 @Table(name = "drag_items")
 @Getter
 @Setter
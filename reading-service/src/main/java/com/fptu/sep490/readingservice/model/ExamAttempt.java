@@ -49,4 +49,11 @@ public class ExamAttempt {
     @UpdateTimestamp
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
+
+    /**
+     * Đã nộp và chấm điểm, tức là đã được tính vào rollup tiến độ / điểm thi.
+     */
+    public boolean isSubmitted() {
+        return totalPoint != null;
+    }
 }
@@ -2,6 +2,7 @@ package com.fptu.sep490.readingservice.model;
 
 import com.fptu.sep490.readingservice.model.enumeration.QuestionCategory;
 import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.component.PassageContentChangeListener;
 import jakarta.persistence.*;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
@@ -12,6 +13,7 @@ import java.time.LocalDateTime;
 import java.util.*;
 
 @Entity
+@EntityListeners(PassageContentChangeListener.class)
 @Table(name ="questions")
 @Getter
 @Setter
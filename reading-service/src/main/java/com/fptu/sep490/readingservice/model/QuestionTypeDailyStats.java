@@ -0,0 +1,28 @@
+package com.fptu.sep490.readingservice.model;
+
+import com.fptu.sep490.readingservice.model.embedded.QuestionTypeDailyStatsId;
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * Số câu đúng / sai theo loại câu hỏi trong một ngày (theo report_data.checked_date),
+ * được cộng dồn cùng lúc ghi report_data để dashboard không phải đếm lại toàn bộ report_data.
+ */
+@Entity
+@Table(name = "question_type_daily_stats")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class QuestionTypeDailyStats {
+
+    @EmbeddedId
+    private QuestionTypeDailyStatsId id;
+
+    @Column(name = "correct_count", nullable = false)
+    private long correctCount;
+
+    @Column(name = "wrong_count", nullable = false)
+    private long wrongCount;
+}
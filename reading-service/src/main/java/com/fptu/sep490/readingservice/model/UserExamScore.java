@@ -0,0 +1,36 @@
+package com.fptu.sep490.readingservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+/**
+ * Điểm exam tổng hợp của một user (số bài đã chấm, tổng điểm, điểm cao nhất),
+ * dùng cho phân bố user theo band trên dashboard.
+ */
+@Entity
+@Table(name = "user_exam_score")
+@Getter
+@Setter
+@Builder
+@AllArgsConstructor
+@NoArgsConstructor
+public class UserExamScore {
+
+    @Id
+    @Column(name = "user_id", length = 100, updatable = false, nullable = false)
+    private String userId;
+
+    @Column(name = "attempt_count", nullable = false)
+    private int attemptCount;
+
+    @Column(name = "point_sum", nullable = false)
+    private long pointSum;
+
+    @Column(name = "best_point", nullable = false)
+    private int bestPoint;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
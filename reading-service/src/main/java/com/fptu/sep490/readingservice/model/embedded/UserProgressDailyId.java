@@ -0,0 +1,23 @@
+package com.fptu.sep490.readingservice.model.embedded;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@EqualsAndHashCode
+@Builder
+public class UserProgressDailyId implements Serializable {
+    @Column(name = "user_id", length = 100, updatable = false, nullable = false)
+    private String userId;
+
+    @Column(name = "activity_date", updatable = false, nullable = false)
+    private LocalDate activityDate;
+}
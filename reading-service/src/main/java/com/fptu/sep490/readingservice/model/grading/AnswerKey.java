@@ -0,0 +1,56 @@
+package com.fptu.sep490.readingservice.model.grading;
+
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import lombok.Builder;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Đáp án đã biên dịch sẵn cho toàn bộ câu hỏi trong snapshot của một attempt.
+ * Bất biến, chấm điểm hoàn toàn trong bộ nhớ mà không cần query thêm.
+ *
+ * @param questions        key theo questionId (phiên bản trong snapshot), giữ thứ tự snapshot
+ * @param choiceLabels     label của mọi choice trong snapshot, dùng hiển thị đáp án người dùng
+ * @param dragItemContents nội dung của mọi drag item trong snapshot
+ */
+@Builder
+public record AnswerKey(
+        Map<UUID, QuestionKey> questions,
+        Map<UUID, String> choiceLabels,
+        Map<UUID, String> dragItemContents
+) {
+    public AnswerKey {
+        questions = Collections.unmodifiableMap(new LinkedHashMap<>(questions));
+        choiceLabels = Collections.unmodifiableMap(new HashMap<>(choiceLabels));
+        dragItemContents = Collections.unmodifiableMap(new HashMap<>(dragItemContents));
+    }
+
+    @Builder
+    public record QuestionKey(
+            UUID questionId,
+            QuestionType questionType,
+            int questionOrder,
+            int point,
+            String explanation,
+            String correctAnswer,
+            String correctAnswerForMatching,
+            List<ChoiceKey> correctChoices,
+            UUID correctDragItemId,
+            String correctDragItemContent
+    ) {
+        public QuestionKey {
+            correctChoices = correctChoices == null ? List.of() : List.copyOf(correctChoices);
+        }
+    }
+
+    public record ChoiceKey(
+            UUID choiceId,
+            String label
+    ) {
+    }
+}
@@ -0,0 +1,54 @@
+package com.fptu.sep490.readingservice.model.grading;
+
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import lombok.Builder;
+
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Đáp án đã biên dịch sẵn cho một phiên bản đề thi, lưu dạng mảng phẳng theo slot câu hỏi.
+ * {@code slots} ánh xạ questionId sang slot; mọi mảng khác đều đánh chỉ số theo slot đó.
+ * Text đáp án (fill in the blanks / matching) được chuẩn hóa sẵn sang chữ thường để so khớp.
+ *
+ * @param examId                  id phiên bản đề thi, null nếu key chỉ biên dịch cho một tập câu hỏi lẻ
+ * @param slots                   questionId -> slot
+ * @param questionIds             questionId theo slot
+ * @param questionTypes           loại câu hỏi theo slot
+ * @param questionOrders          thứ tự hiển thị theo slot
+ * @param points                  điểm theo slot
+ * @param explanations            giải thích theo slot
+ * @param correctChoiceIds        các choice đúng (mọi phiên bản) của câu multiple choice
+ * @param correctChoiceLabels     label tương ứng với {@code correctChoiceIds}
+ * @param correctTexts            đáp án hiển thị của câu fill in the blanks / matching
+ * @param normalizedTexts         {@code correctTexts} đã chuẩn hóa
+ * @param correctDragItemIds      drag item đúng của câu drag and drop
+ * @param correctDragItemContents nội dung drag item đúng
+ * @param choiceLabels            label của mọi phiên bản choice thuộc đề, dùng hiển thị đáp án người dùng
+ */
+@Builder
+public record ExamAnswerKey(
+        UUID examId,
+        Map<UUID, Integer> slots,
+        UUID[] questionIds,
+        QuestionType[] questionTypes,
+        int[] questionOrders,
+        int[] points,
+        String[] explanations,
+        UUID[][] correctChoiceIds,
+        String[][] correctChoiceLabels,
+        String[] correctTexts,
+        String[] normalizedTexts,
+        UUID[] correctDragItemIds,
+        String[] correctDragItemContents,
+        Map<UUID, String> choiceLabels
+) {
+    public int size() {
+        return questionIds.length;
+    }
+
+    public int slotOf(UUID questionId) {
+        Integer slot = slots.get(questionId);
+        return slot != null ? slot : -1;
+    }
+}
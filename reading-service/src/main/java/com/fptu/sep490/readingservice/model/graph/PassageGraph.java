@@ -0,0 +1,77 @@
+package com.fptu.sep490.readingservice.model.graph;
+
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import lombok.Builder;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Snapshot bất biến của phiên bản hiện tại của một bài đọc: group, question, choice và drag item.
+ * Group và question được giữ theo thứ tự sectionOrder / questionOrder.
+ */
+@Builder
+public record PassageGraph(
+        UUID passageId,
+        List<GroupNode> groups
+) {
+    public PassageGraph {
+        groups = List.copyOf(groups);
+    }
+
+    @Builder
+    public record GroupNode(
+            UUID originalGroupId,
+            UUID groupId,
+            Integer sectionOrder,
+            String sectionLabel,
+            String instruction,
+            String sentenceWithBlanks,
+            List<QuestionNode> questions,
+            List<DragItemNode> dragItems
+    ) {
+        public GroupNode {
+            questions = List.copyOf(questions);
+            dragItems = List.copyOf(dragItems);
+        }
+    }
+
+    @Builder
+    public record QuestionNode(
+            UUID questionId,
+            UUID originalQuestionId,
+            int questionOrder,
+            int point,
+            QuestionType questionType,
+            int numberOfCorrectAnswers,
+            Integer blankIndex,
+            String instructionForChoice,
+            String instructionForMatching,
+            Integer zoneIndex,
+            String explanation,
+            String correctAnswer,
+            String correctAnswerForMatching,
+            List<ChoiceNode> choices
+    ) {
+        public QuestionNode {
+            choices = List.copyOf(choices);
+        }
+    }
+
+    @Builder
+    public record ChoiceNode(
+            UUID choiceId,
+            String label,
+            String content,
+            int choiceOrder,
+            boolean isCorrect
+    ) {
+    }
+
+    @Builder
+    public record DragItemNode(
+            UUID dragItemId,
+            String content
+    ) {
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -49,6 +50,14 @@ public interface ChoiceRepository extends JpaRepository<Choice, UUID> {
 """)
     List<Choice> getOriginalChoiceByOriginalQuestion(@Param("questionId") UUID questionId);
 
+    @Query("""
+    SELECT c
+      FROM Choice c
+     WHERE c.isOriginal = TRUE
+       AND c.question.questionId IN :questionIds
+""")
+    List<Choice> getOriginalChoicesByOriginalQuestions(@Param("questionIds") Collection<UUID> questionIds);
+
     @Query("""
     SELECT c
       FROM Choice c
@@ -59,6 +68,13 @@ public interface ChoiceRepository extends JpaRepository<Choice, UUID> {
             @Param("originalChoices") List<UUID> originalChoices
     );
 
+    @Query("""
+    SELECT c
+      FROM Choice c
+     WHERE c.choiceId IN :originalChoices OR c.parent.choiceId IN :originalChoices
+""")
+    List<Choice> findAllVersionsByOriginalChoiceIds(@Param("originalChoices") Collection<UUID> originalChoices);
+
     @Query("""
         select c.label from Choice c where c.choiceId IN :choices
     """)
@@ -74,4 +90,13 @@ public interface ChoiceRepository extends JpaRepository<Choice, UUID> {
                    
     """)
     List<Choice> findCurrentVersionByQuestionId(UUID questionId);
+
+    @Query("""
+        select c from Choice c
+            join fetch c.question q
+            left join fetch q.parent p
+            where (q.questionId in :questionIds or p.questionId in :questionIds)
+                and c.isCurrent = true and c.isDeleted = false
+    """)
+    List<Choice> findCurrentVersionByQuestionIds(@Param("questionIds") Collection<UUID> questionIds);
 }
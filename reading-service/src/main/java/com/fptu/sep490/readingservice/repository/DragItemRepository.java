@@ -4,9 +4,11 @@ import com.fptu.sep490.readingservice.model.DragItem;
 import com.fptu.sep490.readingservice.model.Question;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import javax.swing.text.html.Option;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -58,4 +60,20 @@ public interface DragItemRepository extends JpaRepository<DragItem, UUID> {
                (di.parent.dragItemId in (SELECT i.dragItemId FROM DragItem i WHERE i.questionGroup.groupId = :groupId) AND di.isCurrent = true and di.isDeleted =false)        
     """)
     List<DragItem> findCurrentVersionByGroupId(UUID groupId);
+
+    @Query("""
+       SELECT di FROM DragItem di
+           LEFT JOIN FETCH di.parent p
+           WHERE di.isCurrent = true and di.isDeleted = false AND (
+               (di.isOriginal = true AND di.questionGroup.groupId IN :groupIds)
+               OR p.questionGroup.groupId IN :groupIds
+           )
+    """)
+    List<DragItem> findCurrentVersionByGroupIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    @Query("""
+        select di from DragItem di
+        where di.question.questionId in :questionIds
+    """)
+    List<DragItem> findByQuestionIds(@Param("questionIds") Collection<UUID> questionIds);
 }
@@ -5,16 +5,24 @@ import com.fptu.sep490.readingservice.model.ReadingExam;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface ExamAttemptRepository extends JpaRepository<ExamAttempt, UUID> {
 
+    // Khóa dòng attempt đến hết transaction nộp bài: hai lần nộp đồng thời không cùng được tính là lần đầu
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT e FROM ExamAttempt e WHERE e.examAttemptId = :id")
+    Optional<ExamAttempt> findByIdForUpdate(@Param("id") UUID id);
+
     Page<ExamAttempt> findAll(Specification<ExamAttempt> spec, Pageable pageable);
 
     @Query("SELECT e FROM ExamAttempt e WHERE e.createdBy = :userId AND e.totalPoint IS NOT NULL")
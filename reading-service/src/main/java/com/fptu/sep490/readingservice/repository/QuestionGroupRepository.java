@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.List;
 import java.util.UUID;
@@ -18,6 +19,9 @@ public interface QuestionGroupRepository extends JpaRepository<QuestionGroup, UU
     @Query("SELECT qg FROM QuestionGroup qg JOIN qg.readingPassage rp WHERE rp.passageId = :passageId")
     List<QuestionGroup> findAllByReadingPassageByPassageId(@Param("passageId") UUID passageId);
 
+    @Query("SELECT qg FROM QuestionGroup qg JOIN qg.readingPassage rp WHERE rp.passageId IN :passageIds")
+    List<QuestionGroup> findAllByReadingPassageIds(@Param("passageIds") Collection<UUID> passageIds);
+
 
     @Query("""
         SELECT qg FROM QuestionGroup qg 
@@ -46,5 +50,20 @@ public interface QuestionGroupRepository extends JpaRepository<QuestionGroup, UU
         ORDER BY qg.sectionOrder ASC
     """)
     List<QuestionGroup> findAllByIdOrderBySectionOrder(@Param("ids") List<UUID> ids);
-}
 
+    @Query("""
+        SELECT qg FROM QuestionGroup qg
+            WHERE (qg.groupId IN :groupIds AND qg.isOriginal = true AND qg.isCurrent = true and qg.isDeleted = false )
+            OR (qg.parent.groupId IN :groupIds and qg.isCurrent = true and qg.isDeleted = false)
+    """)
+    List<QuestionGroup> findLatestVersionsByOriginalIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    // Id bài đọc gốc chứa các group
+    @Query("""
+    SELECT DISTINCT COALESCE(pp.passageId, p.passageId) FROM QuestionGroup qg
+    JOIN qg.readingPassage p
+    LEFT JOIN p.parent pp
+    WHERE qg.groupId IN :groupIds
+    """)
+    List<UUID> findOriginalPassageIdsByGroupIdIn(@Param("groupIds") Collection<UUID> groupIds);
+}
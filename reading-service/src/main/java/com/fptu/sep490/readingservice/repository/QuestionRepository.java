@@ -124,4 +124,26 @@ public interface QuestionRepository extends JpaRepository<Question, UUID> {
         where q.questionId = :questionId
         """)
     Optional<Question> findByIdWithCategories(@Param("questionId") UUID questionId);
+
+    @Query("""
+        select q from Question q
+        where q.questionGroup.groupId in :groupIds and q.isOriginal = true and q.isDeleted = false
+    """)
+    List<Question> findOriginalVersionByGroupIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    @Query("""
+        select q from Question q
+        where q.questionGroup.groupId in :groupIds and q.isCurrent = true
+    """)
+    List<Question> findCurrentVersionByGroupIds(@Param("groupIds") Collection<UUID> groupIds);
+
+    // Id bài đọc gốc chứa các câu hỏi
+    @Query("""
+    SELECT DISTINCT COALESCE(pp.passageId, p.passageId) FROM Question q
+    JOIN q.questionGroup qg
+    JOIN qg.readingPassage p
+    LEFT JOIN p.parent pp
+    WHERE q.questionId IN :questionIds
+    """)
+    List<UUID> findOriginalPassageIdsByQuestionIdIn(@Param("questionIds") Collection<UUID> questionIds);
 }
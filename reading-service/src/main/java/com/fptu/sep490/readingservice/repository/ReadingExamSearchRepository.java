@@ -0,0 +1,15 @@
+package com.fptu.sep490.readingservice.repository;
+
+import com.fptu.sep490.readingservice.model.ReadingExam;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+/**
+ * Tìm đề thi theo từ khóa trên exam_name / exam_description / url_slug, xếp theo độ liên quan
+ * khi không chỉ định sort (xem {@link ReadingExamSearchRepositoryImpl}).
+ */
+public interface ReadingExamSearchRepository {
+    Page<ReadingExam> searchCurrentExams(String keyword, Pageable pageable);
+
+    Page<ReadingExam> findByIsDeletedFalseAndIsCurrentTrueAndStatusTrue(String keyword, Pageable pageable);
+}
@@ -0,0 +1,67 @@
+package com.fptu.sep490.readingservice.repository;
+
+import com.fptu.sep490.commonlibrary.search.TextSearchFields;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
+import com.fptu.sep490.readingservice.model.ReadingExam;
+import jakarta.persistence.EntityManager;
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.experimental.FieldDefaults;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Lấy id của trang bằng SQL native (GIN trigram / tsvector, xem {@link TextSearchFields}),
+ * sau đó tải entity bằng JPA theo đúng thứ tự id.
+ */
+@RequiredArgsConstructor
+@FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
+public class ReadingExamSearchRepositoryImpl implements ReadingExamSearchRepository {
+    public static final TextSearchFields FIELDS =
+            TextSearchFields.of("reading_exam", "exam_name", "exam_description", "url_slug");
+
+    static final Map<String, String> SORT_COLUMNS = Map.of(
+            "createdAt", "r.created_at",
+            "updatedAt", "r.updated_at",
+            "examName", "r.exam_name",
+            "examDescription", "r.exam_description",
+            "urlSlug", "r.url_slug",
+            "status", "r.status",
+            "version", "r.display_version");
+
+    NamedParameterJdbcTemplate jdbcTemplate;
+    EntityManager entityManager;
+
+    @Override
+    public Page<ReadingExam> searchCurrentExams(String keyword, Pageable pageable) {
+        return search("", keyword, pageable);
+    }
+
+    @Override
+    public Page<ReadingExam> findByIsDeletedFalseAndIsCurrentTrueAndStatusTrue(String keyword, Pageable pageable) {
+        return search(" AND r.status = 1", keyword, pageable);
+    }
+
+    private Page<ReadingExam> search(String filter, String keyword, Pageable pageable) {
+        TextSearchQuery search = TextSearchQuery.of(FIELDS, "r", keyword);
+        String fromWhere = "FROM reading_exam r WHERE r.is_deleted = false AND r.is_current = true"
+                + filter + " AND " + search.predicate();
+        MapSqlParameterSource parameters = new MapSqlParameterSource(search.parameters());
+
+        List<UUID> ids = jdbcTemplate.queryForList(
+                search.selectIds("r.reading_exam_id", fromWhere, pageable, SORT_COLUMNS), parameters, UUID.class);
+        List<ReadingExam> exams = ids.isEmpty() ? List.of() : TextSearchQuery.inIdOrder(ids, entityManager
+                .createQuery("SELECT r FROM ReadingExam r WHERE r.readingExamId IN :ids", ReadingExam.class)
+                .setParameter("ids", ids)
+                .getResultList(), ReadingExam::getReadingExamId);
+        return PageableExecutionUtils.getPage(exams, pageable,
+                () -> jdbcTemplate.queryForObject("SELECT count(*) " + fromWhere, parameters, Long.class));
+    }
+}
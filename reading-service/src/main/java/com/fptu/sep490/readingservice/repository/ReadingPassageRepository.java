@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
@@ -64,4 +65,12 @@ public interface ReadingPassageRepository extends JpaRepository<ReadingPassage,
 
     @Query(value = "select count(*) from reading_passages where is_original = true and is_deleted = false", nativeQuery = true)
     int getNumberOfPassages();
+
+    // Id bài đọc gốc của các phiên bản
+    @Query("""
+    SELECT DISTINCT COALESCE(pp.passageId, p.passageId) FROM ReadingPassage p
+    LEFT JOIN p.parent pp
+    WHERE p.passageId IN :passageIds
+    """)
+    List<UUID> findOriginalIdsByIdIn(@Param("passageIds") Collection<UUID> passageIds);
 }
@@ -0,0 +1,159 @@
+package com.fptu.sep490.readingservice.repository;
+
+import com.fptu.sep490.readingservice.model.UserExamScore;
+import com.fptu.sep490.readingservice.model.UserInBranch;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface UserExamScoreRepository extends JpaRepository<UserExamScore, String> {
+
+    // Cộng dồn khi nộp bài; lần nộp lại truyền attemptCount = 0 và phần chênh điểm.
+    // bestPoint chỉ tăng, điểm cao nhất bị hạ do nộp lại được sửa bởi reconcile()
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO user_exam_score (user_id, attempt_count, point_sum, best_point, updated_at)
+        VALUES (:userId, :attemptCount, :pointDelta, :point, :updatedAt)
+        ON CONFLICT (user_id) DO UPDATE SET
+            attempt_count = user_exam_score.attempt_count + EXCLUDED.attempt_count,
+            point_sum = user_exam_score.point_sum + EXCLUDED.point_sum,
+            best_point = GREATEST(user_exam_score.best_point, EXCLUDED.best_point),
+            updated_at = EXCLUDED.updated_at
+        """, nativeQuery = true)
+    int record(@Param("userId") String userId,
+               @Param("attemptCount") int attemptCount,
+               @Param("pointDelta") long pointDelta,
+               @Param("point") int point,
+               @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Tính lại toàn bộ từ exam_attempt và ghi đè; chạy lại nhiều lần cho cùng kết quả
+    @Transactional
+    @Modifying
+    @Query(value = """
+        INSERT INTO user_exam_score (user_id, attempt_count, point_sum, best_point, updated_at)
+        SELECT e.created_by, COUNT(*), SUM(e.total_point), MAX(e.total_point), MAX(e.created_at)
+        FROM exam_attempt e
+        WHERE e.total_point IS NOT NULL AND e.created_by IS NOT NULL
+        GROUP BY e.created_by
+        ON CONFLICT (user_id) DO UPDATE SET
+            attempt_count = EXCLUDED.attempt_count,
+            point_sum = EXCLUDED.point_sum,
+            best_point = EXCLUDED.best_point,
+            updated_at = GREATEST(user_exam_score.updated_at, EXCLUDED.updated_at)
+        """, nativeQuery = true)
+    int reconcile();
+
+    @Query(value = """
+        WITH all_branches AS (
+            SELECT '9.0' AS branchScore
+            UNION ALL SELECT '8.5'
+            UNION ALL SELECT '8.0'
+            UNION ALL SELECT '7.5'
+            UNION ALL SELECT '7.0'
+            UNION ALL SELECT '6.5'
+            UNION ALL SELECT '6.0'
+            UNION ALL SELECT '5.5'
+            UNION ALL SELECT '5.0'
+            UNION ALL SELECT '4.5'
+            UNION ALL SELECT '4.0'
+            UNION ALL SELECT '<4.0'
+        ),
+        avg_score_per_user AS (
+            SELECT CAST(point_sum AS NUMERIC) / attempt_count AS avg_total_point
+            FROM user_exam_score
+            WHERE attempt_count > 0
+        ),
+        score_mapping AS (
+            SELECT
+                CASE
+                    WHEN avg_total_point BETWEEN 39 AND 40 THEN '9.0'
+                    WHEN avg_total_point BETWEEN 37 AND 38 THEN '8.5'
+                    WHEN avg_total_point BETWEEN 35 AND 36 THEN '8.0'
+                    WHEN avg_total_point BETWEEN 33 AND 34 THEN '7.5'
+                    WHEN avg_total_point BETWEEN 30 AND 32 THEN '7.0'
+                    WHEN avg_total_point BETWEEN 27 AND 29 THEN '6.5'
+                    WHEN avg_total_point BETWEEN 23 AND 26 THEN '6.0'
+                    WHEN avg_total_point BETWEEN 19 AND 22 THEN '5.5'
+                    WHEN avg_total_point BETWEEN 15 AND 18 THEN '5.0'
+                    WHEN avg_total_point BETWEEN 13 AND 14 THEN '4.5'
+                    WHEN avg_total_point BETWEEN 10 AND 12 THEN '4.0'
+                    ELSE '<4.0'
+                END AS branchScore
+            FROM avg_score_per_user
+        )
+        SELECT
+            b.branchScore,
+            COALESCE(COUNT(sm.branchScore), 0) AS numberOfUsers
+        FROM all_branches b
+        LEFT JOIN score_mapping sm
+            ON b.branchScore = sm.branchScore
+        GROUP BY b.branchScore
+        ORDER BY b.branchScore DESC
+        """, nativeQuery = true)
+    List<UserInBranch> getNumberOfUsersInBranchAvg();
+
+    @Query(value = """
+        WITH branches AS (
+            SELECT '9.0' AS branchScore
+            UNION ALL SELECT '8.5'
+            UNION ALL SELECT '8.0'
+            UNION ALL SELECT '7.5'
+            UNION ALL SELECT '7.0'
+            UNION ALL SELECT '6.5'
+            UNION ALL SELECT '6.0'
+            UNION ALL SELECT '5.5'
+            UNION ALL SELECT '5.0'
+            UNION ALL SELECT '4.5'
+            UNION ALL SELECT '4.0'
+            UNION ALL SELECT '<4.0'
+        ),
+        branch_counts AS (
+            SELECT
+                CASE
+                    WHEN best_point BETWEEN 39 AND 40 THEN '9.0'
+                    WHEN best_point BETWEEN 37 AND 38 THEN '8.5'
+                    WHEN best_point BETWEEN 35 AND 36 THEN '8.0'
+                    WHEN best_point BETWEEN 33 AND 34 THEN '7.5'
+                    WHEN best_point BETWEEN 30 AND 32 THEN '7.0'
+                    WHEN best_point BETWEEN 27 AND 29 THEN '6.5'
+                    WHEN best_point BETWEEN 23 AND 26 THEN '6.0'
+                    WHEN best_point BETWEEN 19 AND 22 THEN '5.5'
+                    WHEN best_point BETWEEN 15 AND 18 THEN '5.0'
+                    WHEN best_point BETWEEN 13 AND 14 THEN '4.5'
+                    WHEN best_point BETWEEN 10 AND 12 THEN '4.0'
+                    ELSE '<4.0'
+                END AS branchScore,
+                COUNT(*) AS numberOfUsers
+            FROM user_exam_score
+            WHERE attempt_count > 0
+            GROUP BY branchScore
+        )
+        SELECT
+            b.branchScore,
+            COALESCE(c.numberOfUsers, 0) AS numberOfUsers
+        FROM branches b
+        LEFT JOIN branch_counts c ON b.branchScore = c.branchScore
+        ORDER BY
+            CASE b.branchScore
+                WHEN '9.0' THEN 1
+                WHEN '8.5' THEN 2
+                WHEN '8.0' THEN 3
+                WHEN '7.5' THEN 4
+                WHEN '7.0' THEN 5
+                WHEN '6.5' THEN 6
+                WHEN '6.0' THEN 7
+                WHEN '5.5' THEN 8
+                WHEN '5.0' THEN 9
+                WHEN '4.5' THEN 10
+                WHEN '4.0' THEN 11
+                ELSE 12
+            END
+        """, nativeQuery = true)
+    List<UserInBranch> getNumberOfUsersInBranchHighest();
+}
@@ -8,12 +8,19 @@ import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
 import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 import com.fptu.sep490.event.StreakEvent;
+import com.fptu.sep490.readingservice.component.AnswerKeyLoader;
+import com.fptu.sep490.readingservice.component.AttemptVersionResolver;
+import com.fptu.sep490.readingservice.component.GradingBatchWriter;
+import com.fptu.sep490.readingservice.component.GradingEngine;
+import com.fptu.sep490.readingservice.component.PassageContentCache;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.model.*;
 import com.fptu.sep490.readingservice.model.embedded.AnswerAttemptId;
 import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
 import com.fptu.sep490.readingservice.model.enumeration.Status;
+import com.fptu.sep490.readingservice.model.grading.AnswerKey;
+import com.fptu.sep490.readingservice.model.graph.PassageGraph;
 import com.fptu.sep490.readingservice.model.json.AttemptVersion;
 import com.fptu.sep490.readingservice.model.json.QuestionVersion;
 import com.fptu.sep490.readingservice.repository.*;
@@ -56,6 +63,9 @@ import java.util.stream.Collectors;
 @RequiredArgsConstructor
 @FieldDefaults(level = AccessLevel.PRIVATE, makeFinal = true)
 public class AttemptServiceImpl implements AttemptService {
+    // Cùng hạn heartbeat với AttemptSessionServiceImpl.HEARTBEAT_TIMEOUT bên personal-service
+    static final Duration ATTEMPT_LOCK_HEARTBEAT_TIMEOUT = Duration.ofMinutes(1);
+
     ReadingPassageRepository readingPassageRepository;
     AttemptRepository attemptRepository;
     QuestionGroupRepository questionGroupRepository;
@@ -69,6 +79,12 @@ public class AttemptServiceImpl implements AttemptService {
     RedisService redisService;
     KafkaTemplate<String, Object> kafkaTemplate;
     Helper helper;
+    PassageContentCache passageContentCache;
+    AttemptVersionResolver attemptVersionResolver;
+    AnswerKeyLoader answerKeyLoader;
+    GradingEngine gradingEngine;
+    GradingBatchWriter gradingBatchWriter;
+    UserProgressDailyRepository userProgressDailyRepository;
 
     @Value("${keycloak.realm}")
     @NonFinal
@@ -112,57 +128,26 @@ public class AttemptServiceImpl implements AttemptService {
             );
         }
 
-        AttemptVersion attemptVersion = AttemptVersion.builder()
-                .readingPassageId(currentVersion.getPassageId())
-                .build();
+        PassageGraph graph = passageContentCache.getCurrentVersion(passage.getPassageId(), currentVersion.getVersion());
+
         Map<UUID, List<QuestionVersion>> questionVersions = new HashMap<>();
         Map<UUID, List<UUID>> groupMapDragItem = new HashMap<>();
-        List<QuestionGroup> originalVersionGroupQuestion = questionGroupRepository
-                .findOriginalVersionByTaskId(passage.getPassageId());
-
-        Map<QuestionGroup, List<DragItem>> currentGroupMapCurrentDragItem = new HashMap<>();
-        Map<UUID, List<Question>> currentGroupIdQuestions = new HashMap<>();
-        Map<UUID, Map<UUID, List<Choice>>> currentGroupIdMapQuestionIdMapCurrentChoice = new HashMap<>();
-        originalVersionGroupQuestion.forEach(g -> {
-            // Get All Current DragItem
-            List<DragItem> currentVersionDragItem = dragItemRepository.findCurrentVersionByGroupId(g.getGroupId());
-            QuestionGroup latestVersion = questionGroupRepository.findLatestVersionByOriginalId(g.getGroupId());
-            currentGroupMapCurrentDragItem.put(latestVersion, currentVersionDragItem);
-
-            // mapping group with dragItem for version
-            groupMapDragItem.put(g.getGroupId(), currentVersionDragItem.stream().map(DragItem::getDragItemId).toList());
-
-            // Get All Original Question
-            List<UUID> originalQuestionId = questionRepository.findOriginalVersionByGroupId(g.getGroupId());
-            List<Question> currentQuestion = questionRepository.findAllCurrentVersion(originalQuestionId);
-            currentGroupIdQuestions.put(g.getGroupId(), currentQuestion);
-
-            Map<UUID, List<Choice>> questionIdMapCurrentChoice = new HashMap<>();
-            List<QuestionVersion> questionVersionList = new ArrayList<>();
-            currentQuestion.forEach(q -> {
-                if (q.getIsOriginal()) {
-                    List<Choice> currentChoice = choiceRepository.findCurrentVersionByQuestionId(q.getQuestionId());
-                    questionIdMapCurrentChoice.put(q.getQuestionId(), currentChoice);
-                    QuestionVersion questionVersion = QuestionVersion.builder()
-                            .questionId(q.getQuestionId())
-                            .choiceMapping(currentChoice.stream().map(Choice::getChoiceId).toList())
-                            .build();
-                    questionVersionList.add(questionVersion);
-                } else {
-                    List<Choice> currentChoice = choiceRepository.findCurrentVersionByQuestionId(q.getParent().getQuestionId());
-                    questionIdMapCurrentChoice.put(q.getParent().getQuestionId(), currentChoice);
-                    QuestionVersion questionVersion = QuestionVersion.builder()
-                            .questionId(q.getQuestionId())
-                            .choiceMapping(currentChoice.stream().map(Choice::getChoiceId).toList())
-                            .build();
-                    questionVersionList.add(questionVersion);
-                }
-            });
-            questionVersions.put(g.getGroupId(), questionVersionList);
-            currentGroupIdMapQuestionIdMapCurrentChoice.put(g.getGroupId(), questionIdMapCurrentChoice);
+        graph.groups().forEach(g -> {
+            questionVersions.put(g.originalGroupId(), g.questions().stream()
+                    .map(q -> QuestionVersion.builder()
+                            .questionId(q.questionId())
+                            .choiceMapping(q.choices().stream().map(PassageGraph.ChoiceNode::choiceId).toList())
+                            .build())
+                    .toList());
+            groupMapDragItem.put(g.originalGroupId(), g.dragItems().stream()
+                    .map(PassageGraph.DragItemNode::dragItemId)
+                    .toList());
         });
-        attemptVersion.setGroupMappingDragItem(groupMapDragItem);
-        attemptVersion.setGroupMappingQuestion(questionVersions);
+        AttemptVersion attemptVersion = AttemptVersion.builder()
+                .readingPassageId(currentVersion.getPassageId())
+                .groupMappingQuestion(questionVersions)
+                .groupMappingDragItem(groupMapDragItem)
+                .build();
         Attempt attempt = Attempt.builder()
                 .createdBy(userId)
                 .status(Status.DRAFT)
@@ -172,60 +157,40 @@ public class AttemptServiceImpl implements AttemptService {
                 .build();
         attempt = attemptRepository.save(attempt);
 
-        List<AttemptResponse.QuestionGroupAttemptResponse> groups = new ArrayList<>();
-        currentGroupMapCurrentDragItem.forEach((key, value) -> {
-            List<UpdatedQuestionResponse.DragItemResponse> dragItems =
-                    value.stream()
-                            .map(item -> UpdatedQuestionResponse.DragItemResponse
-                                    .builder()
-                                    .dragItemId(item.getDragItemId().toString())
-                                    .content(item.getContent())
-                                    .build()
-                            )
-                            .toList();
-            List<Question> questions = currentGroupIdQuestions.get(key.getGroupId());
-            Map<UUID, List<Choice>> questionMapChoices = currentGroupIdMapQuestionIdMapCurrentChoice.get(key.getGroupId());
-
-            List<AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse> questionListResponse = new ArrayList<>();
-            questions.forEach(question -> {
-                List<Choice> choices = questionMapChoices.get(question.getParent() != null ? question.getParent().getQuestionId() : question.getQuestionId());
-                AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse questionResponse =
-                        AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
-                                .questionId(question.getQuestionId())
-                                .questionOrder(question.getQuestionOrder())
-                                .questionType(question.getQuestionType().ordinal())
-                                .numberOfCorrectAnswers(question.getNumberOfCorrectAnswers())
-                                .blankIndex(question.getBlankIndex())
-                                .instructionForChoice(question.getInstructionForChoice())
-                                .instructionForMatching(question.getInstructionForMatching())
-                                .zoneIndex(question.getZoneIndex())
-                                .choices(choices != null ?
-                                        choices.stream().map(c ->
-                                                AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
-                                                        .choiceId(c.getChoiceId())
-                                                        .label(c.getLabel())
-                                                        .content(c.getContent())
-                                                        .choiceOrder(question.getQuestionOrder())
-                                                        .build()
-                                        ).sorted(Comparator.comparing(AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse::choiceOrder)).toList() : List.of()
-                                )
-                                .build();
-                questionListResponse.add(questionResponse);
-            });
-
-            AttemptResponse.QuestionGroupAttemptResponse questionGroupResponse = AttemptResponse.QuestionGroupAttemptResponse.builder()
-                    .questionGroupId(key.getGroupId())
-                    .sectionLabel(key.getSectionLabel())
-                    .sectionOrder(key.getSectionOrder())
-                    .instruction(key.getInstruction())
-                    .dragItems(dragItems)
-                    .questions(questionListResponse.stream().sorted(
-                            Comparator.comparing(AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse::questionOrder)
-                    ).toList())
-                    .build();
-
-            groups.add(questionGroupResponse);
-        });
+        List<AttemptResponse.QuestionGroupAttemptResponse> groups = graph.groups().stream()
+                .map(g -> AttemptResponse.QuestionGroupAttemptResponse.builder()
+                        .questionGroupId(g.groupId())
+                        .sectionLabel(g.sectionLabel())
+                        .sectionOrder(g.sectionOrder())
+                        .instruction(g.instruction())
+                        .dragItems(g.dragItems().stream()
+                                .map(item -> UpdatedQuestionResponse.DragItemResponse.builder()
+                                        .dragItemId(item.dragItemId().toString())
+                                        .content(item.content())
+                                        .build())
+                                .toList())
+                        .questions(g.questions().stream()
+                                .map(q -> AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
+                                        .questionId(q.questionId())
+                                        .questionOrder(q.questionOrder())
+                                        .questionType(q.questionType().ordinal())
+                                        .numberOfCorrectAnswers(q.numberOfCorrectAnswers())
+                                        .blankIndex(q.blankIndex())
+                                        .instructionForChoice(q.instructionForChoice())
+                                        .instructionForMatching(q.instructionForMatching())
+                                        .zoneIndex(q.zoneIndex())
+                                        .choices(q.choices().stream()
+                                                .map(c -> AttemptResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
+                                                        .choiceId(c.choiceId())
+                                                        .label(c.label())
+                                                        .content(c.content())
+                                                        .choiceOrder(c.choiceOrder())
+                                                        .build())
+                                                .toList())
+                                        .build())
+                                .toList())
+                        .build())
+                .toList();
         return AttemptResponse.builder()
                 .attemptId(attempt.getAttemptId())
                 .readingPassageId(currentVersion.getPassageId())
@@ -356,28 +321,10 @@ public class AttemptServiceImpl implements AttemptService {
                         HttpStatus.NOT_FOUND.value()
                 ));
 
-        Map<UUID, List<QuestionVersion>> groupMappingQuestion = questionVersion.getGroupMappingQuestion();
-        Map<UUID, List<UUID>> groupMappingDragItem = questionVersion.getGroupMappingDragItem();
-
-        Map<QuestionGroup, List<Question>> groupQuestions = new HashMap<>();
-        Map<UUID, List<DragItem>> groupDragItems = new HashMap<>();
-        Map<UUID, List<Choice>> questionChoice = new HashMap<>();
-        groupMappingQuestion.forEach((key, value) -> {
-            var group = questionGroupRepository.findById(key).get();
-            List<Question> questions = new ArrayList<>();
-            value.forEach(q -> {
-                var question = questionRepository.findById(q.getQuestionId()).get();
-                if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                    List<Choice> choices = choiceRepository.findAllById(q.getChoiceMapping());
-                    questionChoice.put(question.getQuestionId(), choices);
-                }
-                questions.add(question);
-            });
-            groupQuestions.put(group, questions);
-
-            List<DragItem> dragItems = dragItemRepository.findAllById(groupMappingDragItem.get(group.getGroupId()));
-            groupDragItems.put(key, dragItems);
-        });
+        AttemptVersionResolver.ResolvedAttempt resolved = attemptVersionResolver.resolve(questionVersion);
+        Map<QuestionGroup, List<Question>> groupQuestions = resolved.groupQuestions();
+        Map<UUID, List<DragItem>> groupDragItems = resolved.groupDragItems();
+        Map<UUID, List<Choice>> questionChoice = resolved.questionChoices();
 
         List<ReadingPassageGetAllResponse.QuestionGroupResponse> questionGroups = new ArrayList<>();
         groupQuestions.forEach((key, value) -> {
@@ -484,116 +431,17 @@ public class AttemptServiceImpl implements AttemptService {
         // Bước 2: map node sang AttemptVersion
         AttemptVersion questionVersion = objectMapper.treeToValue(decodedNode, AttemptVersion.class);
 
-        // Lấy list question của bài đọc
-        List<Question> questions = new ArrayList<>();
-        questionVersion.getGroupMappingQuestion().forEach((groupId, questionVersions) -> {
-            List<Question> currentQuestions = questionRepository.findQuestionsByIds(
-                    questionVersions.stream()
-                            .map(QuestionVersion::getQuestionId)
-                            .collect(Collectors.toList()));
-            questions.addAll(currentQuestions);
-        });
-
-        // Tạo hashMap answers để compare
-        Map<UUID, SavedAnswersRequest> savedAnswers = new HashMap<>();
-        for (SavedAnswersRequest savedAnswer : answers.answers()) {
-            savedAnswers.put(savedAnswer.questionId(), savedAnswer);
-        }
-        List<SubmittedAttemptResponse.ResultSet> resultSets = new ArrayList<>();
-
-        for (Question question : questions) {
-            SavedAnswersRequest answer = savedAnswers.get(question.getQuestionId());
-            if (Objects.isNull(answer)) {
-                continue;
-            }
-            AnswerAttemptId answerAttemptId = AnswerAttemptId.builder()
-                    .questionId(question.getQuestionId())
-                    .attemptId(attempt.getAttemptId())
-                    .build();
-
-            AnswerAttempt answerAttempt = answerAttemptRepository.findAnswerAttemptByAttemptId(answerAttemptId)
-                    .orElse(AnswerAttempt.builder()
-                            .attempt(attempt)
-                            .id(answerAttemptId)
-                            .question(question)
-                            .build());
-
-            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                if (answer.choices() == null) continue;
-                SubmittedAttemptResponse.ResultSet result = scoreMultipleChoiceQuestion(answer, question);
-                resultSets.add(result);
-                answerAttempt.setChoices(answer.choices());
-                answerAttempt.setIsCorrect(result.isCorrect());
-            }
-            if (question.getQuestionType() == QuestionType.FILL_IN_THE_BLANKS) {
-                if (answer.dataFilled() == null) continue;
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(List.of(answer.dataFilled()))
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswer()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if (question.getCorrectAnswer().equalsIgnoreCase(answer.dataFilled())) {
-                    result.setCorrect(true);
-                }
-                resultSets.add(result);
-                answerAttempt.setDataFilled(answer.dataFilled());
-                answerAttempt.setIsCorrect(result.isCorrect());
-
-            }
-            if (question.getQuestionType() == QuestionType.MATCHING) {
-                if (answer.dataMatched() == null) continue;
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(List.of(answer.dataMatched()))
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswerForMatching()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if (question.getCorrectAnswerForMatching().equalsIgnoreCase(answer.dataMatched())) {
-                    result.setCorrect(true);
-                }
-                resultSets.add(result);
-                answerAttempt.setDataMatched(answer.dataMatched());
-                answerAttempt.setIsCorrect(result.isCorrect());
-            }
-            if (question.getQuestionType() == QuestionType.DRAG_AND_DROP) {
-                if (answer.dragItemId() == null) continue;
-
-                // Lấy nội dung đáp án người dùng chọn (an toàn, không .get() trực tiếp)
-                String userContent = dragItemRepository.findById(answer.dragItemId())
-                        .map(DragItem::getContent)
-                        .orElse(null);
-
-                // Xác định đáp án đúng: lấy từ chính câu hỏi, nếu không có thì từ parent
-                DragItem correctItem = resolveCorrectDragItem(question);
-                String correctContent = (correctItem != null ? correctItem.getContent() : null);
-
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(userContent != null ? List.of(userContent) : List.of())
-                        .explanation(question.getExplanation())
-                        .correctAnswer(correctContent != null ? List.of(correctContent) : List.of())
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-
-                boolean isCorrect = (correctItem != null && correctItem.getDragItemId().equals(answer.dragItemId()));
-                if (isCorrect) {
-                    result.setCorrect(true);
-                }
-
-                resultSets.add(result);
-                answerAttempt.setDragItemId(answer.dragItemId());
-                answerAttempt.setIsCorrect(isCorrect);
-            }
-            answerAttemptRepository.save(answerAttempt);
-        }
+        // Chấm toàn bộ bài làm trong bộ nhớ, ghi kết quả bằng JDBC batch
+        AnswerKey answerKey = answerKeyLoader.load(questionVersion);
+        GradingEngine.GradingResult gradingResult = gradingEngine.grade(answerKey, attempt.getAttemptId(), answers);
+        gradingBatchWriter.upsertAnswerAttempts(gradingResult.answerAttempts());
 
         attempt.setFinishedAt(LocalDateTime.now());
         attempt.setStatus(Status.FINISHED);
         attempt.setDuration(answers.duration());
         attemptRepository.save(attempt);
+        userProgressDailyRepository.increment(attempt.getCreatedBy(), attempt.getCreatedAt().toLocalDate(),
+                0, 0, 1, attempt.getCreatedAt());
 
         StreakEvent streakEvent = StreakEvent.builder()
                 .accountId(UUID.fromString(userId))
@@ -604,20 +452,10 @@ public class AttemptServiceImpl implements AttemptService {
 
         return SubmittedAttemptResponse.builder()
                 .duration(answers.duration())
-                .resultSets(resultSets.stream().sorted(Comparator.comparing(SubmittedAttemptResponse.ResultSet::getQuestionIndex)).collect(Collectors.toList()))
+                .resultSets(gradingResult.resultSets())
                 .build();
     }
 
-    private DragItem resolveCorrectDragItem(Question q) {
-        if (q == null) return null;
-        if (q.getDragItem() != null) return q.getDragItem();
-        Question parent = q.getParent();
-        if (parent != null) {
-            return parent.getDragItem();
-        }
-        return null;
-    }
-
     @Override
     public Page<UserAttemptResponse> getAttemptByUser(int page, int size, List<Integer> ieltsTypeList, List<Integer> statusList, List<Integer> partNumberList, String sortBy, String sortDirection, String title, UUID passageId, HttpServletRequest request) {
         String userId = helper.getUserIdFromToken(request);
@@ -684,28 +522,10 @@ public class AttemptServiceImpl implements AttemptService {
                         HttpStatus.NOT_FOUND.value()
                 ));
 
-        Map<UUID, List<QuestionVersion>> groupMappingQuestion = questionVersion.getGroupMappingQuestion();
-        Map<UUID, List<UUID>> groupMappingDragItem = questionVersion.getGroupMappingDragItem();
-
-        Map<QuestionGroup, List<Question>> groupQuestions = new HashMap<>();
-        Map<UUID, List<DragItem>> groupDragItems = new HashMap<>();
-        Map<UUID, List<Choice>> questionChoice = new HashMap<>();
-        groupMappingQuestion.forEach((key, value) ->{
-            var group = questionGroupRepository.findById(key).get();
-            List<Question> questions = new ArrayList<>();
-            value.forEach(q -> {
-                var question = questionRepository.findById(q.getQuestionId()).get();
-                if(question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                    List<Choice> choices = choiceRepository.findAllById(q.getChoiceMapping());
-                    questionChoice.put(question.getQuestionId(), choices);
-                }
-                questions.add(question);
-            });
-            groupQuestions.put(group, questions);
-
-            List<DragItem> dragItems = dragItemRepository.findAllById(groupMappingDragItem.get(group.getGroupId()));
-            groupDragItems.put(key, dragItems);
-        });
+        AttemptVersionResolver.ResolvedAttempt resolved = attemptVersionResolver.resolve(questionVersion);
+        Map<QuestionGroup, List<Question>> groupQuestions = resolved.groupQuestions();
+        Map<UUID, List<DragItem>> groupDragItems = resolved.groupDragItems();
+        Map<UUID, List<Choice>> questionChoice = resolved.questionChoices();
 
         List<ReadingPassageGetAllResponse.QuestionGroupResponse> questionGroups = new ArrayList<>();
         groupQuestions.forEach((key, value) ->{
@@ -782,49 +602,6 @@ public class AttemptServiceImpl implements AttemptService {
                 .build();
     }
 
-    private SubmittedAttemptResponse.ResultSet scoreMultipleChoiceQuestion(SavedAnswersRequest answer, Question question) {
-        List<Choice> correctAnswers;
-        List<String> userAnswers = choiceRepository.getChoicesByIds(answer.choices());
-
-        if (question.getIsOriginal()) {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        } else {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getParent().getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        }
-        SubmittedAttemptResponse.ResultSet resultSet = SubmittedAttemptResponse.ResultSet.builder()
-                .questionIndex(question.getQuestionOrder())
-                .userAnswer(userAnswers)
-                .correctAnswer(correctAnswers.stream().map(
-                        Choice::getLabel
-                ).toList())
-                .explanation(question.getExplanation())
-                .build();
-        List<UUID> userChoice = answer.choices();
-        List<String> correctLabel = new ArrayList<>();
-        for (Choice correctAnswer : correctAnswers) {
-
-            if (userChoice.contains(correctAnswer.getChoiceId())) {
-                correctLabel.add(correctAnswer.getLabel());
-            }
-        }
-        boolean isCorrect = false;
-        int numberOfCorrect = 0;
-        for (String userAnswer : userAnswers) {
-            if (correctLabel.contains(userAnswer)) {
-                numberOfCorrect++;
-            }
-        }
-        isCorrect = numberOfCorrect == correctAnswers.size();
-        resultSet.setCorrect(isCorrect);
-        return resultSet;
-    }
-
 
     private String getUserIdFromToken(HttpServletRequest request) {
         String token = CookieUtils.getCookieValue(request, "Authorization");
@@ -839,45 +616,33 @@ public class AttemptServiceImpl implements AttemptService {
         }
     }
 
-    private void checkAttemptSessionActivity(UUID attemptId, String userId) throws JsonProcessingException {
-        String attemptSessionKey = "attempt_session:" + attemptId.toString();
-        String sessionActivityKey = "session_activity:" + attemptId.toString();
-        
-        // Check if attempt session exists in Redis
-        @SuppressWarnings("unchecked")
-        Map<String, Object> sessionData = redisService.getValue(attemptSessionKey, Map.class);
-        if (sessionData != null) {
-            String sessionUserId = (String) sessionData.get("userId");
-            String sessionId = (String) sessionData.get("sessionId");
-            
-            // If it's the same user, check if session is still active
-            if (userId.equals(sessionUserId)) {
-                @SuppressWarnings("unchecked")
-                Map<String, Object> activityData = redisService.getValue(sessionActivityKey, Map.class);
-                if (activityData != null) {
-                    Long lastActivity = (Long) activityData.get("lastActivity");
-                    if (lastActivity != null) {
-                        long currentTime = System.currentTimeMillis();
-                        long timeDiff = currentTime - lastActivity;
-                        
-                        // If last activity was within 5 minutes, consider it active
-                        if (timeDiff < 300000) { // 5 minutes in milliseconds
-                            throw new AppException(
-                                    Constants.ErrorCodeMessage.ATTEMPT_SESSION_ACTIVE,
-                                    Constants.ErrorCode.ATTEMPT_SESSION_ACTIVE,
-                                    HttpStatus.CONFLICT.value()
-                            );
-                        }
-                    }
-                }
-            } else {
-                // Different user is using this attempt
-                throw new AppException(
-                        Constants.ErrorCodeMessage.ATTEMPT_IN_USE,
-                        Constants.ErrorCode.ATTEMPT_IN_USE,
-                        HttpStatus.CONFLICT.value()
-                );
-            }
+    /**
+     * Chặn mở attempt khi khóa {@code attempt_lock:<attemptId>} của personal-service còn sống
+     * (lastPing trong {@link #ATTEMPT_LOCK_HEARTBEAT_TIMEOUT}): người khác giữ thì ATTEMPT_IN_USE,
+     * chính user này giữ ở session khác thì ATTEMPT_SESSION_ACTIVE.
+     */
+    private void checkAttemptSessionActivity(UUID attemptId, String userId) {
+        List<String> owner = redisService.getHashFields(Constants.RedisKey.ATTEMPT_LOCK + attemptId,
+                List.of("userId", "sessionId", "lastPing"));
+        if (owner.get(1) == null) {
+            return;
+        }
+        long lastPing = owner.get(2) != null ? Long.parseLong(owner.get(2)) : 0L;
+        if (System.currentTimeMillis() - lastPing >= ATTEMPT_LOCK_HEARTBEAT_TIMEOUT.toMillis()) {
+            // Chủ khóa đã quá hạn heartbeat, personal-service sẽ giải phóng khóa
+            return;
+        }
+        if (userId.equals(owner.get(0))) {
+            throw new AppException(
+                    Constants.ErrorCodeMessage.ATTEMPT_SESSION_ACTIVE,
+                    Constants.ErrorCode.ATTEMPT_SESSION_ACTIVE,
+                    HttpStatus.CONFLICT.value()
+            );
         }
+        throw new AppException(
+                Constants.ErrorCodeMessage.ATTEMPT_IN_USE,
+                Constants.ErrorCode.ATTEMPT_IN_USE,
+                HttpStatus.CONFLICT.value()
+        );
     }
 }
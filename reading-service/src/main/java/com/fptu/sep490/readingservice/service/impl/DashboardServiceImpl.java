@@ -26,7 +26,8 @@ public class DashboardServiceImpl implements DashboardService {
     ReadingExamRepository readingExamRepository;
     AttemptRepository attemptRepository;
     ExamAttemptRepository examAttemptRepository;
-    ReportDataRepository reportDataRepository;
+    QuestionTypeDailyStatsRepository questionTypeDailyStatsRepository;
+    UserExamScoreRepository userExamScoreRepository;
     @Override
     @Transactional
     public DataStats getDataStats() {
@@ -34,10 +35,11 @@ public class DashboardServiceImpl implements DashboardService {
         int numberOfTasks = readingPassageRepository.getNumberOfPassages();
         int numberOfAttempts = attemptRepository.getNumberOfAttempts();
         int numberOfExamAttempts = examAttemptRepository.getNumberOfExamAttempts();
-        List<UserInBranch> userInBranchAvg = readingExamRepository.getNumberOfUsersInBranchAvg();
-        List<UserInBranch> userInBranchHighest = readingExamRepository.getNumberOfUsersInBranchHighest();
-        List<ReportQuestionTypeStats> questionTypeStats = reportDataRepository.countCorrectByQuestionType(null, null);
-        List<ReportQuestionTypeStatsWrong> questionTypeStatsWrong = reportDataRepository.countWrongByQuestionType(null, null);
+        // Phân bố band và thống kê loại câu hỏi đọc từ rollup, không quét exam_attempt / report_data
+        List<UserInBranch> userInBranchAvg = userExamScoreRepository.getNumberOfUsersInBranchAvg();
+        List<UserInBranch> userInBranchHighest = userExamScoreRepository.getNumberOfUsersInBranchHighest();
+        List<ReportQuestionTypeStats> questionTypeStats = questionTypeDailyStatsRepository.countCorrectByQuestionType(null, null);
+        List<ReportQuestionTypeStatsWrong> questionTypeStatsWrong = questionTypeDailyStatsRepository.countWrongByQuestionType(null, null);
         return DataStats.builder()
                 .numberOfTasks(numberOfTasks)
                 .numberOfExams(numberOfExams)
@@ -52,11 +54,11 @@ public class DashboardServiceImpl implements DashboardService {
 
     @Override
     public List<ReportQuestionTypeStats> getQuestionTypeStats(LocalDate fromDate, LocalDate toDate) {
-        return reportDataRepository.countCorrectByQuestionType(fromDate, toDate);
+        return questionTypeDailyStatsRepository.countCorrectByQuestionType(fromDate, toDate);
     }
 
     @Override
     public List<ReportQuestionTypeStatsWrong> getQuestionTypeStatsWrong(LocalDate fromDate, LocalDate toDate) {
-        return reportDataRepository.countWrongByQuestionType(fromDate, toDate);
+        return questionTypeDailyStatsRepository.countWrongByQuestionType(fromDate, toDate);
     }
 }
@@ -10,11 +10,17 @@ import com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq;
 import com.fptu.sep490.commonlibrary.viewmodel.request.OverviewProgressReq;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.OverviewProgress;
+import com.fptu.sep490.readingservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.readingservice.component.ExamAttemptReviewCache;
+import com.fptu.sep490.readingservice.component.ExamPaperSnapshotCache;
+import com.fptu.sep490.readingservice.component.ExamGradingEngine;
+import com.fptu.sep490.readingservice.component.GradingBatchWriter;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.model.*;
 import com.fptu.sep490.readingservice.model.enumeration.IeltsType;
 import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.grading.ExamAnswerKey;
 import com.fptu.sep490.readingservice.model.json.ExamAttemptHistory;
 import com.fptu.sep490.readingservice.repository.*;
 import com.fptu.sep490.readingservice.repository.ChoiceRepository;
@@ -41,9 +47,9 @@ import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.util.*;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
@@ -63,24 +69,33 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
     ReadingExamRepository readingExamRepository;
     AttemptRepository attemptRepository;
     ReadingPassageRepository readingPassageRepository;
-    ReportDataRepository reportDataRepository;
+    GradingBatchWriter gradingBatchWriter;
+    ExamAnswerKeyCache examAnswerKeyCache;
+    ExamGradingEngine examGradingEngine;
+    UserProgressDailyRepository userProgressDailyRepository;
+    UserExamScoreRepository userExamScoreRepository;
+    ExamPaperSnapshotCache examPaperSnapshotCache;
+    ExamAttemptReviewCache examAttemptReviewCache;
 
     @Override
+    @Transactional
     public SubmittedAttemptResponse submittedExam(String attemptId, ExamAttemptAnswersRequest answers, HttpServletRequest request) throws JsonProcessingException {
 
-        ExamAttempt examAttempt = examAttemptRepository.findById(UUID.fromString(attemptId)).orElseThrow(
+        ExamAttempt examAttempt = examAttemptRepository.findByIdForUpdate(UUID.fromString(attemptId)).orElseThrow(
                 () -> new AppException(
                         Constants.ErrorCodeMessage.EXAM_ATTEMPT_NOT_FOUND,
                         Constants.ErrorCode.EXAM_ATTEMPT_NOT_FOUND,
                         HttpStatus.NOT_FOUND.value()
                 )
         );
+        // Lần nộp lại chỉ cộng phần chênh điểm vào rollup
+        boolean alreadyCounted = examAttempt.isSubmitted();
+        int previousPoint = alreadyCounted ? examAttempt.getTotalPoint() : 0;
         examAttempt.setDuration(answers.duration());
         List<UUID> questionIds = answers.answers().stream()
                 .map(ExamAttemptAnswersRequest.ExamAnswerRequest::questionId)
                 .filter(Objects::nonNull)
                 .toList();
-        List<Question> questions = questionRepository.findQuestionsByIds(questionIds);
         Map<UUID, List<UUID>> groupMapDragItem = new HashMap<>();
         if(!CollectionUtils.isEmpty(answers.itemsIds())) {
             List<DragItem> items = dragItemRepository.findAllById(answers.itemsIds());
@@ -97,8 +112,6 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
             });
         }
 
-        List<ReportData> reportData = new ArrayList<>();
-
         // Convert user answers for mapping questions and answers
         Map<UUID, List<String>> userAnswers = answers.answers().stream()
                 .filter(answer -> answer.questionId() != null)
@@ -123,139 +136,30 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                 .build();
         examAttempt.setHistory(objectMapper.writeValueAsString(examAttemptHistory));
 
-        int points = 0;
-        List<SubmittedAttemptResponse.ResultSet> resultSets = new ArrayList<>();
-        for(Question question : questions) {
-
-            List<String> userSelectedAnswers = userAnswers.get(question.getQuestionId());
-            if(userSelectedAnswers == null) {
-                continue;
-            }
-
-            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
-                SubmittedAttemptResponse.ResultSet result = checkMultipleChoiceQuestion(question, userSelectedAnswers);
-                points += result.isCorrect() ? question.getPoint() : 0;
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                                .questionType(question.getQuestionType())
-                                .questionId(question.getQuestionId())
-                                .isCorrect(result.isCorrect())
-                        .build());
-            }
-            if (question.getQuestionType() == QuestionType.FILL_IN_THE_BLANKS) {
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswer()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(!userSelectedAnswers.isEmpty() && question.getCorrectAnswer().equalsIgnoreCase(userSelectedAnswers.getFirst())) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-
-            if (question.getQuestionType() == QuestionType.MATCHING) {
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getCorrectAnswerForMatching()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(!userSelectedAnswers.isEmpty() && question.getCorrectAnswerForMatching().equalsIgnoreCase(userSelectedAnswers.getFirst())) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-
-            if( question.getQuestionType() == QuestionType.DRAG_AND_DROP) {
-                SubmittedAttemptResponse.ResultSet result = SubmittedAttemptResponse.ResultSet.builder()
-                        .userAnswer(userSelectedAnswers)
-                        .explanation(question.getExplanation())
-                        .correctAnswer(List.of(question.getDragItem().getContent()))
-                        .isCorrect(false)
-                        .questionIndex(question.getQuestionOrder())
-                        .build();
-                if(!userSelectedAnswers.isEmpty() && question.getDragItem().getDragItemId().equals(UUID.fromString(userSelectedAnswers.getFirst()))) {
-                    result.setCorrect(true);
-                    points += question.getPoint();
-                }
-                resultSets.add(result);
-                reportData.add(ReportData.builder()
-                        .questionType(question.getQuestionType())
-                        .questionId(question.getQuestionId())
-                        .isCorrect(result.isCorrect())
-                        .build());
-            }
-
-
-        }
-        examAttempt.setTotalPoint(points);
+        // Chấm trên đáp án đã biên dịch sẵn của phiên bản đề, không đọc lại đáp án từ DB
+        ExamAnswerKey answerKey = examAnswerKeyCache.get(examAttempt.getReadingExam().getReadingExamId());
+        ExamGradingEngine.ExamGradingResult gradingResult = examGradingEngine.grade(answerKey, questionIds, userAnswers);
+        examAttempt.setTotalPoint(gradingResult.points());
 
         examAttempt = examAttemptRepository.save(examAttempt);
-        reportDataRepository.saveAll(reportData);
+        examAttemptReviewCache.evict(examAttempt.getExamAttemptId(), examAttempt.getReadingExam().getReadingExamId());
+        gradingBatchWriter.insertReportData(gradingResult.reportData());
+        userProgressDailyRepository.increment(examAttempt.getCreatedBy(),
+                examAttempt.getCreatedAt().toLocalDate(),
+                alreadyCounted ? 0 : 1,
+                gradingResult.points() - previousPoint,
+                0,
+                examAttempt.getCreatedAt());
+        userExamScoreRepository.record(examAttempt.getCreatedBy(),
+                alreadyCounted ? 0 : 1,
+                gradingResult.points() - previousPoint,
+                gradingResult.points(),
+                LocalDateTime.now());
         return SubmittedAttemptResponse.builder()
                 .duration(examAttempt.getDuration().longValue())
-                .resultSets(resultSets.stream().sorted(Comparator.comparing(SubmittedAttemptResponse.ResultSet::getQuestionIndex)).toList())
-                .build();
-
-    }
-
-    private SubmittedAttemptResponse.ResultSet checkMultipleChoiceQuestion(Question question, List<String> userSelectedAnswers) {
-        // Convert user selected answers to UUIDs
-        List<UUID> answerChoice = userSelectedAnswers.stream()
-                .map(UUID::fromString)
-                .toList();
-        List<Choice> correctAnswers = new ArrayList<>();
-        List<String> userAnswers= choiceRepository.getChoicesByIds(answerChoice);
-        SubmittedAttemptResponse.ResultSet resultSet = SubmittedAttemptResponse.ResultSet.builder()
-                .questionIndex(question.getQuestionOrder())
-                .userAnswer(userAnswers)
-                .explanation(question.getExplanation())
+                .resultSets(gradingResult.resultSets())
                 .build();
-        if(question.getIsOriginal()) {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        } else {
-            List<Choice> originalChoice = choiceRepository.getOriginalChoiceByOriginalQuestion(question.getParent().getQuestionId());
-            correctAnswers = choiceRepository.getCurrentCorrectChoice(originalChoice.stream().map(
-                    Choice::getChoiceId
-            ).toList());
-        }
 
-        List<UUID> userChoice = answerChoice;
-        List<String> correctLabel = new ArrayList<>();
-        for(Choice correctAnswer : correctAnswers) {
-
-            if(userChoice.contains(correctAnswer.getChoiceId())) {
-                correctLabel.add(correctAnswer.getLabel());
-            }
-        }
-        int numberOfCorrect = 0;
-        for(String userAnswer : userAnswers) {
-            if(correctLabel.contains(userAnswer)) {
-                numberOfCorrect++;
-            }
-        }
-        boolean isCorrect = numberOfCorrect == correctAnswers.size();
-        resultSet.setCorrect(isCorrect);
-        return resultSet;
     }
 
     @Transactional
@@ -291,15 +195,10 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
 
         //create CreateExamAttemptResponse
 
-        CreateExamAttemptResponse.ReadingExamResponse readingExamResponse = CreateExamAttemptResponse.ReadingExamResponse.builder()
-                .readingExamId(currentExam.getReadingExamId())
-                .readingExamName(currentExam.getExamName())
-                .readingExamDescription(currentExam.getExamDescription())
-                .urlSlug(currentExam.getUrlSlug())
-                .readingPassageIdPart1(passageService.fromReadingPassage(currentExam.getPart1().getPassageId().toString()))
-                .readingPassageIdPart2(passageService.fromReadingPassage(currentExam.getPart2().getPassageId().toString()))
-                .readingPassageIdPart3(passageService.fromReadingPassage(currentExam.getPart3().getPassageId().toString()))
-                .build();
+        // Đề giống nhau với mọi học viên: dùng snapshot theo phiên bản đề, chỉ render khi chưa có
+        ReadingExam paperExam = currentExam;
+        CreateExamAttemptResponse.ReadingExamResponse readingExamResponse = examPaperSnapshotCache.get(
+                currentExam.getReadingExamId(), () -> renderExamPaper(paperExam));
 
         return CreateExamAttemptResponse.builder()
                 .examAttemptId(examAttempt.getExamAttemptId())
@@ -311,6 +210,18 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
 
     }
 
+    private CreateExamAttemptResponse.ReadingExamResponse renderExamPaper(ReadingExam exam) {
+        return CreateExamAttemptResponse.ReadingExamResponse.builder()
+                .readingExamId(exam.getReadingExamId())
+                .readingExamName(exam.getExamName())
+                .readingExamDescription(exam.getExamDescription())
+                .urlSlug(exam.getUrlSlug())
+                .readingPassageIdPart1(passageService.fromReadingPassage(exam.getPart1().getPassageId().toString()))
+                .readingPassageIdPart2(passageService.fromReadingPassage(exam.getPart2().getPassageId().toString()))
+                .readingPassageIdPart3(passageService.fromReadingPassage(exam.getPart3().getPassageId().toString()))
+                .build();
+    }
+
     @Transactional(readOnly = true)
     @Override
     public Page<UserGetHistoryExamAttemptResponse> getListExamHistory(
@@ -333,6 +244,9 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
         Page<ExamAttempt> examAttemptsResult = examAttemptRepository.findAll(spec, pageable);
 
         List<ExamAttempt> examAttempts = examAttemptsResult.getContent();
+        Map<String, UserInformationResponse> users = helper.getUserInformationResponses(examAttempts.stream()
+                .flatMap(examAttempt -> Stream.of(examAttempt.getCreatedBy(), examAttempt.getUpdatedBy()))
+                .toList());
 
         List<UserGetHistoryExamAttemptResponse> list = examAttempts.stream().map(examAttempt -> {
             UserGetHistoryExamAttemptResponse.UserGetHistoryExamAttemptReadingExamResponse readingExamResponse =
@@ -348,8 +262,8 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
                     .readingExam(readingExamResponse)
                     .duration(examAttempt.getDuration())
                     .totalQuestion(examAttempt.getTotalPoint())
-                    .createdBy(helper.getUserInformationResponse(examAttempt.getCreatedBy()))
-                    .updatedBy(helper.getUserInformationResponse(examAttempt.getUpdatedBy()))
+                    .createdBy(users.get(examAttempt.getCreatedBy()))
+                    .updatedBy(users.get(examAttempt.getUpdatedBy()))
                     .createdAt(examAttempt.getCreatedAt().toString())
                     .updatedAt(examAttempt.getUpdatedAt().toString())
                     .build();
@@ -389,19 +303,9 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
         }
         ExamAttemptHistory history = objectMapper.readValue(examAttempt.getHistory(), ExamAttemptHistory.class);
 
-        List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse> passageResponses = passageService.fromExamAttemptHistory(history);
-        passageResponses = passageResponses.stream()
-                .sorted(Comparator.comparing(ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse::partNumber))
-                .toList();
-        ExamAttemptGetDetail.ReadingExamResponse readingExamResponse = ExamAttemptGetDetail.ReadingExamResponse.builder()
-                .readingExamId(examAttempt.getReadingExam().getReadingExamId())
-                .readingExamName(examAttempt.getReadingExam().getExamName())
-                .readingExamDescription(examAttempt.getReadingExam().getExamDescription())
-                .urlSlug(examAttempt.getReadingExam().getUrlSlug())
-                .readingPassageIdPart1(passageResponses.get(0))
-                .readingPassageIdPart2(passageResponses.get(1))
-                .readingPassageIdPart3(passageResponses.get(2))
-                .build();
+        // Bài đã nộp không đổi: phần đề dựng lại từ history được cache theo attempt
+        ExamAttemptGetDetail.ReadingExamResponse readingExamResponse = examAttemptReviewCache.get(attemptId,
+                examAttempt.getReadingExam().getReadingExamId(), () -> toReviewExam(examAttempt, history));
 
         Boolean is_academic = examAttempt.getReadingExam().getPart1().getIeltsType() == IeltsType.ACADEMIC;
         return ExamAttemptGetDetail.builder()
@@ -423,6 +327,23 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
 
 
     }
+
+    private ExamAttemptGetDetail.ReadingExamResponse toReviewExam(ExamAttempt examAttempt, ExamAttemptHistory history) {
+        List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse> passageResponses = passageService.fromExamAttemptHistory(history);
+        passageResponses = passageResponses.stream()
+                .sorted(Comparator.comparing(ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse::partNumber))
+                .toList();
+        return ExamAttemptGetDetail.ReadingExamResponse.builder()
+                .readingExamId(examAttempt.getReadingExam().getReadingExamId())
+                .readingExamName(examAttempt.getReadingExam().getExamName())
+                .readingExamDescription(examAttempt.getReadingExam().getExamDescription())
+                .urlSlug(examAttempt.getReadingExam().getUrlSlug())
+                .readingPassageIdPart1(passageResponses.get(0))
+                .readingPassageIdPart2(passageResponses.get(1))
+                .readingPassageIdPart3(passageResponses.get(2))
+                .build();
+    }
+
     public Double bandScoreAcademic(Integer totalPoint) {
         if (totalPoint == null) {
             return null;
@@ -475,59 +396,44 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
     public OverviewProgress getOverViewProgress(OverviewProgressReq body, String token) {
         String userId = helper.getUserIdFromToken(token);
 
-        List<ExamAttempt> exams = examAttemptRepository.findAllByUserId(userId);
+        // Mỗi phần tử là một ngày có hoạt động, không phải một attempt
+        List<UserProgressDaily> days = userProgressDailyRepository.findAllByUserId(userId);
         Integer numberOfExams = readingExamRepository.numberOfActiveExams();
-
-        List<Attempt> tasks = attemptRepository.findAllByUserId(userId);
         Integer numberOfTasks = readingPassageRepository.numberOfPublishedPassages();
 
-        OverviewProgress overviewProgress = new OverviewProgress();
-        overviewProgress.setExam(exams.size());
-        overviewProgress.setTask(tasks.size());
-        overviewProgress.setTotalExams(numberOfExams);
-        overviewProgress.setTotalTasks(numberOfTasks);
-
-        LocalDateTime endDate = LocalDateTime.now();
-        LocalDateTime startDate = DateTimeUtils.calculateStartDateFromTimeFrame(body.getTimeFrame());
+        // Khung thời gian được làm tròn về đầu ngày bắt đầu
+        LocalDate startDate = DateTimeUtils.calculateStartDateFromTimeFrame(body.getTimeFrame()).toLocalDate();
 
-// 3. Duyệt qua các bài thi và cập nhật lastLearningDate
-        int totalScore = 0;
+        int exams = 0;
+        int tasks = 0;
+        long totalScore = 0;
         int numberOfExamsInTimeFrame = 0;
         int numberOfTasksInTimeFrame = 0;
-        for (ExamAttempt exam : exams) {
-            LocalDateTime createdAt = exam.getCreatedAt();
-            if ((createdAt.isAfter(startDate) || createdAt.isEqual(startDate)) && createdAt.isBefore(endDate)) {
-                LocalDateTime lastDateStr = overviewProgress.getLastLearningDate();
-                totalScore += exam.getTotalPoint() != null ? exam.getTotalPoint() : 0;
-                numberOfExamsInTimeFrame++;
-                if (lastDateStr == null) {
-                    overviewProgress.setLastLearningDate(createdAt); // dùng format mặc định
-                } else {
-                    if (createdAt.isAfter(lastDateStr)) {
-                        overviewProgress.setLastLearningDate(createdAt);
-                    }
-                }
+        LocalDateTime lastLearningDate = null;
+        for (UserProgressDaily day : days) {
+            exams += day.getExamCount();
+            tasks += day.getTaskCount();
+            if (day.getId().getActivityDate().isBefore(startDate)) {
+                continue;
             }
-        }
-        for (Attempt task : tasks) {
-            LocalDateTime createdAt = task.getCreatedAt();
-            if ((createdAt.isAfter(startDate) || createdAt.isEqual(startDate)) && createdAt.isBefore(endDate)) {
-                LocalDateTime lastDateStr = overviewProgress.getLastLearningDate();
-                numberOfTasksInTimeFrame++;
-                if (lastDateStr == null) {
-                    overviewProgress.setLastLearningDate(createdAt); // dùng format mặc định
-                } else {
-                    if (createdAt.isAfter(lastDateStr)) {
-                        overviewProgress.setLastLearningDate(createdAt);
-                    }
-                }
+            totalScore += day.getExamPointSum();
+            numberOfExamsInTimeFrame += day.getExamCount();
+            numberOfTasksInTimeFrame += day.getTaskCount();
+            if (day.getLastActivityAt() != null
+                    && (lastLearningDate == null || day.getLastActivityAt().isAfter(lastLearningDate))) {
+                lastLearningDate = day.getLastActivityAt();
             }
         }
 
+        OverviewProgress overviewProgress = new OverviewProgress();
+        overviewProgress.setExam(exams);
+        overviewProgress.setTask(tasks);
+        overviewProgress.setTotalExams(numberOfExams);
+        overviewProgress.setTotalTasks(numberOfTasks);
+        overviewProgress.setLastLearningDate(lastLearningDate);
         overviewProgress.setAverageBandInTimeFrame(
-                IeltsBandConverter.convertScoreToBand(totalScore, numberOfExamsInTimeFrame, IeltsScale.READING_AC)
+                IeltsBandConverter.convertScoreToBand((int) totalScore, numberOfExamsInTimeFrame, IeltsScale.READING_AC)
         );
-
         overviewProgress.setNumberOfExamsInTimeFrame(numberOfExamsInTimeFrame);
         overviewProgress.setNumberOfTasksInTimeFrame(numberOfTasksInTimeFrame);
         return overviewProgress;
@@ -537,33 +443,29 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
 
     @Override
     public List<LineChartData> getBandChart(LineChartReq body, String token) {
-        List<ExamAttempt> exams = examAttemptRepository.findByUserAndDateRange(helper.getUserIdFromToken(token),
-                body.getStartDate() != null ? body.getStartDate().atStartOfDay() : null,
-                body.getEndDate() != null ? body.getEndDate().atTime(LocalTime.MAX) : null);
+        List<UserProgressDaily> days = userProgressDailyRepository.findExamDaysInRange(helper.getUserIdFromToken(token),
+                body.getStartDate(),
+                body.getEndDate());
 
-        if (exams == null || exams.isEmpty()) {
+        if (days == null || days.isEmpty()) {
             return Collections.emptyList(); // Trả về danh sách rỗng
         }
 
-        LocalDate startDate = exams.getFirst().getCreatedAt().toLocalDate();
-        // 2. Grouping + averaging
-        Map<LocalDate, Double> avgByPeriod = exams.stream()
-                .collect(Collectors.groupingBy(
-                        exam -> DateTimeUtils.normalize(
-                                exam.getCreatedAt().toLocalDate(),
-                                body.getTimeFrame(),
-                                startDate),
-                        TreeMap::new,
-                        Collectors.averagingDouble(e -> e.getTotalPoint().doubleValue())
-                ));
+        LocalDate startDate = days.getFirst().getId().getActivityDate();
+        // Gộp tổng điểm / số bài của các ngày trong cùng kỳ rồi mới chia, giống trung bình trên từng bài
+        Map<LocalDate, long[]> sumByPeriod = new TreeMap<>();
+        for (UserProgressDaily day : days) {
+            LocalDate period = DateTimeUtils.normalize(day.getId().getActivityDate(), body.getTimeFrame(), startDate);
+            long[] sum = sumByPeriod.computeIfAbsent(period, p -> new long[2]);
+            sum[0] += day.getExamPointSum();
+            sum[1] += day.getExamCount();
+        }
 
-        // 3. Chuyển thành LineChartData và sort
-        return avgByPeriod.entrySet().stream()
+        return sumByPeriod.entrySet().stream()
                 .map(e -> LineChartData.builder()
                         .date(e.getKey())
-                        .value(e.getValue())
+                        .value((double) e.getValue()[0] / e.getValue()[1])
                         .build())
-                .sorted(Comparator.comparing(LineChartData::getDate))
                 .collect(Collectors.toList());
     }
 
@@ -588,13 +490,15 @@ public class ExamAttemptServiceImpl implements ExamAttemptService {
     @Override
     public BandScoreData getBandScore(HttpServletRequest request, String token) {
         String userId = helper.getUserIdFromToken(token);
-        List<ExamAttempt> examAttempts = examAttemptRepository.findAllByUserId(userId);
-        int totalScore = 0;
+        List<UserProgressDaily> days = userProgressDailyRepository.findAllByUserId(userId);
+        long totalScore = 0;
+        int numberOfExams = 0;
 
-        for (ExamAttempt exam : examAttempts) {
-            totalScore += exam.getTotalPoint() != null ? exam.getTotalPoint() : 0;
+        for (UserProgressDaily day : days) {
+            totalScore += day.getExamPointSum();
+            numberOfExams += day.getExamCount();
         }
-        Double bandScore = IeltsBandConverter.convertScoreToBand(totalScore, examAttempts.size(), IeltsScale.READING_AC);
+        Double bandScore = IeltsBandConverter.convertScoreToBand((int) totalScore, numberOfExams, IeltsScale.READING_AC);
         return BandScoreData.builder()
                 .bandScore(bandScore)
                 .build();
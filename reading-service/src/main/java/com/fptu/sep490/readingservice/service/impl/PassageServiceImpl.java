@@ -6,7 +6,6 @@ import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.exceptions.InternalServerErrorException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
-import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
 import com.fptu.sep490.event.TopicMasterRequest;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.helper.Helper;
@@ -18,7 +17,6 @@ import com.fptu.sep490.readingservice.model.enumeration.Status;
 import com.fptu.sep490.readingservice.model.json.ExamAttemptHistory;
 import com.fptu.sep490.readingservice.model.json.QuestionVersion;
 import com.fptu.sep490.readingservice.repository.*;
-import com.fptu.sep490.readingservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.readingservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.readingservice.repository.client.MarkupClient;
 import com.fptu.sep490.readingservice.repository.specification.PassageSpecifications;
@@ -39,8 +37,6 @@ import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -49,6 +45,7 @@ import java.util.*;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -60,7 +57,6 @@ public class PassageServiceImpl implements PassageService {
     ReadingPassageRepository readingPassageRepository;
     QuestionRepository questionRepository;
     ChoiceRepository choiceRepository;
-    KeyCloakTokenClient keyCloakTokenClient;
     KeyCloakUserClient keyCloakUserClient;
     DragItemRepository dragItemRepository;
     RedisService redisService;
@@ -73,14 +69,6 @@ public class PassageServiceImpl implements PassageService {
     @NonFinal
     String realm;
 
-    @Value("${keycloak.client-id}")
-    @NonFinal
-    String clientId;
-
-    @Value("${keycloak.client-secret}")
-    @NonFinal
-    String clientSecret;
-
     @Value("${kafka.topic.topic-master}")
     @NonFinal
     String topicMaster;
@@ -194,8 +182,11 @@ public class PassageServiceImpl implements PassageService {
             }
         }
 
+        Map<String, UserInformationResponse> users = helper.getUserInformationResponses(passages.stream()
+                .flatMap(passage -> Stream.of(passage.getCreatedBy(), passage.getUpdatedBy()))
+                .toList());
         List<PassageGetResponse> responseList = passages.stream()
-                .map(this::toPassageGetResponse)
+                .map(passage -> toPassageGetResponse(passage, users))
                 .toList();
 
         return new PageImpl<>(responseList, pageable, pageResult.getTotalElements());
@@ -614,8 +605,11 @@ public class PassageServiceImpl implements PassageService {
                 passage.setPassageStatus(lastVersion.getPassageStatus());
             }
         }
+        Map<String, UserInformationResponse> users = helper.getUserInformationResponses(passages.stream()
+                .flatMap(passage -> Stream.of(passage.getCreatedBy(), passage.getUpdatedBy()))
+                .toList());
         List<PassageGetResponse> responseList = passages.stream()
-                .map(this::toPassageGetResponse)
+                .map(passage -> toPassageGetResponse(passage, users))
                 .toList();
         Map<UUID, Integer> passageIdsMarkedUp;
         String accessToken = CookieUtils.getCookieValue(request, CookieConstants.ACCESS_TOKEN);
@@ -815,90 +809,115 @@ public class PassageServiceImpl implements PassageService {
 
     @Override
     public List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse> fromExamAttemptHistory(ExamAttemptHistory history) {
+        // Pha 1: gom mọi id mà history tham chiếu, mỗi loại entity tải bằng một truy vấn
         List<ReadingPassage> passages = readingPassageRepository.findAllByIdSortedByPartNumber(history.getPassageId());
         List<QuestionGroup> questionGroups = questionGroupRepository.findAllByIdOrderBySectionOrder(history.getQuestionGroupIds());
         List<Question> questions = questionRepository.findAllByIdOrderByQuestionOrder(history.getQuestionIds());
 
+        Map<UUID, List<UUID>> groupMapItems = history.getGroupMapItems() != null ? history.getGroupMapItems() : Collections.emptyMap();
+        Map<UUID, List<UUID>> questionMapChoices = history.getQuestionMapChoices() != null ? history.getQuestionMapChoices() : Collections.emptyMap();
+        Set<UUID> dragItemIds = new LinkedHashSet<>();
+        for (QuestionGroup group : questionGroups) {
+            if (group.getQuestionType() == QuestionType.DRAG_AND_DROP) {
+                dragItemIds.addAll(groupMapItems.getOrDefault(group.getGroupId(), Collections.emptyList()));
+            }
+        }
+        Set<UUID> choiceIds = new LinkedHashSet<>();
+        for (Question question : questions) {
+            if (question.getQuestionType() == QuestionType.MULTIPLE_CHOICE) {
+                choiceIds.addAll(questionMapChoices.getOrDefault(question.getQuestionId(), Collections.emptyList()));
+            }
+        }
+        Map<UUID, DragItem> dragItemsById = dragItemIds.isEmpty() ? Collections.emptyMap()
+                : dragItemRepository.findAllById(dragItemIds).stream()
+                        .collect(Collectors.toMap(DragItem::getDragItemId, Function.identity(), (a, b) -> a));
+        Map<UUID, Choice> choicesById = choiceIds.isEmpty() ? Collections.emptyMap()
+                : choiceRepository.findAllById(choiceIds).stream()
+                        .collect(Collectors.toMap(Choice::getChoiceId, Function.identity(), (a, b) -> a));
+
+        // Pha 2: dựng response từ các map, không truy vấn thêm
+        Map<UUID, List<Question>> questionsByGroup = new HashMap<>();
+        for (Question question : questions) {
+            if (question.getQuestionGroup() != null) {
+                questionsByGroup.computeIfAbsent(question.getQuestionGroup().getGroupId(), k -> new ArrayList<>()).add(question);
+            }
+        }
+        Map<Integer, List<QuestionGroup>> groupsByPart = new HashMap<>();
+        for (QuestionGroup group : questionGroups) {
+            groupsByPart.computeIfAbsent(group.getReadingPassage().getPartNumber().ordinal(), k -> new ArrayList<>()).add(group);
+        }
+
         List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse> passageResponses = new ArrayList<>();
         for (ReadingPassage passage: passages) {
             int partNumber = passage.getPartNumber().ordinal();
 
             List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse> questionGroupsList = new ArrayList<>();
-            for (QuestionGroup group : questionGroups) {
-
-                if (group.getReadingPassage().getPartNumber().ordinal()==partNumber) {
-                    List<UpdatedQuestionResponse.DragItemResponse> dragItemResponses = new ArrayList<>();
-                    if (group.getQuestionType()==QuestionType.DRAG_AND_DROP) {
-                        List<UUID> dragItemIds = history.getGroupMapItems().getOrDefault(group.getGroupId(), Collections.emptyList());
-                        List<DragItem> dragItems = dragItemRepository.findAllById(dragItemIds);
-                        for (DragItem dragItem : dragItems) {
-                            UpdatedQuestionResponse.DragItemResponse dragItemResponse =
-                                    UpdatedQuestionResponse.DragItemResponse.builder()
-                                            .dragItemId(dragItem.getDragItemId().toString())
-                                            .content(dragItem.getContent())
-                                            .build();
-                            dragItemResponses.add(dragItemResponse);
+            for (QuestionGroup group : groupsByPart.getOrDefault(partNumber, Collections.emptyList())) {
+                List<UpdatedQuestionResponse.DragItemResponse> dragItemResponses = new ArrayList<>();
+                if (group.getQuestionType()==QuestionType.DRAG_AND_DROP) {
+                    for (UUID dragItemId : groupMapItems.getOrDefault(group.getGroupId(), Collections.emptyList())) {
+                        DragItem dragItem = dragItemsById.get(dragItemId);
+                        if (dragItem == null) {
+                            continue;
                         }
+                        dragItemResponses.add(UpdatedQuestionResponse.DragItemResponse.builder()
+                                .dragItemId(dragItem.getDragItemId().toString())
+                                .content(dragItem.getContent())
+                                .build());
                     }
+                }
 
-                    List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse> questionAttemptResponses = new ArrayList<>();
-                    for (Question question : questions) {
-                        if (question.getQuestionGroup() != null && question.getQuestionGroup().getGroupId().equals(group.getGroupId())) {
-
-                            List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse> choiceAttemptResponses = new ArrayList<>();
-
-                            if (question.getQuestionType()== QuestionType.MULTIPLE_CHOICE) {
-                                for (UUID choiceId : history.getQuestionMapChoices().getOrDefault(question.getQuestionId(), Collections.emptyList())) {
-                                    Choice choice = choiceRepository.findById(choiceId)
-                                            .orElseThrow(() -> new AppException(
-                                                    Constants.ErrorCodeMessage.CHOICE_NOT_FOUND,
-                                                    Constants.ErrorCode.CHOICE_NOT_FOUND,
-                                                    HttpStatus.NOT_FOUND.value()
-                                            ));
-                                    ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse choiceAttemptResponse =
-                                            ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
-                                                    .choiceId(choice.getChoiceId())
-                                                    .label(choice.getLabel())
-                                                    .content(choice.getContent())
-                                                    .choiceOrder(choice.getChoiceOrder())
-                                                    .isCorrect(choice.isCorrect())
-                                                    .build();
-                                    choiceAttemptResponses.add(choiceAttemptResponse);
-                                }
+                List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse> questionAttemptResponses = new ArrayList<>();
+                for (Question question : questionsByGroup.getOrDefault(group.getGroupId(), Collections.emptyList())) {
+                    List<ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse> choiceAttemptResponses = new ArrayList<>();
+
+                    if (question.getQuestionType()== QuestionType.MULTIPLE_CHOICE) {
+                        for (UUID choiceId : questionMapChoices.getOrDefault(question.getQuestionId(), Collections.emptyList())) {
+                            Choice choice = choicesById.get(choiceId);
+                            if (choice == null) {
+                                throw new AppException(
+                                        Constants.ErrorCodeMessage.CHOICE_NOT_FOUND,
+                                        Constants.ErrorCode.CHOICE_NOT_FOUND,
+                                        HttpStatus.NOT_FOUND.value()
+                                );
                             }
-                            ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse questionAttemptResponse =
-                                    ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
-                                            .questionId(question.getQuestionId())
-                                            .questionOrder(question.getQuestionOrder())
-                                            .questionType(question.getQuestionType().ordinal())
-                                            .blankIndex(question.getBlankIndex())
-                                            .instructionForChoice(question.getInstructionForChoice())
-                                            .numberOfCorrectAnswers(question.getNumberOfCorrectAnswers())
-                                            .instructionForMatching(question.getInstructionForMatching())
-                                            .zoneIndex( question.getZoneIndex())
-                                            .choices(choiceAttemptResponses)
-                                            .correctAnswer(question.getQuestionType() != QuestionType.DRAG_AND_DROP ? question.getCorrectAnswer(): question.getDragItem().getDragItemId().toString())
-                                            .correctAnswerForMatching(question.getCorrectAnswerForMatching())
-                                            .explanation( question.getExplanation())
-                                            .point( question.getPoint())
-                                            .build();
-
-                            questionAttemptResponses.add(questionAttemptResponse);
+                            choiceAttemptResponses.add(
+                                    ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.ChoiceAttemptResponse.builder()
+                                            .choiceId(choice.getChoiceId())
+                                            .label(choice.getLabel())
+                                            .content(choice.getContent())
+                                            .choiceOrder(choice.getChoiceOrder())
+                                            .isCorrect(choice.isCorrect())
+                                            .build());
                         }
                     }
-
-                    ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse currentGroup = ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.builder()
-                            .questionGroupId(group.getGroupId())
-                            .sectionOrder(group.getSectionOrder())
-                            .sectionLabel(group.getSectionLabel())
-                            .instruction(group.getInstruction())
-                            .sentenceWithBlanks(group.getSentenceWithBlanks())
-                            .questions(questionAttemptResponses)
-                            .dragItems(dragItemResponses)
-                            .build();
-
-                    questionGroupsList.add(currentGroup);
+                    questionAttemptResponses.add(
+                            ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.QuestionAttemptResponse.builder()
+                                    .questionId(question.getQuestionId())
+                                    .questionOrder(question.getQuestionOrder())
+                                    .questionType(question.getQuestionType().ordinal())
+                                    .blankIndex(question.getBlankIndex())
+                                    .instructionForChoice(question.getInstructionForChoice())
+                                    .numberOfCorrectAnswers(question.getNumberOfCorrectAnswers())
+                                    .instructionForMatching(question.getInstructionForMatching())
+                                    .zoneIndex( question.getZoneIndex())
+                                    .choices(choiceAttemptResponses)
+                                    .correctAnswer(question.getQuestionType() != QuestionType.DRAG_AND_DROP ? question.getCorrectAnswer(): question.getDragItem().getDragItemId().toString())
+                                    .correctAnswerForMatching(question.getCorrectAnswerForMatching())
+                                    .explanation( question.getExplanation())
+                                    .point( question.getPoint())
+                                    .build());
                 }
+
+                questionGroupsList.add(ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.QuestionGroupAttemptResponse.builder()
+                        .questionGroupId(group.getGroupId())
+                        .sectionOrder(group.getSectionOrder())
+                        .sectionLabel(group.getSectionLabel())
+                        .instruction(group.getInstruction())
+                        .sentenceWithBlanks(group.getSentenceWithBlanks())
+                        .questions(questionAttemptResponses)
+                        .dragItems(dragItemResponses)
+                        .build());
             }
             ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse readingPassageResponse = ExamAttemptGetDetail.ReadingExamResponse.ReadingPassageResponse.builder()
                     .passageId(passage.getPassageId())
@@ -928,30 +947,10 @@ public class PassageServiceImpl implements PassageService {
     }
 
 
-    private PassageGetResponse toPassageGetResponse(ReadingPassage readingPassage) {
-
-        UserProfileResponse createdByProfile;
-        UserProfileResponse updatedByProfile;
-        try {
-            createdByProfile = getUserProfileById(readingPassage.getCreatedBy());
-            updatedByProfile = getUserProfileById(readingPassage.getUpdatedBy());
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException("Failed to fetch user profile", e);
-        }
-
-        var createdBy = UserInformationResponse.builder()
-                .userId(createdByProfile.id())
-                .lastName(createdByProfile.lastName())
-                .firstName(createdByProfile.firstName())
-                .email(createdByProfile.email())
-                .build();
-
-        var updatedBy = UserInformationResponse.builder()
-                .userId(updatedByProfile.id())
-                .lastName(updatedByProfile.lastName())
-                .firstName(updatedByProfile.firstName())
-                .email(updatedByProfile.email())
-                .build();
+    private PassageGetResponse toPassageGetResponse(ReadingPassage readingPassage,
+                                                    Map<String, UserInformationResponse> users) {
+        var createdBy = users.get(readingPassage.getCreatedBy());
+        var updatedBy = users.get(readingPassage.getUpdatedBy());
 
         return PassageGetResponse.builder()
                 .passageId(readingPassage.getPassageId().toString())
@@ -993,11 +992,11 @@ public class PassageServiceImpl implements PassageService {
     }
 
     private UserProfileResponse getUserProfileById(String userId) throws JsonProcessingException {
-        String clientToken = getCachedClientToken();
         UserProfileResponse cachedProfile = getFromCache(userId);
         if (cachedProfile != null) {
             return cachedProfile;
         }
+        String clientToken = getCachedClientToken();
         UserProfileResponse profileResponse = keyCloakUserClient.getUserById(realm, "Bearer " + clientToken, userId);
 
         if (profileResponse == null) {
@@ -1014,22 +1013,6 @@ public class PassageServiceImpl implements PassageService {
     }
 
     private String getCachedClientToken() throws JsonProcessingException {
-        final String cacheKey = Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN;
-
-        String cachedToken = redisService.getValue(cacheKey, String.class);
-        if (cachedToken != null) {
-            return cachedToken;
-        }
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "client_credentials");
-        form.add("client_id", clientId);
-        form.add("client_secret", clientSecret);
-        form.add("scope", "openid");
-
-        KeyCloakTokenResponse tokenResponse = keyCloakTokenClient.requestToken(form, realm);
-        String newToken = tokenResponse.accessToken();
-        var expiresIn = tokenResponse.expiresIn();
-        redisService.saveValue(cacheKey, newToken, Duration.ofSeconds(expiresIn));
-        return newToken;
+        return helper.getCachedClientToken();
     }
 }
@@ -4,7 +4,7 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
-import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
+import com.fptu.sep490.readingservice.component.PassageContentChangeListener;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.model.Choice;
@@ -16,7 +16,6 @@ import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
 import com.fptu.sep490.readingservice.repository.DragItemRepository;
 import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
 import com.fptu.sep490.readingservice.repository.QuestionRepository;
-import com.fptu.sep490.readingservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.readingservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.readingservice.service.QuestionService;
 import com.fptu.sep490.readingservice.viewmodel.request.InformationUpdatedQuestionRequest;
@@ -35,8 +34,6 @@ import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.util.LinkedMultiValueMap;
-import org.springframework.util.MultiValueMap;
 
 import java.time.Duration;
 import java.time.LocalDateTime;
@@ -50,24 +47,16 @@ import java.util.stream.Collectors;
 public class QuestionServiceImpl implements QuestionService {
 
     QuestionRepository questionRepository;
-    KeyCloakTokenClient keyCloakTokenClient;
     KeyCloakUserClient keyCloakUserClient;
     RedisService redisService;
     QuestionGroupRepository questionGroupRepository;
     DragItemRepository dragItemRepository;
     Helper helper;
+    PassageContentChangeListener passageContentChangeListener;
     @Value("${keycloak.realm}")
     @NonFinal
     String realm;
 
-    @Value("${keycloak.client-id}")
-    @NonFinal
-    String clientId;
-
-    @Value("${keycloak.client-secret}")
-    @NonFinal
-    String clientSecret;
-
 
     @Override
     public List<QuestionCreationResponse> createQuestions(
@@ -739,6 +728,10 @@ public class QuestionServiceImpl implements QuestionService {
         for (Map.Entry<UUID, Integer> entry : orderUpdateMap.entrySet()) {
             questionRepository.updateOrderForAllVersions(entry.getKey(), entry.getValue(), userInformation.id());
         }
+        if (!orderUpdateMap.isEmpty()) {
+            // Update hàng loạt không gọi JPA listener: thứ tự câu hỏi bị sửa tại chỗ trên mọi phiên bản
+            passageContentChangeListener.contentChanged(targetQuestion);
+        }
 
         // Reload the target question with categories eagerly fetched to avoid lazy loading exception
         Question refreshedTarget = questionRepository.findByIdWithCategories(targetQuestion.getQuestionId())
@@ -1013,11 +1006,11 @@ public class QuestionServiceImpl implements QuestionService {
     }
 
     private UserProfileResponse getUserProfileById(String userId) throws JsonProcessingException {
-        String clientToken = getCachedClientToken();
         UserProfileResponse cachedProfile = getFromCache(userId);
         if (cachedProfile != null) {
             return cachedProfile;
         }
+        String clientToken = getCachedClientToken();
         UserProfileResponse profileResponse = keyCloakUserClient.getUserById(realm, "Bearer " + clientToken, userId);
 
         if (profileResponse == null) {
@@ -1033,22 +1026,6 @@ public class QuestionServiceImpl implements QuestionService {
         return cachedProfile;
     }
     private String getCachedClientToken() throws JsonProcessingException {
-        final String cacheKey = Constants.RedisKey.KEY_CLOAK_CLIENT_TOKEN;
-
-        String cachedToken = redisService.getValue(cacheKey, String.class);
-        if (cachedToken != null) {
-            return cachedToken;
-        }
-        MultiValueMap<String, String> form = new LinkedMultiValueMap<>();
-        form.add("grant_type", "client_credentials");
-        form.add("client_id", clientId);
-        form.add("client_secret", clientSecret);
-        form.add("scope", "openid");
-
-        KeyCloakTokenResponse tokenResponse = keyCloakTokenClient.requestToken(form, realm);
-        String newToken = tokenResponse.accessToken();
-        var expiresIn = tokenResponse.expiresIn();
-        redisService.saveValue(cacheKey, newToken, Duration.ofSeconds(expiresIn));
-        return newToken;
+        return helper.getCachedClientToken();
     }
 }
@@ -3,7 +3,10 @@ package com.fptu.sep490.readingservice.service.impl;
 import com.fptu.sep490.commonlibrary.constants.CookieConstants;
 import com.fptu.sep490.commonlibrary.constants.DataMarkup;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
 import com.fptu.sep490.commonlibrary.utils.CookieUtils;
+import com.fptu.sep490.readingservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.readingservice.component.ExamPaperSnapshotCache;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.model.*;
@@ -26,6 +29,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.experimental.FieldDefaults;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.*;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 
@@ -46,6 +50,8 @@ public class  ReadingExamServiceImpl implements ReadingExamService  {
     ReadingPassageRepository readingPassageRepository;
     ReadingExamRepository readingExamRepository;
     MarkupClient markupClient;
+    ExamAnswerKeyCache examAnswerKeyCache;
+    ExamPaperSnapshotCache examPaperSnapshotCache;
     @Override
     public ReadingExamResponse createReadingExam(ReadingExamCreationRequest readingExamCreationRequest, HttpServletRequest request) throws Exception {
         String userId = helper.getUserIdFromToken(request);
@@ -297,6 +303,10 @@ public class  ReadingExamServiceImpl implements ReadingExamService  {
         }
         readingExamRepository.save(readingExam);
         readingExamRepository.save(newReadingExam);
+        examAnswerKeyCache.evict(readingExam.getReadingExamId());
+        examAnswerKeyCache.evict(currentReadingExam.getReadingExamId());
+        examPaperSnapshotCache.evict(readingExam.getReadingExamId());
+        examPaperSnapshotCache.evict(currentReadingExam.getReadingExamId());
         ReadingExamResponse response = new ReadingExamResponse(
                 readingExamId,
                 newReadingExam.getExamName(),
@@ -422,6 +432,10 @@ public class  ReadingExamServiceImpl implements ReadingExamService  {
         readingExam.setUpdatedBy(userId);
         readingExamRepository.save(readingExam);
         readingExamRepository.save(finalReadingExam);
+        examAnswerKeyCache.evict(readingExam.getReadingExamId());
+        examAnswerKeyCache.evict(finalReadingExam.getReadingExamId());
+        examPaperSnapshotCache.evict(readingExam.getReadingExamId());
+        examPaperSnapshotCache.evict(finalReadingExam.getReadingExamId());
         ReadingExamResponse response = new ReadingExamResponse(
                 readingExamId,
                 finalReadingExam.getExamName(),
@@ -528,23 +542,20 @@ public class  ReadingExamServiceImpl implements ReadingExamService  {
             );
         }
 
-        if (sortBy == null || sortBy.isBlank()) {
-            sortBy = "createdAt";
-        }
-        if (sortDirection == null || sortDirection.isBlank()) {
-            sortDirection = "asc";
-        }
-
-        Sort sort = sortDirection.equalsIgnoreCase("desc")
-                ? Sort.by(sortBy).descending()
-                : Sort.by(sortBy).ascending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = TextSearchQuery.pageable(page, size, sortBy, sortDirection, keyword);
 
         Page<ReadingExam> readingExamPage;
         try {
 
                 readingExamPage = readingExamRepository.searchCurrentExams(keyword, pageable);
 
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            // sortBy ngoài danh sách sort của repository (proxy dịch IllegalArgumentException thành InvalidDataAccessApiUsageException)
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_INPUT,
+                    Constants.ErrorCode.INVALID_INPUT,
+                    HttpStatus.BAD_REQUEST.value()
+            );
         } catch (Exception e) {
             log.error("Database error when fetching exams for user: {}", userId, e);
              throw new AppException(
@@ -625,21 +636,19 @@ public class  ReadingExamServiceImpl implements ReadingExamService  {
                     HttpStatus.UNAUTHORIZED.value()
             );
         }
-        if (sortBy == null || sortBy.isBlank()) {
-            sortBy = "createdAt";
-        }
-        if (sortDirection == null || sortDirection.isBlank()) {
-            sortDirection = "asc";
-        }
-        Sort sort = sortDirection.equalsIgnoreCase("desc")
-                ? Sort.by(sortBy).descending()
-                : Sort.by(sortBy).ascending();
-        Pageable pageable = PageRequest.of(page, size, sort);
+        Pageable pageable = TextSearchQuery.pageable(page, size, sortBy, sortDirection, keyword);
 
 
         Page<ReadingExam> readingExamPage;
         try {
             readingExamPage = readingExamRepository.findByIsDeletedFalseAndIsCurrentTrueAndStatusTrue(keyword, pageable);
+        } catch (IllegalArgumentException | InvalidDataAccessApiUsageException e) {
+            // sortBy ngoài danh sách sort của repository (proxy dịch IllegalArgumentException thành InvalidDataAccessApiUsageException)
+            throw new AppException(
+                    Constants.ErrorCodeMessage.INVALID_INPUT,
+                    Constants.ErrorCode.INVALID_INPUT,
+                    HttpStatus.BAD_REQUEST.value()
+            );
         } catch (Exception e) {
             log.error("Database error when fetching active exams for user: {}", userId, e);
             throw new AppException(
@@ -0,0 +1,162 @@
+package com.fptu.sep490.readingservice.benchmark;
+
+import com.fptu.sep490.commonlibrary.constants.CookieConstants;
+import com.fptu.sep490.commonlibrary.security.AccessTokenValidator;
+import com.fptu.sep490.commonlibrary.security.RefreshTokenCoordinator;
+import com.fptu.sep490.commonlibrary.viewmodel.response.IntrospectResponse;
+import com.fptu.sep490.readingservice.component.AuthTokenInterceptor;
+import com.fptu.sep490.readingservice.repository.client.KeyCloakTokenClient;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Load test chi phí {@link AuthTokenInterceptor} trên mỗi request, Keycloak là stub trả lời sau {@link #KEYCLOAK_LATENCY}:
+ * <ul>
+ *     <li>{@code introspectEveryRequest}: không có JwtDecoder, không cache introspect (cách cũ)</li>
+ *     <li>{@code localVerification}: route thường, kiểm tra chữ ký local và cache theo token</li>
+ *     <li>{@code revocationSensitiveRoute}: route nhạy cảm, introspect rồi cache {@code introspection-ttl}</li>
+ * </ul>
+ * {@link #USERS} token dùng luân phiên trên 8 thread.
+ * Chạy (trong reading-service): {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-cp %classpath com.fptu.sep490.readingservice.benchmark.AuthTokenInterceptorBenchmark"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(8)
+@Fork(1)
+public class AuthTokenInterceptorBenchmark {
+    static final Duration KEYCLOAK_LATENCY = Duration.ofMillis(2);
+    static final int USERS = 1000;
+    static final String SENSITIVE_PATH = "/api/v1/sensitive";
+
+    AuthTokenInterceptor remoteOnly;
+    AuthTokenInterceptor withValidator;
+    List<String> tokens;
+    AtomicInteger next;
+
+    @Setup
+    public void setUp() throws Exception {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .keyID("bench")
+                .build();
+        NimbusJwtEncoder encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(rsaKey)));
+        JwtDecoder decoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+
+        Instant now = Instant.now();
+        tokens = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            JwtClaimsSet claims = JwtClaimsSet.builder()
+                    .subject(UUID.randomUUID().toString())
+                    .issuedAt(now)
+                    .expiresAt(now.plus(Duration.ofHours(1)))
+                    .build();
+            tokens.add(encoder.encode(JwtEncoderParameters.from(claims)).getTokenValue());
+        }
+        next = new AtomicInteger();
+
+        KeyCloakTokenClient keycloak = mock(KeyCloakTokenClient.class);
+        when(keycloak.introspect(anyString(), any())).thenAnswer(invocation -> {
+            LockSupport.parkNanos(KEYCLOAK_LATENCY.toNanos());
+            return IntrospectResponse.builder().active(true).build();
+        });
+
+        remoteOnly = interceptor(keycloak, new AccessTokenValidator(new StaticListableBeanFactory()
+                .getBeanProvider(JwtDecoder.class), new SimpleMeterRegistry(), List.of(), Duration.ZERO, USERS * 2L));
+        withValidator = interceptor(keycloak, new AccessTokenValidator(new StaticListableBeanFactory(Map.of("jwtDecoder", decoder))
+                .getBeanProvider(JwtDecoder.class), new SimpleMeterRegistry(), List.of(SENSITIVE_PATH),
+                Duration.ofSeconds(30), USERS * 2L));
+    }
+
+    @Benchmark
+    public boolean introspectEveryRequest() throws Exception {
+        return remoteOnly.preHandle(request("/api/v1/passages"), new MockHttpServletResponse(), null);
+    }
+
+    @Benchmark
+    public boolean localVerification() throws Exception {
+        return withValidator.preHandle(request("/api/v1/passages"), new MockHttpServletResponse(), null);
+    }
+
+    @Benchmark
+    public boolean revocationSensitiveRoute() throws Exception {
+        return withValidator.preHandle(request(SENSITIVE_PATH), new MockHttpServletResponse(), null);
+    }
+
+    private MockHttpServletRequest request(String path) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        String token = tokens.get(Math.floorMod(next.getAndIncrement(), USERS));
+        request.setCookies(new Cookie(CookieConstants.ACCESS_TOKEN, token),
+                new Cookie(CookieConstants.REFRESH_TOKEN, "refresh"));
+        return request;
+    }
+
+    private static AuthTokenInterceptor interceptor(KeyCloakTokenClient keycloak, AccessTokenValidator validator) {
+        @SuppressWarnings("unchecked")
+        ObjectProvider<KeyCloakTokenClient> provider = mock(ObjectProvider.class);
+        when(provider.getObject()).thenReturn(keycloak);
+        AuthTokenInterceptor interceptor = new AuthTokenInterceptor(provider, validator, mock(RefreshTokenCoordinator.class));
+        ReflectionTestUtils.setField(interceptor, "realm", "bench");
+        ReflectionTestUtils.setField(interceptor, "clientId", "bench");
+        ReflectionTestUtils.setField(interceptor, "clientSecret", "bench");
+        return interceptor;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(AuthTokenInterceptorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
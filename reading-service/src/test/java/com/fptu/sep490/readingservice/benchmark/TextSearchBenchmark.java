@@ -0,0 +1,155 @@
+package com.fptu.sep490.readingservice.benchmark;
+
+import com.fptu.sep490.commonlibrary.search.TextSearchFields;
+import com.fptu.sep490.commonlibrary.search.TextSearchQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * So sánh tìm kiếm {@code lower(col) LIKE '%kw%'} (cách cũ) với {@link TextSearchQuery} trên dữ liệu sinh sẵn:
+ * {@link #VOCABULARY_ROWS} từ vựng (cùng dạng truy vấn với searchVocabulary) và {@link #PASSAGE_ROWS} passage
+ * (lọc title như PassageSpecifications). Mỗi truy vấn = trang đầu {@link #PAGE_SIZE} dòng + count.
+ * <ul>
+ *     <li>{@code like/no-index}: cách cũ, trước khi có index (seq scan)</li>
+ *     <li>{@code like/trgm}: cách cũ sau khi tạo GIN trigram</li>
+ *     <li>{@code ranked}: tiền tố + trigram + xếp hạng</li>
+ * </ul>
+ * Cần PostgreSQL có quyền tạo extension pg_trgm; bảng bench_* bị tạo lại mỗi lần chạy.
+ * Chạy (trong reading-service): {@code mvn test-compile exec:exec -Dexec.executable=java -Dexec.classpathScope=test
+ * -Dexec.args="-Dsearch.bench.url=jdbc:postgresql://localhost:5432/bench -cp %classpath
+ * com.fptu.sep490.readingservice.benchmark.TextSearchBenchmark"}
+ */
+@Slf4j
+public class TextSearchBenchmark {
+    static final int VOCABULARY_ROWS = 1_000_000;
+    static final int PASSAGE_ROWS = 100_000;
+    static final int USERS = 10;
+    static final int PAGE_SIZE = 20;
+    static final int ITERATIONS = 20;
+
+    static final TextSearchFields VOCABULARY = TextSearchFields.of("bench_vocabularies", "word", "context", "meaning");
+    static final TextSearchFields PASSAGES = TextSearchFields.of("bench_passages", "title", "created_by");
+    static final Map<String, String> SORT_COLUMNS = Map.of("createdAt", "t.created_at");
+
+    // Từ có thật, số hiếm, tiền tố, và gõ sai
+    static final List<String> KEYWORDS = List.of("environment", "word424242", "sustain", "enviroment");
+
+    final NamedParameterJdbcTemplate jdbcTemplate;
+
+    TextSearchBenchmark(NamedParameterJdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public static void main(String[] args) {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                System.getProperty("search.bench.url", "jdbc:postgresql://localhost:5432/postgres"),
+                System.getProperty("search.bench.user", "postgres"),
+                System.getProperty("search.bench.password", "postgres"));
+        TextSearchBenchmark benchmark = new TextSearchBenchmark(new NamedParameterJdbcTemplate(dataSource));
+        benchmark.generate();
+
+        benchmark.run("like/no-index");
+        for (TextSearchFields fields : List.of(VOCABULARY, PASSAGES)) {
+            fields.indexStatements().forEach(benchmark::execute);
+        }
+        benchmark.execute("ANALYZE bench_vocabularies");
+        benchmark.execute("ANALYZE bench_passages");
+        benchmark.run("like/trgm");
+        benchmark.run("ranked");
+    }
+
+    void generate() {
+        execute("CREATE EXTENSION IF NOT EXISTS pg_trgm");
+        execute("DROP TABLE IF EXISTS bench_vocabularies, bench_passages");
+        execute("""
+                CREATE TABLE bench_vocabularies AS
+                SELECT gen_random_uuid() AS word_id,
+                       CASE WHEN i %% 50 = 0 THEN (ARRAY['environment', 'sustainable', 'sustainability', 'ecosystem'])[i %% 4 + 1]
+                            ELSE 'word' || i END AS word,
+                       'The ' || md5(i::text) || ' example about topic ' || (i %% 997) || ' in context' AS context,
+                       'nghia ' || substr(md5((i * 7)::text), 1, 12) AS meaning,
+                       'user' || (i %% %d) AS created_by,
+                       false AS is_deleted,
+                       now() - (i || ' seconds')::interval AS created_at
+                FROM generate_series(1, %d) AS i
+                """.formatted(USERS, VOCABULARY_ROWS));
+        execute("""
+                CREATE TABLE bench_passages AS
+                SELECT gen_random_uuid() AS passage_id,
+                       CASE WHEN i %% 100 = 0 THEN 'Protecting the environment ' || i
+                            ELSE 'Passage ' || md5(i::text) END AS title,
+                       'creator' || (i %% 200) AS created_by,
+                       false AS is_deleted,
+                       now() - (i || ' seconds')::interval AS created_at
+                FROM generate_series(1, %d) AS i
+                """.formatted(PASSAGE_ROWS));
+        execute("ANALYZE bench_vocabularies");
+        execute("ANALYZE bench_passages");
+    }
+
+    void run(String mode) {
+        for (String keyword : KEYWORDS) {
+            report(mode, "vocabulary", keyword, measure(() -> searchVocabulary(mode, keyword)));
+            report(mode, "passage", keyword, measure(() -> searchPassages(mode, keyword)));
+        }
+    }
+
+    long searchVocabulary(String mode, String keyword) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource("userId", "user1");
+        String fromWhere = "FROM bench_vocabularies t WHERE t.is_deleted = false AND t.created_by = :userId AND ";
+        if (mode.startsWith("like")) {
+            parameters.addValue("keyword", keyword);
+            fromWhere += "(lower(t.word) LIKE lower('%' || :keyword || '%')"
+                    + " OR lower(t.context) LIKE lower('%' || :keyword || '%')"
+                    + " OR lower(t.meaning) LIKE lower('%' || :keyword || '%'))";
+            return page("SELECT t.word_id " + fromWhere + " ORDER BY t.created_at LIMIT " + PAGE_SIZE, fromWhere, parameters);
+        }
+        TextSearchQuery search = TextSearchQuery.of(VOCABULARY, "t", keyword);
+        fromWhere += search.predicate();
+        parameters.addValues(search.parameters());
+        return page(search.selectIds("t.word_id", fromWhere, PageRequest.of(0, PAGE_SIZE), SORT_COLUMNS), fromWhere, parameters);
+    }
+
+    long searchPassages(String mode, String keyword) {
+        MapSqlParameterSource parameters = new MapSqlParameterSource();
+        String fromWhere = "FROM bench_passages t WHERE t.is_deleted = false AND ";
+        if (mode.startsWith("like")) {
+            parameters.addValue("keyword", "%" + keyword + "%");
+            fromWhere += "lower(t.title) LIKE :keyword";
+            return page("SELECT t.passage_id " + fromWhere + " ORDER BY t.created_at LIMIT " + PAGE_SIZE, fromWhere, parameters);
+        }
+        TextSearchQuery search = TextSearchQuery.of(PASSAGES, "t", keyword);
+        fromWhere += search.predicate();
+        parameters.addValues(search.parameters());
+        return page(search.selectIds("t.passage_id", fromWhere, PageRequest.of(0, PAGE_SIZE), SORT_COLUMNS), fromWhere, parameters);
+    }
+
+    private long page(String selectIds, String fromWhere, MapSqlParameterSource parameters) {
+        jdbcTemplate.queryForList(selectIds, parameters);
+        return jdbcTemplate.queryForObject("SELECT count(*) " + fromWhere, parameters, Long.class);
+    }
+
+    private static long[] measure(LongSupplier query) {
+        long matches = query.getAsLong();
+        long started = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) {
+            query.getAsLong();
+        }
+        return new long[]{matches, (System.nanoTime() - started) / ITERATIONS / 1_000};
+    }
+
+    private static void report(String mode, String table, String keyword, long[] result) {
+        log.info("{} {} '{}': {} matches, {} ms", mode, table, keyword, result[0], "%.2f".formatted(result[1] / 1000.0));
+    }
+
+    private void execute(String sql) {
+        jdbcTemplate.getJdbcTemplate().execute(sql);
+    }
+}
@@ -0,0 +1,237 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fptu.sep490.commonlibrary.constants.CookieConstants;
+import com.fptu.sep490.commonlibrary.security.AccessTokenValidator;
+import com.fptu.sep490.commonlibrary.security.RefreshTokenCoordinator;
+import com.fptu.sep490.commonlibrary.viewmodel.response.IntrospectResponse;
+import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
+import com.fptu.sep490.readingservice.repository.client.KeyCloakTokenClient;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.http.Cookie;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.interfaces.RSAPrivateKey;
+import java.security.interfaces.RSAPublicKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class AuthTokenInterceptorTest {
+    static final String SENSITIVE_PATH = "/api/v1/sensitive";
+
+    @Mock
+    KeyCloakTokenClient keyCloakTokenClient;
+    @Mock
+    ObjectProvider<KeyCloakTokenClient> keyCloakTokenClientProvider;
+
+    NimbusJwtEncoder encoder;
+    AccessTokenValidator validator;
+    Map<String, String> redis;
+    AuthTokenInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        KeyPair keyPair = generator.generateKeyPair();
+        RSAKey rsaKey = new RSAKey.Builder((RSAPublicKey) keyPair.getPublic())
+                .privateKey((RSAPrivateKey) keyPair.getPrivate())
+                .build();
+        encoder = new NimbusJwtEncoder(new ImmutableJWKSet<>(new JWKSet(rsaKey)));
+        JwtDecoder decoder = NimbusJwtDecoder.withPublicKey((RSAPublicKey) keyPair.getPublic()).build();
+
+        validator = new AccessTokenValidator(
+                new StaticListableBeanFactory(Map.of("jwtDecoder", decoder)).getBeanProvider(JwtDecoder.class),
+                new SimpleMeterRegistry(), List.of(SENSITIVE_PATH), Duration.ofSeconds(30), 100);
+        when(keyCloakTokenClientProvider.getObject()).thenReturn(keyCloakTokenClient);
+        redis = new ConcurrentHashMap<>();
+        interceptor = newInterceptor();
+    }
+
+    @Test
+    void validToken_regularRoute_neverCallsKeycloak() throws Exception {
+        String token = token(Instant.now().plus(Duration.ofMinutes(5)));
+
+        for (int i = 0; i < 3; i++) {
+            assertTrue(interceptor.preHandle(request("/api/v1/passages", token), new MockHttpServletResponse(), null));
+        }
+
+        verifyNoInteractions(keyCloakTokenClient);
+    }
+
+    @Test
+    void sensitiveRoute_introspectsOnceThenUsesCache() throws Exception {
+        String token = token(Instant.now().plus(Duration.ofMinutes(5)));
+        when(keyCloakTokenClient.introspect(eq("realm"), any()))
+                .thenReturn(IntrospectResponse.builder().active(true).build());
+
+        interceptor.preHandle(request(SENSITIVE_PATH, token), new MockHttpServletResponse(), null);
+        interceptor.preHandle(request(SENSITIVE_PATH, token), new MockHttpServletResponse(), null);
+
+        verify(keyCloakTokenClient, times(1)).introspect(eq("realm"), any());
+        verify(keyCloakTokenClient, never()).requestToken(any(), anyString());
+    }
+
+    @Test
+    void revokedToken_sensitiveRoute_refreshesCookies() throws Exception {
+        String token = token(Instant.now().plus(Duration.ofMinutes(5)));
+        when(keyCloakTokenClient.introspect(eq("realm"), any()))
+                .thenReturn(IntrospectResponse.builder().active(false).build());
+        when(keyCloakTokenClient.requestToken(any(), eq("realm"))).thenReturn(refreshedToken());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        interceptor.preHandle(request(SENSITIVE_PATH, token), response, null);
+
+        verify(keyCloakTokenClient).requestToken(any(), eq("realm"));
+        assertTrue(response.getHeaders("Set-Cookie").stream().anyMatch(c -> c.startsWith("Authorization=new-access")));
+    }
+
+    @Test
+    void expiredToken_rejectedLocallyAndRefreshed() throws Exception {
+        String token = token(Instant.now().minus(Duration.ofMinutes(5)));
+        when(keyCloakTokenClient.requestToken(any(), eq("realm"))).thenReturn(refreshedToken());
+
+        interceptor.preHandle(request("/api/v1/passages", token), new MockHttpServletResponse(), null);
+
+        verify(keyCloakTokenClient, never()).introspect(anyString(), any());
+        verify(keyCloakTokenClient).requestToken(any(), eq("realm"));
+    }
+
+    @Test
+    void refreshBurstAcrossServices_callsKeycloakOnce() throws Exception {
+        // 3 service (mỗi service một coordinator, chung Redis) x 10 request song song với access token hết hạn
+        int services = 3;
+        int requestsPerService = 10;
+        String token = token(Instant.now().minus(Duration.ofMinutes(5)));
+        AtomicInteger tokenEndpointCalls = new AtomicInteger();
+        when(keyCloakTokenClient.requestToken(any(), eq("realm"))).thenAnswer(invocation -> {
+            int call = tokenEndpointCalls.incrementAndGet();
+            Thread.sleep(200);
+            return KeyCloakTokenResponse.builder().accessToken("access-" + call).refreshToken("refresh-" + call)
+                    .expiresIn(300).build();
+        });
+        List<AuthTokenInterceptor> interceptors = new ArrayList<>();
+        for (int i = 0; i < services; i++) {
+            interceptors.add(newInterceptor());
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(services * requestsPerService);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<MockHttpServletResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < services * requestsPerService; i++) {
+            AuthTokenInterceptor target = interceptors.get(i % services);
+            responses.add(executor.submit(() -> {
+                start.await();
+                MockHttpServletResponse response = new MockHttpServletResponse();
+                target.preHandle(request("/api/v1/passages", token), response, null);
+                return response;
+            }));
+        }
+        start.countDown();
+        Set<String> cookies = new HashSet<>();
+        for (Future<MockHttpServletResponse> response : responses) {
+            cookies.addAll(response.get(10, TimeUnit.SECONDS).getHeaders("Set-Cookie"));
+        }
+        executor.shutdownNow();
+
+        // Trước đây mỗi request gọi token endpoint một lần: 30 lần / burst
+        assertEquals(1, tokenEndpointCalls.get(),
+                "uncoordinated refresh calls the token endpoint " + services * requestsPerService + " times");
+        verify(keyCloakTokenClient, times(1)).requestToken(any(), eq("realm"));
+        assertEquals(Set.of("access-1", "refresh-1"), cookies.stream()
+                .map(c -> c.substring(c.indexOf('=') + 1, c.indexOf(';')))
+                .collect(Collectors.toSet()));
+    }
+
+    private AuthTokenInterceptor newInterceptor() {
+        RefreshTokenCoordinator coordinator = new RefreshTokenCoordinator(fakeRedis(redis), new ObjectMapper(),
+                new SimpleMeterRegistry(), Duration.ofSeconds(5), Duration.ofSeconds(30));
+        AuthTokenInterceptor created = new AuthTokenInterceptor(keyCloakTokenClientProvider, validator, coordinator);
+        ReflectionTestUtils.setField(created, "realm", "realm");
+        ReflectionTestUtils.setField(created, "clientId", "client");
+        ReflectionTestUtils.setField(created, "clientSecret", "secret");
+        return created;
+    }
+
+    // Redis trong bộ nhớ, chỉ đủ cho lock + result cache của RefreshTokenCoordinator
+    @SuppressWarnings("unchecked")
+    private static StringRedisTemplate fakeRedis(Map<String, String> store) {
+        StringRedisTemplate template = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> values = mock(ValueOperations.class);
+        when(template.opsForValue()).thenReturn(values);
+        when(values.get(anyString())).thenAnswer(invocation -> store.get(invocation.<String>getArgument(0)));
+        when(values.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(invocation -> store.putIfAbsent(invocation.getArgument(0), invocation.getArgument(1)) == null);
+        doAnswer(invocation -> store.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(values).set(anyString(), anyString(), any(Duration.class));
+        when(template.execute(any(RedisScript.class), anyList(), ArgumentMatchers.<Object>any()))
+                .thenAnswer(invocation -> {
+                    String key = invocation.<List<String>>getArgument(1).get(0);
+                    return store.remove(key, invocation.getArgument(2)) ? 1L : 0L;
+                });
+        return template;
+    }
+
+    private String token(Instant expiresAt) {
+        JwtClaimsSet claims = JwtClaimsSet.builder()
+                .subject("user")
+                .issuedAt(expiresAt.minus(Duration.ofMinutes(10)))
+                .expiresAt(expiresAt)
+                .build();
+        return encoder.encode(JwtEncoderParameters.from(claims)).getTokenValue();
+    }
+
+    private static KeyCloakTokenResponse refreshedToken() {
+        return KeyCloakTokenResponse.builder().accessToken("new-access").refreshToken("new-refresh").expiresIn(300).build();
+    }
+
+    private static MockHttpServletRequest request(String path, String token) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+        request.setCookies(new Cookie(CookieConstants.ACCESS_TOKEN, token),
+                new Cookie(CookieConstants.REFRESH_TOKEN, "refresh"));
+        return request;
+    }
+}
@@ -0,0 +1,100 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.DragItem;
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.ReportData;
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.grading.ExamAnswerKey;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import com.fptu.sep490.readingservice.repository.ReadingExamRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class ExamGradingEngineTest {
+
+    @Mock
+    ReadingExamRepository readingExamRepository;
+    @Mock
+    QuestionGroupRepository questionGroupRepository;
+    @Mock
+    QuestionRepository questionRepository;
+    @Mock
+    ChoiceRepository choiceRepository;
+    @Mock
+    DragItemRepository dragItemRepository;
+
+    ExamAnswerKeyCompiler compiler;
+    ExamGradingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        compiler = new ExamAnswerKeyCompiler(readingExamRepository, questionGroupRepository, questionRepository,
+                choiceRepository, dragItemRepository);
+        engine = new ExamGradingEngine(compiler, questionRepository, choiceRepository);
+    }
+
+    @Test
+    void grade_usesCompiledKeyOnly() {
+        Question mc = Question.builder().questionId(UUID.randomUUID()).questionType(QuestionType.MULTIPLE_CHOICE)
+                .questionOrder(3).point(2).build();
+        Question fill = Question.builder().questionId(UUID.randomUUID()).questionType(QuestionType.FILL_IN_THE_BLANKS)
+                .questionOrder(1).point(1).correctAnswer("Paris").build();
+        Question drag = Question.builder().questionId(UUID.randomUUID()).questionType(QuestionType.DRAG_AND_DROP)
+                .questionOrder(2).point(1).build();
+        Choice correct = Choice.builder().choiceId(UUID.randomUUID()).label("A").isCorrect(true).question(mc).build();
+        Choice wrong = Choice.builder().choiceId(UUID.randomUUID()).label("B").question(mc).build();
+        DragItem dragItem = DragItem.builder().dragItemId(UUID.randomUUID()).content("river").question(drag).build();
+        when(choiceRepository.getOriginalChoicesByOriginalQuestions(any())).thenReturn(List.of(correct, wrong));
+        when(choiceRepository.findAllVersionsByOriginalChoiceIds(any())).thenReturn(List.of(correct, wrong));
+        when(dragItemRepository.findByQuestionIds(any())).thenReturn(List.of(dragItem));
+        ExamAnswerKey key = compiler.compile(UUID.randomUUID(), List.of(mc, fill, drag));
+        clearInvocations(choiceRepository, dragItemRepository);
+
+        Map<UUID, List<String>> userAnswers = new HashMap<>();
+        userAnswers.put(mc.getQuestionId(), List.of(correct.getChoiceId().toString()));
+        userAnswers.put(fill.getQuestionId(), List.of("PARIS"));
+        userAnswers.put(drag.getQuestionId(), List.of(UUID.randomUUID().toString()));
+
+        ExamGradingEngine.ExamGradingResult result = engine.grade(key,
+                List.of(mc.getQuestionId(), fill.getQuestionId(), drag.getQuestionId()), userAnswers);
+
+        assertEquals(3, result.points());
+        assertEquals(List.of(1, 2, 3), result.resultSets().stream().map(r -> r.getQuestionIndex()).toList());
+        assertEquals(List.of("A"), result.resultSets().get(2).getUserAnswer());
+        assertEquals(List.of("river"), result.resultSets().get(1).getCorrectAnswer());
+        assertEquals(2, result.reportData().stream().filter(ReportData::isCorrect).count());
+        verifyNoInteractions(questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void grade_compilesQuestionsOutsideKeyOnce() {
+        Question matching = Question.builder().questionId(UUID.randomUUID()).questionType(QuestionType.MATCHING)
+                .questionOrder(1).point(1).correctAnswerForMatching("1-B").build();
+        when(questionRepository.findQuestionsByIds(anyList())).thenReturn(List.of(matching));
+        ExamAnswerKey empty = compiler.compile(UUID.randomUUID(), List.of());
+
+        ExamGradingEngine.ExamGradingResult result = engine.grade(empty, List.of(matching.getQuestionId(), UUID.randomUUID()),
+                Map.of(matching.getQuestionId(), List.of("1-b")));
+
+        assertEquals(1, result.points());
+        assertEquals(1, result.resultSets().size());
+        verify(questionRepository, times(1)).findQuestionsByIds(anyList());
+    }
+}
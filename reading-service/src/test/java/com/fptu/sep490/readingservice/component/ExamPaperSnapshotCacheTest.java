@@ -0,0 +1,104 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.commonlibrary.cache.TwoTierCache;
+import com.fptu.sep490.commonlibrary.cache.TwoTierCacheRegistry;
+import com.fptu.sep490.readingservice.viewmodel.response.CreateExamAttemptResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class ExamPaperSnapshotCacheTest {
+
+    @Mock
+    TwoTierCacheRegistry registry;
+    @Mock
+    TwoTierCache<CreateExamAttemptResponse.ReadingExamResponse> twoTierCache;
+
+    ExamPaperSnapshotCache cache;
+    ExecutorService executor;
+    UUID examId;
+    CountDownLatch renderStarted;
+    CountDownLatch releaseRender;
+    AtomicInteger renders;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(registry.create(eq("exam-paper"), eq(CreateExamAttemptResponse.ReadingExamResponse.class),
+                anyLong(), any(Duration.class), any(Duration.class))).thenReturn(twoTierCache);
+        // Cache trống: mọi lần get đều render
+        when(twoTierCache.get(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<CreateExamAttemptResponse.ReadingExamResponse>>getArgument(1).get());
+        cache = new ExamPaperSnapshotCache(registry, 10, Duration.ofMinutes(1), Duration.ofMinutes(1));
+        executor = Executors.newFixedThreadPool(2);
+        examId = UUID.randomUUID();
+        renderStarted = new CountDownLatch(1);
+        releaseRender = new CountDownLatch(1);
+        renders = new AtomicInteger();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void get_concurrentRequests_renderOnce() throws Exception {
+        Future<CreateExamAttemptResponse.ReadingExamResponse> first = executor.submit(() -> cache.get(examId, this::slowRender));
+        assertTrue(renderStarted.await(5, TimeUnit.SECONDS));
+        Future<CreateExamAttemptResponse.ReadingExamResponse> second = executor.submit(() -> cache.get(examId, this::slowRender));
+        Thread.sleep(50);
+
+        releaseRender.countDown();
+
+        assertSame(first.get(5, TimeUnit.SECONDS), second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, renders.get());
+    }
+
+    @Test
+    void evict_duringRender_nextRequestRendersAgain() throws Exception {
+        Future<CreateExamAttemptResponse.ReadingExamResponse> stale = executor.submit(() -> cache.get(examId, this::slowRender));
+        assertTrue(renderStarted.await(5, TimeUnit.SECONDS));
+
+        cache.evict(examId);
+        // Không chờ lần render cũ: xong trước khi lần đó được thả
+        CreateExamAttemptResponse.ReadingExamResponse fresh = executor.submit(() -> cache.get(examId, this::render))
+                .get(5, TimeUnit.SECONDS);
+        releaseRender.countDown();
+
+        assertNotSame(stale.get(5, TimeUnit.SECONDS), fresh);
+        assertEquals(2, renders.get());
+        verify(twoTierCache).evict(examId.toString());
+    }
+
+    private CreateExamAttemptResponse.ReadingExamResponse slowRender() {
+        renderStarted.countDown();
+        try {
+            assertTrue(releaseRender.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return render();
+    }
+
+    private CreateExamAttemptResponse.ReadingExamResponse render() {
+        renders.incrementAndGet();
+        return CreateExamAttemptResponse.ReadingExamResponse.builder().build();
+    }
+}
@@ -0,0 +1,123 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.AnswerAttempt;
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.grading.AnswerKey;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.viewmodel.request.SavedAnswersRequest;
+import com.fptu.sep490.readingservice.viewmodel.request.SavedAnswersRequestList;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GradingEngineTest {
+
+    @Mock
+    ChoiceRepository choiceRepository;
+    @Mock
+    DragItemRepository dragItemRepository;
+
+    GradingEngine engine;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        engine = new GradingEngine(choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void grade_scoresFromAnswerKeyWithoutQueries() {
+        Map<UUID, AnswerKey.QuestionKey> questions = new LinkedHashMap<>();
+        Map<UUID, String> choiceLabels = new HashMap<>();
+        List<SavedAnswersRequest> answers = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            UUID questionId = UUID.randomUUID();
+            UUID correct = UUID.randomUUID();
+            UUID wrong = UUID.randomUUID();
+            choiceLabels.put(correct, "A");
+            choiceLabels.put(wrong, "B");
+            questions.put(questionId, AnswerKey.QuestionKey.builder()
+                    .questionId(questionId)
+                    .questionType(QuestionType.MULTIPLE_CHOICE)
+                    .questionOrder(40 - i)
+                    .correctChoices(List.of(new AnswerKey.ChoiceKey(correct, "A")))
+                    .build());
+            answers.add(new SavedAnswersRequest(questionId, List.of(i % 2 == 0 ? correct : wrong), null, null, null));
+        }
+        AnswerKey answerKey = new AnswerKey(questions, choiceLabels, Map.of());
+
+        GradingEngine.GradingResult result = engine.grade(answerKey, UUID.randomUUID(), new SavedAnswersRequestList(answers, 10L));
+
+        assertEquals(40, result.resultSets().size());
+        assertEquals(40, result.answerAttempts().size());
+        assertEquals(20, result.answerAttempts().stream().filter(AnswerAttempt::getIsCorrect).count());
+        assertEquals(1, result.resultSets().get(0).getQuestionIndex());
+        verifyNoInteractions(choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void grade_textAndDragRulesAndSkipsMissingAnswers() {
+        UUID fillId = UUID.randomUUID();
+        UUID matchId = UUID.randomUUID();
+        UUID dragId = UUID.randomUUID();
+        UUID unansweredId = UUID.randomUUID();
+        UUID correctDragItemId = UUID.randomUUID();
+        Map<UUID, AnswerKey.QuestionKey> questions = new LinkedHashMap<>();
+        questions.put(fillId, AnswerKey.QuestionKey.builder().questionId(fillId)
+                .questionType(QuestionType.FILL_IN_THE_BLANKS).questionOrder(1).correctAnswer("Paris").build());
+        questions.put(matchId, AnswerKey.QuestionKey.builder().questionId(matchId)
+                .questionType(QuestionType.MATCHING).questionOrder(2).correctAnswer("ignored").correctAnswerForMatching("1-B").build());
+        questions.put(dragId, AnswerKey.QuestionKey.builder().questionId(dragId)
+                .questionType(QuestionType.DRAG_AND_DROP).questionOrder(3)
+                .correctDragItemId(correctDragItemId).correctDragItemContent("river").build());
+        questions.put(unansweredId, AnswerKey.QuestionKey.builder().questionId(unansweredId)
+                .questionType(QuestionType.FILL_IN_THE_BLANKS).questionOrder(4).build());
+        AnswerKey answerKey = new AnswerKey(questions, Map.of(), Map.of(correctDragItemId, "river"));
+
+        GradingEngine.GradingResult result = engine.grade(answerKey, UUID.randomUUID(), new SavedAnswersRequestList(List.of(
+                new SavedAnswersRequest(fillId, null, "paris", null, null),
+                new SavedAnswersRequest(matchId, null, null, "1-B", null),
+                new SavedAnswersRequest(dragId, null, null, null, correctDragItemId),
+                new SavedAnswersRequest(unansweredId, null, null, null, null)
+        ), 10L));
+
+        assertEquals(3, result.resultSets().size());
+        assertTrue(result.resultSets().stream().allMatch(r -> r.isCorrect()));
+        assertEquals(List.of("river"), result.resultSets().get(2).getUserAnswer());
+        verifyNoInteractions(choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void grade_fetchesChoicesOutsideSnapshotOnce() {
+        UUID questionId = UUID.randomUUID();
+        UUID correct = UUID.randomUUID();
+        UUID outside = UUID.randomUUID();
+        AnswerKey answerKey = new AnswerKey(Map.of(questionId, AnswerKey.QuestionKey.builder()
+                .questionId(questionId)
+                .questionType(QuestionType.MULTIPLE_CHOICE)
+                .correctChoices(List.of(new AnswerKey.ChoiceKey(correct, "A")))
+                .build()), Map.of(), Map.of());
+        when(choiceRepository.findAllById(any())).thenReturn(List.of(Choice.builder().choiceId(outside).label("C").build()));
+
+        GradingEngine.GradingResult result = engine.grade(answerKey, UUID.randomUUID(),
+                new SavedAnswersRequestList(List.of(new SavedAnswersRequest(questionId, List.of(outside), null, null, null)), 10L));
+
+        assertEquals(List.of("C"), result.resultSets().get(0).getUserAnswer());
+        assertFalse(result.resultSets().get(0).isCorrect());
+        verify(choiceRepository, times(1)).findAllById(any());
+    }
+}
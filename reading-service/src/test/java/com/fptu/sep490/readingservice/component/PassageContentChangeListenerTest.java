@@ -0,0 +1,139 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.QuestionGroup;
+import com.fptu.sep490.readingservice.model.ReadingPassage;
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import com.fptu.sep490.readingservice.repository.ReadingExamRepository;
+import com.fptu.sep490.readingservice.repository.ReadingPassageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+class PassageContentChangeListenerTest {
+
+    @Mock ReadingPassageRepository readingPassageRepository;
+    @Mock QuestionGroupRepository questionGroupRepository;
+    @Mock QuestionRepository questionRepository;
+    @Mock ReadingExamRepository readingExamRepository;
+    @Mock PassageContentCache passageContentCache;
+    @Mock ExamAnswerKeyCache examAnswerKeyCache;
+    @Mock ExamPaperSnapshotCache examPaperSnapshotCache;
+    @Mock ExamAttemptReviewCache examAttemptReviewCache;
+    @Mock ObjectProvider<PassageCacheInvalidator> invalidatorProvider;
+
+    PassageContentChangeListener listener;
+    UUID passageId;
+    UUID groupId;
+    UUID examId;
+    QuestionGroup group;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(invalidatorProvider.getIfAvailable()).thenReturn(new PassageCacheInvalidator(readingPassageRepository,
+                questionGroupRepository, questionRepository, readingExamRepository, passageContentCache,
+                examAnswerKeyCache, examPaperSnapshotCache, examAttemptReviewCache));
+        listener = new PassageContentChangeListener(invalidatorProvider);
+
+        passageId = UUID.randomUUID();
+        groupId = UUID.randomUUID();
+        examId = UUID.randomUUID();
+        group = QuestionGroup.builder().groupId(groupId)
+                .readingPassage(ReadingPassage.builder().passageId(passageId).build()).build();
+        when(questionGroupRepository.findOriginalPassageIdsByGroupIdIn(Set.of(groupId))).thenReturn(List.of(passageId));
+        when(readingPassageRepository.findOriginalIdsByIdIn(Set.of(passageId))).thenReturn(List.of(passageId));
+        when(readingPassageRepository.findCurrentVersionById(passageId))
+                .thenReturn(Optional.of(ReadingPassage.builder().passageId(passageId).version(3).build()));
+        when(readingExamRepository.findIdsByOriginalPassageIdIn(Set.of(passageId))).thenReturn(List.of(examId));
+
+        TransactionSynchronizationManager.initSynchronization();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void newQuestionVersion_evictsPassageAndExams_keepsReviews() {
+        Question original = question(false);
+        Question newVersion = question(true);
+
+        listener.onContentCreated(newVersion);
+        listener.onContentUpdated(original);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(questionGroupRepository).findOriginalPassageIdsByGroupIdIn(Set.of(groupId));
+        verify(passageContentCache).evict(passageId, 3);
+        verify(examAnswerKeyCache).evict(examId);
+        verify(examPaperSnapshotCache).evict(examId);
+        verifyNoInteractions(examAttemptReviewCache);
+    }
+
+    @Test
+    void inPlaceEdit_invalidatesReviewsOfAffectedExams() {
+        listener.onContentUpdated(question(true));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(examAnswerKeyCache).evict(examId);
+        verify(examAttemptReviewCache).invalidateExams(List.of(examId));
+    }
+
+    @Test
+    void removedGroup_invalidatesReviewsOfItsPassage() {
+        listener.onContentRemoved(group);
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        verify(readingPassageRepository).findOriginalIdsByIdIn(Set.of(passageId));
+        verify(examAttemptReviewCache).invalidateExams(List.of(examId));
+    }
+
+    @Test
+    void rollback_evictsNothing() {
+        listener.onContentUpdated(question(true));
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        verifyNoInteractions(questionGroupRepository, passageContentCache, examAnswerKeyCache,
+                examPaperSnapshotCache, examAttemptReviewCache);
+    }
+
+    @Test
+    void withoutTransaction_evictsImmediately() {
+        TransactionSynchronizationManager.clearSynchronization();
+
+        listener.contentChanged(question(true));
+
+        verify(passageContentCache).evict(passageId, 3);
+        verify(examAttemptReviewCache).invalidateExams(List.of(examId));
+        verify(questionRepository, never()).findOriginalPassageIdsByQuestionIdIn(anyCollection());
+        verify(readingExamRepository).findIdsByOriginalPassageIdIn(any());
+    }
+
+    private Question question(boolean isCurrent) {
+        return Question.builder().questionId(UUID.randomUUID()).questionGroup(group).isCurrent(isCurrent).build();
+    }
+
+    private void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        synchronizations.forEach(synchronization -> synchronization.afterCompletion(status));
+    }
+}
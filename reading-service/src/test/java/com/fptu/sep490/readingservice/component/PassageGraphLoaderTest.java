@@ -0,0 +1,143 @@
+package com.fptu.sep490.readingservice.component;
+
+import com.fptu.sep490.readingservice.model.Choice;
+import com.fptu.sep490.readingservice.model.DragItem;
+import com.fptu.sep490.readingservice.model.Question;
+import com.fptu.sep490.readingservice.model.QuestionGroup;
+import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
+import com.fptu.sep490.readingservice.model.graph.PassageGraph;
+import com.fptu.sep490.readingservice.repository.ChoiceRepository;
+import com.fptu.sep490.readingservice.repository.DragItemRepository;
+import com.fptu.sep490.readingservice.repository.QuestionGroupRepository;
+import com.fptu.sep490.readingservice.repository.QuestionRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class PassageGraphLoaderTest {
+
+    @Mock
+    QuestionGroupRepository questionGroupRepository;
+    @Mock
+    QuestionRepository questionRepository;
+    @Mock
+    ChoiceRepository choiceRepository;
+    @Mock
+    DragItemRepository dragItemRepository;
+
+    PassageGraphLoader loader;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        loader = new PassageGraphLoader(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    @Test
+    void loadCurrentVersion_queryCountIsConstantAsQuestionCountGrows() {
+        UUID passageId = UUID.randomUUID();
+
+        stubPassage(passageId, 1, 1);
+        loader.loadCurrentVersion(passageId);
+        int smallPassageQueries = repositoryInvocations();
+
+        clearInvocations(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+        stubPassage(passageId, 4, 10);
+        PassageGraph graph = loader.loadCurrentVersion(passageId);
+        int largePassageQueries = repositoryInvocations();
+
+        assertEquals(4, graph.groups().size());
+        assertEquals(40, graph.groups().stream().mapToInt(g -> g.questions().size()).sum());
+        assertEquals(smallPassageQueries, largePassageQueries);
+        assertEquals(6, largePassageQueries);
+    }
+
+    @Test
+    void loadCurrentVersion_usesLatestGroupAndCurrentQuestionVersion() {
+        UUID passageId = UUID.randomUUID();
+        QuestionGroup original = QuestionGroup.builder().groupId(UUID.randomUUID()).sectionOrder(1).sectionLabel("old").build();
+        QuestionGroup latest = QuestionGroup.builder().groupId(UUID.randomUUID()).parent(original).sectionOrder(1).sectionLabel("new").build();
+        Question originalQuestion = Question.builder().questionId(UUID.randomUUID()).questionGroup(original)
+                .questionOrder(1).questionType(QuestionType.MULTIPLE_CHOICE).build();
+        Question currentQuestion = Question.builder().questionId(UUID.randomUUID()).questionGroup(original).parent(originalQuestion)
+                .questionOrder(1).questionType(QuestionType.MULTIPLE_CHOICE).build();
+        Choice second = Choice.builder().choiceId(UUID.randomUUID()).label("B").choiceOrder(2).question(originalQuestion).build();
+        Choice first = Choice.builder().choiceId(UUID.randomUUID()).label("A").choiceOrder(1).question(currentQuestion).isCorrect(true).build();
+        DragItem originalItem = DragItem.builder().dragItemId(UUID.randomUUID()).questionGroup(original).build();
+        DragItem currentItem = DragItem.builder().dragItemId(UUID.randomUUID()).content("item").questionGroup(latest).parent(originalItem).build();
+
+        when(questionGroupRepository.findOriginalVersionByTaskId(passageId)).thenReturn(List.of(original));
+        when(questionGroupRepository.findLatestVersionsByOriginalIds(any())).thenReturn(List.of(latest));
+        when(dragItemRepository.findCurrentVersionByGroupIds(any())).thenReturn(List.of(currentItem));
+        when(questionRepository.findOriginalVersionByGroupIds(any())).thenReturn(List.of(originalQuestion));
+        when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(List.of(currentQuestion));
+        when(choiceRepository.findCurrentVersionByQuestionIds(any())).thenReturn(List.of(second, first));
+
+        PassageGraph graph = loader.loadCurrentVersion(passageId);
+
+        PassageGraph.GroupNode group = graph.groups().get(0);
+        assertEquals(original.getGroupId(), group.originalGroupId());
+        assertEquals(latest.getGroupId(), group.groupId());
+        assertEquals("new", group.sectionLabel());
+        assertEquals(List.of(currentItem.getDragItemId()), group.dragItems().stream().map(PassageGraph.DragItemNode::dragItemId).toList());
+        PassageGraph.QuestionNode question = group.questions().get(0);
+        assertEquals(currentQuestion.getQuestionId(), question.questionId());
+        assertEquals(originalQuestion.getQuestionId(), question.originalQuestionId());
+        assertEquals(List.of("A", "B"), question.choices().stream().map(PassageGraph.ChoiceNode::label).toList());
+        assertTrue(question.choices().get(0).isCorrect());
+    }
+
+    @Test
+    void loadCurrentVersion_noGroups_returnsEmptyGraphWithoutFurtherQueries() {
+        UUID passageId = UUID.randomUUID();
+        when(questionGroupRepository.findOriginalVersionByTaskId(passageId)).thenReturn(List.of());
+
+        PassageGraph graph = loader.loadCurrentVersion(passageId);
+
+        assertTrue(graph.groups().isEmpty());
+        verifyNoInteractions(questionRepository, choiceRepository, dragItemRepository);
+    }
+
+    private void stubPassage(UUID passageId, int groupCount, int questionsPerGroup) {
+        List<QuestionGroup> groups = new ArrayList<>();
+        List<Question> questions = new ArrayList<>();
+        List<Choice> choices = new ArrayList<>();
+        List<DragItem> dragItems = new ArrayList<>();
+        for (int g = 0; g < groupCount; g++) {
+            QuestionGroup group = QuestionGroup.builder().groupId(UUID.randomUUID()).sectionOrder(g).build();
+            groups.add(group);
+            dragItems.add(DragItem.builder().dragItemId(UUID.randomUUID()).questionGroup(group).build());
+            for (int q = 0; q < questionsPerGroup; q++) {
+                Question question = Question.builder().questionId(UUID.randomUUID()).questionGroup(group)
+                        .questionOrder(q).questionType(QuestionType.MULTIPLE_CHOICE).build();
+                questions.add(question);
+                for (int c = 0; c < 4; c++) {
+                    choices.add(Choice.builder().choiceId(UUID.randomUUID()).choiceOrder(c).question(question).build());
+                }
+            }
+        }
+        when(questionGroupRepository.findOriginalVersionByTaskId(passageId)).thenReturn(groups);
+        when(questionGroupRepository.findLatestVersionsByOriginalIds(any())).thenReturn(groups);
+        when(dragItemRepository.findCurrentVersionByGroupIds(any())).thenReturn(dragItems);
+        when(questionRepository.findOriginalVersionByGroupIds(any())).thenReturn(questions);
+        when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(questions);
+        when(choiceRepository.findCurrentVersionByQuestionIds(any())).thenReturn(choices);
+    }
+
+    private int repositoryInvocations() {
+        return mockingDetails(questionGroupRepository).getInvocations().size()
+                + mockingDetails(questionRepository).getInvocations().size()
+                + mockingDetails(choiceRepository).getInvocations().size()
+                + mockingDetails(dragItemRepository).getInvocations().size();
+    }
+}
@@ -0,0 +1,97 @@
+package com.fptu.sep490.readingservice.repository;
+
+import com.fptu.sep490.readingservice.model.ReadingExam;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.TypedQuery;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ReadingExamSearchRepositoryImplTest {
+    @Mock
+    NamedParameterJdbcTemplate jdbcTemplate;
+    @Mock
+    EntityManager entityManager;
+    @Mock
+    TypedQuery<ReadingExam> query;
+
+    ReadingExamSearchRepositoryImpl repository;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        when(entityManager.createQuery(anyString(), eq(ReadingExam.class))).thenReturn(query);
+        when(query.setParameter(anyString(), any())).thenReturn(query);
+        repository = new ReadingExamSearchRepositoryImpl(jdbcTemplate, entityManager);
+    }
+
+    @Test
+    void keyword_ranksAndKeepsIdOrder() {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(UUID.class)))
+                .thenReturn(List.of(first, second));
+        when(query.getResultList()).thenReturn(List.of(exam(second), exam(first)));
+
+        Page<ReadingExam> page = repository.searchCurrentExams("  Cambridge   Test ", PageRequest.of(0, 10));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<MapSqlParameterSource> parameters = ArgumentCaptor.forClass(MapSqlParameterSource.class);
+        verify(jdbcTemplate).queryForList(sql.capture(), parameters.capture(), eq(UUID.class));
+        assertTrue(sql.getValue().contains("@@ to_tsquery('simple', :searchPrefix)"));
+        assertTrue(sql.getValue().contains("ORDER BY (CASE WHEN lower(r.exam_name) = :searchText"));
+        assertTrue(sql.getValue().endsWith("LIMIT 10 OFFSET 0"));
+        assertEquals("cambridge test", parameters.getValue().getValue("searchText"));
+        assertEquals("%cambridge test%", parameters.getValue().getValue("searchLike"));
+        assertEquals("cambridge:* & test:*", parameters.getValue().getValue("searchPrefix"));
+
+        assertEquals(List.of(first, second), page.getContent().stream().map(ReadingExam::getReadingExamId).toList());
+        // Trang đầu chưa đầy: tổng tính từ số phần tử, không chạy count
+        assertEquals(2, page.getTotalElements());
+        verify(jdbcTemplate, never()).queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class));
+    }
+
+    @Test
+    void noKeyword_explicitSort_noSearchPredicate() {
+        when(jdbcTemplate.queryForList(anyString(), any(SqlParameterSource.class), eq(UUID.class)))
+                .thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(anyString(), any(SqlParameterSource.class), eq(Long.class))).thenReturn(25L);
+
+        Page<ReadingExam> page = repository.findByIsDeletedFalseAndIsCurrentTrueAndStatusTrue("",
+                PageRequest.of(2, 10, Sort.by("createdAt").descending()));
+
+        ArgumentCaptor<String> sql = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).queryForList(sql.capture(), any(SqlParameterSource.class), eq(UUID.class));
+        assertTrue(sql.getValue().contains("r.status = 1 AND TRUE"));
+        assertTrue(sql.getValue().contains("ORDER BY r.created_at DESC, r.reading_exam_id"));
+        verify(entityManager, never()).createQuery(anyString(), eq(ReadingExam.class));
+        assertEquals(25, page.getTotalElements());
+    }
+
+    @Test
+    void unknownSortProperty_rejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> repository.searchCurrentExams("ielts", PageRequest.of(0, 10, Sort.by("part1"))));
+    }
+
+    private static ReadingExam exam(UUID id) {
+        return ReadingExam.builder().readingExamId(id).build();
+    }
+}
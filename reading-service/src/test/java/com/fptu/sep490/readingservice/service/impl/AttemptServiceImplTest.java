@@ -4,6 +4,12 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
+import com.fptu.sep490.readingservice.component.AnswerKeyLoader;
+import com.fptu.sep490.readingservice.component.AttemptVersionResolver;
+import com.fptu.sep490.readingservice.component.GradingBatchWriter;
+import com.fptu.sep490.readingservice.component.GradingEngine;
+import com.fptu.sep490.readingservice.component.PassageContentCache;
+import com.fptu.sep490.readingservice.component.PassageGraphLoader;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.model.*;
 import com.fptu.sep490.readingservice.model.embedded.AnswerAttemptId;
@@ -20,6 +26,7 @@ import com.fptu.sep490.readingservice.service.impl.AttemptServiceImpl;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.viewmodel.request.SavedAnswersRequest;
 import com.fptu.sep490.readingservice.viewmodel.request.SavedAnswersRequestList;
+import com.fptu.sep490.readingservice.viewmodel.response.SubmittedAttemptResponse;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.Cookie;
 import org.springframework.data.domain.PageImpl;
@@ -34,6 +41,7 @@ import org.mockito.MockitoAnnotations;
 import com.fasterxml.jackson.databind.JsonNode;
 
 import java.util.*;
+import java.time.LocalDate;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -69,6 +77,12 @@ class AttemptServiceImplTest {
 	org.springframework.kafka.core.KafkaTemplate<String, Object> kafkaTemplate;
 	@Mock
 	Helper helper;
+	@Mock
+	PassageContentCache passageContentCache;
+	@Mock
+	GradingBatchWriter gradingBatchWriter;
+	@Mock
+	UserProgressDailyRepository userProgressDailyRepository;
 
 	AttemptServiceImpl service;
 
@@ -88,8 +102,19 @@ class AttemptServiceImplTest {
 				keyCloakUserClient,
 				redisService,
 				kafkaTemplate,
-				helper
+				helper,
+				passageContentCache,
+				new AttemptVersionResolver(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository),
+				new AnswerKeyLoader(questionRepository, choiceRepository, dragItemRepository),
+				new GradingEngine(choiceRepository, dragItemRepository),
+				gradingBatchWriter,
+				userProgressDailyRepository
 		);
+		PassageGraphLoader loader = new PassageGraphLoader(questionGroupRepository, questionRepository, choiceRepository, dragItemRepository);
+		when(passageContentCache.getCurrentVersion(any(), any()))
+				.thenAnswer(inv -> loader.loadCurrentVersion(inv.getArgument(0)));
+		// Mặc định attempt chưa bị khóa
+		when(redisService.getHashFields(anyString(), anyList())).thenReturn(Arrays.asList(null, null, null));
 	}
 
 	@Test
@@ -210,7 +235,7 @@ class AttemptServiceImplTest {
 				.sectionLabel("Sec")
 				.instruction("GIns")
 				.build();
-		when(questionGroupRepository.findById(groupId)).thenReturn(Optional.of(group));
+		when(questionGroupRepository.findAllById(any())).thenReturn(List.of(group));
 
 		UUID qId = UUID.randomUUID();
 		Question question = Question.builder()
@@ -219,15 +244,15 @@ class AttemptServiceImplTest {
 				.questionType(QuestionType.MULTIPLE_CHOICE)
 				.numberOfCorrectAnswers(1)
 				.build();
-		when(questionRepository.findById(qId)).thenReturn(Optional.of(question));
+		when(questionRepository.findAllById(any())).thenReturn(List.of(question));
 
 		UUID choiceId = UUID.randomUUID();
 		Choice ch = Choice.builder().choiceId(choiceId).label("A").content("A").choiceOrder(1).build();
-		when(choiceRepository.findAllById(anyList())).thenReturn(List.of(ch));
+		when(choiceRepository.findAllById(any())).thenReturn(List.of(ch));
 
 		UUID dragId = UUID.randomUUID();
 		DragItem di = DragItem.builder().dragItemId(dragId).content("d").build();
-		when(dragItemRepository.findAllById(anyList())).thenReturn(List.of(di));
+		when(dragItemRepository.findAllById(any())).thenReturn(List.of(di));
 
 		// Mock version parsing
 		AttemptVersion av = AttemptVersion.builder()
@@ -345,6 +370,62 @@ class AttemptServiceImplTest {
 		assertThrows(AppException.class, () -> service.loadAttempt(attemptId.toString(), req));
 	}
 
+	@Test
+	void loadAttempt_liveLockHeldByAnotherUser_throwsAttemptInUse() {
+		UUID attemptId = draftAttemptOf("user");
+		lockAttempt(attemptId, "other", "session-2", System.currentTimeMillis());
+
+		AppException ex = assertThrows(AppException.class, () -> service.loadAttempt(attemptId.toString(), authenticatedRequest("user")));
+		assertEquals(Constants.ErrorCode.ATTEMPT_IN_USE, ex.getBusinessErrorCode());
+	}
+
+	@Test
+	void loadAttempt_liveLockHeldByAnotherSessionOfSameUser_throwsSessionActive() {
+		UUID attemptId = draftAttemptOf("user");
+		lockAttempt(attemptId, "user", "session-2", System.currentTimeMillis() - 30_000);
+
+		AppException ex = assertThrows(AppException.class, () -> service.loadAttempt(attemptId.toString(), authenticatedRequest("user")));
+		assertEquals(Constants.ErrorCode.ATTEMPT_SESSION_ACTIVE, ex.getBusinessErrorCode());
+	}
+
+	@Test
+	void loadAttempt_lockPastHeartbeatTimeout_doesNotBlock() throws Exception {
+		UUID attemptId = draftAttemptOf("user");
+		lockAttempt(attemptId, "other", "session-2", System.currentTimeMillis() - 61_000);
+		AttemptVersion av = AttemptVersion.builder().readingPassageId(UUID.randomUUID()).build();
+		JsonNode node = mock(JsonNode.class);
+		when(objectMapper.readTree("json")).thenReturn(node);
+		when(objectMapper.treeToValue(node, AttemptVersion.class)).thenReturn(av);
+		when(readingPassageRepository.findById(any())).thenReturn(Optional.empty());
+
+		AppException ex = assertThrows(AppException.class, () -> service.loadAttempt(attemptId.toString(), authenticatedRequest("user")));
+		assertEquals(Constants.ErrorCode.PASSAGE_NOT_FOUND, ex.getBusinessErrorCode());
+		verify(redisService).getHashFields("attempt_lock:" + attemptId, List.of("userId", "sessionId", "lastPing"));
+	}
+
+	private HttpServletRequest authenticatedRequest(String userId) {
+		HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+		when(req.getCookies()).thenReturn(new Cookie[]{ new Cookie("Authorization", "token") });
+		Authentication auth = mock(Authentication.class);
+		when(auth.getName()).thenReturn(userId);
+		SecurityContext sc = mock(SecurityContext.class);
+		when(sc.getAuthentication()).thenReturn(auth);
+		SecurityContextHolder.setContext(sc);
+		return req;
+	}
+
+	private UUID draftAttemptOf(String userId) {
+		UUID attemptId = UUID.randomUUID();
+		Attempt attempt = Attempt.builder().attemptId(attemptId).createdBy(userId).status(Status.DRAFT).version("json").build();
+		when(attemptRepository.findById(eq(attemptId))).thenReturn(Optional.of(attempt));
+		return attemptId;
+	}
+
+	private void lockAttempt(UUID attemptId, String userId, String sessionId, long lastPing) {
+		when(redisService.getHashFields(eq("attempt_lock:" + attemptId), anyList()))
+				.thenReturn(List.of(userId, sessionId, String.valueOf(lastPing)));
+	}
+
 	@Test
 	void submitAttempt_success_allTypes() throws Exception {
 		HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
@@ -357,7 +438,8 @@ class AttemptServiceImplTest {
 		SecurityContextHolder.setContext(sc);
 
 		UUID attemptId = UUID.randomUUID();
-        Attempt attempt = Attempt.builder().attemptId(attemptId).createdBy(uid).status(Status.DRAFT).version("json").build();
+        Attempt attempt = Attempt.builder().attemptId(attemptId).createdBy(uid).status(Status.DRAFT).version("json")
+                .createdAt(LocalDateTime.of(2025, 7, 1, 9, 30)).build();
 		when(attemptRepository.findById(eq(attemptId))).thenReturn(Optional.of(attempt));
 
 		// Build AttemptVersion mapping with 4 questions
@@ -397,18 +479,16 @@ class AttemptServiceImplTest {
 		// Multiple choice mocks
 		UUID c1 = UUID.randomUUID();
 		UUID c2 = UUID.randomUUID();
-		when(choiceRepository.getChoicesByIds(anyList())).thenReturn(List.of("A", "B"));
-		Choice orig1 = Choice.builder().choiceId(c1).label("A").build();
-		Choice orig2 = Choice.builder().choiceId(c2).label("B").build();
-		when(choiceRepository.getOriginalChoiceByOriginalQuestion(eq(qMcOrigId))).thenReturn(List.of(orig1, orig2));
-		when(choiceRepository.getOriginalChoiceByOriginalQuestion(eq(mcParent.getQuestionId()))).thenReturn(List.of(orig1, orig2));
+		Choice orig1 = Choice.builder().choiceId(c1).label("A").question(mcOriginal).build();
+		Choice orig2 = Choice.builder().choiceId(c2).label("B").question(mcParent).build();
+		when(choiceRepository.getOriginalChoicesByOriginalQuestions(any())).thenReturn(List.of(orig1, orig2));
 		when(choiceRepository.getCurrentCorrectChoice(anyList())).thenReturn(List.of(orig1));
+		when(choiceRepository.findAllById(any())).thenReturn(List.of(orig1, orig2));
 
-		// Drag item content lookup
-		when(dragItemRepository.findById(any())).thenReturn(Optional.of(drag));
-
-		// Existing answer attempt fetch should be empty
-		when(answerAttemptRepository.findAnswerAttemptByAttemptId(any())).thenReturn(Optional.empty());
+		// Drag item đúng và nội dung drag item người dùng chọn
+		drag.setQuestion(qDrag);
+		when(dragItemRepository.findByQuestionIds(any())).thenReturn(List.of(drag));
+		when(dragItemRepository.findAllById(any())).thenReturn(List.of(drag));
 
 		// Build answers
 		SavedAnswersRequest aMcO = new SavedAnswersRequest(qMcOrigId, List.of(c1), null, null, null);
@@ -422,8 +502,15 @@ class AttemptServiceImplTest {
 		assertEquals(222L, resp.getDuration());
 		assertEquals(5, resp.getResultSets().size());
 		assertTrue(resp.getResultSets().stream().allMatch(r -> r.getQuestionIndex() > 0));
+		assertTrue(resp.getResultSets().get(0).isCorrect());
+		assertTrue(resp.getResultSets().stream().skip(2).allMatch(SubmittedAttemptResponse.ResultSet::isCorrect));
+		verify(questionRepository, times(1)).findQuestionsByIds(anyList());
+		verify(gradingBatchWriter).upsertAnswerAttempts(argThat(list -> list.size() == 5));
+		verify(answerAttemptRepository, never()).save(any());
         verify(kafkaTemplate).send(any(), any());
 		assertEquals(Status.FINISHED, attempt.getStatus());
+		verify(userProgressDailyRepository).increment(uid, LocalDate.of(2025, 7, 1), 0, 0, 1,
+				LocalDateTime.of(2025, 7, 1, 9, 30));
 	}
 
 	@Test
@@ -479,7 +566,8 @@ class AttemptServiceImplTest {
 		SecurityContextHolder.setContext(sc);
 
 		UUID attemptId = UUID.randomUUID();
-        Attempt attempt = Attempt.builder().attemptId(attemptId).createdBy(uid2).status(Status.DRAFT).version("json").build();
+        Attempt attempt = Attempt.builder().attemptId(attemptId).createdBy(uid2).status(Status.DRAFT).version("json")
+                .createdAt(LocalDateTime.of(2025, 7, 1, 9, 30)).build();
 		when(attemptRepository.findById(eq(attemptId))).thenReturn(Optional.of(attempt));
 
 		UUID gId = UUID.randomUUID();
@@ -512,6 +600,7 @@ class AttemptServiceImplTest {
 		var resp = service.submitAttempt(attemptId.toString(), req, answers);
 		// No results because all were skipped
 		assertEquals(0, resp.getResultSets().size());
+		verify(gradingBatchWriter).upsertAnswerAttempts(List.of());
 	}
 
     @Test
@@ -587,24 +676,25 @@ class AttemptServiceImplTest {
 		QuestionGroup originalGroup = QuestionGroup.builder().groupId(UUID.randomUUID()).build();
 		when(questionGroupRepository.findOriginalVersionByTaskId(pid)).thenReturn(List.of(originalGroup));
 
-		DragItem di = DragItem.builder().dragItemId(UUID.randomUUID()).content("drag").build();
-		when(dragItemRepository.findCurrentVersionByGroupId(any())).thenReturn(List.of(di));
-        QuestionGroup latestGroup = QuestionGroup.builder().groupId(originalGroup.getGroupId()).sectionLabel("sec").sectionOrder(1).instruction("gi").build();
-		when(questionGroupRepository.findLatestVersionByOriginalId(any())).thenReturn(latestGroup);
+		DragItem di = DragItem.builder().dragItemId(UUID.randomUUID()).content("drag").questionGroup(originalGroup).build();
+		when(dragItemRepository.findCurrentVersionByGroupIds(any())).thenReturn(List.of(di));
+        QuestionGroup latestGroup = QuestionGroup.builder().groupId(UUID.randomUUID()).parent(originalGroup).sectionLabel("sec").sectionOrder(1).instruction("gi").build();
+		when(questionGroupRepository.findLatestVersionsByOriginalIds(any())).thenReturn(List.of(latestGroup));
 
 		UUID qid = UUID.randomUUID();
-		when(questionRepository.findOriginalVersionByGroupId(originalGroup.getGroupId())).thenReturn(List.of(qid));
 		Question q = Question.builder()
 				.questionId(qid)
 				.isOriginal(true)
 				.questionOrder(1)
 				.questionType(QuestionType.MULTIPLE_CHOICE)
 				.numberOfCorrectAnswers(1)
+				.questionGroup(originalGroup)
 				.build();
+		when(questionRepository.findOriginalVersionByGroupIds(any())).thenReturn(List.of(q));
 		when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(List.of(q));
 
-		Choice c = Choice.builder().choiceId(UUID.randomUUID()).label("A").content("A").choiceOrder(1).build();
-		when(choiceRepository.findCurrentVersionByQuestionId(qid)).thenReturn(List.of(c));
+		Choice c = Choice.builder().choiceId(UUID.randomUUID()).label("A").content("A").choiceOrder(1).question(q).build();
+		when(choiceRepository.findCurrentVersionByQuestionIds(any())).thenReturn(List.of(c));
 
 		when(objectMapper.writeValueAsString(any())).thenReturn("json");
 		when(attemptRepository.save(any(Attempt.class))).thenAnswer(inv -> inv.getArgument(0));
@@ -660,19 +750,24 @@ class AttemptServiceImplTest {
 		QuestionGroup originalGroup = QuestionGroup.builder().groupId(UUID.randomUUID()).build();
 		when(questionGroupRepository.findOriginalVersionByTaskId(pid)).thenReturn(List.of(originalGroup));
 
-		DragItem di = DragItem.builder().dragItemId(UUID.randomUUID()).content("drag").build();
-		when(dragItemRepository.findCurrentVersionByGroupId(any())).thenReturn(List.of(di));
+		DragItem di = DragItem.builder().dragItemId(UUID.randomUUID()).content("drag").questionGroup(originalGroup).build();
+		when(dragItemRepository.findCurrentVersionByGroupIds(any())).thenReturn(List.of(di));
 		QuestionGroup latestGroup = QuestionGroup.builder().groupId(originalGroup.getGroupId()).sectionLabel("sec").sectionOrder(1).instruction("gi").build();
-		when(questionGroupRepository.findLatestVersionByOriginalId(any())).thenReturn(latestGroup);
+		when(questionGroupRepository.findLatestVersionsByOriginalIds(any())).thenReturn(List.of(latestGroup));
 
 		UUID qidOriginal = UUID.randomUUID();
-		when(questionRepository.findOriginalVersionByGroupId(originalGroup.getGroupId())).thenReturn(List.of(qidOriginal));
 		Question qOriginal = Question.builder()
 				.questionId(qidOriginal)
 				.isOriginal(true)
 				.questionOrder(1)
 				.questionType(QuestionType.MULTIPLE_CHOICE)
 				.numberOfCorrectAnswers(1)
+				.questionGroup(originalGroup)
+				.build();
+		Question qSecondOriginal = Question.builder()
+				.questionId(UUID.randomUUID())
+				.isOriginal(true)
+				.questionGroup(originalGroup)
 				.build();
         Question qNonOriginal = Question.builder()
                 .questionId(UUID.randomUUID())
@@ -680,14 +775,14 @@ class AttemptServiceImplTest {
                 .questionOrder(2)
                 .questionType(QuestionType.MULTIPLE_CHOICE)
                 .numberOfCorrectAnswers(1)
+                .parent(qSecondOriginal)
                 .build();
-        // Set parent to itself so the map key matches questionId during response building
-        qNonOriginal.setParent(qNonOriginal);
+		when(questionRepository.findOriginalVersionByGroupIds(any())).thenReturn(List.of(qOriginal, qSecondOriginal));
 		when(questionRepository.findAllCurrentVersion(anyList())).thenReturn(List.of(qOriginal, qNonOriginal));
 
-		Choice c = Choice.builder().choiceId(UUID.randomUUID()).label("A").content("A").choiceOrder(1).build();
-        when(choiceRepository.findCurrentVersionByQuestionId(qidOriginal)).thenReturn(List.of(c));
-        when(choiceRepository.findCurrentVersionByQuestionId(qNonOriginal.getQuestionId())).thenReturn(List.of(c));
+		Choice c = Choice.builder().choiceId(UUID.randomUUID()).label("A").content("A").choiceOrder(1).question(qOriginal).build();
+		Choice c2 = Choice.builder().choiceId(UUID.randomUUID()).label("B").content("B").choiceOrder(1).question(qNonOriginal).build();
+        when(choiceRepository.findCurrentVersionByQuestionIds(any())).thenReturn(List.of(c, c2));
 
 		when(objectMapper.writeValueAsString(any())).thenReturn("json");
 		when(attemptRepository.save(any(Attempt.class))).thenAnswer(inv -> inv.getArgument(0));
@@ -698,7 +793,9 @@ class AttemptServiceImplTest {
 		var ids = group.questions().stream().map(q -> q.questionId()).toList();
 		assertTrue(ids.contains(qidOriginal));
         assertTrue(ids.contains(qNonOriginal.getQuestionId()));
-        verify(choiceRepository).findCurrentVersionByQuestionId(eq(qidOriginal));
-        verify(choiceRepository).findCurrentVersionByQuestionId(eq(qNonOriginal.getQuestionId()));
+        assertEquals(c.getChoiceId(), group.questions().get(0).choices().get(0).choiceId());
+        assertEquals(c2.getChoiceId(), group.questions().get(1).choices().get(0).choiceId());
+        verify(choiceRepository, times(1)).findCurrentVersionByQuestionIds(any());
+        verify(choiceRepository, never()).findCurrentVersionByQuestionId(any());
 	}
 }
@@ -28,7 +28,9 @@ class DashboardServiceImplTest {
     @Mock
     ExamAttemptRepository examAttemptRepository;
     @Mock
-    ReportDataRepository reportDataRepository;
+    QuestionTypeDailyStatsRepository questionTypeDailyStatsRepository;
+    @Mock
+    UserExamScoreRepository userExamScoreRepository;
 
     DashboardServiceImpl service;
 
@@ -40,7 +42,8 @@ class DashboardServiceImplTest {
                 readingExamRepository,
                 attemptRepository,
                 examAttemptRepository,
-                reportDataRepository
+                questionTypeDailyStatsRepository,
+                userExamScoreRepository
         );
     }
 
@@ -53,13 +56,13 @@ class DashboardServiceImplTest {
 
         List<UserInBranch> avg = List.of(mock(UserInBranch.class));
         List<UserInBranch> highest = List.of(mock(UserInBranch.class));
-        when(readingExamRepository.getNumberOfUsersInBranchAvg()).thenReturn(avg);
-        when(readingExamRepository.getNumberOfUsersInBranchHighest()).thenReturn(highest);
+        when(userExamScoreRepository.getNumberOfUsersInBranchAvg()).thenReturn(avg);
+        when(userExamScoreRepository.getNumberOfUsersInBranchHighest()).thenReturn(highest);
 
         List<ReportQuestionTypeStats> stats = List.of(mock(ReportQuestionTypeStats.class));
         List<ReportQuestionTypeStatsWrong> wrong = List.of(mock(ReportQuestionTypeStatsWrong.class));
-        when(reportDataRepository.countCorrectByQuestionType(null, null)).thenReturn(stats);
-        when(reportDataRepository.countWrongByQuestionType(null, null)).thenReturn(wrong);
+        when(questionTypeDailyStatsRepository.countCorrectByQuestionType(null, null)).thenReturn(stats);
+        when(questionTypeDailyStatsRepository.countWrongByQuestionType(null, null)).thenReturn(wrong);
 
         DataStats result = service.getDataStats();
 
@@ -76,10 +79,10 @@ class DashboardServiceImplTest {
         verify(readingPassageRepository).getNumberOfPassages();
         verify(attemptRepository).getNumberOfAttempts();
         verify(examAttemptRepository).getNumberOfExamAttempts();
-        verify(readingExamRepository).getNumberOfUsersInBranchAvg();
-        verify(readingExamRepository).getNumberOfUsersInBranchHighest();
-        verify(reportDataRepository).countCorrectByQuestionType(null, null);
-        verify(reportDataRepository).countWrongByQuestionType(null, null);
+        verify(userExamScoreRepository).getNumberOfUsersInBranchAvg();
+        verify(userExamScoreRepository).getNumberOfUsersInBranchHighest();
+        verify(questionTypeDailyStatsRepository).countCorrectByQuestionType(null, null);
+        verify(questionTypeDailyStatsRepository).countWrongByQuestionType(null, null);
     }
 
     @Test
@@ -87,11 +90,11 @@ class DashboardServiceImplTest {
         LocalDate from = LocalDate.now().minusDays(7);
         LocalDate to = LocalDate.now();
         List<ReportQuestionTypeStats> stats = List.of(mock(ReportQuestionTypeStats.class));
-        when(reportDataRepository.countCorrectByQuestionType(from, to)).thenReturn(stats);
+        when(questionTypeDailyStatsRepository.countCorrectByQuestionType(from, to)).thenReturn(stats);
 
         List<ReportQuestionTypeStats> result = service.getQuestionTypeStats(from, to);
         assertEquals(stats, result);
-        verify(reportDataRepository).countCorrectByQuestionType(from, to);
+        verify(questionTypeDailyStatsRepository).countCorrectByQuestionType(from, to);
     }
 
     @Test
@@ -99,11 +102,11 @@ class DashboardServiceImplTest {
         LocalDate from = LocalDate.now().minusDays(30);
         LocalDate to = LocalDate.now();
         List<ReportQuestionTypeStatsWrong> wrong = List.of(mock(ReportQuestionTypeStatsWrong.class));
-        when(reportDataRepository.countWrongByQuestionType(from, to)).thenReturn(wrong);
+        when(questionTypeDailyStatsRepository.countWrongByQuestionType(from, to)).thenReturn(wrong);
 
         List<ReportQuestionTypeStatsWrong> result = service.getQuestionTypeStatsWrong(from, to);
         assertEquals(wrong, result);
-        verify(reportDataRepository).countWrongByQuestionType(from, to);
+        verify(questionTypeDailyStatsRepository).countWrongByQuestionType(from, to);
     }
 }
 
@@ -5,6 +5,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.viewmodel.request.LineChartReq;
 import com.fptu.sep490.commonlibrary.viewmodel.response.feign.LineChartData;
+import com.fptu.sep490.readingservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.readingservice.component.ExamAttemptReviewCache;
+import com.fptu.sep490.readingservice.component.ExamPaperSnapshotCache;
+import com.fptu.sep490.readingservice.component.ExamAnswerKeyCompiler;
+import com.fptu.sep490.readingservice.component.ExamGradingEngine;
+import com.fptu.sep490.readingservice.component.GradingBatchWriter;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.model.*;
 import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
@@ -14,6 +20,7 @@ import com.fptu.sep490.readingservice.service.PassageService;
 import com.fptu.sep490.readingservice.viewmodel.request.ExamAttemptAnswersRequest;
 import com.fptu.sep490.readingservice.viewmodel.response.SubmittedAttemptResponse;
 import com.fptu.sep490.readingservice.viewmodel.response.CreateExamAttemptResponse;
+import com.fptu.sep490.readingservice.viewmodel.response.ExamAttemptGetDetail;
 import com.fptu.sep490.readingservice.viewmodel.response.UserInformationResponse;
 import com.fptu.sep490.readingservice.viewmodel.response.UserGetHistoryExamAttemptResponse;
 import jakarta.servlet.http.HttpServletRequest;
@@ -26,6 +33,7 @@ import org.mockito.MockitoAnnotations;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.*;
@@ -54,13 +62,27 @@ class ExamAttemptServiceImplTest {
     @Mock
     ReadingPassageRepository readingPassageRepository;
     @Mock
-    ReportDataRepository reportDataRepository;
+    GradingBatchWriter gradingBatchWriter;
+    @Mock
+    QuestionGroupRepository questionGroupRepository;
+    @Mock
+    ExamAnswerKeyCache examAnswerKeyCache;
+    @Mock
+    UserProgressDailyRepository userProgressDailyRepository;
+    @Mock
+    UserExamScoreRepository userExamScoreRepository;
+    @Mock
+    ExamPaperSnapshotCache examPaperSnapshotCache;
+    @Mock
+    ExamAttemptReviewCache examAttemptReviewCache;
 
     ExamAttemptServiceImpl service;
 
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
+        ExamAnswerKeyCompiler compiler = new ExamAnswerKeyCompiler(readingExamRepository, questionGroupRepository,
+                questionRepository, choiceRepository, dragItemRepository);
         service = new ExamAttemptServiceImpl(
                 questionRepository,
                 examAttemptRepository,
@@ -72,8 +94,17 @@ class ExamAttemptServiceImplTest {
                 readingExamRepository,
                 attemptRepository,
                 readingPassageRepository,
-                reportDataRepository
+                gradingBatchWriter,
+                examAnswerKeyCache,
+                new ExamGradingEngine(compiler, questionRepository, choiceRepository),
+                userProgressDailyRepository,
+                userExamScoreRepository,
+                examPaperSnapshotCache,
+                examAttemptReviewCache
         );
+        when(examAnswerKeyCache.get(any())).thenAnswer(inv -> compiler.compileForExam(inv.getArgument(0)));
+        when(examPaperSnapshotCache.get(any(), any())).thenAnswer(inv ->
+                inv.<Supplier<CreateExamAttemptResponse.ReadingExamResponse>>getArgument(1).get());
     }
 
     @Test
@@ -130,9 +161,39 @@ class ExamAttemptServiceImplTest {
         assertEquals(p3.getPassageId(), resp.readingExam().readingPassageIdPart3().passageId());
     }
 
+    @Test
+    void createExamAttempt_snapshotCached_skipsPassageRendering() throws Exception {
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        String userId = UUID.randomUUID().toString();
+        when(helper.getUserIdFromToken(req)).thenReturn(userId);
+        when(helper.getUserInformationResponse(userId)).thenReturn(UserInformationResponse.builder().userId(userId).build());
+
+        UUID examId = UUID.randomUUID();
+        ReadingExam original = ReadingExam.builder().readingExamId(examId).urlSlug("slug").build();
+        when(readingExamRepository.findByUrlSlugAndIsOriginalTrueAndIsDeletedFalse("slug")).thenReturn(Optional.of(original));
+        when(readingExamRepository.findCurrentChildByParentId(examId)).thenReturn(Optional.empty());
+        CreateExamAttemptResponse.ReadingExamResponse snapshot = CreateExamAttemptResponse.ReadingExamResponse.builder()
+                .readingExamId(examId).readingExamName("Exam").build();
+        doReturn(snapshot).when(examPaperSnapshotCache).get(eq(examId), any());
+        when(examAttemptRepository.saveAndFlush(any(ExamAttempt.class))).thenAnswer(inv -> {
+            ExamAttempt a = inv.getArgument(0);
+            a.setExamAttemptId(UUID.randomUUID());
+            a.setCreatedAt(LocalDateTime.now());
+            return a;
+        });
+
+        CreateExamAttemptResponse first = service.createExamAttempt("slug", req);
+        CreateExamAttemptResponse second = service.createExamAttempt("slug", req);
+
+        assertSame(snapshot, first.readingExam());
+        assertSame(snapshot, second.readingExam());
+        assertNotEquals(first.examAttemptId(), second.examAttemptId());
+        verifyNoInteractions(passageService);
+    }
+
     @Test
     void submittedExam_notFound_throws() {
-        when(examAttemptRepository.findById(any())).thenReturn(Optional.empty());
+        when(examAttemptRepository.findByIdForUpdate(any())).thenReturn(Optional.empty());
         assertThrows(AppException.class, () -> service.submittedExam(UUID.randomUUID().toString(),
                 new ExamAttemptAnswersRequest(List.of(), List.of(), List.of(), List.of(), 1),
                 Mockito.mock(HttpServletRequest.class)));
@@ -142,8 +203,15 @@ class ExamAttemptServiceImplTest {
     void submittedExam_success_allTypes_andGroupMap() throws Exception {
         HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
         UUID attemptId = UUID.randomUUID();
-        ExamAttempt attempt = ExamAttempt.builder().examAttemptId(attemptId).duration(0).build();
-        when(examAttemptRepository.findById(eq(attemptId))).thenReturn(Optional.of(attempt));
+        ReadingPassage passage = ReadingPassage.builder().passageId(UUID.randomUUID()).build();
+        ReadingExam exam = ReadingExam.builder().readingExamId(UUID.randomUUID()).part1(passage).build();
+        ExamAttempt attempt = ExamAttempt.builder().examAttemptId(attemptId).duration(0).readingExam(exam)
+                .createdBy("user-1").createdAt(LocalDateTime.of(2025, 6, 3, 8, 15)).build();
+        when(examAttemptRepository.findByIdForUpdate(eq(attemptId))).thenReturn(Optional.of(attempt));
+        when(readingExamRepository.findById(exam.getReadingExamId())).thenReturn(Optional.of(exam));
+        UUID examGroupId = UUID.randomUUID();
+        when(questionGroupRepository.findAllByReadingPassageIds(any()))
+                .thenReturn(List.of(QuestionGroup.builder().groupId(examGroupId).build()));
 
         // Build questions
         UUID qMcId = UUID.randomUUID();
@@ -160,24 +228,23 @@ class ExamAttemptServiceImplTest {
         Question qm = Question.builder().questionId(qMatchId).questionType(QuestionType.MATCHING).point(1).questionOrder(4).correctAnswerForMatching("4-A").explanation("e").build();
         DragItem drag = DragItem.builder().dragItemId(UUID.randomUUID()).content("drag-content").build();
         Question qd = Question.builder().questionId(qDragId).questionType(QuestionType.DRAG_AND_DROP).questionOrder(5).dragItem(drag).explanation("e").build();
-        when(questionRepository.findQuestionsByIds(anyList())).thenReturn(List.of(mc, mcNon, qf, qm, qd));
+        when(questionRepository.findCurrentVersionByGroupIds(any())).thenReturn(List.of(mc, mcNon, qf, qm, qd));
+        drag.setQuestion(qd);
+        when(dragItemRepository.findByQuestionIds(any())).thenReturn(List.of(drag));
 
         // Multiple choice correctness setup
         UUID c1 = UUID.randomUUID();
         UUID c2 = UUID.randomUUID();
-        when(choiceRepository.getChoicesByIds(anyList())).thenReturn(List.of("A", "B"));
-        Choice orig1 = Choice.builder().choiceId(c1).label("A").build();
-        Choice orig2 = Choice.builder().choiceId(c2).label("B").build();
-        when(choiceRepository.getOriginalChoiceByOriginalQuestion(eq(qMcId))).thenReturn(List.of(orig1, orig2));
-        when(choiceRepository.getOriginalChoiceByOriginalQuestion(eq(qMcParentId))).thenReturn(List.of(orig1, orig2));
-        when(choiceRepository.getCurrentCorrectChoice(anyList())).thenReturn(List.of(orig1));
+        Choice orig1 = Choice.builder().choiceId(c1).label("A").isCorrect(true).question(mc).build();
+        Choice orig2 = Choice.builder().choiceId(c2).label("B").question(mcParent).build();
+        when(choiceRepository.getOriginalChoicesByOriginalQuestions(any())).thenReturn(List.of(orig1, orig2));
+        when(choiceRepository.findAllVersionsByOriginalChoiceIds(any())).thenReturn(List.of(orig1, orig2));
 
         // Drag items mapping for group map
         UUID groupId = UUID.randomUUID();
         DragItem i1 = DragItem.builder().dragItemId(UUID.randomUUID()).questionGroup(QuestionGroup.builder().groupId(groupId).build()).build();
         DragItem i2 = DragItem.builder().dragItemId(UUID.randomUUID()).questionGroup(QuestionGroup.builder().groupId(groupId).build()).build();
         when(dragItemRepository.findAllById(anyList())).thenReturn(List.of(i1, i2));
-        when(dragItemRepository.findById(eq(drag.getDragItemId()))).thenReturn(Optional.of(drag));
 
         // Answers
         List<UUID> passageIds = List.of(UUID.randomUUID());
@@ -197,28 +264,33 @@ class ExamAttemptServiceImplTest {
         SubmittedAttemptResponse resp = service.submittedExam(attemptId.toString(), body, req);
         assertEquals(120L, resp.getDuration());
         assertEquals(5, resp.getResultSets().size());
-        verify(reportDataRepository).saveAll(anyList());
+        // MC(2) + FILL(1) + MATCH(1); câu MC thứ hai và DRAG có 0 điểm
+        assertEquals(4, attempt.getTotalPoint());
+        assertTrue(resp.getResultSets().stream().allMatch(SubmittedAttemptResponse.ResultSet::isCorrect));
+        verify(questionRepository, never()).findQuestionsByIds(anyList());
+        verify(choiceRepository, never()).findAllById(any());
+        verify(gradingBatchWriter).insertReportData(argThat(list -> list.size() == 5));
         verify(examAttemptRepository).save(any(ExamAttempt.class));
+        verify(userProgressDailyRepository).increment("user-1", LocalDate.of(2025, 6, 3), 1, 4L, 0,
+                LocalDateTime.of(2025, 6, 3, 8, 15));
+        verify(userExamScoreRepository).record(eq("user-1"), eq(1), eq(4L), eq(4), any(LocalDateTime.class));
     }
 
     @Test
     void submittedExam_handlesEmptyItems_skipsUnknownQuestion() throws Exception {
         HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
         UUID attemptId = UUID.randomUUID();
-        ExamAttempt attempt = ExamAttempt.builder().examAttemptId(attemptId).duration(0).build();
-        when(examAttemptRepository.findById(eq(attemptId))).thenReturn(Optional.of(attempt));
+        ExamAttempt attempt = ExamAttempt.builder().examAttemptId(attemptId).duration(0)
+                .createdBy("user-1").createdAt(LocalDateTime.of(2025, 6, 3, 8, 15))
+                .readingExam(ReadingExam.builder().readingExamId(UUID.randomUUID()).build()).build();
+        when(examAttemptRepository.findByIdForUpdate(eq(attemptId))).thenReturn(Optional.of(attempt));
 
         // Questions list contains one that won't appear in answers (skipped branch)
         UUID qMcId = UUID.randomUUID();
         Question mc = Question.builder().questionId(qMcId).questionType(QuestionType.MULTIPLE_CHOICE).point(1).isOriginal(true).questionOrder(1).explanation("e").build();
-        when(questionRepository.findQuestionsByIds(anyList())).thenReturn(List.of(mc));
-
-        // MC setup
-        UUID c1 = UUID.randomUUID();
-        when(choiceRepository.getChoicesByIds(anyList())).thenReturn(List.of("A"));
-        Choice orig1 = Choice.builder().choiceId(c1).label("A").build();
-        when(choiceRepository.getOriginalChoiceByOriginalQuestion(eq(qMcId))).thenReturn(List.of(orig1));
-        when(choiceRepository.getCurrentCorrectChoice(anyList())).thenReturn(List.of(orig1));
+        doReturn(new ExamAnswerKeyCompiler(readingExamRepository, questionGroupRepository, questionRepository,
+                choiceRepository, dragItemRepository).compile(attempt.getReadingExam().getReadingExamId(), List.of(mc)))
+                .when(examAnswerKeyCache).get(any());
 
         // Answers includes no entries for qMcId → skip
         ExamAttemptAnswersRequest body = new ExamAttemptAnswersRequest(List.of(), List.of(), List.of(), List.of(), 5);
@@ -228,7 +300,7 @@ class ExamAttemptServiceImplTest {
         SubmittedAttemptResponse resp = service.submittedExam(attemptId.toString(), body, req);
         assertEquals(5L, resp.getDuration());
         assertEquals(0, resp.getResultSets().size());
-        verify(reportDataRepository).saveAll(anyList());
+        verify(gradingBatchWriter).insertReportData(anyList());
     }
 
     @Test
@@ -259,8 +331,8 @@ class ExamAttemptServiceImplTest {
 
         UserInformationResponse creatorUser = UserInformationResponse.builder().userId("creator").email("c@x").build();
         UserInformationResponse updaterUser = UserInformationResponse.builder().userId("updater").email("u@x").build();
-        when(helper.getUserInformationResponse("creator")).thenReturn(creatorUser);
-        when(helper.getUserInformationResponse("updater")).thenReturn(updaterUser);
+        when(helper.getUserInformationResponses(anyCollection()))
+                .thenReturn(Map.of("creator", creatorUser, "updater", updaterUser));
 
         org.springframework.data.domain.PageImpl<ExamAttempt> page = new org.springframework.data.domain.PageImpl<>(
                 List.of(attempt), org.springframework.data.domain.PageRequest.of(0, 10), 25
@@ -306,5 +378,105 @@ class ExamAttemptServiceImplTest {
         assertNotNull(result);
         assertTrue(result.isEmpty());
     }
-}
 
+    @Test
+    void submittedExam_resubmit_onlyAddsPointDifference() throws Exception {
+        UUID attemptId = UUID.randomUUID();
+        UUID examId = UUID.randomUUID();
+        ExamAttempt attempt = ExamAttempt.builder().examAttemptId(attemptId).duration(0).totalPoint(7)
+                .createdBy("user-1").createdAt(LocalDateTime.of(2025, 6, 3, 8, 15))
+                .readingExam(ReadingExam.builder().readingExamId(examId).build()).build();
+        when(examAttemptRepository.findByIdForUpdate(eq(attemptId))).thenReturn(Optional.of(attempt));
+        doReturn(new ExamAnswerKeyCompiler(readingExamRepository, questionGroupRepository, questionRepository,
+                choiceRepository, dragItemRepository).compile(examId, List.of()))
+                .when(examAnswerKeyCache).get(any());
+        when(examAttemptRepository.save(any(ExamAttempt.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        service.submittedExam(attemptId.toString(),
+                new ExamAttemptAnswersRequest(List.of(), List.of(), List.of(), List.of(), 5),
+                Mockito.mock(HttpServletRequest.class));
+
+        verify(userProgressDailyRepository).increment("user-1", LocalDate.of(2025, 6, 3), 0, -7L, 0,
+                LocalDateTime.of(2025, 6, 3, 8, 15));
+        verify(userExamScoreRepository).record(eq("user-1"), eq(0), eq(-7L), eq(0), any(LocalDateTime.class));
+        verify(examAttemptReviewCache).evict(attemptId, examId);
+    }
+
+    @Test
+    void getExamAttemptById_reviewCached_skipsReconstruction() throws Exception {
+        HttpServletRequest req = Mockito.mock(HttpServletRequest.class);
+        UUID attemptId = UUID.randomUUID();
+        ReadingPassage part1 = ReadingPassage.builder().passageId(UUID.randomUUID())
+                .ieltsType(com.fptu.sep490.readingservice.model.enumeration.IeltsType.ACADEMIC).build();
+        ExamAttempt attempt = ExamAttempt.builder().examAttemptId(attemptId).duration(1200).totalPoint(30)
+                .history("{}").createdBy("user-1").updatedBy("user-1")
+                .createdAt(LocalDateTime.of(2025, 6, 3, 8, 15)).updatedAt(LocalDateTime.of(2025, 6, 3, 9, 15))
+                .readingExam(ReadingExam.builder().readingExamId(UUID.randomUUID()).part1(part1).build()).build();
+        when(examAttemptRepository.findById(attemptId)).thenReturn(Optional.of(attempt));
+        when(helper.getUserIdFromToken(req)).thenReturn("user-1");
+        when(objectMapper.readValue("{}", ExamAttemptHistory.class)).thenReturn(ExamAttemptHistory.builder()
+                .userAnswers(Map.of()).build());
+        ExamAttemptGetDetail.ReadingExamResponse review = ExamAttemptGetDetail.ReadingExamResponse.builder()
+                .readingExamName("Exam").build();
+        doReturn(review).when(examAttemptReviewCache).get(eq(attemptId), eq(attempt.getReadingExam().getReadingExamId()), any());
+
+        ExamAttemptGetDetail detail = service.getExamAttemptById(attemptId.toString(), req);
+
+        assertSame(review, detail.readingExam());
+        assertEquals(1200L, detail.duration());
+        verifyNoInteractions(passageService);
+    }
+
+    @Test
+    void getOverViewProgress_readsDailyRollups() {
+        when(helper.getUserIdFromToken("token")).thenReturn("user-1");
+        when(readingExamRepository.numberOfActiveExams()).thenReturn(12);
+        when(readingPassageRepository.numberOfPublishedPassages()).thenReturn(30);
+        LocalDateTime recent = LocalDateTime.now().minusDays(1);
+        when(userProgressDailyRepository.findAllByUserId("user-1")).thenReturn(List.of(
+                progressDay(LocalDate.now().minusMonths(3), 2, 60, 4, LocalDateTime.now().minusMonths(3)),
+                progressDay(recent.toLocalDate(), 1, 30, 2, recent)));
+
+        var out = service.getOverViewProgress(
+                com.fptu.sep490.commonlibrary.viewmodel.request.OverviewProgressReq.builder().timeFrame("1w").build(),
+                "token");
+
+        assertEquals(3, out.getExam());
+        assertEquals(6, out.getTask());
+        assertEquals(12, out.getTotalExams());
+        assertEquals(30, out.getTotalTasks());
+        assertEquals(1, out.getNumberOfExamsInTimeFrame());
+        assertEquals(2, out.getNumberOfTasksInTimeFrame());
+        assertEquals(recent, out.getLastLearningDate());
+        verify(examAttemptRepository, never()).findAllByUserId(any());
+        verify(attemptRepository, never()).findAllByUserId(any());
+    }
+
+    @Test
+    void getBandChart_averagesPointsPerPeriod() {
+        when(helper.getUserIdFromToken("token")).thenReturn("user-1");
+        LocalDate first = LocalDate.of(2025, 6, 2);
+        when(userProgressDailyRepository.findExamDaysInRange("user-1", null, null)).thenReturn(List.of(
+                progressDay(first, 2, 50, 0, null),
+                progressDay(first.plusDays(1), 1, 35, 0, null),
+                progressDay(first.plusDays(8), 1, 20, 0, null)));
+
+        List<LineChartData> out = service.getBandChart(LineChartReq.builder().timeFrame("1w").build(), "token");
+
+        assertEquals(2, out.size());
+        assertEquals(first, out.get(0).getDate());
+        assertEquals(85.0 / 3, out.get(0).getValue());
+        assertEquals(20.0, out.get(1).getValue());
+    }
+
+    private static UserProgressDaily progressDay(LocalDate date, int examCount, long pointSum, int taskCount,
+                                                 LocalDateTime lastActivityAt) {
+        return UserProgressDaily.builder()
+                .id(new com.fptu.sep490.readingservice.model.embedded.UserProgressDailyId("user-1", date))
+                .examCount(examCount)
+                .examPointSum(pointSum)
+                .taskCount(taskCount)
+                .lastActivityAt(lastActivityAt)
+                .build();
+    }
+}
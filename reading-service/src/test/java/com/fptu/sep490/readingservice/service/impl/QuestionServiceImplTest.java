@@ -3,13 +3,12 @@ package com.fptu.sep490.readingservice.service.impl;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
 import com.fptu.sep490.commonlibrary.redis.RedisService;
-import com.fptu.sep490.commonlibrary.viewmodel.response.KeyCloakTokenResponse;
+import com.fptu.sep490.readingservice.component.PassageContentChangeListener;
 import com.fptu.sep490.readingservice.constants.Constants;
 import com.fptu.sep490.readingservice.helper.Helper;
 import com.fptu.sep490.readingservice.model.*;
 import com.fptu.sep490.readingservice.model.enumeration.QuestionType;
 import com.fptu.sep490.readingservice.repository.*;
-import com.fptu.sep490.readingservice.repository.client.KeyCloakTokenClient;
 import com.fptu.sep490.readingservice.repository.client.KeyCloakUserClient;
 import com.fptu.sep490.readingservice.viewmodel.request.QuestionCreationRequest;
 import com.fptu.sep490.readingservice.viewmodel.request.UpdatedQuestionRequest;
@@ -42,13 +41,13 @@ import static org.mockito.Mockito.*;
 class QuestionServiceImplTest {
 
     @Mock QuestionRepository questionRepository;
-    @Mock KeyCloakTokenClient keyCloakTokenClient;
     @Mock KeyCloakUserClient keyCloakUserClient;
     @Mock RedisService redisService;
     @Mock QuestionGroupRepository questionGroupRepository;
     @Mock DragItemRepository dragItemRepository;
     @Mock
     Helper helper;
+    @Mock PassageContentChangeListener passageContentChangeListener;
     QuestionServiceImpl service;
 
     @BeforeEach
@@ -56,12 +55,12 @@ class QuestionServiceImplTest {
         MockitoAnnotations.openMocks(this);
         service = new QuestionServiceImpl(
                 questionRepository,
-                keyCloakTokenClient,
                 keyCloakUserClient,
                 redisService,
                 questionGroupRepository,
                 dragItemRepository,
-                helper
+                helper,
+                passageContentChangeListener
         );
 
         // No need to set private fields; tests stub Redis to return cached token/profile to bypass Keycloak
@@ -918,24 +917,13 @@ class QuestionServiceImplTest {
     }
 
     @Test
-    void getCachedClientToken_cached_and_fetchesAndSaves() throws Exception {
+    void getCachedClientToken_delegatesToHelper() throws Exception {
         Method m = QuestionServiceImpl.class.getDeclaredMethod("getCachedClientToken");
         m.setAccessible(true);
+        when(helper.getCachedClientToken()).thenReturn("service-token");
 
-        // cached
-        when(redisService.getValue(anyString(), eq(String.class))).thenReturn("cached-token");
-        Object t1 = m.invoke(service);
-        assertEquals("cached-token", t1);
-
-        // miss -> fetch via client and save
-        when(redisService.getValue(anyString(), eq(String.class))).thenReturn(null);
-        KeyCloakTokenResponse tr = mock(KeyCloakTokenResponse.class);
-        when(tr.accessToken()).thenReturn("new-token");
-        when(tr.expiresIn()).thenReturn(3600);
-        when(keyCloakTokenClient.requestToken(any(), any())).thenReturn(tr);
-        Object t2 = m.invoke(service);
-        assertEquals("new-token", t2);
-        verify(redisService, atLeastOnce()).saveValue(anyString(), anyString(), any(Duration.class));
+        assertEquals("service-token", m.invoke(service));
+        verify(redisService, never()).getValue(anyString(), eq(String.class));
     }
 
     @Test
@@ -1,6 +1,8 @@
 package com.fptu.sep490.readingservice.service.impl;
 
 import com.fptu.sep490.commonlibrary.exceptions.AppException;
+import com.fptu.sep490.readingservice.component.ExamAnswerKeyCache;
+import com.fptu.sep490.readingservice.component.ExamPaperSnapshotCache;
 import com.fptu.sep490.readingservice.model.enumeration.PartNumber;
 import com.fptu.sep490.readingservice.repository.client.MarkupClient;
 import com.fptu.sep490.readingservice.helper.Helper;
@@ -17,7 +19,9 @@ import org.junit.jupiter.api.*;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
 import org.springframework.data.domain.*;
+import org.springframework.http.HttpStatus;
 
 import java.lang.reflect.Method;
 import java.util.ArrayList;
@@ -27,6 +31,7 @@ import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class ReadingExamServiceImplTest {
@@ -39,6 +44,10 @@ class ReadingExamServiceImplTest {
     ReadingExamRepository readingExamRepository;
     @Mock
     MarkupClient markupClient;
+    @Mock
+    ExamAnswerKeyCache examAnswerKeyCache;
+    @Mock
+    ExamPaperSnapshotCache examPaperSnapshotCache;
 
     @InjectMocks
     ReadingExamServiceImpl service;
@@ -812,6 +821,21 @@ class ReadingExamServiceImplTest {
         assertThrows(AppException.class, () ->
                 service.getAllReadingExams(req, 0, 10, null, null, ""));
     }
+
+    @Test
+    void getAllReadingExams_unsupportedSortProperty_returnsBadRequest() {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(helper.getUserIdFromToken(req)).thenReturn("user1");
+        // Repository proxy dịch IllegalArgumentException của TextSearchQuery.orderBy
+        when(readingExamRepository.searchCurrentExams(eq("kw"), any(Pageable.class))).thenThrow(
+                new InvalidDataAccessApiUsageException("Unsupported sort property: createdBy",
+                        new IllegalArgumentException("Unsupported sort property: createdBy")));
+
+        AppException ex = assertThrows(AppException.class, () ->
+                service.getAllReadingExams(req, 0, 10, "createdBy", "asc", "kw"));
+
+        assertEquals(HttpStatus.BAD_REQUEST.value(), ex.getHttpStatusCode());
+    }
     @Test
     void getTaskTitle_success_returnsTaskTitles() {
         // Prepare mock data
@@ -880,7 +904,29 @@ class ReadingExamServiceImplTest {
         assertEquals("t1", result.getContent().get(0).readingPassageIdPart1().readingPassageName());
     }
 
+    @Test
+    void getAllReadingExams_keywordWithoutSort_ordersByRelevance() throws Exception {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(helper.getUserIdFromToken(req)).thenReturn("user1");
+        when(readingExamRepository.searchCurrentExams(eq("cambridge"), any(Pageable.class)))
+                .thenReturn(Page.empty());
 
+        service.getAllReadingExams(req, 1, 10, null, null, "cambridge");
 
+        // Pageable không sort: repository xếp theo độ liên quan
+        verify(readingExamRepository).searchCurrentExams("cambridge", PageRequest.of(1, 10));
+    }
 
+    @Test
+    void getAllActiveReadingExams_explicitSort_keepsSort() throws Exception {
+        HttpServletRequest req = mock(HttpServletRequest.class);
+        when(helper.getUserIdFromToken(req)).thenReturn("user1");
+        when(readingExamRepository.findByIsDeletedFalseAndIsCurrentTrueAndStatusTrue(eq("cambridge"), any(Pageable.class)))
+                .thenReturn(Page.empty());
+
+        service.getAllActiveReadingExams(req, 0, 10, "examName", "desc", "cambridge");
+
+        verify(readingExamRepository).findByIsDeletedFalseAndIsCurrentTrueAndStatusTrue("cambridge",
+                PageRequest.of(0, 10, Sort.by("examName").descending()));
+    }
 }